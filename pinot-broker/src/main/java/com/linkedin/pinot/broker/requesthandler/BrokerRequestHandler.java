@@ -35,6 +35,8 @@ import com.linkedin.pinot.common.response.ProcessingException;
 import com.linkedin.pinot.common.response.ServerInstance;
 import com.linkedin.pinot.common.utils.DataTable;
 import com.linkedin.pinot.core.common.datatable.DataTableFactory;
+import com.linkedin.pinot.pql.parsers.AbstractCompiler;
+import com.linkedin.pinot.pql.parsers.CachingPql2Compiler;
 import com.linkedin.pinot.pql.parsers.Pql2Compiler;
 import com.linkedin.pinot.routing.RoutingTable;
 import com.linkedin.pinot.routing.RoutingTableLookupRequest;
@@ -78,7 +80,6 @@ import org.slf4j.LoggerFactory;
 @ThreadSafe
 public class BrokerRequestHandler {
   private static final Logger LOGGER = LoggerFactory.getLogger(BrokerRequestHandler.class);
-  private static final Pql2Compiler REQUEST_COMPILER = new Pql2Compiler();
 
   private static final int DEFAULT_BROKER_QUERY_RESPONSE_LIMIT = Integer.MAX_VALUE;
   private static final String BROKER_QUERY_RESPONSE_LIMIT_CONFIG = "pinot.broker.query.response.limit";
@@ -87,6 +88,9 @@ public class BrokerRequestHandler {
   private static final String DEFAULT_BROKER_ID;
   public static final String BROKER_ID_CONFIG_KEY = "pinot.broker.id";
   private static final ResponseType DEFAULT_BROKER_RESPONSE_TYPE = ResponseType.BROKER_RESPONSE_TYPE_NATIVE;
+  private static final String BROKER_RESULT_CACHE_CONFIG_PREFIX = "pinot.broker.result.cache";
+  private static final String BROKER_COMPILED_QUERY_CACHE_SIZE_CONFIG = "pinot.broker.compiled.query.cache.size";
+  private static final int DEFAULT_BROKER_COMPILED_QUERY_CACHE_SIZE = 1000;
 
   static {
     String defaultBrokerId = "";
@@ -108,6 +112,8 @@ public class BrokerRequestHandler {
   private final int _queryResponseLimit;
   private final AtomicLong _requestIdGenerator;
   private final String _brokerId;
+  private final BrokerResultCache _resultCache;
+  private final AbstractCompiler _requestCompiler;
   // TODO: Currently only using RoundRobin selection. But, this can be allowed to be configured.
   private RoundRobinReplicaSelection _replicaSelection;
 
@@ -125,9 +131,19 @@ public class BrokerRequestHandler {
     _queryResponseLimit = config.getInt(BROKER_QUERY_RESPONSE_LIMIT_CONFIG, DEFAULT_BROKER_QUERY_RESPONSE_LIMIT);
     _brokerTimeOutMs = config.getLong(BROKER_TIME_OUT_CONFIG, DEFAULT_BROKER_TIME_OUT_MS);
     _brokerId = config.getString(BROKER_ID_CONFIG_KEY, DEFAULT_BROKER_ID);
+    _resultCache = BrokerResultCache.fromConfig(config.subset(BROKER_RESULT_CACHE_CONFIG_PREFIX), brokerMetrics);
+    int compiledQueryCacheSize =
+        config.getInt(BROKER_COMPILED_QUERY_CACHE_SIZE_CONFIG, DEFAULT_BROKER_COMPILED_QUERY_CACHE_SIZE);
+    if (compiledQueryCacheSize > 0) {
+      _requestCompiler = new CachingPql2Compiler(compiledQueryCacheSize);
+    } else {
+      _requestCompiler = new Pql2Compiler();
+    }
     LOGGER.info("Broker response limit is: " + _queryResponseLimit);
     LOGGER.info("Broker timeout is - " + _brokerTimeOutMs + " ms");
     LOGGER.info("Broker id: " + _brokerId);
+    LOGGER.info("Broker result cache enabled: " + (_resultCache != null));
+    LOGGER.info("Broker compiled query cache size: " + compiledQueryCacheSize);
   }
 
   /**
@@ -162,7 +178,7 @@ public class BrokerRequestHandler {
     long compilationStartTime = System.nanoTime();
     BrokerRequest brokerRequest;
     try {
-      brokerRequest = REQUEST_COMPILER.compileToBrokerRequest(pql);
+      brokerRequest = _requestCompiler.compileToBrokerRequest(pql);
     } catch (Exception e) {
       LOGGER.warn("Parsing error on requestId {}: {}", requestId, pql, e);
       _brokerMetrics.addMeteredGlobalValue(BrokerMeter.REQUEST_COMPILATION_EXCEPTIONS, 1);
@@ -296,10 +312,30 @@ public class BrokerRequestHandler {
         realtimeBrokerRequest = _optimizer.optimize(brokerRequest);
       }
 
+      // Serve the query from the result cache if the same query was answered on the same data before.
+      BrokerResultCache.CacheKey cacheKey = null;
+      if (_resultCache != null) {
+        cacheKey = _resultCache.getCacheKey(tableName, offlineBrokerRequest,
+            (offlineTableName != null) ? _routingTable.getRoutingTableVersion(offlineTableName) : -1L,
+            realtimeBrokerRequest,
+            (realtimeTableName != null) ? _routingTable.getRoutingTableVersion(realtimeTableName) : -1L);
+        if (cacheKey != null) {
+          BrokerResponse cachedBrokerResponse = _resultCache.get(cacheKey);
+          if (cachedBrokerResponse != null) {
+            return cachedBrokerResponse;
+          }
+        }
+      }
+
       ReduceService reduceService = _reduceServiceRegistry.get(responseType);
       // TODO: wire up the customized BucketingSelection.
-      return processOptimizedBrokerRequests(brokerRequest, offlineBrokerRequest, realtimeBrokerRequest, reduceService,
-          scatterGatherStats, null, requestId);
+      BrokerResponse brokerResponse =
+          processOptimizedBrokerRequests(brokerRequest, offlineBrokerRequest, realtimeBrokerRequest, reduceService,
+              scatterGatherStats, null, requestId);
+      if (cacheKey != null) {
+        _resultCache.put(cacheKey, brokerResponse);
+      }
+      return brokerResponse;
     }
   }
 
@@ -551,7 +587,8 @@ public class BrokerRequestHandler {
       routingOptions =
           Splitter.on(",").omitEmptyStrings().trimResults().splitToList(debugOptions.get("routingOptions"));
     }
-    RoutingTableLookupRequest routingTableLookupRequest = new RoutingTableLookupRequest(tableName, routingOptions);
+    RoutingTableLookupRequest routingTableLookupRequest =
+        new RoutingTableLookupRequest(tableName, routingOptions, brokerRequest);
     return _routingTable.findServers(routingTableLookupRequest);
   }
 
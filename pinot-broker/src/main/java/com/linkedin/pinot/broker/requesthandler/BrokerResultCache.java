@@ -0,0 +1,280 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.broker.requesthandler;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.linkedin.pinot.common.metrics.BrokerGauge;
+import com.linkedin.pinot.common.metrics.BrokerMeter;
+import com.linkedin.pinot.common.metrics.BrokerMetrics;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.BrokerResponse;
+import com.linkedin.pinot.common.response.broker.BrokerResponseNative;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * The <code>BrokerResultCache</code> class caches broker responses of repeated queries.
+ *
+ * <p>Responses are keyed on the normalized (compiled and optimized) broker requests sent to the OFFLINE and REALTIME
+ * tables, together with the routing table versions of these tables. Since the time boundary of hybrid tables is
+ * attached to the optimized requests, and since the routing table version changes whenever the segments of a table
+ * change, a cached response is never served once the data it was computed on has changed. Entries with an outdated
+ * key are simply never hit again and get evicted in least-recently-used order once the cache goes over its size limit.
+ *
+ * <p>Consuming segments change without any routing table change, so responses involving a REALTIME table are only
+ * cached for the configured time-to-live, which can be overridden per table. With the default time-to-live of 0,
+ * queries on REALTIME tables are not cached.
+ *
+ * <p>The cache is configured through the following broker configs (prefix <code>pinot.broker.result.cache</code>):
+ * <ul>
+ *   <li><code>enabled</code>: whether to cache broker responses, false by default.</li>
+ *   <li><code>maxBytes</code>: maximum total size of the cached responses.</li>
+ *   <li><code>realtime.ttlMs</code>: time-to-live for responses involving a REALTIME table.</li>
+ *   <li><code>realtime.ttlMs.&lt;rawTableName&gt;</code>: per table override of the REALTIME time-to-live.</li>
+ * </ul>
+ */
+@ThreadSafe
+public class BrokerResultCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BrokerResultCache.class);
+
+  public static final String ENABLED_CONFIG = "enabled";
+  public static final String MAX_BYTES_CONFIG = "maxBytes";
+  public static final String REALTIME_TTL_MS_CONFIG = "realtime.ttlMs";
+
+  public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+  public static final long DEFAULT_REALTIME_TTL_MS = 0L;
+
+  private final Cache<CacheKey, CacheEntry> _cache;
+  private final AtomicLong _sizeInBytes = new AtomicLong(0L);
+  private final Configuration _config;
+  private final long _defaultRealtimeTtlMs;
+  private final BrokerMetrics _brokerMetrics;
+
+  public BrokerResultCache(@Nonnull Configuration config, @Nonnull BrokerMetrics brokerMetrics) {
+    _config = config;
+    _defaultRealtimeTtlMs = config.getLong(REALTIME_TTL_MS_CONFIG, DEFAULT_REALTIME_TTL_MS);
+    _brokerMetrics = brokerMetrics;
+    long maxBytes = config.getLong(MAX_BYTES_CONFIG, DEFAULT_MAX_BYTES);
+    _cache = CacheBuilder.newBuilder()
+        .maximumWeight(maxBytes)
+        .weigher(new Weigher<CacheKey, CacheEntry>() {
+          @Override
+          public int weigh(CacheKey key, CacheEntry value) {
+            return key.getSizeInBytes() + value.getSizeInBytes();
+          }
+        })
+        .removalListener(new RemovalListener<CacheKey, CacheEntry>() {
+          @Override
+          public void onRemoval(RemovalNotification<CacheKey, CacheEntry> notification) {
+            updateSizeInBytes(-notification.getKey().getSizeInBytes() - notification.getValue().getSizeInBytes());
+          }
+        })
+        .build();
+    LOGGER.info("Broker result cache max bytes: {}, default realtime ttl: {} ms", maxBytes, _defaultRealtimeTtlMs);
+  }
+
+  /**
+   * Creates the broker result cache if it is enabled in the given config.
+   *
+   * @param config broker result cache config.
+   * @param brokerMetrics broker metrics.
+   * @return broker result cache, or null if the result cache is not enabled.
+   */
+  @Nullable
+  public static BrokerResultCache fromConfig(@Nonnull Configuration config, @Nonnull BrokerMetrics brokerMetrics) {
+    if (!config.getBoolean(ENABLED_CONFIG, false)) {
+      return null;
+    }
+    return new BrokerResultCache(config, brokerMetrics);
+  }
+
+  /**
+   * Returns the cache key for the given optimized broker requests, or null if the query cannot be cached.
+   *
+   * @param rawTableName raw table name (without type suffix).
+   * @param offlineBrokerRequest optimized broker request for the OFFLINE table.
+   * @param offlineRoutingTableVersion routing table version of the OFFLINE table.
+   * @param realtimeBrokerRequest optimized broker request for the REALTIME table.
+   * @param realtimeRoutingTableVersion routing table version of the REALTIME table.
+   * @return cache key, or null if the query cannot be cached.
+   */
+  @Nullable
+  public CacheKey getCacheKey(@Nonnull String rawTableName, @Nullable BrokerRequest offlineBrokerRequest,
+      long offlineRoutingTableVersion, @Nullable BrokerRequest realtimeBrokerRequest,
+      long realtimeRoutingTableVersion) {
+    long ttlMs = Long.MAX_VALUE;
+    StringBuilder builder = new StringBuilder();
+    if (offlineBrokerRequest != null) {
+      if (offlineBrokerRequest.isEnableTrace() || offlineRoutingTableVersion < 0) {
+        return null;
+      }
+      builder.append(offlineRoutingTableVersion).append(':').append(normalize(offlineBrokerRequest));
+    }
+    builder.append('\n');
+    if (realtimeBrokerRequest != null) {
+      if (realtimeBrokerRequest.isEnableTrace() || realtimeRoutingTableVersion < 0) {
+        return null;
+      }
+      ttlMs = getRealtimeTtlMs(rawTableName);
+      if (ttlMs <= 0) {
+        return null;
+      }
+      builder.append(realtimeRoutingTableVersion).append(':').append(normalize(realtimeBrokerRequest));
+    }
+    return new CacheKey(rawTableName, builder.toString(), ttlMs);
+  }
+
+  /**
+   * Returns the cached broker response for the given key, or null if there is no valid cached response.
+   * <p>A new broker response is returned for each call so that the caller can modify it freely.
+   */
+  @Nullable
+  public BrokerResponse get(@Nonnull CacheKey key) {
+    CacheEntry entry = _cache.getIfPresent(key);
+    if (entry != null && entry._expirationTimeMs <= System.currentTimeMillis()) {
+      _cache.invalidate(key);
+      entry = null;
+    }
+    if (entry != null) {
+      try {
+        BrokerResponse brokerResponse =
+            BrokerResponseNative.fromJsonString(new String(entry._serializedResponse, Charsets.UTF_8));
+        _brokerMetrics.addMeteredTableValue(key._rawTableName, BrokerMeter.RESULT_CACHE_HITS, 1);
+        return brokerResponse;
+      } catch (Exception e) {
+        LOGGER.warn("Caught exception while deserializing cached broker response for table: {}", key._rawTableName,
+            e);
+        _cache.invalidate(key);
+      }
+    }
+    _brokerMetrics.addMeteredTableValue(key._rawTableName, BrokerMeter.RESULT_CACHE_MISSES, 1);
+    return null;
+  }
+
+  /**
+   * Caches the given broker response. Responses with exceptions or with missing server responses are not cached.
+   */
+  public void put(@Nonnull CacheKey key, @Nonnull BrokerResponse brokerResponse) {
+    if (!(brokerResponse instanceof BrokerResponseNative)) {
+      return;
+    }
+    BrokerResponseNative brokerResponseNative = (BrokerResponseNative) brokerResponse;
+    if (brokerResponseNative.getExceptionsSize() > 0
+        || brokerResponseNative.getNumServersResponded() < brokerResponseNative.getNumServersQueried()) {
+      return;
+    }
+    long expirationTimeMs = Long.MAX_VALUE;
+    if (key._ttlMs != Long.MAX_VALUE) {
+      expirationTimeMs = System.currentTimeMillis() + key._ttlMs;
+    }
+    try {
+      CacheEntry entry = new CacheEntry(brokerResponse.toJsonString().getBytes(Charsets.UTF_8), expirationTimeMs);
+      updateSizeInBytes(key.getSizeInBytes() + entry.getSizeInBytes());
+      _cache.put(key, entry);
+    } catch (Exception e) {
+      LOGGER.warn("Caught exception while serializing broker response for table: {}", key._rawTableName, e);
+    }
+  }
+
+  public long getSizeInBytes() {
+    return _sizeInBytes.get();
+  }
+
+  public long size() {
+    return _cache.size();
+  }
+
+  /**
+   * Returns the string representation of the broker request with the filter normalized, since the filter query ids
+   * differ each time the same query gets compiled.
+   */
+  private static String normalize(BrokerRequest brokerRequest) {
+    if (!brokerRequest.isSetFilterQuery()) {
+      return brokerRequest.toString();
+    }
+    BrokerRequest requestWithoutFilter = brokerRequest.deepCopy();
+    requestWithoutFilter.unsetFilterQuery();
+    requestWithoutFilter.unsetFilterSubQueryMap();
+    return requestWithoutFilter + RequestUtils.getNormalizedFilterString(brokerRequest);
+  }
+
+  private long getRealtimeTtlMs(String rawTableName) {
+    return _config.getLong(REALTIME_TTL_MS_CONFIG + "." + rawTableName, _defaultRealtimeTtlMs);
+  }
+
+  private void updateSizeInBytes(long delta) {
+    _brokerMetrics.setValueOfGlobalGauge(BrokerGauge.RESULT_CACHE_SIZE_IN_BYTES, _sizeInBytes.addAndGet(delta));
+  }
+
+  public static final class CacheKey {
+    private final String _rawTableName;
+    private final String _normalizedRequest;
+    private final long _ttlMs;
+
+    private CacheKey(String rawTableName, String normalizedRequest, long ttlMs) {
+      _rawTableName = rawTableName;
+      _normalizedRequest = normalizedRequest;
+      _ttlMs = ttlMs;
+    }
+
+    private int getSizeInBytes() {
+      return 2 * (_rawTableName.length() + _normalizedRequest.length());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof CacheKey)) {
+        return false;
+      }
+      CacheKey that = (CacheKey) o;
+      return _rawTableName.equals(that._rawTableName) && _normalizedRequest.equals(that._normalizedRequest);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * _rawTableName.hashCode() + _normalizedRequest.hashCode();
+    }
+  }
+
+  private static final class CacheEntry {
+    private final byte[] _serializedResponse;
+    private final long _expirationTimeMs;
+
+    private CacheEntry(byte[] serializedResponse, long expirationTimeMs) {
+      _serializedResponse = serializedResponse;
+      _expirationTimeMs = expirationTimeMs;
+    }
+
+    private int getSizeInBytes() {
+      return _serializedResponse.length;
+    }
+  }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.broker.requesthandler;
+
+import com.linkedin.pinot.common.exception.QueryException;
+import com.linkedin.pinot.common.metrics.BrokerMetrics;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.BrokerResponse;
+import com.linkedin.pinot.common.response.broker.BrokerResponseNative;
+import com.linkedin.pinot.common.response.broker.QueryProcessingException;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import com.yammer.metrics.core.MetricsRegistry;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class BrokerResultCacheTest {
+  private static final Pql2Compiler COMPILER = new Pql2Compiler();
+  private static final BrokerMetrics BROKER_METRICS = new BrokerMetrics(new MetricsRegistry());
+  private static final String TABLE_NAME = "myTable";
+
+  @Test
+  public void testOfflineQuery() throws Exception {
+    BrokerResultCache cache = new BrokerResultCache(new PropertiesConfiguration(), BROKER_METRICS);
+
+    BrokerResultCache.CacheKey key =
+        cache.getCacheKey(TABLE_NAME, compile("select count(*) from myTable"), 1L, null, -1L);
+    Assert.assertNotNull(key);
+    Assert.assertNull(cache.get(key));
+    cache.put(key, createResponse(10L));
+    Assert.assertTrue(cache.getSizeInBytes() > 0L);
+
+    // Same query with different formatting hits the cache
+    BrokerResultCache.CacheKey sameKey =
+        cache.getCacheKey(TABLE_NAME, compile("SELECT COUNT(*)   FROM myTable"), 1L, null, -1L);
+    BrokerResponse cachedResponse = cache.get(sameKey);
+    Assert.assertNotNull(cachedResponse);
+    Assert.assertEquals(cachedResponse.getTotalDocs(), 10L);
+
+    // Routing table change invalidates the cached response
+    Assert.assertNull(cache.get(cache.getCacheKey(TABLE_NAME, compile("select count(*) from myTable"), 2L, null, -1L)));
+
+    // Filtered queries hit the cache even though the filter query ids differ for each compilation
+    String filteredQuery = "select count(*) from myTable where a = 1 and (b > 2 or c in ('x', 'y'))";
+    BrokerResultCache.CacheKey filteredKey = cache.getCacheKey(TABLE_NAME, compile(filteredQuery), 1L, null, -1L);
+    cache.put(filteredKey, createResponse(5L));
+    cachedResponse = cache.get(cache.getCacheKey(TABLE_NAME, compile(filteredQuery), 1L, null, -1L));
+    Assert.assertNotNull(cachedResponse);
+    Assert.assertEquals(cachedResponse.getTotalDocs(), 5L);
+
+    // Different query misses the cache
+    Assert.assertNull(
+        cache.get(cache.getCacheKey(TABLE_NAME, compile("select count(*) from myTable where a = 1"), 1L, null, -1L)));
+
+    // Traced queries and tables without routing table are not cached
+    BrokerRequest tracedRequest = compile("select count(*) from myTable");
+    tracedRequest.setEnableTrace(true);
+    Assert.assertNull(cache.getCacheKey(TABLE_NAME, tracedRequest, 1L, null, -1L));
+    Assert.assertNull(cache.getCacheKey(TABLE_NAME, compile("select count(*) from myTable"), -1L, null, -1L));
+  }
+
+  @Test
+  public void testRealtimeTtl() throws Exception {
+    PropertiesConfiguration config = new PropertiesConfiguration();
+    config.setProperty(BrokerResultCache.REALTIME_TTL_MS_CONFIG + ".otherTable", 60000L);
+    BrokerResultCache cache = new BrokerResultCache(config, BROKER_METRICS);
+
+    // Realtime queries are not cached by default
+    Assert.assertNull(cache.getCacheKey(TABLE_NAME, null, -1L, compile("select count(*) from myTable"), 1L));
+
+    BrokerResultCache.CacheKey key =
+        cache.getCacheKey("otherTable", null, -1L, compile("select count(*) from otherTable"), 1L);
+    Assert.assertNotNull(key);
+    cache.put(key, createResponse(10L));
+    Assert.assertNotNull(cache.get(key));
+
+    // Per table override can disable caching
+    config.setProperty(BrokerResultCache.REALTIME_TTL_MS_CONFIG + ".otherTable", -1L);
+    Assert.assertNull(cache.getCacheKey("otherTable", null, -1L, compile("select count(*) from otherTable"), 1L));
+
+    // Expired entries are not served
+    config.setProperty(BrokerResultCache.REALTIME_TTL_MS_CONFIG, 1L);
+    config.clearProperty(BrokerResultCache.REALTIME_TTL_MS_CONFIG + ".otherTable");
+    BrokerResultCache shortTtlCache = new BrokerResultCache(config, BROKER_METRICS);
+    key = shortTtlCache.getCacheKey("otherTable", null, -1L, compile("select count(*) from otherTable"), 1L);
+    shortTtlCache.put(key, createResponse(10L));
+    Thread.sleep(10L);
+    Assert.assertNull(shortTtlCache.get(key));
+    Assert.assertEquals(shortTtlCache.size(), 0L);
+  }
+
+  @Test
+  public void testBadResponsesNotCached() throws Exception {
+    BrokerResultCache cache = new BrokerResultCache(new PropertiesConfiguration(), BROKER_METRICS);
+    BrokerResultCache.CacheKey key =
+        cache.getCacheKey(TABLE_NAME, compile("select count(*) from myTable"), 1L, null, -1L);
+
+    BrokerResponseNative responseWithException = createResponse(10L);
+    responseWithException.addToExceptions(
+        new QueryProcessingException(QueryException.BROKER_TIMEOUT_ERROR_CODE, "timeout"));
+    cache.put(key, responseWithException);
+    Assert.assertEquals(cache.size(), 0L);
+
+    BrokerResponseNative partialResponse = createResponse(10L);
+    partialResponse.setNumServersResponded(1);
+    cache.put(key, partialResponse);
+    Assert.assertEquals(cache.size(), 0L);
+  }
+
+  @Test
+  public void testSizeBound() throws Exception {
+    PropertiesConfiguration config = new PropertiesConfiguration();
+    config.setProperty(BrokerResultCache.MAX_BYTES_CONFIG, 1L);
+    BrokerResultCache cache = new BrokerResultCache(config, BROKER_METRICS);
+    BrokerResultCache.CacheKey key =
+        cache.getCacheKey(TABLE_NAME, compile("select count(*) from myTable"), 1L, null, -1L);
+    cache.put(key, createResponse(10L));
+    Assert.assertNull(cache.get(key));
+    Assert.assertEquals(cache.getSizeInBytes(), 0L);
+  }
+
+  private static BrokerRequest compile(String pql) {
+    BrokerRequest brokerRequest = COMPILER.compileToBrokerRequest(pql);
+    return new BrokerRequestOptimizer().optimize(brokerRequest);
+  }
+
+  private static BrokerResponseNative createResponse(long totalDocs) {
+    BrokerResponseNative brokerResponse = new BrokerResponseNative();
+    brokerResponse.setTotalDocs(totalDocs);
+    brokerResponse.setNumServersQueried(2);
+    brokerResponse.setNumServersResponded(2);
+    return brokerResponse;
+  }
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.config;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.codehaus.jackson.annotate.JsonIgnoreProperties;
+
+
+/**
+ * Partitioning of the data of a table, by column.
+ * <p>The segments record the partitions of these columns they contain, which the broker and the servers use to skip
+ * the segments that cannot match an equality or IN predicate on them. Realtime segments are only pruned once
+ * committed, so partitioning a realtime table by the same column as its Kafka topic keeps the pruning effective.
+ * <pre>
+ *   "segmentPartitionConfig": {
+ *     "columnPartitionMap": {
+ *       "memberId": {"functionName": "Murmur", "numPartitions": 8}
+ *     }
+ *   }
+ * </pre>
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class SegmentPartitionConfig {
+  private Map<String, ColumnPartitionConfig> columnPartitionMap = new HashMap<>();
+
+  public SegmentPartitionConfig() {
+  }
+
+  public SegmentPartitionConfig(Map<String, ColumnPartitionConfig> columnPartitionMap) {
+    this.columnPartitionMap = columnPartitionMap;
+  }
+
+  public Map<String, ColumnPartitionConfig> getColumnPartitionMap() {
+    return columnPartitionMap;
+  }
+
+  public void setColumnPartitionMap(Map<String, ColumnPartitionConfig> columnPartitionMap) {
+    this.columnPartitionMap = columnPartitionMap;
+  }
+
+  @Override
+  public String toString() {
+    return columnPartitionMap.toString();
+  }
+}
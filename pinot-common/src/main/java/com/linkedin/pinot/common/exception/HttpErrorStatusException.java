@@ -0,0 +1,42 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.exception;
+
+import org.apache.commons.httpclient.HttpException;
+
+
+/**
+ * Exception thrown when an HTTP request gets an error status code (4xx or 5xx) as response.
+ */
+public class HttpErrorStatusException extends HttpException {
+  private final int _statusCode;
+
+  public HttpErrorStatusException(String message, int statusCode) {
+    super(message);
+    _statusCode = statusCode;
+  }
+
+  public int getStatusCode() {
+    return _statusCode;
+  }
+
+  /**
+   * Returns whether the error is on the client side (4xx), i.e. sending the same request again fails the same way.
+   */
+  public boolean isClientError() {
+    return _statusCode < 500;
+  }
+}
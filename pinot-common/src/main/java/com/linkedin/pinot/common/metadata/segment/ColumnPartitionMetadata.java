@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.metadata.segment;
+
+import com.linkedin.pinot.common.partition.PartitionFunction;
+import com.linkedin.pinot.common.partition.PartitionFunctionFactory;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import org.codehaus.jackson.annotate.JsonCreator;
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+import static com.linkedin.pinot.common.utils.EqualityUtils.hashCodeOf;
+import static com.linkedin.pinot.common.utils.EqualityUtils.isEqual;
+import static com.linkedin.pinot.common.utils.EqualityUtils.isNullOrNotSameClass;
+import static com.linkedin.pinot.common.utils.EqualityUtils.isSameReference;
+
+
+/**
+ * Partitions of a column contained in a segment, along with the partition function they are computed with.
+ */
+public class ColumnPartitionMetadata {
+  private final String _functionName;
+  private final int _numPartitions;
+  private final Set<Integer> _partitions;
+  private final PartitionFunction _partitionFunction;
+
+  @JsonCreator
+  public ColumnPartitionMetadata(@JsonProperty("functionName") String functionName,
+      @JsonProperty("numPartitions") int numPartitions, @JsonProperty("partitions") Set<Integer> partitions) {
+    _partitionFunction = PartitionFunctionFactory.getPartitionFunction(functionName, numPartitions);
+    _functionName = _partitionFunction.getName();
+    _numPartitions = numPartitions;
+    _partitions = Collections.unmodifiableSet(new TreeSet<>(partitions));
+  }
+
+  @JsonProperty("functionName")
+  public String getFunctionName() {
+    return _functionName;
+  }
+
+  @JsonProperty("numPartitions")
+  public int getNumPartitions() {
+    return _numPartitions;
+  }
+
+  @JsonProperty("partitions")
+  public Set<Integer> getPartitions() {
+    return _partitions;
+  }
+
+  @JsonIgnore
+  public PartitionFunction getPartitionFunction() {
+    return _partitionFunction;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (isSameReference(this, o)) {
+      return true;
+    }
+    if (isNullOrNotSameClass(this, o)) {
+      return false;
+    }
+    ColumnPartitionMetadata that = (ColumnPartitionMetadata) o;
+    return isEqual(_functionName, that._functionName) && isEqual(_numPartitions, that._numPartitions) && isEqual(
+        _partitions, that._partitions);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = hashCodeOf(_functionName);
+    result = hashCodeOf(result, _numPartitions);
+    result = hashCodeOf(result, _partitions);
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return _partitionFunction + _partitions.toString();
+  }
+}
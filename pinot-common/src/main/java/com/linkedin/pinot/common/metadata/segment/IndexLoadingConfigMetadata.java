@@ -34,11 +34,13 @@ public class IndexLoadingConfigMetadata {
   public static final String KEY_OF_SEGMENT_FORMAT_VERSION = "segment.format.version";
   public static final String KEY_OF_ENABLE_DEFAULT_COLUMNS = "enable.default.columns";
   public static final String KEY_OF_STAR_TREE_FORMAT_VERSION = "startree.format.version";
+  public static final String KEY_OF_LAZY_COLUMN_LOADING = "lazy.column.loading";
 
   private final Set<String> _loadingInvertedIndexColumnSet = new HashSet<String>();
   private final String DEFAULT_SEGMENT_FORMAT = "v1";
   private String segmentVersionToLoad;
   private boolean enableDefaultColumns;
+  private boolean lazyColumnLoading;
   private final String starTreeVersionToLoad;
 
   public IndexLoadingConfigMetadata(Configuration tableDataManagerConfig) {
@@ -49,6 +51,7 @@ public class IndexLoadingConfigMetadata {
 
     segmentVersionToLoad = tableDataManagerConfig.getString(KEY_OF_SEGMENT_FORMAT_VERSION, DEFAULT_SEGMENT_FORMAT);
     enableDefaultColumns = tableDataManagerConfig.getBoolean(KEY_OF_ENABLE_DEFAULT_COLUMNS, false);
+    lazyColumnLoading = tableDataManagerConfig.getBoolean(KEY_OF_LAZY_COLUMN_LOADING, false);
     starTreeVersionToLoad = tableDataManagerConfig.getString(KEY_OF_STAR_TREE_FORMAT_VERSION,
         CommonConstants.Server.DEFAULT_STAR_TREE_FORMAT_VERSION);
   }
@@ -81,6 +84,17 @@ public class IndexLoadingConfigMetadata {
     return enableDefaultColumns;
   }
 
+  public void setLazyColumnLoading(boolean lazyColumnLoading) {
+    this.lazyColumnLoading = lazyColumnLoading;
+  }
+
+  /**
+   * Returns true if the column indexes of a segment should only be loaded when a column is first accessed.
+   */
+  public boolean isLazyColumnLoading() {
+    return lazyColumnLoading;
+  }
+
   public String getStarTreeVersionToLoad() {
     return starTreeVersionToLoad;
   }
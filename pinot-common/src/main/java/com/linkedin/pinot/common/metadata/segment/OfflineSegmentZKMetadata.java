@@ -32,6 +32,7 @@ public class OfflineSegmentZKMetadata extends SegmentZKMetadata {
   private String _downloadUrl = null;
   private long _pushTime = Long.MIN_VALUE;
   private long _refreshTime = Long.MIN_VALUE;
+  private long _sizeInBytes = -1;
 
   public OfflineSegmentZKMetadata() {
     setSegmentType(SegmentType.OFFLINE);
@@ -43,6 +44,7 @@ public class OfflineSegmentZKMetadata extends SegmentZKMetadata {
     _downloadUrl = znRecord.getSimpleField(CommonConstants.Segment.Offline.DOWNLOAD_URL);
     _pushTime = znRecord.getLongField(CommonConstants.Segment.Offline.PUSH_TIME, Long.MIN_VALUE);
     _refreshTime = znRecord.getLongField(CommonConstants.Segment.Offline.REFRESH_TIME, Long.MIN_VALUE);
+    _sizeInBytes = znRecord.getLongField(CommonConstants.Segment.Offline.SIZE_IN_BYTES, -1);
   }
 
   public String getDownloadUrl() {
@@ -69,12 +71,24 @@ public class OfflineSegmentZKMetadata extends SegmentZKMetadata {
     _refreshTime = currentTimeMillis;
   }
 
+  /**
+   * Returns the size in bytes of the untarred segment, or -1 if unknown (e.g. segments pushed by older controllers).
+   */
+  public long getSizeInBytes() {
+    return _sizeInBytes;
+  }
+
+  public void setSizeInBytes(long sizeInBytes) {
+    _sizeInBytes = sizeInBytes;
+  }
+
   @Override
   public ZNRecord toZNRecord() {
     ZNRecord znRecord = super.toZNRecord();
     znRecord.setSimpleField(CommonConstants.Segment.Offline.DOWNLOAD_URL, _downloadUrl);
     znRecord.setLongField(CommonConstants.Segment.Offline.PUSH_TIME, _pushTime);
     znRecord.setLongField(CommonConstants.Segment.Offline.REFRESH_TIME, _refreshTime);
+    znRecord.setLongField(CommonConstants.Segment.Offline.SIZE_IN_BYTES, _sizeInBytes);
     return znRecord;
   }
 
@@ -93,6 +107,8 @@ public class OfflineSegmentZKMetadata extends SegmentZKMetadata {
     result.append(newline);
     result.append("  " + CommonConstants.Segment.Offline.REFRESH_TIME + " : " + _refreshTime);
     result.append(newline);
+    result.append("  " + CommonConstants.Segment.Offline.SIZE_IN_BYTES + " : " + _sizeInBytes);
+    result.append(newline);
     result.append("}");
     return result.toString();
   }
@@ -111,6 +127,7 @@ public class OfflineSegmentZKMetadata extends SegmentZKMetadata {
     return super.equals(metadata) &&
         isEqual(_pushTime, metadata._pushTime) &&
         isEqual(_refreshTime, metadata._refreshTime) &&
+        isEqual(_sizeInBytes, metadata._sizeInBytes) &&
         isEqual(_downloadUrl, metadata._downloadUrl);
   }
 
@@ -120,6 +137,7 @@ public class OfflineSegmentZKMetadata extends SegmentZKMetadata {
     result = hashCodeOf(result, _downloadUrl);
     result = hashCodeOf(result, _pushTime);
     result = hashCodeOf(result, _refreshTime);
+    result = hashCodeOf(result, _sizeInBytes);
     return result;
   }
 
@@ -129,6 +147,7 @@ public class OfflineSegmentZKMetadata extends SegmentZKMetadata {
     configMap.put(CommonConstants.Segment.Offline.DOWNLOAD_URL, _downloadUrl);
     configMap.put(CommonConstants.Segment.Offline.PUSH_TIME, Long.toString(_pushTime));
     configMap.put(CommonConstants.Segment.Offline.REFRESH_TIME, Long.toString(_refreshTime));
+    configMap.put(CommonConstants.Segment.Offline.SIZE_IN_BYTES, Long.toString(_sizeInBytes));
     configMap.put(CommonConstants.Segment.SEGMENT_TYPE, SegmentType.OFFLINE.toString());
     return configMap;
   }
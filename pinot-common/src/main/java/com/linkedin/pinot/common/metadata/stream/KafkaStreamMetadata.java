@@ -45,12 +45,16 @@ public class KafkaStreamMetadata implements StreamMetadata {
   private final String _decoderClass;
   private final long _kafkaConnectionTimeoutMillis;
   private final int _kafkaFetchTimeoutMillis;
+  private final int _kafkaDecodeThreads;
+  private final int _kafkaPipelineQueueSize;
   private final Map<String, String> _decoderProperties = new HashMap<String, String>();
   private final Map<String, String> _kafkaConsumerProperties = new HashMap<String, String>();
   private final Map<String, String> _streamConfigMap = new HashMap<String, String>();
 
   private static final long DEFAULT_KAFKA_CONNECTION_TIMEOUT_MILLIS = 30000L;
   private static final int DEFAULT_KAFKA_FETCH_TIMEOUT_MILLIS = 5000;
+  private static final int DEFAULT_KAFKA_DECODE_THREADS = 0;
+  private static final int DEFAULT_KAFKA_PIPELINE_QUEUE_SIZE = 2;
 
   public KafkaStreamMetadata(Map<String, String> streamConfigMap) {
     _zkBrokerUrl =
@@ -113,6 +117,11 @@ public class KafkaStreamMetadata implements StreamMetadata {
     }
     _kafkaFetchTimeoutMillis = kafkaFetchTimeoutMillis;
 
+    _kafkaDecodeThreads = parseIntConfig(streamConfigMap, StringUtil.join(".", Helix.DataSource.STREAM_PREFIX,
+        Helix.DataSource.Realtime.Kafka.KAFKA_DECODE_THREADS), DEFAULT_KAFKA_DECODE_THREADS);
+    _kafkaPipelineQueueSize = parseIntConfig(streamConfigMap, StringUtil.join(".", Helix.DataSource.STREAM_PREFIX,
+        Helix.DataSource.Realtime.Kafka.KAFKA_PIPELINE_QUEUE_SIZE), DEFAULT_KAFKA_PIPELINE_QUEUE_SIZE);
+
     for (String key : streamConfigMap.keySet()) {
       if (key.startsWith(CommonConstants.Helix.DataSource.STREAM_PREFIX + ".")) {
         _streamConfigMap.put(key, streamConfigMap.get(key));
@@ -130,6 +139,19 @@ public class KafkaStreamMetadata implements StreamMetadata {
     }
   }
 
+  private static int parseIntConfig(Map<String, String> streamConfigMap, String key, int defaultValue) {
+    String value = streamConfigMap.get(key);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value);
+    } catch (Exception e) {
+      LOGGER.warn("Caught exception while parsing {}, defaulting to {}", key, defaultValue, e);
+      return defaultValue;
+    }
+  }
+
   public boolean hasHighLevelKafkaConsumerType() {
     return _consumerTypes.contains(ConsumerType.highLevel);
   }
@@ -146,6 +168,18 @@ public class KafkaStreamMetadata implements StreamMetadata {
     return _kafkaFetchTimeoutMillis;
   }
 
+  /**
+   * Returns the number of threads decoding the messages of a low level consumer partition, 0 if they are decoded
+   * serially by the consumer thread.
+   */
+  public int getKafkaDecodeThreads() {
+    return _kafkaDecodeThreads;
+  }
+
+  public int getKafkaPipelineQueueSize() {
+    return _kafkaPipelineQueueSize;
+  }
+
   public String getKafkaTopicName() {
     return _kafkaTopicName;
   }
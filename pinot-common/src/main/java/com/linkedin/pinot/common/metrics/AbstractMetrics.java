@@ -346,6 +346,17 @@ public abstract class AbstractMetrics<QP extends AbstractMetrics.QueryPhase, M e
     }
   }
 
+  /**
+   * Adds a new table gauge whose values are retrieved from a callback function.
+   *
+   * @param tableName The table name
+   * @param gauge The gauge to use
+   * @param valueCallback The callback function used to retrieve the value of the gauge
+   */
+  public void addCallbackTableGauge(final String tableName, final G gauge, final Callable<Long> valueCallback) {
+    addCallbackGauge(gauge.getGaugeName() + "." + tableName, valueCallback);
+  }
+
   /**
    * Adds a new gauge whose values are retrieved from a callback function.
    *
@@ -23,7 +23,7 @@ import com.linkedin.pinot.common.Utils;
 *
 */
 public enum BrokerGauge implements AbstractMetrics.Gauge {
-  ;
+  RESULT_CACHE_SIZE_IN_BYTES("bytes", true);
 
   private final String brokerGaugeName;
   private final String unit;
@@ -25,6 +25,8 @@ public enum ControllerGauge implements AbstractMetrics.Gauge {
   NUMBER_OF_REPLICAS("replicas", false),
   SEGMENTS_IN_ERROR_STATE("segments", false),
   IDEALSTATE_ZNODE_SIZE("idealstate", false),
+  IDEAL_STATE_UPDATE_BATCH_SIZE("updates", false),
+  SEGMENTS_PENDING_DELETION("segments", true),
   REALTIME_TABLE_COUNT("TableCount", true),
   OFFLINE_TABLE_COUNT("TableCount", true);
 
@@ -46,7 +46,11 @@ public enum ControllerMeter implements AbstractMetrics.Meter {
   LLC_STATE_MACHINE_ABORTS("aborts", false),
   LLC_AUTO_CREATED_PARTITIONS("creates", false),
   LLC_ZOOKEPER_UPDATE_FAILURES("failures", false),
-  LLC_KAFKA_DATA_LOSS("dataLoss", false);
+  LLC_KAFKA_DATA_LOSS("dataLoss", false),
+  IDEAL_STATE_UPDATES("updates", false),
+  IDEAL_STATE_BATCHED_UPDATES("updates", false),
+  RETENTION_EXPIRED_SEGMENTS("segments", false),
+  SEGMENTS_DELETED("segments", false);
 
 
   private final String brokerMeterName;
@@ -23,7 +23,7 @@ import com.linkedin.pinot.common.Utils;
 *
 */
 public enum ControllerTimer implements AbstractMetrics.Timer {
-  ;
+  IDEAL_STATE_UPDATE_TIME_MS("milliseconds", false);
 
   private final String timerName;
   private final boolean global;
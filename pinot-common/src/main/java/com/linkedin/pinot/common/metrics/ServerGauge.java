@@ -30,7 +30,14 @@ public enum ServerGauge implements AbstractMetrics.Gauge {
   LAST_REALTIME_SEGMENT_INITIAL_CONSUMPTION_DURATION_SECONDS("seconds", false),
   LAST_REALTIME_SEGMENT_CATCHUP_DURATION_SECONDS("seconds", false),
   LAST_REALTIME_SEGMENT_COMPLETION_DURATION_SECONDS("seconds", false),
-  KAFKA_PARTITION_OFFSET_LAG("messages", false);
+  KAFKA_PARTITION_OFFSET_LAG("messages", false),
+  LOADED_COLUMN_INDEXES("columns", false),
+  SEGMENT_RESULT_CACHE_HIT_RATIO_PERCENT("percent", false),
+  REALTIME_PIPELINE_FETCH_THROUGHPUT("messagesPerSecond", false),
+  REALTIME_PIPELINE_DECODE_THROUGHPUT("messagesPerSecond", false),
+  REALTIME_PIPELINE_INDEX_THROUGHPUT("messagesPerSecond", false),
+  REALTIME_OFFHEAP_MEMORY_ALLOCATED("bytes", false),
+  REALTIME_SEGMENT_MEMORY_USED("bytes", false);
 
   private final String gaugeName;
   private final String unit;
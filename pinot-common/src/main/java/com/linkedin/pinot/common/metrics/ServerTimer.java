@@ -23,7 +23,11 @@ import com.linkedin.pinot.common.Utils;
 *
 */
 public enum ServerTimer implements AbstractMetrics.Timer {
-  CURRENT_MSG_EVENT_TIMESTAMP_LAG("currentMsgEventTimestampLag", false);
+  CURRENT_MSG_EVENT_TIMESTAMP_LAG("currentMsgEventTimestampLag", false),
+  // Time taken to replace a completed low level consumer segment, per way of getting the immutable segment
+  LLC_SEGMENT_COMPLETION_BUILD_TIME_MS("milliseconds", false),
+  LLC_SEGMENT_COMPLETION_DOWNLOAD_TIME_MS("milliseconds", false),
+  LLC_SEGMENT_COMPLETION_LOCAL_COPY_TIME_MS("milliseconds", false);
 
   private final String timerName;
   private final boolean global;
@@ -206,6 +206,28 @@ public class ValidationMetrics {
     makeGauge(fullGaugeName, makeMetricName(fullGaugeName), _storedValueGaugeFactory, segmentCount);
   }
 
+  /**
+   * Updates the gauges about the last validation run.
+   *
+   * @param durationMillis Duration of the validation run, in milliseconds
+   * @param validatedTableCount Number of tables validated during the run, i.e. the tables that changed since the
+   *                            previous run, or all the tables for a full resync
+   * @param zkStatReadCount Number of segment metadata znode stats read from ZK during the run
+   * @param zkMetadataReadCount Number of segment metadata znodes read from ZK during the run
+   */
+  public void updateValidationRunGauges(final long durationMillis, final int validatedTableCount,
+      final long zkStatReadCount, final long zkMetadataReadCount) {
+    final String durationGaugeName = makeGaugeName("validation", "lastRunDurationMillis");
+    makeGauge(durationGaugeName, makeMetricName(durationGaugeName), _storedValueGaugeFactory, durationMillis);
+    final String tableCountGaugeName = makeGaugeName("validation", "lastRunValidatedTableCount");
+    makeGauge(tableCountGaugeName, makeMetricName(tableCountGaugeName), _storedValueGaugeFactory, validatedTableCount);
+    final String statReadGaugeName = makeGaugeName("validation", "lastRunZkStatReadCount");
+    makeGauge(statReadGaugeName, makeMetricName(statReadGaugeName), _storedValueGaugeFactory, zkStatReadCount);
+    final String metadataReadGaugeName = makeGaugeName("validation", "lastRunZkMetadataReadCount");
+    makeGauge(metadataReadGaugeName, makeMetricName(metadataReadGaugeName), _storedValueGaugeFactory,
+        zkMetadataReadCount);
+  }
+
   private String makeGaugeName(final String resource, final String gaugeName) {
     return "pinot.controller." + resource + "." + gaugeName;
   }
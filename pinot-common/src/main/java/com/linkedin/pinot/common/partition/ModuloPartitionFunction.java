@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.partition;
+
+import com.google.common.base.Preconditions;
+
+
+/**
+ * Partitions integral values by their modulo, e.g. for data partitioned by a numeric id.
+ */
+public class ModuloPartitionFunction implements PartitionFunction {
+  public static final String NAME = "Modulo";
+
+  private final int _numPartitions;
+
+  public ModuloPartitionFunction(int numPartitions) {
+    Preconditions.checkArgument(numPartitions > 0, "Number of partitions must be > 0, got: %s", numPartitions);
+    _numPartitions = numPartitions;
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public int getNumPartitions() {
+    return _numPartitions;
+  }
+
+  @Override
+  public int getPartition(Object value) {
+    long longValue;
+    if (value instanceof Number) {
+      longValue = ((Number) value).longValue();
+    } else {
+      longValue = Long.parseLong(value.toString().trim());
+    }
+    // Negative values are mapped to the same partitions as the positive ones with the same remainder
+    int partition = (int) (longValue % _numPartitions);
+    return (partition < 0) ? partition + _numPartitions : partition;
+  }
+
+  @Override
+  public String toString() {
+    return NAME + "(" + _numPartitions + ")";
+  }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.partition;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+
+
+/**
+ * Partitions values by the 32-bit murmur2 hash of the UTF-8 bytes of their string representation.
+ * <p>This is the partitioning of the default Kafka producer partitioner for string keys, so that the partitions of a
+ * Kafka topic keyed by the column are the partitions of this function.
+ */
+public class MurmurPartitionFunction implements PartitionFunction {
+  public static final String NAME = "Murmur";
+
+  private static final int SEED = 0x9747b28c;
+  private static final int M = 0x5bd1e995;
+  private static final int R = 24;
+
+  private final int _numPartitions;
+
+  public MurmurPartitionFunction(int numPartitions) {
+    Preconditions.checkArgument(numPartitions > 0, "Number of partitions must be > 0, got: %s", numPartitions);
+    _numPartitions = numPartitions;
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public int getNumPartitions() {
+    return _numPartitions;
+  }
+
+  @Override
+  public int getPartition(Object value) {
+    return (murmur2(value.toString().getBytes(Charsets.UTF_8)) & Integer.MAX_VALUE) % _numPartitions;
+  }
+
+  /**
+   * 32-bit murmur2 hash, as computed by the Kafka producer.
+   */
+  static int murmur2(byte[] data) {
+    int length = data.length;
+    int h = SEED ^ length;
+    int length4 = length / 4;
+
+    for (int i = 0; i < length4; i++) {
+      int i4 = i * 4;
+      int k = (data[i4] & 0xff) + ((data[i4 + 1] & 0xff) << 8) + ((data[i4 + 2] & 0xff) << 16)
+          + ((data[i4 + 3] & 0xff) << 24);
+      k *= M;
+      k ^= k >>> R;
+      k *= M;
+      h *= M;
+      h ^= k;
+    }
+
+    switch (length % 4) {
+      case 3:
+        h ^= (data[(length & ~3) + 2] & 0xff) << 16;
+      case 2:
+        h ^= (data[(length & ~3) + 1] & 0xff) << 8;
+      case 1:
+        h ^= data[length & ~3] & 0xff;
+        h *= M;
+    }
+
+    h ^= h >>> 13;
+    h *= M;
+    h ^= h >>> 15;
+    return h;
+  }
+
+  @Override
+  public String toString() {
+    return NAME + "(" + _numPartitions + ")";
+  }
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.partition;
+
+import com.google.common.base.Splitter;
+import com.linkedin.pinot.common.metadata.segment.ColumnPartitionMetadata;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.utils.request.FilterQueryTree;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+
+/**
+ * Decides whether a segment can match the filter of a query, from the partitions of its partitioned columns.
+ * <p>An equality or IN predicate on a partitioned column can only match the segments containing the partition of one
+ * of its values. AND filters cannot match if any of their children cannot match, and OR filters if none of their
+ * children can match. Any other predicate is considered to match.
+ * <p>The partitions of the values of each predicate are computed once per partition function, and reused across the
+ * segments, so a partition filter should be used for all the segments of a query. It is not thread safe.
+ */
+public class PartitionFilter {
+  private static final Splitter IN_VALUE_SPLITTER = Splitter.on("\t\t");
+
+  private final FilterQueryTree _filterQueryTree;
+  // Partitions of the values of the predicates, by predicate and partition function, or null if they cannot be
+  // computed (e.g. values that cannot be parsed by the partition function)
+  private final Map<FilterQueryTree, Map<String, Set<Integer>>> _valuePartitionsMap = new IdentityHashMap<>();
+
+  private PartitionFilter(FilterQueryTree filterQueryTree) {
+    _filterQueryTree = filterQueryTree;
+  }
+
+  /**
+   * Returns the partition filter of the given query, or null if it has no filter.
+   */
+  @Nullable
+  public static PartitionFilter forBrokerRequest(BrokerRequest brokerRequest) {
+    if (brokerRequest.getFilterQuery() == null) {
+      return null;
+    }
+    FilterQueryTree filterQueryTree = RequestUtils.generateFilterQueryTree(brokerRequest);
+    if (filterQueryTree == null) {
+      return null;
+    }
+    return new PartitionFilter(filterQueryTree);
+  }
+
+  /**
+   * Returns whether a segment with the given partitions, by partitioned column, can match the filter.
+   */
+  public boolean canMatch(Map<String, ColumnPartitionMetadata> columnPartitionMap) {
+    return canMatch(_filterQueryTree, columnPartitionMap);
+  }
+
+  private boolean canMatch(FilterQueryTree filterQueryTree, Map<String, ColumnPartitionMetadata> columnPartitionMap) {
+    List<FilterQueryTree> children = filterQueryTree.getChildren();
+    if (children != null && !children.isEmpty()) {
+      switch (filterQueryTree.getOperator()) {
+        case AND:
+          for (FilterQueryTree child : children) {
+            if (!canMatch(child, columnPartitionMap)) {
+              return false;
+            }
+          }
+          return true;
+        case OR:
+          for (FilterQueryTree child : children) {
+            if (canMatch(child, columnPartitionMap)) {
+              return true;
+            }
+          }
+          return false;
+        default:
+          return true;
+      }
+    }
+
+    ColumnPartitionMetadata columnPartitionMetadata = columnPartitionMap.get(filterQueryTree.getColumn());
+    if (columnPartitionMetadata == null) {
+      return true;
+    }
+    Set<Integer> valuePartitions = getValuePartitions(filterQueryTree, columnPartitionMetadata.getPartitionFunction());
+    if (valuePartitions == null) {
+      return true;
+    }
+    Set<Integer> segmentPartitions = columnPartitionMetadata.getPartitions();
+    for (Integer valuePartition : valuePartitions) {
+      if (segmentPartitions.contains(valuePartition)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Nullable
+  private Set<Integer> getValuePartitions(FilterQueryTree predicate, PartitionFunction partitionFunction) {
+    Map<String, Set<Integer>> valuePartitionsByFunction = _valuePartitionsMap.get(predicate);
+    if (valuePartitionsByFunction == null) {
+      valuePartitionsByFunction = new HashMap<>();
+      _valuePartitionsMap.put(predicate, valuePartitionsByFunction);
+    }
+    String functionKey = partitionFunction.getName() + ":" + partitionFunction.getNumPartitions();
+    if (valuePartitionsByFunction.containsKey(functionKey)) {
+      return valuePartitionsByFunction.get(functionKey);
+    }
+    Set<Integer> valuePartitions = computeValuePartitions(predicate, partitionFunction);
+    valuePartitionsByFunction.put(functionKey, valuePartitions);
+    return valuePartitions;
+  }
+
+  @Nullable
+  private static Set<Integer> computeValuePartitions(FilterQueryTree predicate, PartitionFunction partitionFunction) {
+    List<String> values = predicate.getValue();
+    if (values == null || values.isEmpty()) {
+      return null;
+    }
+    Iterable<String> predicateValues;
+    switch (predicate.getOperator()) {
+      case EQUALITY:
+        predicateValues = values.subList(0, 1);
+        break;
+      case IN:
+        predicateValues = IN_VALUE_SPLITTER.split(values.get(0));
+        break;
+      default:
+        return null;
+    }
+    Set<Integer> valuePartitions = new HashSet<>();
+    try {
+      for (String value : predicateValues) {
+        valuePartitions.add(partitionFunction.getPartition(value));
+      }
+    } catch (RuntimeException e) {
+      // Values that do not fit the partition function, e.g. non numeric values for the modulo partition function
+      return null;
+    }
+    return valuePartitions;
+  }
+}
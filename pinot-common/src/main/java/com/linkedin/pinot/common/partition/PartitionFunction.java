@@ -0,0 +1,39 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.partition;
+
+/**
+ * Maps the values of a column to a fixed number of partitions.
+ * <p>Data partitioned by a column upstream (e.g. a Kafka topic keyed by that column) can be described by a partition
+ * function, which lets the segments record the partitions they contain, and the queries with an equality or IN
+ * predicate on that column skip the segments which cannot contain any of the values.
+ */
+public interface PartitionFunction {
+
+  /**
+   * Returns the name of the partition function, which together with the number of partitions fully describes it.
+   */
+  String getName();
+
+  int getNumPartitions();
+
+  /**
+   * Returns the partition of the given value, in [0, number of partitions).
+   * <p>Values may be given as their typed value (e.g. while creating a segment) or as their string representation
+   * (e.g. from a query), and both must map to the same partition.
+   */
+  int getPartition(Object value);
+}
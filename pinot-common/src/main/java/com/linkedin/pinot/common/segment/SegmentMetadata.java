@@ -17,6 +17,7 @@ package com.linkedin.pinot.common.segment;
 
 import com.linkedin.pinot.common.data.MetricFieldSpec;
 import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.metadata.segment.SegmentPartitionMetadata;
 import java.util.Map;
 import javax.annotation.Nullable;
 import org.joda.time.Duration;
@@ -116,6 +117,13 @@ public interface SegmentMetadata {
   @Nullable
   String getDerivedColumn(String column, MetricFieldSpec.DerivedMetricType derivedMetricType);
 
+  /**
+   * Returns the partitions of the partitioned columns contained in the segment, or null if it has no partitioned
+   * column.
+   */
+  @Nullable
+  SegmentPartitionMetadata getPartitionMetadata();
+
   Map<String, String> toMap();
 
   boolean close();
@@ -77,7 +77,8 @@ public class CommonConstants {
       public static enum SegmentAssignmentStrategyType {
         RandomAssignmentStrategy,
         BalanceNumSegmentAssignmentStrategy,
-        BucketizedSegmentAssignmentStrategy;
+        BucketizedSegmentAssignmentStrategy,
+        BalanceSizeSegmentAssignmentStrategy;
       }
 
       public static class Schema {
@@ -109,6 +110,12 @@ public class CommonConstants {
          * to server assignment changes, it's possible to end up with more (or less) than this number of rows in memory.
          */
         public static final String REALTIME_SEGMENT_FLUSH_SIZE = "realtime.segment.flush.threshold.size";
+        /**
+         * Memory flush threshold in bytes for LLC realtime segments: a consuming segment completes once the estimated
+         * memory used by its rows reaches this threshold, or its share of the server off-heap memory budget if lower
+         * (see {@link CommonConstants.Server#CONFIG_OF_REALTIME_OFFHEAP_MEMORY_BUDGET}).
+         */
+        public static final String REALTIME_SEGMENT_FLUSH_MEMORY = "realtime.segment.flush.threshold.memory";
 
         public static enum StreamType {
           kafka
@@ -130,6 +137,10 @@ public class CommonConstants {
           public static final String KAFKA_FETCH_TIMEOUT_MILLIS = "kafka.fetch.timeout.ms";
           public static final String ZK_BROKER_URL = "kafka.zk.broker.url";
           public static final String KAFKA_BROKER_LIST = "kafka.broker.list";
+          // Number of threads decoding the messages of a low level consumer partition, 0 to decode them serially
+          public static final String KAFKA_DECODE_THREADS = "kafka.decode.threads";
+          // Number of fetched batches buffered between the fetch and the index stages when decoding in parallel
+          public static final String KAFKA_PIPELINE_QUEUE_SIZE = "kafka.pipeline.queue.size";
 
           // Consumer properties
           public static final String AUTO_OFFSET_RESET = "auto.offset.reset";
@@ -160,6 +171,8 @@ public class CommonConstants {
       public static final String GROUP_ID_SUFFIX = "kafka.hlc.groupId";
       public static final String PARTITION_SUFFIX = "kafka.hlc.partition";
       public static final String ADMIN_PORT_KEY = "adminPort";
+      // Relative query load of a server, used to place less data on servers serving hot tables
+      public static final String QUERY_LOAD_WEIGHT_KEY = "queryLoadWeight";
     }
 
     public static enum TableType {
@@ -193,6 +206,9 @@ public class CommonConstants {
   public static class Server {
     public static final String CONFIG_OF_INSTANCE_DATA_DIR = "pinot.server.instance.dataDir";
     public static final String CONFIG_OF_INSTANCE_SEGMENT_TAR_DIR = "pinot.server.instance.segmentTarDir";
+    // Data directories of the other servers sharing the file system of this server, from which the committed LLC
+    // segments are copied instead of being downloaded
+    public static final String CONFIG_OF_INSTANCE_PEER_DATA_DIRS = "pinot.server.instance.peer.data.dirs";
     public static final String CONFIG_OF_INSTANCE_READ_MODE = "pinot.server.instance.readMode";
     public static final String CONFIG_OF_INSTANCE_DATA_MANAGER_CLASS = "pinot.server.instance.data.manager.class";
     public static final String CONFIG_OF_INSTANCE_SEGMENT_METADATA_LOADER_CLASS =
@@ -208,6 +224,13 @@ public class CommonConstants {
         "pinot.server.segment.minRetryDelayMillis";
     public static final String CONFIG_OF_SEGMENT_FORMAT_VERSION = "pinot.server.instance.segment.format.version";
     public static final String CONFIG_OF_ENABLE_DEFAULT_COLUMNS = "pinot.server.instance.enable.default.columns";
+    public static final String CONFIG_OF_LAZY_COLUMN_LOADING = "pinot.server.instance.lazy.column.loading";
+    // Budget in bytes of the memory of the consuming realtime segments, shared evenly among them
+    public static final String CONFIG_OF_REALTIME_OFFHEAP_MEMORY_BUDGET =
+        "pinot.server.instance.realtime.offheap.memory.budget";
+    // Whether to memory map the forward index buffers of the consuming realtime segments instead of allocating them
+    // as direct buffers
+    public static final String CONFIG_OF_REALTIME_OFFHEAP_MMAP = "pinot.server.instance.realtime.offheap.mmap";
 
     public static final String DEFAULT_ADMIN_API_PORT = "8097";
     public static final String DEFAULT_READ_MODE = "heap";
@@ -251,6 +274,7 @@ public class CommonConstants {
       public static final String DOWNLOAD_URL = "segment.offline.download.url";
       public static final String PUSH_TIME = "segment.offline.push.time";
       public static final String REFRESH_TIME = "segment.offline.refresh.time";;
+      public static final String SIZE_IN_BYTES = "segment.offline.size.in.bytes";
     }
 
     public static final String SEGMENT_NAME = "segment.name";
@@ -263,6 +287,7 @@ public class CommonConstants {
     public static final String TOTAL_DOCS = "segment.total.docs";
     public static final String CRC = "segment.crc";
     public static final String CREATION_TIME = "segment.creation.time";
+    public static final String PARTITION_METADATA = "segment.partition.metadata";
     public static final String FLUSH_THRESHOLD_SIZE = "segment.flush.threshold.size";
 
     public static enum SegmentType {
@@ -24,7 +24,6 @@ import java.io.InputStream;
 
 import java.nio.file.Path;
 import org.apache.commons.httpclient.HttpClient;
-import org.apache.commons.httpclient.HttpException;
 import org.apache.commons.httpclient.HttpVersion;
 import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.methods.EntityEnclosingMethod;
@@ -45,6 +44,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.linkedin.pinot.common.Utils;
+import com.linkedin.pinot.common.exception.HttpErrorStatusException;
 
 public class FileUploadUtils {
 
@@ -80,6 +80,15 @@ public class FileUploadUtils {
 
   public static int sendFile(final String host, final String port, final String path, final String fileName,
       final InputStream inputStream, final long lengthInBytes, SendFileMethod httpMethod) {
+    return sendFile(FILE_UPLOAD_HTTP_CLIENT, host, port, path, fileName, inputStream, lengthInBytes, httpMethod);
+  }
+
+  /**
+   * Sends a file with the given http client, e.g. one whose connection manager allows more concurrent connections per
+   * host than the shared one.
+   */
+  public static int sendFile(HttpClient httpClient, final String host, final String port, final String path,
+      final String fileName, final InputStream inputStream, final long lengthInBytes, SendFileMethod httpMethod) {
     EntityEnclosingMethod method = null;
     try {
       method = httpMethod.forUri("http://" + host + ":" + port + "/" + path);
@@ -102,13 +111,13 @@ public class FileUploadUtils {
           })
       };
       method.setRequestEntity(new MultipartRequestEntity(parts, new HttpMethodParams()));
-      FILE_UPLOAD_HTTP_CLIENT.executeMethod(method);
+      httpClient.executeMethod(method);
       if (method.getStatusCode() >= 400) {
         String errorString = "POST Status Code: " + method.getStatusCode() + "\n";
         if (method.getResponseHeader("Error") != null) {
           errorString += "ServletException: " + method.getResponseHeader("Error").getValue();
         }
-        throw new HttpException(errorString);
+        throw new HttpErrorStatusException(errorString, method.getStatusCode());
       }
       return method.getStatusCode();
     } catch (Exception e) {
@@ -153,6 +162,11 @@ public class FileUploadUtils {
     return sendFile(host, port, SEGMENTS_PATH, fileName, inputStream, lengthInBytes, SendFileMethod.POST);
   }
 
+  public static int sendSegmentFile(HttpClient httpClient, final String host, final String port,
+      final String fileName, final InputStream inputStream, final long lengthInBytes) {
+    return sendFile(httpClient, host, port, SEGMENTS_PATH, fileName, inputStream, lengthInBytes, SendFileMethod.POST);
+  }
+
   public static int sendSegmentUri(final String host, final String port, final String uri) {
     return sendSegmentUri(host, port, uri, MAX_RETRIES, SLEEP_BETWEEN_RETRIES_IN_SECONDS);
   }
@@ -189,7 +203,7 @@ public class FileUploadUtils {
         if (method.getResponseHeader("Error") != null) {
           errorString += "ServletException: " + method.getResponseHeader("Error").getValue();
         }
-        throw new HttpException(errorString);
+        throw new HttpErrorStatusException(errorString, method.getStatusCode());
       }
       return method.getStatusCode();
     } catch (Exception e) {
@@ -243,7 +257,7 @@ public class FileUploadUtils {
         if (postMethod.getResponseHeader("Error") != null) {
           errorString += "ServletException: " + postMethod.getResponseHeader("Error").getValue();
         }
-        throw new HttpException(errorString);
+        throw new HttpErrorStatusException(errorString, statusCode);
       }
       return statusCode;
     } catch (Exception e) {
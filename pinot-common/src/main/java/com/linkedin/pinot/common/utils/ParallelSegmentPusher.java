@@ -0,0 +1,261 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.utils;
+
+import com.google.common.base.Preconditions;
+import com.linkedin.pinot.common.exception.HttpErrorStatusException;
+import com.linkedin.pinot.common.utils.retry.RetryPolicy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpVersion;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Pushes segment tars to the controllers of a cluster with a bounded number of concurrent uploads.
+ * <ul>
+ *   <li>Each segment is pushed to one of the controllers, picked in a round-robin fashion to spread the load, and
+ *   attempts failing with a server error (5xx) or an I/O error are retried on the next controllers as per the retry
+ *   policy (e.g. exponential backoff with jitter). Attempts failing with a client error (4xx), e.g. an invalid segment
+ *   or a missing table, are not retried. Alternatively each segment can be pushed to all the hosts, e.g. when they
+ *   belong to different clusters.</li>
+ *   <li>Connections to the controllers are kept alive and reused across uploads, with up to one connection per
+ *   concurrent upload to each controller.</li>
+ *   <li>Failing segments do not stop the push of the other ones, and are reported in the {@link PushSummary}.</li>
+ * </ul>
+ */
+public class ParallelSegmentPusher {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ParallelSegmentPusher.class);
+  private static final int SOCKET_TIMEOUT_MS = 3600 * 1000; // One hour
+  private static final int CONNECTION_TIMEOUT_MS = 30 * 1000;
+
+  /**
+   * A segment tar to push.
+   */
+  public interface SegmentTar {
+    String getName();
+
+    long getLengthInBytes() throws IOException;
+
+    /**
+     * Opens a new stream on the segment tar, called once per upload attempt.
+     */
+    InputStream openStream() throws IOException;
+  }
+
+  private final List<String> _hosts;
+  private final String _port;
+  private final int _parallelism;
+  private final RetryPolicy _retryPolicy;
+  private final boolean _pushToAllHosts;
+  private final AtomicInteger _nextHostIndex = new AtomicInteger();
+
+  /**
+   * @param hosts Controller hosts
+   * @param port Controller port
+   * @param parallelism Maximum number of concurrent uploads
+   * @param retryPolicy Retry policy of the upload of a segment
+   * @param pushToAllHosts Whether to push each segment to all the hosts instead of one of them
+   */
+  public ParallelSegmentPusher(List<String> hosts, String port, int parallelism, RetryPolicy retryPolicy,
+      boolean pushToAllHosts) {
+    Preconditions.checkArgument(!hosts.isEmpty(), "No host to push segments to");
+    Preconditions.checkArgument(parallelism > 0, "Parallelism must be > 0, got: %s", parallelism);
+    _hosts = new ArrayList<>(hosts);
+    _port = port;
+    _parallelism = parallelism;
+    _retryPolicy = retryPolicy;
+    _pushToAllHosts = pushToAllHosts;
+  }
+
+  /**
+   * Pushes the given segment tars, and returns once they are all pushed or failed.
+   */
+  public PushSummary push(List<? extends SegmentTar> segmentTars) throws InterruptedException {
+    MultiThreadedHttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
+    connectionManager.getParams().setDefaultMaxConnectionsPerHost(_parallelism);
+    connectionManager.getParams().setMaxTotalConnections(_parallelism * _hosts.size());
+    connectionManager.getParams().setConnectionTimeout(CONNECTION_TIMEOUT_MS);
+    connectionManager.getParams().setSoTimeout(SOCKET_TIMEOUT_MS);
+    final HttpClient httpClient = new HttpClient(connectionManager);
+    httpClient.getParams().setParameter("http.protocol.version", HttpVersion.HTTP_1_1);
+
+    ExecutorService executorService =
+        Executors.newFixedThreadPool(_parallelism, new NamedThreadFactory("segment-push"));
+    long startTimeMs = System.currentTimeMillis();
+    try {
+      List<Future<Long>> futures = new ArrayList<>(segmentTars.size());
+      for (final SegmentTar segmentTar : segmentTars) {
+        futures.add(executorService.submit(new Callable<Long>() {
+          @Override
+          public Long call() throws Exception {
+            return pushSegment(httpClient, segmentTar);
+          }
+        }));
+      }
+
+      long numBytesPushed = 0;
+      Map<String, String> failedSegments = new LinkedHashMap<>();
+      for (int i = 0; i < segmentTars.size(); i++) {
+        try {
+          numBytesPushed += futures.get(i).get();
+        } catch (ExecutionException e) {
+          failedSegments.put(segmentTars.get(i).getName(), String.valueOf(e.getCause()));
+        }
+      }
+      PushSummary summary = new PushSummary(segmentTars.size(), numBytesPushed,
+          System.currentTimeMillis() - startTimeMs, failedSegments);
+      LOGGER.info("Segment push summary: {}", summary);
+      return summary;
+    } finally {
+      executorService.shutdownNow();
+      connectionManager.shutdown();
+    }
+  }
+
+  /**
+   * Returns the number of bytes pushed, or throws if the segment could not be pushed.
+   */
+  private long pushSegment(HttpClient httpClient, SegmentTar segmentTar) throws Exception {
+    long lengthInBytes = segmentTar.getLengthInBytes();
+    if (_pushToAllHosts) {
+      for (String host : _hosts) {
+        pushSegment(httpClient, segmentTar, lengthInBytes, Collections.singletonList(host));
+      }
+      return lengthInBytes * _hosts.size();
+    } else {
+      // Start from the next host in turn, and fail over to the following ones
+      int startIndex = (_nextHostIndex.getAndIncrement() & Integer.MAX_VALUE) % _hosts.size();
+      List<String> hosts = new ArrayList<>(_hosts.size());
+      for (int i = 0; i < _hosts.size(); i++) {
+        hosts.add(_hosts.get((startIndex + i) % _hosts.size()));
+      }
+      pushSegment(httpClient, segmentTar, lengthInBytes, hosts);
+      return lengthInBytes;
+    }
+  }
+
+  private void pushSegment(final HttpClient httpClient, final SegmentTar segmentTar, final long lengthInBytes,
+      final List<String> hosts) throws Exception {
+    final String segmentName = segmentTar.getName();
+    final Exception[] lastException = new Exception[1];
+    boolean pushed = _retryPolicy.attempt(new Callable<Boolean>() {
+      private int _attempt = 0;
+
+      @Override
+      public Boolean call() throws Exception {
+        String host = hosts.get(_attempt++ % hosts.size());
+        LOGGER.info("Pushing segment: {} to host: {}, port: {}, attempt: {}", segmentName, host, _port, _attempt);
+        InputStream inputStream = segmentTar.openStream();
+        try {
+          int responseCode =
+              FileUploadUtils.sendSegmentFile(httpClient, host, _port, segmentName, inputStream, lengthInBytes);
+          LOGGER.info("Pushed segment: {} to host: {}, response code: {}", segmentName, host, responseCode);
+          return true;
+        } catch (Exception e) {
+          if (Thread.currentThread().isInterrupted() || !isRetriable(e)) {
+            throw e;
+          }
+          LOGGER.warn("Caught exception while pushing segment: {} to host: {}", segmentName, host, e);
+          lastException[0] = e;
+          return false;
+        } finally {
+          inputStream.close();
+        }
+      }
+    });
+    if (!pushed) {
+      throw new RuntimeException("Failed to push segment: " + segmentName + " to hosts: " + hosts, lastException[0]);
+    }
+  }
+
+  /**
+   * Returns whether a failed upload might succeed when sent again: server errors (5xx) and I/O errors, e.g. connection
+   * failures, are retried, client errors (4xx) are not.
+   */
+  private static boolean isRetriable(Exception e) {
+    if (e instanceof HttpErrorStatusException) {
+      return !((HttpErrorStatusException) e).isClientError();
+    }
+    return e instanceof IOException;
+  }
+
+  /**
+   * Summary of a push: throughput and failed segments.
+   */
+  public static class PushSummary {
+    private final int _numSegments;
+    private final long _numBytesPushed;
+    private final long _timeMs;
+    private final Map<String, String> _failedSegments;
+
+    PushSummary(int numSegments, long numBytesPushed, long timeMs, Map<String, String> failedSegments) {
+      _numSegments = numSegments;
+      _numBytesPushed = numBytesPushed;
+      _timeMs = timeMs;
+      _failedSegments = failedSegments;
+    }
+
+    public int getNumSegments() {
+      return _numSegments;
+    }
+
+    public int getNumPushedSegments() {
+      return _numSegments - _failedSegments.size();
+    }
+
+    public long getNumBytesPushed() {
+      return _numBytesPushed;
+    }
+
+    public long getTimeMs() {
+      return _timeMs;
+    }
+
+    /**
+     * Returns the error of the failed segments by segment name.
+     */
+    public Map<String, String> getFailedSegments() {
+      return _failedSegments;
+    }
+
+    public boolean isSuccessful() {
+      return _failedSegments.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+      double seconds = Math.max(_timeMs, 1L) / 1000.0;
+      return String.format("pushed %d/%d segments, %d bytes in %dms (%.2f segments/s, %.2f MB/s), failed segments: %s",
+          getNumPushedSegments(), _numSegments, _numBytesPushed, _timeMs, getNumPushedSegments() / seconds,
+          _numBytesPushed / seconds / 1024 / 1024, _failedSegments.keySet());
+    }
+  }
+}
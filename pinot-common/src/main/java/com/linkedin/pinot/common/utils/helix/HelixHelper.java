@@ -22,6 +22,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.annotation.Nullable;
 import org.apache.helix.AccessOption;
@@ -329,6 +330,7 @@ public class HelixHelper {
         Set<String> partitionSet = idealState.getPartitionSet();
         if (partitionSet != null) {
           partitionSet.remove(segmentName);
+          idealState.setNumPartitions(partitionSet.size());
         }
         return idealState;
       }
@@ -349,6 +351,7 @@ public class HelixHelper {
         Set<String> partitionSet = idealState.getPartitionSet();
         if (partitionSet != null) {
           partitionSet.removeAll(segments);
+          idealState.setNumPartitions(partitionSet.size());
         }
         return idealState;
       }
@@ -393,4 +396,60 @@ public class HelixHelper {
 
     updateIdealState(helixManager, tableName, updater, DEFAULT_RETRY_POLICY);
   }
+
+  /**
+   * Adds a new segment replacing the specified segments of a table to the idealState, if all the old segments are
+   * still in it. The old segments are kept in the idealState: they are to be removed once the new segment is online in
+   * the external view.
+   *
+   * @param helixManager The HelixManager object to access the helix cluster.
+   * @param tableName Name of the table of the segments.
+   * @param oldSegments Names of the segments replaced by the new segment
+   * @param newSegmentName Name of the new segment to be added
+   * @param getInstancesForSegment Callable returning list of instances where the new segment should be uploaded.
+   * @return true if the new segment was added, false if some of the old segments are no longer in the idealState or
+   * the new segment already is, in which case the idealState is left unchanged
+   */
+  public static boolean addReplacementSegmentToIdealState(HelixManager helixManager, final String tableName,
+      final List<String> oldSegments, final String newSegmentName,
+      final Callable<List<String>> getInstancesForSegment) {
+    final AtomicBoolean added = new AtomicBoolean();
+
+    Function<IdealState, IdealState> updater = new Function<IdealState, IdealState>() {
+      @Override
+      public IdealState apply(IdealState idealState) {
+        // The updater is called again on each retry, only the outcome of the last call matters
+        added.set(false);
+        Set<String> partitionSet = idealState.getPartitionSet();
+        if (!partitionSet.containsAll(oldSegments) || partitionSet.contains(newSegmentName)) {
+          LOGGER.warn("Segments {} are not all in idealState or segment {} already is, not replacing them for table {}",
+              oldSegments, newSegmentName, tableName);
+          return null;
+        }
+
+        List<String> targetInstances;
+        try {
+          targetInstances = getInstancesForSegment.call();
+        } catch (Exception e) {
+          LOGGER.error("Unable to get new instances for segment {}, table {}", newSegmentName, tableName, e);
+          return null;
+        }
+        if (targetInstances == null || targetInstances.isEmpty()) {
+          LOGGER.warn("No instances assigned for segment {}, table {}, not replacing segments {}", newSegmentName,
+              tableName, oldSegments);
+          return null;
+        }
+
+        for (String instance : targetInstances) {
+          idealState.setPartitionState(newSegmentName, instance, ONLINE);
+        }
+        idealState.setNumPartitions(idealState.getPartitionSet().size());
+        added.set(true);
+        return idealState;
+      }
+    };
+
+    updateIdealState(helixManager, tableName, updater, DEFAULT_RETRY_POLICY);
+    return added.get();
+  }
 }
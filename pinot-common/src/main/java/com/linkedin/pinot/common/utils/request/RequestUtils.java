@@ -109,6 +109,42 @@ public class RequestUtils {
     return q2;
   }
 
+  /**
+   * Returns a string representation of the filter of the given broker request which does not depend on the filter
+   * query ids. The filter query ids are identity hash codes assigned at compile time, so the same query compiled twice
+   * gets different ids; use this method instead of {@link FilterQuery#toString()} to compare or cache filters.
+   *
+   * @param request Broker Request
+   * @return normalized filter string, or empty string if the request has no filter
+   */
+  public static String getNormalizedFilterString(BrokerRequest request) {
+    FilterQuery filterQuery = request.getFilterQuery();
+    FilterQueryMap filterSubQueryMap = request.getFilterSubQueryMap();
+    if (filterQuery == null || filterSubQueryMap == null) {
+      return "";
+    }
+    StringBuilder builder = new StringBuilder();
+    appendNormalizedFilter(filterQuery, filterSubQueryMap.getFilterQueryMap(), builder);
+    return builder.toString();
+  }
+
+  private static void appendNormalizedFilter(FilterQuery filterQuery, Map<Integer, FilterQuery> queryMap,
+      StringBuilder builder) {
+    builder.append(filterQuery.getOperator());
+    if (filterQuery.getColumn() != null) {
+      builder.append('(').append(filterQuery.getColumn()).append(',').append(filterQuery.getValue()).append(')');
+    }
+    List<Integer> children = filterQuery.getNestedFilterQueryIds();
+    if (children != null && !children.isEmpty()) {
+      builder.append('[');
+      for (Integer child : children) {
+        appendNormalizedFilter(queryMap.get(child), queryMap, builder);
+        builder.append(';');
+      }
+      builder.append(']');
+    }
+  }
+
   public static final Set<String> ALLOWED_AGGREGATION_FUNCTIONS = ImmutableSet.of("sum", "fasthll");
 
   /**
@@ -0,0 +1,303 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.pql.parsers;
+
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.FilterOperator;
+import com.linkedin.pinot.common.request.FilterQuery;
+import com.linkedin.pinot.common.request.transform.TransformExpressionTree;
+import com.linkedin.pinot.common.utils.StringUtil;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * PQL 2 compiler which caches the compiled broker requests.
+ *
+ * <p>Compiled requests are cached on the exact query text, and on a template of the query in which the literals of
+ * the WHERE clause are replaced by placeholders. Queries which only differ in their filter constants (e.g. dashboard
+ * queries on different time ranges) share the same compiled template: the literals of the query are bound into a copy
+ * of the template instead of parsing the whole query again. The first time a template is compiled, the bound request
+ * is checked against the request compiled from the query text, and the template is never used again if they differ.
+ *
+ * <p>Every call returns a new broker request, so callers can modify the returned request freely.
+ */
+@ThreadSafe
+public class CachingPql2Compiler implements AbstractCompiler {
+  private static final Logger LOGGER = LoggerFactory.getLogger(CachingPql2Compiler.class);
+
+  // Placeholders are string literals holding the literal index between two markers, which cannot appear in queries
+  private static final char PLACEHOLDER_MARKER = '\u0001';
+  private static final String IN_VALUE_SEPARATOR = "\t\t";
+  private static final Splitter IN_VALUE_SPLITTER = Splitter.on(IN_VALUE_SEPARATOR);
+  // Cached for templates which cannot be bound, so that they are not compiled again
+  private static final Template UNBINDABLE_TEMPLATE = new Template(null);
+
+  private final Pql2Compiler _compiler = new Pql2Compiler();
+  private final Cache<String, BrokerRequest> _queryCache;
+  private final Cache<String, Template> _templateCache;
+
+  /**
+   * @param maxSize maximum number of queries and maximum number of templates to cache.
+   */
+  public CachingPql2Compiler(int maxSize) {
+    _queryCache = CacheBuilder.newBuilder().maximumSize(maxSize).recordStats().build();
+    _templateCache = CacheBuilder.newBuilder().maximumSize(maxSize).recordStats().build();
+  }
+
+  @Override
+  public BrokerRequest compileToBrokerRequest(String expression)
+      throws Pql2CompilationException {
+    BrokerRequest brokerRequest = _queryCache.getIfPresent(expression);
+    if (brokerRequest != null) {
+      return brokerRequest.deepCopy();
+    }
+
+    ParameterizedQuery parameterizedQuery = parameterize(expression);
+    if (parameterizedQuery != null) {
+      Template template = _templateCache.getIfPresent(parameterizedQuery._template);
+      if (template == null) {
+        // Throws if the query cannot be compiled, in which case nothing gets cached
+        brokerRequest = _compiler.compileToBrokerRequest(expression);
+        template = compileTemplate(parameterizedQuery, brokerRequest);
+        _templateCache.put(parameterizedQuery._template, template);
+      } else if (template._brokerRequest != null) {
+        brokerRequest = template.bind(parameterizedQuery._literalValues);
+      }
+    }
+
+    if (brokerRequest == null) {
+      brokerRequest = _compiler.compileToBrokerRequest(expression);
+    }
+    _queryCache.put(expression, brokerRequest);
+    return brokerRequest.deepCopy();
+  }
+
+  @Override
+  public TransformExpressionTree compileToExpressionTree(String expression) {
+    return _compiler.compileToExpressionTree(expression);
+  }
+
+  public CacheStats getQueryCacheStats() {
+    return _queryCache.stats();
+  }
+
+  public CacheStats getTemplateCacheStats() {
+    return _templateCache.stats();
+  }
+
+  /**
+   * Compiles the template of the given query, and checks that binding the literals of the query into the template
+   * gives the same broker request as the one compiled from the query text.
+   */
+  private Template compileTemplate(ParameterizedQuery parameterizedQuery, BrokerRequest expectedBrokerRequest) {
+    Template template;
+    try {
+      template = new Template(_compiler.compileToBrokerRequest(parameterizedQuery._template));
+    } catch (Exception e) {
+      LOGGER.debug("Caught exception while compiling query template: {}", parameterizedQuery._template, e);
+      return UNBINDABLE_TEMPLATE;
+    }
+    if (!toNormalizedString(template.bind(parameterizedQuery._literalValues)).equals(
+        toNormalizedString(expectedBrokerRequest))) {
+      LOGGER.info("Literals cannot be bound into query template: {}", parameterizedQuery._template);
+      return UNBINDABLE_TEMPLATE;
+    }
+    return template;
+  }
+
+  /**
+   * Replaces the literals of the WHERE clause of the given query with placeholders.
+   *
+   * @return parameterized query, or null if the query has no literal in its WHERE clause or cannot be tokenized.
+   */
+  @Nullable
+  static ParameterizedQuery parameterize(String expression) {
+    PQL2Lexer lexer = new PQL2Lexer(new ANTLRInputStream(expression));
+    lexer.removeErrorListeners();
+    lexer.addErrorListener(ThrowingErrorListener.INSTANCE);
+
+    StringBuilder template = new StringBuilder();
+    List<String> literalValues = new ArrayList<>();
+    int copiedIndex = 0;
+    boolean inWhereClause = false;
+    try {
+      for (Token token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer.nextToken()) {
+        switch (token.getType()) {
+          case PQL2Lexer.WHERE:
+            inWhereClause = true;
+            break;
+          case PQL2Lexer.GROUP:
+          case PQL2Lexer.HAVING:
+          case PQL2Lexer.ORDER:
+          case PQL2Lexer.TOP:
+          case PQL2Lexer.LIMIT:
+            inWhereClause = false;
+            break;
+          case PQL2Lexer.STRING_LITERAL:
+          case PQL2Lexer.INTEGER_LITERAL:
+          case PQL2Lexer.FLOATING_POINT_LITERAL:
+            if (inWhereClause) {
+              template.append(expression, copiedIndex, token.getStartIndex());
+              template.append('\'').append(PLACEHOLDER_MARKER).append(literalValues.size()).append(PLACEHOLDER_MARKER)
+                  .append('\'');
+              copiedIndex = token.getStopIndex() + 1;
+              literalValues.add(getLiteralValue(token));
+            }
+            break;
+          default:
+            break;
+        }
+      }
+    } catch (Exception e) {
+      // Let the compiler report the error
+      return null;
+    }
+    if (literalValues.isEmpty()) {
+      return null;
+    }
+    template.append(expression, copiedIndex, expression.length());
+    return new ParameterizedQuery(template.toString(), literalValues.toArray(new String[literalValues.size()]));
+  }
+
+  /**
+   * Returns the value of the given literal token, the same way {@link Pql2AstListener} computes it.
+   */
+  private static String getLiteralValue(Token token) {
+    String text = token.getText();
+    switch (token.getType()) {
+      case PQL2Lexer.STRING_LITERAL:
+        if (text.indexOf(PLACEHOLDER_MARKER) >= 0) {
+          throw new IllegalArgumentException("String literal contains placeholder marker");
+        }
+        String value = text.substring(1, text.length() - 1);
+        if (text.charAt(0) == '\'') {
+          return value.replaceAll("''", "'");
+        } else {
+          return value.replaceAll("\"\"", "\"");
+        }
+      case PQL2Lexer.INTEGER_LITERAL:
+        return Long.toString(Long.parseLong(text));
+      default:
+        return Double.toString(Double.valueOf(text));
+    }
+  }
+
+  /**
+   * Returns the string representation of the given broker request, without the filter query ids which differ for
+   * each compilation.
+   */
+  private static String toNormalizedString(BrokerRequest brokerRequest) {
+    BrokerRequest requestWithoutFilter = brokerRequest.deepCopy();
+    requestWithoutFilter.unsetFilterQuery();
+    requestWithoutFilter.unsetFilterSubQueryMap();
+    return requestWithoutFilter + RequestUtils.getNormalizedFilterString(brokerRequest);
+  }
+
+  static final class ParameterizedQuery {
+    final String _template;
+    final String[] _literalValues;
+
+    private ParameterizedQuery(String template, String[] literalValues) {
+      _template = template;
+      _literalValues = literalValues;
+    }
+  }
+
+  private static final class Template {
+    // Never modified, only copied
+    private final BrokerRequest _brokerRequest;
+
+    private Template(BrokerRequest brokerRequest) {
+      _brokerRequest = brokerRequest;
+    }
+
+    private BrokerRequest bind(String[] literalValues) {
+      BrokerRequest brokerRequest = _brokerRequest.deepCopy();
+      if (brokerRequest.isSetFilterQuery()) {
+        bind(brokerRequest.getFilterQuery(), literalValues);
+        for (FilterQuery filterQuery : brokerRequest.getFilterSubQueryMap().getFilterQueryMap().values()) {
+          bind(filterQuery, literalValues);
+        }
+      }
+      return brokerRequest;
+    }
+
+    private static void bind(FilterQuery filterQuery, String[] literalValues) {
+      List<String> values = filterQuery.getValue();
+      if (values == null) {
+        return;
+      }
+      List<String> boundValues = new ArrayList<>(values.size());
+      for (String value : values) {
+        if (filterQuery.getOperator() == FilterOperator.IN || filterQuery.getOperator() == FilterOperator.NOT_IN) {
+          // The compiler sorts and de-duplicates the values of IN predicates
+          TreeSet<String> inValues = new TreeSet<>();
+          for (String inValue : IN_VALUE_SPLITTER.split(value)) {
+            inValues.add(replacePlaceholders(inValue, literalValues));
+          }
+          boundValues.add(StringUtil.join(IN_VALUE_SEPARATOR, inValues.toArray(new String[inValues.size()])));
+        } else {
+          boundValues.add(replacePlaceholders(value, literalValues));
+        }
+      }
+      filterQuery.setValue(boundValues);
+    }
+
+    private static String replacePlaceholders(String value, String[] literalValues) {
+      int start = value.indexOf(PLACEHOLDER_MARKER);
+      if (start < 0) {
+        return value;
+      }
+      StringBuilder builder = new StringBuilder();
+      int copiedIndex = 0;
+      while (start >= 0) {
+        int end = value.indexOf(PLACEHOLDER_MARKER, start + 1);
+        builder.append(value, copiedIndex, start);
+        builder.append(literalValues[Integer.parseInt(value.substring(start + 1, end))]);
+        copiedIndex = end + 1;
+        start = value.indexOf(PLACEHOLDER_MARKER, copiedIndex);
+      }
+      builder.append(value, copiedIndex, value.length());
+      return builder.toString();
+    }
+  }
+
+  private static final class ThrowingErrorListener extends BaseErrorListener {
+    private static final ThrowingErrorListener INSTANCE = new ThrowingErrorListener();
+
+    @Override
+    public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine,
+        String msg, RecognitionException e) {
+      throw new Pql2CompilationException(msg);
+    }
+  }
+}
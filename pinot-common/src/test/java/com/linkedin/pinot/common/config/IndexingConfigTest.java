@@ -57,4 +57,27 @@ public class IndexingConfigTest {
 
   }
 
+  @Test
+  public void testSegmentPartitionConfig()
+      throws IOException {
+    String json = "{\"segmentPartitionConfig\": {\"columnPartitionMap\": {"
+        + "\"memberId\": {\"functionName\": \"Murmur\", \"numPartitions\": 8}}}}";
+    ObjectMapper mapper = new ObjectMapper();
+    IndexingConfig indexingConfig = mapper.readValue(json, IndexingConfig.class);
+
+    ColumnPartitionConfig columnPartitionConfig =
+        indexingConfig.getSegmentPartitionConfig().getColumnPartitionMap().get("memberId");
+    Assert.assertEquals(columnPartitionConfig.getFunctionName(), "Murmur");
+    Assert.assertEquals(columnPartitionConfig.getNumPartitions(), 8);
+
+    // Round trip
+    indexingConfig = mapper.readValue(mapper.writeValueAsString(indexingConfig), IndexingConfig.class);
+    columnPartitionConfig = indexingConfig.getSegmentPartitionConfig().getColumnPartitionMap().get("memberId");
+    Assert.assertEquals(columnPartitionConfig.getFunctionName(), "Murmur");
+    Assert.assertEquals(columnPartitionConfig.getNumPartitions(), 8);
+
+    // Tables are not partitioned by default
+    Assert.assertNull(mapper.readValue("{}", IndexingConfig.class).getSegmentPartitionConfig());
+  }
+
 }
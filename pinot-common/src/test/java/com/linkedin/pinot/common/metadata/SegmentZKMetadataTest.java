@@ -15,14 +15,20 @@
  */
 package com.linkedin.pinot.common.metadata;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.helix.ZNRecord;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.linkedin.pinot.common.metadata.segment.ColumnPartitionMetadata;
 import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
 import com.linkedin.pinot.common.metadata.segment.RealtimeSegmentZKMetadata;
+import com.linkedin.pinot.common.metadata.segment.SegmentPartitionMetadata;
 import com.linkedin.pinot.common.utils.CommonConstants;
 import com.linkedin.pinot.common.utils.CommonConstants.Segment.Realtime.Status;
 import com.linkedin.pinot.common.utils.CommonConstants.Segment.SegmentType;
@@ -63,6 +69,31 @@ public class SegmentZKMetadataTest {
     Assert.assertTrue(offlineSegmentMetadata.equals(new OfflineSegmentZKMetadata(offlineSegmentMetadata.toZNRecord())));
   }
 
+  @Test
+  public void partitionMetadataConvertionTest() {
+    Map<String, ColumnPartitionMetadata> columnPartitionMap = new HashMap<>();
+    columnPartitionMap.put("memberId",
+        new ColumnPartitionMetadata("Murmur", 8, new HashSet<>(Arrays.asList(3, 5))));
+    SegmentPartitionMetadata partitionMetadata = new SegmentPartitionMetadata(columnPartitionMap);
+
+    OfflineSegmentZKMetadata offlineSegmentMetadata = getTestOfflineSegmentMetadata();
+    offlineSegmentMetadata.setPartitionMetadata(partitionMetadata);
+    ZNRecord znRecord = offlineSegmentMetadata.toZNRecord();
+    Assert.assertNotNull(znRecord.getSimpleField(CommonConstants.Segment.PARTITION_METADATA));
+
+    OfflineSegmentZKMetadata readSegmentMetadata = new OfflineSegmentZKMetadata(znRecord);
+    Assert.assertEquals(readSegmentMetadata, offlineSegmentMetadata);
+    Assert.assertEquals(readSegmentMetadata.getPartitionMetadata(), partitionMetadata);
+    ColumnPartitionMetadata columnPartitionMetadata =
+        readSegmentMetadata.getPartitionMetadata().getColumnPartitionMap().get("memberId");
+    Assert.assertEquals(columnPartitionMetadata.getPartitionFunction().getNumPartitions(), 8);
+    Assert.assertEquals(columnPartitionMetadata.getPartitions(), new HashSet<>(Arrays.asList(3, 5)));
+
+    // Segments without partition metadata
+    Assert.assertNull(getTestOfflineSegmentZNRecord().getSimpleField(CommonConstants.Segment.PARTITION_METADATA));
+    Assert.assertNull(new OfflineSegmentZKMetadata(getTestOfflineSegmentZNRecord()).getPartitionMetadata());
+  }
+
   private ZNRecord getTestDoneRealtimeSegmentZNRecord() {
     String segmentName = "testTable_R_1000_2000_groupId0_part0";
     ZNRecord record = new ZNRecord(segmentName);
@@ -149,6 +180,7 @@ public class SegmentZKMetadataTest {
     record.setSimpleField(CommonConstants.Segment.Offline.DOWNLOAD_URL, "http://localhost:8000/testTable_O_3000_4000");
     record.setLongField(CommonConstants.Segment.Offline.PUSH_TIME, 4000);
     record.setLongField(CommonConstants.Segment.Offline.REFRESH_TIME, 8000);
+    record.setLongField(CommonConstants.Segment.Offline.SIZE_IN_BYTES, 1024 * 1024);
     return record;
   }
 
@@ -167,6 +199,7 @@ public class SegmentZKMetadataTest {
     offlineSegmentMetadata.setDownloadUrl("http://localhost:8000/testTable_O_3000_4000");
     offlineSegmentMetadata.setPushTime(4000);
     offlineSegmentMetadata.setRefreshTime(8000);
+    offlineSegmentMetadata.setSizeInBytes(1024 * 1024);
     return offlineSegmentMetadata;
   }
 }
@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.partition;
+
+import com.linkedin.pinot.common.metadata.segment.ColumnPartitionMetadata;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class PartitionFilterTest {
+  private static final int NUM_PARTITIONS = 10;
+  private static final Pql2Compiler COMPILER = new Pql2Compiler();
+
+  @Test
+  public void testCanMatch() {
+    // Segment with partition 3 of memberId
+    Map<String, ColumnPartitionMetadata> columnPartitionMap = new HashMap<>();
+    columnPartitionMap.put("memberId",
+        new ColumnPartitionMetadata("Modulo", NUM_PARTITIONS, Collections.singleton(3)));
+
+    // Equality predicates
+    Assert.assertTrue(canMatch("memberId = 3", columnPartitionMap));
+    Assert.assertTrue(canMatch("memberId = 13", columnPartitionMap));
+    Assert.assertFalse(canMatch("memberId = 4", columnPartitionMap));
+
+    // IN predicates
+    Assert.assertTrue(canMatch("memberId IN (1, 2, 23)", columnPartitionMap));
+    Assert.assertFalse(canMatch("memberId IN (1, 2, 4)", columnPartitionMap));
+
+    // Other predicates and columns
+    Assert.assertTrue(canMatch("memberId > 4", columnPartitionMap));
+    Assert.assertTrue(canMatch("memberId <> 3", columnPartitionMap));
+    Assert.assertTrue(canMatch("memberId NOT IN (3, 13)", columnPartitionMap));
+    Assert.assertTrue(canMatch("country = 'us'", columnPartitionMap));
+
+    // AND and OR
+    Assert.assertFalse(canMatch("memberId = 4 AND country = 'us'", columnPartitionMap));
+    Assert.assertTrue(canMatch("memberId = 3 AND country = 'us'", columnPartitionMap));
+    Assert.assertTrue(canMatch("memberId = 4 OR country = 'us'", columnPartitionMap));
+    Assert.assertFalse(canMatch("memberId = 4 OR memberId = 5", columnPartitionMap));
+    Assert.assertTrue(canMatch("memberId = 4 OR memberId = 23", columnPartitionMap));
+    Assert.assertFalse(canMatch("(memberId = 4 OR memberId = 5) AND country = 'us'", columnPartitionMap));
+
+    // Values the partition function cannot partition
+    Assert.assertTrue(canMatch("memberId = 'abc'", columnPartitionMap));
+
+    // Segment without partitions
+    Assert.assertTrue(canMatch("memberId = 4", Collections.<String, ColumnPartitionMetadata>emptyMap()));
+  }
+
+  @Test
+  public void testNoFilter() {
+    Assert.assertNull(PartitionFilter.forBrokerRequest(COMPILER.compileToBrokerRequest("SELECT COUNT(*) FROM T")));
+  }
+
+  @Test
+  public void testPartitionsReusedAcrossSegments() {
+    PartitionFilter partitionFilter =
+        PartitionFilter.forBrokerRequest(COMPILER.compileToBrokerRequest("SELECT * FROM T WHERE memberId IN (1, 2)"));
+    for (int partition = 0; partition < NUM_PARTITIONS; partition++) {
+      Map<String, ColumnPartitionMetadata> columnPartitionMap = Collections.singletonMap("memberId",
+          new ColumnPartitionMetadata("Modulo", NUM_PARTITIONS, Collections.singleton(partition)));
+      Assert.assertEquals(partitionFilter.canMatch(columnPartitionMap), partition == 1 || partition == 2);
+    }
+    // Same predicate with a different number of partitions
+    Map<String, ColumnPartitionMetadata> columnPartitionMap =
+        Collections.singletonMap("memberId", new ColumnPartitionMetadata("Modulo", 2, Collections.singleton(0)));
+    Assert.assertTrue(partitionFilter.canMatch(columnPartitionMap));
+  }
+
+  private static boolean canMatch(String filter, Map<String, ColumnPartitionMetadata> columnPartitionMap) {
+    BrokerRequest brokerRequest = COMPILER.compileToBrokerRequest("SELECT COUNT(*) FROM T WHERE " + filter);
+    return PartitionFilter.forBrokerRequest(brokerRequest).canMatch(columnPartitionMap);
+  }
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.partition;
+
+import java.util.Random;
+import org.apache.kafka.common.utils.Utils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class PartitionFunctionTest {
+  private static final int NUM_PARTITIONS = 10;
+  private static final int NUM_VALUES = 1000;
+
+  @Test
+  public void testModuloPartitionFunction() {
+    PartitionFunction partitionFunction = PartitionFunctionFactory.getPartitionFunction("modulo", NUM_PARTITIONS);
+    Assert.assertTrue(partitionFunction instanceof ModuloPartitionFunction);
+    Assert.assertEquals(partitionFunction.getNumPartitions(), NUM_PARTITIONS);
+
+    Random random = new Random();
+    for (int i = 0; i < NUM_VALUES; i++) {
+      long value = random.nextLong();
+      int partition = partitionFunction.getPartition(value);
+      Assert.assertTrue(partition >= 0 && partition < NUM_PARTITIONS);
+      Assert.assertEquals((value - partition) % NUM_PARTITIONS, 0L);
+      // Values from queries are strings
+      Assert.assertEquals(partitionFunction.getPartition(Long.toString(value)), partition);
+    }
+    Assert.assertEquals(partitionFunction.getPartition(-1), NUM_PARTITIONS - 1);
+    Assert.assertEquals(partitionFunction.getPartition(25), 5);
+  }
+
+  @Test
+  public void testMurmurPartitionFunction() throws Exception {
+    PartitionFunction partitionFunction = PartitionFunctionFactory.getPartitionFunction("Murmur", NUM_PARTITIONS);
+    Assert.assertTrue(partitionFunction instanceof MurmurPartitionFunction);
+    Assert.assertEquals(partitionFunction.getNumPartitions(), NUM_PARTITIONS);
+
+    // Same partitions as the default Kafka partitioner, so that realtime tables can be partitioned the same way
+    Random random = new Random();
+    for (int i = 0; i < NUM_VALUES; i++) {
+      String value = Integer.toString(random.nextInt());
+      byte[] bytes = value.getBytes("UTF-8");
+      Assert.assertEquals(MurmurPartitionFunction.murmur2(bytes), Utils.murmur2(bytes));
+      int partition = partitionFunction.getPartition(value);
+      Assert.assertEquals(partition, (Utils.murmur2(bytes) & Integer.MAX_VALUE) % NUM_PARTITIONS);
+      // Values in segments are not always strings
+      Assert.assertEquals(partitionFunction.getPartition(Integer.parseInt(value)), partition);
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testUnknownPartitionFunction() {
+    PartitionFunctionFactory.getPartitionFunction("unknown", NUM_PARTITIONS);
+  }
+}
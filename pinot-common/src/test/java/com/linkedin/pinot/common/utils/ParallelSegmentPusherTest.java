@@ -0,0 +1,236 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.utils;
+
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.Multiset;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.linkedin.pinot.common.utils.retry.RetryPolicies;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.commons.io.IOUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+
+public class ParallelSegmentPusherTest {
+  // Both hosts reach the same stub server, which tells them apart by the Host header
+  private static final String HOST_1 = "localhost";
+  private static final String HOST_2 = "127.0.0.1";
+  private static final List<String> HOSTS = Arrays.asList(HOST_1, HOST_2);
+  private static final Pattern FILE_NAME_PATTERN = Pattern.compile("filename=\"([^\"]+)\"");
+  private static final int NUM_SEGMENTS = 20;
+  private static final int PARALLELISM = 4;
+
+  private HttpServer _server;
+  private ExecutorService _serverExecutor;
+  private String _port;
+
+  // Segments received by each host, as "host/segment"
+  private final Multiset<String> _receivedSegments = ConcurrentHashMultiset.create();
+  private final AtomicInteger _numConcurrentRequests = new AtomicInteger();
+  private final AtomicInteger _maxConcurrentRequests = new AtomicInteger();
+  private final AtomicInteger _numRequests = new AtomicInteger();
+  private volatile String _failingHost;
+  private volatile String _failingSegment;
+  private volatile String _rejectedSegment;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    _server = HttpServer.create(new InetSocketAddress(0), 0);
+    _server.createContext("/segments", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange httpExchange) throws IOException {
+        int numConcurrentRequests = _numConcurrentRequests.incrementAndGet();
+        try {
+          synchronized (_maxConcurrentRequests) {
+            _maxConcurrentRequests.set(Math.max(_maxConcurrentRequests.get(), numConcurrentRequests));
+          }
+          _numRequests.incrementAndGet();
+          String host = httpExchange.getRequestHeaders().getFirst("Host").split(":")[0];
+          Matcher matcher =
+              FILE_NAME_PATTERN.matcher(IOUtils.toString(httpExchange.getRequestBody(), "UTF-8"));
+          Assert.assertTrue(matcher.find());
+          String segmentName = matcher.group(1);
+          Uninterruptibles.sleepUninterruptibly(20, TimeUnit.MILLISECONDS);
+
+          int responseCode;
+          if (host.equals(_failingHost) || segmentName.equals(_failingSegment)) {
+            responseCode = 500;
+          } else if (segmentName.equals(_rejectedSegment)) {
+            responseCode = 400;
+          } else {
+            _receivedSegments.add(host + "/" + segmentName);
+            responseCode = 200;
+          }
+          byte[] response = "OK".getBytes("UTF-8");
+          httpExchange.sendResponseHeaders(responseCode, response.length);
+          OutputStream outputStream = httpExchange.getResponseBody();
+          outputStream.write(response);
+          outputStream.close();
+        } finally {
+          _numConcurrentRequests.decrementAndGet();
+        }
+      }
+    });
+    _serverExecutor = Executors.newFixedThreadPool(2 * PARALLELISM);
+    _server.setExecutor(_serverExecutor);
+    _server.start();
+    _port = Integer.toString(_server.getAddress().getPort());
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _server.stop(0);
+    _serverExecutor.shutdownNow();
+  }
+
+  @BeforeMethod
+  public void reset() {
+    _receivedSegments.clear();
+    _maxConcurrentRequests.set(0);
+    _numRequests.set(0);
+    _failingHost = null;
+    _failingSegment = null;
+    _rejectedSegment = null;
+  }
+
+  @Test
+  public void testLoadSpreading() throws Exception {
+    ParallelSegmentPusher.PushSummary summary = newPusher(false).push(getSegmentTars());
+
+    Assert.assertTrue(summary.isSuccessful());
+    Assert.assertEquals(summary.getNumPushedSegments(), NUM_SEGMENTS);
+    Assert.assertEquals(summary.getNumBytesPushed(), NUM_SEGMENTS * getSegmentTars().get(0).getLengthInBytes());
+    Assert.assertEquals(_numRequests.get(), NUM_SEGMENTS);
+    // Each segment is pushed once, and the hosts get the same number of segments
+    for (int i = 0; i < NUM_SEGMENTS; i++) {
+      Assert.assertEquals(_receivedSegments.count(HOST_1 + "/segment_" + i)
+          + _receivedSegments.count(HOST_2 + "/segment_" + i), 1);
+    }
+    Assert.assertEquals(getNumSegments(HOST_1), NUM_SEGMENTS / 2);
+    Assert.assertEquals(getNumSegments(HOST_2), NUM_SEGMENTS / 2);
+    Assert.assertTrue(_maxConcurrentRequests.get() > 1);
+    Assert.assertTrue(_maxConcurrentRequests.get() <= PARALLELISM);
+  }
+
+  @Test
+  public void testFailover() throws Exception {
+    _failingHost = HOST_1;
+    ParallelSegmentPusher.PushSummary summary = newPusher(false).push(getSegmentTars());
+
+    Assert.assertTrue(summary.isSuccessful());
+    Assert.assertEquals(getNumSegments(HOST_1), 0);
+    Assert.assertEquals(getNumSegments(HOST_2), NUM_SEGMENTS);
+    // The segments first pushed to the failing host are retried on the other one
+    Assert.assertEquals(_numRequests.get(), NUM_SEGMENTS + NUM_SEGMENTS / 2);
+  }
+
+  @Test
+  public void testFailedSegment() throws Exception {
+    _failingSegment = "segment_3";
+    ParallelSegmentPusher.PushSummary summary = newPusher(false).push(getSegmentTars());
+
+    Assert.assertFalse(summary.isSuccessful());
+    Assert.assertEquals(summary.getNumPushedSegments(), NUM_SEGMENTS - 1);
+    Assert.assertEquals(summary.getFailedSegments().keySet(), Collections.singleton("segment_3"));
+    Assert.assertEquals(_receivedSegments.size(), NUM_SEGMENTS - 1);
+    // The failed segment was attempted as many times as the retry policy allows
+    Assert.assertEquals(_numRequests.get(), NUM_SEGMENTS - 1 + 3);
+  }
+
+  @Test
+  public void testRejectedSegment() throws Exception {
+    _rejectedSegment = "segment_3";
+    ParallelSegmentPusher.PushSummary summary = newPusher(false).push(getSegmentTars());
+
+    Assert.assertFalse(summary.isSuccessful());
+    Assert.assertEquals(summary.getFailedSegments().keySet(), Collections.singleton("segment_3"));
+    Assert.assertEquals(_receivedSegments.size(), NUM_SEGMENTS - 1);
+    // Client errors are not retried
+    Assert.assertEquals(_numRequests.get(), NUM_SEGMENTS);
+  }
+
+  @Test
+  public void testPushToAllHosts() throws Exception {
+    ParallelSegmentPusher.PushSummary summary = newPusher(true).push(getSegmentTars());
+
+    Assert.assertTrue(summary.isSuccessful());
+    for (int i = 0; i < NUM_SEGMENTS; i++) {
+      Assert.assertEquals(_receivedSegments.count(HOST_1 + "/segment_" + i), 1);
+      Assert.assertEquals(_receivedSegments.count(HOST_2 + "/segment_" + i), 1);
+    }
+  }
+
+  private ParallelSegmentPusher newPusher(boolean pushToAllHosts) {
+    return new ParallelSegmentPusher(HOSTS, _port, PARALLELISM,
+        RetryPolicies.exponentialBackoffRetryPolicy(3, 10L, 2.0f), pushToAllHosts);
+  }
+
+  private int getNumSegments(String host) {
+    int numSegments = 0;
+    for (String receivedSegment : _receivedSegments.elementSet()) {
+      if (receivedSegment.startsWith(host + "/")) {
+        numSegments += _receivedSegments.count(receivedSegment);
+      }
+    }
+    return numSegments;
+  }
+
+  private static List<ParallelSegmentPusher.SegmentTar> getSegmentTars() {
+    List<ParallelSegmentPusher.SegmentTar> segmentTars = new ArrayList<>();
+    for (int i = 0; i < NUM_SEGMENTS; i++) {
+      final String segmentName = "segment_" + i;
+      final byte[] content = new byte[1024];
+      segmentTars.add(new ParallelSegmentPusher.SegmentTar() {
+        @Override
+        public String getName() {
+          return segmentName;
+        }
+
+        @Override
+        public long getLengthInBytes() {
+          return content.length;
+        }
+
+        @Override
+        public InputStream openStream() {
+          return new ByteArrayInputStream(content);
+        }
+      });
+    }
+    return segmentTars;
+  }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.pql.parsers;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class CachingPql2CompilerTest {
+  private static final Pql2Compiler COMPILER = new Pql2Compiler();
+
+  @Test
+  public void testSameResultsAsCompiler() {
+    CachingPql2Compiler cachingCompiler = new CachingPql2Compiler(100);
+    String[] queries = new String[]{
+        "select count(*) from myTable",
+        "select count(*) from myTable where a = 1 and b = 'x'",
+        "select count(*) from myTable where a = 2 and b = 'Martha''s Vineyard'",
+        "select count(*) from myTable where a = 3 and b = \"Martha\"\"s Vineyard\"",
+        "select count(*) from myTable where a = +007 and b = 'y'",
+        "select sum(c) from myTable where a in (3, 1, 2) and b not in ('y', 'x', 'y') group by d top 5",
+        "select sum(c) from myTable where a in (9, 3, 5) and b not in ('z', 'z', 'z') group by d top 5",
+        "select * from myTable where a between 1 and 5 and b > 1.50 and c <= 7 limit 10",
+        "select * from myTable where a between 2 and 4 and b > 2.5 and c <= 8 limit 10",
+        "select * from myTable where (a = 1 or a = 2) and (b < 'm' or b >= 'q') order by c limit 3",
+        "select * from myTable where (a = 3 or a = 3) and (b < 'n' or b >= 'r') order by c limit 3",
+        "select * from myTable where 5 < a limit 1",
+        "select * from myTable where 6 < a limit 1"
+    };
+
+    // Each query compiled twice, the second time served from the query cache
+    for (int i = 0; i < 2; i++) {
+      for (String query : queries) {
+        Assert.assertEquals(toNormalizedString(cachingCompiler.compileToBrokerRequest(query)),
+            toNormalizedString(COMPILER.compileToBrokerRequest(query)), query);
+      }
+    }
+    Assert.assertEquals(cachingCompiler.getQueryCacheStats().hitCount(), queries.length);
+    // Queries which only differ in their literals share the same template
+    Assert.assertEquals(cachingCompiler.getTemplateCacheStats().hitCount(), 7L);
+  }
+
+  @Test
+  public void testReturnedRequestsAreCopies() {
+    CachingPql2Compiler cachingCompiler = new CachingPql2Compiler(100);
+    String query = "select count(*) from myTable where a = 1";
+    BrokerRequest brokerRequest = cachingCompiler.compileToBrokerRequest(query);
+    brokerRequest.getQuerySource().setTableName("myTable_OFFLINE");
+    brokerRequest.getFilterQuery().getValue().set(0, "2");
+    brokerRequest.setEnableTrace(true);
+
+    BrokerRequest cachedBrokerRequest = cachingCompiler.compileToBrokerRequest(query);
+    Assert.assertEquals(cachedBrokerRequest.getQuerySource().getTableName(), "myTable");
+    Assert.assertEquals(cachedBrokerRequest.getFilterQuery().getValue().get(0), "1");
+    Assert.assertFalse(cachedBrokerRequest.isEnableTrace());
+
+    BrokerRequest boundBrokerRequest =
+        cachingCompiler.compileToBrokerRequest("select count(*) from myTable where a = 3");
+    Assert.assertEquals(boundBrokerRequest.getFilterQuery().getValue().get(0), "3");
+  }
+
+  @Test
+  public void testInvalidQueries() {
+    CachingPql2Compiler cachingCompiler = new CachingPql2Compiler(100);
+    String[] invalidQueries = new String[]{
+        "select count(*) from myTable where a = 1 limit 5 where b = 2",
+        "select count(*) from myTable where a = 99999999999999999999",
+        "select count(*) from myTable where 1 = 2",
+        "select count(*) from myTable where a = 'unterminated",
+        "select count(*) from"
+    };
+    for (int i = 0; i < 2; i++) {
+      for (String invalidQuery : invalidQueries) {
+        try {
+          cachingCompiler.compileToBrokerRequest(invalidQuery);
+          Assert.fail("Query " + invalidQuery + " compiled successfully but was expected to fail compilation");
+        } catch (Pql2CompilationException e) {
+          // Expected
+        }
+      }
+    }
+    Assert.assertEquals(cachingCompiler.getQueryCacheStats().hitCount(), 0L);
+  }
+
+  @Test
+  public void testParameterize() {
+    CachingPql2Compiler.ParameterizedQuery parameterizedQuery = CachingPql2Compiler.parameterize(
+        "select percentile90(c) from myTable where a = 'x' and b in (1, 2.0) group by d top 10 limit 5");
+    Assert.assertNotNull(parameterizedQuery);
+    Assert.assertEquals(parameterizedQuery._template,
+        "select percentile90(c) from myTable where a = '\u00010\u0001' and b in ('\u00011\u0001', '\u00012\u0001') "
+            + "group by d top 10 limit 5");
+    Assert.assertEquals(parameterizedQuery._literalValues, new String[]{"x", "1", "2.0"});
+
+    // No literal in the WHERE clause
+    Assert.assertNull(CachingPql2Compiler.parameterize("select * from myTable limit 10"));
+  }
+
+  private static String toNormalizedString(BrokerRequest brokerRequest) {
+    BrokerRequest requestWithoutFilter = brokerRequest.deepCopy();
+    requestWithoutFilter.unsetFilterQuery();
+    requestWithoutFilter.unsetFilterSubQueryMap();
+    return requestWithoutFilter + RequestUtils.getNormalizedFilterString(brokerRequest);
+  }
+}
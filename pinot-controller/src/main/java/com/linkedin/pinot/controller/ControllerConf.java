@@ -40,17 +40,32 @@ public class ControllerConf extends PropertiesConfiguration {
   private static final String EXTERNAL_VIEW_ONLINE_TO_OFFLINE_TIMEOUT = "controller.upload.onlineToOfflineTimeout";
   private static final String RETENTION_MANAGER_FREQUENCY_IN_SECONDS = "controller.retention.frequencyInSeconds";
   private static final String VALIDATION_MANAGER_FREQUENCY_IN_SECONDS = "controller.validation.frequencyInSeconds";
+  // Validation runs only revalidate the tables that changed since the previous run, except for periodic full resyncs
+  private static final String VALIDATION_MANAGER_FULL_RESYNC_FREQUENCY_IN_SECONDS =
+      "controller.validation.fullResyncFrequencyInSeconds";
   private static final String STATUS_CHECKER_FREQUENCY_IN_SECONDS = "controller.statuschecker.frequencyInSeconds";
+  private static final String SEGMENT_MERGE_MANAGER_FREQUENCY_IN_SECONDS = "controller.segment.merge.frequencyInSeconds";
   private static final String STATUS_CHECKER_WAIT_FOR_PUSH_TIME_IN_SECONDS = "controller.statuschecker.waitForPushTimeInSeconds";
   private static final String SERVER_ADMIN_REQUEST_TIMEOUT_SECONDS = "server.request.timeoutSeconds";
   private static final String SEGMENT_COMMIT_TIMEOUT_SECONDS = "controller.realtime.segment.commit.timeoutSeconds";
+  // Time to wait for more segments to be added or removed before updating the ideal state of a table
+  private static final String IDEAL_STATE_BATCH_INTERVAL_MS = "controller.idealstate.batch.intervalMs";
+  // Maximum number of segment files deleted concurrently
+  private static final String SEGMENT_DELETION_PARALLELISM = "controller.segment.deletion.parallelism";
+  // Interval between refreshes of the server disk usages used by the size-aware segment assignment
+  private static final String SERVER_LOAD_REFRESH_INTERVAL_SECONDS = "controller.server.load.refreshIntervalSeconds";
 
   private static final int DEFAULT_RETENTION_CONTROLLER_FREQUENCY_IN_SECONDS = 6 * 60 * 60; // 6 Hours.
   private static final int DEFAULT_VALIDATION_CONTROLLER_FREQUENCY_IN_SECONDS = 60 * 60; // 1 Hour.
+  private static final int DEFAULT_VALIDATION_CONTROLLER_FULL_RESYNC_FREQUENCY_IN_SECONDS = 6 * 60 * 60; // 6 Hours.
   private static final int DEFAULT_STATUS_CONTROLLER_FREQUENCY_IN_SECONDS = 5 * 60; // 5 minutes
+  private static final int DEFAULT_SEGMENT_MERGE_CONTROLLER_FREQUENCY_IN_SECONDS = 60 * 60; // 1 Hour.
   private static final int DEFAULT_STATUS_CONTROLLER_WAIT_FOR_PUSH_TIME_IN_SECONDS = 10 * 60; // 10 minutes
   private static final long DEFAULT_EXTERNAL_VIEW_ONLINE_TO_OFFLINE_TIMEOUT_MILLIS = 120_000L; // 2 minutes
   private static final int DEFAULT_SERVER_ADMIN_REQUEST_TIMEOUT_SECONDS = 30;
+  private static final long DEFAULT_IDEAL_STATE_BATCH_INTERVAL_MS = 100L;
+  private static final int DEFAULT_SEGMENT_DELETION_PARALLELISM = 8;
+  private static final int DEFAULT_SERVER_LOAD_REFRESH_INTERVAL_SECONDS = 15 * 60; // 15 minutes
 
   public ControllerConf(File file) throws ConfigurationException {
     super(file);
@@ -218,6 +233,17 @@ public class ControllerConf extends PropertiesConfiguration {
     setProperty(VALIDATION_MANAGER_FREQUENCY_IN_SECONDS, Integer.toString(validationFrequencyInSeconds));
   }
 
+  public int getValidationControllerFullResyncFrequencyInSeconds() {
+    if (containsKey(VALIDATION_MANAGER_FULL_RESYNC_FREQUENCY_IN_SECONDS)) {
+      return Integer.parseInt((String) getProperty(VALIDATION_MANAGER_FULL_RESYNC_FREQUENCY_IN_SECONDS));
+    }
+    return DEFAULT_VALIDATION_CONTROLLER_FULL_RESYNC_FREQUENCY_IN_SECONDS;
+  }
+
+  public void setValidationControllerFullResyncFrequencyInSeconds(int fullResyncFrequencyInSeconds) {
+    setProperty(VALIDATION_MANAGER_FULL_RESYNC_FREQUENCY_IN_SECONDS, Integer.toString(fullResyncFrequencyInSeconds));
+  }
+
   public int getStatusCheckerFrequencyInSeconds() {
     if (containsKey(STATUS_CHECKER_FREQUENCY_IN_SECONDS)) {
       return Integer.parseInt((String) getProperty(STATUS_CHECKER_FREQUENCY_IN_SECONDS));
@@ -229,6 +255,17 @@ public class ControllerConf extends PropertiesConfiguration {
     setProperty(STATUS_CHECKER_FREQUENCY_IN_SECONDS, Integer.toString(statusCheckerFrequencyInSeconds));
   }
 
+  public int getSegmentMergeControllerFrequencyInSeconds() {
+    if (containsKey(SEGMENT_MERGE_MANAGER_FREQUENCY_IN_SECONDS)) {
+      return Integer.parseInt((String) getProperty(SEGMENT_MERGE_MANAGER_FREQUENCY_IN_SECONDS));
+    }
+    return DEFAULT_SEGMENT_MERGE_CONTROLLER_FREQUENCY_IN_SECONDS;
+  }
+
+  public void setSegmentMergeControllerFrequencyInSeconds(int segmentMergeFrequencyInSeconds) {
+    setProperty(SEGMENT_MERGE_MANAGER_FREQUENCY_IN_SECONDS, Integer.toString(segmentMergeFrequencyInSeconds));
+  }
+
   public int getStatusCheckerWaitForPushTimeInSeconds() {
     if (containsKey(STATUS_CHECKER_WAIT_FOR_PUSH_TIME_IN_SECONDS)) {
       return Integer.parseInt((String) getProperty(STATUS_CHECKER_WAIT_FOR_PUSH_TIME_IN_SECONDS));
@@ -252,6 +289,39 @@ public class ControllerConf extends PropertiesConfiguration {
     setProperty(EXTERNAL_VIEW_ONLINE_TO_OFFLINE_TIMEOUT, timeout);
   }
 
+  public long getIdealStateBatchIntervalMs() {
+    if (containsKey(IDEAL_STATE_BATCH_INTERVAL_MS)) {
+      return Long.parseLong(getProperty(IDEAL_STATE_BATCH_INTERVAL_MS).toString());
+    }
+    return DEFAULT_IDEAL_STATE_BATCH_INTERVAL_MS;
+  }
+
+  public void setIdealStateBatchIntervalMs(long batchIntervalMs) {
+    setProperty(IDEAL_STATE_BATCH_INTERVAL_MS, Long.toString(batchIntervalMs));
+  }
+
+  public int getSegmentDeletionParallelism() {
+    if (containsKey(SEGMENT_DELETION_PARALLELISM)) {
+      return Integer.parseInt(getProperty(SEGMENT_DELETION_PARALLELISM).toString());
+    }
+    return DEFAULT_SEGMENT_DELETION_PARALLELISM;
+  }
+
+  public void setSegmentDeletionParallelism(int segmentDeletionParallelism) {
+    setProperty(SEGMENT_DELETION_PARALLELISM, Integer.toString(segmentDeletionParallelism));
+  }
+
+  public int getServerLoadRefreshIntervalSeconds() {
+    if (containsKey(SERVER_LOAD_REFRESH_INTERVAL_SECONDS)) {
+      return Integer.parseInt(getProperty(SERVER_LOAD_REFRESH_INTERVAL_SECONDS).toString());
+    }
+    return DEFAULT_SERVER_LOAD_REFRESH_INTERVAL_SECONDS;
+  }
+
+  public void setServerLoadRefreshIntervalSeconds(int refreshIntervalSeconds) {
+    setProperty(SERVER_LOAD_REFRESH_INTERVAL_SECONDS, Integer.toString(refreshIntervalSeconds));
+  }
+
   public boolean tenantIsolationEnabled() {
     if (containsKey(CLUSTER_TENANT_ISOLATION_ENABLE)) {
       return Boolean.parseBoolean(getProperty(CLUSTER_TENANT_ISOLATION_ENABLE).toString());
@@ -22,6 +22,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.httpclient.HttpConnectionManager;
 import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.io.FileUtils;
@@ -41,11 +42,14 @@ import com.linkedin.pinot.common.metrics.MetricsHelper;
 import com.linkedin.pinot.common.metrics.ValidationMetrics;
 import com.linkedin.pinot.common.utils.ServiceStatus;
 import com.linkedin.pinot.controller.api.ControllerRestApplication;
+import com.linkedin.pinot.controller.api.restlet.resources.TableSizeReader;
 import com.linkedin.pinot.controller.helix.SegmentStatusChecker;
 import com.linkedin.pinot.controller.helix.core.PinotHelixResourceManager;
 import com.linkedin.pinot.controller.helix.core.realtime.PinotLLCRealtimeSegmentManager;
 import com.linkedin.pinot.controller.helix.core.realtime.PinotRealtimeSegmentManager;
+import com.linkedin.pinot.controller.helix.core.merge.SegmentMergeManager;
 import com.linkedin.pinot.controller.helix.core.retention.RetentionManager;
+import com.linkedin.pinot.controller.helix.core.sharding.CachedServerLoadProvider;
 import com.linkedin.pinot.controller.validation.ValidationManager;
 import com.yammer.metrics.core.MetricsRegistry;
 
@@ -61,11 +65,13 @@ public class ControllerStarter {
   private final Application controllerRestApp;
   private final PinotHelixResourceManager helixResourceManager;
   private final RetentionManager retentionManager;
+  private final SegmentMergeManager segmentMergeManager;
   private ValidationManager validationManager;
   private final MetricsRegistry _metricsRegistry;
   private final PinotRealtimeSegmentManager realtimeSegmentsManager;
   private final SegmentStatusChecker segmentStatusChecker;
   private final ExecutorService executorService;
+  private CachedServerLoadProvider serverLoadProvider;
 
   public ControllerStarter(ControllerConf conf) {
     config = conf;
@@ -73,6 +79,7 @@ public class ControllerStarter {
     controllerRestApp = new ControllerRestApplication(config.getQueryConsole());
     helixResourceManager = new PinotHelixResourceManager(config);
     retentionManager = new RetentionManager(helixResourceManager, config.getRetentionControllerFrequencyInSeconds());
+    segmentMergeManager = new SegmentMergeManager(helixResourceManager, config);
     _metricsRegistry = new MetricsRegistry();
     realtimeSegmentsManager = new PinotRealtimeSegmentManager(helixResourceManager);
     segmentStatusChecker = new SegmentStatusChecker(helixResourceManager, config);
@@ -107,6 +114,11 @@ public class ControllerStarter {
     connectionManager.getParams().setConnectionTimeout(config.getServerAdminRequestTimeoutSeconds());
     applicationContext.getAttributes().put(HttpConnectionManager.class.toString(), connectionManager);
     applicationContext.getAttributes().put(Executor.class.toString(), executorService);
+    serverLoadProvider = new CachedServerLoadProvider(helixResourceManager,
+        new TableSizeReader(executorService, connectionManager, helixResourceManager),
+        TimeUnit.SECONDS.toMillis(config.getServerLoadRefreshIntervalSeconds()),
+        (int) TimeUnit.SECONDS.toMillis(config.getServerAdminRequestTimeoutSeconds()));
+    helixResourceManager.setServerLoadProvider(serverLoadProvider);
 
     controllerRestApp.setContext(applicationContext);
 
@@ -118,7 +130,9 @@ public class ControllerStarter {
 
     try {
       LOGGER.info("Starting Pinot Helix resource manager and connecting to Zookeeper");
+      helixResourceManager.setControllerMetrics(controllerMetrics);
       helixResourceManager.start();
+      serverLoadProvider.start();
       // Helix resource manager must be started in order to create PinotLLCRealtimeSegmentManager
       PinotLLCRealtimeSegmentManager.create(helixResourceManager, config, controllerMetrics);
       ValidationMetrics validationMetrics = new ValidationMetrics(_metricsRegistry);
@@ -126,7 +140,9 @@ public class ControllerStarter {
       LOGGER.info("Starting Pinot REST API component");
       component.start();
       LOGGER.info("Starting retention manager");
-      retentionManager.start();
+      retentionManager.start(controllerMetrics);
+      LOGGER.info("Starting segment merge manager");
+      segmentMergeManager.start();
       LOGGER.info("Starting validation manager");
       validationManager.start();
       LOGGER.info("Starting realtime segment manager");
@@ -235,12 +251,18 @@ public class ControllerStarter {
       LOGGER.info("Stopping retention manager");
       retentionManager.stop();
 
+      LOGGER.info("Stopping segment merge manager");
+      segmentMergeManager.stop();
+
       LOGGER.info("Stopping API component");
       component.stop();
 
       LOGGER.info("Stopping realtime segment manager");
       realtimeSegmentsManager.stop();
 
+      LOGGER.info("Stopping server load provider");
+      serverLoadProvider.stop();
+
       LOGGER.info("Stopping resource manager");
       helixResourceManager.stop();
 
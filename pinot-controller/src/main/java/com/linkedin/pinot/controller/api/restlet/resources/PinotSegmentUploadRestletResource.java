@@ -16,16 +16,17 @@
 package com.linkedin.pinot.controller.api.restlet.resources;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.InetAddress;
 import java.net.URLDecoder;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
 import org.apache.commons.configuration.ConfigurationException;
-import org.apache.commons.fileupload.FileItem;
-import org.apache.commons.fileupload.disk.DiskFileItemFactory;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
 import org.apache.commons.io.FileUtils;
 import org.apache.helix.ZNRecord;
 import org.apache.helix.store.zk.ZkHelixPropertyStore;
@@ -64,7 +65,6 @@ import com.linkedin.pinot.common.utils.CommonConstants;
 import com.linkedin.pinot.common.utils.FileUploadUtils;
 import com.linkedin.pinot.common.utils.FileUploadUtils.FileUploadType;
 import com.linkedin.pinot.common.utils.StringUtil;
-import com.linkedin.pinot.common.utils.TarGzCompressionUtils;
 import com.linkedin.pinot.common.utils.time.TimeUtils;
 import com.linkedin.pinot.controller.ControllerConf;
 import com.linkedin.pinot.controller.api.ControllerRestApplication;
@@ -260,6 +260,7 @@ public class PinotSegmentUploadRestletResource extends BasePinotControllerRestle
       }
       String downloadURI = null;
       boolean found = false;
+      long segmentSizeInBytes = 0;
       switch (uploadType) {
         case URI:
         case JSON:
@@ -312,29 +313,38 @@ public class PinotSegmentUploadRestletResource extends BasePinotControllerRestle
           }
           if (dataFile.exists() && dataFile.length() > 0) {
             found = true;
+            // Only the metadata of the segment is extracted, the rest of the tar is only decompressed to be verified
+            tmpSegmentDir = createTmpSegmentDir(dataFile);
+            InputStream inputStream = new FileInputStream(dataFile);
+            try {
+              segmentSizeInBytes = SegmentTarReader.readSegmentTar(inputStream, null, tmpSegmentDir);
+            } catch (IOException e) {
+              return invalidSegmentTarRepresentation(e);
+            } finally {
+              inputStream.close();
+            }
           }
           break;
         case TAR:
         default:
-          // 1/ Create a factory for disk-based file items
-          final DiskFileItemFactory factory = new DiskFileItemFactory();
-
-          // 2/ Create a new file upload handler based on the Restlet
-          // FileUpload extension that will parse Restlet requests and
-          // generates FileItems.
-          final RestletFileUpload upload = new RestletFileUpload(factory);
-          final List<FileItem> items;
-
-          // 3/ Request is parsed by the handler which generates a
-          // list of FileItems
-          items = upload.parseRequest(getRequest());
-
-          for (final Iterator<FileItem> it = items.iterator(); it.hasNext() && !found;) {
-            final FileItem fi = it.next();
-            if (fi.getFieldName() != null) {
+          // Stream the uploaded tar to its file while extracting the metadata of the segment from it, instead of
+          // first buffering the upload to a temporary file and then untarring the whole segment
+          final RestletFileUpload upload = new RestletFileUpload();
+          final FileItemIterator itemIterator = upload.getItemIterator(entity);
+          while (!found && itemIterator.hasNext()) {
+            final FileItemStream itemStream = itemIterator.next();
+            if (itemStream.getFieldName() != null) {
               found = true;
-              dataFile = new File(tempDir, fi.getFieldName());
-              fi.write(dataFile);
+              dataFile = new File(tempDir, itemStream.getFieldName());
+              tmpSegmentDir = createTmpSegmentDir(dataFile);
+              InputStream inputStream = itemStream.openStream();
+              try {
+                segmentSizeInBytes = SegmentTarReader.readSegmentTar(inputStream, dataFile, tmpSegmentDir);
+              } catch (IOException e) {
+                return invalidSegmentTarRepresentation(e);
+              } finally {
+                inputStream.close();
+              }
             }
           }
       }
@@ -344,24 +354,11 @@ public class PinotSegmentUploadRestletResource extends BasePinotControllerRestle
         // Create a new representation based on disk file.
         // The content is arbitrarily sent as plain text.
         rep = new StringRepresentation(dataFile + " sucessfully uploaded", MediaType.TEXT_PLAIN);
-        tmpSegmentDir =
-            new File(tempUntarredPath, dataFile.getName() + "-" + _controllerConf.getControllerHost() + "_"
-                + _controllerConf.getControllerPort() + "-" + System.currentTimeMillis());
-        LOGGER.info("Untar segment to temp dir: " + tmpSegmentDir);
-        if (tmpSegmentDir.exists()) {
-          FileUtils.deleteDirectory(tmpSegmentDir);
-        }
-        if (!tmpSegmentDir.exists()) {
-          tmpSegmentDir.mkdirs();
-        }
-        // While there is TarGzCompressionUtils.unTarOneFile, we use unTar here to unpack all files
-        // in the segment in order to ensure the segment is not corrupted
-        TarGzCompressionUtils.unTar(dataFile, tmpSegmentDir);
         File segmentFile = tmpSegmentDir.listFiles()[0];
         String clientIpAddress = getClientInfo().getAddress();
         String clientAddress = InetAddress.getByName(clientIpAddress).getHostName();
         LOGGER.info("Processing upload request for segment '{}' from client '{}'", segmentFile.getName(), clientAddress);
-        return uploadSegment(segmentFile, dataFile, downloadURI);
+        return uploadSegment(segmentFile, dataFile, downloadURI, segmentSizeInBytes);
       } else {
         // Some problem occurs, sent back a simple line of text.
         String errorMsg = "No file was uploaded";
@@ -393,6 +390,27 @@ public class PinotSegmentUploadRestletResource extends BasePinotControllerRestle
     return rep;
   }
 
+  private File createTmpSegmentDir(File dataFile) throws IOException {
+    File tmpSegmentDir =
+        new File(tempUntarredPath, dataFile.getName() + "-" + _controllerConf.getControllerHost() + "_"
+            + _controllerConf.getControllerPort() + "-" + System.currentTimeMillis());
+    LOGGER.info("Extract segment metadata to temp dir: " + tmpSegmentDir);
+    if (tmpSegmentDir.exists()) {
+      FileUtils.deleteDirectory(tmpSegmentDir);
+    }
+    FileUtils.forceMkdir(tmpSegmentDir);
+    return tmpSegmentDir;
+  }
+
+  private Representation invalidSegmentTarRepresentation(IOException e) {
+    String errorMsg = "Invalid segment tar: " + e.getMessage();
+    LOGGER.warn(errorMsg);
+    ControllerRestApplication.getControllerMetrics()
+        .addMeteredGlobalValue(ControllerMeter.CONTROLLER_SEGMENT_UPLOAD_ERROR, 1L);
+    setStatus(Status.CLIENT_ERROR_BAD_REQUEST);
+    return new StringRepresentation(getErrorMsgInJson(errorMsg).toJSONString(), MediaType.APPLICATION_JSON);
+  }
+
   private String getDownloadUri(FileUploadType uploadType, Series headers, Representation entity) throws Exception {
     switch (uploadType) {
     case URI:
@@ -421,7 +439,7 @@ public class PinotSegmentUploadRestletResource extends BasePinotControllerRestle
       @Response(statusCode = "403", description = "Forbidden operation typically because it exceeds configured quota"),
       @Response(statusCode = "500", description = "There was an error when uploading the segment")
   })
-  private Representation uploadSegment(File indexDir, File dataFile, String downloadUrl)
+  private Representation uploadSegment(File indexDir, File dataFile, String downloadUrl, long segmentSizeInBytes)
       throws ConfigurationException, IOException, JSONException {
     final SegmentMetadata metadata = new SegmentMetadataImpl(indexDir);
     final File tableDir = new File(baseDataDir, metadata.getTableName());
@@ -437,7 +455,8 @@ public class PinotSegmentUploadRestletResource extends BasePinotControllerRestle
       repr.setMediaType(MediaType.APPLICATION_JSON);
       return repr;
     }
-    StorageQuotaChecker.QuotaCheckerResponse quotaResponse = checkStorageQuota(indexDir, metadata, offlineTableConfig);
+    StorageQuotaChecker.QuotaCheckerResponse quotaResponse =
+        checkStorageQuota(segmentSizeInBytes, metadata, offlineTableConfig);
     if (!quotaResponse.isSegmentWithinQuota) {
       // this is not an "error" hence we don't increment segment upload errors
       LOGGER.info("Rejecting segment upload for table: {}, segment: {}, reason: {}",
@@ -462,7 +481,7 @@ public class PinotSegmentUploadRestletResource extends BasePinotControllerRestle
         downloadUrl = ControllerConf.constructDownloadUrl(tableName, dataFile.getName(), vip);
       }
       // TODO: this will read table configuration again from ZK. We should optimize that
-      response = _pinotHelixResourceManager.addSegment(metadata, downloadUrl);
+      response = _pinotHelixResourceManager.addSegment(metadata, downloadUrl, segmentSizeInBytes);
     }
 
     if (response.isSuccessful()) {
@@ -576,17 +595,16 @@ public class PinotSegmentUploadRestletResource extends BasePinotControllerRestle
   }
 
   /**
-   * check if the segment represented by segmentFile is within the storage quota
-   * @param segmentFile untarred segment. This should not be null.
-   *                    segmentFile must exist on disk and must be a directory
+   * check if the segment is within the storage quota
+   * @param segmentSizeInBytes size of the untarred segment
    * @param metadata segment metadata. This should not be null
    */
-  private StorageQuotaChecker.QuotaCheckerResponse checkStorageQuota(@Nonnull File segmentFile, @Nonnull SegmentMetadata metadata,
-      @Nonnull OfflineTableConfig offlineTableConfig) {
+  private StorageQuotaChecker.QuotaCheckerResponse checkStorageQuota(long segmentSizeInBytes,
+      @Nonnull SegmentMetadata metadata, @Nonnull OfflineTableConfig offlineTableConfig) {
     TableSizeReader tableSizeReader = new TableSizeReader(executor, connectionManager, _pinotHelixResourceManager);
     StorageQuotaChecker quotaChecker = new StorageQuotaChecker(offlineTableConfig, tableSizeReader);
     String offlineTableName = TableNameBuilder.OFFLINE_TABLE_NAME_BUILDER.forTable(metadata.getTableName());
-    return quotaChecker.isSegmentStorageWithinQuota(segmentFile, offlineTableName,
+    return quotaChecker.isSegmentStorageWithinQuota(segmentSizeInBytes, offlineTableName,
         metadata.getName(), _controllerConf.getServerAdminRequestTimeoutSeconds() * 1000);
   }
 
@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.controller.api.restlet.resources;
+
+import com.google.common.collect.ImmutableSet;
+import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
+import com.linkedin.pinot.core.segment.store.SegmentMetadataBinaryFile;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Reads an uploaded segment tar.gz in a single pass over the stream, without untarring the whole segment:
+ * <ul>
+ *   <li>Optionally copies the compressed stream as is to a file, so that the segment does not need to be written once
+ *   to a temporary file and then once more untarred.</li>
+ *   <li>Extracts the metadata files of the segment only, from which its {@link
+ *   com.linkedin.pinot.core.segment.index.SegmentMetadataImpl} can be read.</li>
+ *   <li>Decompresses the rest of the segment on the fly, which verifies the gzip CRC-32 of the whole segment, and sums
+ *   up the size of its files.</li>
+ * </ul>
+ * The stream is rejected as soon as it is found not to be a valid gzip-compressed tar.
+ */
+public class SegmentTarReader {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SegmentTarReader.class);
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final Set<String> METADATA_FILE_NAMES =
+      ImmutableSet.of(V1Constants.MetadataKeys.METADATA_FILE_NAME, V1Constants.SEGMENT_CREATION_META,
+          SegmentMetadataBinaryFile.METADATA_BINARY_FILE_NAME);
+
+  private SegmentTarReader() {
+  }
+
+  /**
+   * Reads a segment tar.gz from the given stream, which is not closed.
+   *
+   * @param inputStream Stream of the segment tar.gz
+   * @param tarFile File to copy the segment tar.gz to, or null not to copy it
+   * @param metadataDir Directory to extract the metadata files of the segment into, under their path in the tar
+   * @return Total size in bytes of the files of the segment once untarred
+   * @throws IOException if the stream is not a valid segment tar.gz, in which case the file it was copied to is deleted
+   */
+  public static long readSegmentTar(InputStream inputStream, @Nullable File tarFile, File metadataDir)
+      throws IOException {
+    OutputStream tarOutputStream = null;
+    try {
+      InputStream rawInputStream = inputStream;
+      if (tarFile != null) {
+        tarOutputStream = new BufferedOutputStream(new FileOutputStream(tarFile), BUFFER_SIZE);
+        rawInputStream = new TeeInputStream(rawInputStream, tarOutputStream);
+      }
+      rawInputStream = new BufferedInputStream(rawInputStream, BUFFER_SIZE);
+
+      GzipCompressorInputStream gzipInputStream = new GzipCompressorInputStream(rawInputStream);
+      TarArchiveInputStream tarInputStream = new TarArchiveInputStream(gzipInputStream);
+      String metadataDirPath = metadataDir.getCanonicalPath() + File.separator;
+      long segmentSizeInBytes = 0;
+      boolean hasMetadataFile = false;
+      TarArchiveEntry entry;
+      // Skipping an entry reads its content, so the content of all the entries goes through the gzip CRC
+      while ((entry = (TarArchiveEntry) tarInputStream.getNextEntry()) != null) {
+        if (entry.isDirectory()) {
+          continue;
+        }
+        segmentSizeInBytes += entry.getSize();
+        String fileName = new File(entry.getName()).getName();
+        if (METADATA_FILE_NAMES.contains(fileName)) {
+          File metadataFile = new File(metadataDir, entry.getName());
+          if (!metadataFile.getCanonicalPath().startsWith(metadataDirPath)) {
+            throw new IOException("Illegal path for tar entry: " + entry.getName());
+          }
+          FileUtils.forceMkdir(metadataFile.getParentFile());
+          OutputStream metadataOutputStream = new FileOutputStream(metadataFile);
+          try {
+            IOUtils.copy(tarInputStream, metadataOutputStream);
+          } finally {
+            metadataOutputStream.close();
+          }
+          if (fileName.equals(V1Constants.MetadataKeys.METADATA_FILE_NAME)) {
+            hasMetadataFile = true;
+          }
+        }
+      }
+
+      // The tar may end before the gzip stream, whose CRC is only verified once read until its end, and the raw stream
+      // needs to be read until its end anyway to be fully copied
+      byte[] buffer = new byte[BUFFER_SIZE];
+      while (gzipInputStream.read(buffer) != -1) {
+      }
+      while (rawInputStream.read(buffer) != -1) {
+      }
+      if (tarOutputStream != null) {
+        tarOutputStream.close();
+        tarOutputStream = null;
+      }
+
+      if (!hasMetadataFile) {
+        throw new IOException("Segment tar does not contain " + V1Constants.MetadataKeys.METADATA_FILE_NAME);
+      }
+      return segmentSizeInBytes;
+    } catch (IOException e) {
+      LOGGER.warn("Caught exception while reading segment tar", e);
+      IOUtils.closeQuietly(tarOutputStream);
+      if (tarFile != null) {
+        FileUtils.deleteQuietly(tarFile);
+      }
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,216 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.controller.helix.core;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.linkedin.pinot.common.metrics.ControllerGauge;
+import com.linkedin.pinot.common.metrics.ControllerMeter;
+import com.linkedin.pinot.common.metrics.ControllerMetrics;
+import com.linkedin.pinot.common.metrics.ControllerTimer;
+import com.linkedin.pinot.common.utils.CommonConstants.Helix.StateModel.SegmentOnlineOfflineStateModel;
+import com.linkedin.pinot.common.utils.helix.HelixHelper;
+import com.linkedin.pinot.common.utils.retry.RetryPolicies;
+import com.linkedin.pinot.common.utils.retry.RetryPolicy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.helix.HelixManager;
+import org.apache.helix.model.IdealState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Coalesces the concurrent additions and removals of segments to the ideal state of a table into a single ideal state
+ * update, so that a bulk push does not rewrite the ideal state once per segment, nor serialize on the version
+ * conflicts of concurrent writes.
+ * <p>Callers block until their update is written: the first caller to get hold of a table takes all the updates
+ * pending for the table, waits for the batch interval to let more of them in, applies them in order to the ideal
+ * state and writes it once. Callers whose update was written in the meantime return right away. The segments added in
+ * a batch are assigned in one pass over the ideal state being updated, each one seeing the assignment of the previous
+ * ones.
+ */
+public class IdealStateBatchUpdater {
+  private static final Logger LOGGER = LoggerFactory.getLogger(IdealStateBatchUpdater.class);
+  private static final RetryPolicy DEFAULT_RETRY_POLICY = RetryPolicies.exponentialBackoffRetryPolicy(5, 1000L, 2.0f);
+
+  /**
+   * Assigns a new segment to instances given the ideal state it is added to.
+   */
+  public interface SegmentAssigner {
+    List<String> getInstances(IdealState idealState) throws Exception;
+  }
+
+  private final HelixManager _helixManager;
+  private final long _batchIntervalMs;
+  private final ControllerMetrics _controllerMetrics;
+  private final ConcurrentMap<String, TableUpdates> _tableUpdatesMap = new ConcurrentHashMap<>();
+
+  /**
+   * @param batchIntervalMs Time to wait for more updates before writing a batch, 0 to only batch the updates that
+   *                        queued up during the previous write
+   */
+  public IdealStateBatchUpdater(HelixManager helixManager, long batchIntervalMs, ControllerMetrics controllerMetrics) {
+    _helixManager = helixManager;
+    _batchIntervalMs = batchIntervalMs;
+    _controllerMetrics = controllerMetrics;
+  }
+
+  /**
+   * Adds a segment to the ideal state of a table, ONLINE on the instances picked by the given assigner, or leaves the
+   * ideal state unchanged if the assigner fails. Blocks until the ideal state is written.
+   *
+   * @throws RuntimeException if the segment could not be added
+   */
+  public void addSegment(String tableName, final String segmentName, final SegmentAssigner segmentAssigner) {
+    update(tableName, new PendingUpdate() {
+      @Override
+      void apply(IdealState idealState) throws Exception {
+        List<String> instances = segmentAssigner.getInstances(idealState);
+        if (instances == null || instances.isEmpty()) {
+          LOGGER.warn("No instances assigned for segment {}, table {}", segmentName, idealState.getResourceName());
+        } else {
+          for (String instance : instances) {
+            idealState.setPartitionState(segmentName, instance, SegmentOnlineOfflineStateModel.ONLINE);
+          }
+        }
+        idealState.setNumPartitions(idealState.getNumPartitions() + 1);
+      }
+
+      @Override
+      public String toString() {
+        return "add segment " + segmentName;
+      }
+    });
+  }
+
+  /**
+   * Removes segments from the ideal state of a table. Blocks until the ideal state is written.
+   *
+   * @throws RuntimeException if the segments could not be removed
+   */
+  public void removeSegments(String tableName, final List<String> segmentNames) {
+    update(tableName, new PendingUpdate() {
+      @Override
+      void apply(IdealState idealState) {
+        // partitionSet is never null but let's be defensive anyway
+        Set<String> partitionSet = idealState.getPartitionSet();
+        if (partitionSet != null) {
+          partitionSet.removeAll(segmentNames);
+        }
+      }
+
+      @Override
+      public String toString() {
+        return "remove segments " + segmentNames;
+      }
+    });
+  }
+
+  private void update(String tableName, PendingUpdate update) {
+    TableUpdates tableUpdates = _tableUpdatesMap.get(tableName);
+    if (tableUpdates == null) {
+      _tableUpdatesMap.putIfAbsent(tableName, new TableUpdates());
+      tableUpdates = _tableUpdatesMap.get(tableName);
+    }
+    synchronized (tableUpdates._pendingUpdates) {
+      tableUpdates._pendingUpdates.add(update);
+    }
+
+    tableUpdates._writeLock.lock();
+    try {
+      if (!update._done) {
+        if (_batchIntervalMs > 0) {
+          Uninterruptibles.sleepUninterruptibly(_batchIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        List<PendingUpdate> batch;
+        synchronized (tableUpdates._pendingUpdates) {
+          batch = new ArrayList<>(tableUpdates._pendingUpdates);
+          tableUpdates._pendingUpdates.clear();
+        }
+        write(tableName, batch);
+      }
+    } finally {
+      tableUpdates._writeLock.unlock();
+    }
+
+    if (update._exception != null) {
+      throw new RuntimeException("Failed to " + update + " in the ideal state of table " + tableName,
+          update._exception);
+    }
+  }
+
+  private void write(String tableName, final List<PendingUpdate> batch) {
+    long startTimeMs = System.currentTimeMillis();
+    try {
+      HelixHelper.updateIdealState(_helixManager, tableName, new Function<IdealState, IdealState>() {
+        @Override
+        public IdealState apply(IdealState idealState) {
+          // Called again on a fresh ideal state on retries
+          for (PendingUpdate update : batch) {
+            update._exception = null;
+            try {
+              update.apply(idealState);
+            } catch (Exception e) {
+              LOGGER.error("Caught exception while trying to {} in the ideal state of table {}", update,
+                  idealState.getResourceName(), e);
+              update._exception = e;
+            }
+          }
+          return idealState;
+        }
+      }, DEFAULT_RETRY_POLICY);
+    } catch (Exception e) {
+      for (PendingUpdate update : batch) {
+        if (update._exception == null) {
+          update._exception = e;
+        }
+      }
+    }
+    for (PendingUpdate update : batch) {
+      update._done = true;
+    }
+
+    long writeTimeMs = System.currentTimeMillis() - startTimeMs;
+    LOGGER.info("Wrote a batch of {} updates to the ideal state of table {} in {}ms", batch.size(), tableName,
+        writeTimeMs);
+    _controllerMetrics.addTimedTableValue(tableName, ControllerTimer.IDEAL_STATE_UPDATE_TIME_MS, writeTimeMs,
+        TimeUnit.MILLISECONDS);
+    _controllerMetrics.setValueOfTableGauge(tableName, ControllerGauge.IDEAL_STATE_UPDATE_BATCH_SIZE, batch.size());
+    _controllerMetrics.addMeteredTableValue(tableName, ControllerMeter.IDEAL_STATE_UPDATES, 1L);
+    _controllerMetrics.addMeteredTableValue(tableName, ControllerMeter.IDEAL_STATE_BATCHED_UPDATES, batch.size());
+  }
+
+  private static class TableUpdates {
+    // Held while writing a batch
+    private final ReentrantLock _writeLock = new ReentrantLock();
+    private final List<PendingUpdate> _pendingUpdates = new ArrayList<>();
+  }
+
+  // The fields are set by the writer of the batch while holding the write lock of the table, and read by the caller
+  // once it holds it
+  private static abstract class PendingUpdate {
+    private boolean _done = false;
+    private Exception _exception = null;
+
+    abstract void apply(IdealState idealState) throws Exception;
+  }
+}
@@ -38,6 +38,7 @@ import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
 import com.linkedin.pinot.common.metadata.segment.RealtimeSegmentZKMetadata;
 import com.linkedin.pinot.common.metadata.segment.SegmentZKMetadata;
 import com.linkedin.pinot.common.metadata.stream.KafkaStreamMetadata;
+import com.linkedin.pinot.common.metrics.ControllerMetrics;
 import com.linkedin.pinot.common.segment.SegmentMetadata;
 import com.linkedin.pinot.common.utils.CommonConstants;
 import com.linkedin.pinot.common.utils.CommonConstants.Helix.StateModel.BrokerOnlineOfflineStateModel;
@@ -58,10 +59,12 @@ import com.linkedin.pinot.controller.helix.core.PinotResourceManagerResponse.Res
 import com.linkedin.pinot.controller.helix.core.realtime.PinotLLCRealtimeSegmentManager;
 import com.linkedin.pinot.controller.helix.core.sharding.SegmentAssignmentStrategy;
 import com.linkedin.pinot.controller.helix.core.sharding.SegmentAssignmentStrategyFactory;
+import com.linkedin.pinot.controller.helix.core.sharding.ServerLoadProvider;
 import com.linkedin.pinot.controller.helix.core.util.HelixSetupUtils;
 import com.linkedin.pinot.controller.helix.core.util.ZKMetadataUtils;
 import com.linkedin.pinot.controller.helix.starter.HelixConfig;
 import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
+import com.yammer.metrics.core.MetricsRegistry;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -71,6 +74,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -120,12 +124,18 @@ public class PinotHelixResourceManager {
   private long _externalViewUpdateRetryInterval = 500L;
   private boolean _isSingleTenantCluster = true;
   private boolean _isUpdateStateModel = false;
+  private long _idealStateBatchIntervalMs = 0L;
+  private int _segmentDeletionParallelism = 1;
+  private ControllerMetrics _controllerMetrics = new ControllerMetrics(new MetricsRegistry());
+  private IdealStateBatchUpdater _idealStateBatchUpdater;
 
   private HelixDataAccessor _helixDataAccessor;
   Builder _keyBuilder;
 
   private static final Map<String, SegmentAssignmentStrategy> SEGMENT_ASSIGNMENT_STRATEGY_MAP =
-      new HashMap<String, SegmentAssignmentStrategy>();
+      new ConcurrentHashMap<String, SegmentAssignmentStrategy>();
+
+  private ServerLoadProvider _serverLoadProvider;
 
   @SuppressWarnings("unused")
   private PinotHelixResourceManager() {
@@ -159,6 +169,22 @@ public class PinotHelixResourceManager {
         controllerConf.getControllerHost() + "_" + controllerConf.getControllerPort(), controllerConf.getDataDir(),
         controllerConf.getExternalViewOnlineToOfflineTimeout(), controllerConf.tenantIsolationEnabled(),
         controllerConf.isUpdateSegmentStateModel());
+    _idealStateBatchIntervalMs = controllerConf.getIdealStateBatchIntervalMs();
+    _segmentDeletionParallelism = controllerConf.getSegmentDeletionParallelism();
+  }
+
+  /**
+   * Sets the metrics to report to, must be called before {@link #start()}.
+   */
+  public void setControllerMetrics(ControllerMetrics controllerMetrics) {
+    _controllerMetrics = controllerMetrics;
+  }
+
+  /**
+   * Sets the provider of segment sizes and server load used by the size-aware segment assignment strategy.
+   */
+  public void setServerLoadProvider(ServerLoadProvider serverLoadProvider) {
+    _serverLoadProvider = serverLoadProvider;
   }
 
   public synchronized void start() throws Exception {
@@ -168,7 +194,10 @@ public class PinotHelixResourceManager {
     _propertyStore = ZkUtils.getZkPropertyStore(_helixZkManager, _helixClusterName);
     _helixDataAccessor = _helixZkManager.getHelixDataAccessor();
     _keyBuilder = _helixDataAccessor.keyBuilder();
-    _segmentDeletionManager = new SegmentDeletionManager(_localDiskDir, _helixAdmin, _helixClusterName, _propertyStore);
+    _segmentDeletionManager = new SegmentDeletionManager(_localDiskDir, _helixAdmin, _helixClusterName, _propertyStore,
+        _segmentDeletionParallelism, _controllerMetrics);
+    _idealStateBatchUpdater =
+        new IdealStateBatchUpdater(_helixZkManager, _idealStateBatchIntervalMs, _controllerMetrics);
     ZKMetadataProvider.setClusterTenantIsolationEnabled(_propertyStore, _isSingleTenantCluster);
   }
 
@@ -307,6 +336,36 @@ public class PinotHelixResourceManager {
     return false;
   }
 
+  /**
+   * Waits until all the replicas of a segment in the ideal state are ONLINE in the external view.
+   */
+  private boolean ifSegmentOnlineInExternalView(String tableName, String segmentName, long timeoutMillis) {
+    Set<String> instances = _helixAdmin.getResourceIdealState(_helixClusterName, tableName).getInstanceSet(segmentName);
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    while (true) {
+      ExternalView externalView = _helixAdmin.getResourceExternalView(_helixClusterName, tableName);
+      Map<String, String> instanceStateMap = externalView != null ? externalView.getStateMap(segmentName) : null;
+      if (instanceStateMap != null) {
+        boolean online = true;
+        for (String instance : instances) {
+          if (!SegmentOnlineOfflineStateModel.ONLINE.equals(instanceStateMap.get(instance))) {
+            online = false;
+            break;
+          }
+        }
+        if (online) {
+          return true;
+        }
+      }
+      if (System.currentTimeMillis() >= deadline) {
+        LOGGER.warn("Timed out while waiting for segment '{}' to become ONLINE on instances {} in external view",
+            segmentName, instances);
+        return false;
+      }
+      Uninterruptibles.sleepUninterruptibly(_externalViewUpdateRetryInterval, TimeUnit.MILLISECONDS);
+    }
+  }
+
   private boolean ifSegmentExisted(SegmentMetadata segmentMetadata) {
     if (segmentMetadata == null) {
       return false;
@@ -374,10 +433,8 @@ public class PinotHelixResourceManager {
     LOGGER.info("Trying to delete segments: {} for table: {} ", StringUtils.join(segments, ','), tableName);
     final PinotResourceManagerResponse res = new PinotResourceManagerResponse();
     try {
-      HelixHelper.removeSegmentsFromIdealState(_helixZkManager, tableName, segments);
-      for (String segment : segments) {
-        _segmentDeletionManager.deleteSegment(tableName, segment);
-      }
+      _idealStateBatchUpdater.removeSegments(tableName, segments);
+      _segmentDeletionManager.deleteSegments(tableName, segments);
 
       res.message += "Segment " + StringUtils.join(segments, ',') + " successfully deleted.";
       res.status = ResponseStatus.success;
@@ -1280,6 +1337,19 @@ public class PinotHelixResourceManager {
   }
 
   public PinotResourceManagerResponse addSegment(final SegmentMetadata segmentMetadata, String downloadUrl) {
+    return addSegment(segmentMetadata, downloadUrl, -1);
+  }
+
+  /**
+   * Adds or refreshes an offline segment.
+   *
+   * @param segmentMetadata Meta-data of the segment
+   * @param downloadUrl Download url of the segment
+   * @param segmentSizeInBytes Size of the untarred segment, -1 if unknown, stored in its meta-data in the
+   *                           property-store for the size-aware segment assignment
+   */
+  public PinotResourceManagerResponse addSegment(final SegmentMetadata segmentMetadata, String downloadUrl,
+      long segmentSizeInBytes) {
     final PinotResourceManagerResponse res = new PinotResourceManagerResponse();
     String segmentName = "Unknown";
     String tableName = "Unknown";
@@ -1299,7 +1369,9 @@ public class PinotHelixResourceManager {
           offlineSegmentZKMetadata = ZKMetadataUtils.updateSegmentMetadata(offlineSegmentZKMetadata, segmentMetadata);
           offlineSegmentZKMetadata.setDownloadUrl(downloadUrl);
           offlineSegmentZKMetadata.setRefreshTime(System.currentTimeMillis());
+          offlineSegmentZKMetadata.setSizeInBytes(segmentSizeInBytes);
           ZKMetadataProvider.setOfflineSegmentZKMetadata(_propertyStore, offlineSegmentZKMetadata);
+          updateSegmentSize(offlineSegmentZKMetadata);
           LOGGER.info("Refresh segment {} of table {} to propertystore ", segmentName, tableName);
           boolean success = true;
           if (shouldSendMessage(offlineSegmentZKMetadata)) {
@@ -1333,7 +1405,9 @@ public class PinotHelixResourceManager {
         offlineSegmentZKMetadata = ZKMetadataUtils.updateSegmentMetadata(offlineSegmentZKMetadata, segmentMetadata);
         offlineSegmentZKMetadata.setDownloadUrl(downloadUrl);
         offlineSegmentZKMetadata.setPushTime(System.currentTimeMillis());
+        offlineSegmentZKMetadata.setSizeInBytes(segmentSizeInBytes);
         ZKMetadataProvider.setOfflineSegmentZKMetadata(_propertyStore, offlineSegmentZKMetadata);
+        updateSegmentSize(offlineSegmentZKMetadata);
         LOGGER.info("Added segment {} of table {} to propertystore", segmentName, tableName);
 
         addNewOfflineSegment(segmentMetadata);
@@ -1348,6 +1422,14 @@ public class PinotHelixResourceManager {
     return res;
   }
 
+  private void updateSegmentSize(OfflineSegmentZKMetadata offlineSegmentZKMetadata) {
+    if (_serverLoadProvider != null) {
+      _serverLoadProvider.setSegmentSizeInBytes(
+          TableNameBuilder.OFFLINE_TABLE_NAME_BUILDER.forTable(offlineSegmentZKMetadata.getTableName()),
+          offlineSegmentZKMetadata.getSegmentName(), offlineSegmentZKMetadata.getSizeInBytes());
+    }
+  }
+
   // Check to see if the table has been explicitly configured to NOT use messageBasedRefresh.
   private boolean shouldSendMessage(OfflineSegmentZKMetadata segmentZKMetadata) {
     final String rawTableName = segmentZKMetadata.getTableName();
@@ -1409,7 +1491,8 @@ public class PinotHelixResourceManager {
    * - Identifies the instance set onto which the segment needs to be added, based on
    *   segment assignment strategy and replicas in the table config in the property-store.
    * - Updates ideal state such that the new segment is assigned to required set of instances as per
-   *    the segment assignment strategy and replicas.
+   *    the segment assignment strategy and replicas, batching the update with the ones of the segments added
+   *    concurrently.
    *
    * @param segmentMetadata Meta-data for the segment, used to access segmentName and tableName.
    * @throws JsonParseException
@@ -1420,6 +1503,42 @@ public class PinotHelixResourceManager {
    */
   private void addNewOfflineSegment(final SegmentMetadata segmentMetadata) throws JsonParseException,
       JsonMappingException, JsonProcessingException, JSONException, IOException {
+    final String segmentName = segmentMetadata.getName();
+    final String offlineTableName =
+        TableNameBuilder.OFFLINE_TABLE_NAME_BUILDER.forTable(segmentMetadata.getTableName());
+
+    _idealStateBatchUpdater.addSegment(offlineTableName, segmentName,
+        getInstanceAssignerForOfflineSegment(segmentMetadata));
+  }
+
+  /**
+   * Returns a callable computing the instances of a new offline segment from the segment assignment strategy and the
+   * replicas of the table config in the property-store, or the current instances of the segment if it is already in
+   * the ideal state.
+   * <p>A callable is passed to the {@link HelixHelper} methods to avoid helixHelper which is in pinot-common having to
+   * depend upon pinot-controller.
+   */
+  private Callable<List<String>> getInstancesForOfflineSegment(final SegmentMetadata segmentMetadata) {
+    final String offlineTableName =
+        TableNameBuilder.OFFLINE_TABLE_NAME_BUILDER.forTable(segmentMetadata.getTableName());
+    final IdealStateBatchUpdater.SegmentAssigner segmentAssigner =
+        getInstanceAssignerForOfflineSegment(segmentMetadata);
+
+    return new Callable<List<String>>() {
+      @Override
+      public List<String> call() throws Exception {
+        return segmentAssigner.getInstances(_helixAdmin.getResourceIdealState(_helixClusterName, offlineTableName));
+      }
+    };
+  }
+
+  /**
+   * Returns an assigner computing the instances of a new offline segment from the segment assignment strategy and the
+   * replicas of the table config in the property-store, or the current instances of the segment if it is already in
+   * the ideal state it is added to.
+   */
+  private IdealStateBatchUpdater.SegmentAssigner getInstanceAssignerForOfflineSegment(
+      final SegmentMetadata segmentMetadata) {
     final AbstractTableConfig offlineTableConfig =
         ZKMetadataProvider.getOfflineTableConfig(_propertyStore, segmentMetadata.getTableName());
 
@@ -1429,16 +1548,14 @@ public class PinotHelixResourceManager {
 
     if (!SEGMENT_ASSIGNMENT_STRATEGY_MAP.containsKey(offlineTableName)) {
       SEGMENT_ASSIGNMENT_STRATEGY_MAP.put(offlineTableName, SegmentAssignmentStrategyFactory
-          .getSegmentAssignmentStrategy(offlineTableConfig.getValidationConfig().getSegmentAssignmentStrategy()));
+          .getSegmentAssignmentStrategy(offlineTableConfig.getValidationConfig().getSegmentAssignmentStrategy(),
+              _serverLoadProvider));
     }
     final SegmentAssignmentStrategy segmentAssignmentStrategy = SEGMENT_ASSIGNMENT_STRATEGY_MAP.get(offlineTableName);
 
-    // Passing a callable to this api to avoid helixHelper having which is in pinot-common having to
-    // depend upon pinot-controller.
-    Callable<List<String>> getInstancesForSegment = new Callable<List<String>>() {
+    return new IdealStateBatchUpdater.SegmentAssigner() {
       @Override
-      public List<String> call() throws Exception {
-        final IdealState currentIdealState = _helixAdmin.getResourceIdealState(_helixClusterName, offlineTableName);
+      public List<String> getInstances(IdealState currentIdealState) throws Exception {
         final Set<String> currentInstanceSet = currentIdealState.getInstanceSet(segmentName);
 
         if (currentInstanceSet.isEmpty()) {
@@ -1447,14 +1564,84 @@ public class PinotHelixResourceManager {
                   .getServer());
           final int replicas = Integer.parseInt(offlineTableConfig.getValidationConfig().getReplication());
           return segmentAssignmentStrategy.getAssignedInstances(_helixAdmin, _helixClusterName, segmentMetadata,
-              replicas, serverTenant);
+              replicas, serverTenant, currentIdealState);
         } else {
           return new ArrayList<String>(currentIdealState.getInstanceSet(segmentName));
         }
       }
     };
+  }
+
+  /**
+   * Replaces offline segments of a table with a new segment built from their data, e.g. by merging them.
+   * - Adds the meta-data of the new segment to the property-store.
+   * - Adds the new segment to the ideal state on the instances picked by the segment assignment strategy, keeping the
+   *   old segments.
+   * - Waits until all the replicas of the new segment are ONLINE in the external view, then removes the old segments
+   *   from the ideal state.
+   * - Schedules the deletion of the old segments from the property-store and the local disk once they are gone from
+   *   the external view.
+   * The replacement is not atomic for queries: the brokers route on the external view, so until the old segments are
+   * gone from it, queries may be routed to both the old and new segments and count their rows twice. Queries are
+   * however never routed to neither of them.
+   * If the ideal state no longer contains all the old segments (e.g. some were deleted concurrently), nothing is
+   * replaced and the meta-data of the new segment is removed. If the new segment does not come ONLINE in time, it is
+   * removed and deleted, and the old segments are kept.
+   *
+   * @param segmentMetadata Meta-data of the new segment
+   * @param downloadUrl Download url of the new segment
+   * @param segmentsToReplace Names of the segments replaced by the new segment
+   * @return
+   */
+  public PinotResourceManagerResponse replaceSegments(SegmentMetadata segmentMetadata, String downloadUrl,
+      List<String> segmentsToReplace) {
+    final PinotResourceManagerResponse res = new PinotResourceManagerResponse();
+    String segmentName = segmentMetadata.getName();
+    String tableName = segmentMetadata.getTableName();
+    String offlineTableName = TableNameBuilder.OFFLINE_TABLE_NAME_BUILDER.forTable(tableName);
+    try {
+      if (!matchTableName(segmentMetadata)) {
+        throw new RuntimeException("Reject segment: table name is not registered." + " table name: " + tableName);
+      }
+      if (ifSegmentExisted(segmentMetadata)) {
+        throw new RuntimeException("Reject segment: segment " + segmentName + " already exists in table " + tableName);
+      }
 
-    HelixHelper.addSegmentToIdealState(_helixZkManager, offlineTableName, segmentName, getInstancesForSegment);
+      OfflineSegmentZKMetadata offlineSegmentZKMetadata = new OfflineSegmentZKMetadata();
+      offlineSegmentZKMetadata = ZKMetadataUtils.updateSegmentMetadata(offlineSegmentZKMetadata, segmentMetadata);
+      offlineSegmentZKMetadata.setDownloadUrl(downloadUrl);
+      offlineSegmentZKMetadata.setPushTime(System.currentTimeMillis());
+      ZKMetadataProvider.setOfflineSegmentZKMetadata(_propertyStore, offlineSegmentZKMetadata);
+
+      if (!HelixHelper.addReplacementSegmentToIdealState(_helixZkManager, offlineTableName, segmentsToReplace,
+          segmentName, getInstancesForOfflineSegment(segmentMetadata))) {
+        _propertyStore.remove(ZKMetadataProvider.constructPropertyStorePathForSegment(offlineTableName, segmentName),
+            AccessOption.PERSISTENT);
+        res.status = ResponseStatus.failure;
+        res.message = "Segments " + segmentsToReplace + " of table " + tableName + " could not be replaced";
+        return res;
+      }
+
+      // Only drop the old segments once the new segment serves queries
+      if (!ifSegmentOnlineInExternalView(offlineTableName, segmentName, _externalViewOnlineToOfflineTimeoutMillis)) {
+        HelixHelper.removeSegmentFromIdealState(_helixZkManager, offlineTableName, segmentName);
+        _segmentDeletionManager.deleteSegment(offlineTableName, segmentName);
+        res.status = ResponseStatus.failure;
+        res.message = "Segment " + segmentName + " of table " + tableName + " did not come ONLINE within "
+            + _externalViewOnlineToOfflineTimeoutMillis + " ms, segments " + segmentsToReplace + " were not replaced";
+        return res;
+      }
+      HelixHelper.removeSegmentsFromIdealState(_helixZkManager, offlineTableName, segmentsToReplace);
+      LOGGER.info("Replaced segments {} with segment {} in table {}", segmentsToReplace, segmentName, tableName);
+      _segmentDeletionManager.deleteSegments(offlineTableName, segmentsToReplace);
+      res.status = ResponseStatus.success;
+    } catch (final Exception e) {
+      LOGGER.error("Caught exception while replacing segments {} with segment {} of table {}", segmentsToReplace,
+          segmentName, tableName, e);
+      res.status = ResponseStatus.failure;
+      res.message = e.getMessage();
+    }
+    return res;
   }
 
   /**
@@ -15,28 +15,52 @@
  */
 package com.linkedin.pinot.controller.helix.core;
 
+import com.linkedin.pinot.common.config.TableNameBuilder;
+import com.linkedin.pinot.common.metadata.ZKMetadataProvider;
+import com.linkedin.pinot.common.metrics.ControllerGauge;
+import com.linkedin.pinot.common.metrics.ControllerMeter;
+import com.linkedin.pinot.common.metrics.ControllerMetrics;
+import com.linkedin.pinot.common.utils.CommonConstants;
+import com.linkedin.pinot.common.utils.NamedThreadFactory;
+import com.linkedin.pinot.common.utils.SegmentName;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.io.FileUtils;
 import org.apache.helix.AccessOption;
 import org.apache.helix.HelixAdmin;
 import org.apache.helix.ZNRecord;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.IdealState;
 import org.apache.helix.store.zk.ZkHelixPropertyStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import com.linkedin.pinot.common.config.TableNameBuilder;
-import com.linkedin.pinot.common.metadata.ZKMetadataProvider;
-import com.linkedin.pinot.common.utils.CommonConstants;
-import com.linkedin.pinot.common.utils.SegmentName;
 
 
 /**
- *
+ * Deletes the ZK metadata and the local files of the segments removed from the ideal state, once they are also gone
+ * from the external view.
+ * <ul>
+ *   <li>The segments of a table are deleted in batches: the ideal state and the external view are read once per batch,
+ *   and the segment ZK metadata of a batch are removed with asynchronous ZK operations.</li>
+ *   <li>The local files of a batch are moved to the deleted segments directory in parallel, with a bounded number of
+ *   concurrent moves.</li>
+ *   <li>The segments not yet gone from the ideal state or the external view are retried with an increasing delay, as
+ *   are all the segments of a batch that failed with an exception.</li>
+ * </ul>
  */
 public class SegmentDeletionManager {
 
@@ -45,17 +69,22 @@ public class SegmentDeletionManager {
   private static final long DEFAULT_DELETION_DELAY_SECONDS = 2L;
 
   private final ScheduledExecutorService _executorService;
+  private final ExecutorService _fileDeletionExecutorService;
   private final String _localDiskDir;
   private final String _helixClusterName;
   private final HelixAdmin _helixAdmin;
   private final ZkHelixPropertyStore<ZNRecord> _propertyStore;
+  private final ControllerMetrics _controllerMetrics;
+  private final AtomicLong _numPendingDeletions = new AtomicLong();
   private final String DELETED_SEGMENTS = "Deleted_Segments";
 
-  SegmentDeletionManager(String localDiskDir, HelixAdmin helixAdmin, String helixClusterName, ZkHelixPropertyStore<ZNRecord> propertyStore) {
+  SegmentDeletionManager(String localDiskDir, HelixAdmin helixAdmin, String helixClusterName,
+      ZkHelixPropertyStore<ZNRecord> propertyStore, int deletionParallelism, ControllerMetrics controllerMetrics) {
     _localDiskDir = localDiskDir;
     _helixAdmin = helixAdmin;
     _helixClusterName = helixClusterName;
     _propertyStore = propertyStore;
+    _controllerMetrics = controllerMetrics;
 
     _executorService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
       @Override
@@ -65,114 +94,193 @@ public class SegmentDeletionManager {
         return thread;
       }
     });
+    _fileDeletionExecutorService =
+        Executors.newFixedThreadPool(deletionParallelism, new NamedThreadFactory("segment-file-deletion"));
   }
 
   public void stop() {
     _executorService.shutdownNow();
+    _fileDeletionExecutorService.shutdownNow();
   }
 
   public void deleteSegment(final String tableName, final String segmentId) {
-    deleteSegmentWithDelay(tableName, segmentId, DEFAULT_DELETION_DELAY_SECONDS);
+    deleteSegments(tableName, Collections.singletonList(segmentId));
+  }
+
+  public void deleteSegments(final String tableName, final Collection<String> segmentIds) {
+    if (segmentIds.isEmpty()) {
+      return;
+    }
+    updatePendingDeletions(segmentIds.size());
+    deleteSegmentsWithDelay(tableName, new ArrayList<>(segmentIds), DEFAULT_DELETION_DELAY_SECONDS);
+  }
+
+  /**
+   * Returns the number of segments waiting to be deleted.
+   */
+  public long getNumPendingDeletions() {
+    return _numPendingDeletions.get();
   }
 
-  private void deleteSegmentWithDelay(final String tableName, final String segmentId, final long deletionDelaySeconds) {
+  private void deleteSegmentsWithDelay(final String tableName, final List<String> segmentIds,
+      final long deletionDelaySeconds) {
     _executorService.schedule(new Runnable() {
       @Override
       public void run() {
-        deleteSegmentFromPropertyStoreAndLocal(tableName, segmentId, deletionDelaySeconds);
+        deleteSegmentsFromPropertyStoreAndLocal(tableName, segmentIds, deletionDelaySeconds);
       }
     }, deletionDelaySeconds, TimeUnit.SECONDS);
   }
 
   /**
-   * Check if segment got deleted from IdealStates and ExternalView.
-   * If segment got removed, then delete this segment from PropertyStore and local disk.
+   * Deletes the given segments, and retries the ones not deleted later with an increasing delay. All the segments are
+   * retried if the deletion fails with an exception, so that none of them is left pending forever.
    *
    * @param tableName
-   * @param segmentId
+   * @param segmentIds
+   */
+  private synchronized void deleteSegmentsFromPropertyStoreAndLocal(String tableName, List<String> segmentIds,
+      long deletionDelay) {
+    List<String> segmentsToRetry;
+    try {
+      segmentsToRetry = deleteRemovedSegments(tableName, segmentIds);
+    } catch (Exception e) {
+      LOGGER.error("Caught exception while deleting {} segments of table {}", segmentIds.size(), tableName, e);
+      segmentsToRetry = segmentIds;
+    }
+
+    if (!segmentsToRetry.isEmpty()) {
+      long effectiveDeletionDelay = Math.min(deletionDelay * 2, MAX_DELETION_DELAY_SECONDS);
+      LOGGER.info("{} segments of table {} are still in IdealStates or ExternalView, or could not be deleted, will "
+          + "retry in {} seconds: {}", segmentsToRetry.size(), tableName, effectiveDeletionDelay, segmentsToRetry);
+      deleteSegmentsWithDelay(tableName, segmentsToRetry, effectiveDeletionDelay);
+    }
+  }
+
+  /**
+   * Check if segments got deleted from IdealStates and ExternalView.
+   * Delete the removed segments from PropertyStore and local disk, and return the other ones to retry later.
    */
-  private synchronized void deleteSegmentFromPropertyStoreAndLocal(String tableName, String segmentId, long deletionDelay) {
-    // Check if segment got removed from ExternalView and IdealStates
-    if (_helixAdmin.getResourceExternalView(_helixClusterName, tableName) == null ||
-        _helixAdmin.getResourceIdealState(_helixClusterName, tableName) == null) {
+  private List<String> deleteRemovedSegments(String tableName, List<String> segmentIds) {
+    // Check if segments got removed from ExternalView and IdealStates
+    ExternalView externalView = _helixAdmin.getResourceExternalView(_helixClusterName, tableName);
+    IdealState idealState = _helixAdmin.getResourceIdealState(_helixClusterName, tableName);
+    if (externalView == null || idealState == null) {
       LOGGER.warn("Resource: {} is not set up in idealState or ExternalView, won't do anything", tableName);
-      return;
+      updatePendingDeletions(-segmentIds.size());
+      return Collections.emptyList();
     }
 
-    boolean isSegmentReadyToDelete = false;
-    try {
-      Map<String, String> segmentToInstancesMapFromExternalView = _helixAdmin.getResourceExternalView(_helixClusterName, tableName).getStateMap(segmentId);
-      Map<String, String> segmentToInstancesMapFromIdealStates = _helixAdmin.getResourceIdealState(_helixClusterName, tableName).getInstanceStateMap(segmentId);
+    List<String> segmentsToDelete = new ArrayList<>(segmentIds.size());
+    List<String> segmentsToRetry = new ArrayList<>();
+    for (String segmentId : segmentIds) {
+      Map<String, String> segmentToInstancesMapFromExternalView = externalView.getStateMap(segmentId);
+      Map<String, String> segmentToInstancesMapFromIdealStates = idealState.getInstanceStateMap(segmentId);
       if ((segmentToInstancesMapFromExternalView == null || segmentToInstancesMapFromExternalView.isEmpty())
           && (segmentToInstancesMapFromIdealStates == null || segmentToInstancesMapFromIdealStates.isEmpty())) {
-        isSegmentReadyToDelete = true;
+        segmentsToDelete.add(segmentId);
       } else {
-        long effectiveDeletionDelay = Math.min(deletionDelay * 2, MAX_DELETION_DELAY_SECONDS);
-        LOGGER.info("Segment: {} is still in IdealStates: {} or ExternalView: {}, will retry in {} seconds.", segmentId,
-            segmentToInstancesMapFromIdealStates, segmentToInstancesMapFromExternalView, effectiveDeletionDelay);
-        deleteSegmentWithDelay(tableName, segmentId, effectiveDeletionDelay);
-        return;
+        segmentsToRetry.add(segmentId);
       }
-    } catch (Exception e) {
-      LOGGER.warn("Caught exception while processing segment " + segmentId, e);
-      isSegmentReadyToDelete = true;
     }
 
-    if (isSegmentReadyToDelete) {
-      String segmentPropertyStorePath = ZKMetadataProvider.constructPropertyStorePathForSegment(tableName, segmentId);
-      LOGGER.info("Trying to delete segment : {} from Property store.", segmentId);
-      boolean deletionFromPropertyStoreSuccessful = true;
-      if (_propertyStore.exists(segmentPropertyStorePath, AccessOption.PERSISTENT)) {
-        deletionFromPropertyStoreSuccessful = _propertyStore.remove(segmentPropertyStorePath, AccessOption.PERSISTENT);
+    if (!segmentsToDelete.isEmpty()) {
+      // Remove the segment ZK metadata, and retry the ones that failed to be removed
+      LOGGER.info("Trying to delete {} segments of table {} from Property store.", segmentsToDelete.size(), tableName);
+      List<String> segmentPropertyStorePaths = new ArrayList<>(segmentsToDelete.size());
+      for (String segmentId : segmentsToDelete) {
+        segmentPropertyStorePaths.add(ZKMetadataProvider.constructPropertyStorePathForSegment(tableName, segmentId));
       }
+      boolean[] removed = _propertyStore.remove(segmentPropertyStorePaths, AccessOption.PERSISTENT);
+      List<String> segmentsRemovedFromPropertyStore = new ArrayList<>(segmentsToDelete.size());
+      for (int i = 0; i < segmentsToDelete.size(); i++) {
+        String segmentId = segmentsToDelete.get(i);
+        // Removing a missing node fails, but leaves the segment deleted from the property store
+        if (removed[i] || !_propertyStore.exists(segmentPropertyStorePaths.get(i), AccessOption.PERSISTENT)) {
+          segmentsRemovedFromPropertyStore.add(segmentId);
+        } else {
+          LOGGER.warn("Failed to delete segment {} from property store.", segmentId);
+          segmentsToRetry.add(segmentId);
+        }
+      }
+
+      deleteSegmentsFromLocal(tableName, segmentsRemovedFromPropertyStore);
+      updatePendingDeletions(-segmentsRemovedFromPropertyStore.size());
+      _controllerMetrics.addMeteredTableValue(tableName, ControllerMeter.SEGMENTS_DELETED,
+          segmentsRemovedFromPropertyStore.size());
+      LOGGER.info("Deleted {} segments of table {}, {} segments pending deletion",
+          segmentsRemovedFromPropertyStore.size(), tableName, _numPendingDeletions.get());
+    }
+    return segmentsToRetry;
+  }
+
+  /**
+   * Moves the local files of the given segments to the deleted segments directory in parallel, and waits for all of
+   * them to be moved.
+   */
+  private void deleteSegmentsFromLocal(final String tableName, List<String> segmentIds) {
+    if (_localDiskDir == null) {
+      LOGGER.info("localDiskDir is not configured, won't delete segments {} from disk", segmentIds);
+      return;
+    }
 
-      if (!deletionFromPropertyStoreSuccessful) {
-        long effectiveDeletionDelay = Math.min(deletionDelay * 2, MAX_DELETION_DELAY_SECONDS);
-        LOGGER.warn("Failed to delete segment {} from property store, will retry in {} seconds.", segmentId,
-            effectiveDeletionDelay);
-        deleteSegmentWithDelay(tableName, segmentId, effectiveDeletionDelay);
+    List<Future<?>> futures = new ArrayList<>(segmentIds.size());
+    for (final String segmentId : segmentIds) {
+      futures.add(_fileDeletionExecutorService.submit(new Callable<Void>() {
+        @Override
+        public Void call() {
+          deleteSegmentFromLocal(tableName, segmentId);
+          return null;
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
         return;
+      } catch (ExecutionException e) {
+        LOGGER.warn("Caught exception while deleting segment of table {} from disk", tableName, e);
       }
+    }
+  }
 
-      final String rawTableName = TableNameBuilder.extractRawTableName(tableName);
-      if (_localDiskDir != null) {
-        File fileToMove = new File(new File(_localDiskDir, rawTableName), segmentId);
-        if (fileToMove.exists()) {
-          File targetDir = new File(new File(_localDiskDir, DELETED_SEGMENTS), rawTableName);
-          try {
-            // Overwrites the file if it already exists in the target directory.
-            FileUtils.copyFileToDirectory(fileToMove, targetDir, true);
-            LOGGER.info("Moved segment {} from {} to {}", segmentId, fileToMove.getAbsolutePath(),
-                targetDir.getAbsolutePath());
-            if (!fileToMove.delete()) {
-              LOGGER.warn("Could not delete file", segmentId, fileToMove.getAbsolutePath());
-            }
-          } catch (IOException e) {
-            LOGGER.warn("Could not move segment {} from {} to {}", segmentId, fileToMove.getAbsolutePath(),
-                targetDir.getAbsolutePath(), e);
-          }
-        } else {
-          CommonConstants.Helix.TableType tableType = TableNameBuilder.getTableTypeFromTableName(tableName);
-          switch (tableType) {
-            case OFFLINE:
-              LOGGER.warn("Not found local segment file for segment {}" + fileToMove.getAbsolutePath());
-              break;
-            case REALTIME:
-              if (SegmentName.isLowLevelConsumerSegmentName(segmentId)) {
-                LOGGER.warn("Not found local segment file for segment {}" + fileToMove.getAbsolutePath());
-              }
-              break;
-            default:
-              LOGGER.warn("Unsupported table type {} when deleting segment {}", tableType, segmentId);
-          }
-        }
-      } else {
-        LOGGER.info("localDiskDir is not configured, won't delete segment {} from disk", segmentId);
+  private void deleteSegmentFromLocal(String tableName, String segmentId) {
+    final String rawTableName = TableNameBuilder.extractRawTableName(tableName);
+    File fileToMove = new File(new File(_localDiskDir, rawTableName), segmentId);
+    if (fileToMove.exists()) {
+      File targetDir = new File(new File(_localDiskDir, DELETED_SEGMENTS), rawTableName);
+      try {
+        // Overwrites the file if it already exists in the target directory, and renames the file rather than copying
+        // it when possible.
+        FileUtils.deleteQuietly(new File(targetDir, segmentId));
+        FileUtils.moveFileToDirectory(fileToMove, targetDir, true);
+        LOGGER.info("Moved segment {} from {} to {}", segmentId, fileToMove.getAbsolutePath(),
+            targetDir.getAbsolutePath());
+      } catch (IOException e) {
+        LOGGER.warn("Could not move segment {} from {} to {}", segmentId, fileToMove.getAbsolutePath(),
+            targetDir.getAbsolutePath(), e);
       }
     } else {
-      long effectiveDeletionDelay = Math.min(deletionDelay * 2, MAX_DELETION_DELAY_SECONDS);
-      LOGGER.info("Segment: {} is still in IdealStates or ExternalView, will retry in {} seconds.", segmentId, effectiveDeletionDelay);
-      deleteSegmentWithDelay(tableName, segmentId, effectiveDeletionDelay);
+      CommonConstants.Helix.TableType tableType = TableNameBuilder.getTableTypeFromTableName(tableName);
+      switch (tableType) {
+        case OFFLINE:
+          LOGGER.warn("Not found local segment file for segment {}" + fileToMove.getAbsolutePath());
+          break;
+        case REALTIME:
+          if (SegmentName.isLowLevelConsumerSegmentName(segmentId)) {
+            LOGGER.warn("Not found local segment file for segment {}" + fileToMove.getAbsolutePath());
+          }
+          break;
+        default:
+          LOGGER.warn("Unsupported table type {} when deleting segment {}", tableType, segmentId);
+      }
     }
   }
+
+  private void updatePendingDeletions(long delta) {
+    _controllerMetrics.setValueOfGlobalGauge(ControllerGauge.SEGMENTS_PENDING_DELETION,
+        _numPendingDeletions.addAndGet(delta));
+  }
 }
@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.controller.helix.core.merge;
+
+import com.linkedin.pinot.common.config.AbstractTableConfig;
+import com.linkedin.pinot.common.config.TableCustomConfig;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+
+/**
+ * Segment merge settings of an offline table, read from the custom configs of the table config:
+ * <ul>
+ *   <li>segment.merge.enabled: whether the small segments of the table are merged (default false)</li>
+ *   <li>segment.merge.maxNumDocsPerSegment: maximum number of documents of a merged segment, segments with at least
+ *   that many documents are never merged (default 5M)</li>
+ *   <li>segment.merge.maxNumSegmentsPerMerge: maximum number of segments merged together (default 50)</li>
+ *   <li>segment.merge.timeBucket: time unit of the buckets of time the merged segments must fall into, e.g. DAYS to
+ *   only merge segments of the same day (default DAYS)</li>
+ *   <li>segment.merge.rollup: whether the documents with the same dimension and time values are aggregated into one
+ *   document summing up their metrics (default false)</li>
+ * </ul>
+ */
+public class SegmentMergeConfig {
+  public static final String ENABLED_KEY = "segment.merge.enabled";
+  public static final String MAX_NUM_DOCS_PER_SEGMENT_KEY = "segment.merge.maxNumDocsPerSegment";
+  public static final String MAX_NUM_SEGMENTS_PER_MERGE_KEY = "segment.merge.maxNumSegmentsPerMerge";
+  public static final String TIME_BUCKET_KEY = "segment.merge.timeBucket";
+  public static final String ROLLUP_KEY = "segment.merge.rollup";
+
+  public static final int DEFAULT_MAX_NUM_DOCS_PER_SEGMENT = 5_000_000;
+  public static final int DEFAULT_MAX_NUM_SEGMENTS_PER_MERGE = 50;
+  public static final TimeUnit DEFAULT_TIME_BUCKET = TimeUnit.DAYS;
+
+  private final int _maxNumDocsPerSegment;
+  private final int _maxNumSegmentsPerMerge;
+  private final TimeUnit _timeBucket;
+  private final boolean _rollup;
+
+  public SegmentMergeConfig(int maxNumDocsPerSegment, int maxNumSegmentsPerMerge, TimeUnit timeBucket,
+      boolean rollup) {
+    _maxNumDocsPerSegment = maxNumDocsPerSegment;
+    _maxNumSegmentsPerMerge = maxNumSegmentsPerMerge;
+    _timeBucket = timeBucket;
+    _rollup = rollup;
+  }
+
+  /**
+   * Returns the segment merge settings of a table, or null if the segments of the table are not merged.
+   */
+  public static @Nullable SegmentMergeConfig fromTableConfig(AbstractTableConfig tableConfig) {
+    TableCustomConfig customConfig = tableConfig.getCustomConfigs();
+    if (customConfig == null) {
+      return null;
+    }
+    Map<String, String> customConfigMap = customConfig.getCustomConfigs();
+    if (customConfigMap == null || !Boolean.parseBoolean(customConfigMap.get(ENABLED_KEY))) {
+      return null;
+    }
+
+    int maxNumDocsPerSegment = DEFAULT_MAX_NUM_DOCS_PER_SEGMENT;
+    if (customConfigMap.containsKey(MAX_NUM_DOCS_PER_SEGMENT_KEY)) {
+      maxNumDocsPerSegment = Integer.parseInt(customConfigMap.get(MAX_NUM_DOCS_PER_SEGMENT_KEY));
+    }
+    int maxNumSegmentsPerMerge = DEFAULT_MAX_NUM_SEGMENTS_PER_MERGE;
+    if (customConfigMap.containsKey(MAX_NUM_SEGMENTS_PER_MERGE_KEY)) {
+      maxNumSegmentsPerMerge = Integer.parseInt(customConfigMap.get(MAX_NUM_SEGMENTS_PER_MERGE_KEY));
+    }
+    TimeUnit timeBucket = DEFAULT_TIME_BUCKET;
+    if (customConfigMap.containsKey(TIME_BUCKET_KEY)) {
+      timeBucket = TimeUnit.valueOf(customConfigMap.get(TIME_BUCKET_KEY).toUpperCase());
+    }
+    boolean rollup = Boolean.parseBoolean(customConfigMap.get(ROLLUP_KEY));
+    return new SegmentMergeConfig(maxNumDocsPerSegment, maxNumSegmentsPerMerge, timeBucket, rollup);
+  }
+
+  public int getMaxNumDocsPerSegment() {
+    return _maxNumDocsPerSegment;
+  }
+
+  public int getMaxNumSegmentsPerMerge() {
+    return _maxNumSegmentsPerMerge;
+  }
+
+  public TimeUnit getTimeBucket() {
+    return _timeBucket;
+  }
+
+  public boolean isRollup() {
+    return _rollup;
+  }
+}
@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.controller.helix.core.merge;
+
+import com.linkedin.pinot.common.config.AbstractTableConfig;
+import com.linkedin.pinot.common.config.TableNameBuilder;
+import com.linkedin.pinot.common.metadata.ZKMetadataProvider;
+import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
+import com.linkedin.pinot.common.segment.fetcher.SegmentFetcherFactory;
+import com.linkedin.pinot.common.utils.CommonConstants.Helix.StateModel.SegmentOnlineOfflineStateModel;
+import com.linkedin.pinot.common.utils.CommonConstants.Helix.TableType;
+import com.linkedin.pinot.common.utils.TarGzCompressionUtils;
+import com.linkedin.pinot.controller.ControllerConf;
+import com.linkedin.pinot.controller.helix.core.PinotHelixResourceManager;
+import com.linkedin.pinot.controller.helix.core.PinotResourceManagerResponse;
+import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import org.apache.commons.io.FileUtils;
+import org.apache.helix.model.IdealState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * SegmentMergeManager is scheduled to run only on Leader controller.
+ * It compacts the small segments of the offline tables with segment merge enabled (see {@link SegmentMergeConfig}):
+ * the groups of adjacent segments picked by {@link SegmentMergeSelector} are downloaded, merged into a single segment
+ * by {@link SegmentMerger}, which is stored in the controller data directory and replaces the merged segments through
+ * {@link PinotHelixResourceManager#replaceSegments}. The merged segments are only removed from the ideal state once
+ * the new segment is ONLINE in the external view, so queries may count the merged rows twice in between, but never
+ * miss them.
+ */
+public class SegmentMergeManager {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SegmentMergeManager.class);
+  private static final String MERGE_TEMP_DIR_NAME = "segmentMergeTemp";
+  private static final String MERGED_SEGMENT_NAME_POSTFIX = "merged";
+
+  private final PinotHelixResourceManager _pinotHelixResourceManager;
+  private final File _dataDir;
+  private final String _vip;
+  private final int _runFrequencyInSeconds;
+  private final ScheduledExecutorService _executorService;
+
+  public SegmentMergeManager(PinotHelixResourceManager pinotHelixResourceManager, ControllerConf config) {
+    _pinotHelixResourceManager = pinotHelixResourceManager;
+    _dataDir = new File(config.getDataDir());
+    _vip = config.generateVipUrl();
+    _runFrequencyInSeconds = config.getSegmentMergeControllerFrequencyInSeconds();
+    _executorService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(@Nonnull Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.setName("PinotSegmentMergeManagerExecutorService");
+        return thread;
+      }
+    });
+  }
+
+  public void start() {
+    _executorService.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        execute();
+      }
+    }, Math.min(60, _runFrequencyInSeconds), _runFrequencyInSeconds, TimeUnit.SECONDS);
+    LOGGER.info("SegmentMergeManager is started!");
+  }
+
+  public void stop() {
+    _executorService.shutdown();
+  }
+
+  private void execute() {
+    try {
+      if (_pinotHelixResourceManager.isLeader()) {
+        LOGGER.info("Trying to run segment merge!");
+        for (String tableName : _pinotHelixResourceManager.getAllPinotTableNames()) {
+          if (TableNameBuilder.getTableTypeFromTableName(tableName) == TableType.OFFLINE) {
+            mergeTable(tableName);
+          }
+        }
+        LOGGER.info("Finished segment merge for entire cluster!");
+      } else {
+        LOGGER.info("Not leader of the controller, sleep!");
+      }
+    } catch (Exception e) {
+      LOGGER.error("Caught exception while running segment merge", e);
+    }
+  }
+
+  /**
+   * Merges the small segments of an offline table, if enabled in its config.
+   *
+   * @param offlineTableName Name of the offline table
+   * @return Number of merged segments added to the table
+   */
+  public int mergeTable(String offlineTableName) {
+    String rawTableName = TableNameBuilder.extractRawTableName(offlineTableName);
+    AbstractTableConfig tableConfig =
+        ZKMetadataProvider.getOfflineTableConfig(_pinotHelixResourceManager.getPropertyStore(), rawTableName);
+    if (tableConfig == null) {
+      LOGGER.warn("No config found for table {}, not merging its segments", offlineTableName);
+      return 0;
+    }
+    SegmentMergeConfig mergeConfig = SegmentMergeConfig.fromTableConfig(tableConfig);
+    if (mergeConfig == null) {
+      return 0;
+    }
+
+    List<OfflineSegmentZKMetadata> segmentMetadataList = ZKMetadataProvider.getOfflineSegmentZKMetadataListForTable(
+        _pinotHelixResourceManager.getPropertyStore(), rawTableName);
+    List<List<OfflineSegmentZKMetadata>> segmentGroups = SegmentMergeSelector.selectSegmentsToMerge(
+        segmentMetadataList, getOnlineSegments(offlineTableName), mergeConfig);
+
+    int numMergedSegments = 0;
+    for (List<OfflineSegmentZKMetadata> segmentGroup : segmentGroups) {
+      List<String> segmentNames = new ArrayList<>(segmentGroup.size());
+      for (OfflineSegmentZKMetadata segmentMetadata : segmentGroup) {
+        segmentNames.add(segmentMetadata.getSegmentName());
+      }
+      try {
+        if (mergeSegments(rawTableName, segmentGroup, segmentNames, mergeConfig.isRollup())) {
+          numMergedSegments++;
+        }
+      } catch (Exception e) {
+        LOGGER.error("Caught exception while merging segments {} of table {}", segmentNames, offlineTableName, e);
+      }
+    }
+    LOGGER.info("Merged {} groups of segments out of {} selected for table {}", numMergedSegments,
+        segmentGroups.size(), offlineTableName);
+    return numMergedSegments;
+  }
+
+  /**
+   * Returns the segments of the table with all their replicas online in the ideal state.
+   */
+  private Set<String> getOnlineSegments(String offlineTableName) {
+    Set<String> onlineSegments = new HashSet<>();
+    IdealState idealState = _pinotHelixResourceManager.getHelixAdmin()
+        .getResourceIdealState(_pinotHelixResourceManager.getHelixClusterName(), offlineTableName);
+    if (idealState == null) {
+      return onlineSegments;
+    }
+    for (String segmentName : idealState.getPartitionSet()) {
+      Map<String, String> instanceStateMap = idealState.getInstanceStateMap(segmentName);
+      if (instanceStateMap != null && !instanceStateMap.isEmpty()) {
+        boolean online = true;
+        for (String state : instanceStateMap.values()) {
+          if (!SegmentOnlineOfflineStateModel.ONLINE.equals(state)) {
+            online = false;
+            break;
+          }
+        }
+        if (online) {
+          onlineSegments.add(segmentName);
+        }
+      }
+    }
+    return onlineSegments;
+  }
+
+  private boolean mergeSegments(String rawTableName, List<OfflineSegmentZKMetadata> segmentGroup,
+      List<String> segmentNames, boolean rollup) throws Exception {
+    LOGGER.info("Merging segments {} of table {}", segmentNames, rawTableName);
+    File tableDataDir = new File(_dataDir, rawTableName);
+    File workDir = new File(new File(_dataDir, MERGE_TEMP_DIR_NAME), rawTableName + "_" + System.currentTimeMillis());
+    File mergedTarFile = null;
+    boolean replaced = false;
+    try {
+      List<File> indexDirs = new ArrayList<>(segmentGroup.size());
+      for (OfflineSegmentZKMetadata segmentMetadata : segmentGroup) {
+        String segmentName = segmentMetadata.getSegmentName();
+        // The segments uploaded to this controller are stored in its data directory
+        File tarFile = new File(tableDataDir, segmentName);
+        if (!tarFile.exists()) {
+          tarFile = new File(workDir, segmentName + TarGzCompressionUtils.TAR_GZ_FILE_EXTENTION);
+          String downloadUrl = segmentMetadata.getDownloadUrl();
+          SegmentFetcherFactory.getSegmentFetcherBasedOnURI(downloadUrl).fetchSegmentToLocal(downloadUrl, tarFile);
+        }
+        File untarredDir = new File(workDir, segmentName);
+        TarGzCompressionUtils.unTar(tarFile, untarredDir);
+        indexDirs.add(untarredDir.listFiles()[0]);
+      }
+
+      File mergedIndexDir = new SegmentMerger(rawTableName, indexDirs, new File(workDir, "output"),
+          MERGED_SEGMENT_NAME_POSTFIX + "_" + System.currentTimeMillis(), rollup).merge();
+      SegmentMetadataImpl mergedSegmentMetadata = new SegmentMetadataImpl(mergedIndexDir);
+      String mergedSegmentName = mergedSegmentMetadata.getName();
+
+      mergedTarFile = new File(tableDataDir, mergedSegmentName);
+      FileUtils.deleteQuietly(mergedTarFile);
+      FileUtils.moveFile(new File(TarGzCompressionUtils.createTarGzOfDirectory(mergedIndexDir.getPath())),
+          mergedTarFile);
+      String downloadUrl = ControllerConf.constructDownloadUrl(rawTableName, mergedSegmentName, _vip);
+
+      PinotResourceManagerResponse response =
+          _pinotHelixResourceManager.replaceSegments(mergedSegmentMetadata, downloadUrl, segmentNames);
+      replaced = response.isSuccessful();
+      if (replaced) {
+        LOGGER.info("Replaced segments {} of table {} with segment {} of {} documents", segmentNames, rawTableName,
+            mergedSegmentName, mergedSegmentMetadata.getTotalRawDocs());
+      } else {
+        LOGGER.warn("Failed to replace segments {} of table {} with segment {}: {}", segmentNames, rawTableName,
+            mergedSegmentName, response.message);
+      }
+      return replaced;
+    } finally {
+      if (!replaced) {
+        FileUtils.deleteQuietly(mergedTarFile);
+      }
+      FileUtils.deleteQuietly(workDir);
+    }
+  }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.controller.helix.core.merge;
+
+import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+
+/**
+ * Selects the groups of small segments of a table to merge together.
+ * <p>Only the segments online in the ideal state, with a valid time range and with less documents than the maximum
+ * number of documents per merged segment are merged. They are bucketed by time, the time range of a segment having to
+ * fall into a single bucket, and the segments of each bucket ordered by time are split into groups of adjacent segments
+ * not exceeding the maximum number of documents and segments per merge. Groups of a single segment are dropped.
+ */
+public class SegmentMergeSelector {
+  private static final Comparator<OfflineSegmentZKMetadata> TIME_COMPARATOR =
+      new Comparator<OfflineSegmentZKMetadata>() {
+        @Override
+        public int compare(OfflineSegmentZKMetadata o1, OfflineSegmentZKMetadata o2) {
+          long startTime1 = o1.getTimeUnit().toMillis(o1.getStartTime());
+          long startTime2 = o2.getTimeUnit().toMillis(o2.getStartTime());
+          if (startTime1 != startTime2) {
+            return startTime1 < startTime2 ? -1 : 1;
+          }
+          long endTime1 = o1.getTimeUnit().toMillis(o1.getEndTime());
+          long endTime2 = o2.getTimeUnit().toMillis(o2.getEndTime());
+          if (endTime1 != endTime2) {
+            return endTime1 < endTime2 ? -1 : 1;
+          }
+          return o1.getSegmentName().compareTo(o2.getSegmentName());
+        }
+      };
+
+  private SegmentMergeSelector() {
+  }
+
+  /**
+   * Returns the groups of segments to merge together, in time order.
+   *
+   * @param segmentMetadataList Meta-data of the segments of the table
+   * @param onlineSegments Names of the segments online in the ideal state of the table
+   * @param mergeConfig Segment merge settings of the table
+   */
+  public static List<List<OfflineSegmentZKMetadata>> selectSegmentsToMerge(
+      List<OfflineSegmentZKMetadata> segmentMetadataList, Set<String> onlineSegments, SegmentMergeConfig mergeConfig) {
+    long timeBucketMillis = mergeConfig.getTimeBucket().toMillis(1L);
+    Map<Long, List<OfflineSegmentZKMetadata>> timeBuckets = new TreeMap<>();
+    for (OfflineSegmentZKMetadata segmentMetadata : segmentMetadataList) {
+      if (!onlineSegments.contains(segmentMetadata.getSegmentName())
+          || segmentMetadata.getTotalRawDocs() >= mergeConfig.getMaxNumDocsPerSegment()) {
+        continue;
+      }
+      if (segmentMetadata.getTimeUnit() == null || segmentMetadata.getStartTime() < 0
+          || segmentMetadata.getEndTime() < segmentMetadata.getStartTime()) {
+        continue;
+      }
+      long startBucket = segmentMetadata.getTimeUnit().toMillis(segmentMetadata.getStartTime()) / timeBucketMillis;
+      long endBucket = segmentMetadata.getTimeUnit().toMillis(segmentMetadata.getEndTime()) / timeBucketMillis;
+      if (startBucket != endBucket) {
+        continue;
+      }
+      List<OfflineSegmentZKMetadata> timeBucket = timeBuckets.get(startBucket);
+      if (timeBucket == null) {
+        timeBucket = new ArrayList<>();
+        timeBuckets.put(startBucket, timeBucket);
+      }
+      timeBucket.add(segmentMetadata);
+    }
+
+    List<List<OfflineSegmentZKMetadata>> groups = new ArrayList<>();
+    for (List<OfflineSegmentZKMetadata> timeBucket : timeBuckets.values()) {
+      Collections.sort(timeBucket, TIME_COMPARATOR);
+      List<OfflineSegmentZKMetadata> group = new ArrayList<>();
+      long numDocs = 0;
+      for (OfflineSegmentZKMetadata segmentMetadata : timeBucket) {
+        if (group.size() == mergeConfig.getMaxNumSegmentsPerMerge()
+            || numDocs + segmentMetadata.getTotalRawDocs() > mergeConfig.getMaxNumDocsPerSegment()) {
+          addGroup(groups, group);
+          group = new ArrayList<>();
+          numDocs = 0;
+        }
+        group.add(segmentMetadata);
+        numDocs += segmentMetadata.getTotalRawDocs();
+      }
+      addGroup(groups, group);
+    }
+    return groups;
+  }
+
+  private static void addGroup(List<List<OfflineSegmentZKMetadata>> groups, List<OfflineSegmentZKMetadata> group) {
+    if (group.size() > 1) {
+      groups.add(group);
+    }
+  }
+}
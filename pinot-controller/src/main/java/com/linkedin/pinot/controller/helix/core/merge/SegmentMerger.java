@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.controller.helix.core.merge;
+
+import com.google.common.base.Preconditions;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.core.data.readers.MultiplePinotSegmentRecordReader;
+import com.linkedin.pinot.core.data.readers.RecordReader;
+import com.linkedin.pinot.core.indexsegment.generator.RollupConfig;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import com.linkedin.pinot.core.segment.index.ColumnMetadata;
+import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Merges segments of a table into a single segment, optionally rolling up their records.
+ * <p>The records of the input segments are read one segment after the other, and the merged segment is sorted on the
+ * column all the input segments are sorted on, if any.
+ */
+public class SegmentMerger {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SegmentMerger.class);
+
+  private final String _tableName;
+  private final List<File> _inputIndexDirs;
+  private final File _outputDir;
+  private final String _segmentNamePostfix;
+  private final boolean _rollup;
+
+  /**
+   * @param tableName Raw name of the table of the segments
+   * @param inputIndexDirs Index directories of the segments to merge
+   * @param outputDir Directory the merged segment is written into
+   * @param segmentNamePostfix Postfix of the name of the merged segment, after the table name and time range
+   * @param rollup Whether to sum up the metrics of the records with the same dimension and time values, which fails
+   *               for tables with multi-value dimensions or non-numeric metrics
+   */
+  public SegmentMerger(String tableName, List<File> inputIndexDirs, File outputDir, String segmentNamePostfix,
+      boolean rollup) {
+    _tableName = tableName;
+    _inputIndexDirs = inputIndexDirs;
+    _outputDir = outputDir;
+    _segmentNamePostfix = segmentNamePostfix;
+    _rollup = rollup;
+  }
+
+  /**
+   * Builds the merged segment and returns its index directory.
+   */
+  public File merge() throws Exception {
+    List<SegmentMetadataImpl> inputSegmentMetadataList = new ArrayList<>(_inputIndexDirs.size());
+    for (File inputIndexDir : _inputIndexDirs) {
+      SegmentMetadataImpl segmentMetadata = new SegmentMetadataImpl(inputIndexDir);
+      // The documents of the star tree would be read as raw documents
+      Preconditions.checkState(!segmentMetadata.hasStarTree(), "Cannot merge segment %s with star tree",
+          segmentMetadata.getName());
+      inputSegmentMetadataList.add(segmentMetadata);
+    }
+
+    RecordReader recordReader = new MultiplePinotSegmentRecordReader(_inputIndexDirs);
+    Schema schema = recordReader.getSchema();
+
+    SegmentGeneratorConfig config = new SegmentGeneratorConfig(schema);
+    config.setOutDir(_outputDir.getPath());
+    config.setTableName(_tableName);
+    config.setSegmentNamePostfix(_segmentNamePostfix);
+    String sortedColumn = getSortedColumn(schema, inputSegmentMetadataList);
+    if (sortedColumn != null) {
+      config.setSortedColumns(Collections.singletonList(sortedColumn));
+    }
+    if (_rollup) {
+      // Rolled up through an external sort, which spills to disk beyond the sort buffer size
+      config.setRollupConfig(new RollupConfig());
+    }
+
+    // The record reader is closed by the driver once the segment is built
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(config, recordReader);
+    driver.build();
+    LOGGER.info("Merged segments {} of table {} into segment {}", _inputIndexDirs, _tableName,
+        driver.getSegmentName());
+    return driver.getOutputDirectory();
+  }
+
+  /**
+   * Returns the single-value column all the input segments are sorted on, or null if there is none. Columns with a
+   * single value in all the segments are flagged as sorted but are ignored.
+   */
+  private static String getSortedColumn(Schema schema, List<SegmentMetadataImpl> segmentMetadataList) {
+    for (String column : schema.getColumnNames()) {
+      boolean sorted = true;
+      boolean constant = true;
+      for (SegmentMetadataImpl segmentMetadata : segmentMetadataList) {
+        ColumnMetadata columnMetadata = segmentMetadata.getColumnMetadataFor(column);
+        if (!columnMetadata.isSingleValue() || !columnMetadata.isSorted()) {
+          sorted = false;
+          break;
+        }
+        if (columnMetadata.getCardinality() > 1) {
+          constant = false;
+        }
+      }
+      if (sorted && !constant) {
+        return column;
+      }
+    }
+    return null;
+  }
+}
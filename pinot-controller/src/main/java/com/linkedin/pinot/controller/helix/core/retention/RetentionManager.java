@@ -22,12 +22,15 @@ import com.linkedin.pinot.common.metadata.ZKMetadataProvider;
 import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
 import com.linkedin.pinot.common.metadata.segment.RealtimeSegmentZKMetadata;
 import com.linkedin.pinot.common.metadata.segment.SegmentZKMetadata;
+import com.linkedin.pinot.common.metrics.ControllerMeter;
+import com.linkedin.pinot.common.metrics.ControllerMetrics;
 import com.linkedin.pinot.common.utils.CommonConstants.Helix.TableType;
-import com.linkedin.pinot.common.utils.CommonConstants.Segment.Realtime.Status;
 import com.linkedin.pinot.controller.helix.core.PinotHelixResourceManager;
-import com.linkedin.pinot.controller.helix.core.retention.strategy.RetentionStrategy;
+import com.linkedin.pinot.controller.helix.core.PinotResourceManagerResponse;
 import com.linkedin.pinot.controller.helix.core.retention.strategy.TimeRetentionStrategy;
+import com.yammer.metrics.core.MetricsRegistry;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -36,8 +39,10 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nonnull;
+import org.apache.helix.AccessOption;
 import org.apache.helix.ZNRecord;
 import org.apache.helix.store.zk.ZkHelixPropertyStore;
+import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,16 +52,22 @@ import org.slf4j.LoggerFactory;
  * It will first scan the table configs to get segment retention strategy then
  * do data retention..
  *
- *
+ * The expired segments of a table are found from an in-memory index of the end times of its segments, and deleted in
+ * one batch per table: they are removed from the ideal state with a single update, then their ZK metadata and files
+ * are deleted in bulk by the {@link com.linkedin.pinot.controller.helix.core.SegmentDeletionManager}.
+ * The index of each table is kept across runs: each run only reads the stats of the segment ZK metadata of the table,
+ * and reads the segment ZK metadata of the segments added or updated since the previous run.
  */
 public class RetentionManager {
   public static final Logger LOGGER = LoggerFactory.getLogger(RetentionManager.class);
 
   private final PinotHelixResourceManager _pinotHelixResourceManager;
 
-  private final Map<String, RetentionStrategy> _tableDeletionStrategy = new HashMap<>();
-  private final Map<String, List<SegmentZKMetadata>> _segmentMetadataMap = new HashMap<>();
+  private final Map<String, TimeRetentionStrategy> _tableDeletionStrategy = new HashMap<>();
+  // Only accessed by the retention thread
+  private final Map<String, SegmentEndTimeIndex> _segmentEndTimeIndexMap = new HashMap<>();
   private final Object _lock = new Object();
+  private ControllerMetrics _controllerMetrics;
 
   private final ScheduledExecutorService _executorService;
   private final int _runFrequencyInSeconds;
@@ -75,6 +86,11 @@ public class RetentionManager {
   }
 
   public void start() {
+    start(new ControllerMetrics(new MetricsRegistry()));
+  }
+
+  public void start(ControllerMetrics controllerMetrics) {
+    _controllerMetrics = controllerMetrics;
     scheduleRetentionThreadWithFrequency(_runFrequencyInSeconds);
     LOGGER.info("RetentionManager is started!");
   }
@@ -100,9 +116,7 @@ public class RetentionManager {
         LOGGER.info("Trying to run retentionManager!");
         updateDeletionStrategiesForEntireCluster();
         LOGGER.info("Finished update deletion strategies for entire cluster!");
-        updateSegmentMetadataForEntireCluster();
-        LOGGER.info("Finished update segment metadata for entire cluster!");
-        scanSegmentMetadataAndPurge();
+        purgeExpiredSegmentsForEntireCluster();
         LOGGER.info("Finished segment purge for entire cluster!");
       } else {
         LOGGER.info("Not leader of the controller, sleep!");
@@ -112,26 +126,46 @@ public class RetentionManager {
     }
   }
 
-  private void scanSegmentMetadataAndPurge() {
-    for (String tableName : _segmentMetadataMap.keySet()) {
-      List<SegmentZKMetadata> segmentZKMetadataList = _segmentMetadataMap.get(tableName);
-      for (SegmentZKMetadata segmentZKMetadata : segmentZKMetadataList) {
-        RetentionStrategy deletionStrategy;
-        deletionStrategy = _tableDeletionStrategy.get(tableName);
-        if (deletionStrategy == null) {
-          LOGGER.info("No Retention strategy found for segment: {}", segmentZKMetadata.getSegmentName());
-          continue;
-        }
-        if (segmentZKMetadata instanceof RealtimeSegmentZKMetadata) {
-          if (((RealtimeSegmentZKMetadata) segmentZKMetadata).getStatus() == Status.IN_PROGRESS) {
-            continue;
-          }
-        }
-        if (deletionStrategy.isPurgeable(segmentZKMetadata)) {
-          LOGGER.info("Trying to delete segment: {}", segmentZKMetadata.getSegmentName());
-          _pinotHelixResourceManager.deleteSegment(tableName, segmentZKMetadata.getSegmentName());
-        }
+  private void purgeExpiredSegmentsForEntireCluster() {
+    List<String> tableNames = _pinotHelixResourceManager.getAllPinotTableNames();
+    // Drop the indexes of the deleted tables and of the tables without retention
+    _segmentEndTimeIndexMap.keySet().retainAll(_tableDeletionStrategy.keySet());
+    _segmentEndTimeIndexMap.keySet().retainAll(tableNames);
+    for (String tableName : tableNames) {
+      TimeRetentionStrategy deletionStrategy = _tableDeletionStrategy.get(tableName);
+      if (deletionStrategy == null) {
+        LOGGER.info("No Retention strategy found for table: {}", tableName);
+        continue;
       }
+      try {
+        purgeExpiredSegmentsForTable(tableName, deletionStrategy);
+      } catch (Exception e) {
+        LOGGER.error("Caught exception while purging expired segments for table: {}", tableName, e);
+      }
+    }
+  }
+
+  private void purgeExpiredSegmentsForTable(String tableName, TimeRetentionStrategy deletionStrategy) {
+    long purgeableEndTimeMillis = deletionStrategy.getPurgeableEndTimeMillis(System.currentTimeMillis());
+    if (purgeableEndTimeMillis == Long.MIN_VALUE) {
+      return;
+    }
+    SegmentEndTimeIndex segmentEndTimeIndex = updateSegmentEndTimeIndex(tableName);
+    List<String> expiredSegments = segmentEndTimeIndex.getSegmentsEndingBefore(purgeableEndTimeMillis);
+    if (expiredSegments.isEmpty()) {
+      return;
+    }
+
+    LOGGER.info("Trying to delete {} expired segments out of {} for table: {}", expiredSegments.size(),
+        segmentEndTimeIndex.getNumSegments(), tableName);
+    PinotResourceManagerResponse response =
+        _pinotHelixResourceManager.deleteSegments(tableName, new ArrayList<>(expiredSegments));
+    if (response.isSuccessful()) {
+      segmentEndTimeIndex.removeSegments(expiredSegments);
+      _controllerMetrics.addMeteredTableValue(tableName, ControllerMeter.RETENTION_EXPIRED_SEGMENTS,
+          expiredSegments.size());
+    } else {
+      LOGGER.error("Failed to delete expired segments for table: {}, response: {}", tableName, response);
     }
   }
 
@@ -260,37 +294,61 @@ public class RetentionManager {
     }
   }
 
-  private void updateSegmentMetadataForEntireCluster() {
-    List<String> tableNames = _pinotHelixResourceManager.getAllPinotTableNames();
-    for (String tableName : tableNames) {
-      _segmentMetadataMap.put(tableName, retrieveSegmentMetadataForTable(tableName));
+  /**
+   * Updates the segment end time index of the given table from the stats of its segment ZK metadata, only reading the
+   * segment ZK metadata of the segments added or updated since the previous update.
+   */
+  private SegmentEndTimeIndex updateSegmentEndTimeIndex(String tableName) {
+    SegmentEndTimeIndex segmentEndTimeIndex = _segmentEndTimeIndexMap.get(tableName);
+    if (segmentEndTimeIndex == null) {
+      segmentEndTimeIndex = new SegmentEndTimeIndex();
+      _segmentEndTimeIndexMap.put(tableName, segmentEndTimeIndex);
     }
-  }
 
-  private List<SegmentZKMetadata> retrieveSegmentMetadataForTable(String tableName) {
-    List<SegmentZKMetadata> segmentMetadataList = new ArrayList<>();
     ZkHelixPropertyStore<ZNRecord> propertyStore = _pinotHelixResourceManager.getPropertyStore();
-    TableType tableType = TableNameBuilder.getTableTypeFromTableName(tableName);
-    assert tableType != null;
-    switch (tableType) {
-      case OFFLINE:
-        List<OfflineSegmentZKMetadata> offlineSegmentZKMetadatas =
-            ZKMetadataProvider.getOfflineSegmentZKMetadataListForTable(propertyStore, tableName);
-        for (OfflineSegmentZKMetadata offlineSegmentZKMetadata : offlineSegmentZKMetadatas) {
-          segmentMetadataList.add(offlineSegmentZKMetadata);
-        }
-        break;
-      case REALTIME:
-        List<RealtimeSegmentZKMetadata> realtimeSegmentZKMetadatas =
-            ZKMetadataProvider.getRealtimeSegmentZKMetadataListForTable(propertyStore, tableName);
-        for (RealtimeSegmentZKMetadata realtimeSegmentZKMetadata : realtimeSegmentZKMetadatas) {
-          segmentMetadataList.add(realtimeSegmentZKMetadata);
+    List<String> segmentNames =
+        propertyStore.getChildNames(ZKMetadataProvider.constructPropertyStorePathForResource(tableName),
+            AccessOption.PERSISTENT);
+    if (segmentNames == null) {
+      segmentNames = Collections.emptyList();
+    }
+    segmentEndTimeIndex.retainSegments(segmentNames);
+    int numSegments = segmentNames.size();
+    if (numSegments == 0) {
+      return segmentEndTimeIndex;
+    }
+
+    List<String> segmentPaths = new ArrayList<>(numSegments);
+    for (String segmentName : segmentNames) {
+      segmentPaths.add(ZKMetadataProvider.constructPropertyStorePathForSegment(tableName, segmentName));
+    }
+    Stat[] stats = propertyStore.getStats(segmentPaths, AccessOption.PERSISTENT);
+    List<String> segmentPathsToRead = new ArrayList<>();
+    for (int i = 0; i < numSegments; i++) {
+      Stat stat = stats[i];
+      if (stat != null && !segmentEndTimeIndex.isUpToDate(segmentNames.get(i), stat.getVersion())) {
+        segmentPathsToRead.add(segmentPaths.get(i));
+      }
+    }
+
+    int numSegmentsToRead = segmentPathsToRead.size();
+    if (numSegmentsToRead > 0) {
+      TableType tableType = TableNameBuilder.getTableTypeFromTableName(tableName);
+      List<Stat> readStats = new ArrayList<>(numSegmentsToRead);
+      List<ZNRecord> znRecords = propertyStore.get(segmentPathsToRead, readStats, AccessOption.PERSISTENT);
+      for (int i = 0; i < numSegmentsToRead; i++) {
+        ZNRecord znRecord = znRecords.get(i);
+        if (znRecord != null) {
+          SegmentZKMetadata segmentZKMetadata =
+              tableType == TableType.REALTIME ? new RealtimeSegmentZKMetadata(znRecord)
+                  : new OfflineSegmentZKMetadata(znRecord);
+          segmentEndTimeIndex.updateSegment(segmentZKMetadata, readStats.get(i).getVersion());
         }
-        break;
-      default:
-        throw new IllegalArgumentException("No table type matches table name: " + tableName);
+      }
     }
-    return segmentMetadataList;
+    LOGGER.info("Updated the segment end time index of {} segments for table: {}, read {} segment ZK metadata",
+        numSegments, tableName, numSegmentsToRead);
+    return segmentEndTimeIndex;
   }
 
   public void stop() {
@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.controller.helix.core.retention;
+
+import com.linkedin.pinot.common.metadata.segment.RealtimeSegmentZKMetadata;
+import com.linkedin.pinot.common.metadata.segment.SegmentZKMetadata;
+import com.linkedin.pinot.common.utils.CommonConstants.Segment.Realtime.Status;
+import com.linkedin.pinot.common.utils.time.TimeUtils;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * In-memory index of the end times of the segments of a table, sorted by end time, from which the segments ending
+ * before a given time are found without going through all the segments.
+ * <p>The index is kept across retention runs and updated as segments are added, updated and removed. Each segment is
+ * recorded with the version of the segment ZK metadata it was indexed from, so that only the segment ZK metadata of
+ * the segments added or updated since the previous update need to be read.
+ * <p>Only the segments that can expire are indexed by end time: realtime segments still being consumed, segments
+ * without time unit and segments whose end time fails the sanity check are left out until their ZK metadata changes.
+ */
+public class SegmentEndTimeIndex {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SegmentEndTimeIndex.class);
+
+  // Version of the segment ZK metadata each segment was indexed from, by segment name
+  private final Map<String, Integer> _zkVersions = new HashMap<>();
+  // End times of the segments that can expire, by segment name
+  private final Map<String, SegmentEndTime> _segmentEndTimes = new HashMap<>();
+  private final NavigableSet<SegmentEndTime> _sortedSegmentEndTimes = new TreeSet<>();
+
+  /**
+   * Returns whether the given segment is indexed from the given version of its segment ZK metadata.
+   */
+  public boolean isUpToDate(String segmentName, int zkVersion) {
+    Integer indexedZkVersion = _zkVersions.get(segmentName);
+    return indexedZkVersion != null && indexedZkVersion == zkVersion;
+  }
+
+  /**
+   * Adds a segment to the index, or updates it.
+   *
+   * @param segmentZKMetadata Segment ZK metadata
+   * @param zkVersion Version of the segment ZK metadata
+   */
+  public void updateSegment(SegmentZKMetadata segmentZKMetadata, int zkVersion) {
+    String segmentName = segmentZKMetadata.getSegmentName();
+    removeEndTime(segmentName);
+    _zkVersions.put(segmentName, zkVersion);
+    if (segmentZKMetadata instanceof RealtimeSegmentZKMetadata
+        && ((RealtimeSegmentZKMetadata) segmentZKMetadata).getStatus() == Status.IN_PROGRESS) {
+      return;
+    }
+    TimeUnit segmentTimeUnit = segmentZKMetadata.getTimeUnit();
+    if (segmentTimeUnit == null) {
+      return;
+    }
+    long endTimeMillis = segmentTimeUnit.toMillis(segmentZKMetadata.getEndTime());
+    // Check that the date in the segment is between 1971 and 2071, as a sanity check for misconfigured time units.
+    if (!TimeUtils.timeValueInValidRange(endTimeMillis)) {
+      LOGGER.warn("Skipping purge check for segment {}, timestamp {} {} fails sanity check.", segmentName,
+          segmentZKMetadata.getEndTime(), segmentTimeUnit);
+      return;
+    }
+    SegmentEndTime segmentEndTime = new SegmentEndTime(segmentName, endTimeMillis);
+    _segmentEndTimes.put(segmentName, segmentEndTime);
+    _sortedSegmentEndTimes.add(segmentEndTime);
+  }
+
+  /**
+   * Removes the given segments from the index.
+   */
+  public void removeSegments(Collection<String> segmentNames) {
+    for (String segmentName : segmentNames) {
+      _zkVersions.remove(segmentName);
+      removeEndTime(segmentName);
+    }
+  }
+
+  /**
+   * Removes from the index the segments not in the given ones, e.g. the segments deleted since the previous update.
+   */
+  public void retainSegments(Collection<String> segmentNames) {
+    Set<String> segmentsToRetain = new HashSet<>(segmentNames);
+    List<String> segmentsToRemove = new ArrayList<>();
+    for (String segmentName : _zkVersions.keySet()) {
+      if (!segmentsToRetain.contains(segmentName)) {
+        segmentsToRemove.add(segmentName);
+      }
+    }
+    removeSegments(segmentsToRemove);
+  }
+
+  private void removeEndTime(String segmentName) {
+    SegmentEndTime segmentEndTime = _segmentEndTimes.remove(segmentName);
+    if (segmentEndTime != null) {
+      _sortedSegmentEndTimes.remove(segmentEndTime);
+    }
+  }
+
+  /**
+   * Returns the names of the indexed segments ending strictly before the given time, by ascending end time.
+   */
+  public List<String> getSegmentsEndingBefore(long endTimeMillis) {
+    List<String> segmentNames = new ArrayList<>();
+    // Segments with the same end time are sorted by name, the empty name sorting first
+    Iterator<SegmentEndTime> iterator =
+        _sortedSegmentEndTimes.headSet(new SegmentEndTime("", endTimeMillis), false).iterator();
+    while (iterator.hasNext()) {
+      segmentNames.add(iterator.next()._segmentName);
+    }
+    return segmentNames;
+  }
+
+  /**
+   * Returns the number of segments that can expire.
+   */
+  public int getNumSegments() {
+    return _sortedSegmentEndTimes.size();
+  }
+
+  private static class SegmentEndTime implements Comparable<SegmentEndTime> {
+    private final String _segmentName;
+    private final long _endTimeMillis;
+
+    private SegmentEndTime(String segmentName, long endTimeMillis) {
+      _segmentName = segmentName;
+      _endTimeMillis = endTimeMillis;
+    }
+
+    @Override
+    public int compareTo(SegmentEndTime other) {
+      int result = Long.compare(_endTimeMillis, other._endTimeMillis);
+      return result != 0 ? result : _segmentName.compareTo(other._segmentName);
+    }
+  }
+}
@@ -55,6 +55,17 @@ public class TimeRetentionStrategy implements RetentionStrategy {
     }
   }
 
+  /**
+   * Returns the end time in milliseconds before which segments are purgeable at the given time, or Long.MIN_VALUE if
+   * no segment is purgeable.
+   */
+  public long getPurgeableEndTimeMillis(long currentTimeMillis) {
+    if (_retentionDuration == null || _retentionDuration.getMillis() <= 0) {
+      return Long.MIN_VALUE;
+    }
+    return currentTimeMillis - _retentionDuration.getMillis();
+  }
+
   @Override
   public boolean isPurgeable(SegmentZKMetadata segmentZKMetadata) {
     if (_retentionDuration == null || _retentionDuration.getMillis() <= 0) {
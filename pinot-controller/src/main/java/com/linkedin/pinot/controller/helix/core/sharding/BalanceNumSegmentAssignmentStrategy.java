@@ -26,6 +26,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
+import javax.annotation.Nullable;
 import org.apache.helix.HelixAdmin;
 import org.apache.helix.model.IdealState;
 import org.slf4j.Logger;
@@ -40,7 +41,7 @@ public class BalanceNumSegmentAssignmentStrategy implements SegmentAssignmentStr
 
   @Override
   public List<String> getAssignedInstances(HelixAdmin helixAdmin, String helixClusterName,
-      SegmentMetadata segmentMetadata, int numReplicas, String tenantName) {
+      SegmentMetadata segmentMetadata, int numReplicas, String tenantName, @Nullable IdealState idealState) {
     String serverTenantName;
     String tableName;
     if ("realtime".equalsIgnoreCase(segmentMetadata.getIndexType())) {
@@ -60,7 +61,9 @@ public class BalanceNumSegmentAssignmentStrategy implements SegmentAssignmentStr
     }
 
     // Count number of segments assigned to each instance
-    IdealState idealState = helixAdmin.getResourceIdealState(helixClusterName, tableName);
+    if (idealState == null) {
+      idealState = helixAdmin.getResourceIdealState(helixClusterName, tableName);
+    }
     if (idealState != null) {
       for (String partitionName : idealState.getPartitionSet()) {
         Map<String, String> instanceToStateMap =  idealState.getInstanceStateMap(partitionName);
@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.controller.helix.core.sharding;
+
+import com.linkedin.pinot.common.config.TableNameBuilder;
+import com.linkedin.pinot.common.segment.SegmentMetadata;
+import com.linkedin.pinot.common.utils.ControllerTenantNameBuilder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.apache.helix.HelixAdmin;
+import org.apache.helix.model.IdealState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Assigns the replicas of a segment to the instances with the least data, weighted by their query load, instead of
+ * the fewest segments: segments of a table can range from a few MB to several GB, and instances can serve other big
+ * or hot tables.
+ * <p>The load of an instance is the size of the segments of the table assigned to it in the ideal state, plus its disk
+ * usage for the other tables, multiplied by its query load weight. Segments of unknown size count as the average
+ * segment size of the table, so that without any size information segments are balanced by count.
+ */
+public class BalanceSizeSegmentAssignmentStrategy implements SegmentAssignmentStrategy {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BalanceSizeSegmentAssignmentStrategy.class);
+
+  @Nullable
+  private final ServerLoadProvider _serverLoadProvider;
+
+  /**
+   * @param serverLoadProvider Provider of segment sizes and server load, null to balance segments by count
+   */
+  public BalanceSizeSegmentAssignmentStrategy(@Nullable ServerLoadProvider serverLoadProvider) {
+    _serverLoadProvider = serverLoadProvider;
+  }
+
+  @Override
+  public List<String> getAssignedInstances(HelixAdmin helixAdmin, String helixClusterName,
+      SegmentMetadata segmentMetadata, int numReplicas, String tenantName, @Nullable IdealState idealState) {
+    String serverTenantName;
+    String tableName;
+    if ("realtime".equalsIgnoreCase(segmentMetadata.getIndexType())) {
+      tableName = TableNameBuilder.REALTIME_TABLE_NAME_BUILDER.forTable(segmentMetadata.getTableName());
+      serverTenantName = ControllerTenantNameBuilder.getRealtimeTenantNameForTenant(tenantName);
+    } else {
+      tableName = TableNameBuilder.OFFLINE_TABLE_NAME_BUILDER.forTable(segmentMetadata.getTableName());
+      serverTenantName = ControllerTenantNameBuilder.getOfflineTenantNameForTenant(tenantName);
+    }
+
+    List<String> allTaggedInstances = helixAdmin.getInstancesInClusterWithTag(helixClusterName, serverTenantName);
+    Map<String, Long> instanceLoads = new HashMap<>();
+    Map<String, Double> loadWeights = new HashMap<>();
+    for (String instance : allTaggedInstances) {
+      if (_serverLoadProvider != null) {
+        instanceLoads.put(instance, _serverLoadProvider.getDiskUsageInBytes(instance, tableName));
+        loadWeights.put(instance, _serverLoadProvider.getQueryLoadWeight(instance));
+      } else {
+        instanceLoads.put(instance, 0L);
+      }
+    }
+
+    // Sum up the size of the segments assigned to each instance, counting the segments of unknown size apart
+    if (idealState == null) {
+      idealState = helixAdmin.getResourceIdealState(helixClusterName, tableName);
+    }
+    Map<String, Integer> numUnknownSizeSegments = new HashMap<>();
+    long knownSizeInBytes = 0;
+    int numKnownSizeSegments = 0;
+    if (idealState != null) {
+      for (String segmentName : idealState.getPartitionSet()) {
+        Map<String, String> instanceStateMap = idealState.getInstanceStateMap(segmentName);
+        if (instanceStateMap == null) {
+          continue;
+        }
+        long segmentSize = getSegmentSizeInBytes(tableName, segmentName);
+        if (segmentSize >= 0) {
+          knownSizeInBytes += segmentSize;
+          numKnownSizeSegments++;
+        }
+        for (String instance : instanceStateMap.keySet()) {
+          // Ignore instances that are not tagged, so that new segments are not assigned to them if tags changed
+          Long instanceLoad = instanceLoads.get(instance);
+          if (instanceLoad != null) {
+            if (segmentSize >= 0) {
+              instanceLoads.put(instance, instanceLoad + segmentSize);
+            } else {
+              Integer numSegments = numUnknownSizeSegments.get(instance);
+              numUnknownSizeSegments.put(instance, numSegments == null ? 1 : numSegments + 1);
+            }
+          }
+        }
+      }
+    }
+    long averageSegmentSize = numKnownSizeSegments > 0 ? knownSizeInBytes / numKnownSizeSegments : 1L;
+    for (Map.Entry<String, Integer> entry : numUnknownSizeSegments.entrySet()) {
+      String instance = entry.getKey();
+      instanceLoads.put(instance, instanceLoads.get(instance) + entry.getValue() * averageSegmentSize);
+    }
+
+    long segmentSize = getSegmentSizeInBytes(tableName, segmentMetadata.getName());
+    if (segmentSize < 0) {
+      segmentSize = averageSegmentSize;
+    }
+    List<String> selectedInstances = selectInstances(instanceLoads, loadWeights, segmentSize, numReplicas);
+
+    LOGGER.info("Segment assignment result for : {} of size: {}, in resource : {}, selected instances: {}",
+        segmentMetadata.getName(), segmentSize, segmentMetadata.getTableName(), selectedInstances);
+    return selectedInstances;
+  }
+
+  private long getSegmentSizeInBytes(String tableName, String segmentName) {
+    if (_serverLoadProvider == null) {
+      return -1L;
+    }
+    return _serverLoadProvider.getSegmentSizeInBytes(tableName, segmentName);
+  }
+
+  /**
+   * Selects up to numReplicas instances with the lowest weighted load once the segment is added to them.
+   *
+   * @param instanceLoads Current load in bytes of each candidate instance
+   * @param loadWeights Query load weight of the instances, 1 for the instances missing from the map
+   * @param segmentSize Size in bytes of the segment to assign
+   * @param numReplicas Number of replicas of the segment
+   */
+  static List<String> selectInstances(final Map<String, Long> instanceLoads, final Map<String, Double> loadWeights,
+      final long segmentSize, int numReplicas) {
+    List<String> instances = new ArrayList<>(instanceLoads.keySet());
+    Collections.sort(instances, new Comparator<String>() {
+      @Override
+      public int compare(String instance1, String instance2) {
+        int result = Double.compare(getWeightedLoad(instance1), getWeightedLoad(instance2));
+        return result != 0 ? result : instance1.compareTo(instance2);
+      }
+
+      private double getWeightedLoad(String instance) {
+        return getLoadWeight(loadWeights, instance) * (instanceLoads.get(instance) + segmentSize);
+      }
+    });
+    return new ArrayList<>(instances.subList(0, Math.min(numReplicas, instances.size())));
+  }
+
+  static double getLoadWeight(Map<String, Double> loadWeights, String instance) {
+    Double loadWeight = loadWeights.get(instance);
+    return loadWeight != null ? loadWeight : 1.0;
+  }
+}
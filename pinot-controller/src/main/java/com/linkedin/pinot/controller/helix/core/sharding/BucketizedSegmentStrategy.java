@@ -19,7 +19,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import javax.annotation.Nullable;
 import org.apache.helix.HelixAdmin;
+import org.apache.helix.model.IdealState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,7 +40,7 @@ public class BucketizedSegmentStrategy implements SegmentAssignmentStrategy {
 
   @Override
   public List<String> getAssignedInstances(HelixAdmin helixAdmin, String helixClusterName,
-      SegmentMetadata segmentMetadata, int numReplicas, String tenantName) {
+      SegmentMetadata segmentMetadata, int numReplicas, String tenantName, @Nullable IdealState idealState) {
     String serverTenantName = null;
     if ("realtime".equalsIgnoreCase(segmentMetadata.getIndexType())) {
       serverTenantName = ControllerTenantNameBuilder.getRealtimeTenantNameForTenant(tenantName);
@@ -0,0 +1,265 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.controller.helix.core.sharding;
+
+import com.linkedin.pinot.common.config.TableNameBuilder;
+import com.linkedin.pinot.common.metadata.ZKMetadataProvider;
+import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
+import com.linkedin.pinot.common.restlet.resources.SegmentSizeInfo;
+import com.linkedin.pinot.common.utils.CommonConstants;
+import com.linkedin.pinot.common.utils.NamedThreadFactory;
+import com.linkedin.pinot.controller.api.restlet.resources.TableSizeReader;
+import com.linkedin.pinot.controller.helix.core.PinotHelixResourceManager;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.helix.AccessOption;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.model.InstanceConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Server load provider caching the information it gets from the cluster, so that segments can be assigned without
+ * waiting for the servers:
+ * <ul>
+ *   <li>Segment sizes come from the segment meta-data in the property-store, read for the whole table on its first
+ *   access and then kept up to date as segments are added or refreshed, and from the sizes reported by the servers for
+ *   the segments pushed before their size was recorded.</li>
+ *   <li>Disk usages come from the sizes reported by the servers for all the tables, through the
+ *   {@link TableSizeReader}.</li>
+ *   <li>Query load weights come from the {@link CommonConstants.Helix.Instance#QUERY_LOAD_WEIGHT_KEY} field of the
+ *   instance configs.</li>
+ * </ul>
+ * The cache is refreshed in the background, only while the provider is in use, as reading the sizes of all the tables
+ * queries all the servers.
+ */
+public class CachedServerLoadProvider implements ServerLoadProvider {
+  private static final Logger LOGGER = LoggerFactory.getLogger(CachedServerLoadProvider.class);
+
+  private final PinotHelixResourceManager _helixResourceManager;
+  private final TableSizeReader _tableSizeReader;
+  private final long _refreshIntervalMs;
+  private final int _serverTimeoutMs;
+  private final ScheduledExecutorService _executorService =
+      Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("server-load-refresh"));
+
+  // Segment sizes from the segment meta-data by table, -1 for the segments of unknown size
+  private final ConcurrentMap<String, ConcurrentMap<String, Long>> _segmentSizesFromMetadata =
+      new ConcurrentHashMap<>();
+  // Whether the provider was used since the last refresh
+  private final AtomicBoolean _accessed = new AtomicBoolean();
+  private final AtomicBoolean _initialRefreshScheduled = new AtomicBoolean();
+  private volatile ServerLoads _serverLoads = new ServerLoads();
+
+  /**
+   * @param helixResourceManager Helix resource manager
+   * @param tableSizeReader Reader of the table sizes reported by the servers
+   * @param refreshIntervalMs Interval between refreshes of the sizes reported by the servers
+   * @param serverTimeoutMs Timeout of the size requests to the servers
+   */
+  public CachedServerLoadProvider(PinotHelixResourceManager helixResourceManager, TableSizeReader tableSizeReader,
+      long refreshIntervalMs, int serverTimeoutMs) {
+    _helixResourceManager = helixResourceManager;
+    _tableSizeReader = tableSizeReader;
+    _refreshIntervalMs = refreshIntervalMs;
+    _serverTimeoutMs = serverTimeoutMs;
+  }
+
+  public void start() {
+    _executorService.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        if (_accessed.getAndSet(false)) {
+          refresh();
+        }
+      }
+    }, _refreshIntervalMs, _refreshIntervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  public void stop() {
+    _executorService.shutdownNow();
+  }
+
+  @Override
+  public long getSegmentSizeInBytes(String tableNameWithType, String segmentName) {
+    markAccessed();
+    if (TableNameBuilder.getTableTypeFromTableName(tableNameWithType) == CommonConstants.Helix.TableType.OFFLINE) {
+      long segmentSize = getSegmentSizeFromMetadata(tableNameWithType, segmentName);
+      if (segmentSize >= 0) {
+        return segmentSize;
+      }
+    }
+    Map<String, Long> segmentSizes = _serverLoads._segmentSizes.get(tableNameWithType);
+    if (segmentSizes != null) {
+      Long segmentSize = segmentSizes.get(segmentName);
+      if (segmentSize != null) {
+        return segmentSize;
+      }
+    }
+    return -1L;
+  }
+
+  @Override
+  public void setSegmentSizeInBytes(String tableNameWithType, String segmentName, long segmentSizeInBytes) {
+    // Tables not read yet get the new size when they are first accessed
+    ConcurrentMap<String, Long> segmentSizes = _segmentSizesFromMetadata.get(tableNameWithType);
+    if (segmentSizes != null) {
+      segmentSizes.put(segmentName, segmentSizeInBytes);
+    }
+  }
+
+  private long getSegmentSizeFromMetadata(String offlineTableName, String segmentName) {
+    ConcurrentMap<String, Long> segmentSizes = _segmentSizesFromMetadata.get(offlineTableName);
+    if (segmentSizes == null) {
+      segmentSizes = new ConcurrentHashMap<>();
+      for (OfflineSegmentZKMetadata segmentZKMetadata : ZKMetadataProvider.getOfflineSegmentZKMetadataListForTable(
+          _helixResourceManager.getPropertyStore(), offlineTableName)) {
+        segmentSizes.put(segmentZKMetadata.getSegmentName(), segmentZKMetadata.getSizeInBytes());
+      }
+      ConcurrentMap<String, Long> existingSegmentSizes =
+          _segmentSizesFromMetadata.putIfAbsent(offlineTableName, segmentSizes);
+      if (existingSegmentSizes != null) {
+        segmentSizes = existingSegmentSizes;
+      }
+    }
+
+    Long segmentSize = segmentSizes.get(segmentName);
+    if (segmentSize == null) {
+      // Segment added since the table was read
+      ZNRecord znRecord = _helixResourceManager.getPropertyStore()
+          .get(ZKMetadataProvider.constructPropertyStorePathForSegment(offlineTableName, segmentName), null,
+              AccessOption.PERSISTENT);
+      segmentSize = znRecord != null ? new OfflineSegmentZKMetadata(znRecord).getSizeInBytes() : -1L;
+      segmentSizes.put(segmentName, segmentSize);
+    }
+    return segmentSize;
+  }
+
+  @Override
+  public long getDiskUsageInBytes(String instanceName, String excludedTableNameWithType) {
+    markAccessed();
+    Map<String, Long> tableDiskUsages = _serverLoads._diskUsages.get(instanceName);
+    if (tableDiskUsages == null) {
+      return 0L;
+    }
+    long diskUsage = 0L;
+    for (Map.Entry<String, Long> entry : tableDiskUsages.entrySet()) {
+      if (!entry.getKey().equals(excludedTableNameWithType)) {
+        diskUsage += entry.getValue();
+      }
+    }
+    return diskUsage;
+  }
+
+  @Override
+  public double getQueryLoadWeight(String instanceName) {
+    markAccessed();
+    Double loadWeight = _serverLoads._loadWeights.get(instanceName);
+    return loadWeight != null ? loadWeight : 1.0;
+  }
+
+  private void markAccessed() {
+    _accessed.set(true);
+    if (_initialRefreshScheduled.compareAndSet(false, true)) {
+      _executorService.submit(new Runnable() {
+        @Override
+        public void run() {
+          _accessed.set(false);
+          refresh();
+        }
+      });
+    }
+  }
+
+  /**
+   * Reads the sizes of all the tables from the servers and the query load weights of all the instances.
+   */
+  void refresh() {
+    long startTimeMs = System.currentTimeMillis();
+    ServerLoads serverLoads = new ServerLoads();
+    for (String tableName : _helixResourceManager.getAllPinotTableNames()) {
+      TableSizeReader.TableSubTypeSizeDetails sizeDetails;
+      try {
+        sizeDetails = _tableSizeReader.getTableSubtypeSize(tableName, _serverTimeoutMs);
+      } catch (Exception e) {
+        LOGGER.warn("Caught exception while reading the size of table: {}", tableName, e);
+        continue;
+      }
+      Map<String, Long> segmentSizes = new HashMap<>();
+      for (Map.Entry<String, TableSizeReader.SegmentSizeDetails> segmentEntry : sizeDetails.segments.entrySet()) {
+        long segmentSize = -1L;
+        for (Map.Entry<String, SegmentSizeInfo> serverEntry : segmentEntry.getValue().serverInfo.entrySet()) {
+          long diskSize = serverEntry.getValue().diskSizeInBytes;
+          if (diskSize < 0) {
+            continue;
+          }
+          segmentSize = Math.max(segmentSize, diskSize);
+          Map<String, Long> tableDiskUsages = serverLoads._diskUsages.get(serverEntry.getKey());
+          if (tableDiskUsages == null) {
+            tableDiskUsages = new HashMap<>();
+            serverLoads._diskUsages.put(serverEntry.getKey(), tableDiskUsages);
+          }
+          Long tableDiskUsage = tableDiskUsages.get(tableName);
+          tableDiskUsages.put(tableName, tableDiskUsage == null ? diskSize : tableDiskUsage + diskSize);
+        }
+        if (segmentSize >= 0) {
+          segmentSizes.put(segmentEntry.getKey(), segmentSize);
+        }
+      }
+      serverLoads._segmentSizes.put(tableName, segmentSizes);
+    }
+
+    for (String instanceName : _helixResourceManager.getAllInstanceNames()) {
+      try {
+        InstanceConfig instanceConfig = _helixResourceManager.getHelixInstanceConfig(instanceName);
+        String loadWeight =
+            instanceConfig.getRecord().getSimpleField(CommonConstants.Helix.Instance.QUERY_LOAD_WEIGHT_KEY);
+        if (loadWeight != null) {
+          double weight = Double.parseDouble(loadWeight);
+          if (weight > 0) {
+            serverLoads._loadWeights.put(instanceName, weight);
+          } else {
+            LOGGER.warn("Ignoring non positive query load weight: {} of instance: {}", loadWeight, instanceName);
+          }
+        }
+      } catch (Exception e) {
+        LOGGER.warn("Caught exception while reading the query load weight of instance: {}", instanceName, e);
+      }
+    }
+
+    _serverLoads = serverLoads;
+    LOGGER.info("Refreshed the load of {} servers for {} tables in {}ms", serverLoads._diskUsages.size(),
+        serverLoads._segmentSizes.size(), System.currentTimeMillis() - startTimeMs);
+  }
+
+  /**
+   * Sizes and weights read from the cluster, not modified once published.
+   */
+  private static class ServerLoads {
+    // Segment sizes by segment name by table
+    final Map<String, Map<String, Long>> _segmentSizes = new HashMap<>();
+    // Disk usages by table by instance
+    final Map<String, Map<String, Long>> _diskUsages = new HashMap<>();
+    final Map<String, Double> _loadWeights = new HashMap<>();
+  }
+}
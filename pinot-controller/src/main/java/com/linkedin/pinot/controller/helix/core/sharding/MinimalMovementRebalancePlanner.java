@@ -0,0 +1,379 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.controller.helix.core.sharding;
+
+import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+
+/**
+ * Plans the rebalance of the segments of a table over a set of instances, balancing the size of the segments assigned
+ * to the instances (weighted by their query load, as in {@link BalanceSizeSegmentAssignmentStrategy}) while moving as
+ * few replicas as possible:
+ * <ul>
+ *   <li>Replicas on instances that are not part of the target instances, and replicas in excess, are removed.</li>
+ *   <li>Missing replicas are added to the least loaded instances, largest segments first.</li>
+ *   <li>Replicas are then moved one at a time from the most loaded instance to the least loaded instance that lowers
+ *   the higher of their loads, until the most loaded instance is within the imbalance tolerance of the balanced load,
+ *   no move improves the balance, or the maximum number of moves is reached.</li>
+ * </ul>
+ * The planner works on a snapshot of the assignment and does not change the cluster.
+ */
+public class MinimalMovementRebalancePlanner {
+  private final double _imbalanceTolerance;
+  private final int _maxMoves;
+
+  /**
+   * @param imbalanceTolerance Tolerated excess of load of the most loaded instance over the balanced load (e.g. 0.05
+   *                           for 5%), higher values trade balance for fewer moves
+   * @param maxMoves Maximum number of replica moves to balance the load, not counting the replicas that have to be
+   *                 added or removed
+   */
+  public MinimalMovementRebalancePlanner(double imbalanceTolerance, int maxMoves) {
+    Preconditions.checkArgument(imbalanceTolerance >= 0, "Imbalance tolerance must be >= 0, got: %s",
+        imbalanceTolerance);
+    Preconditions.checkArgument(maxMoves >= 0, "Max moves must be >= 0, got: %s", maxMoves);
+    _imbalanceTolerance = imbalanceTolerance;
+    _maxMoves = maxMoves;
+  }
+
+  /**
+   * Plans the rebalance of a table.
+   *
+   * @param currentAssignment Current instances of each segment
+   * @param instances Instances to assign the segments to
+   * @param numReplicas Number of replicas of each segment
+   * @param segmentSizes Size in bytes of the segments, segments missing from the map count as the average size
+   * @param baseLoads Disk usage in bytes of the instances for other tables, 0 for the instances missing from the map
+   * @param loadWeights Query load weight of the instances, 1 for the instances missing from the map
+   */
+  public RebalancePlan plan(Map<String, ? extends Set<String>> currentAssignment, List<String> instances,
+      int numReplicas, Map<String, Long> segmentSizes, Map<String, Long> baseLoads, Map<String, Double> loadWeights) {
+    Preconditions.checkArgument(!instances.isEmpty(), "No instance to assign segments to");
+    Preconditions.checkArgument(numReplicas <= instances.size(), "Cannot assign %s replicas to %s instances",
+        numReplicas, instances.size());
+
+    long knownSizeInBytes = 0;
+    int numKnownSizeSegments = 0;
+    for (String segmentName : currentAssignment.keySet()) {
+      Long segmentSize = segmentSizes.get(segmentName);
+      if (segmentSize != null) {
+        knownSizeInBytes += segmentSize;
+        numKnownSizeSegments++;
+      }
+    }
+    long averageSegmentSize = numKnownSizeSegments > 0 ? knownSizeInBytes / numKnownSizeSegments : 1L;
+
+    Cluster cluster = new Cluster(instances, baseLoads, loadWeights);
+    final Map<String, Long> sizes = new HashMap<>();
+    Map<String, Set<String>> targetAssignment = new TreeMap<>();
+    for (Map.Entry<String, ? extends Set<String>> entry : currentAssignment.entrySet()) {
+      String segmentName = entry.getKey();
+      Long segmentSize = segmentSizes.get(segmentName);
+      sizes.put(segmentName, segmentSize != null ? segmentSize : averageSegmentSize);
+      Set<String> segmentInstances = new TreeSet<>();
+      targetAssignment.put(segmentName, segmentInstances);
+      for (String instance : entry.getValue()) {
+        if (cluster.contains(instance)) {
+          segmentInstances.add(instance);
+          cluster.add(instance, segmentName, sizes.get(segmentName));
+        }
+      }
+    }
+    double imbalanceBefore = cluster.getImbalance();
+
+    // Remove the replicas in excess from the most loaded instances
+    for (Map.Entry<String, Set<String>> entry : targetAssignment.entrySet()) {
+      String segmentName = entry.getKey();
+      Set<String> segmentInstances = entry.getValue();
+      while (segmentInstances.size() > numReplicas) {
+        String instance = cluster.getMostLoaded(segmentInstances);
+        segmentInstances.remove(instance);
+        cluster.remove(instance, segmentName, sizes.get(segmentName));
+      }
+    }
+
+    // Add the missing replicas to the least loaded instances, largest segments first for a tighter packing
+    List<String> segmentsBySize = new ArrayList<>(targetAssignment.keySet());
+    Collections.sort(segmentsBySize, new Comparator<String>() {
+      @Override
+      public int compare(String segment1, String segment2) {
+        return Long.compare(sizes.get(segment2), sizes.get(segment1));
+      }
+    });
+    for (String segmentName : segmentsBySize) {
+      Set<String> segmentInstances = targetAssignment.get(segmentName);
+      long segmentSize = sizes.get(segmentName);
+      while (segmentInstances.size() < numReplicas) {
+        String instance = cluster.getLeastLoadedWith(segmentSize, segmentInstances);
+        segmentInstances.add(instance);
+        cluster.add(instance, segmentName, segmentSize);
+      }
+    }
+
+    // Move replicas from the most loaded instance until balanced
+    int numMoves = 0;
+    while (numMoves < _maxMoves && cluster.getImbalance() > _imbalanceTolerance) {
+      if (!cluster.moveFromMostLoaded(targetAssignment, sizes)) {
+        break;
+      }
+      numMoves++;
+    }
+
+    return new RebalancePlan(currentAssignment, targetAssignment, sizes, imbalanceBefore, cluster.getImbalance());
+  }
+
+  /**
+   * Load of the instances of the cluster being planned.
+   */
+  private static class Cluster {
+    private final Map<String, Long> _loads = new HashMap<>();
+    private final Map<String, Double> _weights = new HashMap<>();
+    private final Map<String, Set<String>> _segments = new HashMap<>();
+    // Load of each instance such that the weighted loads are all equal, relative to the load of the instance
+    private final double _sumOfInverseWeights;
+
+    Cluster(List<String> instances, Map<String, Long> baseLoads, Map<String, Double> loadWeights) {
+      double sumOfInverseWeights = 0;
+      for (String instance : instances) {
+        Long baseLoad = baseLoads.get(instance);
+        double weight = BalanceSizeSegmentAssignmentStrategy.getLoadWeight(loadWeights, instance);
+        Preconditions.checkArgument(weight > 0, "Load weight of instance: %s must be > 0, got: %s", instance, weight);
+        _loads.put(instance, baseLoad != null ? baseLoad : 0L);
+        _weights.put(instance, weight);
+        _segments.put(instance, new TreeSet<String>());
+        sumOfInverseWeights += 1 / weight;
+      }
+      _sumOfInverseWeights = sumOfInverseWeights;
+    }
+
+    boolean contains(String instance) {
+      return _loads.containsKey(instance);
+    }
+
+    void add(String instance, String segmentName, long segmentSize) {
+      _loads.put(instance, _loads.get(instance) + segmentSize);
+      _segments.get(instance).add(segmentName);
+    }
+
+    void remove(String instance, String segmentName, long segmentSize) {
+      _loads.put(instance, _loads.get(instance) - segmentSize);
+      _segments.get(instance).remove(segmentName);
+    }
+
+    double getWeightedLoad(String instance, long extraLoad) {
+      return _weights.get(instance) * (_loads.get(instance) + extraLoad);
+    }
+
+    /**
+     * Returns the weighted load every instance would have if the load was perfectly balanced.
+     */
+    double getBalancedWeightedLoad() {
+      long totalLoad = 0;
+      for (long load : _loads.values()) {
+        totalLoad += load;
+      }
+      return totalLoad / _sumOfInverseWeights;
+    }
+
+    /**
+     * Returns the relative excess of load of the most loaded instance over the balanced load.
+     */
+    double getImbalance() {
+      double balancedWeightedLoad = getBalancedWeightedLoad();
+      if (balancedWeightedLoad == 0) {
+        return 0;
+      }
+      return getWeightedLoad(getMostLoaded(_loads.keySet()), 0) / balancedWeightedLoad - 1;
+    }
+
+    String getMostLoaded(Set<String> instances) {
+      String mostLoaded = null;
+      for (String instance : instances) {
+        if (mostLoaded == null || compare(instance, mostLoaded, 0) > 0) {
+          mostLoaded = instance;
+        }
+      }
+      return mostLoaded;
+    }
+
+    String getLeastLoadedWith(long segmentSize, Set<String> excludedInstances) {
+      String leastLoaded = null;
+      for (String instance : _loads.keySet()) {
+        if (!excludedInstances.contains(instance) && (leastLoaded == null
+            || compare(instance, leastLoaded, segmentSize) < 0)) {
+          leastLoaded = instance;
+        }
+      }
+      return leastLoaded;
+    }
+
+    private int compare(String instance1, String instance2, long extraLoad) {
+      int result = Double.compare(getWeightedLoad(instance1, extraLoad), getWeightedLoad(instance2, extraLoad));
+      return result != 0 ? result : instance2.compareTo(instance1);
+    }
+
+    /**
+     * Moves the replica from the most loaded instance to the least loaded instance which lowers the most the higher of
+     * their weighted loads, and returns whether a replica could be moved.
+     * <p>Each move lowers the weighted load of the most loaded instance without raising any other instance to its
+     * previous load, so the moves always end.
+     */
+    boolean moveFromMostLoaded(Map<String, Set<String>> assignment, Map<String, Long> sizes) {
+      final String source = getMostLoaded(_loads.keySet());
+      double sourceWeightedLoad = getWeightedLoad(source, 0);
+      List<String> destinations = new ArrayList<>(_loads.keySet());
+      destinations.remove(source);
+      Collections.sort(destinations, new Comparator<String>() {
+        @Override
+        public int compare(String instance1, String instance2) {
+          return Cluster.this.compare(instance1, instance2, 0);
+        }
+      });
+
+      for (String destination : destinations) {
+        if (getWeightedLoad(destination, 0) >= sourceWeightedLoad) {
+          break;
+        }
+        String bestSegment = null;
+        double bestWeightedLoad = sourceWeightedLoad;
+        for (String segmentName : _segments.get(source)) {
+          if (_segments.get(destination).contains(segmentName)) {
+            continue;
+          }
+          long segmentSize = sizes.get(segmentName);
+          double weightedLoad =
+              Math.max(getWeightedLoad(source, -segmentSize), getWeightedLoad(destination, segmentSize));
+          if (weightedLoad < bestWeightedLoad) {
+            bestSegment = segmentName;
+            bestWeightedLoad = weightedLoad;
+          }
+        }
+        if (bestSegment != null) {
+          long segmentSize = sizes.get(bestSegment);
+          remove(source, bestSegment, segmentSize);
+          add(destination, bestSegment, segmentSize);
+          Set<String> segmentInstances = assignment.get(bestSegment);
+          segmentInstances.remove(source);
+          segmentInstances.add(destination);
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Plan of a rebalance: target assignment and replicas to move.
+   */
+  public static class RebalancePlan {
+    private final Map<String, Set<String>> _targetAssignment;
+    private final int _numReplicasAdded;
+    private final int _numReplicasRemoved;
+    private final long _numBytesAdded;
+    private final double _imbalanceBefore;
+    private final double _imbalanceAfter;
+
+    RebalancePlan(Map<String, ? extends Set<String>> currentAssignment, Map<String, Set<String>> targetAssignment,
+        Map<String, Long> sizes, double imbalanceBefore, double imbalanceAfter) {
+      _targetAssignment = targetAssignment;
+      int numReplicasAdded = 0;
+      int numReplicasRemoved = 0;
+      long numBytesAdded = 0;
+      for (Map.Entry<String, Set<String>> entry : targetAssignment.entrySet()) {
+        Set<String> currentInstances = currentAssignment.get(entry.getKey());
+        Set<String> targetInstances = entry.getValue();
+        for (String instance : targetInstances) {
+          if (!currentInstances.contains(instance)) {
+            numReplicasAdded++;
+            numBytesAdded += sizes.get(entry.getKey());
+          }
+        }
+        for (String instance : currentInstances) {
+          if (!targetInstances.contains(instance)) {
+            numReplicasRemoved++;
+          }
+        }
+      }
+      _numReplicasAdded = numReplicasAdded;
+      _numReplicasRemoved = numReplicasRemoved;
+      _numBytesAdded = numBytesAdded;
+      _imbalanceBefore = imbalanceBefore;
+      _imbalanceAfter = imbalanceAfter;
+    }
+
+    /**
+     * Returns the target instances of each segment.
+     */
+    public Map<String, Set<String>> getTargetAssignment() {
+      return _targetAssignment;
+    }
+
+    /**
+     * Returns the number of replicas to load on a new instance.
+     */
+    public int getNumReplicasAdded() {
+      return _numReplicasAdded;
+    }
+
+    /**
+     * Returns the number of replicas to drop from an instance.
+     */
+    public int getNumReplicasRemoved() {
+      return _numReplicasRemoved;
+    }
+
+    /**
+     * Returns the number of bytes of the replicas to load on a new instance.
+     */
+    public long getNumBytesAdded() {
+      return _numBytesAdded;
+    }
+
+    /**
+     * Returns the relative excess of load of the most loaded instance over the balanced load, before the rebalance
+     * (counting the target instances only).
+     */
+    public double getImbalanceBefore() {
+      return _imbalanceBefore;
+    }
+
+    /**
+     * Returns the relative excess of load of the most loaded instance over the balanced load, after the rebalance.
+     */
+    public double getImbalanceAfter() {
+      return _imbalanceAfter;
+    }
+
+    public boolean isNoop() {
+      return _numReplicasAdded == 0 && _numReplicasRemoved == 0;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%d replicas added (%d bytes), %d replicas removed, imbalance: %.3f -> %.3f",
+          _numReplicasAdded, _numBytesAdded, _numReplicasRemoved, _imbalanceBefore, _imbalanceAfter);
+    }
+  }
+}
@@ -17,7 +17,9 @@ package com.linkedin.pinot.controller.helix.core.sharding;
 
 import java.util.List;
 
+import javax.annotation.Nullable;
 import org.apache.helix.HelixAdmin;
+import org.apache.helix.model.IdealState;
 
 import com.linkedin.pinot.common.segment.SegmentMetadata;
 
@@ -28,6 +30,10 @@ import com.linkedin.pinot.common.segment.SegmentMetadata;
  *
  */
 public interface SegmentAssignmentStrategy {
+  /**
+   * @param idealState Ideal state the segment is added to, which may hold segments not written to the cluster yet
+   *                   (e.g. when adding several segments in a single update), null to read it from the cluster
+   */
   public List<String> getAssignedInstances(HelixAdmin helixAdmin, String helixClusterName,
-      SegmentMetadata segmentMetadata, int numReplicas, String tenantName);
+      SegmentMetadata segmentMetadata, int numReplicas, String tenantName, @Nullable IdealState idealState);
 }
@@ -15,6 +15,8 @@
  */
 package com.linkedin.pinot.controller.helix.core.sharding;
 
+import javax.annotation.Nullable;
+
 /**
  * Get SegmentAssignmentStrategyFactory methods.
  *
@@ -23,6 +25,14 @@ package com.linkedin.pinot.controller.helix.core.sharding;
 public class SegmentAssignmentStrategyFactory {
 
   public static SegmentAssignmentStrategy getSegmentAssignmentStrategy(String strategy) {
+    return getSegmentAssignmentStrategy(strategy, null);
+  }
+
+  /**
+   * @param serverLoadProvider Provider of segment sizes and server load for the size-aware strategy, null if unavailable
+   */
+  public static SegmentAssignmentStrategy getSegmentAssignmentStrategy(String strategy,
+      @Nullable ServerLoadProvider serverLoadProvider) {
     if (strategy == null || strategy.equals("null")) {
       return new BalanceNumSegmentAssignmentStrategy();
     }
@@ -34,6 +44,8 @@ public class SegmentAssignmentStrategyFactory {
         return new RandomAssignmentStrategy();
       case BucketizedSegmentAssignmentStrategy:
         return new BucketizedSegmentStrategy();
+      case BalanceSizeSegmentAssignmentStrategy:
+        return new BalanceSizeSegmentAssignmentStrategy(serverLoadProvider);
       default:
         return new BalanceNumSegmentAssignmentStrategy();
     }
@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.controller.helix.core.sharding;
+
+/**
+ * Provides the information about segment sizes and server load used by the size-aware segment assignment.
+ * <p>Implementations are expected to answer from cached information, as they are called while assigning segments.
+ */
+public interface ServerLoadProvider {
+  /**
+   * Returns the size in bytes of a segment, or -1 if unknown.
+   */
+  long getSegmentSizeInBytes(String tableNameWithType, String segmentName);
+
+  /**
+   * Called when the size of a segment is recorded in its meta-data, as the segment is added or refreshed, -1 if
+   * unknown.
+   */
+  void setSegmentSizeInBytes(String tableNameWithType, String segmentName, long segmentSizeInBytes);
+
+  /**
+   * Returns the disk usage in bytes of an instance for all the tables but the given one, or 0 if unknown.
+   */
+  long getDiskUsageInBytes(String instanceName, String excludedTableNameWithType);
+
+  /**
+   * Returns the relative query load of an instance, 1 by default. An instance with a weight of 2 (e.g. serving hot
+   * tables) is assigned half as much data as an instance with a weight of 1.
+   */
+  double getQueryLoadWeight(String instanceName);
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.controller.validation;
+
+import com.linkedin.pinot.common.metadata.ZKMetadataProvider;
+import com.linkedin.pinot.common.utils.CommonConstants;
+import com.linkedin.pinot.controller.helix.core.PinotHelixResourceManager;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.I0Itec.zkclient.IZkChildListener;
+import org.I0Itec.zkclient.IZkDataListener;
+import org.apache.helix.PropertyPathConfig;
+import org.apache.helix.PropertyType;
+import org.apache.helix.manager.zk.ZNRecordSerializer;
+import org.apache.helix.manager.zk.ZkClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Tracks the tables that changed, from ZK change notifications, so that the validation manager only needs to
+ * revalidate those tables. Watches are set on:
+ * <ul>
+ *   <li>The ideal states, to follow the tables being added and removed.</li>
+ *   <li>The ideal state of each table, which changes when its segments are added, removed or change state (e.g. when
+ *   a consuming segment is committed).</li>
+ *   <li>The segment ZK metadata of each table, whose children change when its segments are added or removed.</li>
+ *   <li>The table config of each table, which changes when the table is updated (e.g. its replication or its
+ *   tenants).</li>
+ * </ul>
+ * In place updates of the segment ZK metadata alone (e.g. segment refreshes), and changes outside of the table (e.g.
+ * Kafka partitions being added to the topic, or servers being tagged for or untagged from the tenant) do not trigger
+ * any notification. The Kafka partitions of the LLC tables are checked by every validation run, and the other changes
+ * are picked up by the periodic full resyncs of the validation manager.
+ */
+public class TableChangeTracker implements IZkChildListener, IZkDataListener {
+  private static final Logger LOGGER = LoggerFactory.getLogger(TableChangeTracker.class);
+
+  private final PinotHelixResourceManager _pinotHelixResourceManager;
+  private final String _idealStatesPath;
+  private final String _propertyStorePath;
+
+  // Guarded by this
+  private final Set<String> _watchedTables = new HashSet<>();
+  private final Set<String> _changedTables = new HashSet<>();
+  private ZkClient _zkClient;
+
+  public TableChangeTracker(PinotHelixResourceManager pinotHelixResourceManager) {
+    _pinotHelixResourceManager = pinotHelixResourceManager;
+    String clusterName = pinotHelixResourceManager.getHelixClusterName();
+    _idealStatesPath = PropertyPathConfig.getPath(PropertyType.IDEALSTATES, clusterName);
+    _propertyStorePath = PropertyPathConfig.getPath(PropertyType.PROPERTYSTORE, clusterName);
+  }
+
+  public synchronized void start() {
+    LOGGER.info("Starting table change tracker, adding a listener on the ideal states path.");
+    _zkClient = new ZkClient(_pinotHelixResourceManager.getHelixZkURL(), ZkClient.DEFAULT_SESSION_TIMEOUT,
+        ZkClient.DEFAULT_CONNECTION_TIMEOUT);
+    _zkClient.setZkSerializer(new ZNRecordSerializer());
+    _zkClient.waitUntilConnected();
+    updateWatchedTables(_zkClient.subscribeChildChanges(_idealStatesPath, this));
+  }
+
+  public void stop() {
+    ZkClient zkClient;
+    synchronized (this) {
+      zkClient = _zkClient;
+      _zkClient = null;
+      _watchedTables.clear();
+      _changedTables.clear();
+    }
+    // Closing the client waits for its event thread, which may be waiting for the lock to deliver a notification
+    if (zkClient != null) {
+      LOGGER.info("Stopping table change tracker.");
+      zkClient.close();
+    }
+  }
+
+  /**
+   * Returns whether the tracker is started, i.e. whether the changes of the tables are tracked.
+   */
+  public synchronized boolean isStarted() {
+    return _zkClient != null;
+  }
+
+  /**
+   * Returns the tables that changed since the previous call, which includes the tables added since then.
+   */
+  public synchronized Set<String> drainChangedTables() {
+    Set<String> changedTables = new HashSet<>(_changedTables);
+    _changedTables.clear();
+    return changedTables;
+  }
+
+  private synchronized void updateWatchedTables(@Nullable List<String> resourceNames) {
+    if (_zkClient == null) {
+      return;
+    }
+    Set<String> tableNames = new HashSet<>();
+    if (resourceNames != null) {
+      for (String resourceName : resourceNames) {
+        if (!CommonConstants.Helix.NON_PINOT_RESOURCE_RESOURCE_NAMES.contains(resourceName)) {
+          tableNames.add(resourceName);
+        }
+      }
+    }
+
+    for (String tableName : tableNames) {
+      if (_watchedTables.add(tableName)) {
+        LOGGER.info("Setting ideal state, segment ZK metadata and table config watches for table {}", tableName);
+        _zkClient.subscribeDataChanges(getIdealStatePath(tableName), this);
+        _zkClient.subscribeChildChanges(getSegmentsPath(tableName), this);
+        _zkClient.subscribeDataChanges(getTableConfigPath(tableName), this);
+        _changedTables.add(tableName);
+      }
+    }
+    Iterator<String> iterator = _watchedTables.iterator();
+    while (iterator.hasNext()) {
+      String tableName = iterator.next();
+      if (!tableNames.contains(tableName)) {
+        LOGGER.info("Removing ideal state, segment ZK metadata and table config watches for deleted table {}",
+            tableName);
+        _zkClient.unsubscribeDataChanges(getIdealStatePath(tableName), this);
+        _zkClient.unsubscribeChildChanges(getSegmentsPath(tableName), this);
+        _zkClient.unsubscribeDataChanges(getTableConfigPath(tableName), this);
+        _changedTables.remove(tableName);
+        iterator.remove();
+      }
+    }
+  }
+
+  private synchronized void markChanged(String path) {
+    String tableName = path.substring(path.lastIndexOf('/') + 1);
+    if (_watchedTables.contains(tableName)) {
+      LOGGER.debug("Table {} changed, path: {}", tableName, path);
+      _changedTables.add(tableName);
+    }
+  }
+
+  private String getIdealStatePath(String tableName) {
+    return _idealStatesPath + "/" + tableName;
+  }
+
+  private String getSegmentsPath(String tableName) {
+    return _propertyStorePath + ZKMetadataProvider.constructPropertyStorePathForResource(tableName);
+  }
+
+  private String getTableConfigPath(String tableName) {
+    return _propertyStorePath + ZKMetadataProvider.constructPropertyStorePathForResourceConfig(tableName);
+  }
+
+  @Override
+  public void handleChildChange(String parentPath, List<String> currentChilds) throws Exception {
+    if (parentPath.equals(_idealStatesPath)) {
+      updateWatchedTables(currentChilds);
+    } else {
+      markChanged(parentPath);
+    }
+  }
+
+  @Override
+  public void handleDataChange(String dataPath, Object data) throws Exception {
+    markChanged(dataPath);
+  }
+
+  @Override
+  public void handleDataDeleted(String dataPath) throws Exception {
+    markChanged(dataPath);
+  }
+}
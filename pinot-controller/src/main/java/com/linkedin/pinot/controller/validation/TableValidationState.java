@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.controller.validation;
+
+import com.linkedin.pinot.common.segment.SegmentMetadata;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.joda.time.Duration;
+import org.joda.time.Interval;
+
+
+/**
+ * Validation state of a table, kept across validation runs so that only the segment ZK metadata that changed since
+ * the previous run need to be read again.
+ */
+class TableValidationState {
+  // Segment infos by segment name, in the order of the segment ZK metadata
+  private Map<String, SegmentInfo> _segmentInfos = new LinkedHashMap<>();
+  // Whether the table is a realtime table consuming with the low level consumer
+  private boolean _llcTable;
+
+  Map<String, SegmentInfo> getSegmentInfos() {
+    return _segmentInfos;
+  }
+
+  void setSegmentInfos(Map<String, SegmentInfo> segmentInfos) {
+    _segmentInfos = segmentInfos;
+  }
+
+  boolean isLLCTable() {
+    return _llcTable;
+  }
+
+  void setLLCTable(boolean llcTable) {
+    _llcTable = llcTable;
+  }
+
+  /**
+   * The part of the metadata of a segment needed for its validation, along with the version of the segment ZK metadata
+   * it was read from. Much smaller than the {@link SegmentMetadata} of the segment, so that the infos of all the
+   * segments can be kept in memory.
+   */
+  static class SegmentInfo {
+    private final int _zkVersion;
+    private final String _segmentName;
+    private final Interval _timeInterval;
+    private final Duration _timeGranularity;
+    private final long _updateTimeMillis;
+    private final int _totalRawDocs;
+
+    SegmentInfo(int zkVersion, SegmentMetadata segmentMetadata) {
+      _zkVersion = zkVersion;
+      _segmentName = segmentMetadata.getName();
+      _timeInterval = segmentMetadata.getTimeInterval();
+      _timeGranularity = segmentMetadata.getTimeGranularity();
+      _updateTimeMillis = Math.max(segmentMetadata.getPushTime(), segmentMetadata.getRefreshTime());
+      _totalRawDocs = segmentMetadata.getTotalRawDocs();
+    }
+
+    int getZkVersion() {
+      return _zkVersion;
+    }
+
+    String getSegmentName() {
+      return _segmentName;
+    }
+
+    @Nullable
+    Interval getTimeInterval() {
+      return _timeInterval;
+    }
+
+    @Nullable
+    Duration getTimeGranularity() {
+      return _timeGranularity;
+    }
+
+    /**
+     * Returns the last push or refresh time of the segment.
+     */
+    long getUpdateTimeMillis() {
+      return _updateTimeMillis;
+    }
+
+    int getTotalRawDocs() {
+      return _totalRawDocs;
+    }
+  }
+}
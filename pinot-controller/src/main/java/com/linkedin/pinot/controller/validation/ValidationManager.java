@@ -16,10 +16,13 @@
 package com.linkedin.pinot.controller.validation;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -27,11 +30,13 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import org.apache.helix.AccessOption;
 import org.apache.helix.HelixAdmin;
 import org.apache.helix.ZNRecord;
 import org.apache.helix.manager.zk.ZKHelixAdmin;
 import org.apache.helix.model.IdealState;
 import org.apache.helix.store.zk.ZkHelixPropertyStore;
+import org.apache.zookeeper.data.Stat;
 import org.joda.time.Duration;
 import org.joda.time.Interval;
 import org.slf4j.Logger;
@@ -54,6 +59,7 @@ import com.linkedin.pinot.controller.ControllerConf;
 import com.linkedin.pinot.controller.helix.core.PinotHelixResourceManager;
 import com.linkedin.pinot.controller.helix.core.PinotHelixSegmentOnlineOfflineStateModelGenerator;
 import com.linkedin.pinot.controller.helix.core.realtime.PinotLLCRealtimeSegmentManager;
+import com.linkedin.pinot.controller.validation.TableValidationState.SegmentInfo;
 import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
 
 
@@ -61,6 +67,12 @@ import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
  * Manages the segment validation metrics, to ensure that all offline segments are contiguous (no missing segments) and
  * that the offline push delay isn't too high.
  *
+ * Validation is incremental: the state of each table is kept across runs, and a run only revalidates the tables that
+ * changed since the previous run as tracked by the {@link TableChangeTracker}, reading only the segment ZK metadata
+ * whose version changed. All the tables are revalidated by periodic full resyncs, which also pick up the changes that
+ * do not trigger any notification. The LLC segments of the realtime tables are validated by every run regardless, so
+ * that Kafka partitions without a consuming segment or added to the topic are handled without waiting for a resync.
+ *
  * Dec 10, 2014
 */
 
@@ -70,8 +82,13 @@ public class ValidationManager {
   private final ScheduledExecutorService _executorService;
   private final PinotHelixResourceManager _pinotHelixResourceManager;
   private final long _validationIntervalSeconds;
+  private final long _fullResyncIntervalMillis;
   private final boolean _autoCreateOnError;
   private final PinotLLCRealtimeSegmentManager _llcRealtimeSegmentManager;
+  private final TableChangeTracker _tableChangeTracker;
+  // Only accessed by the validation runs, which do not run concurrently
+  private final Map<String, TableValidationState> _tableStates = new HashMap<>();
+  private long _lastFullResyncTimeMillis = 0L;
 
   /**
    * Constructs the validation manager.
@@ -85,8 +102,11 @@ public class ValidationManager {
     _validationMetrics = validationMetrics;
     _pinotHelixResourceManager = pinotHelixResourceManager;
     _validationIntervalSeconds = config.getValidationControllerFrequencyInSeconds();
+    _fullResyncIntervalMillis =
+        TimeUnit.SECONDS.toMillis(config.getValidationControllerFullResyncFrequencyInSeconds());
     _autoCreateOnError = true;
     _llcRealtimeSegmentManager = llcRealtimeSegmentManager;
+    _tableChangeTracker = new TableChangeTracker(pinotHelixResourceManager);
 
     _executorService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
       @Override
@@ -104,6 +124,9 @@ public class ValidationManager {
   public void start() {
     LOGGER.info("Starting validation manager");
 
+    // Track the changes of the tables before the first validation run, so that no change is missed
+    _tableChangeTracker.start();
+
     // Set up an executor that executes validation tasks periodically
     _executorService.scheduleWithFixedDelay(new Runnable() {
       @Override
@@ -123,76 +146,204 @@ public class ValidationManager {
   public void stop() {
     // Shut down the executor
     _executorService.shutdown();
+    _tableChangeTracker.stop();
   }
 
   /**
-   * Runs a validation pass over the currently loaded tables.
+   * Runs a validation pass over the currently loaded tables, which only revalidates the tables that changed since the
+   * previous pass unless a full resync is due.
    */
   public void runValidation() {
     if (!_pinotHelixResourceManager.isLeader()) {
       LOGGER.info("Skipping validation, not leader!");
+      // The table states are not kept up to date while another controller is the leader
+      _lastFullResyncTimeMillis = 0L;
       return;
     }
 
-    LOGGER.info("Starting validation");
-    // Fetch the list of tables
+    long startTimeMillis = System.currentTimeMillis();
+    // Drain the changed tables before reading anything from ZK, so that changes made during this run are validated by
+    // the next one
+    Set<String> changedTables = _tableChangeTracker.drainChangedTables();
+    boolean fullResync =
+        !_tableChangeTracker.isStarted() || startTimeMillis - _lastFullResyncTimeMillis >= _fullResyncIntervalMillis;
+    LOGGER.info("Starting {} validation", fullResync ? "full" : "incremental");
+
+    // Fetch the list of tables, and drop the state of the deleted tables
     List<String> allTableNames = _pinotHelixResourceManager.getAllPinotTableNames();
+    _tableStates.keySet().retainAll(new HashSet<>(allTableNames));
     ZkHelixPropertyStore<ZNRecord> propertyStore = _pinotHelixResourceManager.getPropertyStore();
 
+    ValidationRunStats runStats = new ValidationRunStats();
     for (String tableName : allTableNames) {
-      List<SegmentMetadata> segmentMetadataList = new ArrayList<SegmentMetadata>();
+      TableValidationState tableState = _tableStates.get(tableName);
+      boolean newTable = tableState == null;
+      if (!fullResync && !newTable && !changedTables.contains(tableName)) {
+        if (tableState.isLLCTable()) {
+          try {
+            validateLLCTable(tableName);
+          } catch (Exception e) {
+            LOGGER.warn("Caught exception while validating LLC segments of table {}", tableName, e);
+          }
+        }
+        continue;
+      }
+      if (newTable) {
+        tableState = new TableValidationState();
+        _tableStates.put(tableName, tableState);
+      }
+      runStats._numValidatedTables++;
+
+      try {
+        validateTable(propertyStore, tableName, tableState, fullResync || newTable, runStats);
+      } catch (Exception e) {
+        LOGGER.warn("Caught exception while validating table {}", tableName, e);
+        // Validate the table from scratch on the next run
+        _tableStates.remove(tableName);
+      }
+    }
+    if (fullResync) {
+      _lastFullResyncTimeMillis = startTimeMillis;
+    }
+
+    long durationMillis = System.currentTimeMillis() - startTimeMillis;
+    _validationMetrics.updateValidationRunGauges(durationMillis, runStats._numValidatedTables,
+        runStats._numZkStatReads, runStats._numZkMetadataReads);
+    LOGGER.info("Validation completed in {}ms, validated {} out of {} tables, read {} segment ZK metadata stats and {} "
+            + "segment ZK metadata", durationMillis, runStats._numValidatedTables, allTableNames.size(),
+        runStats._numZkStatReads, runStats._numZkMetadataReads);
+  }
 
-      TableType tableType = TableNameBuilder.getTableTypeFromTableName(tableName);
-      AbstractTableConfig tableConfig = null;
+  private void validateTable(ZkHelixPropertyStore<ZNRecord> propertyStore, String tableName,
+      TableValidationState tableState, boolean rebuildBrokerResource, ValidationRunStats runStats) {
+    TableType tableType = TableNameBuilder.getTableTypeFromTableName(tableName);
+    AbstractTableConfig tableConfig = null;
+    // The broker resource does not depend on the changes of the table, so it is only checked by the full resyncs
+    if (rebuildBrokerResource) {
       _pinotHelixResourceManager.rebuildBrokerResourceFromHelixTags(tableName);
-      // For each table, fetch the metadata for all its segments
-      if (tableType.equals(TableType.OFFLINE)) {
-        validateOfflineSegmentPush(propertyStore, tableName, segmentMetadataList);
-      } else if (tableType.equals(TableType.REALTIME)) {
-        LOGGER.info("Starting to validate table {}", tableName);
-        List<RealtimeSegmentZKMetadata> realtimeSegmentZKMetadatas = ZKMetadataProvider.getRealtimeSegmentZKMetadataListForTable(propertyStore, tableName);
-        boolean countHLCSegments = true;  // false if this table has ONLY LLC segments (i.e. fully migrated)
-        KafkaStreamMetadata streamMetadata = null;
-        try {
-          tableConfig = _pinotHelixResourceManager.getRealtimeTableConfig(tableName);
-          streamMetadata = new KafkaStreamMetadata(tableConfig.getIndexingConfig().getStreamConfigs());
-          if (streamMetadata.hasSimpleKafkaConsumerType() && !streamMetadata.hasHighLevelKafkaConsumerType()) {
-            countHLCSegments = false;
-          }
-          for (RealtimeSegmentZKMetadata realtimeSegmentZKMetadata : realtimeSegmentZKMetadatas) {
-            SegmentMetadata segmentMetadata = new SegmentMetadataImpl(realtimeSegmentZKMetadata);
-            segmentMetadataList.add(segmentMetadata);
-          }
-          // Update the gauge to contain the total document count in the segments
-          _validationMetrics.updateTotalDocumentsGauge(tableName, computeRealtimeTotalDocumentInSegments(segmentMetadataList,
-              countHLCSegments));
-          if (streamMetadata.hasSimpleKafkaConsumerType()) {
-            validateLLCSegments(tableName, tableConfig);
-          }
-        } catch (Exception e) {
-          if (tableConfig == null) {
-            LOGGER.warn("Cannot get realtime tableconfig for {}", tableName);
-          } else if (streamMetadata == null) {
-            LOGGER.warn("Cannot get streamconfig for {}", tableName);
-          } else {
-            LOGGER.error("Exception while validating table {}", tableName, e);
-          }
+    }
+    if (tableType.equals(TableType.OFFLINE)) {
+      updateSegmentInfos(propertyStore, tableName, tableType, tableState, runStats);
+      validateOfflineSegmentPush(tableName, tableState.getSegmentInfos().values());
+    } else if (tableType.equals(TableType.REALTIME)) {
+      LOGGER.info("Starting to validate table {}", tableName);
+      boolean countHLCSegments = true;  // false if this table has ONLY LLC segments (i.e. fully migrated)
+      KafkaStreamMetadata streamMetadata = null;
+      try {
+        tableConfig = _pinotHelixResourceManager.getRealtimeTableConfig(tableName);
+        streamMetadata = new KafkaStreamMetadata(tableConfig.getIndexingConfig().getStreamConfigs());
+        if (streamMetadata.hasSimpleKafkaConsumerType() && !streamMetadata.hasHighLevelKafkaConsumerType()) {
+          countHLCSegments = false;
+        }
+        updateSegmentInfos(propertyStore, tableName, tableType, tableState, runStats);
+        // Update the gauge to contain the total document count in the segments
+        _validationMetrics.updateTotalDocumentsGauge(tableName,
+            computeRealtimeTotalDocuments(tableState.getSegmentInfos().values(), countHLCSegments));
+        tableState.setLLCTable(streamMetadata.hasSimpleKafkaConsumerType());
+        if (streamMetadata.hasSimpleKafkaConsumerType()) {
+          validateLLCSegments(tableName, tableConfig);
+        }
+      } catch (Exception e) {
+        if (tableConfig == null) {
+          LOGGER.warn("Cannot get realtime tableconfig for {}", tableName);
+        } else if (streamMetadata == null) {
+          LOGGER.warn("Cannot get streamconfig for {}", tableName);
+        } else {
+          LOGGER.error("Exception while validating table {}", tableName, e);
         }
-      } else {
-        LOGGER.warn("Ignoring table type {} for table {}", tableType, tableName);
       }
+    } else {
+      LOGGER.warn("Ignoring table type {} for table {}", tableType, tableName);
+    }
+  }
+
+  /**
+   * Validates the LLC segments of the given unchanged realtime table, which does not depend on its segment ZK metadata.
+   */
+  private void validateLLCTable(String realtimeTableName) throws Exception {
+    AbstractTableConfig tableConfig = _pinotHelixResourceManager.getRealtimeTableConfig(realtimeTableName);
+    if (tableConfig == null) {
+      LOGGER.warn("Cannot get realtime tableconfig for {}", realtimeTableName);
+      return;
     }
-    LOGGER.info("Validation completed");
+    validateLLCSegments(realtimeTableName, tableConfig);
+  }
+
+  /**
+   * Updates the segment infos of the given table from its segment ZK metadata. Only the stats of the segment ZK
+   * metadata are read, along with the segment ZK metadata added or updated since the previous update.
+   */
+  private void updateSegmentInfos(ZkHelixPropertyStore<ZNRecord> propertyStore, String tableName, TableType tableType,
+      TableValidationState tableState, ValidationRunStats runStats) {
+    List<String> segmentNames =
+        propertyStore.getChildNames(ZKMetadataProvider.constructPropertyStorePathForResource(tableName),
+            AccessOption.PERSISTENT);
+    if (segmentNames == null) {
+      segmentNames = Collections.emptyList();
+    }
+    int numSegments = segmentNames.size();
+    List<String> segmentPaths = new ArrayList<>(numSegments);
+    for (String segmentName : segmentNames) {
+      segmentPaths.add(ZKMetadataProvider.constructPropertyStorePathForSegment(tableName, segmentName));
+    }
+    Stat[] stats = propertyStore.getStats(segmentPaths, AccessOption.PERSISTENT);
+    runStats._numZkStatReads += numSegments;
+
+    // Keep the segment infos in the order of the segment ZK metadata, with placeholders for the ones to read
+    Map<String, SegmentInfo> previousSegmentInfos = tableState.getSegmentInfos();
+    Map<String, SegmentInfo> segmentInfos = new LinkedHashMap<>();
+    List<String> segmentNamesToRead = new ArrayList<>();
+    List<String> segmentPathsToRead = new ArrayList<>();
+    for (int i = 0; i < numSegments; i++) {
+      Stat stat = stats[i];
+      if (stat == null) {
+        // Deleted since listed
+        continue;
+      }
+      String segmentName = segmentNames.get(i);
+      SegmentInfo segmentInfo = previousSegmentInfos.get(segmentName);
+      if (segmentInfo == null || segmentInfo.getZkVersion() != stat.getVersion()) {
+        segmentNamesToRead.add(segmentName);
+        segmentPathsToRead.add(segmentPaths.get(i));
+        segmentInfo = null;
+      }
+      segmentInfos.put(segmentName, segmentInfo);
+    }
+
+    int numSegmentsToRead = segmentPathsToRead.size();
+    if (numSegmentsToRead > 0) {
+      List<Stat> readStats = new ArrayList<>(numSegmentsToRead);
+      List<ZNRecord> znRecords = propertyStore.get(segmentPathsToRead, readStats, AccessOption.PERSISTENT);
+      runStats._numZkMetadataReads += numSegmentsToRead;
+      for (int i = 0; i < numSegmentsToRead; i++) {
+        String segmentName = segmentNamesToRead.get(i);
+        ZNRecord znRecord = znRecords.get(i);
+        if (znRecord == null) {
+          // Deleted since listed
+          segmentInfos.remove(segmentName);
+          continue;
+        }
+        SegmentMetadata segmentMetadata;
+        if (tableType == TableType.OFFLINE) {
+          segmentMetadata = new SegmentMetadataImpl(new OfflineSegmentZKMetadata(znRecord));
+        } else {
+          segmentMetadata = new SegmentMetadataImpl(new RealtimeSegmentZKMetadata(znRecord));
+        }
+        segmentInfos.put(segmentName, new SegmentInfo(readStats.get(i).getVersion(), segmentMetadata));
+      }
+    }
+    tableState.setSegmentInfos(segmentInfos);
   }
 
   // For LLC segments, validate that there is at least one segment in CONSUMING state for every partition.
-  void validateLLCSegments(final String realtimeTableName, AbstractTableConfig tableConfig) {
+  // Returns the number of partitions that do not have any segment in CONSUMING state.
+  int validateLLCSegments(final String realtimeTableName, AbstractTableConfig tableConfig) {
     LOGGER.info("Validating LLC Segments for {}", realtimeTableName);
     Map<String, String> streamConfigs = tableConfig.getIndexingConfig().getStreamConfigs();
     ZNRecord partitionAssignment = _llcRealtimeSegmentManager.getKafkaPartitionAssignment(realtimeTableName);
     if (partitionAssignment == null) {
       LOGGER.warn("No partition assignment found for table {}", realtimeTableName);
-      return;
+      return 0;
     }
     Map<String, List<String>> partitionToHostsMap = partitionAssignment.getListFields();
     // Keep a set of kafka partitions, and remove the partition when we find a segment in CONSUMING state in
@@ -207,7 +358,7 @@ public class ValidationManager {
     if (!idealState.isEnabled()) {
       // No validation to be done.
       LOGGER.info("Skipping validation for {} since it is disabled", realtimeTableName);
-      return;
+      return 0;
     }
     // Walk through all segments in the idealState, looking for one instance that is in CONSUMING state. If we find one
     // remove the kafka partition that the segment belongs to, from the kafka partition set.
@@ -253,33 +404,27 @@ public class ValidationManager {
     // Make this call after other validations (so that we verify that we are consistent against the existing partition
     // assignment). This call may end up changing the kafka partition assignment for the table.
     _llcRealtimeSegmentManager.updateKafkaPartitionsIfNecessary(realtimeTableName, tableConfig);
+    return llcSegments.isEmpty() ? 0 : nonConsumingKafkaPartitions.size();
   }
 
   // For offline segment pushes, validate that there are no missing segments, and update metrics
-  private void validateOfflineSegmentPush(ZkHelixPropertyStore<ZNRecord> propertyStore, String tableName,
-      List<SegmentMetadata> segmentMetadataList) {
-    List<OfflineSegmentZKMetadata> offlineSegmentZKMetadatas = ZKMetadataProvider
-        .getOfflineSegmentZKMetadataListForTable(propertyStore, tableName);
-    for (OfflineSegmentZKMetadata offlineSegmentZKMetadata : offlineSegmentZKMetadatas) {
-      SegmentMetadata segmentMetadata = new SegmentMetadataImpl(offlineSegmentZKMetadata);
-      segmentMetadataList.add(segmentMetadata);
-    }
-
+  private void validateOfflineSegmentPush(String tableName, Collection<SegmentInfo> segmentInfos) {
     // Calculate missing segments only for offline tables
     int missingSegmentCount = 0;
 
     // Compute the missing segments if there are at least two
-    if (2 < segmentMetadataList.size()) {
+    if (2 < segmentInfos.size()) {
       List<Interval> segmentIntervals = new ArrayList<Interval>();
-      for (SegmentMetadata segmentMetadata : segmentMetadataList) {
-        Interval timeInterval = segmentMetadata.getTimeInterval();
+      for (SegmentInfo segmentInfo : segmentInfos) {
+        Interval timeInterval = segmentInfo.getTimeInterval();
         if (timeInterval != null && TimeUtils.timeValueInValidRange(timeInterval.getStartMillis()) && TimeUtils
                 .timeValueInValidRange(timeInterval.getEndMillis())) {
           segmentIntervals.add(timeInterval);
         }
       }
 
-      List<Interval> missingIntervals = computeMissingIntervals(segmentIntervals, segmentMetadataList.get(0).getTimeGranularity());
+      List<Interval> missingIntervals =
+          computeMissingIntervals(segmentIntervals, segmentInfos.iterator().next().getTimeGranularity());
       missingSegmentCount = missingIntervals.size();
 
       for (Interval missingInterval : missingIntervals) {
@@ -294,16 +439,14 @@ public class ValidationManager {
     long maxSegmentEndTime = Long.MIN_VALUE;
     long maxSegmentPushTime = Long.MIN_VALUE;
 
-    for (SegmentMetadata segmentMetadata : segmentMetadataList) {
-      Interval segmentInterval = segmentMetadata.getTimeInterval();
+    for (SegmentInfo segmentInfo : segmentInfos) {
+      Interval segmentInterval = segmentInfo.getTimeInterval();
 
       if (segmentInterval != null && maxSegmentEndTime < segmentInterval.getEndMillis()) {
         maxSegmentEndTime = segmentInterval.getEndMillis();
       }
 
-      long segmentPushTime = segmentMetadata.getPushTime();
-      long segmentRefreshTime = segmentMetadata.getRefreshTime();
-      long segmentUpdateTime = Math.max(segmentPushTime, segmentRefreshTime);
+      long segmentUpdateTime = segmentInfo.getUpdateTimeMillis();
 
       if (maxSegmentPushTime < segmentUpdateTime) {
         maxSegmentPushTime = segmentUpdateTime;
@@ -314,28 +457,36 @@ public class ValidationManager {
     _validationMetrics.updateOfflineSegmentDelayGauge(tableName, maxSegmentEndTime);
     _validationMetrics.updateLastPushTimeGauge(tableName, maxSegmentPushTime);
     // Update the gauge to contain the total document count in the segments
-    _validationMetrics.updateTotalDocumentsGauge(tableName, computeOfflineTotalDocumentInSegments(segmentMetadataList));
+    _validationMetrics.updateTotalDocumentsGauge(tableName, computeOfflineTotalDocuments(segmentInfos));
     // Update the gauge to contain the total number of segments for this table
-    _validationMetrics.updateSegmentCountGauge(tableName, segmentMetadataList.size());
+    _validationMetrics.updateSegmentCountGauge(tableName, segmentInfos.size());
   }
 
   public static long computeOfflineTotalDocumentInSegments(List<SegmentMetadata> segmentMetadataList)  {
+    return computeOfflineTotalDocuments(toSegmentInfos(segmentMetadataList));
+  }
+
+  private static long computeOfflineTotalDocuments(Collection<SegmentInfo> segmentInfos) {
     long totalDocumentCount = 0;
 
-    for (SegmentMetadata segmentMetadata : segmentMetadataList) {
-      totalDocumentCount += segmentMetadata.getTotalRawDocs();
+    for (SegmentInfo segmentInfo : segmentInfos) {
+      totalDocumentCount += segmentInfo.getTotalRawDocs();
     }
     return totalDocumentCount;
   }
 
   public static long computeRealtimeTotalDocumentInSegments(List<SegmentMetadata> segmentMetadataList,
       boolean countHLCSegments)  {
+    return computeRealtimeTotalDocuments(toSegmentInfos(segmentMetadataList), countHLCSegments);
+  }
+
+  private static long computeRealtimeTotalDocuments(Collection<SegmentInfo> segmentInfos, boolean countHLCSegments) {
     long totalDocumentCount = 0;
 
     String groupId = "";
 
-    for (SegmentMetadata segmentMetadata : segmentMetadataList) {
-      String segmentName = segmentMetadata.getName();
+    for (SegmentInfo segmentInfo : segmentInfos) {
+      String segmentName = segmentInfo.getSegmentName();
       if (SegmentName.isHighLevelConsumerSegmentName(segmentName)) {
         if (countHLCSegments) {
           HLCSegmentName hlcSegmentName = new HLCSegmentName(segmentName);
@@ -345,20 +496,28 @@ public class ValidationManager {
             groupId = segmentGroupIdName;
           }
           // Discard all segments with different groupids as they are replicas
-          if (groupId.equals(segmentGroupIdName) && segmentMetadata.getTotalRawDocs() >= 0) {
-            totalDocumentCount += segmentMetadata.getTotalRawDocs();
+          if (groupId.equals(segmentGroupIdName) && segmentInfo.getTotalRawDocs() >= 0) {
+            totalDocumentCount += segmentInfo.getTotalRawDocs();
           }
         }
       } else {
         // Low level segments
         if (!countHLCSegments) {
-          totalDocumentCount += segmentMetadata.getTotalRawDocs();
+          totalDocumentCount += segmentInfo.getTotalRawDocs();
         }
       }
     }
     return totalDocumentCount;
   }
 
+  private static List<SegmentInfo> toSegmentInfos(List<SegmentMetadata> segmentMetadataList) {
+    List<SegmentInfo> segmentInfos = new ArrayList<>(segmentMetadataList.size());
+    for (SegmentMetadata segmentMetadata : segmentMetadataList) {
+      segmentInfos.add(new SegmentInfo(-1, segmentMetadata));
+    }
+    return segmentInfos;
+  }
+
   /**
    * Computes a list of missing intervals, given a list of existing intervals and the expected frequency of the
    * intervals.
@@ -472,4 +631,13 @@ public class ValidationManager {
 
     return missingSegments;
   }
+
+  /**
+   * Counters of a validation run.
+   */
+  private static class ValidationRunStats {
+    private int _numValidatedTables = 0;
+    private long _numZkStatReads = 0;
+    private long _numZkMetadataReads = 0;
+  }
 }
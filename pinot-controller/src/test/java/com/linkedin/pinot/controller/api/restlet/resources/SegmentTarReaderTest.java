@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.controller.api.restlet.resources;
+
+import com.linkedin.pinot.common.utils.TarGzCompressionUtils;
+import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
+import com.linkedin.pinot.core.segment.store.SegmentDirectoryPaths;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+
+public class SegmentTarReaderTest {
+  private static final File TEST_DIR = new File(FileUtils.getTempDirectory(), "SegmentTarReaderTest");
+  private static final String SEGMENT_NAME = "testTable_0";
+
+  private File _segmentDir;
+  private File _metadataDir;
+  private File _tarCopy;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    FileUtils.deleteQuietly(TEST_DIR);
+    _segmentDir = new File(TEST_DIR, SEGMENT_NAME);
+    _metadataDir = new File(TEST_DIR, "metadata");
+    FileUtils.forceMkdir(_metadataDir);
+    _tarCopy = new File(TEST_DIR, "copy.tar.gz");
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    FileUtils.deleteQuietly(TEST_DIR);
+  }
+
+  @Test
+  public void testReadSegmentTar() throws Exception {
+    File tarFile = createSegmentTar(true);
+
+    long segmentSize = readSegmentTar(FileUtils.readFileToByteArray(tarFile));
+    Assert.assertEquals(segmentSize, FileUtils.sizeOfDirectory(_segmentDir));
+    Assert.assertTrue(FileUtils.contentEquals(_tarCopy, tarFile));
+
+    // Only the metadata files are extracted
+    File v3Dir = new File(_segmentDir, SegmentDirectoryPaths.V3_SUBDIRECTORY_NAME);
+    File extractedV3Dir = new File(new File(_metadataDir, SEGMENT_NAME), SegmentDirectoryPaths.V3_SUBDIRECTORY_NAME);
+    String[] extractedFiles = extractedV3Dir.list();
+    Arrays.sort(extractedFiles);
+    Assert.assertEquals(extractedFiles,
+        new String[]{V1Constants.SEGMENT_CREATION_META, V1Constants.MetadataKeys.METADATA_FILE_NAME});
+    for (String extractedFile : extractedFiles) {
+      Assert.assertTrue(FileUtils.contentEquals(new File(extractedV3Dir, extractedFile), new File(v3Dir, extractedFile)));
+    }
+
+    // Without copy
+    InputStream inputStream = new FileInputStream(tarFile);
+    try {
+      Assert.assertEquals(SegmentTarReader.readSegmentTar(inputStream, null, _metadataDir), segmentSize);
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  @Test
+  public void testCorruptedSegmentTar() throws Exception {
+    byte[] tarBytes = FileUtils.readFileToByteArray(createSegmentTar(true));
+    tarBytes[tarBytes.length / 2] ^= 0x55;
+    assertInvalid(tarBytes);
+  }
+
+  @Test
+  public void testTruncatedSegmentTar() throws Exception {
+    byte[] tarBytes = FileUtils.readFileToByteArray(createSegmentTar(true));
+    assertInvalid(Arrays.copyOf(tarBytes, tarBytes.length - 16));
+  }
+
+  @Test
+  public void testNotGzip() throws Exception {
+    assertInvalid("not a segment".getBytes("UTF-8"));
+  }
+
+  @Test
+  public void testMissingMetadata() throws Exception {
+    assertInvalid(FileUtils.readFileToByteArray(createSegmentTar(false)));
+  }
+
+  private long readSegmentTar(byte[] tarBytes) throws IOException {
+    return SegmentTarReader.readSegmentTar(new ByteArrayInputStream(tarBytes), _tarCopy, _metadataDir);
+  }
+
+  private void assertInvalid(byte[] tarBytes) {
+    try {
+      readSegmentTar(tarBytes);
+      Assert.fail("Reading an invalid segment tar should throw");
+    } catch (IOException e) {
+      // Expected
+    }
+    Assert.assertFalse(_tarCopy.exists());
+  }
+
+  private File createSegmentTar(boolean withMetadata) throws Exception {
+    File v3Dir = new File(_segmentDir, SegmentDirectoryPaths.V3_SUBDIRECTORY_NAME);
+    FileUtils.forceMkdir(v3Dir);
+    if (withMetadata) {
+      FileUtils.writeStringToFile(new File(v3Dir, V1Constants.MetadataKeys.METADATA_FILE_NAME),
+          "segment.name = " + SEGMENT_NAME + "\nsegment.table.name = testTable\n");
+      FileUtils.writeStringToFile(new File(v3Dir, V1Constants.SEGMENT_CREATION_META), "creation meta");
+    }
+    byte[] indexBytes = new byte[1024 * 1024];
+    new Random(0).nextBytes(indexBytes);
+    FileUtils.writeByteArrayToFile(new File(v3Dir, "columns.psf"), indexBytes);
+    FileUtils.writeStringToFile(new File(v3Dir, "index_map"), "column.startOffset = 0\n");
+    return new File(TarGzCompressionUtils.createTarGzOfDirectory(_segmentDir.getPath()));
+  }
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.controller.helix.core;
+
+import com.linkedin.pinot.common.metrics.ControllerMetrics;
+import com.linkedin.pinot.common.utils.ZkStarter;
+import com.linkedin.pinot.controller.helix.core.util.HelixSetupUtils;
+import com.linkedin.pinot.controller.helix.starter.HelixConfig;
+import com.yammer.metrics.core.MetricsRegistry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.helix.HelixAdmin;
+import org.apache.helix.HelixManager;
+import org.apache.helix.model.IdealState;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+
+public class IdealStateBatchUpdaterTest {
+  private static final String ZK_SERVER = ZkStarter.DEFAULT_ZK_STR;
+  private static final String HELIX_CLUSTER_NAME = "IdealStateBatchUpdaterTest";
+  private static final String TABLE_NAME = "testTable_OFFLINE";
+  private static final String[] INSTANCES = {"Server_localhost_1", "Server_localhost_2"};
+  private static final int NUM_SEGMENTS = 20;
+
+  private ZkStarter.ZookeeperInstance _zkServer;
+  private HelixManager _helixManager;
+  private HelixAdmin _helixAdmin;
+  private IdealStateBatchUpdater _idealStateBatchUpdater;
+  private ExecutorService _executorService;
+
+  @BeforeClass
+  public void setUp() {
+    _zkServer = ZkStarter.startLocalZkServer();
+    _helixManager = HelixSetupUtils.setup(HELIX_CLUSTER_NAME, HelixConfig.getAbsoluteZkPathForHelix(ZK_SERVER),
+        "localhost_helixController", /*isUpdateStateModel=*/false);
+    _helixAdmin = _helixManager.getClusterManagmentTool();
+
+    IdealState idealState = new IdealState(TABLE_NAME);
+    idealState.setStateModelDefRef("SegmentOnlineOfflineStateModel");
+    idealState.setRebalanceMode(IdealState.RebalanceMode.CUSTOMIZED);
+    idealState.setReplicas("1");
+    idealState.setNumPartitions(0);
+    _helixAdmin.addResource(HELIX_CLUSTER_NAME, TABLE_NAME, idealState);
+
+    _idealStateBatchUpdater =
+        new IdealStateBatchUpdater(_helixManager, 200L, new ControllerMetrics(new MetricsRegistry()));
+    _executorService = Executors.newFixedThreadPool(NUM_SEGMENTS);
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _executorService.shutdownNow();
+    _helixManager.disconnect();
+    ZkStarter.stopLocalZkServer(_zkServer);
+  }
+
+  @Test
+  public void testConcurrentUpdates()
+      throws Exception {
+    int startVersion = getIdealState().getRecord().getVersion();
+
+    // One of the segments fails to be assigned
+    final String failingSegmentName = "segment_" + NUM_SEGMENTS;
+    List<Future<?>> futures = new ArrayList<>();
+    final CountDownLatch startLatch = new CountDownLatch(1);
+    for (int i = 0; i <= NUM_SEGMENTS; i++) {
+      final String segmentName = "segment_" + i;
+      futures.add(_executorService.submit(new Callable<Void>() {
+        @Override
+        public Void call()
+            throws Exception {
+          startLatch.await();
+          _idealStateBatchUpdater.addSegment(TABLE_NAME, segmentName, new IdealStateBatchUpdater.SegmentAssigner() {
+            @Override
+            public List<String> getInstances(IdealState idealState) {
+              if (segmentName.equals(failingSegmentName)) {
+                throw new IllegalStateException();
+              }
+              return Collections.singletonList(getLeastLoadedInstance(idealState));
+            }
+          });
+          return null;
+        }
+      }));
+    }
+    startLatch.countDown();
+    for (int i = 0; i <= NUM_SEGMENTS; i++) {
+      if (i < NUM_SEGMENTS) {
+        futures.get(i).get();
+      } else {
+        try {
+          futures.get(i).get();
+          Assert.fail("Adding a segment that fails to be assigned should throw");
+        } catch (ExecutionException e) {
+          Assert.assertTrue(e.getCause() instanceof RuntimeException);
+        }
+      }
+    }
+
+    // The segments are added in fewer writes than segments, and are balanced as each assignment sees the previous ones
+    IdealState idealState = getIdealState();
+    Assert.assertTrue(idealState.getRecord().getVersion() - startVersion < NUM_SEGMENTS);
+    Assert.assertEquals(idealState.getPartitionSet().size(), NUM_SEGMENTS);
+    Assert.assertEquals(idealState.getNumPartitions(), NUM_SEGMENTS);
+    Assert.assertFalse(idealState.getPartitionSet().contains(failingSegmentName));
+    Assert.assertEquals(getNumSegments(idealState, INSTANCES[0]), NUM_SEGMENTS / 2);
+    Assert.assertEquals(getNumSegments(idealState, INSTANCES[1]), NUM_SEGMENTS / 2);
+
+    // Remove the segments concurrently in two halves
+    futures.clear();
+    for (int i = 0; i < 2; i++) {
+      final List<String> segmentNames = new ArrayList<>();
+      for (int j = i; j < NUM_SEGMENTS; j += 2) {
+        segmentNames.add("segment_" + j);
+      }
+      futures.add(_executorService.submit(new Callable<Void>() {
+        @Override
+        public Void call() {
+          _idealStateBatchUpdater.removeSegments(TABLE_NAME, segmentNames);
+          return null;
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    Assert.assertTrue(getIdealState().getPartitionSet().isEmpty());
+  }
+
+  private IdealState getIdealState() {
+    return _helixAdmin.getResourceIdealState(HELIX_CLUSTER_NAME, TABLE_NAME);
+  }
+
+  private static String getLeastLoadedInstance(IdealState idealState) {
+    String leastLoadedInstance = INSTANCES[0];
+    for (String instance : INSTANCES) {
+      if (getNumSegments(idealState, instance) < getNumSegments(idealState, leastLoadedInstance)) {
+        leastLoadedInstance = instance;
+      }
+    }
+    return leastLoadedInstance;
+  }
+
+  private static int getNumSegments(IdealState idealState, String instance) {
+    int numSegments = 0;
+    for (String segmentName : idealState.getPartitionSet()) {
+      if (idealState.getInstanceSet(segmentName).contains(instance)) {
+        numSegments++;
+      }
+    }
+    return numSegments;
+  }
+}
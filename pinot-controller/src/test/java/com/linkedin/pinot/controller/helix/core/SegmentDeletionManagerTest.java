@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.controller.helix.core;
+
+import com.linkedin.pinot.common.metadata.ZKMetadataProvider;
+import com.linkedin.pinot.common.metrics.ControllerMetrics;
+import com.yammer.metrics.core.MetricsRegistry;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.io.FileUtils;
+import org.apache.helix.HelixAdmin;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.IdealState;
+import org.apache.helix.store.zk.ZkHelixPropertyStore;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import static org.mockito.Mockito.*;
+
+
+public class SegmentDeletionManagerTest {
+  private static final File TEST_DIR = new File(FileUtils.getTempDirectory(), "SegmentDeletionManagerTest");
+  private static final String CLUSTER_NAME = "testCluster";
+  private static final String RAW_TABLE_NAME = "testTable";
+  private static final String TABLE_NAME = "testTable_OFFLINE";
+  private static final long TIMEOUT_MS = 30000L;
+
+  private volatile IdealState _idealState;
+  private final AtomicInteger _numExternalViewFailures = new AtomicInteger();
+  private final List<List<String>> _removedPaths = new CopyOnWriteArrayList<>();
+  private SegmentDeletionManager _segmentDeletionManager;
+
+  @BeforeMethod
+  @SuppressWarnings("unchecked")
+  public void setUp() throws Exception {
+    FileUtils.deleteQuietly(TEST_DIR);
+    FileUtils.forceMkdir(new File(TEST_DIR, RAW_TABLE_NAME));
+    _idealState = new IdealState(TABLE_NAME);
+    _removedPaths.clear();
+    _numExternalViewFailures.set(0);
+
+    HelixAdmin helixAdmin = mock(HelixAdmin.class);
+    when(helixAdmin.getResourceIdealState(CLUSTER_NAME, TABLE_NAME)).thenAnswer(new Answer<IdealState>() {
+      @Override
+      public IdealState answer(InvocationOnMock invocation) {
+        return _idealState;
+      }
+    });
+    when(helixAdmin.getResourceExternalView(CLUSTER_NAME, TABLE_NAME)).thenAnswer(new Answer<ExternalView>() {
+      @Override
+      public ExternalView answer(InvocationOnMock invocation) {
+        if (_numExternalViewFailures.getAndDecrement() > 0) {
+          throw new RuntimeException("Failed to read external view");
+        }
+        return new ExternalView(TABLE_NAME);
+      }
+    });
+
+    ZkHelixPropertyStore<ZNRecord> propertyStore = mock(ZkHelixPropertyStore.class);
+    when(propertyStore.remove(anyListOf(String.class), anyInt())).thenAnswer(new Answer<boolean[]>() {
+      @Override
+      public boolean[] answer(InvocationOnMock invocation) {
+        List<String> paths = new ArrayList<>((List<String>) invocation.getArguments()[0]);
+        _removedPaths.add(paths);
+        boolean[] removed = new boolean[paths.size()];
+        Arrays.fill(removed, true);
+        return removed;
+      }
+    });
+
+    _segmentDeletionManager = new SegmentDeletionManager(TEST_DIR.getPath(), helixAdmin, CLUSTER_NAME, propertyStore,
+        2, new ControllerMetrics(new MetricsRegistry()));
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    _segmentDeletionManager.stop();
+    FileUtils.deleteQuietly(TEST_DIR);
+  }
+
+  @Test
+  public void testDeleteSegments() throws Exception {
+    List<String> segments = Arrays.asList("segment_0", "segment_1", "segment_2", "segment_3");
+    for (String segment : segments) {
+      FileUtils.writeStringToFile(new File(new File(TEST_DIR, RAW_TABLE_NAME), segment), segment);
+    }
+    // Still in the ideal state, so not deleted on the first attempt
+    _idealState.setPartitionState("segment_3", "Server_localhost_0", "ONLINE");
+
+    _segmentDeletionManager.deleteSegments(TABLE_NAME, segments);
+    Assert.assertEquals(_segmentDeletionManager.getNumPendingDeletions(), 4L);
+    waitForPendingDeletions(1L);
+
+    // The ZK metadata of the segments gone from the ideal state are removed in a single batch
+    Assert.assertEquals(_removedPaths.size(), 1);
+    Assert.assertEquals(_removedPaths.get(0), getPropertyStorePaths(segments.subList(0, 3)));
+    for (int i = 0; i < 3; i++) {
+      Assert.assertFalse(new File(new File(TEST_DIR, RAW_TABLE_NAME), segments.get(i)).exists());
+      Assert.assertTrue(new File(TEST_DIR, "Deleted_Segments/" + RAW_TABLE_NAME + "/" + segments.get(i)).exists());
+    }
+    Assert.assertTrue(new File(new File(TEST_DIR, RAW_TABLE_NAME), "segment_3").exists());
+
+    // The remaining segment is deleted by the retry once gone from the ideal state
+    _idealState = new IdealState(TABLE_NAME);
+    waitForPendingDeletions(0L);
+    Assert.assertEquals(_removedPaths.size(), 2);
+    Assert.assertEquals(_removedPaths.get(1), getPropertyStorePaths(segments.subList(3, 4)));
+    Assert.assertTrue(new File(TEST_DIR, "Deleted_Segments/" + RAW_TABLE_NAME + "/segment_3").exists());
+  }
+
+  @Test
+  public void testRetryOnException() throws Exception {
+    List<String> segments = Arrays.asList("segment_0", "segment_1");
+    _numExternalViewFailures.set(1);
+
+    // The whole batch is retried after the failure, instead of being left pending
+    _segmentDeletionManager.deleteSegments(TABLE_NAME, segments);
+    Assert.assertEquals(_segmentDeletionManager.getNumPendingDeletions(), 2L);
+    waitForPendingDeletions(0L);
+    Assert.assertEquals(_removedPaths.size(), 1);
+    Assert.assertEquals(_removedPaths.get(0), getPropertyStorePaths(segments));
+  }
+
+  private void waitForPendingDeletions(long numPendingDeletions) throws InterruptedException {
+    long endTime = System.currentTimeMillis() + TIMEOUT_MS;
+    while (_segmentDeletionManager.getNumPendingDeletions() != numPendingDeletions) {
+      Assert.assertTrue(System.currentTimeMillis() < endTime, "Timed out waiting for segment deletions");
+      Thread.sleep(100L);
+    }
+  }
+
+  private static List<String> getPropertyStorePaths(List<String> segments) {
+    List<String> paths = new ArrayList<>();
+    for (String segment : segments) {
+      paths.add(ZKMetadataProvider.constructPropertyStorePathForSegment(TABLE_NAME, segment));
+    }
+    return paths;
+  }
+}
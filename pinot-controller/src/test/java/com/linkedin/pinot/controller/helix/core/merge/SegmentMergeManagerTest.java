@@ -0,0 +1,341 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.controller.helix.core.merge;
+
+import com.linkedin.pinot.common.config.AbstractTableConfig;
+import com.linkedin.pinot.common.config.TableNameBuilder;
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.MetricFieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.data.TimeFieldSpec;
+import com.linkedin.pinot.common.data.TimeGranularitySpec;
+import com.linkedin.pinot.common.metadata.ZKMetadataProvider;
+import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
+import com.linkedin.pinot.common.utils.TarGzCompressionUtils;
+import com.linkedin.pinot.common.utils.ZkStarter;
+import com.linkedin.pinot.controller.ControllerConf;
+import com.linkedin.pinot.controller.helix.ControllerRequestBuilderUtil;
+import com.linkedin.pinot.controller.helix.core.PinotHelixResourceManager;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.data.readers.FileFormat;
+import com.linkedin.pinot.core.data.readers.PinotSegmentRecordReader;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.commons.io.FileUtils;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.IdealState;
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+
+public class SegmentMergeManagerTest {
+  private static final String ZK_SERVER = ZkStarter.DEFAULT_ZK_STR;
+  private static final String HELIX_CLUSTER_NAME = "SegmentMergeManagerTest";
+  private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "SegmentMergeManagerTest");
+  private static final File DATA_DIR = new File(TEMP_DIR, "controllerData");
+  private static final String AVRO_SCHEMA = "{\"type\":\"record\",\"name\":\"Input\",\"fields\":["
+      + "{\"name\":\"country\",\"type\":\"string\"},"
+      + "{\"name\":\"memberId\",\"type\":\"int\"},"
+      + "{\"name\":\"clicks\",\"type\":\"long\"},"
+      + "{\"name\":\"daysSinceEpoch\",\"type\":\"long\"}]}";
+  private static final int NUM_ROWS_PER_SEGMENT = 100;
+  private static final int NUM_COUNTRIES = 5;
+
+  private ZkStarter.ZookeeperInstance _zookeeperInstance;
+  private PinotHelixResourceManager _pinotHelixResourceManager;
+  private SegmentMergeManager _segmentMergeManager;
+  private Schema _schema;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    FileUtils.deleteQuietly(TEMP_DIR);
+    _zookeeperInstance = ZkStarter.startLocalZkServer();
+    _pinotHelixResourceManager =
+        new PinotHelixResourceManager(ZK_SERVER, HELIX_CLUSTER_NAME, "localhost_helixController", DATA_DIR.getPath(),
+            10000L, true, /*isUpdateStateModel=*/false);
+    _pinotHelixResourceManager.start();
+    ControllerRequestBuilderUtil.addFakeDataInstancesToAutoJoinHelixCluster(HELIX_CLUSTER_NAME, ZK_SERVER, 2, true);
+    ControllerRequestBuilderUtil.addFakeBrokerInstancesToAutoJoinHelixCluster(HELIX_CLUSTER_NAME, ZK_SERVER, 1, true);
+
+    ControllerConf controllerConf = new ControllerConf();
+    controllerConf.setControllerHost("localhost");
+    controllerConf.setControllerPort("9000");
+    controllerConf.setDataDir(DATA_DIR.getPath());
+    _segmentMergeManager = new SegmentMergeManager(_pinotHelixResourceManager, controllerConf);
+
+    _schema = new Schema();
+    _schema.addField(new DimensionFieldSpec("country", FieldSpec.DataType.STRING, true));
+    _schema.addField(new DimensionFieldSpec("memberId", FieldSpec.DataType.INT, true));
+    _schema.addField(new MetricFieldSpec("clicks", FieldSpec.DataType.LONG));
+    _schema.addField(
+        new TimeFieldSpec(new TimeGranularitySpec(FieldSpec.DataType.LONG, TimeUnit.DAYS, "daysSinceEpoch")));
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _pinotHelixResourceManager.stop();
+    ZkStarter.stopLocalZkServer(_zookeeperInstance);
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+
+  @Test
+  public void testSelectSegmentsToMerge() {
+    SegmentMergeConfig mergeConfig = new SegmentMergeConfig(250, 3, TimeUnit.DAYS, false);
+    List<OfflineSegmentZKMetadata> segmentMetadataList = new ArrayList<>();
+    // Day 1: 4 segments of 60 documents split by the maximum number of segments, 2 segments of 190 and 10 documents
+    // split by the maximum number of documents, and 1 segment of 250 documents which is too large
+    segmentMetadataList.add(createSegmentZKMetadata("day1_3", 1, 1, 60));
+    segmentMetadataList.add(createSegmentZKMetadata("day1_1", 1, 1, 60));
+    segmentMetadataList.add(createSegmentZKMetadata("day1_large", 1, 1, 250));
+    segmentMetadataList.add(createSegmentZKMetadata("day1_2", 1, 1, 60));
+    segmentMetadataList.add(createSegmentZKMetadata("day1_4", 1, 1, 60));
+    segmentMetadataList.add(createSegmentZKMetadata("day1_6", 1, 1, 10));
+    segmentMetadataList.add(createSegmentZKMetadata("day1_5", 1, 1, 190));
+    // Day 2: 2 segments, one of them not online
+    segmentMetadataList.add(createSegmentZKMetadata("day2_1", 2, 2, 10));
+    segmentMetadataList.add(createSegmentZKMetadata("day2_offline", 2, 2, 10));
+    // Day 3: 2 segments in hours, and 1 segment spanning 2 days
+    segmentMetadataList.add(createSegmentZKMetadata("day3_1", 72, 72, TimeUnit.HOURS, 10));
+    segmentMetadataList.add(createSegmentZKMetadata("day3_2", 73, 95, TimeUnit.HOURS, 10));
+    segmentMetadataList.add(createSegmentZKMetadata("day3_4", 3, 4, 10));
+
+    Set<String> onlineSegments = new HashSet<>();
+    for (OfflineSegmentZKMetadata segmentMetadata : segmentMetadataList) {
+      onlineSegments.add(segmentMetadata.getSegmentName());
+    }
+    onlineSegments.remove("day2_offline");
+
+    List<List<OfflineSegmentZKMetadata>> groups =
+        SegmentMergeSelector.selectSegmentsToMerge(segmentMetadataList, onlineSegments, mergeConfig);
+    Assert.assertEquals(groups.size(), 3);
+    assertSegmentNames(groups.get(0), "day1_1", "day1_2", "day1_3");
+    assertSegmentNames(groups.get(1), "day1_4", "day1_5");
+    assertSegmentNames(groups.get(2), "day3_1", "day3_2");
+  }
+
+  @Test
+  public void testMergeSegments() throws Exception {
+    String tableName = "mergeTable";
+    String offlineTableName = TableNameBuilder.OFFLINE_TABLE_NAME_BUILDER.forTable(tableName);
+    addTable(tableName, false);
+    // 3 segments on day 17000, 1 segment on day 17001 which is not merged
+    List<String> segmentNames = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      segmentNames.add(uploadSegment(tableName, i, 17000L));
+    }
+    String otherDaySegmentName = uploadSegment(tableName, 3, 17001L);
+    long expectedClicks = sumClicks(tableName, segmentNames);
+
+    Assert.assertEquals(_segmentMergeManager.mergeTable(offlineTableName), 1);
+
+    OfflineSegmentZKMetadata mergedSegmentMetadata = getMergedSegmentMetadata(tableName, otherDaySegmentName);
+    Assert.assertEquals(mergedSegmentMetadata.getTotalRawDocs(), 3 * NUM_ROWS_PER_SEGMENT);
+    Assert.assertEquals(mergedSegmentMetadata.getStartTime(), 17000L);
+    Assert.assertEquals(mergedSegmentMetadata.getEndTime(), 17000L);
+    Assert.assertEquals(mergedSegmentMetadata.getTimeUnit(), TimeUnit.DAYS);
+    Assert.assertTrue(mergedSegmentMetadata.getDownloadUrl()
+        .endsWith("/segments/" + tableName + "/" + mergedSegmentMetadata.getSegmentName()));
+
+    // The merged segment is ONLINE in the external view before the segments it replaces leave the ideal state
+    String mergedSegmentName = mergedSegmentMetadata.getSegmentName();
+    ExternalView externalView = _pinotHelixResourceManager.getHelixAdmin()
+        .getResourceExternalView(HELIX_CLUSTER_NAME, offlineTableName);
+    Assert.assertTrue(externalView.getStateMap(mergedSegmentName).containsValue("ONLINE"));
+    Set<String> idealStateSegments = _pinotHelixResourceManager.getHelixAdmin()
+        .getResourceIdealState(HELIX_CLUSTER_NAME, offlineTableName).getPartitionSet();
+    Assert.assertEquals(idealStateSegments, new HashSet<>(Arrays.asList(mergedSegmentName, otherDaySegmentName)));
+
+    File mergedIndexDir = untarSegment(tableName, mergedSegmentMetadata.getSegmentName());
+    SegmentMetadataImpl segmentMetadata = new SegmentMetadataImpl(mergedIndexDir);
+    Assert.assertTrue(segmentMetadata.getColumnMetadataFor("country").isSorted());
+    Assert.assertEquals(sumClicks(mergedIndexDir), expectedClicks);
+
+    // The merged segment has 300 documents, which is less than the maximum, but there is no other segment that day
+    Assert.assertEquals(_segmentMergeManager.mergeTable(offlineTableName), 0);
+  }
+
+  @Test
+  public void testMergeSegmentsWithRollup() throws Exception {
+    String tableName = "rollupTable";
+    String offlineTableName = TableNameBuilder.OFFLINE_TABLE_NAME_BUILDER.forTable(tableName);
+    addTable(tableName, true);
+    List<String> segmentNames = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      segmentNames.add(uploadSegment(tableName, i, 17000L));
+    }
+    long expectedClicks = sumClicks(tableName, segmentNames);
+
+    Assert.assertEquals(_segmentMergeManager.mergeTable(offlineTableName), 1);
+
+    // The rows are rolled up on the country and member id dimensions
+    OfflineSegmentZKMetadata mergedSegmentMetadata = getMergedSegmentMetadata(tableName, null);
+    File mergedIndexDir = untarSegment(tableName, mergedSegmentMetadata.getSegmentName());
+    PinotSegmentRecordReader recordReader = new PinotSegmentRecordReader(mergedIndexDir);
+    recordReader.init();
+    Set<List<Object>> keys = new HashSet<>();
+    while (recordReader.hasNext()) {
+      GenericRow row = recordReader.next();
+      Assert.assertTrue(keys.add(Arrays.asList(row.getValue("country"), row.getValue("memberId"))));
+    }
+    recordReader.close();
+    Assert.assertEquals(mergedSegmentMetadata.getTotalRawDocs(), keys.size());
+    Assert.assertTrue(keys.size() < 2 * NUM_ROWS_PER_SEGMENT);
+    Assert.assertEquals(sumClicks(mergedIndexDir), expectedClicks);
+  }
+
+  private void addTable(String tableName, boolean rollup) throws Exception {
+    JSONObject tableJson =
+        ControllerRequestBuilderUtil.buildCreateOfflineTableJSON(tableName, null, null, "daysSinceEpoch", "DAYS",
+            "DAYS", "7000", 1, "BalanceNumSegmentAssignmentStrategy", Collections.<String>emptyList());
+    JSONObject customConfigs = new JSONObject();
+    customConfigs.put(SegmentMergeConfig.ENABLED_KEY, "true");
+    customConfigs.put(SegmentMergeConfig.MAX_NUM_DOCS_PER_SEGMENT_KEY, "1000");
+    customConfigs.put(SegmentMergeConfig.ROLLUP_KEY, Boolean.toString(rollup));
+    tableJson.getJSONObject("metadata").put("customConfigs", customConfigs);
+    _pinotHelixResourceManager.addTable(AbstractTableConfig.init(tableJson.toString()));
+  }
+
+  /**
+   * Builds a segment sorted on the country column and adds it to the table the way the upload does.
+   */
+  private String uploadSegment(String tableName, int segmentId, long daysSinceEpoch) throws Exception {
+    File segmentTempDir = new File(TEMP_DIR, tableName + "_" + segmentId);
+    File avroFile = new File(segmentTempDir, "input.avro");
+    FileUtils.forceMkdir(segmentTempDir);
+    org.apache.avro.Schema avroSchema = new org.apache.avro.Schema.Parser().parse(AVRO_SCHEMA);
+    DataFileWriter<GenericData.Record> avroWriter =
+        new DataFileWriter<>(new GenericDatumWriter<GenericData.Record>(avroSchema));
+    avroWriter.create(avroSchema, avroFile);
+    Random random = new Random(segmentId);
+    for (int i = 0; i < NUM_ROWS_PER_SEGMENT; i++) {
+      GenericData.Record record = new GenericData.Record(avroSchema);
+      record.put("country", "country" + random.nextInt(NUM_COUNTRIES));
+      record.put("memberId", random.nextInt(10));
+      record.put("clicks", (long) random.nextInt(100));
+      record.put("daysSinceEpoch", daysSinceEpoch);
+      avroWriter.append(record);
+    }
+    avroWriter.close();
+
+    SegmentGeneratorConfig config = new SegmentGeneratorConfig(_schema);
+    config.setInputFilePath(avroFile.getPath());
+    config.setFormat(FileFormat.AVRO);
+    config.setOutDir(new File(segmentTempDir, "output").getPath());
+    config.setTableName(tableName);
+    config.setSegmentName(tableName + "_" + segmentId);
+    config.setSortedColumns(Collections.singletonList("country"));
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(config);
+    driver.build();
+
+    File indexDir = driver.getOutputDirectory();
+    File tarFile = new File(new File(DATA_DIR, tableName), driver.getSegmentName());
+    FileUtils.moveFile(new File(TarGzCompressionUtils.createTarGzOfDirectory(indexDir.getPath())), tarFile);
+    String downloadUrl =
+        ControllerConf.constructDownloadUrl(tableName, driver.getSegmentName(), "http://localhost:9000");
+    Assert.assertTrue(
+        _pinotHelixResourceManager.addSegment(new SegmentMetadataImpl(indexDir), downloadUrl).isSuccessful());
+    return driver.getSegmentName();
+  }
+
+  /**
+   * Asserts that the ideal state of the table contains the merged segment and the given unmerged segment if any, and
+   * returns the meta-data of the merged segment.
+   */
+  private OfflineSegmentZKMetadata getMergedSegmentMetadata(String tableName, String unmergedSegmentName) {
+    String offlineTableName = TableNameBuilder.OFFLINE_TABLE_NAME_BUILDER.forTable(tableName);
+    IdealState idealState = _pinotHelixResourceManager.getHelixAdmin()
+        .getResourceIdealState(HELIX_CLUSTER_NAME, offlineTableName);
+    Set<String> segmentNames = new HashSet<>(idealState.getPartitionSet());
+    Assert.assertEquals(idealState.getNumPartitions(), segmentNames.size());
+    if (unmergedSegmentName != null) {
+      Assert.assertTrue(segmentNames.remove(unmergedSegmentName));
+    }
+    Assert.assertEquals(segmentNames.size(), 1);
+    String mergedSegmentName = segmentNames.iterator().next();
+    Assert.assertTrue(mergedSegmentName.startsWith(tableName + "_17000_17000_merged_"));
+    Assert.assertEquals(idealState.getInstanceStateMap(mergedSegmentName).values(),
+        Collections.singletonList("ONLINE"));
+    return ZKMetadataProvider.getOfflineSegmentZKMetadata(_pinotHelixResourceManager.getPropertyStore(), tableName,
+        mergedSegmentName);
+  }
+
+  private File untarSegment(String tableName, String segmentName) throws Exception {
+    File untarredDir = new File(new File(TEMP_DIR, "untarred"), segmentName);
+    TarGzCompressionUtils.unTar(new File(new File(DATA_DIR, tableName), segmentName), untarredDir);
+    return untarredDir.listFiles()[0];
+  }
+
+  private long sumClicks(String tableName, List<String> segmentNames) throws Exception {
+    long sum = 0;
+    for (String segmentName : segmentNames) {
+      sum += sumClicks(untarSegment(tableName, segmentName));
+    }
+    return sum;
+  }
+
+  private static long sumClicks(File indexDir) throws Exception {
+    PinotSegmentRecordReader recordReader = new PinotSegmentRecordReader(indexDir);
+    recordReader.init();
+    long sum = 0;
+    while (recordReader.hasNext()) {
+      sum += (Long) recordReader.next().getValue("clicks");
+    }
+    recordReader.close();
+    return sum;
+  }
+
+  private static OfflineSegmentZKMetadata createSegmentZKMetadata(String segmentName, long startTime, long endTime,
+      long totalRawDocs) {
+    return createSegmentZKMetadata(segmentName, startTime, endTime, TimeUnit.DAYS, totalRawDocs);
+  }
+
+  private static OfflineSegmentZKMetadata createSegmentZKMetadata(String segmentName, long startTime, long endTime,
+      TimeUnit timeUnit, long totalRawDocs) {
+    OfflineSegmentZKMetadata segmentMetadata = new OfflineSegmentZKMetadata();
+    segmentMetadata.setSegmentName(segmentName);
+    segmentMetadata.setStartTime(startTime);
+    segmentMetadata.setEndTime(endTime);
+    segmentMetadata.setTimeUnit(timeUnit);
+    segmentMetadata.setTotalRawDocs(totalRawDocs);
+    return segmentMetadata;
+  }
+
+  private static void assertSegmentNames(List<OfflineSegmentZKMetadata> group, String... expectedSegmentNames) {
+    List<String> segmentNames = new ArrayList<>();
+    for (OfflineSegmentZKMetadata segmentMetadata : group) {
+      segmentNames.add(segmentMetadata.getSegmentName());
+    }
+    Assert.assertEquals(segmentNames, Arrays.asList(expectedSegmentNames));
+  }
+}
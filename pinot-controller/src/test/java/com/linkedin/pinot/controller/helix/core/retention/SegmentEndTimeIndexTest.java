@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.controller.helix.core.retention;
+
+import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
+import com.linkedin.pinot.common.metadata.segment.RealtimeSegmentZKMetadata;
+import com.linkedin.pinot.common.metadata.segment.SegmentZKMetadata;
+import com.linkedin.pinot.common.utils.CommonConstants.Segment.Realtime.Status;
+import com.linkedin.pinot.controller.helix.core.retention.strategy.TimeRetentionStrategy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class SegmentEndTimeIndexTest {
+  private static final long NOW_MILLIS = TimeUnit.DAYS.toMillis(17000);
+
+  @Test
+  public void testExpiredSegments() {
+    List<SegmentZKMetadata> segmentZKMetadataList = new ArrayList<>();
+    // Shuffled days
+    for (int day : new int[]{16995, 16990, 16999, 16992, 16997}) {
+      segmentZKMetadataList.add(getOfflineSegmentZKMetadata("segment_" + day, day, TimeUnit.DAYS));
+    }
+    // Segments that never expire
+    segmentZKMetadataList.add(getOfflineSegmentZKMetadata("noTimeUnit", 16000, null));
+    segmentZKMetadataList.add(getOfflineSegmentZKMetadata("invalidTime", 16000, TimeUnit.MILLISECONDS));
+    RealtimeSegmentZKMetadata consumingSegment = new RealtimeSegmentZKMetadata();
+    consumingSegment.setSegmentName("consuming");
+    consumingSegment.setEndTime(16000);
+    consumingSegment.setTimeUnit(TimeUnit.DAYS);
+    consumingSegment.setStatus(Status.IN_PROGRESS);
+    segmentZKMetadataList.add(consumingSegment);
+
+    SegmentEndTimeIndex segmentEndTimeIndex = new SegmentEndTimeIndex();
+    for (SegmentZKMetadata segmentZKMetadata : segmentZKMetadataList) {
+      segmentEndTimeIndex.updateSegment(segmentZKMetadata, 0);
+    }
+    Assert.assertEquals(segmentEndTimeIndex.getNumSegments(), 5);
+
+    TimeRetentionStrategy retentionStrategy = new TimeRetentionStrategy(TimeUnit.DAYS, 5);
+    long purgeableEndTimeMillis = retentionStrategy.getPurgeableEndTimeMillis(NOW_MILLIS);
+    Assert.assertEquals(segmentEndTimeIndex.getSegmentsEndingBefore(purgeableEndTimeMillis),
+        Arrays.asList("segment_16990", "segment_16992"));
+
+    // Same result as checking the segments one by one
+    for (SegmentZKMetadata segmentZKMetadata : segmentZKMetadataList) {
+      boolean expired = segmentEndTimeIndex.getSegmentsEndingBefore(purgeableEndTimeMillis)
+          .contains(segmentZKMetadata.getSegmentName());
+      Assert.assertEquals(expired, segmentZKMetadata.getSegmentName().startsWith("segment_")
+          && segmentZKMetadata.getEndTime() < 16995);
+    }
+
+    Assert.assertEquals(segmentEndTimeIndex.getSegmentsEndingBefore(Long.MIN_VALUE), Collections.emptyList());
+    Assert.assertEquals(segmentEndTimeIndex.getSegmentsEndingBefore(Long.MAX_VALUE),
+        Arrays.asList("segment_16990", "segment_16992", "segment_16995", "segment_16997", "segment_16999"));
+    Assert.assertEquals(new TimeRetentionStrategy(TimeUnit.DAYS, 0).getPurgeableEndTimeMillis(NOW_MILLIS),
+        Long.MIN_VALUE);
+  }
+
+  @Test
+  public void testSegmentUpdates() {
+    SegmentEndTimeIndex segmentEndTimeIndex = new SegmentEndTimeIndex();
+    segmentEndTimeIndex.updateSegment(getOfflineSegmentZKMetadata("segment_16990", 16990, TimeUnit.DAYS), 0);
+    segmentEndTimeIndex.updateSegment(getOfflineSegmentZKMetadata("segment_16999", 16999, TimeUnit.DAYS), 0);
+    RealtimeSegmentZKMetadata consumingSegment = new RealtimeSegmentZKMetadata();
+    consumingSegment.setSegmentName("consuming");
+    consumingSegment.setStatus(Status.IN_PROGRESS);
+    segmentEndTimeIndex.updateSegment(consumingSegment, 0);
+    Assert.assertTrue(segmentEndTimeIndex.isUpToDate("segment_16990", 0));
+    Assert.assertTrue(segmentEndTimeIndex.isUpToDate("consuming", 0));
+    Assert.assertFalse(segmentEndTimeIndex.isUpToDate("segment_16990", 1));
+    Assert.assertFalse(segmentEndTimeIndex.isUpToDate("segment_16995", 0));
+    Assert.assertEquals(segmentEndTimeIndex.getNumSegments(), 2);
+
+    // Refreshed segment with a new end time
+    segmentEndTimeIndex.updateSegment(getOfflineSegmentZKMetadata("segment_16990", 16998, TimeUnit.DAYS), 1);
+    Assert.assertTrue(segmentEndTimeIndex.isUpToDate("segment_16990", 1));
+    Assert.assertEquals(segmentEndTimeIndex.getSegmentsEndingBefore(TimeUnit.DAYS.toMillis(16999)),
+        Collections.singletonList("segment_16990"));
+
+    // Committed realtime segment
+    consumingSegment.setEndTime(16990);
+    consumingSegment.setTimeUnit(TimeUnit.DAYS);
+    consumingSegment.setStatus(Status.DONE);
+    segmentEndTimeIndex.updateSegment(consumingSegment, 1);
+    Assert.assertEquals(segmentEndTimeIndex.getSegmentsEndingBefore(TimeUnit.DAYS.toMillis(16999)),
+        Arrays.asList("consuming", "segment_16990"));
+
+    // Deleted segments
+    segmentEndTimeIndex.retainSegments(Arrays.asList("consuming", "segment_16999"));
+    Assert.assertFalse(segmentEndTimeIndex.isUpToDate("segment_16990", 1));
+    Assert.assertEquals(segmentEndTimeIndex.getSegmentsEndingBefore(Long.MAX_VALUE),
+        Arrays.asList("consuming", "segment_16999"));
+    segmentEndTimeIndex.removeSegments(Collections.singletonList("consuming"));
+    Assert.assertEquals(segmentEndTimeIndex.getSegmentsEndingBefore(Long.MAX_VALUE),
+        Collections.singletonList("segment_16999"));
+    Assert.assertEquals(segmentEndTimeIndex.getNumSegments(), 1);
+  }
+
+  private static OfflineSegmentZKMetadata getOfflineSegmentZKMetadata(String segmentName, long endTime,
+      TimeUnit timeUnit) {
+    OfflineSegmentZKMetadata offlineSegmentZKMetadata = new OfflineSegmentZKMetadata();
+    offlineSegmentZKMetadata.setSegmentName(segmentName);
+    offlineSegmentZKMetadata.setEndTime(endTime);
+    offlineSegmentZKMetadata.setTimeUnit(timeUnit);
+    return offlineSegmentZKMetadata;
+  }
+}
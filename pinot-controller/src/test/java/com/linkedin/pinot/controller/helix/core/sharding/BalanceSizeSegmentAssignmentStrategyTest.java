@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.controller.helix.core.sharding;
+
+import com.linkedin.pinot.common.segment.SegmentMetadata;
+import com.linkedin.pinot.common.utils.ControllerTenantNameBuilder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.apache.helix.HelixAdmin;
+import org.apache.helix.model.IdealState;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+/**
+ * Simulates the assignment of segments of very different sizes to a cluster, with the size-aware and the count-based
+ * strategies.
+ */
+public class BalanceSizeSegmentAssignmentStrategyTest {
+  private static final String CLUSTER_NAME = "testCluster";
+  private static final String TABLE_NAME = "testTable";
+  private static final String OFFLINE_TABLE_NAME = "testTable_OFFLINE";
+  private static final String TENANT_NAME = "testTenant";
+  private static final int NUM_INSTANCES = 10;
+  private static final int NUM_SEGMENTS = 1000;
+  private static final int NUM_REPLICAS = 3;
+  private static final long MB = 1024L * 1024;
+
+  private HelixAdmin _helixAdmin;
+  private List<String> _instances;
+  private TestServerLoadProvider _serverLoadProvider;
+
+  @BeforeMethod
+  public void setUp() {
+    _instances = new ArrayList<>();
+    for (int i = 0; i < NUM_INSTANCES; i++) {
+      _instances.add("Server_localhost_" + i);
+    }
+    _helixAdmin = mock(HelixAdmin.class);
+    when(_helixAdmin.getInstancesInClusterWithTag(CLUSTER_NAME,
+        ControllerTenantNameBuilder.getOfflineTenantNameForTenant(TENANT_NAME))).thenReturn(_instances);
+    _serverLoadProvider = new TestServerLoadProvider();
+  }
+
+  @Test
+  public void testSizeBalance() {
+    Random random = new Random(0);
+    List<Long> segmentSizes = new ArrayList<>();
+    for (int i = 0; i < NUM_SEGMENTS; i++) {
+      // From 1MB to 4GB, log-uniformly
+      segmentSizes.add((long) (MB * Math.pow(4096, random.nextDouble())));
+    }
+
+    Map<String, Long> sizeAwareLoads =
+        simulate(new BalanceSizeSegmentAssignmentStrategy(_serverLoadProvider), segmentSizes);
+    Map<String, Long> countBasedLoads = simulate(new BalanceNumSegmentAssignmentStrategy(), segmentSizes);
+
+    double sizeAwareImbalance = getImbalance(sizeAwareLoads);
+    double countBasedImbalance = getImbalance(countBasedLoads);
+    Assert.assertTrue(sizeAwareImbalance < 0.05, "Imbalance: " + sizeAwareImbalance);
+    Assert.assertTrue(sizeAwareImbalance < countBasedImbalance,
+        "Size-aware imbalance: " + sizeAwareImbalance + ", count-based imbalance: " + countBasedImbalance);
+  }
+
+  @Test
+  public void testOtherTablesAndQueryLoad() {
+    // Instance 0 already serves 20GB of another table, instance 1 serves a hot table
+    String loadedInstance = _instances.get(0);
+    String hotInstance = _instances.get(1);
+    _serverLoadProvider._diskUsages.put(loadedInstance, 20 * 1024 * MB);
+    _serverLoadProvider._loadWeights.put(hotInstance, 2.0);
+    List<Long> segmentSizes = new ArrayList<>();
+    for (int i = 0; i < NUM_SEGMENTS; i++) {
+      segmentSizes.add(100 * MB);
+    }
+
+    Map<String, Long> loads = simulate(new BalanceSizeSegmentAssignmentStrategy(_serverLoadProvider), segmentSizes);
+    long totalLoad = NUM_SEGMENTS * NUM_REPLICAS * 100 * MB + 20 * 1024 * MB;
+    // Balanced weighted load with 9 instances of weight 1 and one of weight 2
+    double balancedLoad = totalLoad / (NUM_INSTANCES - 1 + 0.5);
+    long delta = 2 * 100 * MB;
+    Assert.assertEquals(loads.get(loadedInstance) + 20 * 1024 * MB, balancedLoad, delta);
+    Assert.assertEquals(loads.get(hotInstance) * 2.0, balancedLoad, 2 * delta);
+    Assert.assertEquals((double) loads.get(_instances.get(2)), balancedLoad, delta);
+  }
+
+  @Test
+  public void testUnknownSizes() {
+    // Without size information, segments are balanced by count
+    IdealState idealState = new IdealState(OFFLINE_TABLE_NAME);
+    idealState.setRebalanceMode(IdealState.RebalanceMode.CUSTOMIZED);
+    Map<String, Integer> numSegments = new HashMap<>();
+    SegmentAssignmentStrategy strategy = new BalanceSizeSegmentAssignmentStrategy(null);
+    for (int i = 0; i < 100; i++) {
+      String segmentName = TABLE_NAME + "_" + i;
+      List<String> instances = strategy.getAssignedInstances(_helixAdmin, CLUSTER_NAME, getSegmentMetadata(segmentName),
+          NUM_REPLICAS, TENANT_NAME, idealState);
+      Assert.assertEquals(new HashSet<>(instances).size(), NUM_REPLICAS);
+      for (String instance : instances) {
+        idealState.setPartitionState(segmentName, instance, "ONLINE");
+        Integer count = numSegments.get(instance);
+        numSegments.put(instance, count == null ? 1 : count + 1);
+      }
+    }
+    for (String instance : _instances) {
+      Assert.assertEquals(numSegments.get(instance), 30, 1);
+    }
+  }
+
+  /**
+   * Assigns the segments one after the other and returns the size of the segments assigned to each instance.
+   */
+  private Map<String, Long> simulate(SegmentAssignmentStrategy strategy, List<Long> segmentSizes) {
+    IdealState idealState = new IdealState(OFFLINE_TABLE_NAME);
+    idealState.setRebalanceMode(IdealState.RebalanceMode.CUSTOMIZED);
+    Map<String, Long> loads = new HashMap<>();
+    for (String instance : _instances) {
+      loads.put(instance, 0L);
+    }
+    for (int i = 0; i < segmentSizes.size(); i++) {
+      String segmentName = TABLE_NAME + "_" + i;
+      _serverLoadProvider._segmentSizes.put(segmentName, segmentSizes.get(i));
+      List<String> instances = strategy.getAssignedInstances(_helixAdmin, CLUSTER_NAME, getSegmentMetadata(segmentName),
+          NUM_REPLICAS, TENANT_NAME, idealState);
+      Assert.assertEquals(new HashSet<>(instances).size(), NUM_REPLICAS);
+      for (String instance : instances) {
+        idealState.setPartitionState(segmentName, instance, "ONLINE");
+        loads.put(instance, loads.get(instance) + segmentSizes.get(i));
+      }
+    }
+    return loads;
+  }
+
+  private static double getImbalance(Map<String, Long> loads) {
+    long maxLoad = 0;
+    long totalLoad = 0;
+    for (long load : loads.values()) {
+      maxLoad = Math.max(maxLoad, load);
+      totalLoad += load;
+    }
+    return (double) maxLoad * loads.size() / totalLoad - 1;
+  }
+
+  private static SegmentMetadata getSegmentMetadata(String segmentName) {
+    SegmentMetadata segmentMetadata = mock(SegmentMetadata.class);
+    when(segmentMetadata.getName()).thenReturn(segmentName);
+    when(segmentMetadata.getTableName()).thenReturn(TABLE_NAME);
+    when(segmentMetadata.getIndexType()).thenReturn("offline");
+    return segmentMetadata;
+  }
+
+  private static class TestServerLoadProvider implements ServerLoadProvider {
+    final Map<String, Long> _segmentSizes = new HashMap<>();
+    final Map<String, Long> _diskUsages = new HashMap<>();
+    final Map<String, Double> _loadWeights = new HashMap<>();
+
+    @Override
+    public long getSegmentSizeInBytes(String tableNameWithType, String segmentName) {
+      Assert.assertEquals(tableNameWithType, OFFLINE_TABLE_NAME);
+      Long segmentSize = _segmentSizes.get(segmentName);
+      return segmentSize != null ? segmentSize : -1L;
+    }
+
+    @Override
+    public void setSegmentSizeInBytes(String tableNameWithType, String segmentName, long segmentSizeInBytes) {
+      _segmentSizes.put(segmentName, segmentSizeInBytes);
+    }
+
+    @Override
+    public long getDiskUsageInBytes(String instanceName, String excludedTableNameWithType) {
+      Long diskUsage = _diskUsages.get(instanceName);
+      return diskUsage != null ? diskUsage : 0L;
+    }
+
+    @Override
+    public double getQueryLoadWeight(String instanceName) {
+      Double loadWeight = _loadWeights.get(instanceName);
+      return loadWeight != null ? loadWeight : 1.0;
+    }
+  }
+}
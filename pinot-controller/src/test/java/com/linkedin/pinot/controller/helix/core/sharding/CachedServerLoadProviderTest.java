@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.controller.helix.core.sharding;
+
+import com.linkedin.pinot.controller.api.restlet.resources.TableSizeReader;
+import com.linkedin.pinot.controller.helix.core.PinotHelixResourceManager;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.store.zk.ZkHelixPropertyStore;
+import org.apache.zookeeper.data.Stat;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class CachedServerLoadProviderTest {
+  private static final String OFFLINE_TABLE_NAME = "testTable_OFFLINE";
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testSegmentSizeUpdates() {
+    ZkHelixPropertyStore<ZNRecord> propertyStore = mock(ZkHelixPropertyStore.class);
+    PinotHelixResourceManager helixResourceManager = mock(PinotHelixResourceManager.class);
+    when(helixResourceManager.getPropertyStore()).thenReturn(propertyStore);
+    CachedServerLoadProvider serverLoadProvider =
+        new CachedServerLoadProvider(helixResourceManager, mock(TableSizeReader.class), 60000L, 1000);
+
+    // Segment not in the property-store yet
+    Assert.assertEquals(serverLoadProvider.getSegmentSizeInBytes(OFFLINE_TABLE_NAME, "segment"), -1L);
+    verify(propertyStore, times(1)).get(anyString(), any(Stat.class), anyInt());
+
+    // Sizes recorded as segments are added or refreshed are kept across refreshes, without reading the segment again
+    serverLoadProvider.setSegmentSizeInBytes(OFFLINE_TABLE_NAME, "segment", 100L);
+    Assert.assertEquals(serverLoadProvider.getSegmentSizeInBytes(OFFLINE_TABLE_NAME, "segment"), 100L);
+    serverLoadProvider.refresh();
+    serverLoadProvider.setSegmentSizeInBytes(OFFLINE_TABLE_NAME, "segment", 200L);
+    Assert.assertEquals(serverLoadProvider.getSegmentSizeInBytes(OFFLINE_TABLE_NAME, "segment"), 200L);
+    verify(propertyStore, times(1)).get(anyString(), any(Stat.class), anyInt());
+    serverLoadProvider.stop();
+  }
+}
@@ -0,0 +1,232 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.controller.helix.core.sharding;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+
+/**
+ * Simulates rebalances of synthetic cluster states: segments from 1MB to 4GB assigned by count, servers added or
+ * removed, and servers with different query loads.
+ */
+public class MinimalMovementRebalancePlannerTest {
+  private static final int NUM_SEGMENTS = 2000;
+  private static final int NUM_REPLICAS = 3;
+  private static final int NUM_INSTANCES = 16;
+  private static final double IMBALANCE_TOLERANCE = 0.05;
+  private static final long MB = 1024L * 1024;
+  private static final Map<String, Long> NO_BASE_LOADS = Collections.emptyMap();
+  private static final Map<String, Double> NO_LOAD_WEIGHTS = Collections.emptyMap();
+
+  private final MinimalMovementRebalancePlanner _planner =
+      new MinimalMovementRebalancePlanner(IMBALANCE_TOLERANCE, Integer.MAX_VALUE);
+  private Map<String, Long> _segmentSizes;
+  private long _totalSize;
+
+  @BeforeClass
+  public void setUp() {
+    Random random = new Random(0);
+    _segmentSizes = new HashMap<>();
+    _totalSize = 0;
+    for (int i = 0; i < NUM_SEGMENTS; i++) {
+      long segmentSize = (long) (MB * Math.pow(4096, random.nextDouble()));
+      _segmentSizes.put("segment_" + i, segmentSize);
+      _totalSize += segmentSize;
+    }
+  }
+
+  @Test
+  public void testRebalanceCountBasedAssignment() {
+    List<String> instances = getInstances(0, NUM_INSTANCES);
+    Map<String, Set<String>> currentAssignment = getRoundRobinAssignment(instances);
+
+    MinimalMovementRebalancePlanner.RebalancePlan plan =
+        _planner.plan(currentAssignment, instances, NUM_REPLICAS, _segmentSizes, NO_BASE_LOADS, NO_LOAD_WEIGHTS);
+    verifyAssignment(plan.getTargetAssignment(), instances);
+    Assert.assertTrue(plan.getImbalanceBefore() > IMBALANCE_TOLERANCE);
+    Assert.assertTrue(plan.getImbalanceAfter() <= IMBALANCE_TOLERANCE, plan.toString());
+    Assert.assertEquals(plan.getImbalanceAfter(), getImbalance(plan.getTargetAssignment(), instances), 1e-9);
+    // Replicas are moved, not added nor removed
+    Assert.assertEquals(plan.getNumReplicasAdded(), plan.getNumReplicasRemoved());
+    Assert.assertTrue(plan.getNumReplicasAdded() < NUM_SEGMENTS * NUM_REPLICAS / 4, plan.toString());
+
+    // Planning again does not move anything
+    Assert.assertTrue(_planner.plan(plan.getTargetAssignment(), instances, NUM_REPLICAS, _segmentSizes, NO_BASE_LOADS,
+        NO_LOAD_WEIGHTS).isNoop());
+  }
+
+  @Test
+  public void testAddInstances() {
+    List<String> instances = getInstances(0, NUM_INSTANCES);
+    Map<String, Set<String>> balancedAssignment = _planner.plan(getRoundRobinAssignment(instances), instances,
+        NUM_REPLICAS, _segmentSizes, NO_BASE_LOADS, NO_LOAD_WEIGHTS).getTargetAssignment();
+
+    // Add 4 instances: the old instances need to shed the data above the tolerated load, and no more than 4/20 of the
+    // data needs to move to the new instances
+    List<String> newInstances = getInstances(0, NUM_INSTANCES + 4);
+    MinimalMovementRebalancePlanner.RebalancePlan plan =
+        _planner.plan(balancedAssignment, newInstances, NUM_REPLICAS, _segmentSizes, NO_BASE_LOADS, NO_LOAD_WEIGHTS);
+    verifyAssignment(plan.getTargetAssignment(), newInstances);
+    Assert.assertTrue(plan.getImbalanceAfter() <= IMBALANCE_TOLERANCE, plan.toString());
+    double totalReplicaSize = (double) _totalSize * NUM_REPLICAS;
+    double minBytesToMove =
+        totalReplicaSize * (1 - NUM_INSTANCES * (1 + IMBALANCE_TOLERANCE) / (NUM_INSTANCES + 4));
+    double balancedBytesToMove = totalReplicaSize * 4 / (NUM_INSTANCES + 4);
+    Assert.assertTrue(plan.getNumBytesAdded() >= minBytesToMove * 0.99, plan.toString());
+    Assert.assertTrue(plan.getNumBytesAdded() <= balancedBytesToMove * 1.1, plan.toString());
+    // Data only moves to the new instances
+    for (Map.Entry<String, Set<String>> entry : plan.getTargetAssignment().entrySet()) {
+      for (String instance : entry.getValue()) {
+        Assert.assertTrue(balancedAssignment.get(entry.getKey()).contains(instance)
+            || !instances.contains(instance));
+      }
+    }
+  }
+
+  @Test
+  public void testRemoveInstanceAndIncreaseReplicas() {
+    List<String> instances = getInstances(0, NUM_INSTANCES);
+    Map<String, Set<String>> balancedAssignment = _planner.plan(getRoundRobinAssignment(instances), instances,
+        NUM_REPLICAS, _segmentSizes, NO_BASE_LOADS, NO_LOAD_WEIGHTS).getTargetAssignment();
+
+    List<String> remainingInstances = getInstances(1, NUM_INSTANCES);
+    MinimalMovementRebalancePlanner.RebalancePlan plan = _planner.plan(balancedAssignment, remainingInstances,
+        NUM_REPLICAS + 1, _segmentSizes, NO_BASE_LOADS, NO_LOAD_WEIGHTS);
+    for (Set<String> segmentInstances : plan.getTargetAssignment().values()) {
+      Assert.assertEquals(segmentInstances.size(), NUM_REPLICAS + 1);
+      Assert.assertTrue(remainingInstances.containsAll(segmentInstances));
+    }
+    Assert.assertTrue(plan.getImbalanceAfter() <= IMBALANCE_TOLERANCE, plan.toString());
+    int numRemovedReplicas = 0;
+    for (Set<String> segmentInstances : balancedAssignment.values()) {
+      if (segmentInstances.contains(instances.get(0))) {
+        numRemovedReplicas++;
+      }
+    }
+    // Every segment gets one more replica, plus the replicas of the removed instance, plus a few balancing moves
+    Assert.assertTrue(plan.getNumReplicasAdded() >= NUM_SEGMENTS + numRemovedReplicas);
+    Assert.assertTrue(plan.getNumReplicasAdded() <= (NUM_SEGMENTS + numRemovedReplicas) * 1.1, plan.toString());
+  }
+
+  @Test
+  public void testBaseLoadsAndLoadWeights() {
+    List<String> instances = getInstances(0, NUM_INSTANCES);
+    Map<String, Long> baseLoads = new HashMap<>();
+    baseLoads.put(instances.get(0), _totalSize / 16);
+    Map<String, Double> loadWeights = new HashMap<>();
+    loadWeights.put(instances.get(1), 2.0);
+
+    MinimalMovementRebalancePlanner.RebalancePlan plan =
+        _planner.plan(getRoundRobinAssignment(instances), instances, NUM_REPLICAS, _segmentSizes, baseLoads,
+            loadWeights);
+    verifyAssignment(plan.getTargetAssignment(), instances);
+    Assert.assertTrue(plan.getImbalanceAfter() <= IMBALANCE_TOLERANCE, plan.toString());
+
+    Map<String, Long> loads = getLoads(plan.getTargetAssignment(), instances);
+    double balancedLoad = (double) (_totalSize * NUM_REPLICAS + _totalSize / 16) / (NUM_INSTANCES - 0.5);
+    Assert.assertTrue(loads.get(instances.get(0)) + _totalSize / 16 <= balancedLoad * (1 + IMBALANCE_TOLERANCE));
+    Assert.assertTrue(loads.get(instances.get(1)) * 2 <= balancedLoad * (1 + IMBALANCE_TOLERANCE));
+    Assert.assertTrue(loads.get(instances.get(1)) < loads.get(instances.get(2)));
+  }
+
+  @Test
+  public void testMaxMoves() {
+    List<String> instances = getInstances(0, NUM_INSTANCES);
+    Map<String, Set<String>> currentAssignment = getRoundRobinAssignment(instances);
+
+    // Required changes are made regardless of the maximum number of moves
+    MinimalMovementRebalancePlanner planner = new MinimalMovementRebalancePlanner(IMBALANCE_TOLERANCE, 0);
+    Assert.assertTrue(
+        planner.plan(currentAssignment, instances, NUM_REPLICAS, _segmentSizes, NO_BASE_LOADS, NO_LOAD_WEIGHTS)
+            .isNoop());
+    MinimalMovementRebalancePlanner.RebalancePlan plan = planner.plan(currentAssignment, getInstances(1, NUM_INSTANCES),
+        NUM_REPLICAS, _segmentSizes, NO_BASE_LOADS, NO_LOAD_WEIGHTS);
+    verifyAssignment(plan.getTargetAssignment(), getInstances(1, NUM_INSTANCES));
+    Assert.assertEquals(plan.getNumReplicasAdded(), plan.getNumReplicasRemoved());
+
+    planner = new MinimalMovementRebalancePlanner(IMBALANCE_TOLERANCE, 10);
+    plan = planner.plan(currentAssignment, instances, NUM_REPLICAS, _segmentSizes, NO_BASE_LOADS, NO_LOAD_WEIGHTS);
+    // A replica may be moved more than once
+    Assert.assertTrue(plan.getNumReplicasAdded() > 0 && plan.getNumReplicasAdded() <= 10, plan.toString());
+    Assert.assertTrue(plan.getImbalanceAfter() < plan.getImbalanceBefore());
+  }
+
+  private static List<String> getInstances(int from, int to) {
+    List<String> instances = new ArrayList<>();
+    for (int i = from; i < to; i++) {
+      instances.add("Server_localhost_" + i);
+    }
+    return instances;
+  }
+
+  /**
+   * Returns the assignment balancing the number of segments per instance regardless of their size.
+   */
+  private Map<String, Set<String>> getRoundRobinAssignment(List<String> instances) {
+    Map<String, Set<String>> assignment = new TreeMap<>();
+    int instanceIndex = 0;
+    for (int i = 0; i < NUM_SEGMENTS; i++) {
+      Set<String> segmentInstances = new TreeSet<>();
+      for (int j = 0; j < NUM_REPLICAS; j++) {
+        segmentInstances.add(instances.get(instanceIndex++ % instances.size()));
+      }
+      assignment.put("segment_" + i, segmentInstances);
+    }
+    return assignment;
+  }
+
+  private void verifyAssignment(Map<String, Set<String>> assignment, List<String> instances) {
+    Assert.assertEquals(assignment.keySet(), _segmentSizes.keySet());
+    for (Set<String> segmentInstances : assignment.values()) {
+      Assert.assertEquals(segmentInstances.size(), NUM_REPLICAS);
+      Assert.assertTrue(instances.containsAll(segmentInstances));
+    }
+  }
+
+  private Map<String, Long> getLoads(Map<String, Set<String>> assignment, List<String> instances) {
+    Map<String, Long> loads = new HashMap<>();
+    for (String instance : instances) {
+      loads.put(instance, 0L);
+    }
+    for (Map.Entry<String, Set<String>> entry : assignment.entrySet()) {
+      for (String instance : entry.getValue()) {
+        loads.put(instance, loads.get(instance) + _segmentSizes.get(entry.getKey()));
+      }
+    }
+    return loads;
+  }
+
+  private double getImbalance(Map<String, Set<String>> assignment, List<String> instances) {
+    long maxLoad = 0;
+    long totalLoad = 0;
+    for (long load : getLoads(assignment, instances).values()) {
+      maxLoad = Math.max(maxLoad, load);
+      totalLoad += load;
+    }
+    return (double) maxLoad * instances.size() / totalLoad - 1;
+  }
+}
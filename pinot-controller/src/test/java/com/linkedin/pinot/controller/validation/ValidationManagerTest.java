@@ -41,11 +41,13 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 import com.linkedin.pinot.common.config.AbstractTableConfig;
 import com.linkedin.pinot.common.config.IndexingConfig;
+import com.linkedin.pinot.common.config.TableCustomConfig;
 import com.linkedin.pinot.common.config.TableNameBuilder;
 import com.linkedin.pinot.common.data.MetricFieldSpec;
 import com.linkedin.pinot.common.data.Schema;
 import com.linkedin.pinot.common.metadata.ZKMetadataProvider;
 import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
+import com.linkedin.pinot.common.metadata.segment.SegmentPartitionMetadata;
 import com.linkedin.pinot.common.metrics.ValidationMetrics;
 import com.linkedin.pinot.common.segment.SegmentMetadata;
 import com.linkedin.pinot.common.segment.StarTreeMetadata;
@@ -464,8 +466,72 @@ public class ValidationManagerTest {
     helixAdmin.dropResource(HELIX_CLUSTER_NAME, realtimeTableName);
   }
 
+  @Test
+  public void testIncrementalValidation() throws Exception {
+    String tableName = "testIncrementalTable";
+    String offlineTableName = TableNameBuilder.OFFLINE_TABLE_NAME_BUILDER.forTable(tableName);
+    String offlineTableConfigJson =
+        ControllerRequestBuilderUtil.buildCreateOfflineTableJSON(tableName, null, null, 1).toString();
+    _pinotHelixResourceManager.addTable(AbstractTableConfig.init(offlineTableConfigJson));
+    _pinotHelixResourceManager.addSegment(new DummyMetadata(tableName, "incrementalSegment_0", 10), "http://dummy/");
+
+    PinotHelixResourceManager resourceManager = spy(_pinotHelixResourceManager);
+    doReturn(true).when(resourceManager).isLeader();
+    FakeValidationMetrics validationMetrics = new FakeValidationMetrics();
+    ValidationManager validationManager =
+        new ValidationManager(validationMetrics, resourceManager, new ControllerConf(), _segmentManager);
+    validationManager.start();
+    try {
+      // The first run is a full resync, which reads the segment ZK metadata of all the tables
+      validationManager.runValidation();
+      Assert.assertEquals(validationMetrics.validatedTableCount, resourceManager.getAllPinotTableNames().size());
+      Assert.assertTrue(validationMetrics.zkMetadataReadCount >= 1);
+      Assert.assertEquals(validationMetrics.segmentCounts.get(offlineTableName), Long.valueOf(1));
+      Assert.assertEquals(validationMetrics.totalDocuments.get(offlineTableName), Long.valueOf(10));
+
+      // Nothing changed, so nothing is read
+      validationManager.runValidation();
+      Assert.assertEquals(validationMetrics.validatedTableCount, 0);
+      Assert.assertEquals(validationMetrics.zkStatReadCount, 0);
+      Assert.assertEquals(validationMetrics.zkMetadataReadCount, 0);
+
+      // Adding a segment only revalidates its table, for which only the new segment ZK metadata is read
+      _pinotHelixResourceManager.addSegment(new DummyMetadata(tableName, "incrementalSegment_1", 5), "http://dummy/");
+      long endTime = System.currentTimeMillis() + 10000L;
+      do {
+        Thread.sleep(100L);
+        validationManager.runValidation();
+      } while (validationMetrics.validatedTableCount == 0 && System.currentTimeMillis() < endTime);
+      Assert.assertEquals(validationMetrics.validatedTableCount, 1);
+      Assert.assertEquals(validationMetrics.zkStatReadCount, 2);
+      Assert.assertEquals(validationMetrics.zkMetadataReadCount, 1);
+      Assert.assertEquals(validationMetrics.segmentCounts.get(offlineTableName), Long.valueOf(2));
+      Assert.assertEquals(validationMetrics.totalDocuments.get(offlineTableName), Long.valueOf(15));
+
+      // Updating the table config revalidates its table, for which nothing changed in the segment ZK metadata
+      _pinotHelixResourceManager.updateMetadataConfigFor(tableName, CommonConstants.Helix.TableType.OFFLINE,
+          new TableCustomConfig());
+      endTime = System.currentTimeMillis() + 10000L;
+      do {
+        Thread.sleep(100L);
+        validationManager.runValidation();
+      } while (validationMetrics.validatedTableCount == 0 && System.currentTimeMillis() < endTime);
+      Assert.assertEquals(validationMetrics.validatedTableCount, 1);
+      Assert.assertEquals(validationMetrics.zkStatReadCount, 2);
+      Assert.assertEquals(validationMetrics.zkMetadataReadCount, 0);
+    } finally {
+      validationManager.stop();
+      _pinotHelixResourceManager.deleteOfflineTable(tableName);
+    }
+  }
+
   private class FakeValidationMetrics extends ValidationMetrics {
     public int partitionCount = -1;
+    public int validatedTableCount = -1;
+    public long zkStatReadCount = -1;
+    public long zkMetadataReadCount = -1;
+    public Map<String, Long> segmentCounts = new HashMap<>();
+    public Map<String, Long> totalDocuments = new HashMap<>();
 
     public FakeValidationMetrics() {
       super(null);
@@ -474,6 +540,24 @@ public class ValidationManagerTest {
     public void updateNumNonConsumingPartitionsMetric(final String tableName, final int count) {
       partitionCount = count;
     }
+
+    @Override
+    public void updateValidationRunGauges(long durationMillis, int validatedTableCount, long zkStatReadCount,
+        long zkMetadataReadCount) {
+      this.validatedTableCount = validatedTableCount;
+      this.zkStatReadCount = zkStatReadCount;
+      this.zkMetadataReadCount = zkMetadataReadCount;
+    }
+
+    @Override
+    public void updateSegmentCountGauge(String resource, long segmentCount) {
+      segmentCounts.put(resource, segmentCount);
+    }
+
+    @Override
+    public void updateTotalDocumentsGauge(String resource, long documentCount) {
+      totalDocuments.put(resource, documentCount);
+    }
   }
 
   private class DummyMetadata implements SegmentMetadata {
@@ -657,5 +741,11 @@ public class ValidationManagerTest {
     public String getDerivedColumn(String column, MetricFieldSpec.DerivedMetricType derivedMetricType) {
       return null;
     }
+
+    @Nullable
+    @Override
+    public SegmentPartitionMetadata getPartitionMetadata() {
+      return null;
+    }
   }
 }
@@ -25,6 +25,7 @@ import com.linkedin.pinot.common.utils.StringUtil;
 import com.linkedin.pinot.common.utils.time.TimeConverter;
 import com.linkedin.pinot.common.utils.time.TimeConverterProvider;
 import com.linkedin.pinot.core.data.GenericRow;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
 import org.slf4j.Logger;
@@ -40,6 +41,11 @@ public class PlainFieldExtractor implements FieldExtractor {
   private static final Map<Class, PinotDataType> SINGLE_VALUE_TYPE_MAP = new HashMap<>();
   private static final Map<Class, PinotDataType> MULTI_VALUE_TYPE_MAP = new HashMap<>();
 
+  // Flags of a transformed value
+  private static final int NULL_FLAG = 1;
+  private static final int ERROR_FLAG = 2;
+  private static final int CONVERSION_FLAG = 4;
+
   static {
     SINGLE_VALUE_TYPE_MAP.put(Boolean.class, PinotDataType.BOOLEAN);
     SINGLE_VALUE_TYPE_MAP.put(Byte.class, PinotDataType.BYTE);
@@ -71,6 +77,8 @@ public class PlainFieldExtractor implements FieldExtractor {
 
   private final Map<String, PinotDataType> _columnType = new HashMap<>();
 
+  private final int[] _valueFlags = new int[1];
+
   private String _incomingTimeColumnName;
   private String _outgoingTimeColumnName;
   private TimeConverter _timeConverter;
@@ -136,93 +144,22 @@ public class PlainFieldExtractor implements FieldExtractor {
     for (String column : _schema.getColumnNames()) {
       FieldSpec fieldSpec = _schema.getFieldSpecFor(column);
       // Ignore transform of DerivedMetric
-      if (fieldSpec instanceof MetricFieldSpec && ((MetricFieldSpec) fieldSpec).isDerivedMetric()) {
+      if (isDerivedMetric(fieldSpec)) {
         continue;
       }
 
-      Object value;
-
-      // Fetch value for this column.
-      if (column.equals(_outgoingTimeColumnName) && _timeConverter != null) {
-        // Convert incoming time to outgoing time.
-        value = row.getValue(_incomingTimeColumnName);
-        if (value == null) {
-          hasNull = true;
-          _totalNullCols++;
-        } else {
-          try {
-            value = _timeConverter.convert(value);
-          } catch (Exception e) {
-            LOGGER.debug("Caught exception while converting incoming time value: {}", value, e);
-            value = null;
-            hasError = true;
-            _errorCount.put(column, _errorCount.get(column) + 1);
-          }
-        }
-      } else {
-        value = row.getValue(column);
-        if (value == null) {
-          hasNull = true;
-          _totalNullCols++;
-        }
+      Object value = transformValue(column, fieldSpec, row.getValue(getSourceColumn(column)), _valueFlags);
+      int flags = _valueFlags[0];
+      if ((flags & NULL_FLAG) != 0) {
+        hasNull = true;
+        _totalNullCols++;
       }
-
-      // Convert value if necessary.
-      PinotDataType dest = _columnType.get(column);
-      PinotDataType source = null;
-      if (value != null) {
-        if (value instanceof Object[]) {
-          // Multi-value.
-          Object[] valueArray = (Object[]) value;
-          if (valueArray.length > 0) {
-            source = MULTI_VALUE_TYPE_MAP.get(valueArray[0].getClass());
-            if (source == null) {
-              source = PinotDataType.OBJECT_ARRAY;
-            }
-          } else {
-            LOGGER.debug("Got 0 length array.");
-            // Use default value for 0 length array.
-            value = null;
-            hasError = true;
-            _errorCount.put(column, _errorCount.get(column) + 1);
-          }
-        } else {
-          // Single-value.
-          source = SINGLE_VALUE_TYPE_MAP.get(value.getClass());
-          if (source == null) {
-            source = PinotDataType.OBJECT;
-          }
-        }
-
-        if (value != null && source != dest) {
-          Object before = value;
-          try {
-            value = dest.convert(before, source);
-            hasConversion = true;
-          } catch (Exception e) {
-            LOGGER.debug("Caught exception while converting value: {} from: {} to: {}", before, source, dest);
-            value = null;
-            hasError = true;
-            _errorCount.put(column, _errorCount.get(column) + 1);
-          }
-        }
-
-        // Null character is the default padding character, we do not allow trailing null chars in strings.
-        // Allowing this can cause multiple values to map to the same padded value, breaking segment generation.
-        if (dest == PinotDataType.STRING) {
-          value = StringUtil.trimTrailingNulls((String) value);
-        }
+      if ((flags & ERROR_FLAG) != 0) {
+        hasError = true;
+        _errorCount.put(column, _errorCount.get(column) + 1);
       }
-
-      // Assign default value for null value.
-      if (value == null) {
-        if (fieldSpec.isSingleValueField()) {
-          // Single-value field.
-          value = fieldSpec.getDefaultNullValue();
-        } else {
-          // Multi-value field.
-          value = new Object[]{fieldSpec.getDefaultNullValue()};
-        }
+      if ((flags & CONVERSION_FLAG) != 0) {
+        hasConversion = true;
       }
 
       destinationRow.putField(column, value);
@@ -241,6 +178,186 @@ public class PlainFieldExtractor implements FieldExtractor {
     return destinationRow;
   }
 
+  /**
+   * Returns the column of the input records the values of the given column are extracted from, which differs from the
+   * column only for the outgoing time column when the time needs to be converted.
+   */
+  public String getSourceColumn(String column) {
+    if (_timeConverter != null && column.equals(_outgoingTimeColumnName)) {
+      return _incomingTimeColumnName;
+    }
+    return column;
+  }
+
+  /**
+   * Sanitizes values of a column, read from its {@link #getSourceColumn(String) source column}, the same way
+   * {@link #transform(GenericRow, GenericRow)} sanitizes the values of a row. The counters of this extractor are not
+   * updated: the documents with a null, an error or a conversion are recorded into the given column counters, which
+   * are added to the counters of this extractor with {@link #addColumnCounters(Map)}.
+   * <p>This method does not modify the state of the extractor, so different columns can be transformed concurrently.
+   *
+   * @param column column to transform, which must not be a derived metric
+   * @param values values of the source column, replaced in place with the transformed values
+   * @param numValues number of values to transform
+   * @param startDocId docId of the first value
+   * @param columnCounters counters of the column
+   */
+  public void transformColumn(String column, Object[] values, int numValues, int startDocId,
+      ColumnCounters columnCounters) {
+    FieldSpec fieldSpec = _schema.getFieldSpecFor(column);
+    int[] flags = new int[1];
+    for (int i = 0; i < numValues; i++) {
+      values[i] = transformValue(column, fieldSpec, values[i], flags);
+      if (flags[0] != 0) {
+        columnCounters.add(startDocId + i, flags[0]);
+      }
+    }
+  }
+
+  /**
+   * Adds the counters of the columns transformed with {@link #transformColumn(String, Object[], int, int,
+   * ColumnCounters)} to the counters of this extractor, the row counters counting each document once whatever the
+   * number of its columns with a null, an error or a conversion.
+   */
+  public void addColumnCounters(Map<String, ColumnCounters> columnCountersMap) {
+    BitSet errorDocIds = new BitSet();
+    BitSet nullDocIds = new BitSet();
+    BitSet conversionDocIds = new BitSet();
+    for (Map.Entry<String, ColumnCounters> entry : columnCountersMap.entrySet()) {
+      String column = entry.getKey();
+      ColumnCounters columnCounters = entry.getValue();
+      _errorCount.put(column, _errorCount.get(column) + columnCounters._errorDocIds.cardinality());
+      _totalNullCols += columnCounters._nullDocIds.cardinality();
+      errorDocIds.or(columnCounters._errorDocIds);
+      nullDocIds.or(columnCounters._nullDocIds);
+      conversionDocIds.or(columnCounters._conversionDocIds);
+    }
+    _totalErrors += errorDocIds.cardinality();
+    _totalNulls += nullDocIds.cardinality();
+    _totalConversions += conversionDocIds.cardinality();
+  }
+
+  public static boolean isDerivedMetric(FieldSpec fieldSpec) {
+    return fieldSpec instanceof MetricFieldSpec && ((MetricFieldSpec) fieldSpec).isDerivedMetric();
+  }
+
+  /**
+   * Sanitizes a value of a column, setting into flags[0] the {@link #NULL_FLAG}, {@link #ERROR_FLAG} and
+   * {@link #CONVERSION_FLAG} of the value.
+   */
+  private Object transformValue(String column, FieldSpec fieldSpec, Object value, int[] flags) {
+    flags[0] = 0;
+
+    // Convert incoming time to outgoing time.
+    if (value == null) {
+      flags[0] |= NULL_FLAG;
+    } else if (_timeConverter != null && column.equals(_outgoingTimeColumnName)) {
+      try {
+        value = _timeConverter.convert(value);
+      } catch (Exception e) {
+        LOGGER.debug("Caught exception while converting incoming time value: {}", value, e);
+        value = null;
+        flags[0] |= ERROR_FLAG;
+      }
+    }
+
+    // Convert value if necessary.
+    PinotDataType dest = _columnType.get(column);
+    PinotDataType source = null;
+    if (value != null) {
+      if (value instanceof Object[]) {
+        // Multi-value.
+        Object[] valueArray = (Object[]) value;
+        if (valueArray.length > 0) {
+          source = MULTI_VALUE_TYPE_MAP.get(valueArray[0].getClass());
+          if (source == null) {
+            source = PinotDataType.OBJECT_ARRAY;
+          }
+        } else {
+          LOGGER.debug("Got 0 length array.");
+          // Use default value for 0 length array.
+          value = null;
+          flags[0] |= ERROR_FLAG;
+        }
+      } else {
+        // Single-value.
+        source = SINGLE_VALUE_TYPE_MAP.get(value.getClass());
+        if (source == null) {
+          source = PinotDataType.OBJECT;
+        }
+      }
+
+      if (value != null && source != dest) {
+        Object before = value;
+        try {
+          value = dest.convert(before, source);
+          flags[0] |= CONVERSION_FLAG;
+        } catch (Exception e) {
+          LOGGER.debug("Caught exception while converting value: {} from: {} to: {}", before, source, dest);
+          value = null;
+          flags[0] |= ERROR_FLAG;
+        }
+      }
+
+      // Null character is the default padding character, we do not allow trailing null chars in strings.
+      // Allowing this can cause multiple values to map to the same padded value, breaking segment generation.
+      if (dest == PinotDataType.STRING) {
+        value = StringUtil.trimTrailingNulls((String) value);
+      }
+    }
+
+    // Assign default value for null value.
+    if (value == null) {
+      if (fieldSpec.isSingleValueField()) {
+        // Single-value field.
+        value = fieldSpec.getDefaultNullValue();
+      } else {
+        // Multi-value field.
+        value = new Object[]{fieldSpec.getDefaultNullValue()};
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Documents of a column with a null, an error or a conversion, collected by
+   * {@link #transformColumn(String, Object[], int, int, ColumnCounters)}.
+   */
+  public static class ColumnCounters {
+    private final BitSet _nullDocIds = new BitSet();
+    private final BitSet _errorDocIds = new BitSet();
+    private final BitSet _conversionDocIds = new BitSet();
+
+    private void add(int docId, int flags) {
+      if ((flags & NULL_FLAG) != 0) {
+        _nullDocIds.set(docId);
+      }
+      if ((flags & ERROR_FLAG) != 0) {
+        _errorDocIds.set(docId);
+      }
+      if ((flags & CONVERSION_FLAG) != 0) {
+        _conversionDocIds.set(docId);
+      }
+    }
+  }
+
+  /**
+   * Adds the counters of another field extractor on the same schema to the counters of this one, and resets the
+   * counters of the other field extractor.
+   */
+  public void drainCountersFrom(PlainFieldExtractor other) {
+    for (Map.Entry<String, Integer> entry : other._errorCount.entrySet()) {
+      String column = entry.getKey();
+      _errorCount.put(column, _errorCount.get(column) + entry.getValue());
+      entry.setValue(0);
+    }
+    _totalErrors += other._totalErrors;
+    _totalNulls += other._totalNulls;
+    _totalConversions += other._totalConversions;
+    _totalNullCols += other._totalNullCols;
+    other.resetCounters();
+  }
+
   public Map<String, Integer> getErrorCount() {
     return _errorCount;
   }
@@ -54,6 +54,8 @@ public class FileBasedInstanceDataManagerConfig implements InstanceDataManagerCo
   private static final String SEGMENT_FORMAT_VERSION = "segment.format.version";
   // Key of whether to enable default columns
   private static final String ENABLE_DEFAULT_COLUMNS = "enable.default.columns";
+  // Key of whether to load the column indexes of segments on first access
+  private static final String LAZY_COLUMN_LOADING = "lazy.column.loading";
 
   private static String[] REQUIRED_KEYS = { INSTANCE_ID, INSTANCE_DATA_DIR, INSTANCE_TABLE_NAME };
   private Configuration _instanceDataManagerConfiguration = null;
@@ -142,6 +144,11 @@ public class FileBasedInstanceDataManagerConfig implements InstanceDataManagerCo
     return _instanceDataManagerConfiguration.getBoolean(ENABLE_DEFAULT_COLUMNS, false);
   }
 
+  @Override
+  public boolean isLazyColumnLoading() {
+    return _instanceDataManagerConfiguration.getBoolean(LAZY_COLUMN_LOADING, false);
+  }
+
   @Override
   public String toString() {
     String configString = "";
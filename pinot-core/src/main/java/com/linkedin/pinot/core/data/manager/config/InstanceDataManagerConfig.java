@@ -37,4 +37,6 @@ public interface InstanceDataManagerConfig {
   String getSegmentFormatVersion();
 
   boolean isEnableDefaultColumns();
+
+  boolean isLazyColumnLoading();
 }
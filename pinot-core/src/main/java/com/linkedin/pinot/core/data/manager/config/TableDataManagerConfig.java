@@ -41,6 +41,10 @@ public class TableDataManagerConfig {
   private static final String READ_MODE = "readMode";
   private static final String TABLE_DATA_MANAGER_DATA_DIRECTORY = "directory";
   private static final String TABLE_DATA_MANAGER_NAME = "name";
+  private static final String TABLE_DATA_MANAGER_PEER_DATA_DIRECTORIES = "peerDirectories";
+  // Data directories of the other servers sharing the file system of this server (e.g. several servers on the same
+  // host), in the instance config
+  public static final String INSTANCE_PEER_DATA_DIRS = "peer.data.dirs";
 
   private final Configuration _tableDataManagerConfig;
 
@@ -68,6 +72,13 @@ public class TableDataManagerConfig {
     return _tableDataManagerConfig.getString(TABLE_DATA_MANAGER_NAME);
   }
 
+  /**
+   * Returns the data directories of the table on the other servers sharing the file system of this server.
+   */
+  public String[] getPeerDataDirs() {
+    return _tableDataManagerConfig.getStringArray(TABLE_DATA_MANAGER_PEER_DATA_DIRECTORIES);
+  }
+
   public int getNumberOfTableQueryExecutorThreads() {
     return _tableDataManagerConfig.getInt(TABLE_DATA_MANAGER_NUM_QUERY_EXECUTOR_THREADS, 10);
   }
@@ -80,6 +91,9 @@ public class TableDataManagerConfig {
     defaultConfig.addProperty(TABLE_DATA_MANAGER_NAME, tableName);
     String dataDir = _instanceDataManagerConfig.getInstanceDataDir() + "/" + tableName;
     defaultConfig.addProperty(TABLE_DATA_MANAGER_DATA_DIRECTORY, dataDir);
+    for (String peerDataDir : _instanceDataManagerConfig.getConfig().getStringArray(INSTANCE_PEER_DATA_DIRS)) {
+      defaultConfig.addProperty(TABLE_DATA_MANAGER_PEER_DATA_DIRECTORIES, peerDataDir + "/" + tableName);
+    }
     if (_instanceDataManagerConfig.getReadMode() != null) {
       defaultConfig.addProperty(READ_MODE, _instanceDataManagerConfig.getReadMode().toString());
     } else {
@@ -92,6 +106,9 @@ public class TableDataManagerConfig {
     if (_instanceDataManagerConfig.isEnableDefaultColumns()) {
       defaultConfig.addProperty(IndexLoadingConfigMetadata.KEY_OF_ENABLE_DEFAULT_COLUMNS, true);
     }
+    if (_instanceDataManagerConfig.isLazyColumnLoading()) {
+      defaultConfig.addProperty(IndexLoadingConfigMetadata.KEY_OF_LAZY_COLUMN_LOADING, true);
+    }
     defaultConfig.addProperty(TABLE_DATA_MANAGER_NUM_QUERY_EXECUTOR_THREADS, 20);
     TableDataManagerConfig tableDataManagerConfig = new TableDataManagerConfig(defaultConfig);
 
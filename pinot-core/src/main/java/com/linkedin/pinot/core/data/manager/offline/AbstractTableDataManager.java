@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -36,6 +37,7 @@ import com.linkedin.pinot.common.segment.ReadMode;
 import com.linkedin.pinot.common.utils.NamedThreadFactory;
 import com.linkedin.pinot.core.data.manager.config.TableDataManagerConfig;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
 import javax.annotation.Nonnull;
 
 
@@ -91,6 +93,12 @@ public abstract  class AbstractTableDataManager implements TableDataManager {
     }
     _readMode = ReadMode.valueOf(_tableDataManagerConfig.getReadMode());
     _indexLoadingConfigMetadata = _tableDataManagerConfig.getIndexLoadingConfigMetadata();
+    _serverMetrics.addCallbackTableGauge(_tableName, ServerGauge.LOADED_COLUMN_INDEXES, new Callable<Long>() {
+      @Override
+      public Long call() throws Exception {
+        return getNumLoadedColumnIndexes();
+      }
+    });
     LOGGER
         .info("Initialized table : " + _tableName + " with :\n\tData Directory: " + _tableDataDir
             + "\n\tRead Mode : " + _readMode + "\n\tQuery Exeutor with "
@@ -207,6 +215,25 @@ public abstract  class AbstractTableDataManager implements TableDataManager {
     LOGGER.info("Segment {} for table {} has been closed", segmentName, _tableName);
   }
 
+  /**
+   * Returns the total number of column index containers loaded in memory across all segments of the table.
+   */
+  public long getNumLoadedColumnIndexes() {
+    long numLoadedColumns = 0L;
+    try {
+      _rwLock.readLock().lock();
+      for (SegmentDataManager segmentDataManager : _segmentsMap.values()) {
+        IndexSegment segment = segmentDataManager.getSegment();
+        if (segment instanceof IndexSegmentImpl) {
+          numLoadedColumns += ((IndexSegmentImpl) segment).getNumLoadedColumns();
+        }
+      }
+    } finally {
+      _rwLock.readLock().unlock();
+    }
+    return numLoadedColumns;
+  }
+
   @Override
   public boolean isStarted() {
     return _isStarted;
@@ -0,0 +1,308 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.data.manager.realtime;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.metrics.ServerGauge;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.utils.NamedThreadFactory;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.data.extractors.PlainFieldExtractor;
+import com.linkedin.pinot.core.realtime.impl.kafka.KafkaMessageDecoder;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import kafka.message.Message;
+import kafka.message.MessageAndOffset;
+
+
+/**
+ * Decode stage of the pipelined consumption of a Kafka partition, along with the bounded queue of batches between the
+ * fetch stage and the index stage.
+ * <p>
+ * The fetch stage hands over each fetched batch of messages with {@link #offer}, which blocks while the queue already
+ * holds the maximum number of batches. Each batch is split into chunks that are decoded and transformed in parallel,
+ * every decode thread using its own {@link KafkaMessageDecoder} and {@link PlainFieldExtractor}. The index stage takes
+ * the batches in fetch order with {@link #poll}, and reads the rows of each batch in offset order, waiting for their
+ * chunk to be decoded. A single thread therefore indexes the rows in exactly the same order as the serial consumption.
+ */
+public class KafkaConsumptionPipeline {
+  private static final int CHUNK_SIZE = 256;
+  private static final long THROUGHPUT_PUBLISH_INTERVAL_MS = TimeUnit.SECONDS.toMillis(10);
+
+  private final BlockingQueue<DecodedBatch> _batchQueue;
+  private final BlockingQueue<DecodeContext> _idleDecodeContexts;
+  private final List<DecodeContext> _decodeContexts;
+  private final ExecutorService _decodeExecutorService;
+  private final ServerMetrics _serverMetrics;
+  private final String _metricKeyName;
+
+  private final StageStats _fetchStats = new StageStats();
+  private final StageStats _decodeStats = new StageStats();
+  private final StageStats _indexStats = new StageStats();
+  private long _lastPublishTimeMs = System.currentTimeMillis();
+
+  // Last batch taken by the index stage, which might still be decoding when the consumption stops
+  private DecodedBatch _lastPolledBatch;
+
+  /**
+   * @param decoders One message decoder per decode thread
+   * @param schema Schema of the table, used to transform the decoded rows
+   * @param queueCapacity Maximum number of fetched batches waiting to be indexed
+   * @param serverMetrics Server metrics to publish the throughput of the stages to
+   * @param metricKeyName Key of the consumed partition in the server metrics
+   */
+  public KafkaConsumptionPipeline(List<KafkaMessageDecoder> decoders, Schema schema, int queueCapacity,
+      ServerMetrics serverMetrics, String metricKeyName) {
+    Preconditions.checkArgument(!decoders.isEmpty(), "At least one decoder is required");
+    Preconditions.checkArgument(queueCapacity > 0, "Illegal queue capacity: %s", queueCapacity);
+    int numDecodeThreads = decoders.size();
+    _batchQueue = new ArrayBlockingQueue<>(queueCapacity);
+    _idleDecodeContexts = new ArrayBlockingQueue<>(numDecodeThreads);
+    _decodeContexts = new ArrayList<>(numDecodeThreads);
+    for (KafkaMessageDecoder decoder : decoders) {
+      DecodeContext decodeContext = new DecodeContext(decoder, new PlainFieldExtractor(schema));
+      _decodeContexts.add(decodeContext);
+      _idleDecodeContexts.add(decodeContext);
+    }
+    _decodeExecutorService =
+        Executors.newFixedThreadPool(numDecodeThreads, new NamedThreadFactory("kafka-decoder-" + metricKeyName));
+    _serverMetrics = serverMetrics;
+    _metricKeyName = metricKeyName;
+  }
+
+  /**
+   * Hands over a non-empty batch of fetched messages, to be decoded and then indexed.
+   *
+   * @return false if the queue stayed full for the whole timeout, in which case the batch was not accepted
+   */
+  public boolean offer(List<MessageAndOffset> messages, long highWatermark, long timeout, TimeUnit timeUnit)
+      throws InterruptedException {
+    Preconditions.checkArgument(!messages.isEmpty(), "Cannot offer an empty batch");
+    DecodedBatch batch = new DecodedBatch(messages, highWatermark);
+    if (!_batchQueue.offer(batch, timeout, timeUnit)) {
+      return false;
+    }
+    for (FutureTask<GenericRow[]> chunk : batch._chunks) {
+      _decodeExecutorService.execute(chunk);
+    }
+    return true;
+  }
+
+  /**
+   * Takes the next batch in fetch order, waiting up to the timeout for one to be available.
+   *
+   * @return the next batch, or null if none was fetched within the timeout
+   */
+  public DecodedBatch poll(long timeout, TimeUnit timeUnit) throws InterruptedException {
+    DecodedBatch batch = _batchQueue.poll(timeout, timeUnit);
+    if (batch != null) {
+      _lastPolledBatch = batch;
+    }
+    return batch;
+  }
+
+  /**
+   * Discards all the batches that were not indexed yet, and waits for the decode threads to be idle.
+   * <p>
+   * Must be called by the index stage once the fetch stage has stopped, before consuming again from a new offset.
+   */
+  public void clear() {
+    List<DecodedBatch> batches = new ArrayList<>(_batchQueue.size() + 1);
+    if (_lastPolledBatch != null) {
+      batches.add(_lastPolledBatch);
+      _lastPolledBatch = null;
+    }
+    _batchQueue.drainTo(batches);
+    for (DecodedBatch batch : batches) {
+      for (FutureTask<GenericRow[]> chunk : batch._chunks) {
+        try {
+          Uninterruptibles.getUninterruptibly(chunk);
+        } catch (ExecutionException e) {
+          // Ignored, the rows of the discarded batches are never indexed
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds the counters of the field extractors of the decode threads to the given field extractor, and resets them.
+   * <p>
+   * Must only be called while the decode threads are idle, i.e. after {@link #clear()}.
+   */
+  public void drainFieldExtractorCounters(PlainFieldExtractor destination) {
+    for (DecodeContext decodeContext : _decodeContexts) {
+      destination.drainCountersFrom(decodeContext._fieldExtractor);
+    }
+  }
+
+  public void recordFetch(int numMessages, long timeNs) {
+    _fetchStats.record(numMessages, timeNs);
+  }
+
+  public void recordIndex(int numMessages, long timeNs) {
+    _indexStats.record(numMessages, timeNs);
+  }
+
+  /**
+   * Publishes the throughput of each stage, in messages per second of processing time, if it was not published within
+   * the last publishing interval. The throughput of a stage is its capacity, so the stage with the lowest throughput is
+   * the one limiting the consumption.
+   */
+  public void maybePublishThroughput() {
+    long now = System.currentTimeMillis();
+    if (now - _lastPublishTimeMs < THROUGHPUT_PUBLISH_INTERVAL_MS) {
+      return;
+    }
+    _lastPublishTimeMs = now;
+    _serverMetrics.setValueOfTableGauge(_metricKeyName, ServerGauge.REALTIME_PIPELINE_FETCH_THROUGHPUT,
+        _fetchStats.getAndResetThroughput(1));
+    _serverMetrics.setValueOfTableGauge(_metricKeyName, ServerGauge.REALTIME_PIPELINE_DECODE_THROUGHPUT,
+        _decodeStats.getAndResetThroughput(_decodeContexts.size()));
+    _serverMetrics.setValueOfTableGauge(_metricKeyName, ServerGauge.REALTIME_PIPELINE_INDEX_THROUGHPUT,
+        _indexStats.getAndResetThroughput(1));
+  }
+
+  public void shutdown() {
+    _decodeExecutorService.shutdownNow();
+  }
+
+  private GenericRow[] decode(List<MessageAndOffset> messages, int startIndex, int endIndex)
+      throws InterruptedException {
+    long startTimeNs = System.nanoTime();
+    DecodeContext decodeContext = _idleDecodeContexts.take();
+    try {
+      GenericRow[] rows = new GenericRow[endIndex - startIndex];
+      for (int i = startIndex; i < endIndex; i++) {
+        Message message = messages.get(i).message();
+        ByteBuffer payload = message.payload();
+        decodeContext._decodedRow = GenericRow.createOrReuseRow(decodeContext._decodedRow);
+        GenericRow decodedRow = decodeContext._decoder.decode(payload.array(), payload.arrayOffset(),
+            message.payloadSize(), decodeContext._decodedRow);
+        if (decodedRow != null) {
+          rows[i - startIndex] = decodeContext._fieldExtractor.transform(decodedRow, new GenericRow());
+        }
+      }
+      return rows;
+    } finally {
+      _idleDecodeContexts.add(decodeContext);
+      _decodeStats.record(endIndex - startIndex, System.nanoTime() - startTimeNs);
+    }
+  }
+
+  /**
+   * Batch of fetched messages, along with the rows decoded from them.
+   */
+  public class DecodedBatch {
+    private final List<MessageAndOffset> _messages;
+    private final long _highWatermark;
+    private final List<FutureTask<GenericRow[]>> _chunks;
+
+    private DecodedBatch(final List<MessageAndOffset> messages, long highWatermark) {
+      _messages = messages;
+      _highWatermark = highWatermark;
+      int numMessages = messages.size();
+      _chunks = new ArrayList<>((numMessages + CHUNK_SIZE - 1) / CHUNK_SIZE);
+      for (int i = 0; i < numMessages; i += CHUNK_SIZE) {
+        final int startIndex = i;
+        final int endIndex = Math.min(i + CHUNK_SIZE, numMessages);
+        _chunks.add(new FutureTask<>(new Callable<GenericRow[]>() {
+          @Override
+          public GenericRow[] call() throws Exception {
+            return decode(messages, startIndex, endIndex);
+          }
+        }));
+      }
+    }
+
+    public int getNumMessages() {
+      return _messages.size();
+    }
+
+    public long getHighWatermark() {
+      return _highWatermark;
+    }
+
+    public long getOffset(int index) {
+      return _messages.get(index).offset();
+    }
+
+    public long getNextOffset(int index) {
+      return _messages.get(index).nextOffset();
+    }
+
+    /**
+     * Returns the transformed row of the message at the given index, waiting for it to be decoded.
+     *
+     * @return the transformed row, or null if the message could not be decoded
+     */
+    public GenericRow getRow(int index) throws InterruptedException {
+      try {
+        return _chunks.get(index / CHUNK_SIZE).get()[index % CHUNK_SIZE];
+      } catch (ExecutionException e) {
+        throw new RuntimeException("Caught exception while decoding message at offset " + getOffset(index),
+            e.getCause());
+      }
+    }
+  }
+
+  /**
+   * Decoder and field extractor used by one decode thread at a time, as neither of them is thread safe.
+   */
+  private static class DecodeContext {
+    private final KafkaMessageDecoder _decoder;
+    private final PlainFieldExtractor _fieldExtractor;
+    private GenericRow _decodedRow;
+
+    private DecodeContext(KafkaMessageDecoder decoder, PlainFieldExtractor fieldExtractor) {
+      _decoder = decoder;
+      _fieldExtractor = fieldExtractor;
+    }
+  }
+
+  /**
+   * Number of messages processed by a stage and the time spent processing them since the last publication.
+   */
+  private static class StageStats {
+    private final AtomicLong _numMessages = new AtomicLong();
+    private final AtomicLong _timeNs = new AtomicLong();
+
+    private void record(long numMessages, long timeNs) {
+      _numMessages.addAndGet(numMessages);
+      _timeNs.addAndGet(timeNs);
+    }
+
+    private long getAndResetThroughput(int parallelism) {
+      long numMessages = _numMessages.getAndSet(0L);
+      long timeNs = _timeNs.getAndSet(0L);
+      if (timeNs == 0L) {
+        return 0L;
+      }
+      return numMessages * parallelism * TimeUnit.SECONDS.toNanos(1) / timeNs;
+    }
+  }
+}
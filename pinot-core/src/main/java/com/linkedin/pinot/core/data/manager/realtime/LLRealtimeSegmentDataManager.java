@@ -19,6 +19,7 @@ package com.linkedin.pinot.core.data.manager.realtime;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -41,6 +42,7 @@ import com.linkedin.pinot.common.metadata.stream.KafkaStreamMetadata;
 import com.linkedin.pinot.common.metrics.ServerGauge;
 import com.linkedin.pinot.common.metrics.ServerMeter;
 import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.metrics.ServerTimer;
 import com.linkedin.pinot.common.protocols.SegmentCompletionProtocol;
 import com.linkedin.pinot.common.utils.CommonConstants;
 import com.linkedin.pinot.common.utils.LLCSegmentName;
@@ -85,7 +87,8 @@ public class LLRealtimeSegmentDataManager extends SegmentDataManager {
     CONSUMING_TO_ONLINE,
 
     // We have been asked by the controller to retain the segment we have in memory at the current offset.
-    // We should build the segment, and replace it with the in-memory segment.
+    // We should build the segment, and replace it with the in-memory segment, unless downloading the committed
+    // segment is estimated to be faster, in which case we go to DISCARDED state and download it when going ONLINE.
     RETAINING,
 
     // We have been asked by the controller to commit the segment at the current offset. Build the segment
@@ -125,12 +128,15 @@ public class LLRealtimeSegmentDataManager extends SegmentDataManager {
   private static final long TIME_EXTENSION_ON_EMPTY_SEGMENT_HOURS = 1;
   private static final int MSG_COUNT_THRESHOLD_FOR_LOG = 100000;
   private final int MAX_CONSECUTIVE_ERROR_COUNT = 5;
+  private static final long PIPELINE_POLL_TIMEOUT_MILLIS = 100L;
 
   private final LLCRealtimeSegmentZKMetadata _segmentZKMetadata;
   private final AbstractTableConfig _tableConfig;
   private final RealtimeTableDataManager _realtimeTableDataManager;
+  private final SegmentCompletionCostModel _completionCostModel;
   private final KafkaMessageDecoder _messageDecoder;
   private final int _segmentMaxRowCount;
+  private final long _memoryThresholdToFlushSegment;
   private final String _resourceDataDir;
   private final Schema _schema;
   private final String _metricKeyName;
@@ -159,6 +165,8 @@ public class LLRealtimeSegmentDataManager extends SegmentDataManager {
   final String _clientId;
   private final LLCSegmentName _segmentName;
   private final PlainFieldExtractor _fieldExtractor;
+  // Decode stage of the pipelined consumption, null if the messages are decoded serially by the consumer thread
+  private final KafkaConsumptionPipeline _consumptionPipeline;
   private SimpleConsumerWrapper _consumerWrapper = null;
   private final File _resourceTmpDir;
   private final String _tableName;
@@ -199,6 +207,14 @@ public class LLRealtimeSegmentDataManager extends SegmentDataManager {
           segmentLogger.info("Stopping consumption due to row limit nRows={} maxNRows={}", _numRowsConsumed,
               _segmentMaxRowCount);
           return true;
+        } else {
+          long memoryUsed = _realtimeSegment.getMemoryUsedBytesEstimate();
+          long memoryThreshold = getMemoryThresholdToFlushSegment();
+          if (memoryUsed >= memoryThreshold) {
+            segmentLogger.info("Stopping consumption due to memory limit memoryUsed={} maxMemory={} numRows={}",
+                memoryUsed, memoryThreshold, _numRowsConsumed);
+            return true;
+          }
         }
         return false;
 
@@ -238,6 +254,19 @@ public class LLRealtimeSegmentDataManager extends SegmentDataManager {
     }
   }
 
+  /**
+   * Returns the estimated memory used by the segment to stop consuming at: the memory threshold of the table, or the
+   * share of the server memory budget of the segment if lower, or Long.MAX_VALUE if none is defined.
+   */
+  private long getMemoryThresholdToFlushSegment() {
+    long memoryThreshold = _memoryThresholdToFlushSegment > 0 ? _memoryThresholdToFlushSegment : Long.MAX_VALUE;
+    long memoryBudget = _realtimeSegment.getMemoryBudgetInBytes();
+    if (memoryBudget > 0) {
+      memoryThreshold = Math.min(memoryThreshold, memoryBudget);
+    }
+    return memoryThreshold;
+  }
+
   private void handleTransientKafkaErrors(Exception e) throws  Exception {
     consecutiveErrorCount++;
     if (consecutiveErrorCount > MAX_CONSECUTIVE_ERROR_COUNT) {
@@ -253,6 +282,24 @@ public class LLRealtimeSegmentDataManager extends SegmentDataManager {
   protected boolean consumeLoop() throws Exception {
     _fieldExtractor.resetCounters();
 
+    if (_consumptionPipeline == null) {
+      consumeSerially();
+    } else {
+      consumePipelined();
+    }
+
+    _serverMetrics.addMeteredTableValue(_metricKeyName, ServerMeter.ROWS_WITH_ERRORS,
+        (long) _fieldExtractor.getTotalErrors());
+    _serverMetrics.addMeteredTableValue(_metricKeyName, ServerMeter.ROWS_NEEDING_CONVERSIONS,
+        (long) _fieldExtractor.getTotalConversions());
+    _serverMetrics.addMeteredTableValue(_metricKeyName, ServerMeter.ROWS_WITH_NULL_VALUES,
+        (long) _fieldExtractor.getTotalNulls());
+    _serverMetrics.addMeteredTableValue(_metricKeyName, ServerMeter.COLUMNS_WITH_NULL_VALUES,
+        (long) _fieldExtractor.getTotalNullCols());
+    return true;
+  }
+
+  private void consumeSerially() throws Exception {
     final long _endOffset = Long.MAX_VALUE; // No upper limit on Kafka offset
     segmentLogger.info("Starting consumption loop start offset {}, finalOffset {}", _currentOffset, _finalOffset);
     while(!_shouldStop && !endCriteriaReached()) {
@@ -285,16 +332,83 @@ public class LLRealtimeSegmentDataManager extends SegmentDataManager {
 
       processKafkaEvents(messagesAndOffsets, highWatermark);
     }
+  }
 
-    _serverMetrics.addMeteredTableValue(_metricKeyName, ServerMeter.ROWS_WITH_ERRORS,
-        (long) _fieldExtractor.getTotalErrors());
-    _serverMetrics.addMeteredTableValue(_metricKeyName, ServerMeter.ROWS_NEEDING_CONVERSIONS,
-        (long) _fieldExtractor.getTotalConversions());
-    _serverMetrics.addMeteredTableValue(_metricKeyName, ServerMeter.ROWS_WITH_NULL_VALUES,
-        (long) _fieldExtractor.getTotalNulls());
-    _serverMetrics.addMeteredTableValue(_metricKeyName, ServerMeter.COLUMNS_WITH_NULL_VALUES,
-        (long) _fieldExtractor.getTotalNullCols());
-    return true;
+  /**
+   * Consumes with the fetch, decode and index stages running concurrently: a fetcher thread fetches batches of
+   * messages and hands them over to the decode threads of the consumption pipeline, while this thread indexes the
+   * decoded rows in offset order, checking the end criteria after each message exactly as the serial consumption does.
+   * Batches fetched past the point where the consumption stops are discarded, and fetched again from the current
+   * offset by the next call.
+   */
+  private void consumePipelined() throws Exception {
+    segmentLogger.info("Starting pipelined consumption loop start offset {}, finalOffset {}", _currentOffset,
+        _finalOffset);
+    PartitionFetcher fetcher = new PartitionFetcher(_currentOffset);
+    Thread fetcherThread = new Thread(fetcher, _segmentNameStr + "-fetcher");
+    fetcherThread.start();
+    try {
+      while (!_shouldStop && !endCriteriaReached()) {
+        KafkaConsumptionPipeline.DecodedBatch batch =
+            _consumptionPipeline.poll(PIPELINE_POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        if (batch != null) {
+          processDecodedBatch(batch);
+        } else if (fetcher._exception != null) {
+          throw fetcher._exception;
+        }
+      }
+    } finally {
+      fetcher._stopped = true;
+      Uninterruptibles.joinUninterruptibly(fetcherThread);
+      _consumptionPipeline.clear();
+      _consumptionPipeline.drainFieldExtractorCounters(_fieldExtractor);
+    }
+  }
+
+  private void processDecodedBatch(KafkaConsumptionPipeline.DecodedBatch batch) throws InterruptedException {
+    int numMessages = batch.getNumMessages();
+    int indexedMessageCount = 0;
+    int kafkaMessageCount = 0;
+    long indexTimeNs = 0L;
+    boolean canTakeMore = true;
+    while (!_shouldStop && !endCriteriaReached() && kafkaMessageCount < numMessages) {
+      if (!canTakeMore) {
+        // See processKafkaEvents() for the cases where this can happen
+        segmentLogger.error("Buffer full with {} rows consumed (row limit {})", _numRowsConsumed, _segmentMaxRowCount);
+        throw new RuntimeException("Realtime segment full");
+      }
+
+      // Update lag metric on the first message of each batch
+      if (kafkaMessageCount == 0) {
+        long offsetDifference = batch.getHighWatermark() - batch.getOffset(0);
+        _serverMetrics.setValueOfTableGauge(_metricKeyName, ServerGauge.KAFKA_PARTITION_OFFSET_LAG, offsetDifference);
+      }
+
+      GenericRow row = batch.getRow(kafkaMessageCount);
+      if (row != null) {
+        long indexStartTimeNs = System.nanoTime();
+        canTakeMore = _realtimeSegment.index(row);
+        indexTimeNs += System.nanoTime() - indexStartTimeNs;
+        indexedMessageCount++;
+      }
+
+      _currentOffset = batch.getNextOffset(kafkaMessageCount);
+      _numRowsConsumed++;
+      kafkaMessageCount++;
+    }
+    _serverMetrics.addMeteredTableValue(_metricKeyName, ServerMeter.REALTIME_ROWS_CONSUMED, indexedMessageCount);
+    if (kafkaMessageCount != indexedMessageCount) {
+      _serverMetrics.addMeteredTableValue(_metricKeyName, ServerMeter.INVALID_REALTIME_ROWS_DROPPED,
+          kafkaMessageCount - indexedMessageCount);
+    }
+    _consumptionPipeline.recordIndex(kafkaMessageCount, indexTimeNs);
+    updateCurrentDocumentCountMetrics();
+    if (kafkaMessageCount != 0) {
+      segmentLogger.debug("Indexed {} messages ({} messages read from Kafka) current offset {}", indexedMessageCount,
+          kafkaMessageCount, _currentOffset);
+      _serverMetrics.setValueOfTableGauge(_metricKeyName, ServerGauge.HIGHEST_KAFKA_OFFSET_CONSUMED, _currentOffset);
+    }
+    _consumptionPipeline.maybePublishThroughput();
   }
 
   private void processKafkaEvents(Iterable<MessageAndOffset> messagesAndOffsets, Long highWatermark) {
@@ -371,6 +485,64 @@ public class LLRealtimeSegmentDataManager extends SegmentDataManager {
     }
   }
 
+  /**
+   * Fetch stage of the pipelined consumption, which fetches batches of messages from Kafka starting at a given offset,
+   * and hands them over to the consumption pipeline until it is stopped or hits a permanent error.
+   */
+  private class PartitionFetcher implements Runnable {
+    private final long _fetchStartOffset;
+    private volatile boolean _stopped = false;
+    private volatile Exception _exception = null;
+
+    private PartitionFetcher(long fetchStartOffset) {
+      _fetchStartOffset = fetchStartOffset;
+    }
+
+    @Override
+    public void run() {
+      long fetchOffset = _fetchStartOffset;
+      try {
+        while (!_stopped) {
+          long fetchStartTimeNs = System.nanoTime();
+          Pair<Iterable<MessageAndOffset>, Long> messagesAndWatermark;
+          try {
+            messagesAndWatermark = _consumerWrapper.fetchMessagesAndHighWatermark(fetchOffset, Long.MAX_VALUE,
+                _kafkaStreamMetadata.getKafkaFetchTimeoutMillis());
+            consecutiveErrorCount = 0;
+          } catch (SimpleConsumerWrapper.PermanentConsumerException e) {
+            segmentLogger.warn("Kafka permanent exception when fetching messages, stopping consumption", e);
+            throw e;
+          } catch (Exception e) {
+            // Timeouts and unknown exceptions from Kafka are treated as transient exceptions, as in consumeSerially()
+            handleTransientKafkaErrors(e);
+            continue;
+          }
+
+          List<MessageAndOffset> messages = new ArrayList<>();
+          for (MessageAndOffset messageAndOffset : messagesAndWatermark.getLeft()) {
+            messages.add(messageAndOffset);
+          }
+          _consumptionPipeline.recordFetch(messages.size(), System.nanoTime() - fetchStartTimeNs);
+          if (messages.isEmpty()) {
+            // If there were no messages to be fetched from Kafka, wait for a little bit as to avoid hammering the
+            // Kafka broker
+            Uninterruptibles.sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+            continue;
+          }
+
+          boolean offered = false;
+          while (!_stopped && !offered) {
+            offered = _consumptionPipeline.offer(messages, messagesAndWatermark.getRight(),
+                PIPELINE_POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+          }
+          fetchOffset = messages.get(messages.size() - 1).nextOffset();
+        }
+      } catch (Exception e) {
+        _exception = e;
+      }
+    }
+  }
+
   public class PartitionConsumer implements Runnable {
     public void run() {
       long initialConsumptionEnd = 0L;
@@ -437,6 +609,13 @@ public class LLRealtimeSegmentDataManager extends SegmentDataManager {
             case KEEP:
               _serverMetrics.addMeteredTableValue(_metricKeyName, ServerMeter.LLC_CONTROLLER_RESPONSE_KEEP, 1);
               _state = State.RETAINING;
+              // Once kept, the committed segment has the rows held in memory
+              if (shouldDownload(_realtimeSegment.getRawDocumentCount())) {
+                // Keep serving the in-memory segment, and download the committed one when the online transition
+                // comes in.
+                _state = State.DISCARDED;
+                break;
+              }
               success = buildSegmentAndReplace();
               if (success) {
                 _state = State.RETAINED;
@@ -506,6 +685,7 @@ public class LLRealtimeSegmentDataManager extends SegmentDataManager {
     RealtimeSegmentConverter converter =
         new RealtimeSegmentConverter(_realtimeSegment, tempSegmentFolder.getAbsolutePath(), _schema,
             _segmentZKMetadata.getTableName(), _segmentZKMetadata.getSegmentName(), _sortedColumn, _invertedIndexColumns);
+    converter.setSegmentPartitionConfig(_tableConfig.getIndexingConfig().getSegmentPartitionConfig());
 
     logStatistics();
     segmentLogger.info("Trying to build segment");
@@ -523,6 +703,8 @@ public class LLRealtimeSegmentDataManager extends SegmentDataManager {
     FileUtils.deleteQuietly(destDir);
     try {
       FileUtils.moveDirectory(tempSegmentFolder.listFiles()[0], destDir);
+      _completionCostModel.recordBuild(_realtimeSegment.getRawDocumentCount(), buildEndTime - buildStartTime,
+          FileUtils.sizeOfDirectory(destDir));
       if (buildTgz) {
         TarGzCompressionUtils.createTarGzOfDirectory(destDir.getAbsolutePath());
       }
@@ -563,14 +745,37 @@ public class LLRealtimeSegmentDataManager extends SegmentDataManager {
   }
 
   protected boolean buildSegmentAndReplace() {
+    final long startTimeMs = now();
     boolean success = buildSegment(false);
     if (!success) {
       return success;
     }
     _realtimeTableDataManager.replaceLLSegment(_segmentZKMetadata.getSegmentName());
+    _serverMetrics.addTimedTableValue(_tableName, ServerTimer.LLC_SEGMENT_COMPLETION_BUILD_TIME_MS,
+        now() - startTimeMs, TimeUnit.MILLISECONDS);
     return true;
   }
 
+  /**
+   * Returns true if downloading the committed segment, of the given number of rows, is estimated to be faster than
+   * building it locally, which requires to hold the same rows once caught up with the committed segment. The time to
+   * catch up is not estimated, which leans towards building locally when rows are still to be consumed.
+   */
+  private boolean shouldDownload(long numCommittedRows) {
+    long buildTimeMs = _completionCostModel.estimateBuildTimeMs(numCommittedRows);
+    long downloadTimeMs = _completionCostModel.estimateDownloadTimeMs(numCommittedRows);
+    boolean shouldDownload = _completionCostModel.shouldDownload(numCommittedRows, numCommittedRows);
+    segmentLogger.info("Estimated build time {} ms, download time {} ms for {} rows, {}", buildTimeMs, downloadTimeMs,
+        numCommittedRows, shouldDownload ? "downloading" : "building");
+    return shouldDownload;
+  }
+
+  private long getNumCommittedRows(LLCRealtimeSegmentZKMetadata metadata) {
+    long numCommittedRows = metadata.getTotalRawDocs();
+    // Fall back to the rows held in memory if the committed row count is not in the segment ZK metadata
+    return numCommittedRows > 0 ? numCommittedRows : _realtimeSegment.getRawDocumentCount();
+  }
+
   protected void hold() {
     try {
       Thread.sleep(SegmentCompletionProtocol.MAX_HOLD_TIME_MS);
@@ -628,14 +833,21 @@ public class LLRealtimeSegmentDataManager extends SegmentDataManager {
           downloadSegmentAndReplace(llcMetadata);
         } else if (_currentOffset == endOffset) {
           segmentLogger.info("Current offset {} matches offset in zk {}. Replacing segment", _currentOffset, endOffset);
-          buildSegmentAndReplace();
+          buildOrDownloadSegmentAndReplace(llcMetadata);
+        } else if (shouldDownload(getNumCommittedRows(llcMetadata))) {
+          segmentLogger.info("Downloading to replace instead of catching up from offset {} to {}", _currentOffset,
+              endOffset);
+          downloadSegmentAndReplace(llcMetadata);
         } else {
           segmentLogger.info("Attempting to catch up from offset {} to {} ", _currentOffset, endOffset);
           boolean success = catchupToFinalOffset(endOffset,
               TimeUnit.MILLISECONDS.convert(_maxTimeForConsumingToOnlineSec, TimeUnit.SECONDS));
           if (success) {
             segmentLogger.info("Caught up to offset {}", _currentOffset);
-            buildSegmentAndReplace();
+            if (!buildSegmentAndReplace()) {
+              segmentLogger.info("Could not build segment. Downloading to replace");
+              downloadSegmentAndReplace(llcMetadata);
+            }
           } else {
             segmentLogger.info("Could not catch up to offset (current = {}). Downloading to replace", _currentOffset);
             downloadSegmentAndReplace(llcMetadata);
@@ -649,6 +861,17 @@ public class LLRealtimeSegmentDataManager extends SegmentDataManager {
     }
   }
 
+  // Replaces the in-memory segment, which keeps serving queries until then, with the committed segment built locally
+  // or downloaded, whichever is estimated to be faster. Falls back to download if the segment cannot be built.
+  private void buildOrDownloadSegmentAndReplace(LLCRealtimeSegmentZKMetadata metadata) {
+    if (shouldDownload(getNumCommittedRows(metadata))) {
+      downloadSegmentAndReplace(metadata);
+    } else if (!buildSegmentAndReplace()) {
+      segmentLogger.info("Could not build segment. Downloading to replace");
+      downloadSegmentAndReplace(metadata);
+    }
+  }
+
   protected void downloadSegmentAndReplace(LLCRealtimeSegmentZKMetadata metadata) {
     _realtimeTableDataManager.downloadAndReplaceSegment(_segmentNameStr, metadata);
   }
@@ -685,6 +908,9 @@ public class LLRealtimeSegmentDataManager extends SegmentDataManager {
       segmentLogger.error("Could not stop consumer thread");
     }
     _realtimeSegment.destroy();
+    if (_consumptionPipeline != null) {
+      _consumptionPipeline.shutdown();
+    }
     try {
       _consumerWrapper.close();
     } catch (Exception e) {
@@ -728,6 +954,8 @@ public class LLRealtimeSegmentDataManager extends SegmentDataManager {
     _segmentZKMetadata = (LLCRealtimeSegmentZKMetadata) segmentZKMetadata;
     _tableConfig = tableConfig;
     _realtimeTableDataManager = realtimeTableDataManager;
+    SegmentCompletionCostModel completionCostModel = realtimeTableDataManager.getSegmentCompletionCostModel();
+    _completionCostModel = completionCostModel != null ? completionCostModel : new SegmentCompletionCostModel();
     _resourceDataDir = resourceDataDir;
     _schema = schema;
     _serverMetrics = serverMetrics;
@@ -786,6 +1014,7 @@ public class LLRealtimeSegmentDataManager extends SegmentDataManager {
     }
 
     _segmentMaxRowCount = segmentMaxRowCount;
+    _memoryThresholdToFlushSegment = kafkaStreamProviderConfig.getMemoryThresholdToFlushSegment();
 
     // Start new realtime segment
     _realtimeSegment = new RealtimeSegmentImpl(schema, _segmentMaxRowCount, tableConfig.getTableName(),
@@ -796,6 +1025,20 @@ public class LLRealtimeSegmentDataManager extends SegmentDataManager {
     _messageDecoder = kafkaStreamProviderConfig.getDecoder();
     _clientId = _kafkaPartitionId + "-" + NetUtil.getHostnameOrAddress();
 
+    // Create the decode stage of the pipelined consumption, with one message decoder per decode thread
+    int numDecodeThreads = _kafkaStreamMetadata.getKafkaDecodeThreads();
+    if (numDecodeThreads > 0) {
+      List<KafkaMessageDecoder> decoders = new ArrayList<>(numDecodeThreads);
+      for (int i = 0; i < numDecodeThreads; i++) {
+        decoders.add(kafkaStreamProviderConfig.getDecoder());
+      }
+      _consumptionPipeline = new KafkaConsumptionPipeline(decoders, schema,
+          _kafkaStreamMetadata.getKafkaPipelineQueueSize(), _serverMetrics, _metricKeyName);
+      segmentLogger.info("Decoding messages with {} threads", numDecodeThreads);
+    } else {
+      _consumptionPipeline = null;
+    }
+
     // Create field extractor
     _fieldExtractor = (PlainFieldExtractor) FieldExtractorFactory.getPlainFieldExtractor(schema);
     makeConsumerWrapper();
@@ -862,6 +1105,10 @@ public class LLRealtimeSegmentDataManager extends SegmentDataManager {
     _serverMetrics.addValueToTableGauge(_tableName, ServerGauge.DOCUMENT_COUNT, (currentRawDocs - _lastUpdatedRawDocuments
         .get()));
     _lastUpdatedRawDocuments.set(currentRawDocs);
+    _serverMetrics.setValueOfTableGauge(_metricKeyName, ServerGauge.REALTIME_OFFHEAP_MEMORY_ALLOCATED,
+        _realtimeSegment.getOffHeapMemoryAllocatedBytes());
+    _serverMetrics.setValueOfTableGauge(_metricKeyName, ServerGauge.REALTIME_SEGMENT_MEMORY_USED,
+        _realtimeSegment.getMemoryUsedBytesEstimate());
     final long now = now();
     final int rowsConsumed = _numRowsConsumed - _lastConsumedCount;
     final long prevTime = _lastConsumedCount == 0 ? _consumeStartTime : _lastLogTime;
@@ -16,9 +16,11 @@
 package com.linkedin.pinot.core.data.manager.realtime;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.io.FileUtils;
 import org.apache.helix.ZNRecord;
 import org.apache.helix.store.zk.ZkHelixPropertyStore;
@@ -32,6 +34,7 @@ import com.linkedin.pinot.common.metadata.instance.InstanceZKMetadata;
 import com.linkedin.pinot.common.metadata.segment.LLCRealtimeSegmentZKMetadata;
 import com.linkedin.pinot.common.metadata.segment.RealtimeSegmentZKMetadata;
 import com.linkedin.pinot.common.metadata.segment.SegmentZKMetadata;
+import com.linkedin.pinot.common.metrics.ServerTimer;
 import com.linkedin.pinot.common.segment.SegmentMetadata;
 import com.linkedin.pinot.common.segment.fetcher.SegmentFetcherFactory;
 import com.linkedin.pinot.common.utils.CommonConstants.Segment.Realtime.Status;
@@ -44,13 +47,17 @@ import com.linkedin.pinot.core.data.manager.offline.AbstractTableDataManager;
 import com.linkedin.pinot.core.data.manager.offline.SegmentDataManager;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.indexsegment.columnar.ColumnarSegmentLoader;
+import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
 import com.linkedin.pinot.core.realtime.impl.kafka.KafkaConsumerManager;
 
 // TODO Use the refcnt object inside SegmentDataManager
 public class RealtimeTableDataManager extends AbstractTableDataManager {
-
   private final ExecutorService _segmentAsyncExecutorService = Executors
       .newSingleThreadExecutor(new NamedThreadFactory("SegmentAsyncExecutorService"));
+  private final SegmentCompletionCostModel _segmentCompletionCostModel = new SegmentCompletionCostModel();
+  // Index directories of this table on the servers sharing the file system of this server, from which the committed
+  // LLC segments are copied instead of being downloaded
+  private final List<File> _peerIndexDirs = new ArrayList<>();
   private ZkHelixPropertyStore<ZNRecord> _helixPropertyStore;
 
   public RealtimeTableDataManager() {
@@ -68,6 +75,9 @@ public class RealtimeTableDataManager extends AbstractTableDataManager {
 
   protected void doInit() {
     LOGGER = LoggerFactory.getLogger(_tableName + "-RealtimeTableDataManager");
+    for (String peerDataDir : _tableDataManagerConfig.getPeerDataDirs()) {
+      _peerIndexDirs.add(new File(peerDataDir));
+    }
   }
 
   public void notifySegmentCommitted(RealtimeSegmentZKMetadata metadata, IndexSegment segment) {
@@ -163,6 +173,24 @@ public class RealtimeTableDataManager extends AbstractTableDataManager {
   }
 
   public void downloadAndReplaceSegment(final String segmentNameStr, LLCRealtimeSegmentZKMetadata llcSegmentMetadata) {
+    final long startTimeMs = System.currentTimeMillis();
+    File indexDir = new File(_indexDir, segmentNameStr);
+    File committedSegmentDir = findPeerCommittedSegmentDir(segmentNameStr, llcSegmentMetadata);
+    if (committedSegmentDir != null) {
+      try {
+        FileUtils.deleteQuietly(indexDir);
+        FileUtils.copyDirectory(committedSegmentDir, indexDir);
+        LOGGER.info("Copied committed segment from {} to {}", committedSegmentDir, indexDir);
+        replaceLLSegment(segmentNameStr);
+        _serverMetrics.addTimedTableValue(_tableName, ServerTimer.LLC_SEGMENT_COMPLETION_LOCAL_COPY_TIME_MS,
+            System.currentTimeMillis() - startTimeMs, TimeUnit.MILLISECONDS);
+        return;
+      } catch (Exception e) {
+        // The replica may have dropped the segment in the meantime
+        LOGGER.warn("Could not copy committed segment from {}, downloading it", committedSegmentDir, e);
+      }
+    }
+
     final String uri = llcSegmentMetadata.getDownloadUrl();
     File tempSegmentFolder = new File(_indexDir, "tmp-" + segmentNameStr + "." + String.valueOf(System.currentTimeMillis()));
     File tempFile = new File(_indexDir, segmentNameStr + ".tar.gz");
@@ -171,9 +199,14 @@ public class RealtimeTableDataManager extends AbstractTableDataManager {
       LOGGER.info("Downloaded file from {} to {}; Length of downloaded file: {}", uri, tempFile, tempFile.length());
       TarGzCompressionUtils.unTar(tempFile, tempSegmentFolder);
       LOGGER.info("Uncompressed file {} into tmp dir {}", tempFile, tempSegmentFolder);
-      FileUtils.moveDirectory(tempSegmentFolder.listFiles()[0], new File(_indexDir, segmentNameStr));
+      FileUtils.deleteQuietly(indexDir);
+      FileUtils.moveDirectory(tempSegmentFolder.listFiles()[0], indexDir);
+      _segmentCompletionCostModel.recordDownload(llcSegmentMetadata.getTotalRawDocs(),
+          System.currentTimeMillis() - startTimeMs, FileUtils.sizeOfDirectory(indexDir));
       LOGGER.info("Replacing LLC Segment {}", segmentNameStr);
       replaceLLSegment(segmentNameStr);
+      _serverMetrics.addTimedTableValue(_tableName, ServerTimer.LLC_SEGMENT_COMPLETION_DOWNLOAD_TIME_MS,
+          System.currentTimeMillis() - startTimeMs, TimeUnit.MILLISECONDS);
     } catch (Exception e) {
       throw new RuntimeException(e);
     } finally {
@@ -183,6 +216,28 @@ public class RealtimeTableDataManager extends AbstractTableDataManager {
     return;
   }
 
+  /**
+   * Returns the index directory of the given committed segment on a peer server, or null if no peer has it. The CRC
+   * of the segment ensures that it is the committed one, and not for instance a segment being built.
+   */
+  private File findPeerCommittedSegmentDir(String segmentNameStr, LLCRealtimeSegmentZKMetadata llcSegmentMetadata) {
+    for (File peerIndexDir : _peerIndexDirs) {
+      File peerSegmentDir = new File(peerIndexDir, segmentNameStr);
+      if (!peerSegmentDir.isDirectory()) {
+        continue;
+      }
+      try {
+        if (Long.parseLong(new SegmentMetadataImpl(peerSegmentDir).getCrc()) == llcSegmentMetadata.getCrc()) {
+          return peerSegmentDir;
+        }
+      } catch (Exception e) {
+        // The peer may be building or dropping the segment
+        LOGGER.info("Could not read segment metadata from {}", peerSegmentDir, e);
+      }
+    }
+    return null;
+  }
+
   // Replace a committed segment.
   public void replaceLLSegment(String segmentId) {
     try {
@@ -197,6 +252,10 @@ public class RealtimeTableDataManager extends AbstractTableDataManager {
     return _serverInstance;
   }
 
+  public SegmentCompletionCostModel getSegmentCompletionCostModel() {
+    return _segmentCompletionCostModel;
+  }
+
   /**
    * Validate a schema against the table config for real-time record consumption.
    * Ideally, we should validate these things when schema is added or table is created, but either of these
@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.data.manager.realtime;
+
+/**
+ * Cost model of the two ways a replica of a low level consumer segment can replace its consuming segment with an
+ * immutable one once the segment is committed: building it locally from the rows it holds in memory, or downloading
+ * the segment committed by another replica.
+ * <p>The build time is estimated from the build time per row of the segments of the table built locally, and the
+ * download time from the size per row of the segments of the table and the download bandwidth observed so far (the
+ * sizes are the ones of the untarred segments, and the download time includes the untar time). Until the build time
+ * and the size per row have been observed, nothing is estimated and the segment is built locally.
+ * <p>Shared by all the segments of a realtime table, thread-safe.
+ */
+public class SegmentCompletionCostModel {
+  // Weight of the latest observation in the moving averages
+  private static final double SMOOTHING_FACTOR = 0.3;
+  // Download bandwidth assumed until a download is observed: 10MB/s
+  public static final double DEFAULT_DOWNLOAD_BYTES_PER_MS = 10 * 1024;
+
+  private double _buildTimeMsPerRow = -1;
+  private double _bytesPerRow = -1;
+  private double _downloadBytesPerMs = DEFAULT_DOWNLOAD_BYTES_PER_MS;
+
+  /**
+   * Records the build of a segment from the rows of a consuming segment.
+   *
+   * @param numRows Number of rows of the segment
+   * @param buildTimeMs Time taken to build the segment
+   * @param segmentSizeInBytes Size of the index directory of the segment
+   */
+  public synchronized void recordBuild(long numRows, long buildTimeMs, long segmentSizeInBytes) {
+    if (numRows <= 0) {
+      return;
+    }
+    _buildTimeMsPerRow = smooth(_buildTimeMsPerRow, (double) buildTimeMs / numRows);
+    recordSize(numRows, segmentSizeInBytes);
+  }
+
+  /**
+   * Records the download of a committed segment.
+   *
+   * @param numRows Number of rows of the segment
+   * @param downloadTimeMs Time taken to download and untar the segment
+   * @param segmentSizeInBytes Size of the untarred index directory of the segment
+   */
+  public synchronized void recordDownload(long numRows, long downloadTimeMs, long segmentSizeInBytes) {
+    if (segmentSizeInBytes > 0) {
+      _downloadBytesPerMs = smooth(_downloadBytesPerMs, (double) segmentSizeInBytes / Math.max(downloadTimeMs, 1L));
+    }
+    if (numRows > 0) {
+      recordSize(numRows, segmentSizeInBytes);
+    }
+  }
+
+  private void recordSize(long numRows, long segmentSizeInBytes) {
+    if (segmentSizeInBytes > 0) {
+      _bytesPerRow = smooth(_bytesPerRow, (double) segmentSizeInBytes / numRows);
+    }
+  }
+
+  private static double smooth(double average, double value) {
+    if (average < 0) {
+      return value;
+    }
+    return SMOOTHING_FACTOR * value + (1 - SMOOTHING_FACTOR) * average;
+  }
+
+  /**
+   * Returns the estimated time in milliseconds to build a segment of the given number of rows, -1 if unknown.
+   */
+  public synchronized long estimateBuildTimeMs(long numRows) {
+    if (_buildTimeMsPerRow < 0) {
+      return -1L;
+    }
+    return (long) (_buildTimeMsPerRow * numRows);
+  }
+
+  /**
+   * Returns the estimated time in milliseconds to download a segment of the given number of rows, -1 if unknown.
+   */
+  public synchronized long estimateDownloadTimeMs(long numRows) {
+    if (_bytesPerRow < 0) {
+      return -1L;
+    }
+    return (long) (_bytesPerRow * numRows / _downloadBytesPerMs);
+  }
+
+  /**
+   * Returns true if downloading the committed segment is estimated to be faster than building it locally.
+   *
+   * @param numRowsToBuild Number of rows to build the segment from locally
+   * @param numRowsToDownload Number of rows of the committed segment
+   */
+  public boolean shouldDownload(long numRowsToBuild, long numRowsToDownload) {
+    long buildTimeMs = estimateBuildTimeMs(numRowsToBuild);
+    long downloadTimeMs = estimateDownloadTimeMs(numRowsToDownload);
+    return buildTimeMs >= 0 && downloadTimeMs >= 0 && downloadTimeMs < buildTimeMs;
+  }
+}
@@ -15,6 +15,8 @@
  */
 package com.linkedin.pinot.core.data.readers;
 
+import com.google.common.io.ByteSource;
+import com.google.common.io.Files;
 import com.linkedin.pinot.common.Utils;
 import com.linkedin.pinot.common.data.FieldSpec;
 import com.linkedin.pinot.common.data.FieldSpec.DataType;
@@ -22,9 +24,9 @@ import com.linkedin.pinot.common.data.Schema;
 import com.linkedin.pinot.core.data.GenericRow;
 import com.linkedin.pinot.core.data.extractors.FieldExtractor;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -48,35 +50,50 @@ public class AvroRecordReader extends BaseRecordReader {
 
   private static final String COMMA = ",";
 
-  private String _fileName = null;
+  private final ByteSource _avroSource;
+  private final boolean _gzipped;
   private DataFileStream<GenericRecord> _dataStream = null;
   private FieldExtractor _schemaExtractor = null;
   private GenericRecord _genericRecord = null;
 
   public AvroRecordReader(final FieldExtractor fieldExtractor, String filePath) throws Exception {
+    this(fieldExtractor, getFileSource(filePath), filePath.endsWith("gz"));
+  }
+
+  /**
+   * Reads the Avro data from the given source, which is opened again on each rewind. This allows streaming the data
+   * from any file system without first copying it to local disk.
+   *
+   * @param fieldExtractor Field extractor
+   * @param avroSource Source of the Avro data file
+   * @param gzipped Whether the Avro data file is gzipped
+   */
+  public AvroRecordReader(FieldExtractor fieldExtractor, ByteSource avroSource, boolean gzipped) throws Exception {
     super();
     _schemaExtractor = fieldExtractor;
-    _fileName = filePath;
+    _avroSource = avroSource;
+    _gzipped = gzipped;
     super.initNullCounters(_schemaExtractor.getSchema());
     init();
     validateSchema(_schemaExtractor.getSchema());
   }
 
-  @Override
-  public void init() throws Exception {
-    final File file = new File(_fileName);
+  private static ByteSource getFileSource(String filePath) throws FileNotFoundException {
+    File file = new File(filePath);
     if (!file.exists()) {
       throw new FileNotFoundException("File is not existed!");
     }
+    return Files.asByteSource(file);
+  }
+
+  @Override
+  public void init() throws Exception {
     //_schemaExtractor = FieldExtractorFactory.get(_dataReaderSpec);
-    if (_fileName.endsWith("gz")) {
-      _dataStream =
-          new DataFileStream<GenericRecord>(new GZIPInputStream(new FileInputStream(file)),
-              new GenericDatumReader<GenericRecord>());
-    } else {
-      _dataStream =
-          new DataFileStream<GenericRecord>(new FileInputStream(file), new GenericDatumReader<GenericRecord>());
+    InputStream inputStream = _avroSource.openStream();
+    if (_gzipped) {
+      inputStream = new GZIPInputStream(inputStream);
     }
+    _dataStream = new DataFileStream<GenericRecord>(inputStream, new GenericDatumReader<GenericRecord>());
   }
 
   @Override
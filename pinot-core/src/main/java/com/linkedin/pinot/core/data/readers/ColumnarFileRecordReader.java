@@ -0,0 +1,252 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.data.readers;
+
+import com.google.common.base.Preconditions;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.core.data.GenericRow;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Base class of the record readers of the columnar file formats, where each column of the Pinot schema is read
+ * through its own {@link ColumnCursor}.
+ * <p>The rows are assembled from batches of values read from one cursor per column, and {@link #readColumn(String,
+ * int, int, Object[])} reads from a separate cursor per column, so that reading the columns does not change the
+ * position of the row iteration. The values are converted the same way as {@link AvroRecordReader} does: the nulls
+ * take the default null value of the field and are counted, and the empty multi-values hold the default null value.
+ */
+public abstract class ColumnarFileRecordReader extends BaseRecordReader implements ColumnarRecordReader {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ColumnarFileRecordReader.class);
+  private static final int ROW_READ_BATCH_SIZE = 1024;
+
+  protected final String _filePath;
+  private final Schema _schema;
+
+  // Columns of the Pinot schema present in the file, and their values for the current batch of rows
+  private final List<FieldSpec> _fieldSpecs = new ArrayList<>();
+  private final List<ColumnCursor> _rowCursors = new ArrayList<>();
+  private final List<Object[]> _rowBatch = new ArrayList<>();
+  private int _nextDocId;
+  private int _rowBatchSize;
+  private int _rowBatchIndex;
+
+  // Cursors of the columns read through readColumn, with the docId of their next value
+  private final Map<String, ColumnCursor> _columnCursors = new HashMap<>();
+  private final Map<String, Integer> _columnNextDocIds = new HashMap<>();
+
+  protected ColumnarFileRecordReader(String filePath, Schema schema) {
+    super();
+    super.initNullCounters(schema);
+    _filePath = filePath;
+    _schema = schema;
+  }
+
+  /**
+   * Returns whether the file has the given column.
+   */
+  protected abstract boolean hasColumn(String column);
+
+  /**
+   * Opens a cursor on the first value of a column of the file.
+   */
+  protected abstract ColumnCursor openCursor(String column) throws IOException;
+
+  /**
+   * Must be called by the constructors of the sub-classes once the file is opened, to find the columns of the Pinot
+   * schema present in the file.
+   */
+  protected void initColumns() {
+    for (FieldSpec fieldSpec : _schema.getAllFieldSpecs()) {
+      if (hasColumn(fieldSpec.getName())) {
+        _fieldSpecs.add(fieldSpec);
+      } else {
+        LOGGER.warn("Pinot field {} absent in file {}", fieldSpec.getName(), _filePath);
+      }
+    }
+  }
+
+  @Override
+  public void init() throws Exception {
+    closeCursors(_rowCursors);
+    _rowCursors.clear();
+    _rowBatch.clear();
+    for (FieldSpec fieldSpec : _fieldSpecs) {
+      _rowCursors.add(openCursor(fieldSpec.getName()));
+      _rowBatch.add(new Object[ROW_READ_BATCH_SIZE]);
+    }
+    _nextDocId = 0;
+    _rowBatchSize = 0;
+    _rowBatchIndex = 0;
+  }
+
+  @Override
+  public void rewind() throws Exception {
+    init();
+  }
+
+  @Override
+  public boolean hasNext() {
+    return _nextDocId < getNumDocs();
+  }
+
+  @Override
+  public Schema getSchema() {
+    return _schema;
+  }
+
+  @Override
+  public GenericRow next() {
+    return next(new GenericRow());
+  }
+
+  @Override
+  public GenericRow next(GenericRow row) {
+    if (_rowBatchIndex == _rowBatchSize) {
+      readRowBatch();
+    }
+    int numColumns = _fieldSpecs.size();
+    for (int i = 0; i < numColumns; i++) {
+      row.putField(_fieldSpecs.get(i).getName(), _rowBatch.get(i)[_rowBatchIndex]);
+    }
+    _rowBatchIndex++;
+    _nextDocId++;
+    return row;
+  }
+
+  private void readRowBatch() {
+    _rowBatchSize = Math.min(ROW_READ_BATCH_SIZE, getNumDocs() - _nextDocId);
+    _rowBatchIndex = 0;
+    int numColumns = _fieldSpecs.size();
+    try {
+      for (int i = 0; i < numColumns; i++) {
+        Object[] values = _rowBatch.get(i);
+        _rowCursors.get(i).read(values, _rowBatchSize);
+        convertValues(_fieldSpecs.get(i), values, _rowBatchSize);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Caught exception while reading records from file: " + _filePath, e);
+    }
+  }
+
+  @Override
+  public void readColumn(String column, int startDocId, int numDocs, Object[] values) throws Exception {
+    FieldSpec fieldSpec = _schema.getFieldSpecFor(column);
+    if (fieldSpec == null || !hasColumn(column)) {
+      // Same as the rows, which do not have the columns absent from the Pinot schema or the file
+      Arrays.fill(values, 0, numDocs, null);
+      return;
+    }
+    Preconditions.checkArgument(startDocId >= 0 && startDocId + numDocs <= getNumDocs(),
+        "Invalid range of documents: %s to %s for column: %s", startDocId, startDocId + numDocs, column);
+
+    // The cursors are only shared between the reads of a column, which are not concurrent
+    ColumnCursor cursor;
+    int nextDocId;
+    synchronized (_columnCursors) {
+      cursor = _columnCursors.get(column);
+      nextDocId = (cursor != null) ? _columnNextDocIds.get(column) : 0;
+      if (cursor == null || startDocId < nextDocId) {
+        // Values before the cursor are read again from the beginning of the column
+        if (cursor != null) {
+          cursor.close();
+        }
+        cursor = openCursor(column);
+        nextDocId = 0;
+        _columnCursors.put(column, cursor);
+      }
+    }
+    if (startDocId > nextDocId) {
+      cursor.skip(startDocId - nextDocId);
+    }
+    cursor.read(values, numDocs);
+    synchronized (_columnCursors) {
+      _columnNextDocIds.put(column, startDocId + numDocs);
+    }
+    convertValues(fieldSpec, values, numDocs);
+  }
+
+  private void convertValues(FieldSpec fieldSpec, Object[] values, int numValues) {
+    String column = fieldSpec.getName();
+    for (int i = 0; i < numValues; i++) {
+      Object value = values[i];
+      if (value == null) {
+        incrementNullCountFor(column);
+        if (fieldSpec.isSingleValueField()) {
+          values[i] = fieldSpec.getDefaultNullValue();
+        } else {
+          values[i] = new Object[]{AvroRecordReader.getDefaultNullValue(fieldSpec)};
+        }
+      } else if (value instanceof Object[]) {
+        Object[] multiValues = (Object[]) value;
+        if (multiValues.length == 0) {
+          values[i] = new Object[]{AvroRecordReader.getDefaultNullValue(fieldSpec)};
+        } else {
+          for (int j = 0; j < multiValues.length; j++) {
+            if (multiValues[j] == null) {
+              multiValues[j] = AvroRecordReader.getDefaultNullValue(fieldSpec);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public void close() throws Exception {
+    closeCursors(_rowCursors);
+    _rowCursors.clear();
+    synchronized (_columnCursors) {
+      closeCursors(_columnCursors.values());
+      _columnCursors.clear();
+      _columnNextDocIds.clear();
+    }
+  }
+
+  private static void closeCursors(Iterable<ColumnCursor> cursors) throws IOException {
+    for (ColumnCursor cursor : cursors) {
+      cursor.close();
+    }
+  }
+
+  /**
+   * Sequential reader of the values of a column of the file.
+   */
+  protected interface ColumnCursor extends Closeable {
+
+    /**
+     * Reads the next values of the column, as read from the file: null for missing values and Object[] for lists.
+     *
+     * @param values array the values are read into, starting at index 0
+     * @param numValues number of values to read
+     */
+    void read(Object[] values, int numValues) throws IOException;
+
+    /**
+     * Skips the next values of the column.
+     */
+    void skip(int numValues) throws IOException;
+  }
+}
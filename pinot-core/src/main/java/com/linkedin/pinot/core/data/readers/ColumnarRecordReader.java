@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.data.readers;
+
+/**
+ * Record reader for input formats stored column by column, which can also read the values of a column for a range
+ * of documents without materializing the rows.
+ * <p>The segment creation reads the columns of such readers directly, each column on its own thread, instead of
+ * iterating over the records.
+ */
+public interface ColumnarRecordReader extends RecordReader {
+
+  /**
+   * Returns the number of records of the input.
+   */
+  int getNumDocs();
+
+  /**
+   * Reads the values of a column for the documents from startDocId (inclusive) to startDocId + numDocs (exclusive),
+   * in the same representation as in the rows returned by {@link #next(com.linkedin.pinot.core.data.GenericRow)}:
+   * Object[] for multi-value columns and null for missing values.
+   * <p>Different columns can be read concurrently by different threads, and the values of a column are read in
+   * increasing docId order. Reading columns does not change the position of the row iteration.
+   *
+   * @param column column to read
+   * @param startDocId first document to read
+   * @param numDocs number of documents to read
+   * @param values array the values are read into, starting at index 0
+   */
+  void readColumn(String column, int startDocId, int numDocs, Object[] values) throws Exception;
+}
@@ -20,5 +20,7 @@ public enum FileFormat {
   GZIPPED_AVRO,
   CSV,
   JSON,
-  PINOT;
+  PINOT,
+  PARQUET,
+  ORC;
 }
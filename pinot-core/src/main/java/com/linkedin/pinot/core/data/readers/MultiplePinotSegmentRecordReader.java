@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.data.readers;
+
+import com.google.common.base.Preconditions;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.core.data.GenericRow;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Record reader reading the documents of several pinot segments with the same columns one segment after the other,
+ * e.g. to merge them into a single segment.
+ */
+public class MultiplePinotSegmentRecordReader extends BaseRecordReader implements ColumnarRecordReader {
+  private final List<PinotSegmentRecordReader> _recordReaders;
+  // DocId in the merged documents of the first document of each segment
+  private final int[] _startDocIds;
+  private final int _numDocs;
+
+  private int _currentReaderId;
+
+  public MultiplePinotSegmentRecordReader(List<File> segmentIndexDirs) throws Exception {
+    Preconditions.checkArgument(!segmentIndexDirs.isEmpty(), "No segment to read");
+    _recordReaders = new ArrayList<>(segmentIndexDirs.size());
+    _startDocIds = new int[segmentIndexDirs.size()];
+    int numDocs = 0;
+    try {
+      for (File segmentIndexDir : segmentIndexDirs) {
+        PinotSegmentRecordReader recordReader = new PinotSegmentRecordReader(segmentIndexDir);
+        _startDocIds[_recordReaders.size()] = numDocs;
+        _recordReaders.add(recordReader);
+        numDocs += recordReader.getNumDocs();
+      }
+    } catch (Exception e) {
+      close();
+      throw e;
+    }
+    _numDocs = numDocs;
+
+    Schema schema = _recordReaders.get(0).getSchema();
+    for (PinotSegmentRecordReader recordReader : _recordReaders) {
+      if (!recordReader.getSchema().getColumnNames().equals(schema.getColumnNames())) {
+        close();
+        throw new IllegalArgumentException(
+            "Segments have different columns: " + schema.getColumnNames() + " and " + recordReader.getSchema()
+                .getColumnNames());
+      }
+    }
+  }
+
+  @Override
+  public void init() throws Exception {
+    for (PinotSegmentRecordReader recordReader : _recordReaders) {
+      recordReader.init();
+    }
+    _currentReaderId = 0;
+  }
+
+  @Override
+  public void rewind() throws Exception {
+    init();
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (_currentReaderId < _recordReaders.size()) {
+      if (_recordReaders.get(_currentReaderId).hasNext()) {
+        return true;
+      }
+      _currentReaderId++;
+    }
+    return false;
+  }
+
+  /**
+   * Returns the schema of the first segment, the column names of all the segments being the same.
+   */
+  @Override
+  public Schema getSchema() {
+    return _recordReaders.get(0).getSchema();
+  }
+
+  @Override
+  public GenericRow next() {
+    return next(new GenericRow());
+  }
+
+  @Override
+  public GenericRow next(GenericRow row) {
+    hasNext();
+    return _recordReaders.get(_currentReaderId).next(row);
+  }
+
+  @Override
+  public int getNumDocs() {
+    return _numDocs;
+  }
+
+  @Override
+  public void readColumn(String column, int startDocId, int numDocs, Object[] values) throws Exception {
+    int endDocId = startDocId + numDocs;
+    Object[] segmentValues = null;
+    for (int i = 0; i < _recordReaders.size(); i++) {
+      PinotSegmentRecordReader recordReader = _recordReaders.get(i);
+      int segmentStartDocId = Math.max(startDocId, _startDocIds[i]);
+      int segmentEndDocId = Math.min(endDocId, _startDocIds[i] + recordReader.getNumDocs());
+      if (segmentStartDocId >= segmentEndDocId) {
+        continue;
+      }
+      int numSegmentDocs = segmentEndDocId - segmentStartDocId;
+      if (segmentStartDocId == startDocId) {
+        recordReader.readColumn(column, segmentStartDocId - _startDocIds[i], numSegmentDocs, values);
+      } else {
+        if (segmentValues == null || segmentValues.length < numSegmentDocs) {
+          segmentValues = new Object[numSegmentDocs];
+        }
+        recordReader.readColumn(column, segmentStartDocId - _startDocIds[i], numSegmentDocs, segmentValues);
+        System.arraycopy(segmentValues, 0, values, segmentStartDocId - startDocId, numSegmentDocs);
+      }
+    }
+  }
+
+  @Override
+  public void close() throws Exception {
+    for (PinotSegmentRecordReader recordReader : _recordReaders) {
+      recordReader.close();
+    }
+  }
+}
@@ -0,0 +1,177 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.data.readers;
+
+import com.google.common.base.Preconditions;
+import com.linkedin.pinot.common.data.Schema;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ListColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.orc.OrcFile;
+import org.apache.orc.Reader;
+import org.apache.orc.TypeDescription;
+
+
+/**
+ * Record reader for ORC files, each column being read through a row reader including that column only.
+ * <p>The ORC files must have a struct schema, the top level fields of which are the columns.
+ */
+public class OrcRecordReader extends ColumnarFileRecordReader {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final Reader _reader;
+  private final TypeDescription _fileSchema;
+  private final List<String> _fieldNames;
+  private final int _numDocs;
+
+  public OrcRecordReader(String filePath, Schema schema) throws IOException {
+    super(filePath, schema);
+    _reader = OrcFile.createReader(new Path(filePath), OrcFile.readerOptions(new Configuration()));
+    _fileSchema = _reader.getSchema();
+    Preconditions.checkState(_fileSchema.getCategory() == TypeDescription.Category.STRUCT,
+        "Unsupported ORC schema: %s in file: %s", _fileSchema, filePath);
+    _fieldNames = _fileSchema.getFieldNames();
+    long numDocs = _reader.getNumberOfRows();
+    Preconditions.checkState(numDocs <= Integer.MAX_VALUE, "Too many records: %s in file: %s", numDocs, filePath);
+    _numDocs = (int) numDocs;
+    initColumns();
+  }
+
+  @Override
+  public int getNumDocs() {
+    return _numDocs;
+  }
+
+  @Override
+  protected boolean hasColumn(String column) {
+    return _fieldNames.contains(column);
+  }
+
+  @Override
+  protected ColumnCursor openCursor(String column) throws IOException {
+    int fieldIndex = _fieldNames.indexOf(column);
+    TypeDescription fieldType = _fileSchema.getChildren().get(fieldIndex);
+
+    // Include the root struct and the field with its children
+    boolean[] include = new boolean[_fileSchema.getMaximumId() + 1];
+    include[0] = true;
+    for (int id = fieldType.getId(); id <= fieldType.getMaximumId(); id++) {
+      include[id] = true;
+    }
+    return new OrcColumnCursor(fieldIndex, fieldType, _reader.rows(_reader.options().include(include)),
+        _fileSchema.createRowBatch());
+  }
+
+  private static class OrcColumnCursor implements ColumnCursor {
+    private final int _fieldIndex;
+    private final TypeDescription _fieldType;
+    private final org.apache.orc.RecordReader _rows;
+    private final VectorizedRowBatch _batch;
+    private int _batchIndex;
+    private long _nextRow;
+
+    private OrcColumnCursor(int fieldIndex, TypeDescription fieldType, org.apache.orc.RecordReader rows,
+        VectorizedRowBatch batch) {
+      _fieldIndex = fieldIndex;
+      _fieldType = fieldType;
+      _rows = rows;
+      _batch = batch;
+      _batch.size = 0;
+    }
+
+    @Override
+    public void read(Object[] values, int numValues) throws IOException {
+      for (int i = 0; i < numValues; i++) {
+        if (_batchIndex == _batch.size) {
+          if (!_rows.nextBatch(_batch)) {
+            throw new IllegalStateException("No more rows to read for ORC column: " + _fieldIndex);
+          }
+          _batchIndex = 0;
+        }
+        values[i] = getValue(_batch.cols[_fieldIndex], _fieldType, _batchIndex++);
+      }
+      _nextRow += numValues;
+    }
+
+    @Override
+    public void skip(int numValues) throws IOException {
+      _nextRow += numValues;
+      int numBufferedValues = _batch.size - _batchIndex;
+      if (numValues <= numBufferedValues) {
+        _batchIndex += numValues;
+      } else {
+        _rows.seekToRow(_nextRow);
+        _batch.size = 0;
+        _batchIndex = 0;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      _rows.close();
+    }
+  }
+
+  /**
+   * Returns the value of a row of a column vector: null if the value is missing, Object[] for a list.
+   */
+  private static Object getValue(ColumnVector vector, TypeDescription type, int row) {
+    if (vector.isRepeating) {
+      row = 0;
+    }
+    if (!vector.noNulls && vector.isNull[row]) {
+      return null;
+    }
+    switch (type.getCategory()) {
+      case BOOLEAN:
+        return ((LongColumnVector) vector).vector[row] != 0;
+      case BYTE:
+      case SHORT:
+      case INT:
+        return (int) ((LongColumnVector) vector).vector[row];
+      case LONG:
+        return ((LongColumnVector) vector).vector[row];
+      case FLOAT:
+        return (float) ((DoubleColumnVector) vector).vector[row];
+      case DOUBLE:
+        return ((DoubleColumnVector) vector).vector[row];
+      case STRING:
+      case VARCHAR:
+      case CHAR:
+        BytesColumnVector bytesVector = (BytesColumnVector) vector;
+        return new String(bytesVector.vector[row], bytesVector.start[row], bytesVector.length[row], UTF_8);
+      case LIST:
+        ListColumnVector listVector = (ListColumnVector) vector;
+        TypeDescription elementType = type.getChildren().get(0);
+        int offset = (int) listVector.offsets[row];
+        Object[] values = new Object[(int) listVector.lengths[row]];
+        for (int i = 0; i < values.length; i++) {
+          values[i] = getValue(listVector.child, elementType, offset + i);
+        }
+        return values;
+      default:
+        throw new IllegalStateException("Unsupported ORC type: " + type);
+    }
+  }
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.data.readers;
+
+import com.google.common.base.Preconditions;
+import com.linkedin.pinot.common.data.Schema;
+import java.io.IOException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.format.converter.ParquetMetadataConverter;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.api.ReadSupport;
+import org.apache.parquet.hadoop.example.GroupReadSupport;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ParquetMetadata;
+import org.apache.parquet.schema.GroupType;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.PrimitiveType;
+import org.apache.parquet.schema.Type;
+
+
+/**
+ * Record reader for Parquet files, each column being read through a reader projected on that column only.
+ * <p>The lists are read from the standard 3-level LIST groups, the 2-level groups written by older writers, or the
+ * repeated primitive fields.
+ */
+public class ParquetRecordReader extends ColumnarFileRecordReader {
+  private final Configuration _conf = new Configuration();
+  private final Path _path;
+  private final MessageType _fileSchema;
+  private final int _numDocs;
+
+  public ParquetRecordReader(String filePath, Schema schema) throws IOException {
+    super(filePath, schema);
+    _path = new Path(filePath);
+    ParquetMetadata footer = ParquetFileReader.readFooter(_conf, _path, ParquetMetadataConverter.NO_FILTER);
+    _fileSchema = footer.getFileMetaData().getSchema();
+    long numDocs = 0;
+    for (BlockMetaData block : footer.getBlocks()) {
+      numDocs += block.getRowCount();
+    }
+    Preconditions.checkState(numDocs <= Integer.MAX_VALUE, "Too many records: %s in file: %s", numDocs, filePath);
+    _numDocs = (int) numDocs;
+    initColumns();
+  }
+
+  @Override
+  public int getNumDocs() {
+    return _numDocs;
+  }
+
+  @Override
+  protected boolean hasColumn(String column) {
+    return _fileSchema.containsField(column);
+  }
+
+  @Override
+  protected ColumnCursor openCursor(String column) throws IOException {
+    Type field = _fileSchema.getType(column);
+    Configuration conf = new Configuration(_conf);
+    conf.set(ReadSupport.PARQUET_READ_SCHEMA, new MessageType(_fileSchema.getName(), field).toString());
+    return new ParquetColumnCursor(field, ParquetReader.builder(new GroupReadSupport(), _path).withConf(conf).build());
+  }
+
+  private static class ParquetColumnCursor implements ColumnCursor {
+    private final Type _field;
+    private final ParquetReader<Group> _reader;
+
+    private ParquetColumnCursor(Type field, ParquetReader<Group> reader) {
+      _field = field;
+      _reader = reader;
+    }
+
+    @Override
+    public void read(Object[] values, int numValues) throws IOException {
+      for (int i = 0; i < numValues; i++) {
+        values[i] = getValue(nextRecord(), 0, _field);
+      }
+    }
+
+    @Override
+    public void skip(int numValues) throws IOException {
+      for (int i = 0; i < numValues; i++) {
+        nextRecord();
+      }
+    }
+
+    private Group nextRecord() throws IOException {
+      Group record = _reader.read();
+      if (record == null) {
+        throw new IllegalStateException("No more records to read for column: " + _field.getName());
+      }
+      return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+      _reader.close();
+    }
+  }
+
+  /**
+   * Returns the value of a field of a group: null if the field is missing, Object[] for a list.
+   */
+  private static Object getValue(Group group, int fieldIndex, Type field) {
+    int repetitionCount = group.getFieldRepetitionCount(fieldIndex);
+    if (field.isRepetition(Type.Repetition.REPEATED)) {
+      Object[] values = new Object[repetitionCount];
+      for (int i = 0; i < repetitionCount; i++) {
+        values[i] = getElement(group, fieldIndex, i, field);
+      }
+      return values;
+    }
+    if (repetitionCount == 0) {
+      return null;
+    }
+    if (field.isPrimitive()) {
+      return getPrimitiveValue(group, fieldIndex, 0, field.asPrimitiveType());
+    }
+
+    // LIST group, with a single repeated field holding the elements
+    GroupType listType = field.asGroupType();
+    Preconditions.checkState(
+        listType.getFieldCount() == 1 && listType.getType(0).isRepetition(Type.Repetition.REPEATED),
+        "Unsupported Parquet group type: %s", field);
+    return getValue(group.getGroup(fieldIndex, 0), 0, listType.getType(0));
+  }
+
+  /**
+   * Returns an element of a repeated field: the primitive value, or the only field of a group holding the element.
+   */
+  private static Object getElement(Group group, int fieldIndex, int index, Type field) {
+    if (field.isPrimitive()) {
+      return getPrimitiveValue(group, fieldIndex, index, field.asPrimitiveType());
+    }
+    GroupType elementType = field.asGroupType();
+    Preconditions.checkState(elementType.getFieldCount() == 1 && elementType.getType(0).isPrimitive(),
+        "Unsupported Parquet list element type: %s", field);
+    Group element = group.getGroup(fieldIndex, index);
+    if (element.getFieldRepetitionCount(0) == 0) {
+      return null;
+    }
+    return getPrimitiveValue(element, 0, 0, elementType.getType(0).asPrimitiveType());
+  }
+
+  private static Object getPrimitiveValue(Group group, int fieldIndex, int index, PrimitiveType field) {
+    switch (field.getPrimitiveTypeName()) {
+      case INT32:
+        return group.getInteger(fieldIndex, index);
+      case INT64:
+        return group.getLong(fieldIndex, index);
+      case FLOAT:
+        return group.getFloat(fieldIndex, index);
+      case DOUBLE:
+        return group.getDouble(fieldIndex, index);
+      case BOOLEAN:
+        return group.getBoolean(fieldIndex, index);
+      case BINARY:
+        return group.getString(fieldIndex, index);
+      default:
+        throw new IllegalStateException("Unsupported Parquet type: " + field);
+    }
+  }
+}
@@ -17,6 +17,7 @@ package com.linkedin.pinot.core.data.readers;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -37,10 +38,12 @@ import com.linkedin.pinot.common.data.TimeFieldSpec;
 import com.linkedin.pinot.common.data.TimeGranularitySpec;
 import com.linkedin.pinot.common.segment.ReadMode;
 import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.io.reader.ReaderContext;
 import com.linkedin.pinot.core.io.reader.SingleColumnMultiValueReader;
 import com.linkedin.pinot.core.io.reader.SingleColumnSingleValueReader;
 import com.linkedin.pinot.core.io.reader.impl.FixedByteSingleValueMultiColReader;
 import com.linkedin.pinot.core.io.reader.impl.SortedForwardIndexReader;
+import com.linkedin.pinot.core.io.reader.impl.SortedValueReaderContext;
 import com.linkedin.pinot.core.io.reader.impl.v1.FixedBitMultiValueReader;
 import com.linkedin.pinot.core.io.reader.impl.v1.FixedBitSingleValueReader;
 import com.linkedin.pinot.core.segment.index.ColumnMetadata;
@@ -60,7 +63,7 @@ import com.linkedin.pinot.core.segment.store.SegmentDirectory.Reader;
 /**
  * Record reader to read pinot segment and generate GenericRows
  */
-public class PinotSegmentRecordReader extends BaseRecordReader {
+public class PinotSegmentRecordReader extends BaseRecordReader implements ColumnarRecordReader {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(PinotSegmentRecordReader.class);
 
@@ -264,6 +267,50 @@ public class PinotSegmentRecordReader extends BaseRecordReader {
     return row;
   }
 
+  @Override
+  public int getNumDocs() {
+    return totalDocs;
+  }
+
+  @Override
+  public void readColumn(String column, int startDocId, int numDocs, Object[] values) throws Exception {
+    if (!columns.contains(column)) {
+      Arrays.fill(values, 0, numDocs, null);
+      return;
+    }
+    Dictionary dictionary = pinotDictionaryBufferMap.get(column);
+    int endDocId = startDocId + numDocs;
+
+    // The reader contexts of the sorted and multi-value forward indexes make the sequential reads cheaper than the
+    // random accesses of the row iteration
+    if (isSingleValueMap.get(column)) {
+      if (isSortedMap.get(column)) {
+        SortedForwardIndexReader fwdIndexReader = singleValueSortedReaderMap.get(column);
+        SortedValueReaderContext context = fwdIndexReader.createContext();
+        for (int docId = startDocId; docId < endDocId; docId++) {
+          values[docId - startDocId] = dictionary.get(fwdIndexReader.getInt(docId, context));
+        }
+      } else {
+        SingleColumnSingleValueReader fwdIndexReader = singleValueReaderMap.get(column);
+        for (int docId = startDocId; docId < endDocId; docId++) {
+          values[docId - startDocId] = dictionary.get(fwdIndexReader.getInt(docId));
+        }
+      }
+    } else {
+      SingleColumnMultiValueReader fwdIndexReader = multiValueReaderMap.get(column);
+      ReaderContext context = fwdIndexReader.createContext();
+      int[] dictionaryIdArray = new int[segmentMetadata.getColumnMetadataFor(column).getMaxNumberOfMultiValues()];
+      for (int docId = startDocId; docId < endDocId; docId++) {
+        int numValues = fwdIndexReader.getIntArray(docId, dictionaryIdArray, context);
+        Object[] objectArray = new Object[numValues];
+        for (int i = 0; i < numValues; i++) {
+          objectArray[i] = dictionary.get(dictionaryIdArray[i]);
+        }
+        values[docId - startDocId] = objectArray;
+      }
+    }
+  }
+
   @Override
   public void close() throws Exception {
     for (Entry<String, Dictionary> entry : pinotDictionaryBufferMap.entrySet()) {
@@ -38,6 +38,10 @@ public class RecordReaderFactory {
       return new JSONRecordReader(segmentCreationSpec.getInputFilePath(), segmentCreationSpec.getSchema());
     } else if (segmentCreationSpec.getFormat() == FileFormat.PINOT) {
       return new PinotSegmentRecordReader(new File(segmentCreationSpec.getInputFilePath()));
+    } else if (segmentCreationSpec.getFormat() == FileFormat.PARQUET) {
+      return new ParquetRecordReader(segmentCreationSpec.getInputFilePath(), segmentCreationSpec.getSchema());
+    } else if (segmentCreationSpec.getFormat() == FileFormat.ORC) {
+      return new OrcRecordReader(segmentCreationSpec.getInputFilePath(), segmentCreationSpec.getSchema());
     }
 
     throw new UnsupportedOperationException("Unsupported input format: " + segmentCreationSpec.getFormat());
@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.indexsegment.generator;
+
+import com.google.common.base.Preconditions;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.codehaus.jackson.annotate.JsonIgnore;
+
+
+/**
+ * RollupConfig is used at segment generation to pre-aggregate the input rows.
+ *
+ * The rows with the same dimension values and the same time value, once truncated to the time granularity, are
+ * aggregated into a single document. Each metric is aggregated with its aggregation type, SUM by default.
+ */
+public class RollupConfig {
+  public enum AggregationType {
+    SUM,
+    MIN,
+    MAX
+  }
+
+  private TimeUnit _timeGranularityUnit = null;
+  private int _timeGranularitySize = 1;
+  private Map<String, AggregationType> _metricAggregationTypes = new HashMap<>();
+
+  /**
+   * RollupConfig summing up the metrics of the rows with the same dimension and time values.
+   */
+  public RollupConfig() {
+  }
+
+  /**
+   * RollupConfig summing up the metrics of the rows with the same dimension values and time value truncated to the
+   * given granularity.
+   * @param timeGranularitySize number of time units of the granularity
+   * @param timeGranularityUnit time unit of the granularity, e.g. HOURS
+   */
+  public RollupConfig(int timeGranularitySize, TimeUnit timeGranularityUnit) {
+    setTimeGranularitySize(timeGranularitySize);
+    _timeGranularityUnit = timeGranularityUnit;
+  }
+
+  public TimeUnit getTimeGranularityUnit() {
+    return _timeGranularityUnit;
+  }
+
+  /**
+   * Sets the time unit of the granularity the time values are truncated to, or null not to truncate them.
+   */
+  public void setTimeGranularityUnit(TimeUnit timeGranularityUnit) {
+    _timeGranularityUnit = timeGranularityUnit;
+  }
+
+  public int getTimeGranularitySize() {
+    return _timeGranularitySize;
+  }
+
+  public void setTimeGranularitySize(int timeGranularitySize) {
+    Preconditions.checkArgument(timeGranularitySize > 0, "Time granularity size must be positive");
+    _timeGranularitySize = timeGranularitySize;
+  }
+
+  /**
+   * Returns the granularity the time values are truncated to in milliseconds, or 0 if they are not truncated.
+   */
+  @JsonIgnore
+  public long getTimeGranularityMillis() {
+    if (_timeGranularityUnit == null) {
+      return 0L;
+    }
+    return _timeGranularityUnit.toMillis(_timeGranularitySize);
+  }
+
+  public Map<String, AggregationType> getMetricAggregationTypes() {
+    return _metricAggregationTypes;
+  }
+
+  public void setMetricAggregationTypes(Map<String, AggregationType> metricAggregationTypes) {
+    Preconditions.checkNotNull(metricAggregationTypes);
+    _metricAggregationTypes = metricAggregationTypes;
+  }
+
+  public AggregationType getAggregationType(String metric) {
+    AggregationType aggregationType = _metricAggregationTypes.get(metric);
+    return aggregationType != null ? aggregationType : AggregationType.SUM;
+  }
+
+  public void setAggregationType(String metric, AggregationType aggregationType) {
+    _metricAggregationTypes.put(metric, aggregationType);
+  }
+}
@@ -16,6 +16,7 @@
 package com.linkedin.pinot.core.indexsegment.generator;
 
 import com.google.common.base.Preconditions;
+import com.linkedin.pinot.common.config.SegmentPartitionConfig;
 import com.linkedin.pinot.common.data.FieldSpec;
 import com.linkedin.pinot.common.data.FieldSpec.FieldType;
 import com.linkedin.pinot.common.data.Schema;
@@ -51,6 +52,7 @@ import org.slf4j.LoggerFactory;
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class SegmentGeneratorConfig {
   private static final Logger LOGGER = LoggerFactory.getLogger(SegmentGeneratorConfig.class);
+  public static final long DEFAULT_SORT_BUFFER_SIZE_IN_BYTES = 256L * 1024 * 1024;
 
   private Map<String, String> _customProperties = new HashMap<>();
   private Set<String> _rawIndexCreationColumns = new HashSet<>();
@@ -78,8 +80,13 @@ public class SegmentGeneratorConfig {
   private StarTreeIndexSpec _starTreeIndexSpec = null;
   private String _creatorVersion = null;
   private char _paddingCharacter = V1Constants.Str.DEFAULT_STRING_PAD_CHAR;
+  private int _numIndexCreationThreads = 1;
+  private List<String> _sortedColumns = new ArrayList<>();
+  private long _sortBufferSizeInBytes = DEFAULT_SORT_BUFFER_SIZE_IN_BYTES;
 
   private HllConfig _hllConfig = null;
+  private RollupConfig _rollupConfig = null;
+  private SegmentPartitionConfig _segmentPartitionConfig = null;
 
   public SegmentGeneratorConfig() {
   }
@@ -112,7 +119,12 @@ public class SegmentGeneratorConfig {
     _starTreeIndexSpec = config._starTreeIndexSpec;
     _creatorVersion = config._creatorVersion;
     _paddingCharacter = config._paddingCharacter;
+    _numIndexCreationThreads = config._numIndexCreationThreads;
+    _sortedColumns.addAll(config._sortedColumns);
+    _sortBufferSizeInBytes = config._sortBufferSizeInBytes;
     _hllConfig = config._hllConfig;
+    _rollupConfig = config._rollupConfig;
+    _segmentPartitionConfig = config._segmentPartitionConfig;
     _segmentVersion = config._segmentVersion;
   }
 
@@ -256,6 +268,49 @@ public class SegmentGeneratorConfig {
     _paddingCharacter = paddingCharacter;
   }
 
+  public int getNumIndexCreationThreads() {
+    return _numIndexCreationThreads;
+  }
+
+  /**
+   * Sets the number of threads used to collect the column statistics and build the column indexes. With more than one
+   * thread, the input is buffered in memory column by column and the columns are processed in parallel; the segment is
+   * identical to the one created with a single thread. With a single thread, the rows are streamed with bounded
+   * memory. Not used for star tree segments.
+   */
+  public void setNumIndexCreationThreads(int numIndexCreationThreads) {
+    Preconditions.checkArgument(numIndexCreationThreads > 0, "Number of index creation threads must be positive");
+    _numIndexCreationThreads = numIndexCreationThreads;
+  }
+
+  public List<String> getSortedColumns() {
+    return _sortedColumns;
+  }
+
+  /**
+   * Sets the single-value columns the rows are sorted on before the segment is created, in order of precedence. The
+   * first column gets a sorted forward index even if the input is not sorted on it, the other ones break the ties.
+   * Rows with equal sort values keep their input order. Not used for star tree segments.
+   */
+  public void setSortedColumns(List<String> sortedColumns) {
+    _sortedColumns.clear();
+    _sortedColumns.addAll(sortedColumns);
+  }
+
+  public long getSortBufferSizeInBytes() {
+    return _sortBufferSizeInBytes;
+  }
+
+  /**
+   * Sets the maximum size of the off-heap buffer holding the serialized rows to sort. Inputs that do not fit are sorted
+   * in runs spilled to disk under the output directory and merged. Only used with a single index creation thread, the
+   * column parallel creation sorts the column buffers in memory.
+   */
+  public void setSortBufferSizeInBytes(long sortBufferSizeInBytes) {
+    Preconditions.checkArgument(sortBufferSizeInBytes > 0, "Sort buffer size must be positive");
+    _sortBufferSizeInBytes = sortBufferSizeInBytes;
+  }
+
   public String getSegmentNamePostfix() {
     return _segmentNamePostfix;
   }
@@ -402,6 +457,31 @@ public class SegmentGeneratorConfig {
     _hllConfig = hllConfig;
   }
 
+  public RollupConfig getRollupConfig() {
+    return _rollupConfig;
+  }
+
+  /**
+   * Sets the config of the roll-up of the input rows, or null not to roll them up. The rows are rolled up through an
+   * external sort bounded by the sort buffer size, on the sorted columns first, then on the other dimensions and the
+   * time column, which must all be single-value. Not used for star tree segments.
+   */
+  public void setRollupConfig(RollupConfig rollupConfig) {
+    _rollupConfig = rollupConfig;
+  }
+
+  public SegmentPartitionConfig getSegmentPartitionConfig() {
+    return _segmentPartitionConfig;
+  }
+
+  /**
+   * Sets the partitioning of the columns of the table, or null if it is not partitioned. The partitions of the values
+   * of each partitioned column are recorded in the segment metadata.
+   */
+  public void setSegmentPartitionConfig(SegmentPartitionConfig segmentPartitionConfig) {
+    _segmentPartitionConfig = segmentPartitionConfig;
+  }
+
   @JsonIgnore
   public String getMetrics() {
     return getQualifyingDimensions(FieldType.METRIC);
@@ -18,10 +18,12 @@ package com.linkedin.pinot.core.io.readerwriter.impl;
 import com.linkedin.pinot.core.io.reader.impl.FixedByteSingleValueMultiColReader;
 import com.linkedin.pinot.core.io.readerwriter.BaseSingleColumnMultiValueReaderWriter;
 import com.linkedin.pinot.core.io.writer.impl.FixedByteSingleValueMultiColWriter;
+import com.linkedin.pinot.core.segment.memory.OffHeapMemoryAllocator;
 import com.linkedin.pinot.core.segment.memory.PinotDataBuffer;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import javax.annotation.Nullable;
 
 
 /**
@@ -79,9 +81,22 @@ public class FixedByteSingleColumnMultiValueReaderWriter extends BaseSingleColum
   private int incrementalCapacity;
   private int columnSizeInBytes;
   private int maxNumberOfMultiValuesPerRow;
+  private OffHeapMemoryAllocator allocator;
+  private String allocationContext;
 
   public FixedByteSingleColumnMultiValueReaderWriter(int rows, int columnSizeInBytes, int maxNumberOfMultiValuesPerRow)
       throws IOException {
+    this(rows, columnSizeInBytes, maxNumberOfMultiValuesPerRow, null, null);
+  }
+
+  /**
+   * @param allocator Allocator of the buffers, null to allocate direct buffers
+   * @param allocationContext Context of the allocations, such as the column name
+   */
+  public FixedByteSingleColumnMultiValueReaderWriter(int rows, int columnSizeInBytes, int maxNumberOfMultiValuesPerRow,
+      @Nullable OffHeapMemoryAllocator allocator, @Nullable String allocationContext) throws IOException {
+    this.allocator = allocator;
+    this.allocationContext = allocationContext;
     int initialCapacity = Math.max(maxNumberOfMultiValuesPerRow, rows * AVERAGE_NUM_VALUES_PER_ROW);
     int incrementalCapacity =
         Math.max(maxNumberOfMultiValuesPerRow, (int) (initialCapacity * 1.0f * INCREMENT_PERCENTAGE / 100));
@@ -99,7 +114,7 @@ public class FixedByteSingleColumnMultiValueReaderWriter extends BaseSingleColum
     this.columnSizeInBytes = columnSizeInBytes;
     this.maxNumberOfMultiValuesPerRow = maxNumberOfMultiValuesPerRow;
     headerSize = rows * SIZE_OF_INT * NUM_COLS_IN_HEADER;
-    headerBuffer = PinotDataBuffer.allocateDirect(headerSize);
+    headerBuffer = allocateBuffer(headerSize);
 //    headerBuffer.order(ByteOrder.nativeOrder());
     //dataBufferId, startIndex, length
     headerWriter =
@@ -121,7 +136,7 @@ public class FixedByteSingleColumnMultiValueReaderWriter extends BaseSingleColum
   private void addCapacity(int rowCapacity) throws RuntimeException {
     PinotDataBuffer dataBuffer;
     try {
-      dataBuffer = PinotDataBuffer.allocateDirect(rowCapacity * columnSizeInBytes);
+      dataBuffer = allocateBuffer(rowCapacity * columnSizeInBytes);
       //dataBuffer.order(ByteOrder.nativeOrder());
       dataBuffers.add(dataBuffer);
       currentDataWriter =
@@ -140,6 +155,13 @@ public class FixedByteSingleColumnMultiValueReaderWriter extends BaseSingleColum
     }
   }
 
+  private PinotDataBuffer allocateBuffer(long size) {
+    if (allocator == null) {
+      return PinotDataBuffer.allocateDirect(size);
+    }
+    return allocator.allocate(size, allocationContext);
+  }
+
   @Override
   public void close() {
     for (PinotDataBuffer dataBuffer : dataBuffers) {
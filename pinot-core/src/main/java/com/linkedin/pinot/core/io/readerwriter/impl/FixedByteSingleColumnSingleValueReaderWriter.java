@@ -18,8 +18,10 @@ package com.linkedin.pinot.core.io.readerwriter.impl;
 import com.linkedin.pinot.core.io.reader.impl.FixedByteSingleValueMultiColReader;
 import com.linkedin.pinot.core.io.readerwriter.BaseSingleColumnSingleValueReaderWriter;
 import com.linkedin.pinot.core.io.writer.impl.FixedByteSingleValueMultiColWriter;
+import com.linkedin.pinot.core.segment.memory.OffHeapMemoryAllocator;
 import com.linkedin.pinot.core.segment.memory.PinotDataBuffer;
 import java.io.IOException;
+import javax.annotation.Nullable;
 
 
 public class FixedByteSingleColumnSingleValueReaderWriter extends BaseSingleColumnSingleValueReaderWriter {
@@ -34,12 +36,31 @@ public class FixedByteSingleColumnSingleValueReaderWriter extends BaseSingleColu
   public FixedByteSingleColumnSingleValueReaderWriter(int rows, int columnSizesInBytes) throws IOException {
     this(rows, new int[]{columnSizesInBytes});
   }
+
+  /**
+   * @param allocator Allocator of the buffer, null to allocate a direct buffer
+   * @param allocationContext Context of the allocation, such as the column name
+   */
+  public FixedByteSingleColumnSingleValueReaderWriter(int rows, int columnSizesInBytes,
+      @Nullable OffHeapMemoryAllocator allocator, @Nullable String allocationContext) throws IOException {
+    this(rows, new int[]{columnSizesInBytes}, allocator, allocationContext);
+  }
+
   /**
    *
    * @param rows
    * @param columnSizesInBytes
    */
   public FixedByteSingleColumnSingleValueReaderWriter(int rows, int[] columnSizesInBytes) throws IOException {
+    this(rows, columnSizesInBytes, null, null);
+  }
+
+  /**
+   * @param allocator Allocator of the buffer, null to allocate a direct buffer
+   * @param allocationContext Context of the allocation, such as the column name
+   */
+  public FixedByteSingleColumnSingleValueReaderWriter(int rows, int[] columnSizesInBytes,
+      @Nullable OffHeapMemoryAllocator allocator, @Nullable String allocationContext) throws IOException {
     this.cols = 1;
     colOffSets = new int[columnSizesInBytes.length];
     rowSize = 0;
@@ -48,7 +69,11 @@ public class FixedByteSingleColumnSingleValueReaderWriter extends BaseSingleColu
       rowSize += columnSizesInBytes[i];
     }
     final int totalSize = rowSize * rows;
-    _buffer = PinotDataBuffer.allocateDirect(totalSize);
+    if (allocator == null) {
+      _buffer = PinotDataBuffer.allocateDirect(totalSize);
+    } else {
+      _buffer = allocator.allocate(totalSize, allocationContext);
+    }
     //_buffer.order(ByteOrder.nativeOrder());
     reader = new FixedByteSingleValueMultiColReader(_buffer, rows, cols, columnSizesInBytes);
     writer = new FixedByteSingleValueMultiColWriter(_buffer, rows, cols, columnSizesInBytes);
@@ -199,6 +199,31 @@ public class MCombineGroupByOperator extends BaseOperator {
                 }
               }
             }
+
+            // Merge aggregation group-by result served from the segment result cache.
+            List<Map<String, Object>> groupByResultMaps =
+                intermediateResultsBlock.getCombinedAggregationGroupByResult();
+            if (groupByResultMaps != null) {
+              for (String groupKeyString : groupByResultMaps.get(0).keySet()) {
+                int lockIndex = (groupKeyString.hashCode() & Integer.MAX_VALUE) % NUM_LOCKS;
+                synchronized (LOCKS[lockIndex]) {
+                  Object[] results = resultsMap.get(groupKeyString);
+
+                  if (results == null) {
+                    results = new Object[numAggregationFunctions];
+                    for (int j = 0; j < numAggregationFunctions; j++) {
+                      results[j] = groupByResultMaps.get(j).get(groupKeyString);
+                    }
+                    resultsMap.put(groupKeyString, results);
+                  } else {
+                    for (int j = 0; j < numAggregationFunctions; j++) {
+                      results[j] = aggregationFunctionContexts[j].getAggregationFunction()
+                          .merge(results[j], groupByResultMaps.get(j).get(groupKeyString));
+                    }
+                  }
+                }
+              }
+            }
           } catch (Exception e) {
             LOGGER.error("Exception processing CombineGroupBy for index {}, operator {}", index,
                 _operators.get(index).getClass().getName(), e);
@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.query;
+
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockId;
+import com.linkedin.pinot.core.operator.BaseOperator;
+import com.linkedin.pinot.core.operator.ExecutionStatistics;
+import com.linkedin.pinot.core.operator.blocks.IntermediateResultsBlock;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunctionContext;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
+import javax.annotation.Nonnull;
+
+
+/**
+ * The <code>CachedResultOperator</code> class provides the operator serving the result of an aggregation or aggregation
+ * group-by query on a single segment from the {@link SegmentResultCache}.
+ */
+public class CachedResultOperator extends BaseOperator {
+  private final SegmentResultCache.CachedResult _cachedResult;
+  private final AggregationFunctionContext[] _aggregationFunctionContexts;
+  private final ExecutionStatistics _executionStatistics;
+
+  public CachedResultOperator(@Nonnull SegmentResultCache.CachedResult cachedResult,
+      @Nonnull AggregationFunctionContext[] aggregationFunctionContexts, long numTotalRawDocs) {
+    _cachedResult = cachedResult;
+    _aggregationFunctionContexts = aggregationFunctionContexts;
+    // No document is scanned for a cached result.
+    _executionStatistics = new ExecutionStatistics(0L, 0L, 0L, numTotalRawDocs);
+  }
+
+  @Override
+  public boolean open() {
+    return true;
+  }
+
+  @Override
+  public Block getNextBlock() {
+    try {
+      return _cachedResult.toResultsBlock(_aggregationFunctionContexts);
+    } catch (Exception e) {
+      return new IntermediateResultsBlock(e);
+    }
+  }
+
+  @Override
+  public Block getNextBlock(BlockId blockId) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean close() {
+    return true;
+  }
+
+  @Override
+  public ExecutionStatistics getExecutionStatistics() {
+    return _executionStatistics;
+  }
+}
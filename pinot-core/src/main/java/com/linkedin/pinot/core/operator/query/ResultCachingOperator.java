@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.query;
+
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockId;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.operator.BaseOperator;
+import com.linkedin.pinot.core.operator.ExecutionStatistics;
+import com.linkedin.pinot.core.operator.blocks.IntermediateResultsBlock;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
+import javax.annotation.Nonnull;
+
+
+/**
+ * The <code>ResultCachingOperator</code> class wraps the operator of an aggregation or aggregation group-by query on a
+ * single segment, and puts its result into the {@link SegmentResultCache}.
+ */
+public class ResultCachingOperator extends BaseOperator {
+  private final Operator _operator;
+  private final SegmentResultCache _segmentResultCache;
+  private final SegmentResultCache.Key _key;
+
+  public ResultCachingOperator(@Nonnull Operator operator, @Nonnull SegmentResultCache segmentResultCache,
+      @Nonnull SegmentResultCache.Key key) {
+    _operator = operator;
+    _segmentResultCache = segmentResultCache;
+    _key = key;
+  }
+
+  @Override
+  public boolean open() {
+    return _operator.open();
+  }
+
+  @Override
+  public Block getNextBlock() {
+    IntermediateResultsBlock resultsBlock = (IntermediateResultsBlock) _operator.nextBlock();
+    // Cache the result before the combine operator merges other results into it.
+    _segmentResultCache.put(_key, resultsBlock);
+    return resultsBlock;
+  }
+
+  @Override
+  public Block getNextBlock(BlockId blockId) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean close() {
+    return _operator.close();
+  }
+
+  @Override
+  public ExecutionStatistics getExecutionStatistics() {
+    return _operator.getExecutionStatistics();
+  }
+}
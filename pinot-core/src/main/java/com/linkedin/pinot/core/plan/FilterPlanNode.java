@@ -44,6 +44,8 @@ import com.linkedin.pinot.core.operator.filter.ScanBasedFilterOperator;
 import com.linkedin.pinot.core.operator.filter.SortedInvertedIndexBasedFilterOperator;
 import com.linkedin.pinot.core.operator.filter.StarTreeIndexOperator;
 import com.linkedin.pinot.core.realtime.RealtimeSegment;
+import com.linkedin.pinot.core.realtime.impl.RealtimeColumnStatistics;
+import com.linkedin.pinot.core.realtime.impl.RealtimeSegmentImpl;
 
 
 /**
@@ -93,10 +95,28 @@ public class FilterPlanNode implements PlanNode {
       final FilterOperator filterType = filterQueryTree.getOperator();
       switch (filterType) {
         case AND:
-          reorder(operators);
-          ret = new AndOperator(operators);
+          // Children matching the entire segment do not filter anything
+          List<Operator> filteringOperators = new ArrayList<Operator>();
+          for (Operator operator : operators) {
+            if (!(operator instanceof MatchEntireSegmentOperator)) {
+              filteringOperators.add(operator);
+            }
+          }
+          if (filteringOperators.isEmpty()) {
+            ret = operators.get(0);
+          } else if (filteringOperators.size() == 1) {
+            ret = filteringOperators.get(0);
+          } else {
+            reorder(filteringOperators);
+            ret = new AndOperator(filteringOperators);
+          }
           break;
         case OR:
+          for (Operator operator : operators) {
+            if (operator instanceof MatchEntireSegmentOperator) {
+              return operator;
+            }
+          }
           reorder(operators);
           ret = new OrOperator(operators);
           break;
@@ -115,6 +135,14 @@ public class FilterPlanNode implements PlanNode {
       BaseFilterOperator baseFilterOperator;
       int startDocId = 0;
       int endDocId = _segment.getSegmentMetadata().getTotalRawDocs() - 1; //end is inclusive
+      // The statistics of consuming segments cover at least the documents counted above, so if all their values match
+      // the predicate, there is nothing to filter
+      if (_segment instanceof RealtimeSegmentImpl) {
+        RealtimeColumnStatistics columnStatistics = ((RealtimeSegmentImpl) _segment).getColumnStatistics(column);
+        if (columnStatistics != null && columnStatistics.matchesAll(predicate)) {
+          return new MatchEntireSegmentOperator(endDocId + 1);
+        }
+      }
       if (dataSourceMetadata.hasInvertedIndex()) {
         // range evaluation based on inv index is inefficient, so do this only if is NOT range.
         if (!filterType.equals(FilterOperator.RANGE)) {
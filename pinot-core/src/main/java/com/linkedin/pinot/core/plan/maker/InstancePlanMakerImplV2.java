@@ -20,12 +20,15 @@ import com.linkedin.pinot.core.data.manager.offline.SegmentDataManager;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.plan.AggregationGroupByPlanNode;
 import com.linkedin.pinot.core.plan.AggregationPlanNode;
+import com.linkedin.pinot.core.plan.CachedResultPlanNode;
 import com.linkedin.pinot.core.plan.CombinePlanNode;
 import com.linkedin.pinot.core.plan.GlobalPlanImplV0;
 import com.linkedin.pinot.core.plan.InstanceResponsePlanNode;
 import com.linkedin.pinot.core.plan.Plan;
 import com.linkedin.pinot.core.plan.PlanNode;
+import com.linkedin.pinot.core.plan.ResultCachingPlanNode;
 import com.linkedin.pinot.core.plan.SelectionPlanNode;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
 import com.linkedin.pinot.core.query.config.QueryExecutorConfig;
 import java.util.ArrayList;
 import java.util.List;
@@ -99,9 +102,22 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
     }
     BrokerRequestPreProcessor.preProcess(indexSegments, brokerRequest);
 
+    // Serve the results of immutable segments from the segment result cache when possible.
+    SegmentResultCache segmentResultCache = SegmentResultCache.getInstance();
     List<PlanNode> planNodes = new ArrayList<>();
     for (IndexSegment indexSegment : indexSegments) {
-      planNodes.add(makeInnerSegmentPlan(indexSegment, brokerRequest));
+      SegmentResultCache.Key cacheKey = segmentResultCache.getKey(indexSegment, brokerRequest);
+      if (cacheKey == null) {
+        planNodes.add(makeInnerSegmentPlan(indexSegment, brokerRequest));
+      } else {
+        SegmentResultCache.CachedResult cachedResult = segmentResultCache.get(cacheKey);
+        if (cachedResult != null) {
+          planNodes.add(new CachedResultPlanNode(indexSegment, brokerRequest, cachedResult));
+        } else {
+          planNodes.add(new ResultCachingPlanNode(makeInnerSegmentPlan(indexSegment, brokerRequest),
+              segmentResultCache, cacheKey));
+        }
+      }
     }
     CombinePlanNode combinePlanNode = new CombinePlanNode(planNodes, brokerRequest, executorService, timeOutMs);
 
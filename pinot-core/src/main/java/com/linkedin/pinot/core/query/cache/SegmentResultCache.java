@@ -0,0 +1,404 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.linkedin.pinot.common.metrics.ServerGauge;
+import com.linkedin.pinot.common.metrics.ServerMeter;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.segment.SegmentMetadata;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import com.linkedin.pinot.core.common.datatable.ObjectCustomSerDe;
+import com.linkedin.pinot.core.common.datatable.ObjectType;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.blocks.IntermediateResultsBlock;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunctionContext;
+import com.linkedin.pinot.core.query.aggregation.groupby.AggregationGroupByResult;
+import com.linkedin.pinot.core.query.aggregation.groupby.GroupKeyGenerator;
+import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Server-wide, size-bounded cache of the per-segment results of aggregation and aggregation group-by queries.
+ *
+ * <p>Only immutable segments are cached, consuming segments are always executed. Entries are keyed on the segment name
+ * and CRC, together with the filter, aggregations and group-by of the query, so a segment replaced with new data never
+ * serves a stale result. The keys cached for each segment are tracked, so that all the entries of a segment are removed
+ * without going through the whole cache when the segment is unloaded.
+ *
+ * <p>Results are kept serialized: the combine operators merge segment results in place, so every cache hit must
+ * return a fresh copy of the result anyway.
+ *
+ * <p>The cache is configured through the following server configs (prefix
+ * <code>pinot.server.query.result.cache</code>):
+ * <ul>
+ *   <li><code>max.bytes</code>: maximum total size of the cached results, 0 (disabled) by default.</li>
+ * </ul>
+ */
+public class SegmentResultCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SegmentResultCache.class);
+
+  public static final String MAX_BYTES = "max.bytes";
+  public static final long DEFAULT_MAX_BYTES = 0L;
+
+  private static volatile SegmentResultCache _instance = new SegmentResultCache(DEFAULT_MAX_BYTES, null);
+
+  private final Cache<Key, CachedResult> _cache;
+  private final long _maxBytes;
+  private final ServerMetrics _serverMetrics;
+  private final AtomicLong _sizeInBytes = new AtomicLong(0L);
+  private final Map<String, AtomicLong[]> _tableHitsAndRequests = new ConcurrentHashMap<>();
+  // Cached keys by segment name by table. A result cached again while its previous entry is being evicted can be
+  // missed, and is then left to the LRU eviction.
+  private final ConcurrentMap<String, ConcurrentMap<String, Set<Key>>> _segmentKeys = new ConcurrentHashMap<>();
+
+  public SegmentResultCache(long maxBytes, @Nullable ServerMetrics serverMetrics) {
+    _maxBytes = maxBytes;
+    _serverMetrics = serverMetrics;
+    _cache = CacheBuilder.newBuilder()
+        .maximumWeight(maxBytes)
+        .weigher(new Weigher<Key, CachedResult>() {
+          @Override
+          public int weigh(Key key, CachedResult value) {
+            return key.getSizeInBytes() + value.getSizeInBytes();
+          }
+        })
+        .removalListener(new RemovalListener<Key, CachedResult>() {
+          @Override
+          public void onRemoval(RemovalNotification<Key, CachedResult> notification) {
+            Key key = notification.getKey();
+            _sizeInBytes.addAndGet(-key.getSizeInBytes() - notification.getValue().getSizeInBytes());
+            if (notification.wasEvicted()) {
+              ConcurrentMap<String, Set<Key>> tableSegmentKeys = _segmentKeys.get(key._tableName);
+              if (tableSegmentKeys != null) {
+                Set<Key> keys = tableSegmentKeys.get(key._segmentName);
+                if (keys != null) {
+                  keys.remove(key);
+                }
+              }
+            }
+          }
+        })
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * To be called once when the server starts, replaces the default (disabled) instance with a configured one.
+   *
+   * @param config segment result cache config
+   * @param serverMetrics server metrics to report the cache metrics to, can be null
+   */
+  public static void init(Configuration config, @Nullable ServerMetrics serverMetrics) {
+    final SegmentResultCache cache =
+        new SegmentResultCache(config.getLong(MAX_BYTES, DEFAULT_MAX_BYTES), serverMetrics);
+    LOGGER.info("Initialized segment result cache with max bytes: {}", cache._maxBytes);
+    _instance = cache;
+
+    if (serverMetrics != null) {
+      serverMetrics.addCallbackGauge("segmentResultCache.sizeInBytes", new Callable<Long>() {
+        @Override
+        public Long call() throws Exception {
+          return _instance.getSizeInBytes();
+        }
+      });
+      serverMetrics.addCallbackGauge("segmentResultCache.evictionCount", new Callable<Long>() {
+        @Override
+        public Long call() throws Exception {
+          return _instance.getStats().evictionCount();
+        }
+      });
+    }
+  }
+
+  public static SegmentResultCache getInstance() {
+    return _instance;
+  }
+
+  /**
+   * Returns the cache key for the result of the given query on the given segment, or null if the result cannot be
+   * cached (cache disabled, mutable segment or selection query).
+   */
+  @Nullable
+  public Key getKey(@Nonnull IndexSegment indexSegment, @Nonnull BrokerRequest brokerRequest) {
+    if (_maxBytes <= 0 || !(indexSegment instanceof IndexSegmentImpl) || !brokerRequest.isSetAggregationsInfo()) {
+      return null;
+    }
+    SegmentMetadata segmentMetadata = indexSegment.getSegmentMetadata();
+    String crc = segmentMetadata.getCrc();
+    if (crc == null) {
+      return null;
+    }
+    StringBuilder normalizedQuery = new StringBuilder();
+    normalizedQuery.append(RequestUtils.getNormalizedFilterString(brokerRequest)).append('\n');
+    normalizedQuery.append(brokerRequest.getAggregationsInfo()).append('\n');
+    normalizedQuery.append(brokerRequest.getGroupBy());
+    return new Key(segmentMetadata.getTableName(), indexSegment.getSegmentName(), crc, normalizedQuery.toString());
+  }
+
+  /**
+   * Returns the cached result for the given key, or null on a cache miss.
+   */
+  @Nullable
+  public CachedResult get(@Nonnull Key key) {
+    CachedResult cachedResult = _cache.getIfPresent(key);
+    recordRequest(key._tableName, cachedResult != null);
+    return cachedResult;
+  }
+
+  /**
+   * Caches the given segment result. Must be called before the result block gets merged with other blocks.
+   */
+  public void put(@Nonnull Key key, @Nonnull IntermediateResultsBlock resultsBlock) {
+    List<?> processingExceptions = resultsBlock.getProcessingExceptions();
+    if (processingExceptions != null && !processingExceptions.isEmpty()) {
+      return;
+    }
+    try {
+      CachedResult cachedResult;
+      if (resultsBlock.getAggregationResult() != null) {
+        cachedResult = new CachedResult(false, serialize(resultsBlock.getAggregationResult()));
+      } else if (resultsBlock.getAggregationGroupByResult() != null) {
+        int numAggregationFunctions = resultsBlock.getAggregationFunctionContexts().length;
+        cachedResult = new CachedResult(true,
+            serialize(getGroupByResultMaps(resultsBlock.getAggregationGroupByResult(), numAggregationFunctions)));
+      } else {
+        return;
+      }
+      getSegmentKeys(key._tableName, key._segmentName).add(key);
+      _sizeInBytes.addAndGet(key.getSizeInBytes() + cachedResult.getSizeInBytes());
+      _cache.put(key, cachedResult);
+    } catch (Exception e) {
+      LOGGER.warn("Caught exception while caching result for segment: {}", key._segmentName, e);
+    }
+  }
+
+  private Set<Key> getSegmentKeys(String tableName, String segmentName) {
+    ConcurrentMap<String, Set<Key>> tableSegmentKeys = _segmentKeys.get(tableName);
+    if (tableSegmentKeys == null) {
+      tableSegmentKeys = new ConcurrentHashMap<>();
+      ConcurrentMap<String, Set<Key>> existingTableSegmentKeys = _segmentKeys.putIfAbsent(tableName, tableSegmentKeys);
+      if (existingTableSegmentKeys != null) {
+        tableSegmentKeys = existingTableSegmentKeys;
+      }
+    }
+    Set<Key> keys = tableSegmentKeys.get(segmentName);
+    if (keys == null) {
+      keys = Collections.newSetFromMap(new ConcurrentHashMap<Key, Boolean>());
+      Set<Key> existingKeys = tableSegmentKeys.putIfAbsent(segmentName, keys);
+      if (existingKeys != null) {
+        keys = existingKeys;
+      }
+    }
+    return keys;
+  }
+
+  /**
+   * Removes all the cached results of the given segment, to be called when the segment is unloaded.
+   */
+  public void invalidate(@Nonnull String tableName, @Nonnull String segmentName) {
+    ConcurrentMap<String, Set<Key>> tableSegmentKeys = _segmentKeys.get(tableName);
+    if (tableSegmentKeys == null) {
+      return;
+    }
+    Set<Key> keys = tableSegmentKeys.remove(segmentName);
+    if (keys != null) {
+      _cache.invalidateAll(keys);
+    }
+  }
+
+  public CacheStats getStats() {
+    return _cache.stats();
+  }
+
+  public long getSizeInBytes() {
+    return _sizeInBytes.get();
+  }
+
+  public long size() {
+    return _cache.size();
+  }
+
+  private void recordRequest(final String tableName, boolean isHit) {
+    if (_serverMetrics == null) {
+      return;
+    }
+    _serverMetrics.addMeteredTableValue(tableName,
+        isHit ? ServerMeter.SEGMENT_RESULT_CACHE_HITS : ServerMeter.SEGMENT_RESULT_CACHE_MISSES, 1);
+
+    // Index 0 holds the number of hits, index 1 the number of requests
+    AtomicLong[] hitsAndRequests = _tableHitsAndRequests.get(tableName);
+    if (hitsAndRequests == null) {
+      synchronized (_tableHitsAndRequests) {
+        hitsAndRequests = _tableHitsAndRequests.get(tableName);
+        if (hitsAndRequests == null) {
+          final AtomicLong[] newHitsAndRequests = new AtomicLong[]{new AtomicLong(0L), new AtomicLong(0L)};
+          _serverMetrics.addCallbackTableGauge(tableName, ServerGauge.SEGMENT_RESULT_CACHE_HIT_RATIO_PERCENT,
+              new Callable<Long>() {
+                @Override
+                public Long call() throws Exception {
+                  long numRequests = newHitsAndRequests[1].get();
+                  return numRequests == 0L ? 0L : newHitsAndRequests[0].get() * 100 / numRequests;
+                }
+              });
+          _tableHitsAndRequests.put(tableName, newHitsAndRequests);
+          hitsAndRequests = newHitsAndRequests;
+        }
+      }
+    }
+    if (isHit) {
+      hitsAndRequests[0].incrementAndGet();
+    }
+    hitsAndRequests[1].incrementAndGet();
+  }
+
+  private static List<Object> getGroupByResultMaps(AggregationGroupByResult aggregationGroupByResult,
+      int numAggregationFunctions) {
+    List<Object> groupByResultMaps = new ArrayList<>(numAggregationFunctions);
+    for (int i = 0; i < numAggregationFunctions; i++) {
+      groupByResultMaps.add(new HashMap<String, Object>());
+    }
+    Iterator<GroupKeyGenerator.GroupKey> groupKeyIterator = aggregationGroupByResult.getGroupKeyIterator();
+    while (groupKeyIterator.hasNext()) {
+      GroupKeyGenerator.GroupKey groupKey = groupKeyIterator.next();
+      for (int i = 0; i < numAggregationFunctions; i++) {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> groupByResultMap = (Map<String, Object>) groupByResultMaps.get(i);
+        groupByResultMap.put(groupKey.getStringKey(), aggregationGroupByResult.getResultForKey(groupKey, i));
+      }
+    }
+    return groupByResultMaps;
+  }
+
+  private static SerializedValue[] serialize(List<Object> values)
+      throws IOException {
+    int numValues = values.size();
+    SerializedValue[] serializedValues = new SerializedValue[numValues];
+    for (int i = 0; i < numValues; i++) {
+      Object value = values.get(i);
+      serializedValues[i] =
+          new SerializedValue(ObjectCustomSerDe.getObjectType(value), ObjectCustomSerDe.serialize(value));
+    }
+    return serializedValues;
+  }
+
+  public static final class Key {
+    private final String _tableName;
+    private final String _segmentName;
+    private final String _crc;
+    private final String _normalizedQuery;
+
+    private Key(String tableName, String segmentName, String crc, String normalizedQuery) {
+      _tableName = tableName;
+      _segmentName = segmentName;
+      _crc = crc;
+      _normalizedQuery = normalizedQuery;
+    }
+
+    private int getSizeInBytes() {
+      return 2 * (_tableName.length() + _segmentName.length() + _crc.length() + _normalizedQuery.length());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) o;
+      return _tableName.equals(that._tableName) && _segmentName.equals(that._segmentName) && _crc.equals(that._crc)
+          && _normalizedQuery.equals(that._normalizedQuery);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = _tableName.hashCode();
+      result = 31 * result + _segmentName.hashCode();
+      result = 31 * result + _crc.hashCode();
+      result = 31 * result + _normalizedQuery.hashCode();
+      return result;
+    }
+  }
+
+  /**
+   * Serialized result of a query on a segment.
+   */
+  public static final class CachedResult {
+    private final boolean _isGroupBy;
+    private final SerializedValue[] _serializedValues;
+
+    private CachedResult(boolean isGroupBy, SerializedValue[] serializedValues) {
+      _isGroupBy = isGroupBy;
+      _serializedValues = serializedValues;
+    }
+
+    /**
+     * Returns a new results block holding a copy of the cached result.
+     * <p>For group-by queries, the results block holds one map from group key to result per aggregation function.
+     */
+    public IntermediateResultsBlock toResultsBlock(AggregationFunctionContext[] aggregationFunctionContexts)
+        throws IOException {
+      List<Object> values = new ArrayList<>(_serializedValues.length);
+      for (SerializedValue serializedValue : _serializedValues) {
+        values.add(ObjectCustomSerDe.deserialize(serializedValue._bytes, serializedValue._objectType));
+      }
+      return new IntermediateResultsBlock(aggregationFunctionContexts, values, _isGroupBy);
+    }
+
+    private int getSizeInBytes() {
+      int sizeInBytes = 0;
+      for (SerializedValue serializedValue : _serializedValues) {
+        sizeInBytes += serializedValue._bytes.length;
+      }
+      return sizeInBytes;
+    }
+  }
+
+  private static final class SerializedValue {
+    private final ObjectType _objectType;
+    private final byte[] _bytes;
+
+    private SerializedValue(ObjectType objectType, byte[] bytes) {
+      _objectType = objectType;
+      _bytes = bytes;
+    }
+  }
+}
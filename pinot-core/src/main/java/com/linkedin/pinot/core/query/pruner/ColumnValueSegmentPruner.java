@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.pruner;
+
+import java.util.List;
+
+import org.apache.commons.configuration.Configuration;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.utils.request.FilterQueryTree;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import com.linkedin.pinot.core.common.Predicate;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.realtime.impl.RealtimeColumnStatistics;
+import com.linkedin.pinot.core.realtime.impl.RealtimeSegmentImpl;
+
+
+/**
+ * An implementation of SegmentPruner.
+ * Consuming realtime segments will be pruned if the min and max values of their columns, kept up to date as rows are
+ * indexed, show that no row can match the filter of the query. Other segments are never pruned.
+ *
+ *
+ */
+public class ColumnValueSegmentPruner implements SegmentPruner {
+
+  @Override
+  public boolean prune(IndexSegment segment, BrokerRequest brokerRequest) {
+    if (!(segment instanceof RealtimeSegmentImpl) || brokerRequest.getFilterQuery() == null) {
+      return false;
+    }
+    FilterQueryTree filterQueryTree = RequestUtils.generateFilterQueryTree(brokerRequest);
+    return filterQueryTree != null && !canMatch((RealtimeSegmentImpl) segment, filterQueryTree);
+  }
+
+  private static boolean canMatch(RealtimeSegmentImpl segment, FilterQueryTree filterQueryTree) {
+    List<FilterQueryTree> children = filterQueryTree.getChildren();
+    if (children != null && !children.isEmpty()) {
+      switch (filterQueryTree.getOperator()) {
+        case AND:
+          for (FilterQueryTree child : children) {
+            if (!canMatch(segment, child)) {
+              return false;
+            }
+          }
+          return true;
+        case OR:
+          for (FilterQueryTree child : children) {
+            if (canMatch(segment, child)) {
+              return true;
+            }
+          }
+          return false;
+        default:
+          return true;
+      }
+    }
+
+    RealtimeColumnStatistics columnStatistics = segment.getColumnStatistics(filterQueryTree.getColumn());
+    return columnStatistics == null || columnStatistics.canMatch(Predicate.newPredicate(filterQueryTree));
+  }
+
+  @Override
+  public void init(Configuration config) {
+
+  }
+
+  @Override
+  public String toString() {
+    return "ColumnValueSegmentPruner";
+  }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.pruner;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.linkedin.pinot.common.metadata.segment.SegmentPartitionMetadata;
+import com.linkedin.pinot.common.partition.PartitionFilter;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import org.apache.commons.configuration.Configuration;
+
+
+/**
+ * An implementation of SegmentPruner.
+ * Segments of partitioned tables will be pruned if none of their partitions can match the equality and IN predicates
+ * of the query on the partitioned columns. Segments without partition metadata are never pruned.
+ * The partition filter of a query is computed once for all its segments, and cached until the query is collected.
+ */
+public class PartitionSegmentPruner implements SegmentPruner {
+  // Weak keys compare the broker requests by identity
+  private final LoadingCache<BrokerRequest, Optional<PartitionFilter>> _partitionFilterCache =
+      CacheBuilder.newBuilder().weakKeys().build(new CacheLoader<BrokerRequest, Optional<PartitionFilter>>() {
+        @Override
+        public Optional<PartitionFilter> load(BrokerRequest brokerRequest) {
+          return Optional.fromNullable(PartitionFilter.forBrokerRequest(brokerRequest));
+        }
+      });
+
+  @Override
+  public boolean prune(IndexSegment segment, BrokerRequest brokerRequest) {
+    SegmentPartitionMetadata partitionMetadata = segment.getSegmentMetadata().getPartitionMetadata();
+    if (partitionMetadata == null) {
+      return false;
+    }
+    Optional<PartitionFilter> partitionFilter = _partitionFilterCache.getUnchecked(brokerRequest);
+    return partitionFilter.isPresent() && !partitionFilter.get().canMatch(partitionMetadata.getColumnPartitionMap());
+  }
+
+  @Override
+  public void init(Configuration config) {
+
+  }
+
+  @Override
+  public String toString() {
+    return "PartitionSegmentPruner";
+  }
+}
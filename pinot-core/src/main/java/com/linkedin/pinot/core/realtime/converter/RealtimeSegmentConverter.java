@@ -15,21 +15,43 @@
  */
 package com.linkedin.pinot.core.realtime.converter;
 
-import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
-
+import com.google.common.base.Charsets;
+import com.linkedin.pinot.common.config.SegmentPartitionConfig;
+import com.linkedin.pinot.common.data.FieldSpec;
 import com.linkedin.pinot.common.data.Schema;
 import com.linkedin.pinot.common.data.TimeFieldSpec;
 import com.linkedin.pinot.common.data.TimeGranularitySpec;
 import com.linkedin.pinot.core.data.readers.RecordReader;
 import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
 import com.linkedin.pinot.core.indexsegment.generator.SegmentVersion;
+import com.linkedin.pinot.core.io.readerwriter.impl.FixedByteSingleColumnMultiValueReaderWriter;
+import com.linkedin.pinot.core.io.readerwriter.impl.FixedByteSingleColumnSingleValueReaderWriter;
 import com.linkedin.pinot.core.realtime.impl.RealtimeSegmentImpl;
+import com.linkedin.pinot.core.realtime.impl.dictionary.MutableDictionaryReader;
+import com.linkedin.pinot.core.segment.creator.ColumnIndexCreationInfo;
+import com.linkedin.pinot.core.segment.creator.ForwardIndexType;
+import com.linkedin.pinot.core.segment.creator.InvertedIndexType;
+import com.linkedin.pinot.core.segment.creator.SegmentIndexCreationInfo;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentColumnarIndexCreator;
 import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
+/**
+ * Converts a consuming realtime segment into an immutable segment.
+ */
 public class RealtimeSegmentConverter {
+  private static final Logger LOGGER = LoggerFactory.getLogger(RealtimeSegmentConverter.class);
 
   private RealtimeSegmentImpl realtimeSegmentImpl;
   private String outputPath;
@@ -38,6 +60,8 @@ public class RealtimeSegmentConverter {
   private String segmentName;
   private String sortedColumn;
   private List<String> invertedIndexColumns;
+  private String realtimeTimeColumnName;
+  private SegmentPartitionConfig segmentPartitionConfig;
 
   public RealtimeSegmentConverter(RealtimeSegmentImpl realtimeSegment, String outputPath, Schema schema,
       String tableName, String segmentName, String sortedColumn, List<String> invertedIndexColumns) {
@@ -69,6 +93,7 @@ public class RealtimeSegmentConverter {
     this.sortedColumn = sortedColumn;
     this.tableName = tableName;
     this.segmentName = segmentName;
+    this.realtimeTimeColumnName = original.getOutgoingTimeColumnName();
   }
 
   public RealtimeSegmentConverter(RealtimeSegmentImpl realtimeSegment, String outputPath, Schema schema,
@@ -76,7 +101,74 @@ public class RealtimeSegmentConverter {
     this(realtimeSegment, outputPath, schema, tableName, segmentName, sortedColumn, new ArrayList<String>());
   }
 
+  /**
+   * Sets the partition config of the table, to record the partitions of the partitioned columns in the segment
+   * metadata.
+   */
+  public void setSegmentPartitionConfig(@Nullable SegmentPartitionConfig segmentPartitionConfig) {
+    this.segmentPartitionConfig = segmentPartitionConfig;
+  }
+
+  /**
+   * Builds the immutable segment directly from the columns of the realtime segment.
+   * <p>For each column, the mutable dictionary (which is in insertion order) is sorted once into the immutable
+   * dictionary, and the mutable dictionary ids are remapped into the immutable ones with a lookup table. The forward
+   * and inverted indexes are then written column by column from the realtime forward index, without materializing
+   * any row or looking up any value in a dictionary per document.
+   */
   public void build(SegmentVersion segmentVersion) throws Exception {
+    long startTime = System.currentTimeMillis();
+    SegmentGeneratorConfig genConfig = getSegmentGeneratorConfig(segmentVersion);
+    int numDocs = realtimeSegmentImpl.getRawDocumentCount();
+
+    Map<String, ColumnConversionInfo> conversionInfoMap = new HashMap<>();
+    BitSet docsWithEmptyMultiValues = new BitSet(numDocs);
+    for (FieldSpec fieldSpec : dataSchema.getAllFieldSpecs()) {
+      String column = fieldSpec.getName();
+      conversionInfoMap.put(column,
+          new ColumnConversionInfo(fieldSpec, getRealtimeColumnName(column), numDocs, docsWithEmptyMultiValues));
+    }
+
+    // Compute the document order from the sorted column, stable on the docId
+    int[] sortedDocIds = null;
+    if (sortedColumn != null) {
+      ColumnConversionInfo sortedColumnInfo = conversionInfoMap.get(sortedColumn);
+      if (sortedColumnInfo == null || !sortedColumnInfo._fieldSpec.isSingleValueField()) {
+        throw new IllegalStateException("Cannot sort on column: " + sortedColumn);
+      }
+      sortedDocIds = sortedColumnInfo.getSortedDocIds(numDocs);
+    }
+
+    Map<String, ColumnIndexCreationInfo> indexCreationInfoMap = new HashMap<>();
+    for (ColumnConversionInfo conversionInfo : conversionInfoMap.values()) {
+      indexCreationInfoMap.put(conversionInfo._fieldSpec.getName(),
+          conversionInfo.getIndexCreationInfo(numDocs, sortedDocIds));
+    }
+    SegmentIndexCreationInfo segmentIndexCreationInfo = new SegmentIndexCreationInfo();
+    segmentIndexCreationInfo.setTotalDocs(numDocs);
+    segmentIndexCreationInfo.setTotalRawDocs(numDocs);
+    // Empty multi-values are replaced with the default null value, and counted as errors like the field extractor does
+    segmentIndexCreationInfo.setTotalErrors(docsWithEmptyMultiValues.cardinality());
+
+    File tempIndexDir = new File(outputPath, com.linkedin.pinot.common.utils.FileUtils.getRandomFileName());
+    SegmentColumnarIndexCreator indexCreator = new SegmentColumnarIndexCreator();
+    indexCreator.init(genConfig, segmentIndexCreationInfo, indexCreationInfoMap, dataSchema, tempIndexDir);
+    for (ColumnConversionInfo conversionInfo : conversionInfoMap.values()) {
+      conversionInfo.index(indexCreator, numDocs, sortedDocIds);
+    }
+    indexCreator.setSegmentName(segmentName);
+    indexCreator.seal();
+    SegmentIndexCreationDriverImpl.moveAndFinalizeSegment(genConfig, tempIndexDir, segmentName);
+    LOGGER.info("Converted realtime segment: {} with {} documents in {}ms", segmentName, numDocs,
+        System.currentTimeMillis() - startTime);
+  }
+
+  /**
+   * Builds the immutable segment by reading the realtime segment row by row through the segment creation driver,
+   * like any other input data.
+   * <p>Slower than {@link #build(SegmentVersion)}, kept as the reference implementation.
+   */
+  public void buildWithRecordReader(SegmentVersion segmentVersion) throws Exception {
     // lets create a record reader
     RecordReader reader;
 
@@ -85,6 +177,12 @@ public class RealtimeSegmentConverter {
     } else {
       reader = new RealtimeSegmentRecordReader(realtimeSegmentImpl, dataSchema, sortedColumn);
     }
+    final SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(getSegmentGeneratorConfig(segmentVersion), reader);
+    driver.build();
+  }
+
+  private SegmentGeneratorConfig getSegmentGeneratorConfig(SegmentVersion segmentVersion) {
     SegmentGeneratorConfig genConfig = new SegmentGeneratorConfig(dataSchema);
     if (invertedIndexColumns != null && !invertedIndexColumns.isEmpty()) {
       for (String column : invertedIndexColumns) {
@@ -97,8 +195,255 @@ public class RealtimeSegmentConverter {
     genConfig.setTableName(tableName);
     genConfig.setOutDir(outputPath);
     genConfig.setSegmentName(segmentName);
-    final SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
-    driver.init(genConfig, reader);
-    driver.build();
+    genConfig.setSegmentPartitionConfig(segmentPartitionConfig);
+    return genConfig;
+  }
+
+  /**
+   * Returns the name of the given column in the realtime segment, which only differs for the time column since the
+   * realtime segment stores it under its outgoing name.
+   */
+  private String getRealtimeColumnName(String column) {
+    if (column.equals(dataSchema.getTimeFieldSpec().getOutgoingTimeColumnName())) {
+      return realtimeTimeColumnName;
+    }
+    return column;
+  }
+
+  /**
+   * Converts a value of the realtime segment into the data type of the column in the immutable segment.
+   */
+  private static Comparable convertValue(Object value, FieldSpec.DataType dataType) {
+    switch (dataType) {
+      case INT:
+        return (value instanceof Number) ? ((Number) value).intValue() : Integer.valueOf(value.toString());
+      case LONG:
+        return (value instanceof Number) ? ((Number) value).longValue() : Long.valueOf(value.toString());
+      case FLOAT:
+        return (value instanceof Number) ? ((Number) value).floatValue() : Float.valueOf(value.toString());
+      case DOUBLE:
+        return (value instanceof Number) ? ((Number) value).doubleValue() : Double.valueOf(value.toString());
+      case STRING:
+      case BOOLEAN:
+        return value.toString();
+      default:
+        throw new UnsupportedOperationException("Unsupported data type: " + dataType);
+    }
+  }
+
+  /**
+   * Converts the sorted unique values into the array type expected by the dictionary creator.
+   */
+  private static Object toSortedUniqueElementsArray(Comparable[] sortedValues, FieldSpec.DataType dataType) {
+    int length = sortedValues.length;
+    switch (dataType) {
+      case INT:
+        int[] intValues = new int[length];
+        for (int i = 0; i < length; i++) {
+          intValues[i] = (Integer) sortedValues[i];
+        }
+        return intValues;
+      case LONG:
+        long[] longValues = new long[length];
+        for (int i = 0; i < length; i++) {
+          longValues[i] = (Long) sortedValues[i];
+        }
+        return longValues;
+      case FLOAT:
+        float[] floatValues = new float[length];
+        for (int i = 0; i < length; i++) {
+          floatValues[i] = (Float) sortedValues[i];
+        }
+        return floatValues;
+      case DOUBLE:
+        double[] doubleValues = new double[length];
+        for (int i = 0; i < length; i++) {
+          doubleValues[i] = (Double) sortedValues[i];
+        }
+        return doubleValues;
+      default:
+        String[] stringValues = new String[length];
+        for (int i = 0; i < length; i++) {
+          stringValues[i] = (String) sortedValues[i];
+        }
+        return stringValues;
+    }
+  }
+
+  /**
+   * Per column state of the columnar conversion.
+   */
+  private class ColumnConversionInfo {
+    private final FieldSpec _fieldSpec;
+    private final MutableDictionaryReader _dictionary;
+    private final FixedByteSingleColumnSingleValueReaderWriter _singleValueReader;
+    private final FixedByteSingleColumnMultiValueReaderWriter _multiValueReader;
+    private final int[] _multiValueBuffer;
+    private final Comparable _defaultNullValue;
+
+    // Converted value for each mutable dictionary id, null for values not referenced by any document
+    private final Comparable[] _values;
+    // Sorted unique values, which is the order of the immutable dictionary
+    private final Comparable[] _sortedValues;
+    // Index in the sorted unique values for each mutable dictionary id, -1 for values not referenced by any document
+    private final int[] _ranks;
+    private int _totalNumberOfEntries;
+    private int _maxNumberOfMultiValues;
+
+    private ColumnConversionInfo(FieldSpec fieldSpec, String realtimeColumnName, int numDocs,
+        BitSet docsWithEmptyMultiValues) {
+      _fieldSpec = fieldSpec;
+      _defaultNullValue = convertValue(fieldSpec.getDefaultNullValue(), fieldSpec.getDataType());
+      _dictionary = realtimeSegmentImpl.getDictionaryFor(realtimeColumnName);
+      if (fieldSpec.isSingleValueField()) {
+        _singleValueReader =
+            (FixedByteSingleColumnSingleValueReaderWriter) realtimeSegmentImpl.getForwardIndexFor(realtimeColumnName);
+        _multiValueReader = null;
+        _multiValueBuffer = null;
+      } else {
+        _singleValueReader = null;
+        _multiValueReader =
+            (FixedByteSingleColumnMultiValueReaderWriter) realtimeSegmentImpl.getForwardIndexFor(realtimeColumnName);
+        _multiValueBuffer = new int[realtimeSegmentImpl.getMaxNumberOfMultiValues(realtimeColumnName)];
+      }
+
+      // Only keep the values referenced by the documents, the dictionary may hold values of rows that failed indexing
+      int cardinality = _dictionary.length();
+      boolean[] referenced = new boolean[cardinality];
+      boolean hasEmptyMultiValues = false;
+      for (int docId = 0; docId < numDocs; docId++) {
+        if (_singleValueReader != null) {
+          referenced[_singleValueReader.getInt(docId)] = true;
+          _totalNumberOfEntries++;
+        } else {
+          int numValues = _multiValueReader.getIntArray(docId, _multiValueBuffer);
+          if (numValues == 0) {
+            hasEmptyMultiValues = true;
+            docsWithEmptyMultiValues.set(docId);
+            numValues = 1;
+          } else {
+            for (int i = 0; i < numValues; i++) {
+              referenced[_multiValueBuffer[i]] = true;
+            }
+          }
+          _totalNumberOfEntries += numValues;
+          _maxNumberOfMultiValues = Math.max(_maxNumberOfMultiValues, numValues);
+        }
+      }
+
+      // Sort the dictionary once, the conversion of the time column may collapse distinct values
+      _values = new Comparable[cardinality];
+      List<Comparable> referencedValues = new ArrayList<>(cardinality + 1);
+      if (hasEmptyMultiValues) {
+        referencedValues.add(_defaultNullValue);
+      }
+      for (int dictId = 0; dictId < cardinality; dictId++) {
+        if (referenced[dictId]) {
+          Comparable value = convertValue(_dictionary.get(dictId), fieldSpec.getDataType());
+          _values[dictId] = value;
+          referencedValues.add(value);
+        }
+      }
+      Collections.sort(referencedValues);
+      List<Comparable> sortedValues = new ArrayList<>(referencedValues.size());
+      for (Comparable value : referencedValues) {
+        if (sortedValues.isEmpty() || !sortedValues.get(sortedValues.size() - 1).equals(value)) {
+          sortedValues.add(value);
+        }
+      }
+      _sortedValues = sortedValues.toArray(new Comparable[sortedValues.size()]);
+
+      _ranks = new int[cardinality];
+      for (int dictId = 0; dictId < cardinality; dictId++) {
+        _ranks[dictId] = (_values[dictId] != null) ? Arrays.binarySearch(_sortedValues, _values[dictId]) : -1;
+      }
+    }
+
+    /**
+     * Returns the docIds ordered on the values of this single-value column, with a counting sort on the sorted value
+     * indexes which keeps documents with the same value in docId order.
+     */
+    private int[] getSortedDocIds(int numDocs) {
+      int[] offsets = new int[_sortedValues.length + 1];
+      for (int docId = 0; docId < numDocs; docId++) {
+        offsets[_ranks[_singleValueReader.getInt(docId)] + 1]++;
+      }
+      for (int i = 1; i < offsets.length; i++) {
+        offsets[i] += offsets[i - 1];
+      }
+      int[] sortedDocIds = new int[numDocs];
+      for (int docId = 0; docId < numDocs; docId++) {
+        sortedDocIds[offsets[_ranks[_singleValueReader.getInt(docId)]]++] = docId;
+      }
+      return sortedDocIds;
+    }
+
+    private ColumnIndexCreationInfo getIndexCreationInfo(int numDocs, int[] sortedDocIds) {
+      boolean isSorted = false;
+      if (_singleValueReader != null) {
+        isSorted = true;
+        int previousRank = -1;
+        for (int i = 0; i < numDocs; i++) {
+          int docId = (sortedDocIds != null) ? sortedDocIds[i] : i;
+          int rank = _ranks[_singleValueReader.getInt(docId)];
+          if (rank < previousRank) {
+            isSorted = false;
+            break;
+          }
+          previousRank = rank;
+        }
+      }
+
+      int lengthOfLongestEntry = -1;
+      FieldSpec.DataType dataType = _fieldSpec.getDataType();
+      if (dataType == FieldSpec.DataType.STRING || dataType == FieldSpec.DataType.BOOLEAN) {
+        lengthOfLongestEntry = 0;
+        for (Comparable value : _sortedValues) {
+          lengthOfLongestEntry = Math.max(lengthOfLongestEntry, ((String) value).getBytes(Charsets.UTF_8).length);
+        }
+      }
+
+      int cardinality = _sortedValues.length;
+      Object min = (cardinality > 0) ? _sortedValues[0] : null;
+      Object max = (cardinality > 0) ? _sortedValues[cardinality - 1] : null;
+      return new ColumnIndexCreationInfo(true/*createDictionary*/, min, max,
+          toSortedUniqueElementsArray(_sortedValues, dataType), ForwardIndexType.FIXED_BIT_COMPRESSED,
+          InvertedIndexType.ROARING_BITMAPS, isSorted, false/*hasNulls*/, _totalNumberOfEntries,
+          _maxNumberOfMultiValues, lengthOfLongestEntry, false/*isAutoGenerated*/, _fieldSpec.getDefaultNullValue());
+    }
+
+    /**
+     * Writes the forward and inverted indexes of this column, in the document order of the immutable segment.
+     */
+    private void index(SegmentColumnarIndexCreator indexCreator, int numDocs, int[] sortedDocIds) {
+      String column = _fieldSpec.getName();
+
+      // Remap the mutable dictionary ids into the ids of the immutable dictionary
+      int[] dictIdMap = new int[_values.length];
+      for (int dictId = 0; dictId < _values.length; dictId++) {
+        if (_values[dictId] != null) {
+          dictIdMap[dictId] = indexCreator.getDictionaryId(column, _values[dictId]);
+        }
+      }
+
+      for (int i = 0; i < numDocs; i++) {
+        int docId = (sortedDocIds != null) ? sortedDocIds[i] : i;
+        if (_singleValueReader != null) {
+          indexCreator.indexSingleValue(column, i, dictIdMap[_singleValueReader.getInt(docId)]);
+        } else {
+          int numValues = _multiValueReader.getIntArray(docId, _multiValueBuffer);
+          int[] dictIds;
+          if (numValues == 0) {
+            dictIds = new int[]{indexCreator.getDictionaryId(column, _defaultNullValue)};
+          } else {
+            dictIds = new int[numValues];
+            for (int j = 0; j < numValues; j++) {
+              dictIds[j] = dictIdMap[_multiValueBuffer[j]];
+            }
+          }
+          indexCreator.indexMultiValue(column, i, dictIds);
+        }
+      }
+    }
   }
 }
@@ -0,0 +1,198 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime.impl;
+
+import com.linkedin.pinot.core.common.Predicate;
+import com.linkedin.pinot.core.common.predicate.EqPredicate;
+import com.linkedin.pinot.core.common.predicate.InPredicate;
+import com.linkedin.pinot.core.common.predicate.RangePredicate;
+import java.math.BigDecimal;
+import javax.annotation.Nullable;
+
+
+/**
+ * Snapshot of the statistics of a numeric column of a consuming realtime segment: its min and max values and its number
+ * of distinct values, which the mutable dictionary of the column maintains as rows are indexed.
+ * <p>A snapshot covers at least the rows indexed when it was taken, so it can be used to decide that none or all of
+ * these rows match a predicate on the column.
+ */
+public class RealtimeColumnStatistics {
+  private static final String UNBOUNDED = "*";
+
+  private final boolean _singleValue;
+  private final int _cardinality;
+  private final BigDecimal _minValue;
+  private final BigDecimal _maxValue;
+
+  public RealtimeColumnStatistics(boolean singleValue, int cardinality, @Nullable Number minValue,
+      @Nullable Number maxValue) {
+    _singleValue = singleValue;
+    _cardinality = cardinality;
+    BigDecimal minDecimal = null;
+    BigDecimal maxDecimal = null;
+    if (cardinality > 0 && minValue != null && maxValue != null) {
+      minDecimal = toBigDecimal(minValue.toString());
+      maxDecimal = toBigDecimal(maxValue.toString());
+    }
+    // The min and max values are unknown if not numbers, or not updated yet for the first value indexed
+    if (minDecimal == null || maxDecimal == null || minDecimal.compareTo(maxDecimal) > 0) {
+      _minValue = null;
+      _maxValue = null;
+    } else {
+      _minValue = minDecimal;
+      _maxValue = maxDecimal;
+    }
+  }
+
+  public int getCardinality() {
+    return _cardinality;
+  }
+
+  @Nullable
+  public BigDecimal getMinValue() {
+    return _minValue;
+  }
+
+  @Nullable
+  public BigDecimal getMaxValue() {
+    return _maxValue;
+  }
+
+  /**
+   * Returns false if no row can match the given predicate, true if some rows may match it.
+   */
+  public boolean canMatch(Predicate predicate) {
+    if (_cardinality == 0) {
+      // No value indexed yet
+      return !isValuePredicate(predicate);
+    }
+    if (_minValue == null) {
+      return true;
+    }
+    switch (predicate.getType()) {
+      case EQ:
+        return canMatchValue(((EqPredicate) predicate).getEqualsValue());
+      case IN:
+        for (String value : ((InPredicate) predicate).getInRange()) {
+          if (canMatchValue(value)) {
+            return true;
+          }
+        }
+        return false;
+      case RANGE:
+        return canMatchRange((RangePredicate) predicate);
+      default:
+        return true;
+    }
+  }
+
+  /**
+   * Returns true if all the rows match the given predicate, false if some rows may not match it.
+   * <p>Multi-value columns never match all the rows, as a row with no value does not match any predicate.
+   */
+  public boolean matchesAll(Predicate predicate) {
+    if (!_singleValue || _minValue == null) {
+      return false;
+    }
+    switch (predicate.getType()) {
+      case EQ:
+        return isSingleValue(((EqPredicate) predicate).getEqualsValue());
+      case IN:
+        for (String value : ((InPredicate) predicate).getInRange()) {
+          if (isSingleValue(value)) {
+            return true;
+          }
+        }
+        return false;
+      case RANGE:
+        return matchesAllRange((RangePredicate) predicate);
+      default:
+        return false;
+    }
+  }
+
+  private boolean canMatchValue(String value) {
+    BigDecimal decimal = toBigDecimal(value);
+    return decimal == null || (decimal.compareTo(_minValue) >= 0 && decimal.compareTo(_maxValue) <= 0);
+  }
+
+  // Returns true if the column only holds the given value
+  private boolean isSingleValue(String value) {
+    BigDecimal decimal = toBigDecimal(value);
+    return decimal != null && decimal.compareTo(_minValue) == 0 && decimal.compareTo(_maxValue) == 0;
+  }
+
+  private boolean canMatchRange(RangePredicate predicate) {
+    String lower = predicate.getLowerBoundary();
+    String upper = predicate.getUpperBoundary();
+    BigDecimal lowerDecimal = lower.equals(UNBOUNDED) ? null : toBigDecimal(lower);
+    BigDecimal upperDecimal = upper.equals(UNBOUNDED) ? null : toBigDecimal(upper);
+    if (lowerDecimal != null) {
+      int comparison = lowerDecimal.compareTo(_maxValue);
+      if (comparison > 0 || (comparison == 0 && !predicate.includeLowerBoundary())) {
+        return false;
+      }
+    }
+    if (upperDecimal != null) {
+      int comparison = upperDecimal.compareTo(_minValue);
+      if (comparison < 0 || (comparison == 0 && !predicate.includeUpperBoundary())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean matchesAllRange(RangePredicate predicate) {
+    String lower = predicate.getLowerBoundary();
+    if (!lower.equals(UNBOUNDED)) {
+      BigDecimal lowerDecimal = toBigDecimal(lower);
+      if (lowerDecimal == null) {
+        return false;
+      }
+      int comparison = lowerDecimal.compareTo(_minValue);
+      if (comparison > 0 || (comparison == 0 && !predicate.includeLowerBoundary())) {
+        return false;
+      }
+    }
+    String upper = predicate.getUpperBoundary();
+    if (!upper.equals(UNBOUNDED)) {
+      BigDecimal upperDecimal = toBigDecimal(upper);
+      if (upperDecimal == null) {
+        return false;
+      }
+      int comparison = upperDecimal.compareTo(_maxValue);
+      if (comparison < 0 || (comparison == 0 && !predicate.includeUpperBoundary())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isValuePredicate(Predicate predicate) {
+    Predicate.Type type = predicate.getType();
+    return type == Predicate.Type.EQ || type == Predicate.Type.IN || type == Predicate.Type.RANGE;
+  }
+
+  @Nullable
+  private static BigDecimal toBigDecimal(String value) {
+    try {
+      return new BigDecimal(value.trim());
+    } catch (NumberFormatException e) {
+      // NaN, infinity, or not a number at all
+      return null;
+    }
+  }
+}
@@ -57,6 +57,8 @@ import com.linkedin.pinot.core.realtime.impl.invertedIndex.RealtimeInvertedIndex
 import com.linkedin.pinot.core.realtime.impl.invertedIndex.TimeInvertedIndex;
 import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
 import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
+import com.linkedin.pinot.core.segment.memory.OffHeapMemoryAllocator;
+import com.linkedin.pinot.core.segment.memory.OffHeapMemoryManager;
 import com.linkedin.pinot.core.startree.StarTree;
 
 public class RealtimeSegmentImpl implements RealtimeSegment {
@@ -94,10 +96,28 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
   private final ServerMetrics serverMetrics;
   private final String tableAndStreamName;
 
+  // Memory accounting: off-heap buffers of the forward indexes, and counters for the memory in use
+  private final OffHeapMemoryAllocator offHeapMemoryAllocator;
+  private int singleValueBytesPerRow = 0;
+  private int numMultiValueColumns = 0;
+  private volatile long numMultiValues = 0;
+  private volatile long numInvertedIndexEntries = 0;
+
   public RealtimeSegmentImpl(Schema schema, int capacity, String tableName, String segmentName, String streamName,
       ServerMetrics serverMetrics, List<String> invertedIndexColumns) throws IOException {
+    this(schema, capacity, tableName, segmentName, streamName, serverMetrics, invertedIndexColumns,
+        OffHeapMemoryManager.getInstance().newAllocator(segmentName));
+  }
+
+  /**
+   * @param offHeapMemoryAllocator Allocator of the buffers of the forward indexes, closed when the segment is destroyed
+   */
+  public RealtimeSegmentImpl(Schema schema, int capacity, String tableName, String segmentName, String streamName,
+      ServerMetrics serverMetrics, List<String> invertedIndexColumns, OffHeapMemoryAllocator offHeapMemoryAllocator)
+      throws IOException {
     // initial variable setup
     this.segmentName = segmentName;
+    this.offHeapMemoryAllocator = offHeapMemoryAllocator;
     this.serverMetrics = serverMetrics;
     LOGGER = LoggerFactory.getLogger(RealtimeSegmentImpl.class.getName() + "_" + segmentName + "_" + streamName);
     dataSchema = schema;
@@ -137,10 +157,13 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
       }
       if (schema.getFieldSpecFor(dimension).isSingleValueField()) {
         columnIndexReaderWriterMap.put(dimension, new FixedByteSingleColumnSingleValueReaderWriter(capacity,
-            V1Constants.Dict.INT_DICTIONARY_COL_SIZE));
+            V1Constants.Dict.INT_DICTIONARY_COL_SIZE, offHeapMemoryAllocator, dimension));
+        singleValueBytesPerRow += V1Constants.Dict.INT_DICTIONARY_COL_SIZE[0];
       } else {
         columnIndexReaderWriterMap.put(dimension, new FixedByteSingleColumnMultiValueReaderWriter(capacity,
-            Integer.SIZE / 8, FixedByteSingleColumnMultiValueReaderWriter.DEFAULT_MAX_NUMBER_OF_MULTIVALUES));
+            Integer.SIZE / 8, FixedByteSingleColumnMultiValueReaderWriter.DEFAULT_MAX_NUMBER_OF_MULTIVALUES,
+            offHeapMemoryAllocator, dimension));
+        numMultiValueColumns++;
       }
     }
 
@@ -149,14 +172,16 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
         invertedIndexMap.put(metric, new MetricInvertedIndex(metric));
       }
       columnIndexReaderWriterMap.put(metric, new FixedByteSingleColumnSingleValueReaderWriter(capacity,
-          V1Constants.Dict.INT_DICTIONARY_COL_SIZE));
+          V1Constants.Dict.INT_DICTIONARY_COL_SIZE, offHeapMemoryAllocator, metric));
+      singleValueBytesPerRow += V1Constants.Dict.INT_DICTIONARY_COL_SIZE[0];
     }
 
     if (invertedIndexColumns.contains(outgoingTimeColumnName)) {
       invertedIndexMap.put(outgoingTimeColumnName, new TimeInvertedIndex(outgoingTimeColumnName));
     }
     columnIndexReaderWriterMap.put(outgoingTimeColumnName, new FixedByteSingleColumnSingleValueReaderWriter(capacity,
-        V1Constants.Dict.INT_DICTIONARY_COL_SIZE));
+        V1Constants.Dict.INT_DICTIONARY_COL_SIZE, offHeapMemoryAllocator, outgoingTimeColumnName));
+    singleValueBytesPerRow += V1Constants.Dict.INT_DICTIONARY_COL_SIZE[0];
 
     tableAndStreamName = tableName + "-" + streamName;
   }
@@ -285,6 +310,7 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
         ((FixedByteSingleColumnMultiValueReaderWriter) columnIndexReaderWriterMap.get(dimension)).setIntArray(docId,
             dicIds);
         rawRowToDicIdMap.put(dimension, dicIds);
+        numMultiValues += dicIds.length;
       }
     }
 
@@ -304,9 +330,11 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
 
     // lets update the inverted index now
     // metrics
+    long numInvertedIndexEntriesAdded = 0;
     for (String metric : dataSchema.getMetricNames()) {
       if (invertedIndexMap.containsKey(metric)) {
         invertedIndexMap.get(metric).add(rawRowToDicIdMap.get(metric), docId);
+        numInvertedIndexEntriesAdded++;
       }
     }
 
@@ -315,18 +343,22 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
       if (invertedIndexMap.containsKey(dimension)) {
         if (dataSchema.getFieldSpecFor(dimension).isSingleValueField()) {
           invertedIndexMap.get(dimension).add(rawRowToDicIdMap.get(dimension), docId);
+          numInvertedIndexEntriesAdded++;
         } else {
           int[] dicIds = (int[]) rawRowToDicIdMap.get(dimension);
           for (int dicId : dicIds) {
             invertedIndexMap.get(dimension).add(dicId, docId);
           }
+          numInvertedIndexEntriesAdded += dicIds.length;
         }
       }
     }
     // time
     if (invertedIndexMap.containsKey(outgoingTimeColumnName)) {
       invertedIndexMap.get(outgoingTimeColumnName).add(rawRowToDicIdMap.get(outgoingTimeColumnName), docId);
+      numInvertedIndexEntriesAdded++;
     }
+    numInvertedIndexEntries += numInvertedIndexEntriesAdded;
     docIdSearchableOffset = docId;
     numDocsIndexed += 1;
     numSuccessIndexed += 1;
@@ -403,6 +435,39 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
     return numSuccessIndexed;
   }
 
+  /**
+   * Returns the number of bytes of off-heap memory allocated for the forward indexes, including the capacity not used
+   * yet.
+   */
+  public long getOffHeapMemoryAllocatedBytes() {
+    return offHeapMemoryAllocator.getAllocatedBytes();
+  }
+
+  /**
+   * Returns the share of the server off-heap memory budget of this segment.
+   */
+  public long getMemoryBudgetInBytes() {
+    return offHeapMemoryAllocator.getBudgetInBytes();
+  }
+
+  /**
+   * Returns an estimate of the memory used by the rows indexed so far: the off-heap memory written in the forward
+   * indexes, plus the heap memory of the dictionaries and inverted indexes.
+   * <p>Unlike the allocated memory, it grows with the rows indexed, as the forward index buffers are allocated for the
+   * capacity of the segment upfront.
+   */
+  public long getMemoryUsedBytesEstimate() {
+    long numDocs = getRawDocumentCount();
+    // The header of a multi-value forward index holds 3 integers per row
+    long memoryUsed = numDocs * (singleValueBytesPerRow + numMultiValueColumns * 3 * Integer.SIZE / 8)
+        + numMultiValues * Integer.SIZE / 8;
+    for (MutableDictionaryReader dictionary : dictionaryMap.values()) {
+      memoryUsed += dictionary.getMemoryUsageInBytesEstimate();
+    }
+    // Roaring bitmaps use about 2 bytes per entry
+    return memoryUsed + numInvertedIndexEntries * 2;
+  }
+
   public void print() {
     for (String col : dictionaryMap.keySet()) {
       dictionaryMap.get(col).print();
@@ -431,6 +496,7 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
       }
     }
     invertedIndexMap.clear();
+    offHeapMemoryAllocator.close();
     _segmentMetadata.close();
   }
 
@@ -674,6 +740,60 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
     return dictionaryMap.containsKey(columnName);
   }
 
+  /**
+   * Returns the mutable dictionary of the given column, whose dictionary ids are in insertion order.
+   */
+  public MutableDictionaryReader getDictionaryFor(String columnName) {
+    return dictionaryMap.get(columnName);
+  }
+
+  /**
+   * Returns a snapshot of the statistics of the given numeric column, covering at least the documents indexed so far,
+   * or null if the segment has no such numeric column.
+   */
+  public RealtimeColumnStatistics getColumnStatistics(String columnName) {
+    FieldSpec fieldSpec = dataSchema.getFieldSpecFor(columnName);
+    if (fieldSpec == null) {
+      return null;
+    }
+    switch (fieldSpec.getDataType()) {
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+        break;
+      default:
+        return null;
+    }
+    // The dictionaries are updated before the document id is generated, reading the latter first makes the statistics
+    // cover the documents counted so far
+    docIdGenerator.get();
+    MutableDictionaryReader dictionary = dictionaryMap.get(columnName);
+    int cardinality = dictionary.length();
+    if (cardinality == 0) {
+      return new RealtimeColumnStatistics(fieldSpec.isSingleValueField(), 0, null, null);
+    }
+    return new RealtimeColumnStatistics(fieldSpec.isSingleValueField(), cardinality, (Number) dictionary.getMinVal(),
+        (Number) dictionary.getMaxVal());
+  }
+
+  /**
+   * Returns the forward index of the given column, which stores the mutable dictionary ids of each document.
+   * <p>Single-value columns are backed by a {@link FixedByteSingleColumnSingleValueReaderWriter}, multi-value columns
+   * by a {@link FixedByteSingleColumnMultiValueReaderWriter}.
+   */
+  public DataFileReader getForwardIndexFor(String columnName) {
+    return columnIndexReaderWriterMap.get(columnName);
+  }
+
+  /**
+   * Returns the maximum number of values in a document for the given multi-value column.
+   */
+  public int getMaxNumberOfMultiValues(String columnName) {
+    Integer maxNumberOfMultiValues = maxNumberOfMultivaluesMap.get(columnName);
+    return maxNumberOfMultiValues != null ? maxNumberOfMultiValues : 0;
+  }
+
   @Override
   public StarTree getStarTree() {
     return null;
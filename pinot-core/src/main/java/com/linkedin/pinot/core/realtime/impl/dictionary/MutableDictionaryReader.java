@@ -23,10 +23,15 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 
 public abstract class MutableDictionaryReader implements Dictionary {
+  // Estimated heap size of an entry of the bi-map, excluding the value: the entry and the boxed dictionary id
+  private static final int BI_MAP_ENTRY_SIZE_IN_BYTES = 64;
+
   protected BiMap<Integer, Object> dictionaryIdBiMap;
   protected FieldSpec spec;
   protected boolean hasNull = false;
   private final AtomicInteger dictionaryIdGenerator;
+  // Values are only added by the indexing thread
+  private volatile long valuesSizeInBytes = 0;
 
   public MutableDictionaryReader(FieldSpec spec) {
     this.spec = spec;
@@ -37,7 +42,23 @@ public abstract class MutableDictionaryReader implements Dictionary {
   protected void addToDictionaryBiMap(Object val) {
     if (!dictionaryIdBiMap.inverse().containsKey(val)) {
       dictionaryIdBiMap.put(dictionaryIdGenerator.incrementAndGet(), val);
+      valuesSizeInBytes += estimateSizeInBytes(val);
+    }
+  }
+
+  private static long estimateSizeInBytes(Object value) {
+    if (value instanceof String) {
+      return 40 + 2 * ((String) value).length();
     }
+    // Boxed number
+    return 16;
+  }
+
+  /**
+   * Returns an estimate of the heap memory used by the dictionary.
+   */
+  public long getMemoryUsageInBytesEstimate() {
+    return length() * BI_MAP_ENTRY_SIZE_IN_BYTES + valuesSizeInBytes;
   }
 
   @Override
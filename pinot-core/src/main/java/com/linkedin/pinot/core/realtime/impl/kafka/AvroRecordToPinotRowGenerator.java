@@ -32,55 +32,99 @@ import com.linkedin.pinot.core.data.readers.AvroRecordReader;
 
 public class AvroRecordToPinotRowGenerator {
   private final Schema indexingSchema;
+  private final String[] columns;
+  private final FieldSpec[] fieldSpecs;
 
   public AvroRecordToPinotRowGenerator(Schema indexingSchema) {
     this.indexingSchema = indexingSchema;
+    int numColumns = indexingSchema.getColumnNames().size();
+    columns = new String[numColumns];
+    fieldSpecs = new FieldSpec[numColumns];
+    int i = 0;
+    for (String column : indexingSchema.getColumnNames()) {
+      columns[i] = column;
+      fieldSpecs[i] = indexingSchema.getFieldSpecFor(column);
+      i++;
+    }
   }
 
   public GenericRow transform(GenericData.Record record, org.apache.avro.Schema schema, GenericRow destination) {
-    for (String column : indexingSchema.getColumnNames()) {
-      Object entry = record.get(column);
-      FieldSpec fieldSpec = indexingSchema.getFieldSpecFor(column);
+    for (int i = 0; i < columns.length; i++) {
+      destination.putField(columns[i], convert(record.get(columns[i]), fieldSpecs[i]));
+    }
+
+    return destination;
+  }
 
-      if (entry != null) {
-        if (entry instanceof Array) {
-          entry = AvroRecordReader.transformAvroArrayToObjectArray((Array) entry, fieldSpec);
-          if (fieldSpec.getDataType() == DataType.STRING || fieldSpec.getDataType() == DataType.STRING_ARRAY) {
-            for (int i = 0; i < ((Object[]) entry).length; ++i) {
-              if (((Object[]) entry)[i] != null) {
-                ((Object[]) entry)[i] = ((Object[]) entry)[i].toString();
-              }
+  /**
+   * Transforms a record whose fields are accessed by position instead of by name.
+   *
+   * @param record Avro record to transform
+   * @param fieldPositions Positions of the indexing schema columns in the record, as returned by
+   *                       {@link #getFieldPositions(org.apache.avro.Schema)} for the schema of the record
+   * @param destination The {@link GenericRow} to write the transformed record into
+   * @return The destination row
+   */
+  public GenericRow transform(GenericData.Record record, int[] fieldPositions, GenericRow destination) {
+    for (int i = 0; i < columns.length; i++) {
+      int fieldPosition = fieldPositions[i];
+      Object entry = (fieldPosition >= 0) ? record.get(fieldPosition) : null;
+      destination.putField(columns[i], convert(entry, fieldSpecs[i]));
+    }
+
+    return destination;
+  }
+
+  /**
+   * Returns the position of each column of the indexing schema in the given Avro record schema, or -1 for the columns
+   * that are not in the record schema.
+   */
+  public int[] getFieldPositions(org.apache.avro.Schema recordSchema) {
+    int[] fieldPositions = new int[columns.length];
+    for (int i = 0; i < columns.length; i++) {
+      org.apache.avro.Schema.Field field = recordSchema.getField(columns[i]);
+      fieldPositions[i] = (field != null) ? field.pos() : -1;
+    }
+    return fieldPositions;
+  }
+
+  private static Object convert(Object entry, FieldSpec fieldSpec) {
+    if (entry != null) {
+      if (entry instanceof Array) {
+        entry = AvroRecordReader.transformAvroArrayToObjectArray((Array) entry, fieldSpec);
+        if (fieldSpec.getDataType() == DataType.STRING || fieldSpec.getDataType() == DataType.STRING_ARRAY) {
+          for (int i = 0; i < ((Object[]) entry).length; ++i) {
+            if (((Object[]) entry)[i] != null) {
+              ((Object[]) entry)[i] = ((Object[]) entry)[i].toString();
             }
           }
-        } else {
-          if (entry instanceof Utf8) {
-            entry = ((Utf8) entry).toString();
-          }
-          if (fieldSpec.getDataType() == DataType.STRING) {
-            entry = entry.toString();
-          }
         }
       } else {
-        // entry was null.
-        if (fieldSpec.isSingleValueField()) {
-          entry = AvroRecordReader.getDefaultNullValue(fieldSpec);
-        } else {
-          // A multi-value field, and null. Any of the instanceof checks above will not match, so we need to repeat some
-          // of the logic above here.
-          entry = AvroRecordReader.transformAvroArrayToObjectArray((Array) entry, fieldSpec);
-          if (fieldSpec.getDataType() == DataType.STRING || fieldSpec.getDataType() == DataType.STRING_ARRAY) {
-            for (int i = 0; i < ((Object[]) entry).length; ++i) {
-              if (((Object[]) entry)[i] != null) {
-                ((Object[]) entry)[i] = ((Object[]) entry)[i].toString();
-              }
+        if (entry instanceof Utf8) {
+          entry = ((Utf8) entry).toString();
+        }
+        if (fieldSpec.getDataType() == DataType.STRING) {
+          entry = entry.toString();
+        }
+      }
+    } else {
+      // entry was null.
+      if (fieldSpec.isSingleValueField()) {
+        entry = AvroRecordReader.getDefaultNullValue(fieldSpec);
+      } else {
+        // A multi-value field, and null. Any of the instanceof checks above will not match, so we need to repeat some
+        // of the logic above here.
+        entry = AvroRecordReader.transformAvroArrayToObjectArray((Array) entry, fieldSpec);
+        if (fieldSpec.getDataType() == DataType.STRING || fieldSpec.getDataType() == DataType.STRING_ARRAY) {
+          for (int i = 0; i < ((Object[]) entry).length; ++i) {
+            if (((Object[]) entry)[i] != null) {
+              ((Object[]) entry)[i] = ((Object[]) entry)[i].toString();
             }
           }
         }
       }
-      destination.putField(column, entry);
     }
-
-    return destination;
+    return entry;
   }
 
   public GenericRow transform(GenericRecord avroRecord, GenericRow destination) {
@@ -19,14 +19,15 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URL;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericData.Record;
 import org.apache.avro.generic.GenericDatumReader;
-import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.BinaryDecoder;
 import org.apache.avro.io.DecoderFactory;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
@@ -36,17 +37,34 @@ import com.linkedin.pinot.common.data.Schema;
 import com.linkedin.pinot.core.data.GenericRow;
 
 
+/**
+ * Decoder for Avro messages prefixed with a magic byte and the MD5 hash of their schema, which is fetched from a schema
+ * registry the first time it is seen.
+ * <p>
+ * Schemas are cached by their binary MD5 hash, without any allocation for the common case of consecutive messages
+ * sharing the same schema. For each writer schema, the messages are read with a reader schema projected to the columns
+ * of the Pinot schema, so that the other fields are skipped instead of being materialized, and the decoded values are
+ * written into the destination row by field position. The binary decoder and the Avro record are reused from one
+ * message to the next, so instances of this class are not thread safe.
+ */
 public class KafkaAvroMessageDecoder implements KafkaMessageDecoder {
   private static final Logger LOGGER = LoggerFactory.getLogger(KafkaAvroMessageDecoder.class);
 
   public static final String SCHEMA_REGISTRY_REST_URL = "schema.registry.rest.url";
   public static final String SCHEMA_REGISTRY_SCHEMA_NAME = "schema.registry.schema.name";
-  private org.apache.avro.Schema defaultAvroSchema;
-  private Map<String, org.apache.avro.Schema> md5ToAvroSchemaMap;
+  private Schema indexingSchema;
+  private SchemaDecoder defaultSchemaDecoder;
+  private Map<SchemaHash, SchemaDecoder> md5ToSchemaDecoderMap;
+
+  // Schema of the last decoded message, checked first as consecutive messages usually share the same schema
+  private SchemaHash lastSchemaHash;
+  private SchemaDecoder lastSchemaDecoder;
+  private final SchemaHash lookupSchemaHash = new SchemaHash();
 
   private String schemaRegistryBaseUrl;
   private String kafkaTopicName;
   private DecoderFactory decoderFactory;
+  private BinaryDecoder binaryDecoder;
   private AvroRecordToPinotRowGenerator avroRecordConvetrer;
 
   private static final int MAGIC_BYTE_LENGTH = 1;
@@ -54,7 +72,6 @@ public class KafkaAvroMessageDecoder implements KafkaMessageDecoder {
   private static final int HEADER_LENGTH = MAGIC_BYTE_LENGTH + SCHEMA_HASH_LENGTH;
 
   private static final int SCHEMA_HASH_START_OFFSET = MAGIC_BYTE_LENGTH;
-  private static final int SCHEMA_HASH_END_OFFSET = SCHEMA_HASH_START_OFFSET + SCHEMA_HASH_LENGTH;
 
   @Override
   public void init(Map<String, String> props, Schema indexingSchema, String topicName) throws Exception {
@@ -68,10 +85,12 @@ public class KafkaAvroMessageDecoder implements KafkaMessageDecoder {
       avroSchemaName = props.get(SCHEMA_REGISTRY_SCHEMA_NAME);
     }
 
-    defaultAvroSchema = fetchSchema(new URL(schemaRegistryBaseUrl + "/latest_with_type=" + avroSchemaName));
+    this.indexingSchema = indexingSchema;
     this.avroRecordConvetrer = new AvroRecordToPinotRowGenerator(indexingSchema);
     this.decoderFactory = new DecoderFactory();
-    md5ToAvroSchemaMap = new HashMap<String, org.apache.avro.Schema>();
+    defaultSchemaDecoder =
+        new SchemaDecoder(fetchSchema(new URL(schemaRegistryBaseUrl + "/latest_with_type=" + avroSchemaName)));
+    md5ToSchemaDecoderMap = new HashMap<SchemaHash, SchemaDecoder>();
   }
 
   @Override
@@ -85,36 +104,121 @@ public class KafkaAvroMessageDecoder implements KafkaMessageDecoder {
       return null;
     }
 
-    byte[] md5 = Arrays.copyOfRange(payload, SCHEMA_HASH_START_OFFSET + offset, SCHEMA_HASH_END_OFFSET + offset);
+    SchemaDecoder schemaDecoder = getSchemaDecoder(payload, SCHEMA_HASH_START_OFFSET + offset);
+    binaryDecoder = decoderFactory.binaryDecoder(payload, HEADER_LENGTH + offset, length - HEADER_LENGTH, binaryDecoder);
+    try {
+      schemaDecoder.record = schemaDecoder.reader.read(schemaDecoder.record, binaryDecoder);
+      return avroRecordConvetrer.transform(schemaDecoder.record, schemaDecoder.fieldPositions, destination);
+    } catch (IOException e) {
+      LOGGER.error("Caught exception while reading message", e);
+      return null;
+    }
+  }
+
+  private SchemaDecoder getSchemaDecoder(byte[] payload, int md5Offset) {
+    lookupSchemaHash.set(payload, md5Offset);
+    if (lookupSchemaHash.equals(lastSchemaHash)) {
+      return lastSchemaDecoder;
+    }
 
-    String md5String = hex(md5);
-    org.apache.avro.Schema schema = null;
-    if (md5ToAvroSchemaMap.containsKey(md5String)) {
-      schema = md5ToAvroSchemaMap.get(md5String);
-    } else {
+    SchemaDecoder schemaDecoder = md5ToSchemaDecoderMap.get(lookupSchemaHash);
+    if (schemaDecoder == null) {
+      String md5String = hex(payload, md5Offset, SCHEMA_HASH_LENGTH);
       try {
-        schema = fetchSchema(new URL(schemaRegistryBaseUrl + "/id=" + md5String));
-        md5ToAvroSchemaMap.put(md5String, schema);
+        schemaDecoder = new SchemaDecoder(fetchSchema(new URL(schemaRegistryBaseUrl + "/id=" + md5String)));
       } catch (Exception e) {
-        schema = defaultAvroSchema;
         LOGGER.error("error fetching schema from md5 String", e);
+        // Not cached, so that the schema is fetched again for the next message
+        return defaultSchemaDecoder;
       }
+      md5ToSchemaDecoderMap.put(lookupSchemaHash.copy(), schemaDecoder);
     }
-    DatumReader<Record> reader = new GenericDatumReader<Record>(schema);
-    try {
-      GenericData.Record avroRecord =
-          reader.read(null, decoderFactory.createBinaryDecoder(payload, HEADER_LENGTH + offset,
-              length - HEADER_LENGTH, null));
-      return avroRecordConvetrer.transform(avroRecord, schema, destination);
-    } catch (IOException e) {
-      LOGGER.error("Caught exception while reading message", e);
-      return null;
+    lastSchemaHash = lookupSchemaHash.copy();
+    lastSchemaDecoder = schemaDecoder;
+    return schemaDecoder;
+  }
+
+  /**
+   * Returns a record schema with only the fields of the given writer schema that are columns of the Pinot schema, in
+   * the same order. Reading with such a reader schema skips the other fields of the writer schema.
+   */
+  static org.apache.avro.Schema getProjectedSchema(org.apache.avro.Schema writerSchema, Schema indexingSchema) {
+    List<org.apache.avro.Schema.Field> fields = new ArrayList<org.apache.avro.Schema.Field>();
+    for (org.apache.avro.Schema.Field field : writerSchema.getFields()) {
+      if (indexingSchema.hasColumn(field.name())) {
+        fields.add(new org.apache.avro.Schema.Field(field.name(), field.schema(), field.doc(), field.defaultValue(),
+            field.order()));
+      }
+    }
+    org.apache.avro.Schema projectedSchema = org.apache.avro.Schema.createRecord(writerSchema.getName(),
+        writerSchema.getDoc(), writerSchema.getNamespace(), writerSchema.isError());
+    projectedSchema.setFields(fields);
+    return projectedSchema;
+  }
+
+  /**
+   * Reader of the messages written with a given schema, along with the record reused to read them.
+   */
+  private class SchemaDecoder {
+    private final GenericDatumReader<Record> reader;
+    private final int[] fieldPositions;
+    private GenericData.Record record;
+
+    private SchemaDecoder(org.apache.avro.Schema writerSchema) {
+      org.apache.avro.Schema readerSchema = getProjectedSchema(writerSchema, indexingSchema);
+      reader = new GenericDatumReader<Record>(writerSchema, readerSchema);
+      fieldPositions = avroRecordConvetrer.getFieldPositions(readerSchema);
+    }
+  }
+
+  /**
+   * MD5 hash of a schema, stored as two longs so that it can be compared and hashed without any allocation.
+   */
+  private static final class SchemaHash {
+    private long high;
+    private long low;
+
+    private void set(byte[] bytes, int offset) {
+      high = 0L;
+      low = 0L;
+      for (int i = 0; i < 8; i++) {
+        high = (high << 8) | (bytes[offset + i] & 0xFF);
+        low = (low << 8) | (bytes[offset + 8 + i] & 0xFF);
+      }
+    }
+
+    private SchemaHash copy() {
+      SchemaHash copy = new SchemaHash();
+      copy.high = high;
+      copy.low = low;
+      return copy;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof SchemaHash)) {
+        return false;
+      }
+      SchemaHash that = (SchemaHash) o;
+      return high == that.high && low == that.low;
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) (high ^ (high >>> 32) ^ low ^ (low >>> 32));
     }
   }
 
   public static String hex(byte[] bytes) {
-    StringBuilder builder = new StringBuilder(2 * bytes.length);
-    for (int i = 0; i < bytes.length; i++) {
+    return hex(bytes, 0, bytes.length);
+  }
+
+  public static String hex(byte[] bytes, int offset, int length) {
+    StringBuilder builder = new StringBuilder(2 * length);
+    for (int i = offset; i < offset + length; i++) {
       String hexString = Integer.toHexString(0xFF & bytes[i]);
       if (hexString.length() < 2) {
         hexString = "0" + hexString;
@@ -31,6 +31,7 @@ public class KafkaLowLevelStreamProviderConfig extends KafkaHighLevelStreamProvi
 
   private long llcSegmentTimeInMillis = NOT_DEFINED;
   private int llcRealtimeRecordsThreshold = NOT_DEFINED;
+  private long llcRealtimeMemoryThreshold = NOT_DEFINED;
   public static final String LLC_PROPERTY_SUFFIX = ".llc";
 
   @Override
@@ -46,6 +47,15 @@ public class KafkaLowLevelStreamProviderConfig extends KafkaHighLevelStreamProvi
       llcSegmentTimeInMillis =
           Long.parseLong(tableConfig.getIndexingConfig().getStreamConfigs().get(CommonConstants.Helix.DataSource.Realtime.REALTIME_SEGMENT_FLUSH_TIME + LLC_PROPERTY_SUFFIX));
     }
+
+    initMemoryThreshold(tableConfig.getIndexingConfig().getStreamConfigs());
+  }
+
+  private void initMemoryThreshold(Map<String, String> properties) {
+    if (properties.containsKey(CommonConstants.Helix.DataSource.Realtime.REALTIME_SEGMENT_FLUSH_MEMORY)) {
+      llcRealtimeMemoryThreshold =
+          Long.parseLong(properties.get(CommonConstants.Helix.DataSource.Realtime.REALTIME_SEGMENT_FLUSH_MEMORY));
+    }
   }
 
   @Override
@@ -61,6 +71,8 @@ public class KafkaLowLevelStreamProviderConfig extends KafkaHighLevelStreamProvi
       llcSegmentTimeInMillis =
           convertToMs(properties.get(CommonConstants.Helix.DataSource.Realtime.REALTIME_SEGMENT_FLUSH_TIME + LLC_PROPERTY_SUFFIX));
     }
+
+    initMemoryThreshold(properties);
   }
 
   @Override
@@ -72,6 +84,13 @@ public class KafkaLowLevelStreamProviderConfig extends KafkaHighLevelStreamProvi
     }
   }
 
+  /**
+   * Returns the estimated memory used by a consuming segment to flush it at, or a non positive value if not defined.
+   */
+  public long getMemoryThresholdToFlushSegment() {
+    return llcRealtimeMemoryThreshold;
+  }
+
   @Override
   public long getTimeThresholdToFlushSegment() {
     if (llcSegmentTimeInMillis != NOT_DEFINED) {
@@ -24,6 +24,7 @@ public class SegmentIndexCreationInfo {
   private int totalNulls;
   private int totalConversions;
   private int totalNullCols;
+  private int rollupInputDocs;
 
   public int getTotalDocs() {
     return totalDocs;
@@ -88,4 +89,15 @@ public class SegmentIndexCreationInfo {
   public void setTotalNulls(int totalNulls) {
     this.totalNulls = totalNulls;
   }
+
+  /**
+   * Returns the number of input rows rolled up into the documents of the segment, or 0 if they were not rolled up.
+   */
+  public int getRollupInputDocs() {
+    return rollupInputDocs;
+  }
+
+  public void setRollupInputDocs(int rollupInputDocs) {
+    this.rollupInputDocs = rollupInputDocs;
+  }
 }
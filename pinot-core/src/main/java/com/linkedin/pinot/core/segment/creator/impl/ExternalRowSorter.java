@@ -0,0 +1,554 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.creator.impl;
+
+import com.google.common.base.Preconditions;
+import com.linkedin.pinot.common.utils.MmapUtils;
+import com.linkedin.pinot.core.data.GenericRow;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * External sorter of rows on a list of single-value columns.
+ * <p>The rows are serialized into an off-heap buffer of bounded size. When the buffer is full, its rows are sorted and
+ * spilled to disk as a run, and the runs are merged when iterating over the sorted rows. Inputs fitting in the buffer
+ * are sorted in memory without touching the disk. The sort is stable: rows with equal sort values are returned in the
+ * order they were added.
+ * <p>Usage: {@link #add(GenericRow)} all the rows, {@link #sort()}, then iterate over the sorted rows as many times as
+ * needed with {@link #iterator()}, and {@link #close()} to release the buffer and delete the runs.
+ */
+public class ExternalRowSorter implements Closeable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ExternalRowSorter.class);
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final int INITIAL_BUFFER_SIZE = 1024 * 1024;
+  private static final int MAX_BUFFER_SIZE = Integer.MAX_VALUE - 8;
+  private static final int FILE_BUFFER_SIZE = 64 * 1024;
+  // Maximum number of runs merged at once, more runs are first merged into larger runs
+  private static final int MAX_MERGE_FAN_IN = 64;
+
+  // Types of the serialized values
+  private static final byte NULL = 0;
+  private static final byte INT = 1;
+  private static final byte LONG = 2;
+  private static final byte FLOAT = 3;
+  private static final byte DOUBLE = 4;
+  private static final byte STRING = 5;
+  private static final byte ARRAY = 6;
+
+  private final String[] _columns;
+  private final String[] _sortColumns;
+  private final int _maxBufferSize;
+  private final File _spillDir;
+  private final Comparator<Object[]> _keyComparator;
+
+  private final RowOutputStream _rowBytes = new RowOutputStream();
+  private final DataOutputStream _rowOutput = new DataOutputStream(_rowBytes);
+
+  // Rows of the buffer, in insertion order until sorted
+  private ByteBuffer _buffer;
+  private List<BufferedRow> _bufferedRows = new ArrayList<>();
+
+  // Spilled runs, in insertion order
+  private final List<File> _runFiles = new ArrayList<>();
+  private final List<Integer> _runNumRows = new ArrayList<>();
+  private final List<Closeable> _openReaders = new ArrayList<>();
+
+  private int _numRows = 0;
+  private boolean _sorted = false;
+
+  /**
+   * @param columns columns of the rows
+   * @param sortColumns single-value columns to sort on, in order of precedence
+   * @param maxBufferSizeInBytes maximum size of the off-heap buffer of serialized rows
+   * @param spillDir directory of the spilled runs, created if needed and deleted on close
+   */
+  public ExternalRowSorter(List<String> columns, List<String> sortColumns, long maxBufferSizeInBytes, File spillDir) {
+    Preconditions.checkArgument(!sortColumns.isEmpty(), "No column to sort on");
+    Preconditions.checkArgument(maxBufferSizeInBytes > 0, "Sort buffer size must be positive");
+    _columns = columns.toArray(new String[columns.size()]);
+    _sortColumns = sortColumns.toArray(new String[sortColumns.size()]);
+    _maxBufferSize = (int) Math.min(maxBufferSizeInBytes, MAX_BUFFER_SIZE);
+    _spillDir = spillDir;
+    _keyComparator = new Comparator<Object[]>() {
+      @SuppressWarnings("unchecked")
+      @Override
+      public int compare(Object[] key1, Object[] key2) {
+        for (int i = 0; i < key1.length; i++) {
+          int result = ((Comparable) key1[i]).compareTo(key2[i]);
+          if (result != 0) {
+            return result;
+          }
+        }
+        return 0;
+      }
+    };
+  }
+
+  /**
+   * Adds a row to sort. The row is serialized, so it can be reused by the caller.
+   */
+  public void add(GenericRow row) throws IOException {
+    Preconditions.checkState(!_sorted, "Cannot add rows once sorted");
+    Object[] key = getKey(row);
+    _rowBytes.reset();
+    for (String column : _columns) {
+      writeValue(_rowOutput, row.getValue(column));
+    }
+    int rowSize = _rowBytes.size();
+
+    if (_buffer == null || _buffer.remaining() < rowSize) {
+      ensureCapacity(rowSize);
+    }
+    int offset = _buffer.position();
+    _buffer.put(_rowBytes.getBuffer(), 0, rowSize);
+    _bufferedRows.add(new BufferedRow(key, offset, rowSize));
+    _numRows++;
+  }
+
+  /**
+   * Grows the buffer up to its maximum size, or spills the buffered rows, so that a row of the given size fits.
+   */
+  private void ensureCapacity(int rowSize) throws IOException {
+    int usedSize = (_buffer == null) ? 0 : _buffer.position();
+    if (usedSize + rowSize > _maxBufferSize) {
+      Preconditions.checkState(rowSize <= _maxBufferSize,
+          "Row of %s bytes does not fit in the sort buffer of %s bytes", rowSize, _maxBufferSize);
+      spill();
+      usedSize = 0;
+    }
+    if (_buffer == null || _buffer.capacity() < usedSize + rowSize) {
+      long newSize = Math.max((_buffer == null) ? INITIAL_BUFFER_SIZE : 2L * _buffer.capacity(), usedSize + rowSize);
+      ByteBuffer newBuffer = MmapUtils.allocateDirectByteBuffer((int) Math.min(newSize, _maxBufferSize), null,
+          "sort buffer of " + _spillDir.getName());
+      if (_buffer != null) {
+        _buffer.flip();
+        newBuffer.put(_buffer);
+        MmapUtils.unloadByteBuffer(_buffer);
+      }
+      _buffer = newBuffer;
+    }
+  }
+
+  /**
+   * Sorts the buffered rows and writes them as a new run.
+   */
+  private void spill() throws IOException {
+    if (_bufferedRows.isEmpty()) {
+      return;
+    }
+    Collections.sort(_bufferedRows);
+    if (!_spillDir.exists()) {
+      _spillDir.mkdirs();
+    }
+    File runFile = new File(_spillDir, "run_" + _runFiles.size());
+    try (DataOutputStream output = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(runFile), FILE_BUFFER_SIZE))) {
+      byte[] bytes = new byte[0];
+      for (BufferedRow bufferedRow : _bufferedRows) {
+        if (bytes.length < bufferedRow._size) {
+          bytes = new byte[bufferedRow._size];
+        }
+        _buffer.position(bufferedRow._offset);
+        _buffer.get(bytes, 0, bufferedRow._size);
+        output.writeInt(bufferedRow._size);
+        output.write(bytes, 0, bufferedRow._size);
+      }
+    }
+    LOGGER.debug("Spilled run {} of {} rows ({} bytes)", _runFiles.size(), _bufferedRows.size(), runFile.length());
+    _runFiles.add(runFile);
+    _runNumRows.add(_bufferedRows.size());
+    _bufferedRows = new ArrayList<>();
+    _buffer.clear();
+  }
+
+  /**
+   * Sorts the rows added. If runs were spilled, the remaining rows are spilled as the last run and the buffer is
+   * released, then the runs are merged down to at most {@link #MAX_MERGE_FAN_IN} runs.
+   */
+  public void sort() throws IOException {
+    Preconditions.checkState(!_sorted, "Already sorted");
+    _sorted = true;
+    if (_runFiles.isEmpty()) {
+      Collections.sort(_bufferedRows);
+      return;
+    }
+
+    spill();
+    MmapUtils.unloadByteBuffer(_buffer);
+    _buffer = null;
+    while (_runFiles.size() > MAX_MERGE_FAN_IN) {
+      List<File> runFiles = new ArrayList<>(_runFiles);
+      List<Integer> runNumRows = new ArrayList<>(_runNumRows);
+      _runFiles.clear();
+      _runNumRows.clear();
+      // Merge consecutive runs to keep the sort stable
+      for (int start = 0; start < runFiles.size(); start += MAX_MERGE_FAN_IN) {
+        int end = Math.min(start + MAX_MERGE_FAN_IN, runFiles.size());
+        File mergedRunFile = new File(_spillDir, "run_" + _runFiles.size() + "_" + runFiles.size());
+        int numRows = mergeRuns(runFiles.subList(start, end), runNumRows.subList(start, end), mergedRunFile);
+        for (File runFile : runFiles.subList(start, end)) {
+          FileUtils.deleteQuietly(runFile);
+        }
+        _runFiles.add(mergedRunFile);
+        _runNumRows.add(numRows);
+      }
+    }
+    LOGGER.info("Sorted {} rows on {} in {} runs", _numRows, _sortColumns, _runFiles.size());
+  }
+
+  private int mergeRuns(List<File> runFiles, List<Integer> runNumRows, File mergedRunFile) throws IOException {
+    int numRows = 0;
+    MergeIterator mergeIterator = new MergeIterator(runFiles, runNumRows);
+    try (DataOutputStream output = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(mergedRunFile), FILE_BUFFER_SIZE))) {
+      while (mergeIterator.hasNext()) {
+        RunReader runReader = mergeIterator.nextReader();
+        output.writeInt(runReader._rowSize);
+        output.write(runReader._rowBytes, 0, runReader._rowSize);
+        runReader.advance();
+        mergeIterator.requeue(runReader);
+        numRows++;
+      }
+    } finally {
+      mergeIterator.close();
+    }
+    return numRows;
+  }
+
+  /**
+   * Returns the number of rows added.
+   */
+  public int getNumRows() {
+    return _numRows;
+  }
+
+  /**
+   * Returns the number of runs spilled to disk that are merged on iteration, 0 if the rows are sorted in memory.
+   */
+  public int getNumRuns() {
+    return _runFiles.size();
+  }
+
+  /**
+   * Returns an iterator over the sorted rows, which can be called multiple times. Each row returned is a new row.
+   */
+  public Iterator<GenericRow> iterator() throws IOException {
+    Preconditions.checkState(_sorted, "Rows are not sorted");
+    if (_runFiles.isEmpty()) {
+      final ByteBuffer buffer = (_buffer == null) ? ByteBuffer.allocate(0) : _buffer.duplicate();
+      final Iterator<BufferedRow> bufferedRowIterator = _bufferedRows.iterator();
+      return new Iterator<GenericRow>() {
+        @Override
+        public boolean hasNext() {
+          return bufferedRowIterator.hasNext();
+        }
+
+        @Override
+        public GenericRow next() {
+          BufferedRow bufferedRow = bufferedRowIterator.next();
+          buffer.limit(bufferedRow._offset + bufferedRow._size);
+          buffer.position(bufferedRow._offset);
+          return readRow(buffer);
+        }
+
+        @Override
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+
+    final MergeIterator mergeIterator = new MergeIterator(_runFiles, _runNumRows);
+    return new Iterator<GenericRow>() {
+      @Override
+      public boolean hasNext() {
+        if (mergeIterator.hasNext()) {
+          return true;
+        }
+        mergeIterator.close();
+        return false;
+      }
+
+      @Override
+      public GenericRow next() {
+        if (!mergeIterator.hasNext()) {
+          throw new NoSuchElementException();
+        }
+        RunReader runReader = mergeIterator.nextReader();
+        GenericRow row = runReader._row;
+        try {
+          runReader.advance();
+        } catch (IOException e) {
+          throw new RuntimeException("Caught exception while reading run " + runReader._runIndex, e);
+        }
+        mergeIterator.requeue(runReader);
+        return row;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  /**
+   * Releases the buffer and deletes the spilled runs.
+   */
+  @Override
+  public void close() {
+    for (Closeable reader : _openReaders) {
+      IOUtils.closeQuietly(reader);
+    }
+    _openReaders.clear();
+    MmapUtils.unloadByteBuffer(_buffer);
+    _buffer = null;
+    _bufferedRows = new ArrayList<>();
+    FileUtils.deleteQuietly(_spillDir);
+  }
+
+  private Object[] getKey(GenericRow row) {
+    Object[] key = new Object[_sortColumns.length];
+    for (int i = 0; i < _sortColumns.length; i++) {
+      Object value = row.getValue(_sortColumns[i]);
+      Preconditions.checkArgument(value instanceof Comparable, "Cannot sort on value: %s of column: %s", value,
+          _sortColumns[i]);
+      key[i] = value;
+    }
+    return key;
+  }
+
+  private GenericRow readRow(ByteBuffer buffer) {
+    GenericRow row = new GenericRow();
+    for (String column : _columns) {
+      row.putField(column, readValue(buffer));
+    }
+    return row;
+  }
+
+  private static void writeValue(DataOutputStream output, Object value) throws IOException {
+    if (value == null) {
+      output.writeByte(NULL);
+    } else if (value instanceof Integer) {
+      output.writeByte(INT);
+      output.writeInt((Integer) value);
+    } else if (value instanceof Long) {
+      output.writeByte(LONG);
+      output.writeLong((Long) value);
+    } else if (value instanceof Float) {
+      output.writeByte(FLOAT);
+      output.writeFloat((Float) value);
+    } else if (value instanceof Double) {
+      output.writeByte(DOUBLE);
+      output.writeDouble((Double) value);
+    } else if (value instanceof String) {
+      byte[] bytes = ((String) value).getBytes(UTF_8);
+      output.writeByte(STRING);
+      output.writeInt(bytes.length);
+      output.write(bytes);
+    } else if (value instanceof Object[]) {
+      Object[] values = (Object[]) value;
+      output.writeByte(ARRAY);
+      output.writeInt(values.length);
+      for (Object element : values) {
+        writeValue(output, element);
+      }
+    } else {
+      throw new IllegalArgumentException("Unsupported value type: " + value.getClass().getName());
+    }
+  }
+
+  private static Object readValue(ByteBuffer buffer) {
+    byte type = buffer.get();
+    switch (type) {
+      case NULL:
+        return null;
+      case INT:
+        return buffer.getInt();
+      case LONG:
+        return buffer.getLong();
+      case FLOAT:
+        return buffer.getFloat();
+      case DOUBLE:
+        return buffer.getDouble();
+      case STRING:
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+      case ARRAY:
+        Object[] values = new Object[buffer.getInt()];
+        for (int i = 0; i < values.length; i++) {
+          values[i] = readValue(buffer);
+        }
+        return values;
+      default:
+        throw new IllegalStateException("Unknown value type: " + type);
+    }
+  }
+
+  /**
+   * Row of the buffer, with its sort key kept on heap.
+   */
+  private class BufferedRow implements Comparable<BufferedRow> {
+    private final Object[] _key;
+    private final int _offset;
+    private final int _size;
+
+    private BufferedRow(Object[] key, int offset, int size) {
+      _key = key;
+      _offset = offset;
+      _size = size;
+    }
+
+    @Override
+    public int compareTo(BufferedRow other) {
+      return _keyComparator.compare(_key, other._key);
+    }
+  }
+
+  /**
+   * Sequential reader of a run, positioned on the current row.
+   */
+  private class RunReader implements Closeable {
+    private final int _runIndex;
+    private final DataInputStream _input;
+    private int _numRemainingRows;
+    private byte[] _rowBytes = new byte[0];
+    private int _rowSize;
+    private GenericRow _row;
+    private Object[] _key;
+
+    private RunReader(int runIndex, File runFile, int numRows) throws IOException {
+      _runIndex = runIndex;
+      _input = new DataInputStream(new BufferedInputStream(new FileInputStream(runFile), FILE_BUFFER_SIZE));
+      _numRemainingRows = numRows;
+    }
+
+    /**
+     * Reads the next row, returns false at the end of the run.
+     */
+    private boolean advance() throws IOException {
+      if (_numRemainingRows == 0) {
+        _row = null;
+        return false;
+      }
+      _numRemainingRows--;
+      _rowSize = _input.readInt();
+      if (_rowBytes.length < _rowSize) {
+        _rowBytes = new byte[_rowSize];
+      }
+      _input.readFully(_rowBytes, 0, _rowSize);
+      _row = readRow(ByteBuffer.wrap(_rowBytes, 0, _rowSize));
+      _key = getKey(_row);
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      _input.close();
+    }
+  }
+
+  /**
+   * K-way merge of runs, ordered on the key of their current row then on the run index.
+   */
+  private class MergeIterator implements Closeable {
+    private final PriorityQueue<RunReader> _queue;
+    private final List<RunReader> _readers = new ArrayList<>();
+
+    private MergeIterator(List<File> runFiles, List<Integer> runNumRows) throws IOException {
+      _queue = new PriorityQueue<>(runFiles.size(), new Comparator<RunReader>() {
+        @Override
+        public int compare(RunReader reader1, RunReader reader2) {
+          int result = _keyComparator.compare(reader1._key, reader2._key);
+          return (result != 0) ? result : Integer.compare(reader1._runIndex, reader2._runIndex);
+        }
+      });
+      try {
+        for (int i = 0; i < runFiles.size(); i++) {
+          RunReader runReader = new RunReader(i, runFiles.get(i), runNumRows.get(i));
+          _readers.add(runReader);
+          _openReaders.add(runReader);
+          if (runReader.advance()) {
+            _queue.add(runReader);
+          }
+        }
+      } catch (IOException e) {
+        close();
+        throw e;
+      }
+    }
+
+    private boolean hasNext() {
+      return !_queue.isEmpty();
+    }
+
+    /**
+     * Removes the reader of the smallest current row, to be re-queued with {@link #requeue(RunReader)} once advanced.
+     */
+    private RunReader nextReader() {
+      return _queue.poll();
+    }
+
+    private void requeue(RunReader runReader) {
+      if (runReader._row != null) {
+        _queue.add(runReader);
+      }
+    }
+
+    @Override
+    public void close() {
+      for (RunReader runReader : _readers) {
+        IOUtils.closeQuietly(runReader);
+        _openReaders.remove(runReader);
+      }
+      _readers.clear();
+      _queue.clear();
+    }
+  }
+
+  /**
+   * Byte array output stream exposing its buffer to avoid a copy.
+   */
+  private static class RowOutputStream extends ByteArrayOutputStream {
+    private byte[] getBuffer() {
+      return buf;
+    }
+  }
+}
@@ -0,0 +1,253 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.creator.impl;
+
+import com.google.common.base.Preconditions;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.data.TimeFieldSpec;
+import com.linkedin.pinot.common.data.TimeGranularitySpec;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.indexsegment.generator.RollupConfig;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Roll-up of rows as per a {@link RollupConfig}: the time values are truncated to the roll-up time granularity, and the
+ * rows sorted on the key columns (dimensions and time) are aggregated on the fly, as consecutive rows with the same key
+ * values are rolled up into a single row.
+ */
+public class RowRollup {
+  private final RollupConfig _rollupConfig;
+  private final List<String> _keyColumns;
+  private final String[] _metrics;
+  private final RollupConfig.AggregationType[] _aggregationTypes;
+
+  // Time truncation, null if the time values are not truncated
+  private final String _timeColumn;
+  private final TimeUnit _timeUnit;
+  private final int _timeUnitSize;
+  private final long _timeGranularityMillis;
+
+  /**
+   * @param schema schema of the rows
+   * @param rollupConfig roll-up config
+   * @param sortedColumns columns to put first in the key columns, so that the rolled up rows are sorted on them
+   */
+  public RowRollup(Schema schema, RollupConfig rollupConfig, List<String> sortedColumns) {
+    _rollupConfig = rollupConfig;
+
+    Set<String> keyColumns = new LinkedHashSet<>();
+    for (String sortedColumn : sortedColumns) {
+      FieldSpec fieldSpec = schema.getFieldSpecFor(sortedColumn);
+      Preconditions.checkArgument(fieldSpec.getFieldType() != FieldSpec.FieldType.METRIC,
+          "Cannot sort rolled up rows on metric column: %s", sortedColumn);
+      keyColumns.add(sortedColumn);
+    }
+    keyColumns.addAll(schema.getDimensionNames());
+    TimeFieldSpec timeFieldSpec = schema.getTimeFieldSpec();
+    if (timeFieldSpec != null) {
+      keyColumns.add(timeFieldSpec.getName());
+    }
+    for (String keyColumn : keyColumns) {
+      Preconditions.checkArgument(schema.getFieldSpecFor(keyColumn).isSingleValueField(),
+          "Cannot roll up on multi-value column: %s", keyColumn);
+    }
+    _keyColumns = new ArrayList<>(keyColumns);
+
+    List<String> metrics = schema.getMetricNames();
+    for (String metric : metrics) {
+      // Non-numeric metrics (e.g. HLL) cannot be aggregated
+      Preconditions.checkArgument(schema.getFieldSpecFor(metric).getDataType().isNumber(),
+          "Cannot roll up non-numeric metric column: %s", metric);
+    }
+    _metrics = metrics.toArray(new String[metrics.size()]);
+    _aggregationTypes = new RollupConfig.AggregationType[_metrics.length];
+    for (int i = 0; i < _metrics.length; i++) {
+      _aggregationTypes[i] = rollupConfig.getAggregationType(_metrics[i]);
+    }
+
+    long timeGranularityMillis = rollupConfig.getTimeGranularityMillis();
+    if (timeFieldSpec != null && timeGranularityMillis > 0) {
+      TimeGranularitySpec granularitySpec = timeFieldSpec.getOutgoingGranularitySpec();
+      Preconditions.checkArgument(
+          granularitySpec.getTimeFormat().equals(TimeGranularitySpec.TimeFormat.EPOCH.toString()),
+          "Cannot truncate time column: %s in format: %s", timeFieldSpec.getName(), granularitySpec.getTimeFormat());
+      _timeColumn = timeFieldSpec.getName();
+      _timeUnit = granularitySpec.getTimeType();
+      _timeUnitSize = granularitySpec.getTimeUnitSize();
+      _timeGranularityMillis = timeGranularityMillis;
+    } else {
+      _timeColumn = null;
+      _timeUnit = null;
+      _timeUnitSize = 1;
+      _timeGranularityMillis = 0L;
+    }
+  }
+
+  /**
+   * Returns the columns the rows need to be sorted on before being rolled up.
+   */
+  public List<String> getKeyColumns() {
+    return _keyColumns;
+  }
+
+  public RollupConfig getRollupConfig() {
+    return _rollupConfig;
+  }
+
+  /**
+   * Truncates the time value of the given row to the roll-up time granularity, if configured.
+   */
+  public void truncateTime(GenericRow row) {
+    if (_timeColumn == null) {
+      return;
+    }
+    Number timeValue = (Number) row.getValue(_timeColumn);
+    long timeMillis = _timeUnit.toMillis(timeValue.longValue() * _timeUnitSize);
+    long truncatedTimeMillis = timeMillis - timeMillis % _timeGranularityMillis;
+    if (truncatedTimeMillis > timeMillis) {
+      // Round negative times down
+      truncatedTimeMillis -= _timeGranularityMillis;
+    }
+    long truncatedTimeValue = _timeUnit.convert(truncatedTimeMillis, TimeUnit.MILLISECONDS) / _timeUnitSize;
+    row.putField(_timeColumn, castLike(timeValue, truncatedTimeValue));
+  }
+
+  /**
+   * Returns an iterator rolling up the given rows, which must be sorted on the key columns. The rows returned are the
+   * first row of each key, aggregated in place.
+   */
+  public Iterator<GenericRow> rollUp(final Iterator<GenericRow> sortedRows) {
+    return new Iterator<GenericRow>() {
+      private GenericRow _nextRow = sortedRows.hasNext() ? sortedRows.next() : null;
+
+      @Override
+      public boolean hasNext() {
+        return _nextRow != null;
+      }
+
+      @Override
+      public GenericRow next() {
+        if (_nextRow == null) {
+          throw new NoSuchElementException();
+        }
+        GenericRow rollupRow = _nextRow;
+        _nextRow = null;
+        while (sortedRows.hasNext()) {
+          GenericRow row = sortedRows.next();
+          if (!hasSameKey(rollupRow, row)) {
+            _nextRow = row;
+            break;
+          }
+          aggregate(rollupRow, row);
+        }
+        return rollupRow;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  private boolean hasSameKey(GenericRow row1, GenericRow row2) {
+    for (String keyColumn : _keyColumns) {
+      if (!row1.getValue(keyColumn).equals(row2.getValue(keyColumn))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void aggregate(GenericRow rollupRow, GenericRow row) {
+    for (int i = 0; i < _metrics.length; i++) {
+      String metric = _metrics[i];
+      Number value1 = (Number) rollupRow.getValue(metric);
+      Number value2 = (Number) row.getValue(metric);
+      rollupRow.putField(metric, aggregate(value1, value2, _aggregationTypes[i]));
+    }
+  }
+
+  private static Number aggregate(Number value1, Number value2, RollupConfig.AggregationType aggregationType) {
+    if (value1 instanceof Integer) {
+      int int1 = value1.intValue();
+      int int2 = value2.intValue();
+      switch (aggregationType) {
+        case MIN:
+          return Math.min(int1, int2);
+        case MAX:
+          return Math.max(int1, int2);
+        default:
+          return int1 + int2;
+      }
+    }
+    if (value1 instanceof Long) {
+      long long1 = value1.longValue();
+      long long2 = value2.longValue();
+      switch (aggregationType) {
+        case MIN:
+          return Math.min(long1, long2);
+        case MAX:
+          return Math.max(long1, long2);
+        default:
+          return long1 + long2;
+      }
+    }
+    if (value1 instanceof Float) {
+      float float1 = value1.floatValue();
+      float float2 = value2.floatValue();
+      switch (aggregationType) {
+        case MIN:
+          return Math.min(float1, float2);
+        case MAX:
+          return Math.max(float1, float2);
+        default:
+          return float1 + float2;
+      }
+    }
+    double double1 = value1.doubleValue();
+    double double2 = value2.doubleValue();
+    switch (aggregationType) {
+      case MIN:
+        return Math.min(double1, double2);
+      case MAX:
+        return Math.max(double1, double2);
+      default:
+        return double1 + double2;
+    }
+  }
+
+  private static Number castLike(Number original, long value) {
+    if (original instanceof Integer) {
+      return (int) value;
+    }
+    if (original instanceof Float) {
+      return (float) value;
+    }
+    if (original instanceof Double) {
+      return (double) value;
+    }
+    return value;
+  }
+}
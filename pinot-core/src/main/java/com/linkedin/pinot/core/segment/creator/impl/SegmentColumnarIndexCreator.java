@@ -15,9 +15,13 @@
  */
 package com.linkedin.pinot.core.segment.creator.impl;
 
+import com.linkedin.pinot.common.config.ColumnPartitionConfig;
+import com.linkedin.pinot.common.config.SegmentPartitionConfig;
 import com.linkedin.pinot.common.data.FieldSpec;
 import com.linkedin.pinot.common.data.Schema;
 import com.linkedin.pinot.common.data.StarTreeIndexSpec;
+import com.linkedin.pinot.common.partition.PartitionFunction;
+import com.linkedin.pinot.common.partition.PartitionFunctionFactory;
 import com.linkedin.pinot.core.data.GenericRow;
 import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
 import com.linkedin.pinot.core.segment.creator.ColumnIndexCreationInfo;
@@ -37,8 +41,16 @@ import com.linkedin.pinot.core.segment.creator.impl.inv.OffHeapBitmapInvertedInd
 import com.linkedin.pinot.core.startree.hll.HllConfig;
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.PropertiesConfiguration;
 import org.apache.commons.lang.StringEscapeUtils;
@@ -74,6 +86,7 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
   private int totalNulls;
   private int totalConversions;
   private int totalNullCols;
+  private int rollupInputDocs;
   private int docIdCounter;
   private char paddingCharacter;
   private Map<String, Map<Object, Object>> dictionaryCache = new HashMap<String, Map<Object, Object>>();
@@ -81,6 +94,16 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
   @Override
   public void init(SegmentGeneratorConfig segmentCreationSpec, SegmentIndexCreationInfo segmentIndexCreationInfo,
       Map<String, ColumnIndexCreationInfo> indexCreationInfoMap, Schema schema, File outDir) throws Exception {
+    init(segmentCreationSpec, segmentIndexCreationInfo, indexCreationInfoMap, schema, outDir, null);
+  }
+
+  /**
+   * Same as {@link #init(SegmentGeneratorConfig, SegmentIndexCreationInfo, Map, Schema, File)}, building the
+   * dictionaries of the columns in parallel on the given executor if it is not null.
+   */
+  public void init(SegmentGeneratorConfig segmentCreationSpec, SegmentIndexCreationInfo segmentIndexCreationInfo,
+      Map<String, ColumnIndexCreationInfo> indexCreationInfoMap, Schema schema, File outDir,
+      ExecutorService executorService) throws Exception {
     docIdCounter = 0;
     config = segmentCreationSpec;
     this.indexCreationInfoMap = indexCreationInfoMap;
@@ -106,6 +129,7 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
     this.totalNulls = segmentIndexCreationInfo.getTotalNulls();
     this.totalConversions = segmentIndexCreationInfo.getTotalConversions();
     this.totalNullCols = segmentIndexCreationInfo.getTotalNullCols();
+    this.rollupInputDocs = segmentIndexCreationInfo.getRollupInputDocs();
     this.paddingCharacter = segmentCreationSpec.getPaddingCharacter();
 
     // Initialize and build dictionaries
@@ -120,16 +144,33 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
       }
     }
 
-    // For each column, build its dictionary and initialize a forwards and an inverted index
+    // Build the dictionaries, which are independent of each other
+    if (executorService == null) {
+      for (Map.Entry<String, SegmentDictionaryCreator> entry : dictionaryCreatorMap.entrySet()) {
+        buildDictionary(entry.getValue(), indexCreationInfoMap.get(entry.getKey()));
+      }
+    } else {
+      List<Future<Void>> futures = new ArrayList<>(dictionaryCreatorMap.size());
+      for (Map.Entry<String, SegmentDictionaryCreator> entry : dictionaryCreatorMap.entrySet()) {
+        final SegmentDictionaryCreator dictionaryCreator = entry.getValue();
+        final ColumnIndexCreationInfo indexCreationInfo = indexCreationInfoMap.get(entry.getKey());
+        futures.add(executorService.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            buildDictionary(dictionaryCreator, indexCreationInfo);
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    }
+
+    // For each column, initialize a forwards and an inverted index
     for (final String column : indexCreationInfoMap.keySet()) {
       ColumnIndexCreationInfo indexCreationInfo = indexCreationInfoMap.get(column);
-      boolean[] isSorted = new boolean[1];
-      isSorted[0] = indexCreationInfo.isSorted();
-      SegmentDictionaryCreator dictionaryCreator = dictionaryCreatorMap.get(column);
-
-      if (dictionaryCreator != null) {
-        dictionaryCreator.build(isSorted);
-        indexCreationInfo.setSorted(isSorted[0]);
+      if (dictionaryCreatorMap.containsKey(column)) {
         dictionaryCache.put(column, new HashMap<Object, Object>());
       }
       int uniqueValueCount = indexCreationInfo.getDistinctValueCount();
@@ -175,6 +216,14 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
     }
   }
 
+  private static void buildDictionary(SegmentDictionaryCreator dictionaryCreator,
+      ColumnIndexCreationInfo indexCreationInfo) throws Exception {
+    boolean[] isSorted = new boolean[1];
+    isSorted[0] = indexCreationInfo.isSorted();
+    dictionaryCreator.build(isSorted);
+    indexCreationInfo.setSorted(isSorted[0]);
+  }
+
   /**
    * Returns true if dictionary should be created for a column, false otherwise.
    * Currently there are two sources for this config:
@@ -207,38 +256,79 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
   @Override
   public void indexRow(GenericRow row) {
     for (final String column : forwardIndexCreatorMap.keySet()) {
-      try {
-        Object columnValueToIndex = row.getValue(column);
-        if (columnValueToIndex == null) {
-          throw new RuntimeException("Null value for column:" + column);
-        }
+      indexColumn(column, docIdCounter, row.getValue(column));
+    }
+    docIdCounter++;
+  }
 
-        SegmentDictionaryCreator dictionaryCreator = dictionaryCreatorMap.get(column);
-        if (schema.getFieldSpecFor(column).isSingleValueField()) {
-          if (dictionaryCreator != null) {
-            int dictionaryIndex = dictionaryCreator.indexOfSV(columnValueToIndex);
-            ((SingleValueForwardIndexCreator) forwardIndexCreatorMap.get(column)).index(docIdCounter, dictionaryIndex);
-            // TODO : {refactor inverted index addition}
-            if (invertedIndexCreatorMap.containsKey(column)) {
-              invertedIndexCreatorMap.get(column).add(docIdCounter, dictionaryIndex);
-            }
-          } else {
-            ((SingleValueRawIndexCreator) forwardIndexCreatorMap.get(column)).index(docIdCounter, columnValueToIndex);
-          }
-        } else {
-          int[] dictionaryIndex = dictionaryCreator.indexOfMV(columnValueToIndex);
-          ((MultiValueForwardIndexCreator) forwardIndexCreatorMap.get(column)).index(docIdCounter, dictionaryIndex);
+  /**
+   * Indexes the value of a column for the given document.
+   * <p>Columns are independent of each other, so different columns can be indexed concurrently, as long as the
+   * documents of each column are indexed in increasing docId order by a single thread.
+   */
+  public void indexColumn(String column, int docId, Object columnValueToIndex) {
+    try {
+      if (columnValueToIndex == null) {
+        throw new RuntimeException("Null value for column:" + column);
+      }
 
+      SegmentDictionaryCreator dictionaryCreator = dictionaryCreatorMap.get(column);
+      if (schema.getFieldSpecFor(column).isSingleValueField()) {
+        if (dictionaryCreator != null) {
+          int dictionaryIndex = dictionaryCreator.indexOfSV(columnValueToIndex);
+          ((SingleValueForwardIndexCreator) forwardIndexCreatorMap.get(column)).index(docId, dictionaryIndex);
           // TODO : {refactor inverted index addition}
           if (invertedIndexCreatorMap.containsKey(column)) {
-            invertedIndexCreatorMap.get(column).add(docIdCounter, dictionaryIndex);
+            invertedIndexCreatorMap.get(column).add(docId, dictionaryIndex);
           }
+        } else {
+          ((SingleValueRawIndexCreator) forwardIndexCreatorMap.get(column)).index(docId, columnValueToIndex);
+        }
+      } else {
+        int[] dictionaryIndex = dictionaryCreator.indexOfMV(columnValueToIndex);
+        ((MultiValueForwardIndexCreator) forwardIndexCreatorMap.get(column)).index(docId, dictionaryIndex);
+
+        // TODO : {refactor inverted index addition}
+        if (invertedIndexCreatorMap.containsKey(column)) {
+          invertedIndexCreatorMap.get(column).add(docId, dictionaryIndex);
         }
-      } catch (Exception e) {
-        throw new RuntimeException("Exception while indexing column:"+ column, e);
       }
+    } catch (Exception e) {
+      throw new RuntimeException("Exception while indexing column:"+ column, e);
+    }
+  }
+
+  /**
+   * Returns the dictionary id of the given value in the dictionary built for the given single-value or multi-value
+   * column.
+   */
+  public int getDictionaryId(String column, Object value) {
+    return dictionaryCreatorMap.get(column).indexOfSV(value);
+  }
+
+  /**
+   * Indexes the dictionary id of a single-value column for the given document.
+   * <p>Unlike {@link #indexRow(GenericRow)}, this allows building the indexes column by column when the dictionary
+   * ids are already known, in which case documents must be indexed in increasing docId order for each column.
+   */
+  public void indexSingleValue(String column, int docId, int dictId) {
+    ((SingleValueForwardIndexCreator) forwardIndexCreatorMap.get(column)).index(docId, dictId);
+    InvertedIndexCreator invertedIndexCreator = invertedIndexCreatorMap.get(column);
+    if (invertedIndexCreator != null) {
+      invertedIndexCreator.add(docId, dictId);
+    }
+  }
+
+  /**
+   * Indexes the dictionary ids of a multi-value column for the given document.
+   * @see #indexSingleValue(String, int, int)
+   */
+  public void indexMultiValue(String column, int docId, int[] dictIds) {
+    ((MultiValueForwardIndexCreator) forwardIndexCreatorMap.get(column)).index(docId, dictIds);
+    InvertedIndexCreator invertedIndexCreator = invertedIndexCreatorMap.get(column);
+    if (invertedIndexCreator != null) {
+      invertedIndexCreator.add(docId, dictIds);
     }
-    docIdCounter++;
   }
 
   @Override
@@ -284,6 +374,10 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
     properties.setProperty(SEGMENT_TOTAL_NULLS, String.valueOf(totalNulls));
     properties.setProperty(SEGMENT_TOTAL_CONVERSIONS, String.valueOf(totalConversions));
     properties.setProperty(SEGMENT_TOTAL_NULL_COLS, String.valueOf(totalNullCols));
+    if (rollupInputDocs > 0) {
+      properties.setProperty(SEGMENT_ROLLUP_INPUT_DOCS, String.valueOf(rollupInputDocs));
+      properties.setProperty(SEGMENT_ROLLUP_REDUCTION_RATIO, String.valueOf((double) rollupInputDocs / totalDocs));
+    }
 
     StarTreeIndexSpec starTreeIndexSpec = config.getStarTreeIndexSpec();
     if (starTreeIndexSpec != null) {
@@ -325,6 +419,7 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
       properties.setProperty(entry.getKey(), entry.getValue());
     }
 
+    SegmentPartitionConfig segmentPartitionConfig = config.getSegmentPartitionConfig();
     for (Map.Entry<String, ColumnIndexCreationInfo> entry : indexCreationInfoMap.entrySet()) {
       String column = entry.getKey();
       ColumnIndexCreationInfo columnIndexCreationInfo = entry.getValue();
@@ -348,6 +443,13 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
       addColumnMetadataInfo(properties, column, columnIndexCreationInfo, totalDocs, totalRawDocs, totalAggDocs,
           schema.getFieldSpecFor(column), dictionaryCreatorMap.containsKey(column), dictionaryElementSize,
           hasInvertedIndex, hllOriginColumn);
+
+      if (segmentPartitionConfig != null) {
+        ColumnPartitionConfig columnPartitionConfig = segmentPartitionConfig.getColumnPartitionMap().get(column);
+        if (columnPartitionConfig != null) {
+          addColumnPartitionMetadata(properties, column, columnIndexCreationInfo, columnPartitionConfig);
+        }
+      }
     }
 
     properties.save();
@@ -414,6 +516,32 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
     properties.clearProperty(getKeyFor(column, TOTAL_NUMBER_OF_ENTRIES));
     properties.clearProperty(getKeyFor(column, IS_AUTO_GENERATED));
     properties.clearProperty(getKeyFor(column, DEFAULT_NULL_VALUE));
+    properties.clearProperty(getKeyFor(column, PARTITION_FUNCTION));
+    properties.clearProperty(getKeyFor(column, NUM_PARTITIONS));
+    properties.clearProperty(getKeyFor(column, PARTITION_VALUES));
+  }
+
+  /**
+   * Records the partition function of the column and the partitions of its values, computed over its unique values.
+   */
+  public static void addColumnPartitionMetadata(PropertiesConfiguration properties, String column,
+      ColumnIndexCreationInfo columnIndexCreationInfo, ColumnPartitionConfig columnPartitionConfig) {
+    PartitionFunction partitionFunction = PartitionFunctionFactory.getPartitionFunction(
+        columnPartitionConfig.getFunctionName(), columnPartitionConfig.getNumPartitions());
+    Object sortedUniqueElementsArray = columnIndexCreationInfo.getSortedUniqueElementsArray();
+    int numUniqueElements = Array.getLength(sortedUniqueElementsArray);
+    Set<Integer> partitions = new TreeSet<>();
+    for (int i = 0; i < numUniqueElements; i++) {
+      partitions.add(partitionFunction.getPartition(Array.get(sortedUniqueElementsArray, i)));
+    }
+
+    List<String> partitionValues = new ArrayList<>(partitions.size());
+    for (Integer partition : partitions) {
+      partitionValues.add(partition.toString());
+    }
+    properties.setProperty(getKeyFor(column, PARTITION_FUNCTION), partitionFunction.getName());
+    properties.setProperty(getKeyFor(column, NUM_PARTITIONS), String.valueOf(partitionFunction.getNumPartitions()));
+    properties.setProperty(getKeyFor(column, PARTITION_VALUES), partitionValues);
   }
 
   /**
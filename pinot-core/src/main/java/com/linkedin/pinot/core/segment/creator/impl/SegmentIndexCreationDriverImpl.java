@@ -22,29 +22,40 @@ import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.mutable.MutableLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.HashBiMap;
 import com.linkedin.pinot.common.data.FieldSpec;
 import com.linkedin.pinot.common.data.MetricFieldSpec;
 import com.linkedin.pinot.common.data.Schema;
 import com.linkedin.pinot.common.data.StarTreeIndexSpec;
+import com.linkedin.pinot.common.utils.NamedThreadFactory;
 import com.linkedin.pinot.common.utils.SegmentNameBuilder;
 import com.linkedin.pinot.core.data.GenericRow;
 import com.linkedin.pinot.core.data.extractors.FieldExtractorFactory;
 import com.linkedin.pinot.core.data.extractors.PlainFieldExtractor;
+import com.linkedin.pinot.core.data.readers.ColumnarRecordReader;
 import com.linkedin.pinot.core.data.readers.RecordReader;
 import com.linkedin.pinot.core.data.readers.RecordReaderFactory;
+import com.linkedin.pinot.core.indexsegment.generator.RollupConfig;
 import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
 import com.linkedin.pinot.core.segment.creator.AbstractColumnStatisticsCollector;
 import com.linkedin.pinot.core.segment.creator.ColumnIndexCreationInfo;
@@ -74,6 +85,7 @@ import com.linkedin.pinot.core.util.CrcUtils;
 public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDriver {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(SegmentIndexCreationDriverImpl.class);
+  private static final int COLUMN_READ_BATCH_SIZE = 10000;
 
   SegmentGeneratorConfig config;
   RecordReader recordReader;
@@ -85,6 +97,7 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
   PlainFieldExtractor extractor;
   int totalDocs = 0;
   int totalRawDocs = 0;
+  int rollupInputDocs = 0;
   int totalAggDocs = 0;
   File tempIndexDir;
   String segmentName;
@@ -98,6 +111,7 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
   boolean createHllIndex = false;
 
   private File starTreeTempDir;
+  private File sortTempDir;
 
   @Override
   public void init(SegmentGeneratorConfig config) throws Exception {
@@ -107,6 +121,9 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
   public void init(SegmentGeneratorConfig config, RecordReader reader) throws Exception {
     this.config = config;
     this.createStarTree = config.isEnableStarTreeIndex();
+    // The star tree aggregates the raw rows on its own, rolling them up beforehand is not supported
+    Preconditions.checkArgument(!createStarTree || config.getRollupConfig() == null,
+        "Roll-up is not supported with star tree index");
     // Initialize the record reader
     recordReader = reader;
     recordReader.init();
@@ -149,6 +166,7 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
     // Create a temporary directory used in segment creation
     tempIndexDir = new File(indexDir, com.linkedin.pinot.common.utils.FileUtils.getRandomFileName());
     starTreeTempDir = new File(indexDir, com.linkedin.pinot.common.utils.FileUtils.getRandomFileName());
+    sortTempDir = new File(indexDir, com.linkedin.pinot.common.utils.FileUtils.getRandomFileName());
     LOGGER.debug("tempIndexDir:{}", tempIndexDir);
     LOGGER.debug("starTreeTempDir:{}", starTreeTempDir);
   }
@@ -187,12 +205,81 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
   @Override
   public void build() throws Exception {
     if (createStarTree) {
+      if (!config.getSortedColumns().isEmpty()) {
+        LOGGER.warn("Ignoring sorted columns {} for star tree segment", config.getSortedColumns());
+      }
       buildStarTree();
+    } else if (config.getRollupConfig() != null) {
+      buildRawRolledUp();
+    } else if (config.getNumIndexCreationThreads() > 1) {
+      buildRawInParallel(config.getNumIndexCreationThreads());
+    } else if (!config.getSortedColumns().isEmpty()) {
+      buildRawSorted();
     } else {
       buildRaw();
     }
   }
 
+  /**
+   * Builds the segment from the rows rolled up as per the configured {@link RollupConfig}. The sanitized rows, with
+   * their time value truncated to the roll-up time granularity, are sorted on the sorted columns, the dimensions and the
+   * time column in an {@link ExternalRowSorter}, which spills to disk beyond the configured sort buffer size. The
+   * sorted rows with the same dimension and time values are aggregated on the fly, once to collect the statistics and
+   * once to build the indexes.
+   */
+  public void buildRawRolledUp() throws Exception {
+    List<String> sortedColumns = config.getSortedColumns();
+    checkSortedColumns(sortedColumns);
+    RowRollup rowRollup = new RowRollup(dataSchema, config.getRollupConfig(), sortedColumns);
+    ExternalRowSorter sorter = new ExternalRowSorter(new ArrayList<>(dataSchema.getColumnNames()),
+        rowRollup.getKeyColumns(), config.getSortBufferSizeInBytes(), sortTempDir);
+    try {
+      LOGGER.info("Start rolling up records on {}!", rowRollup.getKeyColumns());
+      long start = System.currentTimeMillis();
+      rollupInputDocs = 0;
+      GenericRow readRow = new GenericRow();
+      GenericRow transformedRow = new GenericRow();
+      while (recordReader.hasNext()) {
+        rollupInputDocs++;
+        transformedRow = readNextRowSanitized(readRow, transformedRow);
+        rowRollup.truncateTime(transformedRow);
+        sorter.add(transformedRow);
+      }
+      recordReader.close();
+      long readFinishTime = System.currentTimeMillis();
+      totalRecordReadTime += readFinishTime - start;
+      sorter.sort();
+      long sortFinishTime = System.currentTimeMillis();
+      LOGGER.info("Sorted {} records in {}ms with {} spilled runs", rollupInputDocs, sortFinishTime - readFinishTime,
+          sorter.getNumRuns());
+
+      totalDocs = 0;
+      Iterator<GenericRow> rolledUpRowsIterator = rowRollup.rollUp(sorter.iterator());
+      while (rolledUpRowsIterator.hasNext()) {
+        statsCollector.collectRow(rolledUpRowsIterator.next());
+        totalDocs++;
+      }
+      totalRawDocs = totalDocs;
+      buildIndexCreationInfo();
+      long statsFinishTime = System.currentTimeMillis();
+      totalStatsCollectorTime += statsFinishTime - sortFinishTime;
+      LOGGER.info("Rolled up {} records into {} documents", rollupInputDocs, totalDocs);
+
+      indexCreator.init(config, segmentIndexCreationInfo, indexCreationInfoMap, dataSchema, tempIndexDir);
+      rolledUpRowsIterator = rowRollup.rollUp(sorter.iterator());
+      while (rolledUpRowsIterator.hasNext()) {
+        indexCreator.indexRow(rolledUpRowsIterator.next());
+      }
+      totalIndexTime += System.currentTimeMillis() - statsFinishTime;
+    } finally {
+      sorter.close();
+    }
+    LOGGER.info("Finished records indexing in IndexCreator!");
+    logExtractorStats();
+
+    handlePostCreation();
+  }
+
   public void buildStarTree() throws Exception {
     long start = System.currentTimeMillis();
     //construct star tree builder config
@@ -389,6 +476,274 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
     }
     recordReader.close();
     LOGGER.info("Finished records indexing in IndexCreator!");
+    logExtractorStats();
+
+    handlePostCreation();
+  }
+
+  /**
+   * Builds the segment from the rows sorted on the configured sorted columns. The sanitized rows are read once into an
+   * {@link ExternalRowSorter}, which spills to disk beyond the configured sort buffer size, then the statistics are
+   * collected and the indexes built over the sorted rows.
+   */
+  public void buildRawSorted() throws Exception {
+    List<String> sortedColumns = config.getSortedColumns();
+    checkSortedColumns(sortedColumns);
+    ExternalRowSorter sorter = new ExternalRowSorter(new ArrayList<>(dataSchema.getColumnNames()), sortedColumns,
+        config.getSortBufferSizeInBytes(), sortTempDir);
+    try {
+      LOGGER.info("Start sorting records on {}!", sortedColumns);
+      long start = System.currentTimeMillis();
+      totalDocs = 0;
+      GenericRow readRow = new GenericRow();
+      GenericRow transformedRow = new GenericRow();
+      while (recordReader.hasNext()) {
+        totalDocs++;
+        totalRawDocs++;
+        transformedRow = readNextRowSanitized(readRow, transformedRow);
+        sorter.add(transformedRow);
+      }
+      recordReader.close();
+      long readFinishTime = System.currentTimeMillis();
+      totalRecordReadTime += readFinishTime - start;
+      sorter.sort();
+      long sortFinishTime = System.currentTimeMillis();
+      LOGGER.info("Sorted {} documents in {}ms with {} spilled runs", totalDocs, sortFinishTime - readFinishTime,
+          sorter.getNumRuns());
+
+      Iterator<GenericRow> sortedRowsIterator = sorter.iterator();
+      while (sortedRowsIterator.hasNext()) {
+        statsCollector.collectRow(sortedRowsIterator.next());
+      }
+      buildIndexCreationInfo();
+      long statsFinishTime = System.currentTimeMillis();
+      totalStatsCollectorTime += statsFinishTime - sortFinishTime;
+      LOGGER.info("Collected stats for {} documents", totalDocs);
+
+      indexCreator.init(config, segmentIndexCreationInfo, indexCreationInfoMap, dataSchema, tempIndexDir);
+      sortedRowsIterator = sorter.iterator();
+      while (sortedRowsIterator.hasNext()) {
+        indexCreator.indexRow(sortedRowsIterator.next());
+      }
+      totalIndexTime += System.currentTimeMillis() - statsFinishTime;
+    } finally {
+      sorter.close();
+    }
+    LOGGER.info("Finished records indexing in IndexCreator!");
+    logExtractorStats();
+
+    handlePostCreation();
+  }
+
+  private void checkSortedColumns(List<String> sortedColumns) {
+    for (String column : sortedColumns) {
+      FieldSpec fieldSpec = dataSchema.getFieldSpecFor(column);
+      Preconditions.checkArgument(fieldSpec != null, "Sorted column: %s is not in the schema", column);
+      Preconditions.checkArgument(fieldSpec.isSingleValueField(), "Sorted column: %s is not single-value", column);
+    }
+  }
+
+  /**
+   * Builds the segment with column parallelism: the sanitized values are read once and buffered column by column in
+   * docId order, then the statistics, dictionaries and indexes of the columns are built concurrently, each column
+   * being processed by a single thread. The segment is identical to the one built by {@link #buildRaw()}.
+   * <p>The columns of a {@link ColumnarRecordReader} are read and sanitized concurrently without materializing the
+   * rows, other record readers are iterated row by row. If sorted columns are configured, the rows are first sorted
+   * through an {@link ExternalRowSorter} like {@link #buildRawSorted()} does, which spills to disk beyond the configured
+   * sort buffer size, and the columns are buffered from the sorted rows.
+   *
+   * @param numThreads number of threads used to process the columns
+   */
+  public void buildRawInParallel(int numThreads) throws Exception {
+    final List<String> columns = new ArrayList<>(dataSchema.getColumnNames());
+    int numColumns = columns.size();
+    final List<List<Object>> columnValues = new ArrayList<>(numColumns);
+    for (int i = 0; i < numColumns; i++) {
+      columnValues.add(new ArrayList<Object>());
+    }
+
+    ExecutorService executorService =
+        Executors.newFixedThreadPool(numThreads, new NamedThreadFactory("segment-creation-" + tempIndexDir.getName()));
+    try {
+      LOGGER.info("Start buffering records for {} columns!", numColumns);
+      long start = System.currentTimeMillis();
+      if (!config.getSortedColumns().isEmpty()) {
+        readRowsSorted(columns, columnValues);
+      } else if (recordReader instanceof ColumnarRecordReader) {
+        readColumns((ColumnarRecordReader) recordReader, columns, columnValues, executorService);
+      } else {
+        // Read the records, sequentially to keep the extractor counters and the docIds deterministic
+        totalDocs = 0;
+        GenericRow readRow = new GenericRow();
+        GenericRow transformedRow = new GenericRow();
+        while (recordReader.hasNext()) {
+          totalDocs++;
+          totalRawDocs++;
+          transformedRow = readNextRowSanitized(readRow, transformedRow);
+          addRowToColumnValues(transformedRow, columns, columnValues);
+        }
+      }
+      recordReader.close();
+      long readFinishTime = System.currentTimeMillis();
+      totalRecordReadTime += readFinishTime - start;
+
+      // Collect and seal the statistics of each column
+      List<Callable<Void>> statsTasks = new ArrayList<>(numColumns);
+      for (int i = 0; i < numColumns; i++) {
+        final String column = columns.get(i);
+        final List<Object> values = columnValues.get(i);
+        final AbstractColumnStatisticsCollector columnStatsCollector = statsCollector.getColumnProfileFor(column);
+        if (columnStatsCollector == null) {
+          continue;
+        }
+        statsTasks.add(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (Object value : values) {
+              // Same as the row based collection, which skips the columns missing from the row
+              if (value != null) {
+                columnStatsCollector.collect(value);
+              }
+            }
+            columnStatsCollector.seal();
+            return null;
+          }
+        });
+      }
+      invokeAllAndWait(executorService, statsTasks);
+      populateIndexCreationInfo();
+      long statsFinishTime = System.currentTimeMillis();
+      totalStatsCollectorTime += statsFinishTime - readFinishTime;
+      LOGGER.info("Collected stats for {} documents", totalDocs);
+
+      // Build the dictionaries, then the forward and inverted indexes of each column
+      final SegmentColumnarIndexCreator columnarIndexCreator = (SegmentColumnarIndexCreator) indexCreator;
+      columnarIndexCreator.init(config, segmentIndexCreationInfo, indexCreationInfoMap, dataSchema, tempIndexDir,
+          executorService);
+      List<Callable<Void>> indexTasks = new ArrayList<>(numColumns);
+      for (int i = 0; i < numColumns; i++) {
+        final String column = columns.get(i);
+        final int columnIndex = i;
+        indexTasks.add(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            List<Object> values = columnValues.get(columnIndex);
+            int numValues = values.size();
+            for (int docId = 0; docId < numValues; docId++) {
+              columnarIndexCreator.indexColumn(column, docId, values.get(docId));
+            }
+            // Release the buffered values of the column as soon as it is indexed
+            columnValues.set(columnIndex, null);
+            return null;
+          }
+        });
+      }
+      invokeAllAndWait(executorService, indexTasks);
+      totalIndexTime += System.currentTimeMillis() - statsFinishTime;
+    } finally {
+      executorService.shutdownNow();
+    }
+    LOGGER.info("Finished records indexing in IndexCreator with {} threads!", numThreads);
+    logExtractorStats();
+
+    handlePostCreation();
+  }
+
+  /**
+   * Reads and sanitizes the values of the columns of a columnar record reader into the column buffers, one task per
+   * column, with the same values and extractor counters as the row by row reading.
+   */
+  private void readColumns(final ColumnarRecordReader columnarRecordReader, List<String> columns,
+      List<List<Object>> columnValues, ExecutorService executorService) throws Exception {
+    final int numDocs = columnarRecordReader.getNumDocs();
+    int numColumns = columns.size();
+    Map<String, PlainFieldExtractor.ColumnCounters> columnCountersMap = new HashMap<>();
+    List<Callable<Void>> readTasks = new ArrayList<>(numColumns);
+    for (int i = 0; i < numColumns; i++) {
+      final String column = columns.get(i);
+      final List<Object> values = columnValues.get(i);
+      if (PlainFieldExtractor.isDerivedMetric(dataSchema.getFieldSpecFor(column))) {
+        // Derived metrics are not extracted from the records
+        values.addAll(Collections.nCopies(numDocs, null));
+        continue;
+      }
+      final PlainFieldExtractor.ColumnCounters columnCounters = new PlainFieldExtractor.ColumnCounters();
+      columnCountersMap.put(column, columnCounters);
+      readTasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          String sourceColumn = extractor.getSourceColumn(column);
+          Object[] buffer = new Object[Math.min(numDocs, COLUMN_READ_BATCH_SIZE)];
+          for (int startDocId = 0; startDocId < numDocs; startDocId += buffer.length) {
+            int numValues = Math.min(buffer.length, numDocs - startDocId);
+            columnarRecordReader.readColumn(sourceColumn, startDocId, numValues, buffer);
+            extractor.transformColumn(column, buffer, numValues, startDocId, columnCounters);
+            values.addAll(Arrays.asList(buffer).subList(0, numValues));
+          }
+          return null;
+        }
+      });
+    }
+    invokeAllAndWait(executorService, readTasks);
+    extractor.addColumnCounters(columnCountersMap);
+    totalDocs = numDocs;
+    totalRawDocs = numDocs;
+  }
+
+  /**
+   * Reads and sanitizes the records into an {@link ExternalRowSorter} on the configured sorted columns, then buffers the
+   * values of the sorted rows column by column.
+   */
+  private void readRowsSorted(List<String> columns, List<List<Object>> columnValues) throws Exception {
+    List<String> sortedColumns = config.getSortedColumns();
+    checkSortedColumns(sortedColumns);
+    ExternalRowSorter sorter = new ExternalRowSorter(new ArrayList<>(dataSchema.getColumnNames()), sortedColumns,
+        config.getSortBufferSizeInBytes(), sortTempDir);
+    try {
+      totalDocs = 0;
+      GenericRow readRow = new GenericRow();
+      GenericRow transformedRow = new GenericRow();
+      while (recordReader.hasNext()) {
+        totalDocs++;
+        totalRawDocs++;
+        transformedRow = readNextRowSanitized(readRow, transformedRow);
+        sorter.add(transformedRow);
+      }
+      sorter.sort();
+      LOGGER.info("Sorted {} documents on {} with {} spilled runs", totalDocs, sortedColumns, sorter.getNumRuns());
+
+      Iterator<GenericRow> sortedRowsIterator = sorter.iterator();
+      while (sortedRowsIterator.hasNext()) {
+        addRowToColumnValues(sortedRowsIterator.next(), columns, columnValues);
+      }
+    } finally {
+      sorter.close();
+    }
+  }
+
+  private static void addRowToColumnValues(GenericRow row, List<String> columns, List<List<Object>> columnValues) {
+    int numColumns = columns.size();
+    for (int i = 0; i < numColumns; i++) {
+      columnValues.get(i).add(row.getValue(columns.get(i)));
+    }
+  }
+
+  private static void invokeAllAndWait(ExecutorService executorService, List<Callable<Void>> tasks)
+      throws Exception {
+    for (Future<Void> future : executorService.invokeAll(tasks)) {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Exception) {
+          throw (Exception) cause;
+        }
+        throw e;
+      }
+    }
+  }
+
+  private void logExtractorStats() {
     int numErrors, numConversions, numNulls, numNullCols;
     if ((numErrors = extractor.getTotalErrors()) > 0) {
       LOGGER.warn("Index creator for schema {} had {} rows with errors", dataSchema.getSchemaName(), numErrors);
@@ -409,8 +764,6 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
     if ((numNullCols = extractor.getTotalNullCols()) > 0) {
       LOGGER.info("Index creator for schema {} had {}  null columns", dataSchema.getSchemaName(), numNullCols);
     }
-
-    handlePostCreation();
   }
 
   private void handlePostCreation() throws Exception {
@@ -435,6 +788,33 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
     indexCreator.seal();
     LOGGER.info("Finished segment seal!");
 
+    moveAndFinalizeSegment(config, tempIndexDir, segmentName);
+
+    Map<String, MutableLong> nullCountMap = recordReader.getNullCountMap();
+    if (nullCountMap != null) {
+      for (Map.Entry<String, MutableLong> entry : nullCountMap.entrySet()) {
+        AbstractColumnStatisticsCollector columnStatisticsCollector =
+            statsCollector.getColumnProfileFor(entry.getKey());
+        columnStatisticsCollector.setNumInputNullValues(entry.getValue().intValue());
+      }
+    }
+
+    LOGGER.info("Driver, record read time : {}", totalRecordReadTime);
+    LOGGER.info("Driver, stats collector time : {}", totalStatsCollectorTime);
+    LOGGER.info("Driver, indexing time : {}", totalIndexTime);
+  }
+
+  /**
+   * Moves the sealed segment from the temporary index directory into the output directory, persists the segment
+   * creation metadata (CRC and creation time) and converts the segment into the configured format.
+   *
+   * @param config segment generator config
+   * @param tempIndexDir temporary directory the segment was sealed into
+   * @param segmentName name of the segment
+   * @return final segment directory
+   */
+  public static File moveAndFinalizeSegment(SegmentGeneratorConfig config, File tempIndexDir, String segmentName)
+      throws Exception {
     // Delete the directory named after the segment name, if it exists
     final File outputDir = new File(config.getOutDir());
     final File segmentOutputDir = new File(outputDir, segmentName);
@@ -452,20 +832,10 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
     final long crc = CrcUtils.forAllFilesInFolder(segmentOutputDir).computeCrc();
 
     // Persist creation metadata to disk
-    persistCreationMeta(segmentOutputDir, crc);
-    Map<String, MutableLong> nullCountMap = recordReader.getNullCountMap();
-    if (nullCountMap != null) {
-      for (Map.Entry<String, MutableLong> entry : nullCountMap.entrySet()) {
-        AbstractColumnStatisticsCollector columnStatisticsCollector =
-            statsCollector.getColumnProfileFor(entry.getKey());
-        columnStatisticsCollector.setNumInputNullValues(entry.getValue().intValue());
-      }
-    }
+    persistCreationMeta(config, segmentOutputDir, crc);
 
-    convertFormatIfNeeded(segmentOutputDir);
-    LOGGER.info("Driver, record read time : {}", totalRecordReadTime);
-    LOGGER.info("Driver, stats collector time : {}", totalStatsCollectorTime);
-    LOGGER.info("Driver, indexing time : {}", totalIndexTime);
+    convertFormatIfNeeded(config, segmentOutputDir);
+    return segmentOutputDir;
   }
 
   // Explanation of why we are using format converter:
@@ -482,7 +852,7 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
   // Using converter is similar to option (2), plus it's battle-tested code. We will roll out with
   // this change to keep changes limited. Once we've migrated we can implement approach (1) with option to
   // copy for indexes for which we don't know sizes upfront.
-  private void convertFormatIfNeeded(File segmentDirectory)
+  private static void convertFormatIfNeeded(SegmentGeneratorConfig config, File segmentDirectory)
       throws Exception {
     SegmentVersion versionToGenerate = config.getSegmentVersion();
     if (versionToGenerate.equals(SegmentVersion.v1)) {
@@ -504,7 +874,7 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
   /**
    * Writes segment creation metadata to disk.
    */
-  void persistCreationMeta(File outputDir, long crc) throws IOException {
+  static void persistCreationMeta(SegmentGeneratorConfig config, File outputDir, long crc) throws IOException {
     final File crcFile = new File(outputDir, V1Constants.SEGMENT_CREATION_META);
     final DataOutputStream out = new DataOutputStream(new FileOutputStream(crcFile));
     out.writeLong(crc);
@@ -531,6 +901,14 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
   void buildIndexCreationInfo()
       throws Exception {
     statsCollector.build();
+    populateIndexCreationInfo();
+  }
+
+  /**
+   * Stores the information of the sealed stats collector in indexCreationInfoMap.
+   */
+  private void populateIndexCreationInfo()
+      throws Exception {
     for (FieldSpec spec : dataSchema.getAllFieldSpecs()) {
       String column = spec.getName();
       indexCreationInfoMap.put(column, new ColumnIndexCreationInfo(true/*createDictionary*/,
@@ -546,6 +924,7 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
     }
     segmentIndexCreationInfo.setTotalDocs(totalDocs);
     segmentIndexCreationInfo.setTotalRawDocs(totalRawDocs);
+    segmentIndexCreationInfo.setRollupInputDocs(rollupInputDocs);
     segmentIndexCreationInfo.setTotalAggDocs(totalAggDocs);
     segmentIndexCreationInfo.setStarTreeEnabled(createStarTree);
     segmentIndexCreationInfo.setTotalConversions(extractor.getTotalConversions());
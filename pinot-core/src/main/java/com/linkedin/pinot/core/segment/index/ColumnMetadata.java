@@ -22,10 +22,15 @@ import com.linkedin.pinot.common.data.FieldSpec.FieldType;
 import com.linkedin.pinot.common.data.MetricFieldSpec;
 import com.linkedin.pinot.common.data.MetricFieldSpec.DerivedMetricType;
 import com.linkedin.pinot.common.data.TimeFieldSpec;
+import com.linkedin.pinot.common.metadata.segment.ColumnPartitionMetadata;
 import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
 import com.linkedin.pinot.core.startree.hll.HllUtil;
 import java.lang.reflect.Field;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 import org.apache.commons.configuration.PropertiesConfiguration;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.codehaus.jackson.annotate.JsonProperty;
@@ -66,6 +71,7 @@ public class ColumnMetadata {
   private final DerivedMetricType derivedMetricType;
   private final int fieldSize;
   private final String originColumnName;
+  private final ColumnPartitionMetadata partitionMetadata;
 
   public static ColumnMetadata fromPropertiesConfiguration(String column, PropertiesConfiguration config) {
     Builder builder = new Builder();
@@ -122,6 +128,17 @@ public class ColumnMetadata {
       builder.setDerivedMetricType(derivedMetricType);
     }
 
+    String partitionFunctionName = config.getString(getKeyFor(column, PARTITION_FUNCTION), null);
+    if (partitionFunctionName != null) {
+      int numPartitions = config.getInt(getKeyFor(column, NUM_PARTITIONS));
+      List partitionValues = config.getList(getKeyFor(column, PARTITION_VALUES));
+      Set<Integer> partitions = new HashSet<>();
+      for (Object partitionValue : partitionValues) {
+        partitions.add(Integer.valueOf(partitionValue.toString()));
+      }
+      builder.setPartitionMetadata(new ColumnPartitionMetadata(partitionFunctionName, numPartitions, partitions));
+    }
+
     return builder.build();
   }
 
@@ -149,6 +166,7 @@ public class ColumnMetadata {
     private DerivedMetricType derivedMetricType;
     private int fieldSize;
     private String originColumnName;
+    private ColumnPartitionMetadata partitionMetadata;
 
     public Builder setColumnName(String columnName) {
       this.columnName = columnName;
@@ -265,11 +283,16 @@ public class ColumnMetadata {
       return this;
     }
 
+    public Builder setPartitionMetadata(ColumnPartitionMetadata partitionMetadata) {
+      this.partitionMetadata = partitionMetadata;
+      return this;
+    }
+
     public ColumnMetadata build() {
       return new ColumnMetadata(columnName, cardinality, totalDocs, totalRawDocs, totalAggDocs, dataType,
           bitsPerElement, stringColumnMaxLength, fieldType, isSorted, containsNulls, hasDictionary, hasInvertedIndex,
           isSingleValue, maxNumberOfMultiValues, totalNumberOfEntries, isAutoGenerated, defaultNullValueString,
-          timeUnit, paddingCharacter, derivedMetricType, fieldSize, originColumnName);
+          timeUnit, paddingCharacter, derivedMetricType, fieldSize, originColumnName, partitionMetadata);
     }
   }
 
@@ -278,7 +301,7 @@ public class ColumnMetadata {
       boolean hasNulls, boolean hasDictionary, boolean hasInvertedIndex, boolean isSingleValue,
       int maxNumberOfMultiValues, int totalNumberOfEntries, boolean isAutoGenerated, String defaultNullValueString,
       TimeUnit timeUnit, char paddingCharacter, DerivedMetricType derivedMetricType, int fieldSize,
-      String originColumnName) {
+      String originColumnName, ColumnPartitionMetadata partitionMetadata) {
     this.columnName = columnName;
     this.cardinality = cardinality;
     this.totalDocs = totalDocs;
@@ -302,6 +325,7 @@ public class ColumnMetadata {
     this.derivedMetricType = derivedMetricType;
     this.fieldSize = fieldSize;
     this.originColumnName = originColumnName;
+    this.partitionMetadata = partitionMetadata;
 
     switch (fieldType) {
       case DIMENSION:
@@ -414,6 +438,15 @@ public class ColumnMetadata {
     return fieldSpec;
   }
 
+  /**
+   * Returns the partition function of the column and the partitions of its values, or null if the column is not
+   * partitioned.
+   */
+  @Nullable
+  public ColumnPartitionMetadata getPartitionMetadata() {
+    return partitionMetadata;
+  }
+
   @Override
   public String toString() {
     final StringBuilder result = new StringBuilder();
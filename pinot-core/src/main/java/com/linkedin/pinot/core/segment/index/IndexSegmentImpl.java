@@ -15,6 +15,7 @@
  */
 package com.linkedin.pinot.core.segment.index;
 
+import com.linkedin.pinot.common.metadata.segment.IndexLoadingConfigMetadata;
 import com.linkedin.pinot.common.segment.SegmentMetadata;
 import com.linkedin.pinot.core.common.BlockMultiValIterator;
 import com.linkedin.pinot.core.common.BlockSingleValIterator;
@@ -25,6 +26,7 @@ import com.linkedin.pinot.core.data.GenericRow;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.indexsegment.IndexType;
 import com.linkedin.pinot.core.io.reader.DataFileReader;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
 import com.linkedin.pinot.core.segment.index.column.ColumnIndexContainer;
 import com.linkedin.pinot.core.segment.index.data.source.ColumnDataSourceImpl;
 import com.linkedin.pinot.core.segment.index.readers.Dictionary;
@@ -32,9 +34,11 @@ import com.linkedin.pinot.core.segment.index.readers.ImmutableDictionaryReader;
 import com.linkedin.pinot.core.segment.index.readers.InvertedIndexReader;
 import com.linkedin.pinot.core.segment.store.SegmentDirectory;
 import com.linkedin.pinot.core.startree.StarTreeInterf;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,6 +49,9 @@ public class IndexSegmentImpl implements IndexSegment {
   private final SegmentMetadataImpl segmentMetadata;
   private final Map<String, ColumnIndexContainer> indexContainerMap;
   private final StarTreeInterf starTree;
+  // Only set when column indexes are loaded on first access
+  private final SegmentDirectory.Reader segmentReader;
+  private final IndexLoadingConfigMetadata indexLoadingConfigMetadata;
 
   public IndexSegmentImpl(SegmentDirectory segmentDirectory, SegmentMetadataImpl segmentMetadata,
       Map<String, ColumnIndexContainer> columnIndexContainerMap, StarTreeInterf starTree) throws Exception {
@@ -52,19 +59,68 @@ public class IndexSegmentImpl implements IndexSegment {
     this.segmentMetadata = segmentMetadata;
     this.indexContainerMap = columnIndexContainerMap;
     this.starTree = starTree;
+    this.segmentReader = null;
+    this.indexLoadingConfigMetadata = null;
     LOGGER.info("Successfully loaded the index segment : " + segmentDirectory);
   }
 
+  /**
+   * Creates an index segment which loads the index container of a column the first time the column is accessed.
+   */
+  public IndexSegmentImpl(SegmentDirectory segmentDirectory, SegmentMetadataImpl segmentMetadata,
+      SegmentDirectory.Reader segmentReader, IndexLoadingConfigMetadata indexLoadingConfigMetadata,
+      StarTreeInterf starTree) throws Exception {
+    this.segmentDirectory = segmentDirectory;
+    this.segmentMetadata = segmentMetadata;
+    this.indexContainerMap = new ConcurrentHashMap<>();
+    this.starTree = starTree;
+    this.segmentReader = segmentReader;
+    this.indexLoadingConfigMetadata = indexLoadingConfigMetadata;
+    LOGGER.info("Successfully loaded the index segment with lazy column loading : " + segmentDirectory);
+  }
+
+  private ColumnIndexContainer getIndexContainer(String column) {
+    ColumnIndexContainer indexContainer = indexContainerMap.get(column);
+    if (indexContainer != null || segmentReader == null) {
+      return indexContainer;
+    }
+    synchronized (this) {
+      indexContainer = indexContainerMap.get(column);
+      if (indexContainer == null) {
+        ColumnMetadata columnMetadata = segmentMetadata.getColumnMetadataFor(column);
+        if (columnMetadata == null) {
+          return null;
+        }
+        try {
+          indexContainer = ColumnIndexContainer.init(segmentReader, columnMetadata, indexLoadingConfigMetadata);
+        } catch (IOException e) {
+          throw new RuntimeException(
+              "Caught exception while loading column: " + column + " of segment: " + getSegmentName(), e);
+        }
+        indexContainerMap.put(column, indexContainer);
+        LOGGER.debug("Loaded column: {} of segment: {}", column, getSegmentName());
+      }
+      return indexContainer;
+    }
+  }
+
+  /**
+   * Returns the number of columns whose index containers are currently loaded.
+   */
+  public int getNumLoadedColumns() {
+    return indexContainerMap.size();
+  }
+
   public ImmutableDictionaryReader getDictionaryFor(String column) {
-    return indexContainerMap.get(column).getDictionary();
+    return getIndexContainer(column).getDictionary();
   }
 
   public DataFileReader getForwardIndexReaderFor(String column) {
-    return indexContainerMap.get(column).getForwardIndex();
+    return getIndexContainer(column).getForwardIndex();
   }
 
   public InvertedIndexReader getInvertedIndexFor(String column) {
-    return indexContainerMap.get(column).getInvertedIndex();
+    return getIndexContainer(column).getInvertedIndex();
   }
 
   @Override
@@ -89,7 +145,7 @@ public class IndexSegmentImpl implements IndexSegment {
 
   @Override
   public DataSource getDataSource(String columnName) {
-    return new ColumnDataSourceImpl(indexContainerMap.get(columnName));
+    return new ColumnDataSourceImpl(getIndexContainer(columnName));
   }
 
   public DataSource getDataSource(String columnName, Predicate p) {
@@ -103,7 +159,9 @@ public class IndexSegmentImpl implements IndexSegment {
 
   @Override
   public void destroy() {
-    LOGGER.info("Trying to destroy segment : {}", this.getSegmentName());
+    LOGGER.info("Trying to destroy segment : {}, loaded {} of {} columns", this.getSegmentName(),
+        indexContainerMap.size(), segmentMetadata.getAllColumns().size());
+    SegmentResultCache.getInstance().invalidate(segmentMetadata.getTableName(), getSegmentName());
     for (String column : indexContainerMap.keySet()) {
       ColumnIndexContainer columnIndexContainer = indexContainerMap.get(column);
 
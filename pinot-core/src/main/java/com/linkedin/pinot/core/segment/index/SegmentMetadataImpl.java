@@ -17,8 +17,10 @@ package com.linkedin.pinot.core.segment.index;
 
 import com.linkedin.pinot.common.data.MetricFieldSpec;
 import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.metadata.segment.ColumnPartitionMetadata;
 import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
 import com.linkedin.pinot.common.metadata.segment.RealtimeSegmentZKMetadata;
+import com.linkedin.pinot.common.metadata.segment.SegmentPartitionMetadata;
 import com.linkedin.pinot.common.segment.SegmentMetadata;
 import com.linkedin.pinot.common.segment.StarTreeMetadata;
 import com.linkedin.pinot.common.utils.time.TimeUtils;
@@ -26,6 +28,7 @@ import com.linkedin.pinot.core.indexsegment.IndexType;
 import com.linkedin.pinot.core.indexsegment.generator.SegmentVersion;
 import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
 import com.linkedin.pinot.core.segment.store.SegmentDirectoryPaths;
+import com.linkedin.pinot.core.segment.store.SegmentMetadataBinaryFile;
 import com.linkedin.pinot.core.startree.hll.HllConstants;
 import java.io.DataInputStream;
 import java.io.File;
@@ -86,6 +89,7 @@ public class SegmentMetadataImpl implements SegmentMetadata {
   private char _paddingCharacter = V1Constants.Str.DEFAULT_STRING_PAD_CHAR;
   private int _hllLog2m = HllConstants.DEFAULT_LOG2M;
   private final Map<String, String> _hllDerivedColumnMap = new HashMap<>();
+  private SegmentPartitionMetadata _partitionMetadata = null;
 
   public SegmentMetadataImpl(File indexDir) throws ConfigurationException, IOException {
     LOGGER.debug("SegmentMetadata location: {}", indexDir);
@@ -95,7 +99,12 @@ public class SegmentMetadataImpl implements SegmentMetadata {
       tmpMetadataFile = new File(indexDir, MetadataKeys.METADATA_FILE_NAME);
     }
     _metadataFile = tmpMetadataFile;
-    _segmentMetadataPropertiesConfiguration = new PropertiesConfiguration(_metadataFile);
+    if (_metadataFile.exists() && SegmentDirectoryPaths.isV3Directory(_metadataFile.getAbsoluteFile().getParentFile())) {
+      // V3 segments keep a binary copy of the metadata that is much cheaper to load than the properties file
+      _segmentMetadataPropertiesConfiguration = SegmentMetadataBinaryFile.load(_metadataFile);
+    } else {
+      _segmentMetadataPropertiesConfiguration = new PropertiesConfiguration(_metadataFile);
+    }
     _columnMetadataMap = new HashMap<String, ColumnMetadata>();
     _allColumns = new HashSet<String>();
     _schema = new Schema();
@@ -302,6 +311,17 @@ public class SegmentMetadataImpl implements SegmentMetadata {
       }
     }
 
+    // Gather the partitions of the partitioned columns, used to prune the segment.
+    Map<String, ColumnPartitionMetadata> columnPartitionMap = new HashMap<>();
+    for (ColumnMetadata columnMetadata : _columnMetadataMap.values()) {
+      if (columnMetadata.getPartitionMetadata() != null) {
+        columnPartitionMap.put(columnMetadata.getColumnName(), columnMetadata.getPartitionMetadata());
+      }
+    }
+    if (!columnPartitionMap.isEmpty()) {
+      _partitionMetadata = new SegmentPartitionMetadata(columnPartitionMap);
+    }
+
     // Build star-tree metadata.
     _hasStarTree = _segmentMetadataPropertiesConfiguration.getBoolean(MetadataKeys.StarTree.STAR_TREE_ENABLED, false);
     if (_hasStarTree) {
@@ -424,6 +444,24 @@ public class SegmentMetadataImpl implements SegmentMetadata {
     return _segmentMetadataPropertiesConfiguration.getInt(V1Constants.MetadataKeys.Segment.SEGMENT_TOTAL_RAW_DOCS, getTotalDocs());
   }
 
+  /**
+   * Returns the number of input rows rolled up into the documents of the segment, which is the number of documents if
+   * the rows were not rolled up.
+   */
+  public int getRollupInputDocs() {
+    return _segmentMetadataPropertiesConfiguration.getInt(V1Constants.MetadataKeys.Segment.SEGMENT_ROLLUP_INPUT_DOCS,
+        getTotalRawDocs());
+  }
+
+  /**
+   * Returns the ratio of the number of input rows to the number of documents after roll-up, 1 if the rows were not
+   * rolled up.
+   */
+  public double getRollupReductionRatio() {
+    return _segmentMetadataPropertiesConfiguration.getDouble(
+        V1Constants.MetadataKeys.Segment.SEGMENT_ROLLUP_REDUCTION_RATIO, 1.0);
+  }
+
   @Override
   public String getIndexDir() {
     return _indexDir;
@@ -581,6 +619,12 @@ public class SegmentMetadataImpl implements SegmentMetadata {
     }
   }
 
+  @Nullable
+  @Override
+  public SegmentPartitionMetadata getPartitionMetadata() {
+    return _partitionMetadata;
+  }
+
   /**
    * Converts segment metadata to json
    * @param columnFilter list only  the columns in the set. Lists all the columns if
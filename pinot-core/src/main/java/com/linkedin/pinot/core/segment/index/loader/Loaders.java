@@ -96,12 +96,7 @@ public class Loaders {
       SegmentMetadataImpl metadata = new SegmentMetadataImpl(segmentDirectoryPath);
       SegmentDirectory segmentDirectory = SegmentDirectory.createFromLocalFS(segmentDirectoryPath, metadata, readMode);
 
-      Map<String, ColumnIndexContainer> indexContainerMap = new HashMap<String, ColumnIndexContainer>();
       SegmentDirectory.Reader segmentReader = segmentDirectory.createReader();
-      for (String column : metadata.getColumnMetadataMap().keySet()) {
-        indexContainerMap.put(column, ColumnIndexContainer.init(segmentReader,
-            metadata.getColumnMetadataFor(column), indexLoadingConfigMetadata));
-      }
 
       // load star tree index if it exists
       StarTreeInterf starTree = null;
@@ -109,6 +104,17 @@ public class Loaders {
         LOGGER.debug("Loading star tree for segment: {}", segmentDirectory);
         starTree = StarTreeSerDe.fromFile(segmentReader.getStarTreeFile(), readMode);
       }
+
+      if (indexLoadingConfigMetadata != null && indexLoadingConfigMetadata.isLazyColumnLoading()) {
+        // column indexes are loaded on first access
+        return new IndexSegmentImpl(segmentDirectory, metadata, segmentReader, indexLoadingConfigMetadata, starTree);
+      }
+
+      Map<String, ColumnIndexContainer> indexContainerMap = new HashMap<String, ColumnIndexContainer>();
+      for (String column : metadata.getColumnMetadataMap().keySet()) {
+        indexContainerMap.put(column, ColumnIndexContainer.init(segmentReader,
+            metadata.getColumnMetadataFor(column), indexLoadingConfigMetadata));
+      }
       return new IndexSegmentImpl(segmentDirectory, metadata, indexContainerMap, starTree);
     }
 
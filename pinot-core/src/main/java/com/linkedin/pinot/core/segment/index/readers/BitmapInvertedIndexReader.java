@@ -19,8 +19,12 @@ import com.linkedin.pinot.common.utils.Pairs.IntPair;
 import com.linkedin.pinot.core.segment.memory.PinotDataBuffer;
 import java.io.File;
 import java.io.IOException;
-import java.lang.ref.SoftReference;
 import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
 import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,7 +33,10 @@ public class BitmapInvertedIndexReader implements InvertedIndexReader {
   public static final Logger LOGGER = LoggerFactory.getLogger(BitmapInvertedIndexReader.class);
 
   final private int numberOfBitmaps;
-  private volatile SoftReference<SoftReference<ImmutableRoaringBitmap>[]> bitmaps = null;
+  private final InvertedIndexBitmapCache bitmapCache;
+  private final boolean cacheEnabled;
+  // Bitmaps for the most frequent values, never evicted
+  private Map<Integer, ImmutableRoaringBitmap> pinnedBitmaps = Collections.emptyMap();
 
   private PinotDataBuffer buffer;
   public static final int INT_SIZE_IN_BYTES = Integer.SIZE / Byte.SIZE;
@@ -37,16 +44,33 @@ public class BitmapInvertedIndexReader implements InvertedIndexReader {
   private File file;
 
   /**
-   * Constructs an inverted index with the specified size.
+   * Constructs an inverted index with the specified size, using the server-wide bitmap cache.
    * @param cardinality the number of bitmaps in the inverted index, which should be the same as the
    *          number of values in
    *          the dictionary.
    * @throws IOException
    */
   public BitmapInvertedIndexReader(PinotDataBuffer indexDataBuffer, int cardinality) throws IOException {
+    this(indexDataBuffer, cardinality, InvertedIndexBitmapCache.getInstance());
+  }
+
+  /**
+   * Constructs an inverted index with the specified size, using the given bitmap cache.
+   * @param cardinality the number of bitmaps in the inverted index, which should be the same as the
+   *          number of values in the dictionary.
+   * @param bitmapCache cache for the bitmaps of this index
+   * @throws IOException
+   */
+  public BitmapInvertedIndexReader(PinotDataBuffer indexDataBuffer, int cardinality,
+      InvertedIndexBitmapCache bitmapCache) throws IOException {
     this.file = file;
     numberOfBitmaps = cardinality;
+    this.bitmapCache = bitmapCache;
+    cacheEnabled = bitmapCache.isCacheEnabledFor(cardinality);
     load(indexDataBuffer);
+    if (cacheEnabled) {
+      pinMostFrequentValues(bitmapCache.getNumPinnedValuesPerColumn());
+    }
   }
 
   /**
@@ -55,40 +79,51 @@ public class BitmapInvertedIndexReader implements InvertedIndexReader {
    */
   @Override
   public ImmutableRoaringBitmap getImmutable(int idx) {
-    SoftReference<ImmutableRoaringBitmap>[] bitmapArrayReference = null;
-    // Return the bitmap if it's still on heap
-    if (bitmaps != null) {
-      bitmapArrayReference = bitmaps.get();
-      if (bitmapArrayReference != null) {
-        SoftReference<ImmutableRoaringBitmap> bitmapReference = bitmapArrayReference[idx];
-        if (bitmapReference != null) {
-          ImmutableRoaringBitmap value = bitmapReference.get();
-          if (value != null) {
-            return value;
-          }
-        }
-      } else {
-        bitmapArrayReference = new SoftReference[numberOfBitmaps];
-        bitmaps = new SoftReference<SoftReference<ImmutableRoaringBitmap>[]>(bitmapArrayReference);
+    if (!cacheEnabled) {
+      return buildRoaringBitmapForIndex(idx);
+    }
+    ImmutableRoaringBitmap pinnedBitmap = pinnedBitmaps.get(idx);
+    if (pinnedBitmap != null) {
+      return pinnedBitmap;
+    }
+    return bitmapCache.getBitmap(this, idx);
+  }
+
+  /**
+   * Pins the bitmaps of the values with the largest bitmaps, which are the values appearing in the most documents.
+   */
+  private void pinMostFrequentValues(int numValuesToPin) {
+    if (numValuesToPin <= 0) {
+      return;
+    }
+    numValuesToPin = Math.min(numValuesToPin, numberOfBitmaps);
+    // Min heap on bitmap size, holding the largest bitmaps seen so far
+    PriorityQueue<IntPair> largestBitmaps = new PriorityQueue<>(numValuesToPin, new Comparator<IntPair>() {
+      @Override
+      public int compare(IntPair o1, IntPair o2) {
+        return Integer.compare(o1.getRight(), o2.getRight());
+      }
+    });
+    for (int i = 0; i < numberOfBitmaps; i++) {
+      int bitmapSize = getOffset(i + 1) - getOffset(i);
+      if (largestBitmaps.size() < numValuesToPin) {
+        largestBitmaps.add(new IntPair(i, bitmapSize));
+      } else if (largestBitmaps.peek().getRight() < bitmapSize) {
+        largestBitmaps.poll();
+        largestBitmaps.add(new IntPair(i, bitmapSize));
       }
-    } else {
-      bitmapArrayReference = new SoftReference[numberOfBitmaps];
-      bitmaps = new SoftReference<SoftReference<ImmutableRoaringBitmap>[]>(bitmapArrayReference);
     }
-    synchronized (this) {
-      ImmutableRoaringBitmap value;
-      if (bitmapArrayReference[idx] == null || bitmapArrayReference[idx].get() == null) {
-        value = buildRoaringBitmapForIndex(idx);
-        bitmapArrayReference[idx] = new SoftReference<ImmutableRoaringBitmap>(value);
-      } else {
-        value = bitmapArrayReference[idx].get();
+    Map<Integer, ImmutableRoaringBitmap> bitmaps = new HashMap<>(largestBitmaps.size());
+    for (IntPair pair : largestBitmaps) {
+      ImmutableRoaringBitmap bitmap = buildRoaringBitmapForIndex(pair.getLeft());
+      if (bitmap != null) {
+        bitmaps.put(pair.getLeft(), bitmap);
       }
-      return value;
     }
-
+    pinnedBitmaps = bitmaps;
   }
 
-  private synchronized ImmutableRoaringBitmap buildRoaringBitmapForIndex(final int index) {
+  synchronized ImmutableRoaringBitmap buildRoaringBitmapForIndex(final int index) {
     final int currentOffset = getOffset(index);
     final int nextOffset = getOffset(index + 1);
     final int bufferLength = nextOffset - currentOffset;
@@ -118,6 +153,9 @@ public class BitmapInvertedIndexReader implements InvertedIndexReader {
 
   @Override
   public void close() throws IOException {
+    if (cacheEnabled) {
+      bitmapCache.invalidate(this);
+    }
     buffer.close();
   }
 
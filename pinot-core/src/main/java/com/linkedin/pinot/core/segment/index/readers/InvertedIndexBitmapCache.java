@@ -0,0 +1,247 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.index.readers;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.configuration.Configuration;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Server-wide, weight-bounded cache of the {@link ImmutableRoaringBitmap} wrappers created by
+ * {@link BitmapInvertedIndexReader}.
+ *
+ * <p>Entries are keyed by (inverted index reader, dictionary id). Since there is exactly one reader per column of a
+ * loaded segment, this is the same as keying on (segment, column, dictId), but it never serves a stale bitmap when a
+ * segment with the same name is reloaded. Entries are weighed by the serialized size of the bitmap and evicted in
+ * least-recently-used order once the total weight goes over the configured maximum. The dictionary ids cached for each
+ * reader are tracked as well, so that closing a reader only removes its own entries.
+ *
+ * <p>The cache is configured through the following server configs (prefix <code>pinot.server.bitmap.cache</code>):
+ * <ul>
+ *   <li><code>max.bytes</code>: maximum total weight of the cached bitmaps.</li>
+ *   <li><code>pinned.values.per.column</code>: number of most frequent values per column whose bitmaps are pinned
+ *   in the reader and never evicted.</li>
+ *   <li><code>min.cardinality</code>: columns with a cardinality lower than this value are not cached at all.</li>
+ * </ul>
+ */
+public class InvertedIndexBitmapCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(InvertedIndexBitmapCache.class);
+
+  public static final String MAX_BYTES = "max.bytes";
+  public static final String PINNED_VALUES_PER_COLUMN = "pinned.values.per.column";
+  public static final String MIN_CARDINALITY = "min.cardinality";
+
+  public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+  public static final int DEFAULT_PINNED_VALUES_PER_COLUMN = 0;
+  public static final int DEFAULT_MIN_CARDINALITY = 0;
+
+  private static volatile InvertedIndexBitmapCache _instance =
+      new InvertedIndexBitmapCache(DEFAULT_MAX_BYTES, DEFAULT_PINNED_VALUES_PER_COLUMN, DEFAULT_MIN_CARDINALITY);
+
+  private final Cache<Key, ImmutableRoaringBitmap> _cache;
+  // Dictionary ids with a cached bitmap by reader, to invalidate the entries of a reader without going through the
+  // whole cache. A bitmap cached again while its previous entry is being evicted can be missed, and is then left to
+  // the LRU eviction.
+  private final ConcurrentMap<BitmapInvertedIndexReader, Set<Integer>> _cachedDictIds = new ConcurrentHashMap<>();
+  private final AtomicLong _weightInBytes = new AtomicLong(0L);
+  private final long _maxBytes;
+  private final int _numPinnedValuesPerColumn;
+  private final int _minCardinality;
+
+  public InvertedIndexBitmapCache(long maxBytes, int numPinnedValuesPerColumn, int minCardinality) {
+    _maxBytes = maxBytes;
+    _numPinnedValuesPerColumn = numPinnedValuesPerColumn;
+    _minCardinality = minCardinality;
+    _cache = CacheBuilder.newBuilder()
+        .maximumWeight(maxBytes)
+        .weigher(new Weigher<Key, ImmutableRoaringBitmap>() {
+          @Override
+          public int weigh(Key key, ImmutableRoaringBitmap value) {
+            return value.serializedSizeInBytes();
+          }
+        })
+        .removalListener(new RemovalListener<Key, ImmutableRoaringBitmap>() {
+          @Override
+          public void onRemoval(RemovalNotification<Key, ImmutableRoaringBitmap> notification) {
+            _weightInBytes.addAndGet(-notification.getValue().serializedSizeInBytes());
+            if (notification.wasEvicted()) {
+              Key key = notification.getKey();
+              Set<Integer> dictIds = _cachedDictIds.get(key._reader);
+              if (dictIds != null) {
+                dictIds.remove(key._dictId);
+              }
+            }
+          }
+        })
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * To be called once when the server starts, replaces the default instance with a configured one.
+   *
+   * @param config bitmap cache config
+   * @param serverMetrics server metrics to register the cache gauges with, can be null
+   */
+  public static void init(Configuration config, ServerMetrics serverMetrics) {
+    final InvertedIndexBitmapCache cache =
+        new InvertedIndexBitmapCache(config.getLong(MAX_BYTES, DEFAULT_MAX_BYTES),
+            config.getInt(PINNED_VALUES_PER_COLUMN, DEFAULT_PINNED_VALUES_PER_COLUMN),
+            config.getInt(MIN_CARDINALITY, DEFAULT_MIN_CARDINALITY));
+    LOGGER.info("Initialized inverted index bitmap cache with max bytes: {}, pinned values per column: {}, "
+        + "min cardinality: {}", cache._maxBytes, cache._numPinnedValuesPerColumn, cache._minCardinality);
+    _instance = cache;
+
+    if (serverMetrics != null) {
+      serverMetrics.addCallbackGauge("bitmapCache.hitCount", new Callable<Long>() {
+        @Override
+        public Long call() throws Exception {
+          return _instance.getStats().hitCount();
+        }
+      });
+      serverMetrics.addCallbackGauge("bitmapCache.missCount", new Callable<Long>() {
+        @Override
+        public Long call() throws Exception {
+          return _instance.getStats().missCount();
+        }
+      });
+      serverMetrics.addCallbackGauge("bitmapCache.evictionCount", new Callable<Long>() {
+        @Override
+        public Long call() throws Exception {
+          return _instance.getStats().evictionCount();
+        }
+      });
+      serverMetrics.addCallbackGauge("bitmapCache.weightInBytes", new Callable<Long>() {
+        @Override
+        public Long call() throws Exception {
+          return _instance.getWeightInBytes();
+        }
+      });
+    }
+  }
+
+  public static InvertedIndexBitmapCache getInstance() {
+    return _instance;
+  }
+
+  /**
+   * Returns whether bitmaps of a column with the given cardinality should go through the cache.
+   */
+  public boolean isCacheEnabledFor(int cardinality) {
+    return _maxBytes > 0 && cardinality >= _minCardinality;
+  }
+
+  public int getNumPinnedValuesPerColumn() {
+    return _numPinnedValuesPerColumn;
+  }
+
+  /**
+   * Returns the bitmap for the given dictionary id of the given reader, building and caching it on a miss.
+   */
+  ImmutableRoaringBitmap getBitmap(BitmapInvertedIndexReader reader, int dictId) {
+    Key key = new Key(reader, dictId);
+    ImmutableRoaringBitmap bitmap = _cache.getIfPresent(key);
+    if (bitmap != null) {
+      return bitmap;
+    }
+    bitmap = reader.buildRoaringBitmapForIndex(dictId);
+    if (bitmap != null) {
+      Set<Integer> dictIds = _cachedDictIds.get(reader);
+      if (dictIds == null) {
+        dictIds = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+        Set<Integer> existingDictIds = _cachedDictIds.putIfAbsent(reader, dictIds);
+        if (existingDictIds != null) {
+          dictIds = existingDictIds;
+        }
+      }
+      dictIds.add(dictId);
+      _weightInBytes.addAndGet(bitmap.serializedSizeInBytes());
+      _cache.put(key, bitmap);
+    }
+    return bitmap;
+  }
+
+  /**
+   * Removes all the cached bitmaps of the given reader, to be called when the reader is closed.
+   */
+  void invalidate(BitmapInvertedIndexReader reader) {
+    Set<Integer> dictIds = _cachedDictIds.remove(reader);
+    if (dictIds == null) {
+      return;
+    }
+    List<Key> keys = new ArrayList<>(dictIds.size());
+    for (int dictId : dictIds) {
+      keys.add(new Key(reader, dictId));
+    }
+    _cache.invalidateAll(keys);
+  }
+
+  public CacheStats getStats() {
+    return _cache.stats();
+  }
+
+  public long getWeightInBytes() {
+    return _weightInBytes.get();
+  }
+
+  public long size() {
+    return _cache.size();
+  }
+
+  private static final class Key {
+    private final BitmapInvertedIndexReader _reader;
+    private final int _dictId;
+
+    Key(BitmapInvertedIndexReader reader, int dictId) {
+      _reader = reader;
+      _dictId = dictId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) o;
+      return _reader == that._reader && _dictId == that._dictId;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(_reader) + _dictId;
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.memory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Allocator of the off-heap buffers of a consuming realtime segment, accounting for the bytes allocated by the segment
+ * in its {@link OffHeapMemoryManager}.
+ * <p>The buffers are owned and closed by their users, the allocator being closed once they are all closed.
+ */
+public class OffHeapMemoryAllocator {
+  private final OffHeapMemoryManager _memoryManager;
+  private final String _name;
+  private final AtomicLong _allocatedBytes = new AtomicLong();
+  private volatile boolean _closed = false;
+
+  OffHeapMemoryAllocator(OffHeapMemoryManager memoryManager, String name) {
+    _memoryManager = memoryManager;
+    _name = name;
+  }
+
+  /**
+   * Allocates a buffer of the given size.
+   *
+   * @param sizeInBytes Size of the buffer
+   * @param context Context of the allocation, such as the column the buffer is allocated for
+   */
+  public PinotDataBuffer allocate(long sizeInBytes, String context) {
+    PinotDataBuffer buffer = _memoryManager.allocate(sizeInBytes, _name + "." + context);
+    _allocatedBytes.addAndGet(sizeInBytes);
+    return buffer;
+  }
+
+  /**
+   * Returns the number of bytes allocated so far.
+   */
+  public long getAllocatedBytes() {
+    return _allocatedBytes.get();
+  }
+
+  /**
+   * Returns the share of the off-heap memory budget of this allocator.
+   */
+  public long getBudgetInBytes() {
+    return _memoryManager.getBudgetPerAllocatorInBytes();
+  }
+
+  public synchronized void close() {
+    if (!_closed) {
+      _closed = true;
+      _memoryManager.onAllocatorClosed(_allocatedBytes.get());
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.memory;
+
+import com.google.common.base.Preconditions;
+import com.linkedin.pinot.common.segment.ReadMode;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Server-wide manager of the off-heap memory of the consuming realtime segments.
+ * <p>The buffers are allocated either as direct buffers, or memory mapped from files in a directory, in which case the
+ * pages are only backed by memory once written. Each consuming segment allocates its buffers through its own
+ * {@link OffHeapMemoryAllocator}, and the bytes allocated are accounted for against a budget shared by all the
+ * consuming segments of the server: the budget is soft, allocations never fail, but the consuming segments are
+ * expected to complete once they use their share of the budget (see {@link #getBudgetPerAllocatorInBytes()}).
+ * <p>The instance is initialized once by the server on start up, before any segment consumes.
+ */
+public class OffHeapMemoryManager {
+  private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapMemoryManager.class);
+  public static final long UNLIMITED_BUDGET = Long.MAX_VALUE;
+
+  private static volatile OffHeapMemoryManager INSTANCE = new OffHeapMemoryManager(UNLIMITED_BUDGET, null);
+
+  private final long _budgetInBytes;
+  private final File _mmapDir;
+  private final AtomicLong _allocatedBytes = new AtomicLong();
+  private final AtomicInteger _numAllocators = new AtomicInteger();
+  private final AtomicLong _fileIdGenerator = new AtomicLong();
+
+  /**
+   * @param budgetInBytes Budget of off-heap memory shared by the consuming segments
+   * @param mmapDir Directory of the files the buffers are memory mapped from, null to allocate direct buffers
+   */
+  public OffHeapMemoryManager(long budgetInBytes, @Nullable File mmapDir) {
+    Preconditions.checkArgument(budgetInBytes > 0, "Invalid off-heap memory budget: %s", budgetInBytes);
+    _budgetInBytes = budgetInBytes;
+    _mmapDir = mmapDir;
+    if (mmapDir != null) {
+      // Files of a previous run
+      FileUtils.deleteQuietly(mmapDir);
+      Preconditions.checkState(mmapDir.mkdirs(), "Could not create directory %s", mmapDir);
+    }
+  }
+
+  public static OffHeapMemoryManager getInstance() {
+    return INSTANCE;
+  }
+
+  public static void init(long budgetInBytes, @Nullable File mmapDir) {
+    LOGGER.info("Initializing off-heap memory manager with budget {} bytes, {}", budgetInBytes,
+        mmapDir == null ? "allocating direct buffers" : "memory mapping buffers from files in " + mmapDir);
+    INSTANCE = new OffHeapMemoryManager(budgetInBytes, mmapDir);
+  }
+
+  /**
+   * Returns a new allocator for the buffers of a consuming segment, which must be closed once its buffers are closed.
+   */
+  public OffHeapMemoryAllocator newAllocator(String name) {
+    _numAllocators.incrementAndGet();
+    return new OffHeapMemoryAllocator(this, name);
+  }
+
+  PinotDataBuffer allocate(long sizeInBytes, String context) {
+    long allocatedBytes = _allocatedBytes.addAndGet(sizeInBytes);
+    if (allocatedBytes > _budgetInBytes) {
+      LOGGER.warn("Allocated {} bytes off-heap over the budget of {} bytes, for {}", allocatedBytes, _budgetInBytes,
+          context);
+    }
+    if (_mmapDir == null) {
+      return PinotDataBuffer.allocateDirect(sizeInBytes);
+    }
+    File file = new File(_mmapDir,
+        context.replaceAll("[^A-Za-z0-9_.-]", "_") + "." + _fileIdGenerator.incrementAndGet());
+    try {
+      PinotDataBuffer buffer =
+          PinotDataBuffer.fromFile(file, 0, sizeInBytes, ReadMode.mmap, FileChannel.MapMode.READ_WRITE, context);
+      // The mapping outlives the file, which is removed right away to not leak it
+      FileUtils.deleteQuietly(file);
+      return buffer;
+    } catch (IOException e) {
+      _allocatedBytes.addAndGet(-sizeInBytes);
+      FileUtils.deleteQuietly(file);
+      throw new RuntimeException("Could not memory map " + sizeInBytes + " bytes from file " + file, e);
+    }
+  }
+
+  void onAllocatorClosed(long allocatedBytes) {
+    _allocatedBytes.addAndGet(-allocatedBytes);
+    _numAllocators.decrementAndGet();
+  }
+
+  public long getBudgetInBytes() {
+    return _budgetInBytes;
+  }
+
+  public long getAllocatedBytes() {
+    return _allocatedBytes.get();
+  }
+
+  public int getNumAllocators() {
+    return _numAllocators.get();
+  }
+
+  /**
+   * Returns the share of the budget of each consuming segment, which is the budget split evenly among the allocators.
+   */
+  public long getBudgetPerAllocatorInBytes() {
+    if (_budgetInBytes == UNLIMITED_BUDGET) {
+      return UNLIMITED_BUDGET;
+    }
+    return _budgetInBytes / Math.max(_numAllocators.get(), 1);
+  }
+}
@@ -0,0 +1,209 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.store;
+
+import com.google.common.base.Charsets;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.segment.memory.PinotDataBuffer;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.CRC32;
+import javax.annotation.Nullable;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Compact binary copy of the segment metadata properties, stored next to metadata.properties in the V3 layout.
+ *
+ * Parsing metadata.properties through {@link PropertiesConfiguration} dominates segment loading time for wide
+ * tables. The binary file is memory mapped and read back without any parsing or escaping. It records the CRC of
+ * the properties file it was generated from, so any change to metadata.properties (e.g. by the segment
+ * pre-processor) makes it stale, in which case it is regenerated from the properties file.
+ *
+ * File layout (big endian):
+ * <pre>
+ *   int    magic marker
+ *   int    format version
+ *   long   CRC32 of metadata.properties
+ *   int    number of keys
+ *   for each key:
+ *     int    key length in bytes, followed by the UTF-8 bytes of the key
+ *     int    number of values
+ *     for each value:
+ *       int    value length in bytes, followed by the UTF-8 bytes of the value
+ * </pre>
+ */
+public class SegmentMetadataBinaryFile {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SegmentMetadataBinaryFile.class);
+
+  public static final String METADATA_BINARY_FILE_NAME = "metadata.bin";
+
+  private static final int MAGIC_MARKER = 0x504D4442; // "PMDB"
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+
+  private SegmentMetadataBinaryFile() {
+  }
+
+  /**
+   * Loads the segment metadata properties from the binary file in the directory of the given properties file,
+   * falling back to parsing the properties file (and regenerating the binary file) if the binary file is missing
+   * or stale.
+   *
+   * @param propertiesFile metadata.properties file in a V3 segment directory
+   * @return segment metadata properties
+   */
+  public static PropertiesConfiguration load(File propertiesFile)
+      throws ConfigurationException, IOException {
+    File binaryFile = new File(propertiesFile.getParentFile(), METADATA_BINARY_FILE_NAME);
+    long propertiesCrc = computeCrc(propertiesFile);
+    if (binaryFile.exists()) {
+      PropertiesConfiguration properties = read(binaryFile, propertiesCrc);
+      if (properties != null) {
+        return properties;
+      }
+      LOGGER.info("Binary metadata file: {} is stale, regenerating it", binaryFile);
+    }
+
+    PropertiesConfiguration properties = new PropertiesConfiguration(propertiesFile);
+    try {
+      write(binaryFile, properties, propertiesCrc);
+    } catch (IOException e) {
+      // Not fatal, we will try again on next load
+      LOGGER.warn("Failed to write binary metadata file: {}", binaryFile, e);
+      FileUtils.deleteQuietly(binaryFile);
+    }
+    return properties;
+  }
+
+  /**
+   * Reads the binary metadata file.
+   *
+   * @return properties read from the file, or null if the file was not generated from a properties file with the
+   * given CRC
+   */
+  @Nullable
+  static PropertiesConfiguration read(File binaryFile, long expectedPropertiesCrc)
+      throws IOException {
+    if (binaryFile.length() < HEADER_SIZE) {
+      return null;
+    }
+    PinotDataBuffer buffer =
+        PinotDataBuffer.fromFile(binaryFile, ReadMode.mmap, FileChannel.MapMode.READ_ONLY, binaryFile.getName());
+    try {
+      if (buffer.getInt(0) != MAGIC_MARKER || buffer.getInt(4) != VERSION
+          || buffer.getLong(8) != expectedPropertiesCrc) {
+        return null;
+      }
+      int numKeys = buffer.getInt(16);
+      // Metadata files are small, int offsets are always enough
+      int offset = HEADER_SIZE;
+
+      PropertiesConfiguration properties = new PropertiesConfiguration();
+      // Values are stored already split, so they must not be split again on the delimiter when added
+      properties.setDelimiterParsingDisabled(true);
+      for (int i = 0; i < numKeys; i++) {
+        int keyLength = buffer.getInt(offset);
+        String key = readString(buffer, offset + 4, keyLength);
+        offset += 4 + keyLength;
+        int numValues = buffer.getInt(offset);
+        offset += 4;
+        List<String> values = new ArrayList<>(numValues);
+        for (int j = 0; j < numValues; j++) {
+          int valueLength = buffer.getInt(offset);
+          values.add(readString(buffer, offset + 4, valueLength));
+          offset += 4 + valueLength;
+        }
+        if (numValues == 1) {
+          properties.addProperty(key, values.get(0));
+        } else {
+          properties.addProperty(key, values);
+        }
+      }
+      properties.setDelimiterParsingDisabled(false);
+      return properties;
+    } finally {
+      buffer.close();
+    }
+  }
+
+  /**
+   * Writes the given properties into the binary metadata file.
+   */
+  static void write(File binaryFile, PropertiesConfiguration properties, long propertiesCrc)
+      throws IOException {
+    File tmpFile = new File(binaryFile.getPath() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+      List<String> keys = new ArrayList<>();
+      Iterator<?> keyIterator = properties.getKeys();
+      while (keyIterator.hasNext()) {
+        keys.add((String) keyIterator.next());
+      }
+
+      out.writeInt(MAGIC_MARKER);
+      out.writeInt(VERSION);
+      out.writeLong(propertiesCrc);
+      out.writeInt(keys.size());
+      for (String key : keys) {
+        writeString(out, key);
+        Object value = properties.getProperty(key);
+        if (value instanceof List) {
+          List<?> values = (List<?>) value;
+          out.writeInt(values.size());
+          for (Object element : values) {
+            writeString(out, String.valueOf(element));
+          }
+        } else {
+          out.writeInt(1);
+          writeString(out, String.valueOf(value));
+        }
+      }
+    }
+    FileUtils.deleteQuietly(binaryFile);
+    FileUtils.moveFile(tmpFile, binaryFile);
+  }
+
+  private static long computeCrc(File file)
+      throws IOException {
+    CRC32 crc = new CRC32();
+    crc.update(FileUtils.readFileToByteArray(file));
+    return crc.getValue();
+  }
+
+  private static void writeString(DataOutputStream out, String value)
+      throws IOException {
+    byte[] bytes = value.getBytes(Charsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(PinotDataBuffer buffer, int offset, int length) {
+    byte[] bytes = new byte[length];
+    buffer.copyTo(offset, bytes, 0, length);
+    return new String(bytes, Charsets.UTF_8);
+  }
+}
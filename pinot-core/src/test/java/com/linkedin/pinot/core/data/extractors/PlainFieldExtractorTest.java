@@ -18,8 +18,11 @@ package com.linkedin.pinot.core.data.extractors;
 import com.linkedin.pinot.common.data.FieldSpec.DataType;
 import com.linkedin.pinot.common.data.Schema;
 import com.linkedin.pinot.core.data.GenericRow;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.concurrent.TimeUnit;
 import org.testng.Assert;
 import org.testng.annotations.Test;
@@ -242,4 +245,73 @@ public class PlainFieldExtractorTest {
     Assert.assertTrue(row.getValue("outgoing") instanceof Long);
     Assert.assertEquals(row.getValue("outgoing"), currentDaysSinceEpoch * 24);
   }
+
+  @Test
+  public void transformColumnTest() {
+    Schema schema = new Schema.SchemaBuilder().setSchemaName("testSchema")
+        .addSingleValueDimension("svDimensionInt", DataType.INT)
+        .addMultiValueDimension("mvDimensionString", DataType.STRING)
+        .addMetric("metric", DataType.LONG)
+        .addTime("incoming", TimeUnit.DAYS, DataType.INT, "outgoing", TimeUnit.HOURS, DataType.LONG)
+        .build();
+    int numRows = 1000;
+    List<GenericRow> rows = new ArrayList<>(numRows);
+    Random random = new Random(0);
+    for (int i = 0; i < numRows; i++) {
+      Map<String, Object> fieldMap = new HashMap<>();
+      // Values with conversions, errors and nulls
+      if (i % 7 != 0) {
+        fieldMap.put("svDimensionInt", (i % 3 == 0) ? Integer.toString(random.nextInt(100)) : random.nextInt(100));
+      }
+      fieldMap.put("mvDimensionString", (i % 5 == 0) ? new Object[0] : new Object[]{"a" + i, i});
+      fieldMap.put("metric", (i % 11 == 0) ? "notANumber" : (long) i);
+      if (i % 13 != 0) {
+        fieldMap.put("incoming", 17000 + random.nextInt(10));
+      }
+      GenericRow row = new GenericRow();
+      row.init(fieldMap);
+      rows.add(row);
+    }
+
+    PlainFieldExtractor rowExtractor = new PlainFieldExtractor(schema);
+    List<GenericRow> expectedRows = new ArrayList<>(numRows);
+    for (GenericRow row : rows) {
+      expectedRows.add(rowExtractor.transform(row));
+    }
+
+    // Transform the columns in batches
+    PlainFieldExtractor columnExtractor = new PlainFieldExtractor(schema);
+    Map<String, PlainFieldExtractor.ColumnCounters> columnCountersMap = new HashMap<>();
+    int batchSize = 300;
+    for (String column : schema.getColumnNames()) {
+      PlainFieldExtractor.ColumnCounters columnCounters = new PlainFieldExtractor.ColumnCounters();
+      columnCountersMap.put(column, columnCounters);
+      String sourceColumn = columnExtractor.getSourceColumn(column);
+      Object[] values = new Object[batchSize];
+      for (int startDocId = 0; startDocId < numRows; startDocId += batchSize) {
+        int numValues = Math.min(batchSize, numRows - startDocId);
+        for (int i = 0; i < numValues; i++) {
+          values[i] = rows.get(startDocId + i).getValue(sourceColumn);
+        }
+        columnExtractor.transformColumn(column, values, numValues, startDocId, columnCounters);
+        for (int i = 0; i < numValues; i++) {
+          Object expectedValue = expectedRows.get(startDocId + i).getValue(column);
+          if (expectedValue instanceof Object[]) {
+            Assert.assertEquals((Object[]) values[i], (Object[]) expectedValue, column);
+          } else {
+            Assert.assertEquals(values[i], expectedValue, column);
+          }
+        }
+      }
+    }
+    columnExtractor.addColumnCounters(columnCountersMap);
+
+    Assert.assertEquals(columnExtractor.getErrorCount(), rowExtractor.getErrorCount());
+    Assert.assertEquals(columnExtractor.getTotalErrors(), rowExtractor.getTotalErrors());
+    Assert.assertEquals(columnExtractor.getTotalNulls(), rowExtractor.getTotalNulls());
+    Assert.assertEquals(columnExtractor.getTotalConversions(), rowExtractor.getTotalConversions());
+    Assert.assertEquals(columnExtractor.getTotalNullCols(), rowExtractor.getTotalNullCols());
+    Assert.assertTrue(rowExtractor.getTotalErrors() > 0);
+    Assert.assertTrue(rowExtractor.getTotalNulls() > 0);
+  }
 }
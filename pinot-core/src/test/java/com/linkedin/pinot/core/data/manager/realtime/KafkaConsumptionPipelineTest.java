@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.data.manager.realtime;
+
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.data.extractors.PlainFieldExtractor;
+import com.linkedin.pinot.core.realtime.impl.kafka.KafkaJSONMessageDecoder;
+import com.linkedin.pinot.core.realtime.impl.kafka.KafkaMessageDecoder;
+import com.yammer.metrics.core.MetricsRegistry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import kafka.message.Message;
+import kafka.message.MessageAndOffset;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+
+public class KafkaConsumptionPipelineTest {
+  private static final int NUM_DECODE_THREADS = 3;
+  private static final int INVALID_MESSAGE_INTERVAL = 97;
+
+  private Schema _schema;
+  private List<KafkaMessageDecoder> _decoders;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    _schema = new Schema.SchemaBuilder().setSchemaName("testSchema")
+        .addSingleValueDimension("dimension", FieldSpec.DataType.STRING)
+        .addMetric("metric", FieldSpec.DataType.LONG)
+        .addTime("daysSinceEpoch", TimeUnit.DAYS, FieldSpec.DataType.LONG)
+        .build();
+    _decoders = new ArrayList<>(NUM_DECODE_THREADS);
+    for (int i = 0; i < NUM_DECODE_THREADS; i++) {
+      KafkaMessageDecoder decoder = new KafkaJSONMessageDecoder();
+      decoder.init(Collections.<String, String>emptyMap(), _schema, "testTopic");
+      _decoders.add(decoder);
+    }
+  }
+
+  @Test
+  public void testRowsInOffsetOrder() throws Exception {
+    KafkaConsumptionPipeline pipeline = createPipeline(3);
+    try {
+      int[] batchSizes = {1000, 1, 600};
+      long offset = 100L;
+      for (int batchSize : batchSizes) {
+        Assert.assertTrue(pipeline.offer(createMessages(offset, batchSize), offset + 5000L, 1, TimeUnit.SECONDS));
+        offset += batchSize;
+      }
+
+      long expectedOffset = 100L;
+      for (int batchSize : batchSizes) {
+        KafkaConsumptionPipeline.DecodedBatch batch = pipeline.poll(1, TimeUnit.SECONDS);
+        Assert.assertNotNull(batch);
+        Assert.assertEquals(batch.getNumMessages(), batchSize);
+        Assert.assertEquals(batch.getHighWatermark(), 5000L + expectedOffset);
+        for (int i = 0; i < batchSize; i++) {
+          Assert.assertEquals(batch.getOffset(i), expectedOffset);
+          Assert.assertEquals(batch.getNextOffset(i), expectedOffset + 1);
+          GenericRow row = batch.getRow(i);
+          if (expectedOffset % INVALID_MESSAGE_INTERVAL == 0) {
+            Assert.assertNull(row);
+          } else {
+            Assert.assertEquals(row.getValue("dimension"), "d" + expectedOffset);
+            Assert.assertEquals(row.getValue("metric"), expectedOffset * 2);
+            Assert.assertEquals(row.getValue("daysSinceEpoch"), 17000L + expectedOffset % 10);
+          }
+          expectedOffset++;
+        }
+      }
+      Assert.assertNull(pipeline.poll(10, TimeUnit.MILLISECONDS));
+    } finally {
+      pipeline.shutdown();
+    }
+  }
+
+  @Test
+  public void testBoundedQueue() throws Exception {
+    KafkaConsumptionPipeline pipeline = createPipeline(1);
+    try {
+      Assert.assertTrue(pipeline.offer(createMessages(0L, 10), 10L, 10, TimeUnit.MILLISECONDS));
+      // The queue is full until the first batch is taken by the index stage
+      Assert.assertFalse(pipeline.offer(createMessages(10L, 10), 20L, 10, TimeUnit.MILLISECONDS));
+      Assert.assertEquals(pipeline.poll(1, TimeUnit.SECONDS).getOffset(0), 0L);
+      Assert.assertTrue(pipeline.offer(createMessages(10L, 10), 20L, 10, TimeUnit.MILLISECONDS));
+      Assert.assertEquals(pipeline.poll(1, TimeUnit.SECONDS).getOffset(0), 10L);
+    } finally {
+      pipeline.shutdown();
+    }
+  }
+
+  @Test
+  public void testClear() throws Exception {
+    KafkaConsumptionPipeline pipeline = createPipeline(3);
+    try {
+      Assert.assertTrue(pipeline.offer(createMessages(0L, 500), 2000L, 1, TimeUnit.SECONDS));
+      Assert.assertTrue(pipeline.offer(createMessages(500L, 500), 2000L, 1, TimeUnit.SECONDS));
+      KafkaConsumptionPipeline.DecodedBatch batch = pipeline.poll(1, TimeUnit.SECONDS);
+      Assert.assertEquals(batch.getRow(1).getValue("dimension"), "d1");
+
+      // Pending batches are discarded, and consumption can restart from any offset
+      pipeline.clear();
+      Assert.assertNull(pipeline.poll(10, TimeUnit.MILLISECONDS));
+      Assert.assertTrue(pipeline.offer(createMessages(2L, 10), 2000L, 1, TimeUnit.SECONDS));
+      batch = pipeline.poll(1, TimeUnit.SECONDS);
+      Assert.assertEquals(batch.getOffset(0), 2L);
+      Assert.assertEquals(batch.getRow(0).getValue("dimension"), "d2");
+      pipeline.clear();
+
+      PlainFieldExtractor fieldExtractor = new PlainFieldExtractor(_schema);
+      pipeline.drainFieldExtractorCounters(fieldExtractor);
+      Assert.assertEquals(fieldExtractor.getTotalErrors(), 0);
+    } finally {
+      pipeline.shutdown();
+    }
+  }
+
+  private KafkaConsumptionPipeline createPipeline(int queueCapacity) {
+    return new KafkaConsumptionPipeline(_decoders, _schema, queueCapacity, new ServerMetrics(new MetricsRegistry()),
+        "testTable-testTopic-0");
+  }
+
+  private static List<MessageAndOffset> createMessages(long startOffset, int numMessages) throws Exception {
+    List<MessageAndOffset> messages = new ArrayList<>(numMessages);
+    for (long offset = startOffset; offset < startOffset + numMessages; offset++) {
+      String payload;
+      if (offset % INVALID_MESSAGE_INTERVAL == 0) {
+        payload = "{invalid";
+      } else {
+        payload = "{\"dimension\":\"d" + offset + "\",\"metric\":\"" + offset * 2 + "\",\"daysSinceEpoch\":\""
+            + (17000L + offset % 10) + "\"}";
+      }
+      messages.add(new MessageAndOffset(new Message(payload.getBytes("UTF-8")), offset));
+    }
+    return messages;
+  }
+}
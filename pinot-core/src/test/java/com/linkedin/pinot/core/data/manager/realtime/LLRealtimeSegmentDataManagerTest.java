@@ -110,8 +110,13 @@ public class LLRealtimeSegmentDataManagerTest {
   }
 
   private RealtimeTableDataManager createTableDataManager() {
+    return createTableDataManager(new SegmentCompletionCostModel());
+  }
+
+  private RealtimeTableDataManager createTableDataManager(SegmentCompletionCostModel costModel) {
     RealtimeTableDataManager tableDataManager = mock(RealtimeTableDataManager.class);
     when(tableDataManager.getServerInstance()).thenReturn("server-1");
+    when(tableDataManager.getSegmentCompletionCostModel()).thenReturn(costModel);
     return tableDataManager;
   }
   private LLCRealtimeSegmentZKMetadata createZkMetadata() {
@@ -124,10 +129,22 @@ public class LLRealtimeSegmentDataManagerTest {
   }
 
   private FakeLLRealtimeSegmentDataManager createFakeSegmentManager() throws Exception {
+    return createFakeSegmentManager(new SegmentCompletionCostModel());
+  }
+
+  // Cost model estimating the download of a segment to be faster than its build
+  private SegmentCompletionCostModel createDownloadPreferringCostModel() {
+    SegmentCompletionCostModel costModel = new SegmentCompletionCostModel();
+    costModel.recordBuild(1000L, 1000L, 1000L);
+    return costModel;
+  }
+
+  private FakeLLRealtimeSegmentDataManager createFakeSegmentManager(SegmentCompletionCostModel costModel)
+      throws Exception {
     LLCRealtimeSegmentZKMetadata segmentZKMetadata = createZkMetadata();
     AbstractTableConfig tableConfig = createTableConfig();
     InstanceZKMetadata instanceZKMetadata = new InstanceZKMetadata();
-    RealtimeTableDataManager tableDataManager = createTableDataManager();
+    RealtimeTableDataManager tableDataManager = createTableDataManager(costModel);
     String resourceDir = _segmentDir;
     Schema schema = Schema.fromString(makeSchema());
     ServerMetrics serverMetrics = new ServerMetrics(new MetricsRegistry());
@@ -304,6 +321,34 @@ public class LLRealtimeSegmentDataManagerTest {
     Assert.assertEquals(segmentDataManager._state.get(segmentDataManager), LLRealtimeSegmentDataManager.State.RETAINED);
   }
 
+  // When the download is estimated to be faster, keep serving the in-memory segment and download when going online
+  @Test
+  public void testRetainedWithDownloadPreferred() throws Exception {
+    FakeLLRealtimeSegmentDataManager segmentDataManager =
+        createFakeSegmentManager(createDownloadPreferringCostModel());
+    segmentDataManager.setNumRowsInSegment(500);
+    LLRealtimeSegmentDataManager.PartitionConsumer consumer = segmentDataManager.createPartitionConsumer();
+    final long endOffset = _startOffset + 500;
+    segmentDataManager._consumeOffsets.add(endOffset);
+    final SegmentCompletionProtocol.Response keepResponse = new SegmentCompletionProtocol.Response(
+        SegmentCompletionProtocol.ControllerResponseStatus.KEEP, endOffset);
+    segmentDataManager._responses.add(keepResponse);
+
+    consumer.run();
+
+    Assert.assertTrue(segmentDataManager._responses.isEmpty());
+    Assert.assertFalse(segmentDataManager._buildAndReplaceCalled);
+    Assert.assertFalse(segmentDataManager._downloadAndReplaceCalled);
+    Assert.assertEquals(segmentDataManager._state.get(segmentDataManager), LLRealtimeSegmentDataManager.State.DISCARDED);
+
+    LLCRealtimeSegmentZKMetadata metadata = new LLCRealtimeSegmentZKMetadata();
+    metadata.setEndOffset(endOffset);
+    segmentDataManager._stopWaitTimeMs = 0;
+    segmentDataManager.goOnlineFromConsuming(metadata);
+    Assert.assertTrue(segmentDataManager._downloadAndReplaceCalled);
+    Assert.assertFalse(segmentDataManager._buildAndReplaceCalled);
+  }
+
   @Test
   public void testNotLeader() throws Exception {
     FakeLLRealtimeSegmentDataManager segmentDataManager = createFakeSegmentManager();
@@ -429,6 +474,63 @@ public class LLRealtimeSegmentDataManagerTest {
       Assert.assertFalse(segmentDataManager._downloadAndReplaceCalled);
       Assert.assertTrue(segmentDataManager._buildAndReplaceCalled);
     }
+
+    // If holding at the final offset, but the download is estimated to be faster, download and replace
+    {
+      FakeLLRealtimeSegmentDataManager segmentDataManager =
+          createFakeSegmentManager(createDownloadPreferringCostModel());
+      segmentDataManager.setNumRowsInSegment(600);
+      segmentDataManager._stopWaitTimeMs = 0;
+      segmentDataManager._state.set(segmentDataManager, LLRealtimeSegmentDataManager.State.HOLDING);
+      segmentDataManager.setCurrentOffset(finalOffset);
+      segmentDataManager.goOnlineFromConsuming(metadata);
+      Assert.assertTrue(segmentDataManager._downloadAndReplaceCalled);
+      Assert.assertFalse(segmentDataManager._buildAndReplaceCalled);
+    }
+
+    // If catching up, but the download is estimated to be faster, download and replace without catching up
+    {
+      FakeLLRealtimeSegmentDataManager segmentDataManager =
+          createFakeSegmentManager(createDownloadPreferringCostModel());
+      segmentDataManager.setNumRowsInSegment(500);
+      segmentDataManager._stopWaitTimeMs = 0;
+      segmentDataManager._state.set(segmentDataManager, LLRealtimeSegmentDataManager.State.CATCHING_UP);
+      segmentDataManager.setCurrentOffset(finalOffset - 100);
+      segmentDataManager._consumeOffsets.add(finalOffset);
+      segmentDataManager.goOnlineFromConsuming(metadata);
+      Assert.assertTrue(segmentDataManager._downloadAndReplaceCalled);
+      Assert.assertFalse(segmentDataManager._buildAndReplaceCalled);
+      Assert.assertFalse(segmentDataManager._consumeOffsets.isEmpty());
+    }
+
+    // The download is estimated from the row count of the committed segment, not from the rows held in memory
+    {
+      LLCRealtimeSegmentZKMetadata committedMetadata = new LLCRealtimeSegmentZKMetadata();
+      committedMetadata.setEndOffset(finalOffset);
+      committedMetadata.setTotalRawDocs(600);
+      FakeLLRealtimeSegmentDataManager segmentDataManager =
+          createFakeSegmentManager(createDownloadPreferringCostModel());
+      segmentDataManager.setNumRowsInSegment(0);
+      segmentDataManager._stopWaitTimeMs = 0;
+      segmentDataManager._state.set(segmentDataManager, LLRealtimeSegmentDataManager.State.CATCHING_UP);
+      segmentDataManager.setCurrentOffset(finalOffset - 100);
+      segmentDataManager._consumeOffsets.add(finalOffset);
+      segmentDataManager.goOnlineFromConsuming(committedMetadata);
+      Assert.assertTrue(segmentDataManager._downloadAndReplaceCalled);
+      Assert.assertFalse(segmentDataManager._buildAndReplaceCalled);
+    }
+
+    // If the segment cannot be built after catching up, download and replace
+    {
+      FakeLLRealtimeSegmentDataManager segmentDataManager = createFakeSegmentManager();
+      segmentDataManager._stopWaitTimeMs = 0;
+      segmentDataManager._failBuildAndReplace = true;
+      segmentDataManager._state.set(segmentDataManager, LLRealtimeSegmentDataManager.State.CATCHING_UP);
+      segmentDataManager._consumeOffsets.add(finalOffset);
+      segmentDataManager.goOnlineFromConsuming(metadata);
+      Assert.assertTrue(segmentDataManager._buildAndReplaceCalled);
+      Assert.assertTrue(segmentDataManager._downloadAndReplaceCalled);
+    }
   }
 
   @Test
@@ -456,6 +558,16 @@ public class LLRealtimeSegmentDataManagerTest {
       _timeNow += maxTimeForSegmentCloseMs;
       Assert.assertTrue(segmentDataManager.invokeEndCriteriaReached());
     }
+    // test reaching the memory budget of the segment
+    {
+      FakeLLRealtimeSegmentDataManager segmentDataManager = createFakeSegmentManager();
+      segmentDataManager._state.set(segmentDataManager, LLRealtimeSegmentDataManager.State.INITIAL_CONSUMING);
+      Assert.assertFalse(segmentDataManager.invokeEndCriteriaReached());
+      replaceRealtimeSegment(segmentDataManager, 10, 999L, 1000L);
+      Assert.assertFalse(segmentDataManager.invokeEndCriteriaReached());
+      replaceRealtimeSegment(segmentDataManager, 10, 1000L, 1000L);
+      Assert.assertTrue(segmentDataManager.invokeEndCriteriaReached());
+    }
     // In catching up state, test reaching final offset
     {
       FakeLLRealtimeSegmentDataManager segmentDataManager = createFakeSegmentManager();
@@ -511,8 +623,16 @@ public class LLRealtimeSegmentDataManagerTest {
 
   // Replace the realtime segment with a mock that returns numDocs for raw doc count.
   private void replaceRealtimeSegment(FakeLLRealtimeSegmentDataManager segmentDataManager, int numDocs) throws Exception {
+    replaceRealtimeSegment(segmentDataManager, numDocs, 0L, 0L);
+  }
+
+  // Replace the realtime segment with a mock that also returns the memory it uses and its memory budget.
+  private void replaceRealtimeSegment(FakeLLRealtimeSegmentDataManager segmentDataManager, int numDocs,
+      long memoryUsedBytes, long memoryBudgetBytes) throws Exception {
     RealtimeSegmentImpl mockSegmentImpl = mock(RealtimeSegmentImpl.class);
     when(mockSegmentImpl.getRawDocumentCount()).thenReturn(numDocs);
+    when(mockSegmentImpl.getMemoryUsedBytesEstimate()).thenReturn(memoryUsedBytes);
+    when(mockSegmentImpl.getMemoryBudgetInBytes()).thenReturn(memoryBudgetBytes);
     Field segmentImpl = LLRealtimeSegmentDataManager.class.getDeclaredField("_realtimeSegment");
     segmentImpl.setAccessible(true);
     segmentImpl.set(segmentDataManager, mockSegmentImpl);
@@ -531,6 +651,7 @@ public class LLRealtimeSegmentDataManagerTest {
     private boolean _downloadAndReplaceCalled = false;
     public boolean _throwExceptionFromConsume = false;
     public boolean _postConsumeStoppedCalled = false;
+    public boolean _failBuildAndReplace = false;
 
     public FakeLLRealtimeSegmentDataManager(RealtimeSegmentZKMetadata segmentZKMetadata,
         AbstractTableConfig tableConfig, InstanceZKMetadata instanceZKMetadata,
@@ -616,7 +737,7 @@ public class LLRealtimeSegmentDataManagerTest {
     @Override
     protected boolean buildSegmentAndReplace() {
       _buildAndReplaceCalled = true;
-      return true;
+      return !_failBuildAndReplace;
     }
 
     @Override
@@ -673,6 +794,18 @@ public class LLRealtimeSegmentDataManagerTest {
       }
       throw new RuntimeException("Cannot get here");
     }
+    public void setNumRowsInSegment(int numRows) {
+      RealtimeSegmentImpl realtimeSegment = mock(RealtimeSegmentImpl.class);
+      when(realtimeSegment.getRawDocumentCount()).thenReturn(numRows);
+      try {
+        Field field = LLRealtimeSegmentDataManager.class.getDeclaredField("_realtimeSegment");
+        field.setAccessible(true);
+        field.set(this, realtimeSegment);
+      } catch (Exception e) {
+        Assert.fail();
+      }
+    }
+
     public void setSegmentMaxRowCount(int numRows) {
       setInt(numRows, "_segmentMaxRowCount");
     }
@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.data.manager.realtime;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class SegmentCompletionCostModelTest {
+
+  @Test
+  public void testNoEstimateBeforeObservations() {
+    SegmentCompletionCostModel costModel = new SegmentCompletionCostModel();
+    Assert.assertEquals(costModel.estimateBuildTimeMs(1000L), -1L);
+    Assert.assertEquals(costModel.estimateDownloadTimeMs(1000L), -1L);
+    Assert.assertFalse(costModel.shouldDownload(1000L, 1000L));
+  }
+
+  @Test
+  public void testSlowBuildPrefersDownload() {
+    SegmentCompletionCostModel costModel = new SegmentCompletionCostModel();
+    // 100k rows of 100 bytes built in 20s
+    costModel.recordBuild(100000L, 20000L, 10000000L);
+    Assert.assertEquals(costModel.estimateBuildTimeMs(100000L), 20000L);
+    // 10MB at the default bandwidth of 10MB/s
+    Assert.assertEquals(costModel.estimateDownloadTimeMs(100000L), 976L);
+    Assert.assertTrue(costModel.shouldDownload(100000L, 100000L));
+  }
+
+  @Test
+  public void testSlowDownloadPrefersBuild() {
+    SegmentCompletionCostModel costModel = new SegmentCompletionCostModel();
+    costModel.recordBuild(100000L, 500L, 10000000L);
+    Assert.assertFalse(costModel.shouldDownload(100000L, 100000L));
+
+    // Downloads at 100KB/s bring the estimated bandwidth down
+    for (int i = 0; i < 20; i++) {
+      costModel.recordDownload(100000L, 100000L, 10000000L);
+    }
+    Assert.assertTrue(costModel.estimateDownloadTimeMs(100000L) > 90000L);
+    Assert.assertFalse(costModel.shouldDownload(100000L, 100000L));
+
+    // The rows to catch up with make the build slower, but not slower than the download
+    Assert.assertFalse(costModel.shouldDownload(1000000L, 100000L));
+    Assert.assertTrue(costModel.shouldDownload(100000000L, 100000L));
+  }
+
+  @Test
+  public void testDownloadAloneGivesNoBuildEstimate() {
+    SegmentCompletionCostModel costModel = new SegmentCompletionCostModel();
+    costModel.recordDownload(100000L, 1000L, 10000000L);
+    Assert.assertTrue(costModel.estimateDownloadTimeMs(100000L) > 0L);
+    Assert.assertEquals(costModel.estimateBuildTimeMs(100000L), -1L);
+    Assert.assertFalse(costModel.shouldDownload(100000L, 100000L));
+  }
+}
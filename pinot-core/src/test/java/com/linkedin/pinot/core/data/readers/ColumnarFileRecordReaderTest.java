@@ -0,0 +1,192 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.data.readers;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.MetricFieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.data.TimeFieldSpec;
+import com.linkedin.pinot.common.data.TimeGranularitySpec;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.segment.index.creator.SegmentCreationTestUtils;
+import com.linkedin.pinot.util.TestUtils;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+
+/**
+ * Tests that the Parquet and ORC record readers read the same records as the Avro record reader from files with the
+ * same content, which has missing values, missing and empty lists, and several row groups or stripes.
+ */
+public class ColumnarFileRecordReaderTest {
+  private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "ColumnarFileRecordReaderTest");
+  private static final String AVRO_DATA = "data/columnar_input.avro";
+  private static final String PARQUET_DATA = "data/columnar_input.parquet";
+  private static final String ORC_DATA = "data/columnar_input.orc";
+  private static final int NUM_ROWS = 1500;
+  private static final int COLUMN_READ_BATCH_SIZE = 100;
+
+  private Schema _schema;
+  private List<GenericRow> _avroRows;
+  private File _avroSegmentDir;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    FileUtils.deleteQuietly(TEMP_DIR);
+    _schema = new Schema();
+    _schema.addField(new DimensionFieldSpec("country", FieldSpec.DataType.STRING, true));
+    _schema.addField(new DimensionFieldSpec("memberId", FieldSpec.DataType.INT, true));
+    _schema.addField(new DimensionFieldSpec("skills", FieldSpec.DataType.STRING, false));
+    _schema.addField(new MetricFieldSpec("clicks", FieldSpec.DataType.LONG));
+    _schema.addField(new MetricFieldSpec("cost", FieldSpec.DataType.DOUBLE));
+    _schema.addField(new MetricFieldSpec("rating", FieldSpec.DataType.FLOAT));
+    _schema.addField(
+        new TimeFieldSpec(new TimeGranularitySpec(FieldSpec.DataType.LONG, TimeUnit.DAYS, "daysSinceEpoch")));
+
+    SegmentGeneratorConfig avroConfig = getSegmentGeneratorConfig(FileFormat.AVRO, AVRO_DATA, "avro", 1);
+    RecordReader avroRecordReader = RecordReaderFactory.get(avroConfig);
+    _avroRows = readRows(avroRecordReader);
+    Assert.assertEquals(_avroRows.size(), NUM_ROWS);
+    _avroSegmentDir = SegmentCreationTestUtils.createSegment(avroConfig, RecordReaderFactory.get(avroConfig));
+  }
+
+  @DataProvider(name = "columnarFormats")
+  public Object[][] columnarFormats() {
+    return new Object[][]{{FileFormat.PARQUET, PARQUET_DATA}, {FileFormat.ORC, ORC_DATA}};
+  }
+
+  @Test(dataProvider = "columnarFormats")
+  public void testReadRows(FileFormat format, String resource) throws Exception {
+    ColumnarRecordReader recordReader =
+        (ColumnarRecordReader) RecordReaderFactory.get(getSegmentGeneratorConfig(format, resource, "rows", 1));
+    Assert.assertEquals(recordReader.getNumDocs(), NUM_ROWS);
+
+    List<GenericRow> rows = readRows(recordReader);
+    Assert.assertEquals(rows.size(), NUM_ROWS);
+    for (int docId = 0; docId < NUM_ROWS; docId++) {
+      for (String column : _schema.getColumnNames()) {
+        assertValueEquals(rows.get(docId).getValue(column), _avroRows.get(docId).getValue(column));
+      }
+    }
+
+    // Missing values and missing lists are counted as with the Avro record reader
+    RecordReader avroRecordReader =
+        RecordReaderFactory.get(getSegmentGeneratorConfig(FileFormat.AVRO, AVRO_DATA, "rows", 1));
+    readRows(avroRecordReader);
+    Assert.assertEquals(recordReader.getNullCountMap(), avroRecordReader.getNullCountMap());
+
+    // The rows are read again after a rewind
+    recordReader.rewind();
+    GenericRow row = recordReader.next();
+    assertValueEquals(row.getValue("skills"), _avroRows.get(0).getValue("skills"));
+    recordReader.close();
+  }
+
+  @Test(dataProvider = "columnarFormats")
+  public void testReadColumn(FileFormat format, String resource) throws Exception {
+    ColumnarRecordReader recordReader =
+        (ColumnarRecordReader) RecordReaderFactory.get(getSegmentGeneratorConfig(format, resource, "columns", 1));
+    recordReader.init();
+    Object[] values = new Object[COLUMN_READ_BATCH_SIZE];
+    for (String column : _schema.getColumnNames()) {
+      // Read every other batch, then all the batches again from the beginning of the column
+      for (int startDocId = 0; startDocId < NUM_ROWS; startDocId += 2 * COLUMN_READ_BATCH_SIZE) {
+        assertColumnValues(recordReader, column, startDocId, values);
+      }
+      for (int startDocId = 0; startDocId < NUM_ROWS; startDocId += COLUMN_READ_BATCH_SIZE) {
+        assertColumnValues(recordReader, column, startDocId, values);
+      }
+    }
+
+    // The columns absent from the schema have no values, like in the rows
+    recordReader.readColumn("unknownColumn", 0, COLUMN_READ_BATCH_SIZE, values);
+    for (Object value : values) {
+      Assert.assertNull(value);
+    }
+
+    // Reading the columns does not change the position of the row iteration
+    Assert.assertTrue(recordReader.hasNext());
+    assertValueEquals(recordReader.next().getValue("country"), _avroRows.get(0).getValue("country"));
+    recordReader.close();
+  }
+
+  @Test(dataProvider = "columnarFormats")
+  public void testSegmentCreation(FileFormat format, String resource) throws Exception {
+    // Serial creation iterates over the rows, parallel creation reads the columns
+    SegmentGeneratorConfig serialConfig = getSegmentGeneratorConfig(format, resource, format + "_serial", 1);
+    File serialSegmentDir = SegmentCreationTestUtils.createSegment(serialConfig, RecordReaderFactory.get(serialConfig));
+    Assert.assertEquals(serialSegmentDir.getName(), _avroSegmentDir.getName());
+    SegmentCreationTestUtils.assertDirectoryContentEquals(serialSegmentDir, _avroSegmentDir);
+
+    SegmentGeneratorConfig parallelConfig = getSegmentGeneratorConfig(format, resource, format + "_parallel", 4);
+    File parallelSegmentDir =
+        SegmentCreationTestUtils.createSegment(parallelConfig, RecordReaderFactory.get(parallelConfig));
+    SegmentCreationTestUtils.assertDirectoryContentEquals(parallelSegmentDir, _avroSegmentDir);
+  }
+
+  private SegmentGeneratorConfig getSegmentGeneratorConfig(FileFormat format, String resource, String outDirName,
+      int numThreads) {
+    SegmentGeneratorConfig config = SegmentCreationTestUtils.getSegmentGeneratorConfig(_schema,
+        new File(TEMP_DIR, outDirName), "daysSinceEpoch", TimeUnit.DAYS);
+    config.setFormat(format);
+    config.setInputFilePath(TestUtils.getFileFromResourceUrl(getClass().getClassLoader().getResource(resource)));
+    config.setNumIndexCreationThreads(numThreads);
+    return config;
+  }
+
+  private static List<GenericRow> readRows(RecordReader recordReader) throws Exception {
+    recordReader.init();
+    List<GenericRow> rows = new ArrayList<>(NUM_ROWS);
+    while (recordReader.hasNext()) {
+      rows.add(recordReader.next());
+    }
+    recordReader.close();
+    return rows;
+  }
+
+  private void assertColumnValues(ColumnarRecordReader recordReader, String column, int startDocId, Object[] values)
+      throws Exception {
+    int numDocs = Math.min(COLUMN_READ_BATCH_SIZE, NUM_ROWS - startDocId);
+    recordReader.readColumn(column, startDocId, numDocs, values);
+    for (int i = 0; i < numDocs; i++) {
+      assertValueEquals(values[i], _avroRows.get(startDocId + i).getValue(column));
+    }
+  }
+
+  private static void assertValueEquals(Object actual, Object expected) {
+    if (expected instanceof Object[]) {
+      Assert.assertTrue(actual instanceof Object[]);
+      Assert.assertEquals((Object[]) actual, (Object[]) expected);
+    } else {
+      Assert.assertEquals(actual, expected);
+    }
+  }
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+}
@@ -17,6 +17,7 @@ package com.linkedin.pinot.core.data.readers;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -40,6 +41,7 @@ import com.linkedin.pinot.common.data.TimeFieldSpec;
 import com.linkedin.pinot.common.data.TimeGranularitySpec;
 import com.linkedin.pinot.core.data.GenericRow;
 import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentVersion;
 import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
 
 /**
@@ -153,6 +155,67 @@ public class PinotSegmentRecordReaderTest {
     }
   }
 
+  @Test
+  public void testReadColumn() throws Exception {
+    PinotSegmentRecordReader pinotSegmentRecordReader = new PinotSegmentRecordReader(segmentIndexDir);
+    Assert.assertEquals(pinotSegmentRecordReader.getNumDocs(), rows.size());
+    int batchSize = 3000;
+    Object[] values = new Object[batchSize];
+    for (String column : new String[]{D_SV_1, D_MV_1, M1, M2, TIME}) {
+      for (int startDocId = 0; startDocId < rows.size(); startDocId += batchSize) {
+        int numDocs = Math.min(batchSize, rows.size() - startDocId);
+        pinotSegmentRecordReader.readColumn(column, startDocId, numDocs, values);
+        for (int i = 0; i < numDocs; i++) {
+          Assert.assertEquals(values[i], rows.get(startDocId + i).getValue(column), column);
+        }
+      }
+    }
+
+    // Missing columns are read as null values
+    pinotSegmentRecordReader.readColumn("missing", 0, batchSize, values);
+    for (Object value : values) {
+      Assert.assertNull(value);
+    }
+    pinotSegmentRecordReader.close();
+  }
+
+  /**
+   * Checks that the segment created from the columns of the segment is identical to the one created from its rows.
+   */
+  @Test
+  public void testSegmentCreationFromColumns() throws Exception {
+    File columnarOutputDir = new File(segmentOutputDir, "columnar");
+    File rowOutputDir = new File(segmentOutputDir, "row");
+    for (File outputDir : new File[]{columnarOutputDir, rowOutputDir}) {
+      SegmentGeneratorConfig segmentGeneratorConfig = new SegmentGeneratorConfig(schema);
+      segmentGeneratorConfig.setTableName(segmentName);
+      segmentGeneratorConfig.setOutDir(outputDir.getPath());
+      segmentGeneratorConfig.setSegmentName(segmentName);
+      segmentGeneratorConfig.setCreationTime("1500000000000");
+      segmentGeneratorConfig.setSegmentVersion(SegmentVersion.v1);
+
+      SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+      driver.init(segmentGeneratorConfig, new PinotSegmentRecordReader(segmentIndexDir));
+      if (outputDir == columnarOutputDir) {
+        driver.build();
+      } else {
+        driver.buildRaw();
+      }
+    }
+
+    File columnarSegmentDir = new File(columnarOutputDir, segmentName);
+    File rowSegmentDir = new File(rowOutputDir, segmentName);
+    String[] fileNames = rowSegmentDir.list();
+    Arrays.sort(fileNames);
+    String[] columnarFileNames = columnarSegmentDir.list();
+    Arrays.sort(columnarFileNames);
+    Assert.assertEquals(columnarFileNames, fileNames);
+    for (String fileName : fileNames) {
+      Assert.assertTrue(FileUtils.contentEquals(new File(columnarSegmentDir, fileName),
+          new File(rowSegmentDir, fileName)), fileName);
+    }
+  }
+
   @AfterClass
   public void cleanup() {
     FileUtils.deleteQuietly(new File(segmentOutputDir));
@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.pruner;
+
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.metadata.segment.RealtimeSegmentZKMetadata;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.filter.AndOperator;
+import com.linkedin.pinot.core.operator.filter.MatchEntireSegmentOperator;
+import com.linkedin.pinot.core.operator.filter.ScanBasedFilterOperator;
+import com.linkedin.pinot.core.plan.FilterPlanNode;
+import com.linkedin.pinot.core.realtime.impl.RealtimeSegmentImpl;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import com.yammer.metrics.core.MetricsRegistry;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+
+public class ColumnValueSegmentPrunerTest {
+  private static final Pql2Compiler COMPILER = new Pql2Compiler();
+  private static final ColumnValueSegmentPruner PRUNER = new ColumnValueSegmentPruner();
+  private static final int NUM_ROWS = 100;
+
+  private RealtimeSegmentImpl _realtimeSegment;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    Schema schema = new Schema.SchemaBuilder().setSchemaName("testTable")
+        .addSingleValueDimension("intDim", FieldSpec.DataType.INT)
+        .addSingleValueDimension("stringDim", FieldSpec.DataType.STRING)
+        .addMetric("metric", FieldSpec.DataType.LONG)
+        .addTime("time", TimeUnit.DAYS, FieldSpec.DataType.LONG)
+        .build();
+    _realtimeSegment = new RealtimeSegmentImpl(schema, NUM_ROWS, "testTable", "testSegment", "testTable",
+        new ServerMetrics(new MetricsRegistry()));
+    RealtimeSegmentZKMetadata segmentZKMetadata = new RealtimeSegmentZKMetadata();
+    segmentZKMetadata.setSegmentName("testSegment");
+    _realtimeSegment.setSegmentMetadata(segmentZKMetadata, schema);
+
+    // Time in [100, 199], intDim in [0, 9], metric in [0, 99]
+    for (int i = 0; i < NUM_ROWS; i++) {
+      Map<String, Object> fields = new HashMap<>();
+      fields.put("intDim", i % 10);
+      fields.put("stringDim", "value" + i);
+      fields.put("metric", (long) i);
+      fields.put("time", 100L + i);
+      GenericRow row = new GenericRow();
+      row.init(fields);
+      _realtimeSegment.index(row);
+    }
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _realtimeSegment.destroy();
+  }
+
+  @Test
+  public void testPrune() {
+    Assert.assertFalse(prune("select count(*) from testTable"));
+    Assert.assertFalse(prune("select count(*) from testTable where time >= 150"));
+    Assert.assertFalse(prune("select count(*) from testTable where time between 0 and 100"));
+    Assert.assertTrue(prune("select count(*) from testTable where time > 199"));
+    Assert.assertTrue(prune("select count(*) from testTable where time < 100"));
+    Assert.assertTrue(prune("select count(*) from testTable where time between 200 and 300"));
+
+    Assert.assertFalse(prune("select count(*) from testTable where intDim = 9"));
+    Assert.assertTrue(prune("select count(*) from testTable where intDim = 10"));
+    Assert.assertFalse(prune("select count(*) from testTable where intDim in (10, 20, 5)"));
+    Assert.assertTrue(prune("select count(*) from testTable where intDim in (10, 20)"));
+    // Only min and max values are known
+    Assert.assertFalse(prune("select count(*) from testTable where intDim <> 5"));
+    Assert.assertFalse(prune("select count(*) from testTable where stringDim = 'noValue'"));
+
+    Assert.assertTrue(prune("select count(*) from testTable where stringDim = 'value1' and metric > 100"));
+    Assert.assertFalse(prune("select count(*) from testTable where stringDim = 'value1' or metric > 100"));
+    Assert.assertTrue(prune("select count(*) from testTable where intDim = 10 or metric > 100"));
+    Assert.assertFalse(prune("select count(*) from testTable where intDim = 1 or metric > 100"));
+  }
+
+  @Test
+  public void testOnlyConsumingSegmentsPruned() {
+    IndexSegment indexSegment = Mockito.mock(IndexSegment.class);
+    Assert.assertFalse(PRUNER.prune(indexSegment,
+        COMPILER.compileToBrokerRequest("select count(*) from testTable where time > 199")));
+  }
+
+  @Test
+  public void testAlwaysTrueFiltersSkipped() {
+    Assert.assertTrue(planFilter("select count(*) from testTable where time >= 100") instanceof MatchEntireSegmentOperator);
+    Assert.assertTrue(
+        planFilter("select count(*) from testTable where time between 100 and 199") instanceof MatchEntireSegmentOperator);
+    Assert.assertTrue(planFilter("select count(*) from testTable where time > 100") instanceof ScanBasedFilterOperator);
+    Assert.assertTrue(planFilter("select count(*) from testTable where time >= 100 and metric < 100")
+        instanceof MatchEntireSegmentOperator);
+    Assert.assertTrue(
+        planFilter("select count(*) from testTable where time >= 100 and intDim = 1") instanceof ScanBasedFilterOperator);
+    Assert.assertTrue(planFilter("select count(*) from testTable where time > 150 and intDim = 1") instanceof AndOperator);
+    Assert.assertTrue(
+        planFilter("select count(*) from testTable where time > 150 or intDim < 10") instanceof MatchEntireSegmentOperator);
+  }
+
+  private boolean prune(String query) {
+    return PRUNER.prune(_realtimeSegment, COMPILER.compileToBrokerRequest(query));
+  }
+
+  private Operator planFilter(String query) {
+    BrokerRequest brokerRequest = COMPILER.compileToBrokerRequest(query);
+    return new FilterPlanNode(_realtimeSegment, brokerRequest).run();
+  }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.pruner;
+
+import com.linkedin.pinot.common.config.ColumnPartitionConfig;
+import com.linkedin.pinot.common.config.SegmentPartitionConfig;
+import com.linkedin.pinot.common.metadata.segment.ColumnPartitionMetadata;
+import com.linkedin.pinot.common.metadata.segment.SegmentPartitionMetadata;
+import com.linkedin.pinot.common.partition.PartitionFunction;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.segment.creator.SegmentIndexCreationDriver;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentCreationDriverFactory;
+import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
+import com.linkedin.pinot.core.segment.index.loader.Loaders;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import com.linkedin.pinot.segments.v1.creator.SegmentTestUtils;
+import com.linkedin.pinot.util.TestUtils;
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+
+public class PartitionSegmentPrunerTest {
+  private static final String AVRO_DATA = "data/test_data-mv.avro";
+  private static final File INDEX_DIR = new File(FileUtils.getTempDirectory(), "PartitionSegmentPrunerTest");
+  private static final Pql2Compiler COMPILER = new Pql2Compiler();
+  private static final PartitionSegmentPruner PRUNER = new PartitionSegmentPruner();
+  // Single-value INT column with a single value, and single-value STRING column with 5 values
+  private static final String TIME_COLUMN = "daysSinceEpoch";
+  private static final String STRING_COLUMN = "column3";
+
+  private IndexSegment _segment;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    FileUtils.deleteQuietly(INDEX_DIR);
+    String filePath =
+        TestUtils.getFileFromResourceUrl(PartitionSegmentPrunerTest.class.getClassLoader().getResource(AVRO_DATA));
+    SegmentGeneratorConfig config =
+        SegmentTestUtils.getSegmentGenSpecWithSchemAndProjectedColumns(new File(filePath), INDEX_DIR, TIME_COLUMN,
+            TimeUnit.DAYS, "testTable");
+    Map<String, ColumnPartitionConfig> columnPartitionMap = new HashMap<>();
+    columnPartitionMap.put(TIME_COLUMN, new ColumnPartitionConfig("Modulo", 10));
+    columnPartitionMap.put(STRING_COLUMN, new ColumnPartitionConfig("Murmur", 4));
+    config.setSegmentPartitionConfig(new SegmentPartitionConfig(columnPartitionMap));
+    SegmentIndexCreationDriver driver = SegmentCreationDriverFactory.get(null);
+    driver.init(config);
+    driver.build();
+
+    _segment = Loaders.IndexSegment.load(INDEX_DIR.listFiles()[0], ReadMode.mmap);
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _segment.destroy();
+    FileUtils.deleteQuietly(INDEX_DIR);
+  }
+
+  @Test
+  public void testPartitionMetadata() throws Exception {
+    SegmentPartitionMetadata partitionMetadata = _segment.getSegmentMetadata().getPartitionMetadata();
+    Assert.assertNotNull(partitionMetadata);
+    Assert.assertEquals(partitionMetadata.getColumnPartitionMap().keySet().size(), 2);
+
+    ColumnPartitionMetadata timePartitionMetadata = partitionMetadata.getColumnPartitionMap().get(TIME_COLUMN);
+    Assert.assertEquals(timePartitionMetadata.getFunctionName(), "Modulo");
+    Assert.assertEquals(timePartitionMetadata.getNumPartitions(), 10);
+    Assert.assertEquals(timePartitionMetadata.getPartitions(), getPartitions(TIME_COLUMN, timePartitionMetadata));
+
+    ColumnPartitionMetadata stringPartitionMetadata = partitionMetadata.getColumnPartitionMap().get(STRING_COLUMN);
+    Assert.assertEquals(stringPartitionMetadata.getFunctionName(), "Murmur");
+    Assert.assertEquals(stringPartitionMetadata.getNumPartitions(), 4);
+    Assert.assertEquals(stringPartitionMetadata.getPartitions(), getPartitions(STRING_COLUMN, stringPartitionMetadata));
+
+    // Other columns are not partitioned
+    Assert.assertNull(((SegmentMetadataImpl) _segment.getSegmentMetadata()).getColumnMetadataFor("column7")
+        .getPartitionMetadata());
+
+    // Metadata read back from the segment directory
+    Assert.assertEquals(new SegmentMetadataImpl(INDEX_DIR.listFiles()[0]).getPartitionMetadata(), partitionMetadata);
+  }
+
+  @Test
+  public void testPrune() {
+    int timeValue = (Integer) _segment.getDataSource(TIME_COLUMN).getDictionary().get(0);
+
+    Assert.assertFalse(prune("SELECT COUNT(*) FROM testTable"));
+    Assert.assertFalse(prune("SELECT COUNT(*) FROM testTable WHERE " + TIME_COLUMN + " = " + timeValue));
+    Assert.assertFalse(prune("SELECT COUNT(*) FROM testTable WHERE " + TIME_COLUMN + " = " + (timeValue + 10)));
+    Assert.assertTrue(prune("SELECT COUNT(*) FROM testTable WHERE " + TIME_COLUMN + " = " + (timeValue + 1)));
+    Assert.assertFalse(
+        prune("SELECT COUNT(*) FROM testTable WHERE " + TIME_COLUMN + " IN (" + (timeValue + 1) + ", " + timeValue
+            + ")"));
+    Assert.assertTrue(
+        prune("SELECT COUNT(*) FROM testTable WHERE " + TIME_COLUMN + " = " + (timeValue + 1) + " AND column1 > 0"));
+    Assert.assertFalse(
+        prune("SELECT COUNT(*) FROM testTable WHERE " + TIME_COLUMN + " = " + (timeValue + 1) + " OR column1 > 0"));
+    Assert.assertFalse(prune("SELECT COUNT(*) FROM testTable WHERE " + TIME_COLUMN + " > " + (timeValue + 1)));
+  }
+
+  private boolean prune(String query) {
+    return PRUNER.prune(_segment, COMPILER.compileToBrokerRequest(query));
+  }
+
+  private Set<Integer> getPartitions(String column, ColumnPartitionMetadata columnPartitionMetadata) {
+    PartitionFunction partitionFunction = columnPartitionMetadata.getPartitionFunction();
+    Dictionary dictionary = _segment.getDataSource(column).getDictionary();
+    Set<Integer> partitions = new HashSet<>();
+    for (int i = 0; i < dictionary.length(); i++) {
+      partitions.add(partitionFunction.getPartition(dictionary.get(i)));
+    }
+    return partitions;
+  }
+}
@@ -0,0 +1,199 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime.converter;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.MetricFieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.data.TimeFieldSpec;
+import com.linkedin.pinot.common.data.TimeGranularitySpec;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.data.readers.PinotSegmentRecordReader;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentVersion;
+import com.linkedin.pinot.core.realtime.impl.RealtimeSegmentImpl;
+import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
+import com.yammer.metrics.core.MetricsRegistry;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+
+public class RealtimeSegmentConverterTest {
+  private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "RealtimeSegmentConverterTest");
+  private static final String TABLE_NAME = "testTable";
+  private static final String SEGMENT_NAME = "testSegment";
+  private static final int NUM_ROWS = 10000;
+  private static final long RANDOM_SEED = 42L;
+
+  private Schema _schema;
+  private RealtimeSegmentImpl _realtimeSegment;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    FileUtils.deleteQuietly(TEMP_DIR);
+    _schema = new Schema();
+    _schema.addField(new DimensionFieldSpec("intDim", FieldSpec.DataType.INT, true));
+    _schema.addField(new DimensionFieldSpec("stringDim", FieldSpec.DataType.STRING, true));
+    _schema.addField(new DimensionFieldSpec("intMultiDim", FieldSpec.DataType.INT, false));
+    _schema.addField(new DimensionFieldSpec("stringMultiDim", FieldSpec.DataType.STRING, false));
+    _schema.addField(new MetricFieldSpec("longMetric", FieldSpec.DataType.LONG));
+    _schema.addField(new MetricFieldSpec("doubleMetric", FieldSpec.DataType.DOUBLE));
+    _schema.addField(
+        new TimeFieldSpec(new TimeGranularitySpec(FieldSpec.DataType.LONG, TimeUnit.DAYS, "daysSinceEpoch")));
+
+    ServerMetrics serverMetrics = new ServerMetrics(new MetricsRegistry());
+    // The conversion through the record reader needs the realtime inverted index of the sorted column
+    _realtimeSegment = new RealtimeSegmentImpl(_schema, NUM_ROWS, TABLE_NAME, SEGMENT_NAME, "testStream",
+        serverMetrics, Arrays.asList("intDim", "daysSinceEpoch"));
+    Random random = new Random(RANDOM_SEED);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      GenericRow row = new GenericRow();
+      row.putField("intDim", random.nextInt(100) - 50);
+      // Strings of different lengths, so that padding changes their order in the dictionary
+      row.putField("stringDim", random.nextBoolean() ? "s" + random.nextInt(50) : "s" + random.nextInt(50) + "_");
+      int numValues = random.nextInt(4);
+      Object[] intValues = new Object[numValues];
+      Object[] stringValues = new Object[numValues];
+      for (int j = 0; j < numValues; j++) {
+        intValues[j] = random.nextInt(20);
+        stringValues[j] = "v" + random.nextInt(20);
+      }
+      row.putField("intMultiDim", intValues);
+      row.putField("stringMultiDim", stringValues);
+      row.putField("longMetric", (long) random.nextInt(1000));
+      row.putField("doubleMetric", random.nextInt(100) / 10.0);
+      row.putField("daysSinceEpoch", 17000L + random.nextInt(10));
+      _realtimeSegment.index(row);
+    }
+  }
+
+  @Test
+  public void testUnsorted() throws Exception {
+    compareWithRecordReaderConversion(null, Arrays.asList("intDim", "stringMultiDim", "longMetric"));
+  }
+
+  @Test
+  public void testSorted() throws Exception {
+    compareWithRecordReaderConversion("intDim", Arrays.asList("intDim", "intMultiDim", "daysSinceEpoch"));
+  }
+
+  @Test
+  public void testSortedOnTime() throws Exception {
+    compareWithRecordReaderConversion("daysSinceEpoch", Arrays.asList("stringDim"));
+  }
+
+  /**
+   * Checks that the columnar conversion generates exactly the same index files as the conversion through the record
+   * reader.
+   */
+  private void compareWithRecordReaderConversion(String sortedColumn, List<String> invertedIndexColumns)
+      throws Exception {
+    File columnarDir = new File(TEMP_DIR, "columnar");
+    File recordReaderDir = new File(TEMP_DIR, "recordReader");
+    FileUtils.deleteQuietly(TEMP_DIR);
+
+    new RealtimeSegmentConverter(_realtimeSegment, columnarDir.getPath(), _schema, TABLE_NAME, SEGMENT_NAME,
+        sortedColumn, invertedIndexColumns).build(SegmentVersion.v1);
+    new RealtimeSegmentConverter(_realtimeSegment, recordReaderDir.getPath(), _schema, TABLE_NAME, SEGMENT_NAME,
+        sortedColumn, invertedIndexColumns).buildWithRecordReader(SegmentVersion.v1);
+
+    File columnarSegmentDir = new File(columnarDir, SEGMENT_NAME);
+    File recordReaderSegmentDir = new File(recordReaderDir, SEGMENT_NAME);
+    String[] fileNames = recordReaderSegmentDir.list();
+    Arrays.sort(fileNames);
+    String[] columnarFileNames = columnarSegmentDir.list();
+    Arrays.sort(columnarFileNames);
+    Assert.assertEquals(columnarFileNames, fileNames);
+
+    for (String fileName : fileNames) {
+      if (fileName.equals(V1Constants.SEGMENT_CREATION_META)) {
+        continue;
+      }
+      if (fileName.equals(V1Constants.MetadataKeys.METADATA_FILE_NAME)) {
+        assertMetadataEquals(new PropertiesConfiguration(new File(columnarSegmentDir, fileName)),
+            new PropertiesConfiguration(new File(recordReaderSegmentDir, fileName)));
+      } else {
+        Assert.assertTrue(FileUtils.contentEquals(new File(columnarSegmentDir, fileName),
+            new File(recordReaderSegmentDir, fileName)), fileName);
+      }
+    }
+
+    // Check the documents against the realtime segment, in the sorted order if any
+    PinotSegmentRecordReader recordReader = new PinotSegmentRecordReader(columnarSegmentDir);
+    RealtimeSegmentRecordReader expectedRecordReader = (sortedColumn == null)
+        ? new RealtimeSegmentRecordReader(_realtimeSegment, _schema)
+        : new RealtimeSegmentRecordReader(_realtimeSegment, _schema, sortedColumn);
+    recordReader.init();
+    expectedRecordReader.init();
+    int numDocs = 0;
+    while (expectedRecordReader.hasNext()) {
+      Assert.assertTrue(recordReader.hasNext());
+      GenericRow expectedRow = expectedRecordReader.next();
+      GenericRow row = recordReader.next();
+      for (FieldSpec fieldSpec : _schema.getAllFieldSpecs()) {
+        String column = fieldSpec.getName();
+        Object expectedValue = expectedRow.getValue(column);
+        if (expectedValue instanceof Object[]) {
+          Object[] expectedValues = ((Object[]) expectedValue).clone();
+          if (expectedValues.length == 0) {
+            // Empty multi-values are stored as the default null value
+            expectedValues = new Object[]{fieldSpec.getDefaultNullValue()};
+          }
+          // Multi-values are stored in dictionary order
+          Arrays.sort(expectedValues);
+          Object[] values = ((Object[]) row.getValue(column)).clone();
+          Arrays.sort(values);
+          Assert.assertEquals(values, expectedValues, column);
+        } else {
+          Assert.assertEquals(row.getValue(column), expectedValue, column);
+        }
+      }
+      numDocs++;
+    }
+    Assert.assertFalse(recordReader.hasNext());
+    Assert.assertEquals(numDocs, _realtimeSegment.getRawDocumentCount());
+    recordReader.close();
+  }
+
+  private static void assertMetadataEquals(PropertiesConfiguration actual, PropertiesConfiguration expected) {
+    Iterator<String> keys = expected.getKeys();
+    while (keys.hasNext()) {
+      String key = keys.next();
+      Assert.assertEquals(actual.getProperty(key), expected.getProperty(key), key);
+    }
+    Iterator<String> actualKeys = actual.getKeys();
+    while (actualKeys.hasNext()) {
+      String key = actualKeys.next();
+      Assert.assertTrue(expected.containsKey(key), key);
+    }
+  }
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+}
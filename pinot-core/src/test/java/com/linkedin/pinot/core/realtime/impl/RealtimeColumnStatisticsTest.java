@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime.impl;
+
+import com.linkedin.pinot.core.common.predicate.EqPredicate;
+import com.linkedin.pinot.core.common.predicate.RangePredicate;
+import java.util.Collections;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class RealtimeColumnStatisticsTest {
+
+  @Test
+  public void testRangeBoundaries() {
+    RealtimeColumnStatistics statistics = new RealtimeColumnStatistics(true, 10, 100L, 200L);
+    Assert.assertTrue(statistics.canMatch(range("[200\t\t*)")));
+    Assert.assertFalse(statistics.canMatch(range("(200\t\t*)")));
+    Assert.assertTrue(statistics.canMatch(range("(*\t\t100]")));
+    Assert.assertFalse(statistics.canMatch(range("(*\t\t100)")));
+
+    Assert.assertTrue(statistics.matchesAll(range("[100\t\t200]")));
+    Assert.assertFalse(statistics.matchesAll(range("(100\t\t200]")));
+    Assert.assertFalse(statistics.matchesAll(range("[100\t\t200)")));
+    Assert.assertTrue(statistics.matchesAll(range("(*\t\t*)")));
+
+    // Large longs are compared exactly
+    statistics = new RealtimeColumnStatistics(true, 2, 9007199254740993L, 9007199254740995L);
+    Assert.assertFalse(statistics.canMatch(range("(9007199254740995\t\t*)")));
+    Assert.assertTrue(statistics.canMatch(range("[9007199254740995\t\t*)")));
+  }
+
+  @Test
+  public void testEquality() {
+    RealtimeColumnStatistics statistics = new RealtimeColumnStatistics(true, 1, 1.5, 1.5);
+    Assert.assertTrue(statistics.canMatch(eq("1.5")));
+    Assert.assertFalse(statistics.canMatch(eq("2")));
+    Assert.assertTrue(statistics.matchesAll(eq("1.50")));
+
+    // Values that are not numbers are neither matched nor excluded
+    Assert.assertTrue(statistics.canMatch(eq("potato")));
+    Assert.assertFalse(statistics.matchesAll(eq("potato")));
+  }
+
+  @Test
+  public void testMultiValueAndEmptyColumns() {
+    RealtimeColumnStatistics statistics = new RealtimeColumnStatistics(false, 3, 1, 3);
+    Assert.assertTrue(statistics.canMatch(range("[1\t\t3]")));
+    Assert.assertFalse(statistics.matchesAll(range("[1\t\t3]")));
+
+    statistics = new RealtimeColumnStatistics(true, 0, null, null);
+    Assert.assertFalse(statistics.canMatch(eq("1")));
+    Assert.assertFalse(statistics.matchesAll(range("(*\t\t*)")));
+
+    // Min and max values not updated yet for the first value
+    statistics = new RealtimeColumnStatistics(true, 1, Long.MAX_VALUE, Long.MIN_VALUE);
+    Assert.assertTrue(statistics.canMatch(eq("1")));
+    Assert.assertFalse(statistics.matchesAll(range("(*\t\t*)")));
+  }
+
+  private static RangePredicate range(String range) {
+    return new RangePredicate("column", Collections.singletonList(range));
+  }
+
+  private static EqPredicate eq(String value) {
+    return new EqPredicate("column", Collections.singletonList(value));
+  }
+}
@@ -0,0 +1,226 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime.impl.kafka;
+
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.core.data.GenericRow;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+
+public class KafkaAvroMessageDecoderTest {
+  private static final File SCHEMA_REGISTRY_DIR =
+      new File(FileUtils.getTempDirectory(), "KafkaAvroMessageDecoderTest");
+  private static final String AVRO_SCHEMA_V1 = "{\"type\":\"record\",\"name\":\"TestRecord\",\"fields\":["
+      + "{\"name\":\"dim\",\"type\":\"string\"},"
+      + "{\"name\":\"unusedString\",\"type\":\"string\"},"
+      + "{\"name\":\"intDim\",\"type\":\"int\"},"
+      + "{\"name\":\"unusedArray\",\"type\":{\"type\":\"array\",\"items\":\"long\"}},"
+      + "{\"name\":\"mvDim\",\"type\":{\"type\":\"array\",\"items\":\"string\"}},"
+      + "{\"name\":\"unusedRecord\",\"type\":{\"type\":\"record\",\"name\":\"Nested\",\"fields\":["
+      + "{\"name\":\"a\",\"type\":\"string\"},{\"name\":\"b\",\"type\":\"double\"}]}},"
+      + "{\"name\":\"metric\",\"type\":\"long\"},"
+      + "{\"name\":\"daysSinceEpoch\",\"type\":\"long\"}]}";
+  // Evolved schema, with a nullable column that is not in the first version and an additional unused map
+  private static final String AVRO_SCHEMA_V2 = "{\"type\":\"record\",\"name\":\"TestRecord\",\"fields\":["
+      + "{\"name\":\"unusedMap\",\"type\":{\"type\":\"map\",\"values\":\"string\"}},"
+      + "{\"name\":\"dim\",\"type\":\"string\"},"
+      + "{\"name\":\"intDim\",\"type\":\"int\"},"
+      + "{\"name\":\"nullableDim\",\"type\":[\"null\",\"string\"]},"
+      + "{\"name\":\"mvDim\",\"type\":{\"type\":\"array\",\"items\":\"string\"}},"
+      + "{\"name\":\"metric\",\"type\":\"long\"},"
+      + "{\"name\":\"daysSinceEpoch\",\"type\":\"long\"}]}";
+  private static final int NUM_MESSAGES = 1000;
+
+  private Schema _schema;
+  private org.apache.avro.Schema _avroSchemaV1;
+  private org.apache.avro.Schema _avroSchemaV2;
+  private byte[] _md5V1;
+  private byte[] _md5V2;
+  private KafkaAvroMessageDecoder _decoder;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    FileUtils.deleteQuietly(SCHEMA_REGISTRY_DIR);
+    _schema = new Schema.SchemaBuilder().setSchemaName("testSchema")
+        .addSingleValueDimension("dim", FieldSpec.DataType.STRING)
+        .addSingleValueDimension("intDim", FieldSpec.DataType.INT)
+        .addSingleValueDimension("nullableDim", FieldSpec.DataType.STRING)
+        .addMultiValueDimension("mvDim", FieldSpec.DataType.STRING)
+        .addMetric("metric", FieldSpec.DataType.LONG)
+        .addTime("daysSinceEpoch", TimeUnit.DAYS, FieldSpec.DataType.LONG)
+        .build();
+    _avroSchemaV1 = new org.apache.avro.Schema.Parser().parse(AVRO_SCHEMA_V1);
+    _avroSchemaV2 = new org.apache.avro.Schema.Parser().parse(AVRO_SCHEMA_V2);
+    _md5V1 = MessageDigest.getInstance("MD5").digest(AVRO_SCHEMA_V1.getBytes("UTF-8"));
+    _md5V2 = MessageDigest.getInstance("MD5").digest(AVRO_SCHEMA_V2.getBytes("UTF-8"));
+
+    // The schema registry is served from files, with the same paths as the REST endpoints
+    FileUtils.writeStringToFile(new File(SCHEMA_REGISTRY_DIR, "latest_with_type=testSchema"), AVRO_SCHEMA_V1);
+    FileUtils.writeStringToFile(new File(SCHEMA_REGISTRY_DIR, "id=" + KafkaAvroMessageDecoder.hex(_md5V1)),
+        AVRO_SCHEMA_V1);
+    FileUtils.writeStringToFile(new File(SCHEMA_REGISTRY_DIR, "id=" + KafkaAvroMessageDecoder.hex(_md5V2)),
+        AVRO_SCHEMA_V2);
+
+    Map<String, String> props = new HashMap<>();
+    props.put(KafkaAvroMessageDecoder.SCHEMA_REGISTRY_REST_URL, "file:" + SCHEMA_REGISTRY_DIR.getAbsolutePath());
+    props.put(KafkaAvroMessageDecoder.SCHEMA_REGISTRY_SCHEMA_NAME, "testSchema");
+    _decoder = new KafkaAvroMessageDecoder();
+    _decoder.init(props, _schema, "testTopic");
+  }
+
+  @Test
+  public void testDecodeWithSchemaEvolution() throws Exception {
+    Random random = new Random(0);
+    AvroRecordToPinotRowGenerator rowGenerator = new AvroRecordToPinotRowGenerator(_schema);
+    GenericRow row = null;
+    for (int i = 0; i < NUM_MESSAGES; i++) {
+      // Runs of messages with the same schema, and an unknown schema hash that falls back to the default schema
+      int schemaId = (i / 10) % 3;
+      org.apache.avro.Schema avroSchema = (schemaId == 1) ? _avroSchemaV2 : _avroSchemaV1;
+      byte[] md5;
+      if (schemaId == 0) {
+        md5 = _md5V1;
+      } else if (schemaId == 1) {
+        md5 = _md5V2;
+      } else {
+        md5 = new byte[16];
+        random.nextBytes(md5);
+      }
+      GenericData.Record record = createRecord(avroSchema, random);
+      byte[] avroBytes = encode(record);
+
+      // Message in the middle of a larger buffer
+      int offset = random.nextInt(10);
+      byte[] buffer = new byte[offset + 17 + avroBytes.length + random.nextInt(10)];
+      System.arraycopy(md5, 0, buffer, offset + 1, 16);
+      System.arraycopy(avroBytes, 0, buffer, offset + 17, avroBytes.length);
+
+      row = GenericRow.createOrReuseRow(row);
+      row = _decoder.decode(buffer, offset, 17 + avroBytes.length, row);
+
+      GenericData.Record fullRecord = new GenericDatumReader<GenericData.Record>(avroSchema).read(null,
+          DecoderFactory.get().binaryDecoder(avroBytes, null));
+      GenericRow expectedRow = rowGenerator.transform(fullRecord, avroSchema, new GenericRow());
+      for (String column : _schema.getColumnNames()) {
+        Object expectedValue = expectedRow.getValue(column);
+        if (expectedValue instanceof Object[]) {
+          Assert.assertTrue(Arrays.equals((Object[]) row.getValue(column), (Object[]) expectedValue), column);
+        } else {
+          Assert.assertEquals(row.getValue(column), expectedValue, column);
+        }
+      }
+      Assert.assertEquals(row.getFieldNames().length, _schema.getColumnNames().size());
+    }
+  }
+
+  @Test
+  public void testProjectedSchema() {
+    org.apache.avro.Schema projectedSchema = KafkaAvroMessageDecoder.getProjectedSchema(_avroSchemaV1, _schema);
+    List<String> fieldNames = new ArrayList<>();
+    for (org.apache.avro.Schema.Field field : projectedSchema.getFields()) {
+      fieldNames.add(field.name());
+    }
+    Assert.assertEquals(fieldNames, Arrays.asList("dim", "intDim", "mvDim", "metric", "daysSinceEpoch"));
+    Assert.assertEquals(projectedSchema.getFullName(), _avroSchemaV1.getFullName());
+  }
+
+  private static GenericData.Record createRecord(org.apache.avro.Schema avroSchema, Random random) {
+    GenericData.Record record = new GenericData.Record(avroSchema);
+    for (org.apache.avro.Schema.Field field : avroSchema.getFields()) {
+      String name = field.name();
+      switch (name) {
+        case "dim":
+        case "unusedString":
+          record.put(name, "s" + random.nextInt(100));
+          break;
+        case "intDim":
+          record.put(name, random.nextInt());
+          break;
+        case "nullableDim":
+          record.put(name, random.nextBoolean() ? null : "n" + random.nextInt(10));
+          break;
+        case "mvDim": {
+          List<String> values = new ArrayList<>();
+          int numValues = random.nextInt(4);
+          for (int i = 0; i < numValues; i++) {
+            values.add("v" + random.nextInt(10));
+          }
+          record.put(name, values);
+          break;
+        }
+        case "unusedArray":
+          record.put(name, Arrays.asList(random.nextLong(), random.nextLong()));
+          break;
+        case "unusedRecord": {
+          GenericData.Record nested = new GenericData.Record(field.schema());
+          nested.put("a", "nested" + random.nextInt(5));
+          nested.put("b", random.nextDouble());
+          record.put(name, nested);
+          break;
+        }
+        case "unusedMap": {
+          Map<String, String> map = new HashMap<>();
+          map.put("key" + random.nextInt(3), "value");
+          record.put(name, map);
+          break;
+        }
+        case "metric":
+          record.put(name, (long) random.nextInt(1000));
+          break;
+        case "daysSinceEpoch":
+          record.put(name, 17000L + random.nextInt(10));
+          break;
+        default:
+          throw new IllegalStateException("Unexpected field " + name);
+      }
+    }
+    return record;
+  }
+
+  private static byte[] encode(GenericData.Record record) throws Exception {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(outputStream, null);
+    new GenericDatumWriter<GenericData.Record>(record.getSchema()).write(record, encoder);
+    encoder.flush();
+    return outputStream.toByteArray();
+  }
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(SCHEMA_REGISTRY_DIR);
+  }
+}
@@ -15,8 +15,10 @@
  */
 package com.linkedin.pinot.core.realtime.impl.kafka;
 
+import com.linkedin.pinot.common.metadata.segment.RealtimeSegmentZKMetadata;
 import com.linkedin.pinot.common.metrics.ServerMetrics;
 import com.yammer.metrics.core.MetricsRegistry;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -26,6 +28,7 @@ import com.linkedin.pinot.common.data.FieldSpec;
 import com.linkedin.pinot.common.data.Schema;
 import com.linkedin.pinot.core.data.GenericRow;
 import com.linkedin.pinot.core.realtime.impl.RealtimeSegmentImpl;
+import com.linkedin.pinot.core.segment.memory.OffHeapMemoryManager;
 
 
 /**
@@ -71,4 +74,47 @@ public class RealtimeSegmentImplTest {
     Assert.assertEquals(notFull, true);
     Assert.assertEquals(realtimeSegment.getRawDocumentCount(), 2);
   }
+
+  @Test
+  public void testMemoryAccounting() throws Exception {
+    Schema schema = new Schema.SchemaBuilder()
+        .setSchemaName("potato")
+        .addSingleValueDimension("dimension", FieldSpec.DataType.STRING)
+        .addMetric("metric", FieldSpec.DataType.LONG)
+        .addTime("time", TimeUnit.SECONDS, FieldSpec.DataType.LONG)
+        .build();
+
+    OffHeapMemoryManager memoryManager = new OffHeapMemoryManager(1024 * 1024, null);
+    RealtimeSegmentImpl realtimeSegment = new RealtimeSegmentImpl(schema, 100, "noTable", "noSegment",
+        schema.getSchemaName(), new ServerMetrics(new MetricsRegistry()), new ArrayList<String>(),
+        memoryManager.newAllocator("noSegment"));
+    RealtimeSegmentZKMetadata segmentZKMetadata = new RealtimeSegmentZKMetadata();
+    segmentZKMetadata.setSegmentName("noSegment");
+    realtimeSegment.setSegmentMetadata(segmentZKMetadata, schema);
+
+    // The forward indexes of the 3 columns are allocated up front for the capacity
+    Assert.assertEquals(realtimeSegment.getOffHeapMemoryAllocatedBytes(), 3 * 100 * 4);
+    Assert.assertEquals(memoryManager.getAllocatedBytes(), 3 * 100 * 4);
+    Assert.assertEquals(realtimeSegment.getMemoryBudgetInBytes(), 1024 * 1024);
+    Assert.assertEquals(realtimeSegment.getMemoryUsedBytesEstimate(), 0L);
+
+    long previousMemoryUsed = 0L;
+    for (int i = 0; i < 10; i++) {
+      Map<String, Object> genericRowContents = new HashMap<>();
+      genericRowContents.put("dimension", "potato" + i);
+      genericRowContents.put("metric", (long) i);
+      genericRowContents.put("time", 4567L + i);
+      GenericRow row = new GenericRow();
+      row.init(genericRowContents);
+      realtimeSegment.index(row);
+
+      long memoryUsed = realtimeSegment.getMemoryUsedBytesEstimate();
+      Assert.assertTrue(memoryUsed > previousMemoryUsed);
+      previousMemoryUsed = memoryUsed;
+    }
+
+    realtimeSegment.destroy();
+    Assert.assertEquals(memoryManager.getAllocatedBytes(), 0L);
+    Assert.assertEquals(memoryManager.getNumAllocators(), 0);
+  }
 }
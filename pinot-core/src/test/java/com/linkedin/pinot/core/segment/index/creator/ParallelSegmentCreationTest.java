@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.index.creator;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.MetricFieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.data.TimeFieldSpec;
+import com.linkedin.pinot.common.data.TimeGranularitySpec;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.data.readers.TestRecordReader;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentVersion;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+
+/**
+ * Tests that the column parallel segment creation generates exactly the same segment as the serial creation.
+ */
+public class ParallelSegmentCreationTest {
+  private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "ParallelSegmentCreationTest");
+  private static final int NUM_ROWS = 20011;
+  private static final long RANDOM_SEED = 42L;
+
+  private Schema _schema;
+  private List<GenericRow> _rows;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    _schema = new Schema();
+    _schema.addField(new DimensionFieldSpec("sortedInt", FieldSpec.DataType.INT, true));
+    _schema.addField(new DimensionFieldSpec("unsortedInt", FieldSpec.DataType.INT, true));
+    _schema.addField(new DimensionFieldSpec("country", FieldSpec.DataType.STRING, true));
+    _schema.addField(new DimensionFieldSpec("rawString", FieldSpec.DataType.STRING, true));
+    _schema.addField(new DimensionFieldSpec("skills", FieldSpec.DataType.STRING, false));
+    _schema.addField(new DimensionFieldSpec("scores", FieldSpec.DataType.FLOAT, false));
+    _schema.addField(new MetricFieldSpec("impressions", FieldSpec.DataType.LONG));
+    _schema.addField(new MetricFieldSpec("cost", FieldSpec.DataType.DOUBLE));
+    _schema.addField(
+        new TimeFieldSpec(new TimeGranularitySpec(FieldSpec.DataType.LONG, TimeUnit.DAYS, "daysSinceEpoch")));
+
+    Random random = new Random(RANDOM_SEED);
+    _rows = new ArrayList<>(NUM_ROWS);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      GenericRow row = new GenericRow();
+      row.putField("sortedInt", i / 7);
+      // Some values need a type conversion, some are missing and take the default null value
+      row.putField("unsortedInt", (i % 10 == 0) ? Integer.toString(random.nextInt(500)) : random.nextInt(500));
+      if (i % 13 != 0) {
+        row.putField("country", "country" + random.nextInt(100));
+      }
+      row.putField("rawString", "raw" + random.nextInt());
+      Object[] skills = new Object[random.nextInt(4)];
+      for (int j = 0; j < skills.length; j++) {
+        skills[j] = "skill" + random.nextInt(50);
+      }
+      row.putField("skills", skills);
+      row.putField("scores", new Object[]{random.nextFloat(), random.nextFloat()});
+      row.putField("impressions", (long) random.nextInt(100));
+      row.putField("cost", random.nextInt(10000) / 100.0);
+      row.putField("daysSinceEpoch", 17000L + random.nextInt(30));
+      _rows.add(row);
+    }
+  }
+
+  @Test
+  public void testV1Segment() throws Exception {
+    compareWithSerialCreation(SegmentVersion.v1, Arrays.asList("unsortedInt", "country", "skills"));
+  }
+
+  @Test
+  public void testV3Segment() throws Exception {
+    compareWithSerialCreation(SegmentVersion.v3, Collections.<String>emptyList());
+  }
+
+  private void compareWithSerialCreation(SegmentVersion segmentVersion, List<String> invertedIndexColumns)
+      throws Exception {
+    FileUtils.deleteQuietly(TEMP_DIR);
+    File serialSegmentDir = createSegment(new File(TEMP_DIR, "serial"), segmentVersion, invertedIndexColumns, 1);
+    File parallelSegmentDir = createSegment(new File(TEMP_DIR, "parallel"), segmentVersion, invertedIndexColumns, 4);
+    Assert.assertEquals(parallelSegmentDir.getName(), serialSegmentDir.getName());
+
+    SegmentCreationTestUtils.assertDirectoryContentEquals(parallelSegmentDir, serialSegmentDir);
+  }
+
+  private File createSegment(File outDir, SegmentVersion segmentVersion, List<String> invertedIndexColumns,
+      int numThreads) throws Exception {
+    SegmentGeneratorConfig config =
+        SegmentCreationTestUtils.getSegmentGeneratorConfig(_schema, outDir, "daysSinceEpoch", TimeUnit.DAYS);
+    config.setSegmentVersion(segmentVersion);
+    config.setInvertedIndexCreationColumns(invertedIndexColumns);
+    config.setRawIndexCreationColumns(Collections.singletonList("rawString"));
+    config.setNumIndexCreationThreads(numThreads);
+    return SegmentCreationTestUtils.createSegment(config, new TestRecordReader(_rows, _schema));
+  }
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+}
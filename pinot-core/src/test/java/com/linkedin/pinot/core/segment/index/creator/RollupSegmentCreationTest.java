@@ -0,0 +1,218 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.index.creator;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.MetricFieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.data.TimeFieldSpec;
+import com.linkedin.pinot.common.data.TimeGranularitySpec;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.data.readers.PinotSegmentRecordReader;
+import com.linkedin.pinot.core.data.readers.TestRecordReader;
+import com.linkedin.pinot.core.indexsegment.generator.RollupConfig;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+
+/**
+ * Tests the segment creation rolling up the rows to an hourly granularity, in memory and with runs spilled to disk.
+ */
+public class RollupSegmentCreationTest {
+  private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "RollupSegmentCreationTest");
+  private static final String TABLE_NAME = "testTable";
+  private static final int NUM_ROWS = 20011;
+  private static final long RANDOM_SEED = 42L;
+  private static final long SMALL_SORT_BUFFER_SIZE = 16 * 1024;
+  private static final long START_MINUTES_SINCE_EPOCH = 25000000L;
+
+  private Schema _schema;
+  private List<GenericRow> _rows;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    FileUtils.deleteQuietly(TEMP_DIR);
+    _schema = new Schema();
+    _schema.addField(new DimensionFieldSpec("country", FieldSpec.DataType.STRING, true));
+    _schema.addField(new DimensionFieldSpec("memberId", FieldSpec.DataType.INT, true));
+    _schema.addField(new MetricFieldSpec("clicks", FieldSpec.DataType.LONG));
+    _schema.addField(new MetricFieldSpec("minLatency", FieldSpec.DataType.INT));
+    _schema.addField(new MetricFieldSpec("maxCost", FieldSpec.DataType.DOUBLE));
+    _schema.addField(
+        new TimeFieldSpec(new TimeGranularitySpec(FieldSpec.DataType.LONG, TimeUnit.MINUTES, "minutesSinceEpoch")));
+
+    Random random = new Random(RANDOM_SEED);
+    _rows = new ArrayList<>(NUM_ROWS);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      GenericRow row = new GenericRow();
+      row.putField("country", "country" + random.nextInt(5));
+      row.putField("memberId", random.nextInt(20));
+      row.putField("clicks", (long) random.nextInt(100));
+      row.putField("minLatency", random.nextInt(1000));
+      row.putField("maxCost", random.nextInt(10000) / 100.0);
+      // 10 hours of data
+      row.putField("minutesSinceEpoch", START_MINUTES_SINCE_EPOCH + random.nextInt(600));
+      _rows.add(row);
+    }
+  }
+
+  @Test
+  public void testRollupSegmentCreation() throws Exception {
+    File inMemorySegmentDir =
+        createSegment(new File(TEMP_DIR, "inMemory"), SegmentGeneratorConfig.DEFAULT_SORT_BUFFER_SIZE_IN_BYTES);
+    File spilledSegmentDir = createSegment(new File(TEMP_DIR, "spilled"), SMALL_SORT_BUFFER_SIZE);
+
+    // Expected rows, by (country, memberId, hour)
+    Map<List<Object>, Object[]> expectedRows = new HashMap<>();
+    for (GenericRow row : _rows) {
+      long hourStart = (Long) row.getValue("minutesSinceEpoch") / 60 * 60;
+      List<Object> key = Arrays.asList(row.getValue("country"), row.getValue("memberId"), hourStart);
+      Object[] metrics = expectedRows.get(key);
+      if (metrics == null) {
+        expectedRows.put(key,
+            new Object[]{row.getValue("clicks"), row.getValue("minLatency"), row.getValue("maxCost")});
+      } else {
+        metrics[0] = (Long) metrics[0] + (Long) row.getValue("clicks");
+        metrics[1] = Math.min((Integer) metrics[1], (Integer) row.getValue("minLatency"));
+        metrics[2] = Math.max((Double) metrics[2], (Double) row.getValue("maxCost"));
+      }
+    }
+    Assert.assertTrue(expectedRows.size() < NUM_ROWS / 10);
+
+    SegmentMetadataImpl segmentMetadata = new SegmentMetadataImpl(inMemorySegmentDir);
+    Assert.assertEquals(segmentMetadata.getTotalDocs(), expectedRows.size());
+    Assert.assertEquals(segmentMetadata.getTotalRawDocs(), expectedRows.size());
+    Assert.assertEquals(segmentMetadata.getRollupInputDocs(), NUM_ROWS);
+    Assert.assertEquals(segmentMetadata.getRollupReductionRatio(), (double) NUM_ROWS / expectedRows.size(), 1e-9);
+    // The first sorted column gets a sorted forward index
+    Assert.assertTrue(segmentMetadata.getColumnMetadataFor("memberId").isSorted());
+
+    PinotSegmentRecordReader recordReader = new PinotSegmentRecordReader(inMemorySegmentDir);
+    recordReader.init();
+    int numRows = 0;
+    while (recordReader.hasNext()) {
+      GenericRow row = recordReader.next();
+      numRows++;
+      List<Object> key =
+          Arrays.asList(row.getValue("country"), row.getValue("memberId"), row.getValue("minutesSinceEpoch"));
+      Object[] expectedMetrics = expectedRows.get(key);
+      Assert.assertNotNull(expectedMetrics, "Unexpected row: " + key);
+      Assert.assertEquals(row.getValue("clicks"), expectedMetrics[0]);
+      Assert.assertEquals(row.getValue("minLatency"), expectedMetrics[1]);
+      Assert.assertEquals(row.getValue("maxCost"), expectedMetrics[2]);
+    }
+    recordReader.close();
+    Assert.assertEquals(numRows, expectedRows.size());
+
+    // Same segment with the sort spilled to disk
+    SegmentCreationTestUtils.assertDirectoryContentEquals(spilledSegmentDir, inMemorySegmentDir);
+  }
+
+  @Test
+  public void testRollupWithoutTimeTruncation() throws Exception {
+    SegmentGeneratorConfig config = getSegmentGeneratorConfig(new File(TEMP_DIR, "noTruncation"));
+    config.setRollupConfig(new RollupConfig());
+    File segmentDir = SegmentCreationTestUtils.createSegment(config, new TestRecordReader(_rows, _schema));
+
+    SegmentMetadataImpl segmentMetadata = new SegmentMetadataImpl(segmentDir);
+    Assert.assertEquals(segmentMetadata.getRollupInputDocs(), NUM_ROWS);
+    Assert.assertTrue(segmentMetadata.getTotalDocs() < NUM_ROWS);
+    // Much less reduction than with the hourly granularity
+    Assert.assertTrue(segmentMetadata.getRollupReductionRatio() < 2.0);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testRollupOnMultiValueColumn() throws Exception {
+    Schema schema = new Schema();
+    schema.addField(new DimensionFieldSpec("skills", FieldSpec.DataType.STRING, false));
+    schema.addField(new MetricFieldSpec("clicks", FieldSpec.DataType.LONG));
+    GenericRow row = new GenericRow();
+    row.putField("skills", new Object[]{"skill"});
+    row.putField("clicks", 1L);
+
+    SegmentGeneratorConfig config = new SegmentGeneratorConfig(schema);
+    config.setOutDir(new File(TEMP_DIR, "multiValue").getPath());
+    config.setTableName(TABLE_NAME);
+    config.setRollupConfig(new RollupConfig());
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(config, new TestRecordReader(Collections.singletonList(row), schema));
+    driver.build();
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testRollupOnNonNumericMetric() throws Exception {
+    Schema schema = new Schema();
+    schema.addField(new DimensionFieldSpec("country", FieldSpec.DataType.STRING, true));
+    schema.addField(new MetricFieldSpec("memberIdHll", FieldSpec.DataType.STRING, 100,
+        MetricFieldSpec.DerivedMetricType.HLL));
+    GenericRow row = new GenericRow();
+    row.putField("country", "country");
+    row.putField("memberIdHll", "hll");
+
+    SegmentGeneratorConfig config = new SegmentGeneratorConfig(schema);
+    config.setOutDir(new File(TEMP_DIR, "nonNumeric").getPath());
+    config.setTableName(TABLE_NAME);
+    config.setRollupConfig(new RollupConfig());
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(config, new TestRecordReader(Collections.singletonList(row), schema));
+    driver.build();
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testRollupWithStarTree() throws Exception {
+    SegmentGeneratorConfig config = getSegmentGeneratorConfig(new File(TEMP_DIR, "starTree"));
+    config.setRollupConfig(new RollupConfig());
+    config.setEnableStarTreeIndex(true);
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(config, new TestRecordReader(_rows, _schema));
+  }
+
+  private File createSegment(File outDir, long sortBufferSize) throws Exception {
+    SegmentGeneratorConfig config = getSegmentGeneratorConfig(outDir);
+    RollupConfig rollupConfig = new RollupConfig(1, TimeUnit.HOURS);
+    rollupConfig.setAggregationType("minLatency", RollupConfig.AggregationType.MIN);
+    rollupConfig.setAggregationType("maxCost", RollupConfig.AggregationType.MAX);
+    config.setRollupConfig(rollupConfig);
+    config.setSortedColumns(Collections.singletonList("memberId"));
+    config.setSortBufferSizeInBytes(sortBufferSize);
+    return SegmentCreationTestUtils.createSegment(config, new TestRecordReader(_rows, _schema));
+  }
+
+  private SegmentGeneratorConfig getSegmentGeneratorConfig(File outDir) {
+    return SegmentCreationTestUtils.getSegmentGeneratorConfig(_schema, outDir, "minutesSinceEpoch", TimeUnit.MINUTES);
+  }
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.index.creator;
+
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.core.data.readers.RecordReader;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentVersion;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+
+
+/**
+ * Helpers for the tests comparing the segments built from the same rows in different ways.
+ */
+public class SegmentCreationTestUtils {
+  public static final String TABLE_NAME = "testTable";
+  // Fixed creation time, so that the segments built from the same rows are identical
+  public static final String CREATION_TIME = "1500000000000";
+
+  private SegmentCreationTestUtils() {
+  }
+
+  /**
+   * Returns the config to build a v1 segment of the test table with a fixed creation time.
+   */
+  public static SegmentGeneratorConfig getSegmentGeneratorConfig(Schema schema, File outDir, String timeColumnName,
+      TimeUnit segmentTimeUnit) {
+    SegmentGeneratorConfig config = new SegmentGeneratorConfig(schema);
+    config.setOutDir(outDir.getPath());
+    config.setTableName(TABLE_NAME);
+    config.setTimeColumnName(timeColumnName);
+    config.setSegmentTimeUnit(segmentTimeUnit);
+    config.setCreationTime(CREATION_TIME);
+    config.setSegmentVersion(SegmentVersion.v1);
+    return config;
+  }
+
+  /**
+   * Builds a segment from the rows of the given record reader, and returns its index directory.
+   */
+  public static File createSegment(SegmentGeneratorConfig config, RecordReader recordReader) throws Exception {
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(config, recordReader);
+    driver.build();
+    return driver.getOutputDirectory();
+  }
+
+  /**
+   * Asserts that two directories have the same files with the same content, recursively.
+   */
+  public static void assertDirectoryContentEquals(File actualDir, File expectedDir) throws Exception {
+    String[] fileNames = expectedDir.list();
+    Arrays.sort(fileNames);
+    String[] actualFileNames = actualDir.list();
+    Arrays.sort(actualFileNames);
+    Assert.assertEquals(actualFileNames, fileNames);
+    for (String fileName : fileNames) {
+      File expectedFile = new File(expectedDir, fileName);
+      File actualFile = new File(actualDir, fileName);
+      if (expectedFile.isDirectory()) {
+        assertDirectoryContentEquals(actualFile, expectedFile);
+      } else {
+        Assert.assertTrue(FileUtils.contentEquals(actualFile, expectedFile), fileName);
+      }
+    }
+  }
+}
@@ -0,0 +1,250 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.index.creator;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.MetricFieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.data.TimeFieldSpec;
+import com.linkedin.pinot.common.data.TimeGranularitySpec;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.data.readers.PinotSegmentRecordReader;
+import com.linkedin.pinot.core.data.readers.TestRecordReader;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.segment.creator.impl.ExternalRowSorter;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+
+/**
+ * Tests the segment creation sorting the rows on configured columns, in memory and with runs spilled to disk.
+ */
+public class SortedSegmentCreationTest {
+  private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "SortedSegmentCreationTest");
+  private static final int NUM_ROWS = 20011;
+  private static final long RANDOM_SEED = 42L;
+  // Small enough to spill more runs than merged at once
+  private static final long SMALL_SORT_BUFFER_SIZE = 16 * 1024;
+  private static final List<String> SORTED_COLUMNS = Arrays.asList("country", "memberId");
+
+  private Schema _schema;
+  private List<GenericRow> _rows;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    _schema = new Schema();
+    _schema.addField(new DimensionFieldSpec("rowId", FieldSpec.DataType.INT, true));
+    _schema.addField(new DimensionFieldSpec("memberId", FieldSpec.DataType.LONG, true));
+    _schema.addField(new DimensionFieldSpec("country", FieldSpec.DataType.STRING, true));
+    _schema.addField(new DimensionFieldSpec("skills", FieldSpec.DataType.STRING, false));
+    _schema.addField(new MetricFieldSpec("impressions", FieldSpec.DataType.LONG));
+    _schema.addField(new MetricFieldSpec("cost", FieldSpec.DataType.DOUBLE));
+    _schema.addField(
+        new TimeFieldSpec(new TimeGranularitySpec(FieldSpec.DataType.LONG, TimeUnit.DAYS, "daysSinceEpoch")));
+
+    Random random = new Random(RANDOM_SEED);
+    _rows = new ArrayList<>(NUM_ROWS);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      GenericRow row = new GenericRow();
+      row.putField("rowId", i);
+      // Few distinct sort values to have many ties, some values need a type conversion
+      row.putField("memberId", (i % 10 == 0) ? Integer.toString(random.nextInt(50)) : (long) random.nextInt(50));
+      if (i % 13 != 0) {
+        row.putField("country", "country" + random.nextInt(20));
+      }
+      Object[] skills = new Object[random.nextInt(4)];
+      for (int j = 0; j < skills.length; j++) {
+        skills[j] = "skill" + random.nextInt(50);
+      }
+      row.putField("skills", skills);
+      row.putField("impressions", (long) random.nextInt(100));
+      row.putField("cost", random.nextInt(10000) / 100.0);
+      row.putField("daysSinceEpoch", 17000L + random.nextInt(30));
+      _rows.add(row);
+    }
+  }
+
+  @Test
+  public void testExternalRowSorter() throws Exception {
+    List<String> columns = new ArrayList<>(_schema.getColumnNames());
+    List<String> sortColumns = Collections.singletonList("impressions");
+    List<GenericRow> inputRows = new ArrayList<>();
+    for (GenericRow row : _rows) {
+      // Same types as the sanitized rows
+      GenericRow inputRow = new GenericRow();
+      for (String column : columns) {
+        inputRow.putField(column, row.getValue(column));
+      }
+      inputRow.putField("memberId", getMemberId(row));
+      inputRows.add(inputRow);
+    }
+    // Stable sort, as expected from the sorter
+    List<GenericRow> expectedRows = new ArrayList<>(inputRows);
+    Collections.sort(expectedRows, new Comparator<GenericRow>() {
+      @Override
+      public int compare(GenericRow row1, GenericRow row2) {
+        return Long.compare((Long) row1.getValue("impressions"), (Long) row2.getValue("impressions"));
+      }
+    });
+
+    long[] bufferSizes = new long[]{SMALL_SORT_BUFFER_SIZE, SegmentGeneratorConfig.DEFAULT_SORT_BUFFER_SIZE_IN_BYTES};
+    for (long bufferSize : bufferSizes) {
+      File spillDir = new File(TEMP_DIR, "sorterSpill");
+      ExternalRowSorter sorter = new ExternalRowSorter(columns, sortColumns, bufferSize, spillDir);
+      try {
+        GenericRow reusedRow = new GenericRow();
+        for (GenericRow row : inputRows) {
+          for (String column : columns) {
+            reusedRow.putField(column, row.getValue(column));
+          }
+          sorter.add(reusedRow);
+        }
+        sorter.sort();
+        Assert.assertEquals(sorter.getNumRows(), NUM_ROWS);
+        if (bufferSize == SMALL_SORT_BUFFER_SIZE) {
+          Assert.assertTrue(sorter.getNumRuns() > 1);
+        } else {
+          Assert.assertEquals(sorter.getNumRuns(), 0);
+          Assert.assertFalse(spillDir.exists());
+        }
+
+        // Iterate twice over the sorted rows
+        for (int i = 0; i < 2; i++) {
+          Iterator<GenericRow> iterator = sorter.iterator();
+          for (GenericRow expectedRow : expectedRows) {
+            Assert.assertTrue(iterator.hasNext());
+            GenericRow actualRow = iterator.next();
+            for (String column : columns) {
+              Object expectedValue = expectedRow.getValue(column);
+              if (expectedValue instanceof Object[]) {
+                Assert.assertEquals((Object[]) actualRow.getValue(column), (Object[]) expectedValue);
+              } else {
+                Assert.assertEquals(actualRow.getValue(column), expectedValue, column);
+              }
+            }
+          }
+          Assert.assertFalse(iterator.hasNext());
+        }
+      } finally {
+        sorter.close();
+      }
+      Assert.assertFalse(spillDir.exists());
+    }
+  }
+
+  @Test
+  public void testSortedSegmentCreation() throws Exception {
+    FileUtils.deleteQuietly(TEMP_DIR);
+    File inMemorySegmentDir =
+        createSegment(new File(TEMP_DIR, "inMemory"), SegmentGeneratorConfig.DEFAULT_SORT_BUFFER_SIZE_IN_BYTES, 1);
+    File spilledSegmentDir = createSegment(new File(TEMP_DIR, "spilled"), SMALL_SORT_BUFFER_SIZE, 1);
+    File parallelSegmentDir =
+        createSegment(new File(TEMP_DIR, "parallel"), SegmentGeneratorConfig.DEFAULT_SORT_BUFFER_SIZE_IN_BYTES, 4);
+    File parallelSpilledSegmentDir = createSegment(new File(TEMP_DIR, "parallelSpilled"), SMALL_SORT_BUFFER_SIZE, 4);
+
+    // Only the temporary directories of the creations are left, the spilled runs are deleted
+    Assert.assertEquals(new File(TEMP_DIR, "spilled").list(), new String[]{spilledSegmentDir.getName()});
+    Assert.assertEquals(new File(TEMP_DIR, "parallelSpilled").list(),
+        new String[]{parallelSpilledSegmentDir.getName()});
+
+    // The first sorted column gets a sorted forward index
+    SegmentMetadataImpl segmentMetadata = new SegmentMetadataImpl(inMemorySegmentDir);
+    Assert.assertTrue(segmentMetadata.getColumnMetadataFor("country").isSorted());
+    Assert.assertFalse(segmentMetadata.getColumnMetadataFor("rowId").isSorted());
+
+    // Rows are sorted on (country, memberId), rows with equal values keeping the input order
+    List<GenericRow> expectedRows = new ArrayList<>(_rows);
+    Collections.sort(expectedRows, new Comparator<GenericRow>() {
+      @Override
+      public int compare(GenericRow row1, GenericRow row2) {
+        int result = getCountry(row1).compareTo(getCountry(row2));
+        if (result != 0) {
+          return result;
+        }
+        return Long.compare(getMemberId(row1), getMemberId(row2));
+      }
+    });
+    PinotSegmentRecordReader recordReader = new PinotSegmentRecordReader(inMemorySegmentDir);
+    recordReader.init();
+    for (GenericRow expectedRow : expectedRows) {
+      Assert.assertTrue(recordReader.hasNext());
+      GenericRow actualRow = recordReader.next();
+      Assert.assertEquals(actualRow.getValue("rowId"), expectedRow.getValue("rowId"));
+      Assert.assertEquals(actualRow.getValue("country"), getCountry(expectedRow));
+      Assert.assertEquals(actualRow.getValue("memberId"), getMemberId(expectedRow));
+    }
+    Assert.assertFalse(recordReader.hasNext());
+    recordReader.close();
+
+    // Same segment with the sort spilled to disk and with the column parallel creation
+    SegmentCreationTestUtils.assertDirectoryContentEquals(spilledSegmentDir, inMemorySegmentDir);
+    SegmentCreationTestUtils.assertDirectoryContentEquals(parallelSegmentDir, inMemorySegmentDir);
+    SegmentCreationTestUtils.assertDirectoryContentEquals(parallelSpilledSegmentDir, inMemorySegmentDir);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testMultiValueSortedColumn() throws Exception {
+    SegmentGeneratorConfig config = getSegmentGeneratorConfig(new File(TEMP_DIR, "multiValue"));
+    config.setSortedColumns(Collections.singletonList("skills"));
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(config, new TestRecordReader(_rows, _schema));
+    driver.build();
+  }
+
+  private static String getCountry(GenericRow row) {
+    Object country = row.getValue("country");
+    return (country == null) ? "null" : (String) country;
+  }
+
+  private static long getMemberId(GenericRow row) {
+    return Long.parseLong(row.getValue("memberId").toString());
+  }
+
+  private File createSegment(File outDir, long sortBufferSize, int numThreads) throws Exception {
+    SegmentGeneratorConfig config = getSegmentGeneratorConfig(outDir);
+    config.setSortedColumns(SORTED_COLUMNS);
+    config.setSortBufferSizeInBytes(sortBufferSize);
+    config.setNumIndexCreationThreads(numThreads);
+    return SegmentCreationTestUtils.createSegment(config, new TestRecordReader(_rows, _schema));
+  }
+
+  private SegmentGeneratorConfig getSegmentGeneratorConfig(File outDir) {
+    SegmentGeneratorConfig config =
+        SegmentCreationTestUtils.getSegmentGeneratorConfig(_schema, outDir, "daysSinceEpoch", TimeUnit.DAYS);
+    config.setInvertedIndexCreationColumns(Arrays.asList("memberId", "skills"));
+    return config;
+  }
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+}
@@ -25,6 +25,7 @@ import com.linkedin.pinot.core.segment.creator.SegmentIndexCreationDriver;
 import com.linkedin.pinot.core.segment.creator.impl.SegmentCreationDriverFactory;
 import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
 import com.linkedin.pinot.core.segment.index.ColumnMetadata;
+import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
 import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
 import com.linkedin.pinot.core.segment.index.converter.SegmentV1V2ToV3FormatConverter;
 import com.linkedin.pinot.core.segment.index.readers.StringDictionary;
@@ -32,6 +33,7 @@ import com.linkedin.pinot.core.segment.memory.PinotDataBuffer;
 import com.linkedin.pinot.core.segment.store.ColumnIndexType;
 import com.linkedin.pinot.core.segment.store.SegmentDirectory;
 import com.linkedin.pinot.core.segment.store.SegmentDirectoryPaths;
+import com.linkedin.pinot.core.segment.store.SegmentMetadataBinaryFile;
 import com.linkedin.pinot.segments.v1.creator.SegmentTestUtils;
 import com.linkedin.pinot.util.TestUtils;
 import java.io.File;
@@ -112,6 +114,38 @@ public class LoadersTest {
   }
 
 
+  @Test
+  public void testLazyColumnLoading()
+      throws Exception {
+    Configuration tableConfig = new PropertiesConfiguration();
+    tableConfig.addProperty(IndexLoadingConfigMetadata.KEY_OF_SEGMENT_FORMAT_VERSION, "v3");
+    tableConfig.addProperty(IndexLoadingConfigMetadata.KEY_OF_LAZY_COLUMN_LOADING, true);
+    IndexLoadingConfigMetadata lazyLoadingConfig = new IndexLoadingConfigMetadata(tableConfig);
+
+    IndexSegmentImpl indexSegment =
+        (IndexSegmentImpl) Loaders.IndexSegment.load(segmentDirectory, ReadMode.mmap, lazyLoadingConfig);
+    Assert.assertEquals(indexSegment.getNumLoadedColumns(), 0);
+    Assert.assertTrue(new File(SegmentDirectoryPaths.segmentDirectoryFor(segmentDirectory, SegmentVersion.v3),
+        SegmentMetadataBinaryFile.METADATA_BINARY_FILE_NAME).exists());
+
+    String[] columns = indexSegment.getColumnNames();
+    Assert.assertNotNull(indexSegment.getDataSource(columns[0]));
+    Assert.assertNotNull(indexSegment.getForwardIndexReaderFor(columns[0]));
+    Assert.assertEquals(indexSegment.getNumLoadedColumns(), 1);
+
+    // Lazily loaded segment should return the same values as an eagerly loaded one
+    IndexSegmentImpl eagerIndexSegment =
+        (IndexSegmentImpl) Loaders.IndexSegment.load(segmentDirectory, ReadMode.mmap, v3LoadingConfig);
+    Assert.assertEquals(eagerIndexSegment.getNumLoadedColumns(), columns.length);
+    for (String column : columns) {
+      Assert.assertEquals(indexSegment.getDictionaryFor(column).length(),
+          eagerIndexSegment.getDictionaryFor(column).length());
+    }
+    Assert.assertEquals(indexSegment.getNumLoadedColumns(), columns.length);
+    indexSegment.destroy();
+    eagerIndexSegment.destroy();
+  }
+
   @Test
   public void testLoadWithStaleConversionDir()
       throws Exception {
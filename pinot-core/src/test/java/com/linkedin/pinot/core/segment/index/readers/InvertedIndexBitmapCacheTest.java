@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.index.readers;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
+import com.linkedin.pinot.core.segment.creator.impl.inv.HeapBitmapInvertedIndexCreator;
+import com.linkedin.pinot.core.segment.memory.PinotDataBuffer;
+import java.io.File;
+import java.nio.channels.FileChannel;
+import org.apache.commons.io.FileUtils;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+
+public class InvertedIndexBitmapCacheTest {
+  private static final File INDEX_DIR = new File(FileUtils.getTempDirectory(), "InvertedIndexBitmapCacheTest");
+  private static final String COLUMN_NAME = "column";
+  private static final int NUM_DOCS = 1000;
+  private static final int CARDINALITY = 10;
+
+  private File _indexFile;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    FileUtils.deleteQuietly(INDEX_DIR);
+    FileUtils.forceMkdir(INDEX_DIR);
+    FieldSpec fieldSpec = new DimensionFieldSpec(COLUMN_NAME, FieldSpec.DataType.INT, true);
+    HeapBitmapInvertedIndexCreator creator =
+        new HeapBitmapInvertedIndexCreator(INDEX_DIR, CARDINALITY, NUM_DOCS, 0, fieldSpec);
+    // Dictionary id 0 is the most frequent value, appearing in half of the documents
+    for (int i = 0; i < NUM_DOCS; i++) {
+      creator.add(i, (i % 2 == 0) ? 0 : (i % CARDINALITY));
+    }
+    creator.seal();
+    _indexFile = new File(INDEX_DIR, COLUMN_NAME + V1Constants.Indexes.BITMAP_INVERTED_INDEX_FILE_EXTENSION);
+  }
+
+  @Test
+  public void testHitsAndInvalidation() throws Exception {
+    InvertedIndexBitmapCache cache = new InvertedIndexBitmapCache(1024 * 1024, 0, 0);
+    BitmapInvertedIndexReader reader = createReader(cache);
+
+    ImmutableRoaringBitmap bitmap = reader.getImmutable(1);
+    Assert.assertEquals(bitmap.getCardinality(), NUM_DOCS / CARDINALITY);
+    Assert.assertSame(reader.getImmutable(1), bitmap);
+    Assert.assertEquals(cache.getStats().hitCount(), 1L);
+    Assert.assertEquals(cache.getStats().missCount(), 1L);
+    Assert.assertEquals(cache.size(), 1L);
+    Assert.assertEquals(cache.getWeightInBytes(), (long) bitmap.serializedSizeInBytes());
+
+    reader.close();
+    Assert.assertEquals(cache.size(), 0L);
+    Assert.assertEquals(cache.getWeightInBytes(), 0L);
+  }
+
+  @Test
+  public void testInvalidationOfOneReader() throws Exception {
+    InvertedIndexBitmapCache cache = new InvertedIndexBitmapCache(1024 * 1024, 0, 0);
+    BitmapInvertedIndexReader reader1 = createReader(cache);
+    BitmapInvertedIndexReader reader2 = createReader(cache);
+
+    for (int i = 0; i < CARDINALITY; i++) {
+      reader1.getImmutable(i);
+    }
+    ImmutableRoaringBitmap bitmap = reader2.getImmutable(1);
+    Assert.assertEquals(cache.size(), CARDINALITY + 1L);
+
+    // Only the entries of the closed reader are removed
+    reader1.close();
+    Assert.assertEquals(cache.size(), 1L);
+    Assert.assertEquals(cache.getWeightInBytes(), (long) bitmap.serializedSizeInBytes());
+    Assert.assertSame(reader2.getImmutable(1), bitmap);
+    reader2.close();
+    Assert.assertEquals(cache.size(), 0L);
+  }
+
+  @Test
+  public void testPinnedValues() throws Exception {
+    InvertedIndexBitmapCache cache = new InvertedIndexBitmapCache(1024 * 1024, 1, 0);
+    BitmapInvertedIndexReader reader = createReader(cache);
+
+    // The most frequent value is served from the pinned bitmaps without touching the cache
+    ImmutableRoaringBitmap bitmap = reader.getImmutable(0);
+    Assert.assertEquals(bitmap.getCardinality(), NUM_DOCS / 2);
+    Assert.assertSame(reader.getImmutable(0), bitmap);
+    Assert.assertEquals(cache.getStats().requestCount(), 0L);
+
+    reader.getImmutable(3);
+    Assert.assertEquals(cache.getStats().missCount(), 1L);
+    reader.close();
+  }
+
+  @Test
+  public void testLowCardinalityColumnNotCached() throws Exception {
+    InvertedIndexBitmapCache cache = new InvertedIndexBitmapCache(1024 * 1024, 1, CARDINALITY + 1);
+    BitmapInvertedIndexReader reader = createReader(cache);
+
+    for (int i = 0; i < CARDINALITY; i++) {
+      Assert.assertNotNull(reader.getImmutable(i));
+    }
+    Assert.assertEquals(cache.getStats().requestCount(), 0L);
+    Assert.assertEquals(cache.size(), 0L);
+    reader.close();
+  }
+
+  @Test
+  public void testWeightBound() throws Exception {
+    InvertedIndexBitmapCache cache = new InvertedIndexBitmapCache(1, 0, 0);
+    BitmapInvertedIndexReader reader = createReader(cache);
+
+    for (int i = 0; i < CARDINALITY; i++) {
+      Assert.assertNotNull(reader.getImmutable(i));
+    }
+    Assert.assertEquals(cache.size(), 0L);
+    Assert.assertEquals(cache.getWeightInBytes(), 0L);
+    reader.close();
+  }
+
+  private BitmapInvertedIndexReader createReader(InvertedIndexBitmapCache cache) throws Exception {
+    PinotDataBuffer dataBuffer =
+        PinotDataBuffer.fromFile(_indexFile, ReadMode.mmap, FileChannel.MapMode.READ_ONLY, "testing");
+    return new BitmapInvertedIndexReader(dataBuffer, CARDINALITY, cache);
+  }
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(INDEX_DIR);
+  }
+}
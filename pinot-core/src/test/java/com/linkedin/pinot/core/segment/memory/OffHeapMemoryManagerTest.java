@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.memory;
+
+import java.io.File;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+
+public class OffHeapMemoryManagerTest {
+  private static final File MMAP_DIR = new File(FileUtils.getTempDirectory(), "OffHeapMemoryManagerTest");
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(MMAP_DIR);
+  }
+
+  @Test
+  public void testDirectAllocation() {
+    OffHeapMemoryManager memoryManager = new OffHeapMemoryManager(OffHeapMemoryManager.UNLIMITED_BUDGET, null);
+    OffHeapMemoryAllocator allocator = memoryManager.newAllocator("segment");
+    Assert.assertEquals(allocator.getBudgetInBytes(), OffHeapMemoryManager.UNLIMITED_BUDGET);
+
+    PinotDataBuffer buffer = allocator.allocate(1024L, "column");
+    PinotDataBufferTest.loadVerifyLong(buffer);
+    Assert.assertEquals(allocator.getAllocatedBytes(), 1024L);
+    Assert.assertEquals(memoryManager.getAllocatedBytes(), 1024L);
+
+    buffer.close();
+    allocator.close();
+    Assert.assertEquals(memoryManager.getAllocatedBytes(), 0L);
+    Assert.assertEquals(memoryManager.getNumAllocators(), 0);
+  }
+
+  @Test
+  public void testMmapAllocation() {
+    OffHeapMemoryManager memoryManager = new OffHeapMemoryManager(OffHeapMemoryManager.UNLIMITED_BUDGET, MMAP_DIR);
+    OffHeapMemoryAllocator allocator = memoryManager.newAllocator("table__0__1__20170101T0000Z");
+
+    PinotDataBuffer buffer = allocator.allocate(4096L, "column");
+    PinotDataBufferTest.loadVerifyLong(buffer);
+    Assert.assertEquals(memoryManager.getAllocatedBytes(), 4096L);
+    // The files are removed once mapped
+    Assert.assertEquals(MMAP_DIR.list().length, 0);
+
+    buffer.close();
+    allocator.close();
+    Assert.assertEquals(memoryManager.getAllocatedBytes(), 0L);
+  }
+
+  @Test
+  public void testBudgetShare() {
+    OffHeapMemoryManager memoryManager = new OffHeapMemoryManager(1000L, null);
+    OffHeapMemoryAllocator allocator1 = memoryManager.newAllocator("segment1");
+    Assert.assertEquals(allocator1.getBudgetInBytes(), 1000L);
+    OffHeapMemoryAllocator allocator2 = memoryManager.newAllocator("segment2");
+    Assert.assertEquals(allocator1.getBudgetInBytes(), 500L);
+    Assert.assertEquals(allocator2.getBudgetInBytes(), 500L);
+
+    // The budget is soft
+    PinotDataBuffer buffer = allocator1.allocate(2000L, "column");
+    Assert.assertEquals(memoryManager.getAllocatedBytes(), 2000L);
+    buffer.close();
+
+    // Closing twice does not release twice
+    allocator1.close();
+    allocator1.close();
+    Assert.assertEquals(memoryManager.getAllocatedBytes(), 0L);
+    Assert.assertEquals(allocator2.getBudgetInBytes(), 1000L);
+    allocator2.close();
+  }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.store;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Iterator;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+
+public class SegmentMetadataBinaryFileTest {
+  private static final File TEST_DIR = new File(FileUtils.getTempDirectory(), "SegmentMetadataBinaryFileTest");
+
+  private File _propertiesFile;
+  private File _binaryFile;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    FileUtils.deleteQuietly(TEST_DIR);
+    File v3Dir = new File(TEST_DIR, SegmentDirectoryPaths.V3_SUBDIRECTORY_NAME);
+    FileUtils.forceMkdir(v3Dir);
+    _propertiesFile = new File(v3Dir, "metadata.properties");
+    _binaryFile = new File(v3Dir, SegmentMetadataBinaryFile.METADATA_BINARY_FILE_NAME);
+
+    PropertiesConfiguration properties = new PropertiesConfiguration();
+    properties.addProperty("segment.name", "testSegment");
+    properties.addProperty("segment.dimension.column.names", Arrays.asList("dim1", "dim2", "dim3"));
+    properties.addProperty("column.dim1.defaultNullValue", "a\\,b");
+    properties.addProperty("column.dim1.cardinality", 10);
+    properties.addProperty("column.dim2.empty", "");
+    properties.addProperty("column.dim3.unicode", "été");
+    properties.save(_propertiesFile);
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    Assert.assertFalse(_binaryFile.exists());
+    PropertiesConfiguration expected = new PropertiesConfiguration(_propertiesFile);
+
+    // First load parses the properties file and generates the binary file
+    assertEquals(SegmentMetadataBinaryFile.load(_propertiesFile), expected);
+    Assert.assertTrue(_binaryFile.exists());
+
+    // Second load is served from the binary file
+    long lastModified = _binaryFile.lastModified();
+    PropertiesConfiguration actual = SegmentMetadataBinaryFile.load(_propertiesFile);
+    assertEquals(actual, expected);
+    Assert.assertEquals(_binaryFile.lastModified(), lastModified);
+    Assert.assertEquals(actual.getList("segment.dimension.column.names"), Arrays.asList("dim1", "dim2", "dim3"));
+    Assert.assertEquals(actual.getString("column.dim1.defaultNullValue"), "a,b");
+    Assert.assertEquals(actual.getInt("column.dim1.cardinality"), 10);
+  }
+
+  @Test
+  public void testStaleBinaryFile() throws Exception {
+    SegmentMetadataBinaryFile.load(_propertiesFile);
+    Assert.assertTrue(_binaryFile.exists());
+
+    // Modify the properties file, the binary file should be regenerated
+    PropertiesConfiguration properties = new PropertiesConfiguration(_propertiesFile);
+    properties.setProperty("segment.name", "newSegmentName");
+    properties.save(_propertiesFile);
+
+    PropertiesConfiguration actual = SegmentMetadataBinaryFile.load(_propertiesFile);
+    Assert.assertEquals(actual.getString("segment.name"), "newSegmentName");
+    assertEquals(SegmentMetadataBinaryFile.load(_propertiesFile), new PropertiesConfiguration(_propertiesFile));
+  }
+
+  @Test
+  public void testCorruptedBinaryFile() throws Exception {
+    FileUtils.writeStringToFile(_binaryFile, "not a binary metadata file");
+    assertEquals(SegmentMetadataBinaryFile.load(_propertiesFile), new PropertiesConfiguration(_propertiesFile));
+  }
+
+  private static void assertEquals(PropertiesConfiguration actual, PropertiesConfiguration expected) {
+    Iterator<String> keys = expected.getKeys();
+    int numKeys = 0;
+    while (keys.hasNext()) {
+      String key = keys.next();
+      Assert.assertEquals(actual.getProperty(key), expected.getProperty(key), key);
+      numKeys++;
+    }
+    Iterator<String> actualKeys = actual.getKeys();
+    while (actualKeys.hasNext()) {
+      actualKeys.next();
+      numKeys--;
+    }
+    Assert.assertEquals(numKeys, 0);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    FileUtils.deleteQuietly(TEST_DIR);
+  }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.queries;
+
+import com.linkedin.pinot.common.response.broker.BrokerResponseNative;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+
+public class SegmentResultCacheQueriesTest extends BaseSingleValueQueriesTest {
+  private static final String[] QUERIES = new String[]{
+      "SELECT COUNT(*) FROM testTable",
+      "SELECT SUM(column1), AVG(column3), MINMAXRANGE(column1) FROM testTable",
+      "SELECT DISTINCTCOUNT(column6), DISTINCTCOUNTHLL(column7), PERCENTILE50(column1), PERCENTILEEST90(column3) "
+          + "FROM testTable",
+      "SELECT COUNT(*), AVG(column1), DISTINCTCOUNT(column6) FROM testTable GROUP BY column9 TOP 100000",
+      "SELECT MAX(column1), PERCENTILE90(column3) FROM testTable GROUP BY column11, column12 TOP 100000"
+  };
+
+  @Test
+  public void testCachedResults()
+      throws Exception {
+    for (String query : QUERIES) {
+      for (String queryToRun : new String[]{query, query + getFilter()}) {
+        // Compute the expected result without cache.
+        SegmentResultCache.init(new PropertiesConfiguration(), null);
+        BrokerResponseNative expected = getBrokerResponseForQuery(queryToRun);
+
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        config.setProperty(SegmentResultCache.MAX_BYTES, 16 * 1024 * 1024);
+        SegmentResultCache.init(config, null);
+        SegmentResultCache cache = SegmentResultCache.getInstance();
+
+        // First run populates the cache, second run is served from the cache.
+        BrokerResponseNative firstResponse = getBrokerResponseForQuery(queryToRun);
+        Assert.assertEquals(cache.getStats().hitCount(), 0L, queryToRun);
+        Assert.assertEquals(cache.size(), 1L, queryToRun);
+        BrokerResponseNative secondResponse = getBrokerResponseForQuery(queryToRun);
+        Assert.assertEquals(cache.getStats().hitCount(), 2L, queryToRun);
+
+        List<String> expectedResults = getResults(expected);
+        Assert.assertEquals(getResults(firstResponse), expectedResults, queryToRun);
+        Assert.assertEquals(getResults(secondResponse), expectedResults, queryToRun);
+        Assert.assertEquals(secondResponse.getTotalDocs(), expected.getTotalDocs());
+        Assert.assertEquals(secondResponse.getNumDocsScanned(), 0L);
+      }
+    }
+  }
+
+  @Test
+  public void testInvalidation() {
+    PropertiesConfiguration config = new PropertiesConfiguration();
+    config.setProperty(SegmentResultCache.MAX_BYTES, 16 * 1024 * 1024);
+    SegmentResultCache.init(config, null);
+    SegmentResultCache cache = SegmentResultCache.getInstance();
+
+    getBrokerResponseForQuery(QUERIES[0]);
+    getBrokerResponseForQuery(QUERIES[3]);
+    Assert.assertEquals(cache.size(), 2L);
+    Assert.assertTrue(cache.getSizeInBytes() > 0L);
+
+    // A segment with the same name in another table does not invalidate the results
+    String segmentName = getIndexSegment().getSegmentName();
+    cache.invalidate("otherTable", segmentName);
+    Assert.assertEquals(cache.size(), 2L);
+
+    cache.invalidate(getIndexSegment().getSegmentMetadata().getTableName(), segmentName);
+    Assert.assertEquals(cache.size(), 0L);
+    Assert.assertEquals(cache.getSizeInBytes(), 0L);
+  }
+
+  @Test
+  public void testSelectionNotCached() {
+    PropertiesConfiguration config = new PropertiesConfiguration();
+    config.setProperty(SegmentResultCache.MAX_BYTES, 16 * 1024 * 1024);
+    SegmentResultCache.init(config, null);
+    getBrokerResponseForQuery("SELECT * FROM testTable");
+    Assert.assertEquals(SegmentResultCache.getInstance().size(), 0L);
+  }
+
+  /**
+   * Returns the aggregation results as sorted strings, as groups with the same value can come in any order.
+   */
+  private static List<String> getResults(BrokerResponseNative brokerResponse)
+      throws Exception {
+    List<String> results = new ArrayList<>();
+    JSONArray aggregationResults = brokerResponse.toJson().getJSONArray("aggregationResults");
+    for (int i = 0; i < aggregationResults.length(); i++) {
+      JSONObject aggregationResult = aggregationResults.getJSONObject(i);
+      if (aggregationResult.has("groupByResult")) {
+        JSONArray groupByResult = aggregationResult.getJSONArray("groupByResult");
+        for (int j = 0; j < groupByResult.length(); j++) {
+          results.add(i + ":" + groupByResult.getJSONObject(j).toString());
+        }
+      } else {
+        results.add(i + ":" + aggregationResult.toString());
+      }
+    }
+    Collections.sort(results);
+    return results;
+  }
+
+  @AfterClass
+  public void resetCache() {
+    SegmentResultCache.init(new PropertiesConfiguration(), null);
+  }
+}
@@ -15,6 +15,7 @@
  */
 package com.linkedin.pinot.hadoop.job;
 
+import com.google.common.base.Preconditions;
 import com.linkedin.pinot.common.Utils;
 import java.io.File;
 import java.io.IOException;
@@ -31,6 +32,8 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapred.JobContext;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
@@ -42,6 +45,7 @@ import org.slf4j.LoggerFactory;
 
 import com.linkedin.pinot.common.data.Schema;
 import com.linkedin.pinot.hadoop.job.mapper.HadoopSegmentCreationMapReduceJob.HadoopSegmentCreationMapper;
+import com.linkedin.pinot.hadoop.job.mapper.HadoopSegmentCreationMapReduceJob.SegmentCreationCounter;
 
 
 public class SegmentCreationJob extends Configured {
@@ -52,6 +56,11 @@ public class SegmentCreationJob extends Configured {
   private static final String PATH_TO_SCHEMA = "path.to.schema";
   private static final String PATH_TO_INPUT = "path.to.input";
   private static final String SEGMENT_TABLE_NAME = "segment.table.name";
+  /**
+   * Number of input files processed by each mapper, allowing mappers in parallel mode to build several segments
+   * concurrently.
+   */
+  public static final String FILES_PER_MAPPER = "segment.creation.files.per.mapper";
 
   private static final Logger LOGGER = LoggerFactory.getLogger(SegmentCreationJob.class);
 
@@ -63,6 +72,8 @@ public class SegmentCreationJob extends Configured {
   private final Schema _dataSchema;
   private final String _depsJarPath;
   private final String _outputDir;
+  private final int _filesPerMapper;
+  private Counters _counters;
 
   public SegmentCreationJob(String jobName, Properties properties) throws Exception {
     super(new Configuration());
@@ -75,6 +86,9 @@ public class SegmentCreationJob extends Configured {
     _outputDir = _properties.getProperty(PATH_TO_OUTPUT);
     _stagingDir = new File(_outputDir, TEMP).getAbsolutePath();
     _depsJarPath = _properties.getProperty(PATH_TO_DEPS_JAR, null);
+    _filesPerMapper = Integer.parseInt(_properties.getProperty(FILES_PER_MAPPER, "1"));
+    Preconditions.checkArgument(_filesPerMapper > 0, "%s must be positive, got: %s", FILES_PER_MAPPER,
+        _filesPerMapper);
 
     Utils.logVersions();
 
@@ -118,14 +132,19 @@ public class SegmentCreationJob extends Configured {
       inputDataFiles.addAll(getDataFilesFromPath(fs, fileStatus.getPath()));
     }
 
-    for (int seqId = 0; seqId < inputDataFiles.size(); ++seqId) {
+    // Each mapper input file lists up to _filesPerMapper data files, one per line
+    int numMappers = 0;
+    for (int seqId = 0; seqId < inputDataFiles.size(); seqId += _filesPerMapper) {
       FileStatus file = inputDataFiles.get(seqId);
-      String completeFilePath = " " + file.getPath().toString() + " " + seqId;
       Path newOutPutFile = new Path((_stagingDir + "/input/" + file.getPath().toString().replace('.', '_').replace('/', '_').replace(':', '_') + ".txt"));
       FSDataOutputStream stream = fs.create(newOutPutFile);
-      stream.writeUTF(completeFilePath);
+      for (int i = seqId; i < Math.min(seqId + _filesPerMapper, inputDataFiles.size()); i++) {
+        String completeFilePath = " " + inputDataFiles.get(i).getPath().toString() + " " + i + "\n";
+        stream.write(completeFilePath.getBytes("UTF-8"));
+      }
       stream.flush();
       stream.close();
+      numMappers++;
     }
 
     Job job = Job.getInstance(getConf());
@@ -148,7 +167,7 @@ public class SegmentCreationJob extends Configured {
     FileInputFormat.addInputPath(job, new Path(_stagingDir + "/input/"));
     FileOutputFormat.setOutputPath(job, new Path(_stagingDir + "/output/"));
 
-    job.getConfiguration().setInt(JobContext.NUM_MAPS, inputDataFiles.size());
+    job.getConfiguration().setInt(JobContext.NUM_MAPS, numMappers);
     job.getConfiguration().set("data.schema", new ObjectMapper().writeValueAsString(_dataSchema));
 
     job.setMaxReduceAttempts(1);
@@ -167,6 +186,10 @@ public class SegmentCreationJob extends Configured {
     if (!job.isSuccessful()) {
       throw new RuntimeException("Job failed : " + job);
     }
+    _counters = job.getCounters();
+    for (Counter counter : _counters.getGroup(SegmentCreationCounter.class.getName())) {
+      LOGGER.info("Segment creation counter {}: {}", counter.getName(), counter.getValue());
+    }
 
     LOGGER.info("Moving Segment Tar files from {} to: {}", _stagingDir + "/output/segmentTar", _outputDir);
     FileStatus[] segmentArr = fs.listStatus(new Path(_stagingDir + "/output/segmentTar"));
@@ -180,6 +203,13 @@ public class SegmentCreationJob extends Configured {
     fs.delete(new Path(_stagingDir), true);
   }
 
+  /**
+   * Returns the counters of the last successful run, including the {@link SegmentCreationCounter}s of the mappers.
+   */
+  public Counters getCounters() {
+    return _counters;
+  }
+
   private void addDepsJarToDistributedCache(Path path, Job job) throws IOException {
     LOGGER.info("Trying to add all the deps jar files from directory: {}", path);
     FileSystem fs = FileSystem.get(getConf());
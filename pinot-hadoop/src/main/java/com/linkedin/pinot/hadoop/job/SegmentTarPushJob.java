@@ -15,7 +15,10 @@
  */
 package com.linkedin.pinot.hadoop.job;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 import org.apache.hadoop.conf.Configuration;
@@ -26,7 +29,8 @@ import org.apache.hadoop.fs.Path;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.linkedin.pinot.common.utils.FileUploadUtils;
+import com.linkedin.pinot.common.utils.ParallelSegmentPusher;
+import com.linkedin.pinot.common.utils.retry.RetryPolicies;
 
 
 public class SegmentTarPushJob extends Configured {
@@ -34,8 +38,21 @@ public class SegmentTarPushJob extends Configured {
   private String _segmentPath;
   private String[] _hosts;
   private String _port;
+  private int _parallelism;
+  private int _maxAttempts;
+  private long _retryMinDelayMs;
+  private boolean _pushToAllHosts;
   public static final int MAX_RETRIES = 5;
-  public static final int SLEEP_BETWEEN_RETRIES_IN_SECONDS = 60;
+
+  // Number of segments pushed concurrently
+  public static final String PUSH_PARALLELISM = "push.parallelism";
+  public static final String PUSH_MAX_ATTEMPTS = "push.max.attempts";
+  // Minimum delay before the first retry of a segment, doubled (with jitter) for every following retry
+  public static final String PUSH_RETRY_MIN_DELAY_MS = "push.retry.min.delay.ms";
+  // Whether to push each segment to all the hosts (e.g. controllers of different clusters) instead of one of them
+  public static final String PUSH_TO_ALL_HOSTS = "push.to.all.hosts";
+  private static final int DEFAULT_PUSH_PARALLELISM = 4;
+  private static final long DEFAULT_PUSH_RETRY_MIN_DELAY_MS = 5000L;
 
   private static final Logger LOGGER = LoggerFactory.getLogger(SegmentTarPushJob.class);
 
@@ -44,7 +61,12 @@ public class SegmentTarPushJob extends Configured {
     _segmentPath = properties.getProperty("path.to.output") + "/";
     _hosts = properties.getProperty("push.to.hosts").split(",");
     _port = properties.getProperty("push.to.port");
-
+    _parallelism =
+        Integer.parseInt(properties.getProperty(PUSH_PARALLELISM, Integer.toString(DEFAULT_PUSH_PARALLELISM)));
+    _maxAttempts = Integer.parseInt(properties.getProperty(PUSH_MAX_ATTEMPTS, Integer.toString(MAX_RETRIES + 1)));
+    _retryMinDelayMs =
+        Long.parseLong(properties.getProperty(PUSH_RETRY_MIN_DELAY_MS, Long.toString(DEFAULT_PUSH_RETRY_MIN_DELAY_MS)));
+    _pushToAllHosts = Boolean.parseBoolean(properties.getProperty(PUSH_TO_ALL_HOSTS, "false"));
   }
 
   public void run() throws Exception {
@@ -52,77 +74,66 @@ public class SegmentTarPushJob extends Configured {
     FileSystem fs = FileSystem.get(conf);
     Path path = new Path(_segmentPath);
     FileStatus[] fileStatusArr = fs.globStatus(path);
+    List<ParallelSegmentPusher.SegmentTar> segmentTars = new ArrayList<>();
     for (FileStatus fileStatus : fileStatusArr) {
       if (fileStatus.isDirectory()) {
-        pushDir(fs, fileStatus.getPath());
+        addDir(fs, fileStatus.getPath(), segmentTars);
       } else {
-        pushOneTarFile(fs, fileStatus.getPath());
+        addTarFile(fs, fileStatus, segmentTars);
       }
     }
 
+    List<String> hosts = new ArrayList<>();
+    for (String host : _hosts) {
+      hosts.add(host.trim());
+    }
+    LOGGER.info("******** Uploading {} segment tars to hosts: {}, port: {} with parallelism: {} *******",
+        segmentTars.size(), hosts, _port, _parallelism);
+    ParallelSegmentPusher segmentPusher = new ParallelSegmentPusher(hosts, _port, _parallelism,
+        RetryPolicies.exponentialBackoffRetryPolicy(_maxAttempts, _retryMinDelayMs, 2.0f), _pushToAllHosts);
+    ParallelSegmentPusher.PushSummary summary = segmentPusher.push(segmentTars);
+    if (!summary.isSuccessful()) {
+      LOGGER.error("******** Error Uploading segment tars: {} *******", summary.getFailedSegments());
+      throw new RuntimeException("Got Error during send tar files to push hosts! " + summary);
+    }
   }
 
-  public void pushDir(FileSystem fs, Path path) throws Exception {
-    LOGGER.info("******** Now uploading segments tar from dir: {}", path);
+  private void addDir(FileSystem fs, Path path, List<ParallelSegmentPusher.SegmentTar> segmentTars)
+      throws IOException {
+    LOGGER.info("******** Now listing segments tar from dir: {}", path);
     FileStatus[] fileStatusArr = fs.listStatus(new Path(path.toString() + "/"));
     for (FileStatus fileStatus : fileStatusArr) {
       if (fileStatus.isDirectory()) {
-        pushDir(fs, fileStatus.getPath());
+        addDir(fs, fileStatus.getPath(), segmentTars);
       } else {
-        pushOneTarFile(fs, fileStatus.getPath());
+        addTarFile(fs, fileStatus, segmentTars);
       }
     }
   }
 
-  public void pushOneTarFile(FileSystem fs, Path path) throws Exception {
+  private void addTarFile(final FileSystem fs, final FileStatus fileStatus,
+      List<ParallelSegmentPusher.SegmentTar> segmentTars) {
+    final Path path = fileStatus.getPath();
     String fileName = path.getName();
     if (!fileName.endsWith(".tar.gz")) {
       return;
     }
-    for (String host : _hosts) {
-      InputStream inputStream = null;
-      try {
-        inputStream = fs.open(path);
-        fileName = fileName.split(".tar")[0];
-        LOGGER.info("******** Upoading file: {} to Host: {} and Port: {} *******", fileName, host, _port);
-        try {
-          int responseCode = sendSegmentFile(host, _port, fileName, fs, path);
-          LOGGER.info("Response code: {}", responseCode);
-        } catch (Exception e) {
-          LOGGER.error("******** Error Upoading file: {} to Host: {} and Port: {}  *******", fileName, host, _port);
-          LOGGER.error("Caught exception during upload", e);
-          throw new RuntimeException("Got Error during send tar files to push hosts!");
-        }
-      } finally {
-        inputStream.close();
+    final String segmentName = fileName.split(".tar")[0];
+    segmentTars.add(new ParallelSegmentPusher.SegmentTar() {
+      @Override
+      public String getName() {
+        return segmentName;
       }
-    }
-  }
 
-  public static int sendSegmentFile(final String host, final String port, final String fileName,
-      final FileSystem fs, final Path path) {
-    int retval = 0;
-    for (int numRetries = 0; ; numRetries++) {
-      try {
-        InputStream inputStream = fs.open(path);
-        long length = fs.getFileStatus(path).getLen();
-        retval = FileUploadUtils.sendSegmentFile(host, port, fileName, inputStream, length);
-        break;
-      } catch (Exception e) {
-        if (numRetries >= MAX_RETRIES) {
-          throw new RuntimeException(e);
-        }
-        LOGGER.warn("Retry " + numRetries + " of Upload of File " + fileName + " to host " + host
-            + " after error trying to send file ");
-        try {
-          Thread.sleep(SLEEP_BETWEEN_RETRIES_IN_SECONDS * 1000);
-        } catch (Exception e1) {
-          LOGGER.error("Upload of File " + fileName + " to host " + host + " interrupted while waiting to retry after error");
-          throw new RuntimeException(e1);
-        }
+      @Override
+      public long getLengthInBytes() {
+        return fileStatus.getLen();
       }
-    }
-    return retval;
-  }
 
+      @Override
+      public InputStream openStream() throws IOException {
+        return fs.open(path);
+      }
+    });
+  }
 }
@@ -17,6 +17,16 @@ package com.linkedin.pinot.hadoop.job.mapper;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.hadoop.conf.Configuration;
@@ -24,14 +34,19 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Counter;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.io.ByteSource;
 import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.utils.NamedThreadFactory;
 import com.linkedin.pinot.common.utils.TarGzCompressionUtils;
+import com.linkedin.pinot.core.data.extractors.FieldExtractorFactory;
+import com.linkedin.pinot.core.data.readers.AvroRecordReader;
 import com.linkedin.pinot.core.data.readers.CSVRecordReaderConfig;
 import com.linkedin.pinot.core.data.readers.FileFormat;
 import com.linkedin.pinot.core.data.readers.RecordReaderConfig;
@@ -40,9 +55,51 @@ import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverIm
 
 
 public class HadoopSegmentCreationMapReduceJob {
+  /**
+   * Whether the mappers build their segments in parallel, see {@link HadoopSegmentCreationMapper}.
+   */
+  public static final String PARALLEL_SEGMENT_CREATION = "segment.creation.parallel";
+  /**
+   * Maximum number of segments built concurrently by a mapper in parallel mode, defaults to the number of cores.
+   */
+  public static final String SEGMENT_CREATION_NUM_THREADS = "segment.creation.num.threads";
+  /**
+   * Heap needed to build one segment, which further bounds the number of segments built concurrently by a mapper.
+   */
+  public static final String SEGMENT_CREATION_MEMORY_PER_SEGMENT_MB = "segment.creation.memory.per.segment.mb";
+  public static final int DEFAULT_SEGMENT_CREATION_MEMORY_PER_SEGMENT_MB = 512;
+
+  /**
+   * Counters of the segment creation phases, times being summed up over all the segments of a task.
+   */
+  public enum SegmentCreationCounter {
+    INPUT_FILES,
+    INPUT_COPY_TIME_MS,
+    SEGMENTS_BUILT,
+    SEGMENT_BUILD_TIME_MS,
+    SEGMENT_TAR_TIME_MS,
+    SEGMENT_UPLOAD_TIME_MS,
+    SEGMENT_TAR_BYTES
+  }
 
+  /**
+   * Creates one segment per input file, each input line being of the form " inputFilePath sequenceId".
+   * <p>By default the input files are processed one at a time: each one is copied to local disk, the segment is built,
+   * tarred and copied to the output path.
+   * <p>In parallel mode:
+   * <ul>
+   *   <li>Avro input files are streamed from the file system into the record reader instead of being copied to local
+   *   disk first.</li>
+   *   <li>Segments are built concurrently by a pool of threads, bounded by the number of threads configured and by the
+   *   heap available for {@link #SEGMENT_CREATION_MEMORY_PER_SEGMENT_MB} per segment.</li>
+   *   <li>Built segments are tarred and uploaded by a separate thread, so that the upload of a segment overlaps with the
+   *   build of the next ones.</li>
+   *   <li>The mapper outputs its segments once all of them are uploaded, and fails if any of them failed.</li>
+   * </ul>
+   */
   public static class HadoopSegmentCreationMapper extends Mapper<LongWritable, Text, LongWritable, Text> {
     private static Logger LOGGER = LoggerFactory.getLogger(HadoopSegmentCreationMapper.class);
+    private static final long PROGRESS_INTERVAL_MS = 10000L;
     private Configuration _properties;
 
     private String _inputFilePath;
@@ -59,6 +116,20 @@ public class HadoopSegmentCreationMapReduceJob {
     private String _localDiskSegmentDirectory;
     private String _localDiskSegmentTarPath;
 
+    // Parallel mode
+    private boolean _parallel;
+    private ExecutorService _buildExecutor;
+    private ExecutorService _uploadExecutor;
+    private final List<PendingSegment> _pendingSegments = new ArrayList<>();
+
+    private Counter _inputFilesCounter;
+    private Counter _inputCopyTimeCounter;
+    private Counter _segmentsBuiltCounter;
+    private Counter _buildTimeCounter;
+    private Counter _tarTimeCounter;
+    private Counter _uploadTimeCounter;
+    private Counter _tarBytesCounter;
+
     @Override
     public void setup(Context context) throws IOException, InterruptedException {
 
@@ -92,11 +163,71 @@ public class HadoopSegmentCreationMapReduceJob {
                 "\n\ttableName: " +
                 _properties.get("segment.table.name"));
       }
+
+      _inputFilesCounter = context.getCounter(SegmentCreationCounter.INPUT_FILES);
+      _inputCopyTimeCounter = context.getCounter(SegmentCreationCounter.INPUT_COPY_TIME_MS);
+      _segmentsBuiltCounter = context.getCounter(SegmentCreationCounter.SEGMENTS_BUILT);
+      _buildTimeCounter = context.getCounter(SegmentCreationCounter.SEGMENT_BUILD_TIME_MS);
+      _tarTimeCounter = context.getCounter(SegmentCreationCounter.SEGMENT_TAR_TIME_MS);
+      _uploadTimeCounter = context.getCounter(SegmentCreationCounter.SEGMENT_UPLOAD_TIME_MS);
+      _tarBytesCounter = context.getCounter(SegmentCreationCounter.SEGMENT_TAR_BYTES);
+
+      _parallel = _properties.getBoolean(PARALLEL_SEGMENT_CREATION, false);
+      if (_parallel) {
+        int numThreads = _properties.getInt(SEGMENT_CREATION_NUM_THREADS, Runtime.getRuntime().availableProcessors());
+        long memoryPerSegmentBytes = _properties.getLong(SEGMENT_CREATION_MEMORY_PER_SEGMENT_MB,
+            DEFAULT_SEGMENT_CREATION_MEMORY_PER_SEGMENT_MB) * 1024 * 1024;
+        int maxThreadsForMemory = (int) Math.min(Runtime.getRuntime().maxMemory() / memoryPerSegmentBytes, numThreads);
+        int numBuildThreads = Math.max(1, maxThreadsForMemory);
+        LOGGER.info("Building segments in parallel with {} threads (configured: {}, max heap: {} bytes)",
+            numBuildThreads, numThreads, Runtime.getRuntime().maxMemory());
+        _buildExecutor = Executors.newFixedThreadPool(numBuildThreads, new NamedThreadFactory("segment-build"));
+        _uploadExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("segment-upload"));
+      }
     }
 
     @Override
     public void cleanup(Context context) throws IOException, InterruptedException {
-      FileUtils.deleteQuietly(new File(_currentDiskWorkDir));
+      try {
+        if (_parallel) {
+          writePendingSegments(context);
+        }
+      } finally {
+        if (_parallel) {
+          _buildExecutor.shutdownNow();
+          _uploadExecutor.shutdownNow();
+        }
+        FileUtils.deleteQuietly(new File(_currentDiskWorkDir));
+      }
+    }
+
+    /**
+     * Waits for all the segments of the task to be built and uploaded, and writes them to the output in input order.
+     */
+    private void writePendingSegments(Context context) throws IOException, InterruptedException {
+      for (PendingSegment pendingSegment : _pendingSegments) {
+        Future<String> uploadFuture = waitFor(pendingSegment._buildFuture, pendingSegment._inputFilePath, context);
+        String segmentTarName = waitFor(uploadFuture, pendingSegment._inputFilePath, context);
+        context.write(new LongWritable(Long.parseLong(pendingSegment._seqId)), new Text(segmentTarName));
+      }
+      _pendingSegments.clear();
+      LOGGER.info("finished the job successfully");
+    }
+
+    /**
+     * Waits for the given future, reporting progress so that the task does not time out.
+     */
+    private <T> T waitFor(Future<T> future, String inputFilePath, Context context)
+        throws IOException, InterruptedException {
+      while (true) {
+        try {
+          return future.get(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+          context.progress();
+        } catch (ExecutionException e) {
+          throw new IOException("Failed to create segment for input file: " + inputFilePath, e.getCause());
+        }
+      }
     }
 
     @Override
@@ -121,6 +252,12 @@ public class HadoopSegmentCreationMapReduceJob {
       }
       _inputFilePath = lineSplits[1].trim();
       Schema schema = Schema.fromString(context.getConfiguration().get("data.schema"));
+      _inputFilesCounter.increment(1);
+
+      if (_parallel) {
+        submitSegmentCreation(_inputFilePath, schema, lineSplits[2].trim());
+        return;
+      }
 
       LOGGER.info("*********************************************************************");
       LOGGER.info("input data file path : {}", _inputFilePath);
@@ -131,14 +268,12 @@ public class HadoopSegmentCreationMapReduceJob {
       LOGGER.info("*********************************************************************");
 
       try {
-        createSegment(_inputFilePath, schema, lineSplits[2]);
+        String segmentTarName = createSegment(_inputFilePath, schema, lineSplits[2]);
         LOGGER.info("finished segment creation job successfully");
+        context.write(new LongWritable(Long.parseLong(lineSplits[2])), new Text(segmentTarName));
       } catch (Exception e) {
         LOGGER.error("Got exceptions during creating segments!", e);
       }
-
-      context.write(new LongWritable(Long.parseLong(lineSplits[2])),
-          new Text(FileSystem.get(new Configuration()).listStatus(new Path(_localHdfsSegmentTarPath + "/"))[0].getPath().getName()));
       LOGGER.info("finished the job successfully");
     }
 
@@ -151,14 +286,100 @@ public class HadoopSegmentCreationMapReduceJob {
       }
       dataPath.mkdir();
       final Path localAvroPath = new Path(dataPath + "/" + hdfsDataPath.getName());
+      long copyStartTime = System.currentTimeMillis();
       fs.copyToLocalFile(hdfsDataPath, localAvroPath);
+      _inputCopyTimeCounter.increment(System.currentTimeMillis() - copyStartTime);
+
+      SegmentGeneratorConfig segmentGeneratorConfig =
+          getSegmentGeneratorConfig(dataFilePath, schema, seqId, _localDiskSegmentDirectory);
+      segmentGeneratorConfig.setInputFilePath(new File(dataPath, hdfsDataPath.getName()).getAbsolutePath());
+
+      long buildStartTime = System.currentTimeMillis();
+      SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+      driver.init(segmentGeneratorConfig);
+      driver.build();
+      _buildTimeCounter.increment(System.currentTimeMillis() - buildStartTime);
+      _segmentsBuiltCounter.increment(1);
 
+      String segmentName = driver.getSegmentName();
+      return tarAndUploadSegment(fs, new File(_localDiskSegmentDirectory, segmentName), _localDiskSegmentTarPath);
+    }
+
+    /**
+     * Submits the build of the segment of the given input file, which then submits its tar and upload.
+     */
+    private void submitSegmentCreation(final String dataFilePath, final Schema schema, final String seqId) {
+      Future<Future<String>> buildFuture = _buildExecutor.submit(new Callable<Future<String>>() {
+        @Override
+        public Future<String> call() throws Exception {
+          final FileSystem fs = FileSystem.get(new Configuration());
+          final File workDir = new File(_currentDiskWorkDir, "seq_" + seqId);
+          final File segmentDir = buildSegment(fs, dataFilePath, schema, seqId, workDir);
+          return _uploadExecutor.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+              try {
+                File segmentTarDir = new File(workDir, "segmentsTar");
+                FileUtils.forceMkdir(segmentTarDir);
+                return tarAndUploadSegment(fs, segmentDir, segmentTarDir.getPath());
+              } finally {
+                FileUtils.deleteQuietly(workDir);
+              }
+            }
+          });
+        }
+      });
+      _pendingSegments.add(new PendingSegment(dataFilePath, seqId, buildFuture));
+    }
+
+    /**
+     * Builds the segment of the given input file under the given work directory, streaming Avro input files from the
+     * file system, and returns the segment directory.
+     */
+    private File buildSegment(final FileSystem fs, String dataFilePath, Schema schema, String seqId, File workDir)
+        throws Exception {
+      final Path hdfsDataPath = new Path(dataFilePath);
+      String segmentDirectory = new File(workDir, "segments").getPath();
+      SegmentGeneratorConfig segmentGeneratorConfig =
+          getSegmentGeneratorConfig(dataFilePath, schema, seqId, segmentDirectory);
+
+      SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+      long buildStartTime;
+      if (segmentGeneratorConfig.getFormat() == FileFormat.AVRO) {
+        ByteSource avroSource = new ByteSource() {
+          @Override
+          public InputStream openStream() throws IOException {
+            return fs.open(hdfsDataPath);
+          }
+        };
+        buildStartTime = System.currentTimeMillis();
+        driver.init(segmentGeneratorConfig,
+            new AvroRecordReader(FieldExtractorFactory.getPlainFieldExtractor(segmentGeneratorConfig), avroSource,
+                false));
+      } else {
+        File dataPath = new File(workDir, "data");
+        FileUtils.forceMkdir(dataPath);
+        File localDataFile = new File(dataPath, hdfsDataPath.getName());
+        long copyStartTime = System.currentTimeMillis();
+        fs.copyToLocalFile(hdfsDataPath, new Path(localDataFile.getAbsolutePath()));
+        _inputCopyTimeCounter.increment(System.currentTimeMillis() - copyStartTime);
+        segmentGeneratorConfig.setInputFilePath(localDataFile.getAbsolutePath());
+        buildStartTime = System.currentTimeMillis();
+        driver.init(segmentGeneratorConfig);
+      }
+      driver.build();
+      _buildTimeCounter.increment(System.currentTimeMillis() - buildStartTime);
+      _segmentsBuiltCounter.increment(1);
+      LOGGER.info("Built segment: {} from input file: {}", driver.getSegmentName(), dataFilePath);
+      return new File(segmentDirectory, driver.getSegmentName());
+    }
+
+    private SegmentGeneratorConfig getSegmentGeneratorConfig(String dataFilePath, Schema schema, String seqId,
+        String segmentDirectory) {
       LOGGER.info("Data schema is : {}", schema);
       SegmentGeneratorConfig segmentGeneratorConfig = new SegmentGeneratorConfig(schema);
       segmentGeneratorConfig.setTableName(_tableName);
 
-      segmentGeneratorConfig.setInputFilePath(new File(dataPath, hdfsDataPath.getName()).getAbsolutePath());
-
       FileFormat fileFormat = getFileFormat(dataFilePath);
       segmentGeneratorConfig.setFormat(fileFormat);
       if (null != _postfix) {
@@ -168,7 +389,7 @@ public class HadoopSegmentCreationMapReduceJob {
       }
       segmentGeneratorConfig.setReaderConfig(getReaderConfig(fileFormat));
 
-      segmentGeneratorConfig.setOutDir(_localDiskSegmentDirectory);
+      segmentGeneratorConfig.setOutDir(segmentDirectory);
 
       // Add the current java package version to the segment metadata
       // properties file.
@@ -180,24 +401,30 @@ public class HadoopSegmentCreationMapReduceJob {
           segmentGeneratorConfig.setCreatorVersion(packageVersion);
         }
       }
+      return segmentGeneratorConfig;
+    }
 
-      SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
-      driver.init(segmentGeneratorConfig);
-      driver.build();
-      // Tar the segment directory into file.
-      String segmentName = (new File(_localDiskSegmentDirectory).listFiles()[0]).getName();
-      String localSegmentPath = new File(_localDiskSegmentDirectory, segmentName).getAbsolutePath();
-
-      String localTarPath = _localDiskSegmentTarPath + "/" + segmentName + ".tar.gz";
+    /**
+     * Tars the given segment directory and copies the tar to the output path, returning the name of the tar.
+     */
+    private String tarAndUploadSegment(FileSystem fs, File segmentDir, String localDiskSegmentTarPath)
+        throws IOException {
+      String segmentName = segmentDir.getName();
+      String localTarPath = localDiskSegmentTarPath + "/" + segmentName + ".tar.gz";
       LOGGER.info("Trying to tar the segment to: {}", localTarPath);
-      TarGzCompressionUtils.createTarGzOfDirectory(localSegmentPath, localTarPath);
+      long tarStartTime = System.currentTimeMillis();
+      TarGzCompressionUtils.createTarGzOfDirectory(segmentDir.getAbsolutePath(), localTarPath);
+      _tarTimeCounter.increment(System.currentTimeMillis() - tarStartTime);
+      _tarBytesCounter.increment(new File(localTarPath).length());
       String hdfsTarPath = _localHdfsSegmentTarPath + "/" + segmentName + ".tar.gz";
 
       LOGGER.info("*********************************************************************");
       LOGGER.info("Copy from : {} to {}", localTarPath, hdfsTarPath);
       LOGGER.info("*********************************************************************");
+      long uploadStartTime = System.currentTimeMillis();
       fs.copyFromLocalFile(true, true, new Path(localTarPath), new Path(hdfsTarPath));
-      return segmentName;
+      _uploadTimeCounter.increment(System.currentTimeMillis() - uploadStartTime);
+      return segmentName + ".tar.gz";
     }
 
     private RecordReaderConfig getReaderConfig(FileFormat fileFormat) {
@@ -226,7 +453,25 @@ public class HadoopSegmentCreationMapReduceJob {
       if (dataFilePath.endsWith(".avro")) {
         return FileFormat.AVRO;
       }
+      if (dataFilePath.endsWith(".parquet")) {
+        return FileFormat.PARQUET;
+      }
+      if (dataFilePath.endsWith(".orc")) {
+        return FileFormat.ORC;
+      }
       throw new RuntimeException("Not support file format - " + dataFilePath);
     }
+
+    private static class PendingSegment {
+      private final String _inputFilePath;
+      private final String _seqId;
+      private final Future<Future<String>> _buildFuture;
+
+      private PendingSegment(String inputFilePath, String seqId, Future<Future<String>> buildFuture) {
+        _inputFilePath = inputFilePath;
+        _seqId = seqId;
+        _buildFuture = buildFuture;
+      }
+    }
   }
 }
@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.hadoop.job;
+
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.utils.TarGzCompressionUtils;
+import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
+import com.linkedin.pinot.hadoop.job.mapper.HadoopSegmentCreationMapReduceJob;
+import com.linkedin.pinot.hadoop.job.mapper.HadoopSegmentCreationMapReduceJob.SegmentCreationCounter;
+import java.io.File;
+import java.util.Properties;
+import java.util.Random;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.mapreduce.Counters;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+
+/**
+ * Runs the segment creation job with the local MapReduce runner, in sequential and in parallel mode.
+ */
+public class SegmentCreationJobTest {
+  private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "SegmentCreationJobTest");
+  private static final File INPUT_DIR = new File(TEMP_DIR, "input");
+  private static final File SCHEMA_FILE = new File(TEMP_DIR, "schema.json");
+  private static final String TABLE_NAME = "testTable";
+  private static final String AVRO_SCHEMA = "{\"type\":\"record\",\"name\":\"Input\",\"fields\":["
+      + "{\"name\":\"country\",\"type\":\"string\"},"
+      + "{\"name\":\"memberId\",\"type\":\"int\"},"
+      + "{\"name\":\"clicks\",\"type\":\"long\"}]}";
+  private static final int NUM_INPUT_FILES = 5;
+  private static final int NUM_ROWS_PER_FILE = 1000;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    FileUtils.deleteQuietly(TEMP_DIR);
+    FileUtils.forceMkdir(INPUT_DIR);
+
+    Schema schema = new Schema.SchemaBuilder().setSchemaName(TABLE_NAME)
+        .addSingleValueDimension("country", FieldSpec.DataType.STRING)
+        .addSingleValueDimension("memberId", FieldSpec.DataType.INT)
+        .addMetric("clicks", FieldSpec.DataType.LONG)
+        .build();
+    FileUtils.writeStringToFile(SCHEMA_FILE, schema.getJSONSchema());
+
+    org.apache.avro.Schema avroSchema = new org.apache.avro.Schema.Parser().parse(AVRO_SCHEMA);
+    Random random = new Random(0);
+    for (int i = 0; i < NUM_INPUT_FILES; i++) {
+      DataFileWriter<GenericData.Record> avroWriter =
+          new DataFileWriter<>(new GenericDatumWriter<GenericData.Record>(avroSchema));
+      avroWriter.create(avroSchema, new File(INPUT_DIR, "input_" + i + ".avro"));
+      for (int j = 0; j < NUM_ROWS_PER_FILE; j++) {
+        GenericData.Record record = new GenericData.Record(avroSchema);
+        record.put("country", "country" + random.nextInt(10));
+        record.put("memberId", random.nextInt(100));
+        record.put("clicks", (long) random.nextInt(1000));
+        avroWriter.append(record);
+      }
+      avroWriter.close();
+    }
+  }
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+
+  @Test
+  public void testSequentialSegmentCreation() throws Exception {
+    File outputDir = new File(TEMP_DIR, "sequentialOutput");
+    Counters counters = runJob(outputDir, new Properties());
+    checkOutput(outputDir, counters);
+    Assert.assertEquals(counters.findCounter(SegmentCreationCounter.INPUT_FILES).getValue(), NUM_INPUT_FILES);
+  }
+
+  @Test
+  public void testParallelSegmentCreation() throws Exception {
+    File outputDir = new File(TEMP_DIR, "parallelOutput");
+    Properties properties = new Properties();
+    properties.setProperty(HadoopSegmentCreationMapReduceJob.PARALLEL_SEGMENT_CREATION, "true");
+    properties.setProperty(HadoopSegmentCreationMapReduceJob.SEGMENT_CREATION_NUM_THREADS, "2");
+    properties.setProperty(HadoopSegmentCreationMapReduceJob.SEGMENT_CREATION_MEMORY_PER_SEGMENT_MB, "64");
+    properties.setProperty(SegmentCreationJob.FILES_PER_MAPPER, "3");
+    Counters counters = runJob(outputDir, properties);
+    checkOutput(outputDir, counters);
+    Assert.assertEquals(counters.findCounter(SegmentCreationCounter.INPUT_FILES).getValue(), NUM_INPUT_FILES);
+    // Avro input files are streamed instead of being copied to local disk
+    Assert.assertEquals(counters.findCounter(SegmentCreationCounter.INPUT_COPY_TIME_MS).getValue(), 0L);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testInvalidFilesPerMapper() throws Exception {
+    Properties properties = new Properties();
+    properties.setProperty(SegmentCreationJob.FILES_PER_MAPPER, "0");
+    runJob(new File(TEMP_DIR, "invalidOutput"), properties);
+  }
+
+  private Counters runJob(File outputDir, Properties properties) throws Exception {
+    properties.setProperty("path.to.input", INPUT_DIR.getAbsolutePath());
+    properties.setProperty("path.to.schema", SCHEMA_FILE.getAbsolutePath());
+    properties.setProperty("path.to.output", outputDir.getAbsolutePath());
+    properties.setProperty("segment.table.name", TABLE_NAME);
+    SegmentCreationJob job = new SegmentCreationJob("SegmentCreationJobTest", properties);
+    job.run();
+    return job.getCounters();
+  }
+
+  /**
+   * Checks that there is one segment with all the rows per input file, and that the counters match the output.
+   */
+  private void checkOutput(File outputDir, Counters counters) throws Exception {
+    long totalTarBytes = 0;
+    for (int i = 0; i < NUM_INPUT_FILES; i++) {
+      String segmentName = TABLE_NAME + "_" + i;
+      File tarFile = new File(outputDir, segmentName + TarGzCompressionUtils.TAR_GZ_FILE_EXTENTION);
+      Assert.assertTrue(tarFile.isFile(), "Missing segment tar: " + tarFile);
+      totalTarBytes += tarFile.length();
+
+      File untarDir = new File(outputDir, "untarred");
+      TarGzCompressionUtils.unTar(tarFile, untarDir);
+      SegmentMetadataImpl segmentMetadata = new SegmentMetadataImpl(new File(untarDir, segmentName));
+      Assert.assertEquals(segmentMetadata.getName(), segmentName);
+      Assert.assertEquals(segmentMetadata.getTotalRawDocs(), NUM_ROWS_PER_FILE);
+    }
+    Assert.assertEquals(counters.findCounter(SegmentCreationCounter.SEGMENTS_BUILT).getValue(), NUM_INPUT_FILES);
+    Assert.assertEquals(counters.findCounter(SegmentCreationCounter.SEGMENT_TAR_BYTES).getValue(), totalTarBytes);
+  }
+}
@@ -100,6 +100,14 @@ public abstract class ClusterTest extends ControllerTest {
       for (int i = 0; i < serverCount; i++) {
         Configuration configuration = DefaultHelixStarterServerConfig.loadDefaultServerConf();
         configuration.setProperty(Server.CONFIG_OF_INSTANCE_DATA_DIR, Server.DEFAULT_INSTANCE_DATA_DIR + "-" + i);
+        // Copy the committed LLC segments from the other servers instead of downloading them
+        List<String> peerDataDirs = new ArrayList<>();
+        for (int j = 0; j < serverCount; j++) {
+          if (j != i) {
+            peerDataDirs.add(Server.DEFAULT_INSTANCE_DATA_DIR + "-" + j);
+          }
+        }
+        configuration.setProperty(Server.CONFIG_OF_INSTANCE_PEER_DATA_DIRS, peerDataDirs);
         configuration.setProperty(Server.CONFIG_OF_INSTANCE_SEGMENT_TAR_DIR,
             Server.DEFAULT_INSTANCE_SEGMENT_TAR_DIR + "-" + i);
         configuration.setProperty(Server.CONFIG_OF_ADMIN_API_PORT,
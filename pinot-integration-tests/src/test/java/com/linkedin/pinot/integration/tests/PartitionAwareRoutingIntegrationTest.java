@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.integration.tests;
+
+import com.linkedin.pinot.common.config.ColumnPartitionConfig;
+import com.linkedin.pinot.common.config.SegmentPartitionConfig;
+import com.linkedin.pinot.common.request.helper.ControllerRequestBuilder;
+import com.linkedin.pinot.common.utils.FileUploadUtils;
+import com.linkedin.pinot.common.utils.TarGzCompressionUtils;
+import com.linkedin.pinot.controller.helix.ControllerRequestURLBuilder;
+import com.linkedin.pinot.controller.helix.ControllerTestUtils;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.segment.creator.SegmentIndexCreationDriver;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentCreationDriverFactory;
+import com.linkedin.pinot.server.util.SegmentTestUtils;
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.commons.io.FileUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+
+/**
+ * Cluster integration test for partitioned tables: checks that queries with an equality or IN predicate on the
+ * partitioned column are only routed to the servers hosting segments of the partitions they target.
+ */
+public class PartitionAwareRoutingIntegrationTest extends ClusterTest {
+  private static final File TMP_DIR = new File(FileUtils.getTempDirectory(), "PartitionAwareRoutingIntegrationTest");
+  private static final String TABLE_NAME = "mytable";
+  private static final String PARTITION_COLUMN = "memberId";
+  private static final int NUM_SERVERS = 2;
+  private static final int NUM_PARTITIONS = 4;
+  private static final int NUM_ROWS_PER_SEGMENT = 100;
+  private static final String AVRO_SCHEMA = "{\"type\": \"record\", \"name\": \"Member\", \"fields\": ["
+      + "{\"name\": \"" + PARTITION_COLUMN + "\", \"type\": \"int\"}, {\"name\": \"clicks\", \"type\": \"int\"}]}";
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    BaseClusterIntegrationTest.ensureDirectoryExistsAndIsEmpty(TMP_DIR);
+    startZk();
+    startController();
+    startServers(NUM_SERVERS);
+    startBroker();
+
+    // One replica per segment, so that the segments of the different partitions are spread over the servers
+    JSONObject tableJson =
+        ControllerRequestBuilder.buildCreateOfflineTableJSON(TABLE_NAME, null, null, "", "DAYS", "DAYS", "-1", 1,
+            "BalanceNumSegmentAssignmentStrategy");
+    tableJson.getJSONObject("tableIndexConfig")
+        .put("segmentPartitionConfig", new JSONObject(
+            "{\"columnPartitionMap\": {\"" + PARTITION_COLUMN + "\": {\"functionName\": \"Modulo\", \"numPartitions\": "
+                + NUM_PARTITIONS + "}}}"));
+    sendPostRequest(ControllerRequestURLBuilder.baseUrl(CONTROLLER_BASE_API_URL).forTableCreate(),
+        tableJson.toString());
+
+    // Segment i contains the member ids of partition i
+    for (int partition = 0; partition < NUM_PARTITIONS; partition++) {
+      uploadSegment(partition);
+    }
+
+    long timeoutMs = System.currentTimeMillis() + 60000L;
+    while (System.currentTimeMillis() < timeoutMs) {
+      JSONArray aggregationResults = postQuery("SELECT COUNT(*) FROM " + TABLE_NAME).getJSONArray("aggregationResults");
+      if (aggregationResults.length() > 0
+          && aggregationResults.getJSONObject(0).getInt("value") == NUM_PARTITIONS * NUM_ROWS_PER_SEGMENT) {
+        return;
+      }
+      Thread.sleep(500L);
+    }
+    Assert.fail("Segments are not all online after one minute");
+  }
+
+  private void uploadSegment(int partition) throws Exception {
+    Schema schema = new Schema.Parser().parse(AVRO_SCHEMA);
+    File avroFile = new File(TMP_DIR, "partition_" + partition + ".avro");
+    DataFileWriter<GenericRecord> fileWriter = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema));
+    fileWriter.create(schema, avroFile);
+    GenericRecord record = new GenericData.Record(schema);
+    for (int i = 0; i < NUM_ROWS_PER_SEGMENT; i++) {
+      record.put(PARTITION_COLUMN, partition + i * NUM_PARTITIONS);
+      record.put("clicks", i);
+      fileWriter.append(record);
+    }
+    fileWriter.close();
+
+    File segmentDir = new File(TMP_DIR, "segment_" + partition);
+    SegmentGeneratorConfig config =
+        SegmentTestUtils.getSegmentGenSpecWithSchemAndProjectedColumns(avroFile, segmentDir, TimeUnit.DAYS, TABLE_NAME,
+            null);
+    config.setSegmentName(TABLE_NAME + "_" + partition);
+    config.setSegmentPartitionConfig(new SegmentPartitionConfig(
+        Collections.singletonMap(PARTITION_COLUMN, new ColumnPartitionConfig("Modulo", NUM_PARTITIONS))));
+    SegmentIndexCreationDriver driver = SegmentCreationDriverFactory.get(null);
+    driver.init(config);
+    driver.build();
+
+    File tarFile = new File(TarGzCompressionUtils.createTarGzOfDirectory(
+        new File(segmentDir, TABLE_NAME + "_" + partition).getAbsolutePath()));
+    FileUploadUtils.sendSegmentFile("localhost", ControllerTestUtils.DEFAULT_CONTROLLER_API_PORT,
+        tarFile.getName(), tarFile, tarFile.length());
+  }
+
+  @Test
+  public void testPartitionAwareRouting() throws Exception {
+    // Without predicate on the partitioned column, all the servers are queried
+    JSONObject response = postQuery("SELECT COUNT(*) FROM " + TABLE_NAME + " WHERE clicks < 10");
+    Assert.assertEquals(getCount(response), NUM_PARTITIONS * 10);
+    Assert.assertEquals(response.getInt("numServersQueried"), NUM_SERVERS);
+
+    // Member id 9 is in partition 1 only, hosted by a single server
+    response = postQuery("SELECT COUNT(*) FROM " + TABLE_NAME + " WHERE " + PARTITION_COLUMN + " = 9");
+    Assert.assertEquals(getCount(response), 1);
+    Assert.assertEquals(response.getInt("numServersQueried"), 1);
+    Assert.assertEquals(response.getLong("numDocsScanned"), 1L);
+
+    response = postQuery("SELECT COUNT(*) FROM " + TABLE_NAME + " WHERE " + PARTITION_COLUMN + " IN (9, 13, 17) AND "
+        + "clicks < 4");
+    Assert.assertEquals(getCount(response), 3);
+    Assert.assertEquals(response.getInt("numServersQueried"), 1);
+
+    // Partitions 0 and 2, or 1 and 3, are hosted by one or two servers depending on the segment assignment
+    response = postQuery("SELECT COUNT(*) FROM " + TABLE_NAME + " WHERE " + PARTITION_COLUMN + " IN (0, 2)");
+    Assert.assertEquals(getCount(response), 2);
+    Assert.assertTrue(response.getInt("numServersQueried") <= NUM_SERVERS);
+
+    // Predicates on the partitioned column that do not target partitions
+    response = postQuery("SELECT COUNT(*) FROM " + TABLE_NAME + " WHERE " + PARTITION_COLUMN + " < 8");
+    Assert.assertEquals(getCount(response), 8);
+    Assert.assertEquals(response.getInt("numServersQueried"), NUM_SERVERS);
+    response = postQuery("SELECT COUNT(*) FROM " + TABLE_NAME + " WHERE " + PARTITION_COLUMN + " = 9 OR clicks = 0");
+    Assert.assertEquals(getCount(response), NUM_PARTITIONS + 1);
+    Assert.assertEquals(response.getInt("numServersQueried"), NUM_SERVERS);
+  }
+
+  private static int getCount(JSONObject response) throws Exception {
+    return response.getJSONArray("aggregationResults").getJSONObject(0).getInt("value");
+  }
+
+  @AfterClass
+  public void tearDown() throws Exception {
+    dropOfflineTable(TABLE_NAME);
+    stopBroker();
+    stopServer();
+    stopController();
+    stopZk();
+    FileUtils.deleteQuietly(TMP_DIR);
+  }
+}
@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.perf;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.MetricFieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.data.TimeFieldSpec;
+import com.linkedin.pinot.common.data.TimeGranularitySpec;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.data.extractors.FieldExtractorFactory;
+import com.linkedin.pinot.core.data.readers.AvroRecordReader;
+import com.linkedin.pinot.core.data.readers.PinotSegmentRecordReader;
+import com.linkedin.pinot.core.data.readers.RecordReader;
+import com.linkedin.pinot.core.data.readers.TestRecordReader;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentVersion;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Benchmark of the read throughput of the same data with {@link AvroRecordReader}, and with
+ * {@link PinotSegmentRecordReader} row by row and column by column, as well as of the segment creation from both
+ * inputs.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkColumnarRecordReader {
+  private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "BenchmarkColumnarRecordReader");
+  private static final File AVRO_FILE = new File(TEMP_DIR, "input.avro");
+  private static final File OUTPUT_DIR = new File(TEMP_DIR, "output");
+  private static final String TABLE_NAME = "testTable";
+  private static final String SEGMENT_NAME = "inputSegment";
+  private static final int NUM_ROWS = 500000;
+  private static final int BATCH_SIZE = 10000;
+  private static final int NUM_INDEX_CREATION_THREADS = 4;
+  private static final String AVRO_SCHEMA = "{\"type\":\"record\",\"name\":\"Input\",\"fields\":["
+      + "{\"name\":\"memberId\",\"type\":\"int\"},"
+      + "{\"name\":\"country\",\"type\":\"string\"},"
+      + "{\"name\":\"pageKey\",\"type\":\"string\"},"
+      + "{\"name\":\"skills\",\"type\":{\"type\":\"array\",\"items\":\"string\"}},"
+      + "{\"name\":\"impressions\",\"type\":\"long\"},"
+      + "{\"name\":\"cost\",\"type\":\"double\"},"
+      + "{\"name\":\"daysSinceEpoch\",\"type\":\"long\"}]}";
+
+  private Schema _schema;
+  private File _segmentDir;
+  private int _creationId;
+
+  @Setup
+  public void setUp() throws Exception {
+    _schema = new Schema();
+    _schema.addField(new DimensionFieldSpec("memberId", FieldSpec.DataType.INT, true));
+    _schema.addField(new DimensionFieldSpec("country", FieldSpec.DataType.STRING, true));
+    _schema.addField(new DimensionFieldSpec("pageKey", FieldSpec.DataType.STRING, true));
+    _schema.addField(new DimensionFieldSpec("skills", FieldSpec.DataType.STRING, false));
+    _schema.addField(new MetricFieldSpec("impressions", FieldSpec.DataType.LONG));
+    _schema.addField(new MetricFieldSpec("cost", FieldSpec.DataType.DOUBLE));
+    _schema.addField(
+        new TimeFieldSpec(new TimeGranularitySpec(FieldSpec.DataType.LONG, TimeUnit.DAYS, "daysSinceEpoch")));
+
+    FileUtils.deleteQuietly(TEMP_DIR);
+    TEMP_DIR.mkdirs();
+    org.apache.avro.Schema avroSchema = new org.apache.avro.Schema.Parser().parse(AVRO_SCHEMA);
+    DataFileWriter<GenericData.Record> avroWriter =
+        new DataFileWriter<>(new GenericDatumWriter<GenericData.Record>(avroSchema));
+    avroWriter.create(avroSchema, AVRO_FILE);
+    List<GenericRow> rows = new ArrayList<>(NUM_ROWS);
+    Random random = new Random(0);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      GenericData.Record record = new GenericData.Record(avroSchema);
+      GenericRow row = new GenericRow();
+      int memberId = random.nextInt(NUM_ROWS / 10);
+      record.put("memberId", memberId);
+      row.putField("memberId", memberId);
+      String country = "country" + random.nextInt(200);
+      record.put("country", country);
+      row.putField("country", country);
+      String pageKey = "page" + random.nextInt(5000);
+      record.put("pageKey", pageKey);
+      row.putField("pageKey", pageKey);
+      Object[] skills = new Object[1 + random.nextInt(5)];
+      for (int j = 0; j < skills.length; j++) {
+        skills[j] = "skill" + random.nextInt(1000);
+      }
+      record.put("skills", Arrays.asList(skills));
+      row.putField("skills", skills);
+      long impressions = random.nextInt(100);
+      record.put("impressions", impressions);
+      row.putField("impressions", impressions);
+      double cost = random.nextInt(10000) / 100.0;
+      record.put("cost", cost);
+      row.putField("cost", cost);
+      long daysSinceEpoch = 17000L + random.nextInt(3);
+      record.put("daysSinceEpoch", daysSinceEpoch);
+      row.putField("daysSinceEpoch", daysSinceEpoch);
+      avroWriter.append(record);
+      rows.add(row);
+    }
+    avroWriter.close();
+
+    SegmentGeneratorConfig config = getSegmentGeneratorConfig(TEMP_DIR);
+    config.setSegmentName(SEGMENT_NAME);
+    config.setSegmentVersion(SegmentVersion.v1);
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(config, new TestRecordReader(rows, _schema));
+    driver.build();
+    _segmentDir = new File(TEMP_DIR, SEGMENT_NAME);
+  }
+
+  @TearDown
+  public void tearDown() {
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @OperationsPerInvocation(NUM_ROWS)
+  public void avroRowReading(Blackhole blackhole) throws Exception {
+    readRows(new AvroRecordReader(FieldExtractorFactory.getPlainFieldExtractor(_schema), AVRO_FILE.getPath()),
+        blackhole);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @OperationsPerInvocation(NUM_ROWS)
+  public void pinotSegmentRowReading(Blackhole blackhole) throws Exception {
+    readRows(new PinotSegmentRecordReader(_segmentDir), blackhole);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @OperationsPerInvocation(NUM_ROWS)
+  public void pinotSegmentColumnReading(Blackhole blackhole) throws Exception {
+    PinotSegmentRecordReader recordReader = new PinotSegmentRecordReader(_segmentDir);
+    Object[] values = new Object[BATCH_SIZE];
+    for (String column : _schema.getColumnNames()) {
+      for (int startDocId = 0; startDocId < NUM_ROWS; startDocId += BATCH_SIZE) {
+        recordReader.readColumn(column, startDocId, Math.min(BATCH_SIZE, NUM_ROWS - startDocId), values);
+        blackhole.consume(values);
+      }
+    }
+    recordReader.close();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public void segmentCreationFromAvro() throws Exception {
+    createSegment(new AvroRecordReader(FieldExtractorFactory.getPlainFieldExtractor(_schema), AVRO_FILE.getPath()));
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public void segmentCreationFromPinotSegmentColumns() throws Exception {
+    createSegment(new PinotSegmentRecordReader(_segmentDir));
+  }
+
+  private static void readRows(RecordReader recordReader, Blackhole blackhole) throws Exception {
+    recordReader.init();
+    GenericRow row = null;
+    while (recordReader.hasNext()) {
+      row = GenericRow.createOrReuseRow(row);
+      blackhole.consume(recordReader.next(row));
+    }
+    recordReader.close();
+  }
+
+  private void createSegment(RecordReader recordReader) throws Exception {
+    File outputDir = new File(OUTPUT_DIR, Integer.toString(_creationId++));
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(getSegmentGeneratorConfig(outputDir), recordReader);
+    driver.build();
+    FileUtils.deleteQuietly(outputDir);
+  }
+
+  private SegmentGeneratorConfig getSegmentGeneratorConfig(File outputDir) {
+    SegmentGeneratorConfig config = new SegmentGeneratorConfig(_schema);
+    // Columns are only read column by column with column parallelism
+    config.setNumIndexCreationThreads(NUM_INDEX_CREATION_THREADS);
+    config.setOutDir(outputDir.getPath());
+    config.setTableName(TABLE_NAME);
+    config.setTimeColumnName("daysSinceEpoch");
+    config.setSegmentTimeUnit(TimeUnit.DAYS);
+    return config;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options opt = new OptionsBuilder().include(BenchmarkColumnarRecordReader.class.getSimpleName())
+        .warmupIterations(2)
+        .measurementIterations(5)
+        .forks(1)
+        .build();
+
+    new Runner(opt).run();
+  }
+}
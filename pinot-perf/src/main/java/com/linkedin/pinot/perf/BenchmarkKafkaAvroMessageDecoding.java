@@ -0,0 +1,232 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.perf;
+
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.realtime.impl.kafka.AvroRecordToPinotRowGenerator;
+import com.linkedin.pinot.core.realtime.impl.kafka.KafkaAvroMessageDecoder;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Benchmark of the decoding of Avro Kafka messages with a wide schema of which only a few columns are indexed, comparing
+ * {@link KafkaAvroMessageDecoder} with a decoding of the full record, which allocates a reader, a binary decoder, a
+ * record and a hex schema hash for every message.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkKafkaAvroMessageDecoding {
+  private static final File SCHEMA_REGISTRY_DIR =
+      new File(FileUtils.getTempDirectory(), "BenchmarkKafkaAvroMessageDecoding");
+  private static final int NUM_MESSAGES = 10000;
+  private static final int NUM_PINOT_COLUMNS = 10;
+  private static final int HEADER_LENGTH = 17;
+
+  @Param({"50", "200"})
+  public int numAvroFields;
+
+  private Schema _schema;
+  private byte[][] _messages;
+  private KafkaAvroMessageDecoder _decoder;
+
+  // State of the full record decoding
+  private AvroRecordToPinotRowGenerator _rowGenerator;
+  private Map<String, org.apache.avro.Schema> _md5ToAvroSchemaMap;
+  private DecoderFactory _decoderFactory;
+
+  @Setup
+  public void setUp() throws Exception {
+    // Fields of all types, the Pinot schema indexing the first ones of each type
+    StringBuilder avroSchemaJson = new StringBuilder("{\"type\":\"record\",\"name\":\"WideRecord\",\"fields\":[");
+    Schema.SchemaBuilder schemaBuilder = new Schema.SchemaBuilder().setSchemaName("wideSchema");
+    for (int i = 0; i < numAvroFields; i++) {
+      String name = "field" + i;
+      String type;
+      switch (i % 5) {
+        case 0:
+          type = "\"string\"";
+          break;
+        case 1:
+          type = "\"int\"";
+          break;
+        case 2:
+          type = "\"long\"";
+          break;
+        case 3:
+          type = "\"double\"";
+          break;
+        default:
+          type = "{\"type\":\"array\",\"items\":\"string\"}";
+          break;
+      }
+      avroSchemaJson.append(i == 0 ? "" : ",").append("{\"name\":\"").append(name).append("\",\"type\":")
+          .append(type).append("}");
+      if (i < NUM_PINOT_COLUMNS) {
+        switch (i % 5) {
+          case 0:
+            schemaBuilder.addSingleValueDimension(name, FieldSpec.DataType.STRING);
+            break;
+          case 1:
+            schemaBuilder.addSingleValueDimension(name, FieldSpec.DataType.INT);
+            break;
+          case 2:
+            schemaBuilder.addMetric(name, FieldSpec.DataType.LONG);
+            break;
+          case 3:
+            schemaBuilder.addMetric(name, FieldSpec.DataType.DOUBLE);
+            break;
+          default:
+            schemaBuilder.addMultiValueDimension(name, FieldSpec.DataType.STRING);
+            break;
+        }
+      }
+    }
+    avroSchemaJson.append("]}");
+    _schema = schemaBuilder.build();
+    org.apache.avro.Schema avroSchema = new org.apache.avro.Schema.Parser().parse(avroSchemaJson.toString());
+    byte[] md5 = MessageDigest.getInstance("MD5").digest(avroSchemaJson.toString().getBytes("UTF-8"));
+
+    FileUtils.deleteQuietly(SCHEMA_REGISTRY_DIR);
+    FileUtils.writeStringToFile(new File(SCHEMA_REGISTRY_DIR, "latest_with_type=wideSchema"),
+        avroSchemaJson.toString());
+    FileUtils.writeStringToFile(new File(SCHEMA_REGISTRY_DIR, "id=" + KafkaAvroMessageDecoder.hex(md5)),
+        avroSchemaJson.toString());
+
+    Random random = new Random(0);
+    GenericDatumWriter<GenericData.Record> writer = new GenericDatumWriter<>(avroSchema);
+    _messages = new byte[NUM_MESSAGES][];
+    for (int i = 0; i < NUM_MESSAGES; i++) {
+      GenericData.Record record = new GenericData.Record(avroSchema);
+      for (int j = 0; j < numAvroFields; j++) {
+        switch (j % 5) {
+          case 0:
+            record.put(j, "value" + random.nextInt(1000));
+            break;
+          case 1:
+            record.put(j, random.nextInt());
+            break;
+          case 2:
+            record.put(j, random.nextLong());
+            break;
+          case 3:
+            record.put(j, random.nextDouble());
+            break;
+          default:
+            List<String> values = new ArrayList<>();
+            int numValues = 1 + random.nextInt(3);
+            for (int k = 0; k < numValues; k++) {
+              values.add("item" + random.nextInt(100));
+            }
+            record.put(j, values);
+            break;
+        }
+      }
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      outputStream.write(0);
+      outputStream.write(md5);
+      BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(outputStream, null);
+      writer.write(record, encoder);
+      encoder.flush();
+      _messages[i] = outputStream.toByteArray();
+    }
+
+    Map<String, String> props = new HashMap<>();
+    props.put(KafkaAvroMessageDecoder.SCHEMA_REGISTRY_REST_URL, "file:" + SCHEMA_REGISTRY_DIR.getAbsolutePath());
+    props.put(KafkaAvroMessageDecoder.SCHEMA_REGISTRY_SCHEMA_NAME, "wideSchema");
+    _decoder = new KafkaAvroMessageDecoder();
+    _decoder.init(props, _schema, "wideTopic");
+
+    _rowGenerator = new AvroRecordToPinotRowGenerator(_schema);
+    _md5ToAvroSchemaMap = new HashMap<>();
+    _md5ToAvroSchemaMap.put(KafkaAvroMessageDecoder.hex(md5), avroSchema);
+    _decoderFactory = new DecoderFactory();
+  }
+
+  @TearDown
+  public void tearDown() {
+    FileUtils.deleteQuietly(SCHEMA_REGISTRY_DIR);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @OperationsPerInvocation(NUM_MESSAGES)
+  public void projectedDecoding(Blackhole blackhole) {
+    GenericRow row = null;
+    for (byte[] message : _messages) {
+      row = GenericRow.createOrReuseRow(row);
+      blackhole.consume(_decoder.decode(message, 0, message.length, row));
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @OperationsPerInvocation(NUM_MESSAGES)
+  public void fullRecordDecoding(Blackhole blackhole) throws Exception {
+    GenericRow row = null;
+    for (byte[] message : _messages) {
+      row = GenericRow.createOrReuseRow(row);
+      String md5String = KafkaAvroMessageDecoder.hex(Arrays.copyOfRange(message, 1, HEADER_LENGTH));
+      org.apache.avro.Schema avroSchema = _md5ToAvroSchemaMap.get(md5String);
+      GenericDatumReader<GenericData.Record> reader = new GenericDatumReader<>(avroSchema);
+      GenericData.Record record = reader.read(null,
+          _decoderFactory.binaryDecoder(message, HEADER_LENGTH, message.length - HEADER_LENGTH, null));
+      blackhole.consume(_rowGenerator.transform(record, avroSchema, row));
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options opt = new OptionsBuilder().include(BenchmarkKafkaAvroMessageDecoding.class.getSimpleName())
+        .warmupIterations(3)
+        .measurementIterations(5)
+        .forks(1)
+        .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.perf;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.MetricFieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.data.TimeFieldSpec;
+import com.linkedin.pinot.common.data.TimeGranularitySpec;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.data.readers.TestRecordReader;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentVersion;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Benchmark of the creation time of an offline segment, comparing the serial creation with the column parallel
+ * creation for different numbers of threads.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkOfflineSegmentCreation {
+  private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "BenchmarkOfflineSegmentCreation");
+  private static final String TABLE_NAME = "testTable";
+  private static final int NUM_STRING_DIMENSIONS = 8;
+  private static final int NUM_INT_DIMENSIONS = 8;
+  private static final int NUM_METRICS = 4;
+
+  @Param({"1000000"})
+  public int numRows;
+
+  @Param({"1", "2", "4", "8"})
+  public int numThreads;
+
+  private Schema _schema;
+  private List<GenericRow> _rows;
+  private int _creationId;
+
+  @Setup
+  public void setUp() throws Exception {
+    _schema = new Schema();
+    for (int i = 0; i < NUM_STRING_DIMENSIONS; i++) {
+      _schema.addField(new DimensionFieldSpec("stringDim" + i, FieldSpec.DataType.STRING, true));
+    }
+    for (int i = 0; i < NUM_INT_DIMENSIONS; i++) {
+      _schema.addField(new DimensionFieldSpec("intDim" + i, FieldSpec.DataType.INT, true));
+    }
+    _schema.addField(new DimensionFieldSpec("skills", FieldSpec.DataType.STRING, false));
+    for (int i = 0; i < NUM_METRICS; i++) {
+      _schema.addField(new MetricFieldSpec("metric" + i, FieldSpec.DataType.LONG));
+    }
+    _schema.addField(
+        new TimeFieldSpec(new TimeGranularitySpec(FieldSpec.DataType.LONG, TimeUnit.DAYS, "daysSinceEpoch")));
+
+    // Columns of increasing cardinality
+    Random random = new Random(0);
+    _rows = new ArrayList<>(numRows);
+    for (int i = 0; i < numRows; i++) {
+      GenericRow row = new GenericRow();
+      for (int j = 0; j < NUM_STRING_DIMENSIONS; j++) {
+        row.putField("stringDim" + j, "value" + random.nextInt(10 << (2 * j)));
+      }
+      for (int j = 0; j < NUM_INT_DIMENSIONS; j++) {
+        row.putField("intDim" + j, random.nextInt(10 << (2 * j)));
+      }
+      Object[] skills = new Object[1 + random.nextInt(5)];
+      for (int j = 0; j < skills.length; j++) {
+        skills[j] = "skill" + random.nextInt(1000);
+      }
+      row.putField("skills", skills);
+      for (int j = 0; j < NUM_METRICS; j++) {
+        row.putField("metric" + j, (long) random.nextInt(1000));
+      }
+      row.putField("daysSinceEpoch", 17000L + random.nextInt(3));
+      _rows.add(row);
+    }
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+
+  @TearDown(Level.Invocation)
+  public void cleanUp() {
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public void createSegment() throws Exception {
+    SegmentGeneratorConfig config = new SegmentGeneratorConfig(_schema);
+    config.setOutDir(new File(TEMP_DIR, Integer.toString(_creationId++)).getPath());
+    config.setTableName(TABLE_NAME);
+    config.setTimeColumnName("daysSinceEpoch");
+    config.setSegmentTimeUnit(TimeUnit.DAYS);
+    config.setSegmentVersion(SegmentVersion.v3);
+    config.setInvertedIndexCreationColumns(Arrays.asList("stringDim0", "stringDim4", "intDim2", "skills"));
+    config.setNumIndexCreationThreads(numThreads);
+
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(config, new TestRecordReader(_rows, _schema));
+    driver.build();
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options opt = new OptionsBuilder().include(BenchmarkOfflineSegmentCreation.class.getSimpleName())
+        .warmupIterations(2)
+        .measurementIterations(5)
+        .forks(1)
+        .build();
+
+    new Runner(opt).run();
+  }
+}
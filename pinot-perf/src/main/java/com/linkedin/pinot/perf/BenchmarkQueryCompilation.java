@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.perf;
+
+import com.linkedin.pinot.broker.requesthandler.BrokerRequestOptimizer;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.pql.parsers.CachingPql2Compiler;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Benchmark of the broker query compilation throughput, with and without the compiled query cache.
+ *
+ * <p>Queries are generated from a few dashboard-like templates with random filter constants: the
+ * <code>repeatedQueries</code> benchmarks cycle through a small set of queries (exact query cache hits), the
+ * <code>templatedQueries</code> benchmarks go through a large set of queries sharing the same templates (template
+ * cache hits).
+ */
+@State(Scope.Benchmark)
+public class BenchmarkQueryCompilation {
+  private static final String[] QUERY_TEMPLATES = new String[]{
+      "SELECT COUNT(*) FROM myTable WHERE memberId = %d AND daysSinceEpoch BETWEEN %d AND %d",
+      "SELECT SUM(impressions), SUM(clicks) FROM myTable WHERE country IN ('us', 'ca', '%s') AND "
+          + "daysSinceEpoch >= %d AND daysSinceEpoch < %d GROUP BY campaignId TOP 100",
+      "SELECT * FROM myTable WHERE (browser = '%s' OR os = 'android') AND hoursSinceEpoch BETWEEN %d AND %d "
+          + "ORDER BY hoursSinceEpoch LIMIT 50"
+  };
+  private static final int NUM_REPEATED_QUERIES = 30;
+  private static final int NUM_TEMPLATED_QUERIES = 100_000;
+
+  private final Pql2Compiler _compiler = new Pql2Compiler();
+  private final CachingPql2Compiler _cachingCompiler = new CachingPql2Compiler(1000);
+  private final BrokerRequestOptimizer _optimizer = new BrokerRequestOptimizer();
+  private String[] _repeatedQueries;
+  private String[] _templatedQueries;
+  private int _repeatedQueryIndex;
+  private int _templatedQueryIndex;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(0);
+    _repeatedQueries = generateQueries(random, NUM_REPEATED_QUERIES);
+    _templatedQueries = generateQueries(random, NUM_TEMPLATED_QUERIES);
+  }
+
+  private static String[] generateQueries(Random random, int numQueries) {
+    String[] queries = new String[numQueries];
+    for (int i = 0; i < numQueries; i++) {
+      int start = 16000 + random.nextInt(1000);
+      String template = QUERY_TEMPLATES[i % QUERY_TEMPLATES.length];
+      switch (i % QUERY_TEMPLATES.length) {
+        case 0:
+          queries[i] = String.format(template, random.nextInt(), start, start + random.nextInt(30));
+          break;
+        case 1:
+          queries[i] = String.format(template, "c" + random.nextInt(200), start, start + random.nextInt(30));
+          break;
+        default:
+          queries[i] = String.format(template, "b" + random.nextInt(20), start * 24, start * 24 + random.nextInt(72));
+          break;
+      }
+    }
+    return queries;
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public BrokerRequest repeatedQueriesWithoutCache() {
+    return _optimizer.optimize(_compiler.compileToBrokerRequest(nextRepeatedQuery()));
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public BrokerRequest repeatedQueriesWithCache() {
+    return _optimizer.optimize(_cachingCompiler.compileToBrokerRequest(nextRepeatedQuery()));
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public BrokerRequest templatedQueriesWithoutCache() {
+    return _optimizer.optimize(_compiler.compileToBrokerRequest(nextTemplatedQuery()));
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public BrokerRequest templatedQueriesWithCache() {
+    return _optimizer.optimize(_cachingCompiler.compileToBrokerRequest(nextTemplatedQuery()));
+  }
+
+  private String nextRepeatedQuery() {
+    _repeatedQueryIndex = (_repeatedQueryIndex + 1) % NUM_REPEATED_QUERIES;
+    return _repeatedQueries[_repeatedQueryIndex];
+  }
+
+  private String nextTemplatedQuery() {
+    _templatedQueryIndex = (_templatedQueryIndex + 1) % NUM_TEMPLATED_QUERIES;
+    return _templatedQueries[_templatedQueryIndex];
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options opt = new OptionsBuilder().include(BenchmarkQueryCompilation.class.getSimpleName())
+        .warmupIterations(3)
+        .measurementIterations(5)
+        .forks(1)
+        .build();
+
+    new Runner(opt).run();
+  }
+}
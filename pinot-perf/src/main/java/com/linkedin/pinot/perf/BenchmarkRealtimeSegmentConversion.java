@@ -0,0 +1,140 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.perf;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.MetricFieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.data.TimeFieldSpec;
+import com.linkedin.pinot.common.data.TimeGranularitySpec;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentVersion;
+import com.linkedin.pinot.core.realtime.converter.RealtimeSegmentConverter;
+import com.linkedin.pinot.core.realtime.impl.RealtimeSegmentImpl;
+import com.yammer.metrics.core.MetricsRegistry;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Benchmark of the conversion of a consuming segment into an immutable segment, comparing the columnar conversion
+ * with the conversion through the record reader.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkRealtimeSegmentConversion {
+  private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "BenchmarkRealtimeSegmentConversion");
+  private static final String TABLE_NAME = "testTable";
+  private static final String SEGMENT_NAME = "testSegment";
+  private static final List<String> INVERTED_INDEX_COLUMNS = Arrays.asList("memberId", "country", "daysSinceEpoch");
+
+  @Param({"100000", "1000000"})
+  public int numRows;
+
+  @Param({"", "memberId"})
+  public String sortedColumn;
+
+  private Schema _schema;
+  private RealtimeSegmentImpl _realtimeSegment;
+  private int _conversionId;
+
+  @Setup
+  public void setUp() throws Exception {
+    _schema = new Schema();
+    _schema.addField(new DimensionFieldSpec("memberId", FieldSpec.DataType.INT, true));
+    _schema.addField(new DimensionFieldSpec("country", FieldSpec.DataType.STRING, true));
+    _schema.addField(new DimensionFieldSpec("pageKey", FieldSpec.DataType.STRING, true));
+    _schema.addField(new DimensionFieldSpec("skills", FieldSpec.DataType.STRING, false));
+    _schema.addField(new MetricFieldSpec("impressions", FieldSpec.DataType.LONG));
+    _schema.addField(new MetricFieldSpec("cost", FieldSpec.DataType.DOUBLE));
+    _schema.addField(
+        new TimeFieldSpec(new TimeGranularitySpec(FieldSpec.DataType.LONG, TimeUnit.DAYS, "daysSinceEpoch")));
+
+    // The conversion through the record reader needs the realtime inverted index on the sorted column
+    _realtimeSegment = new RealtimeSegmentImpl(_schema, numRows, TABLE_NAME, SEGMENT_NAME, "testStream",
+        new ServerMetrics(new MetricsRegistry()), INVERTED_INDEX_COLUMNS);
+    Random random = new Random(0);
+    GenericRow row = new GenericRow();
+    for (int i = 0; i < numRows; i++) {
+      row.putField("memberId", random.nextInt(numRows / 10));
+      row.putField("country", "country" + random.nextInt(200));
+      row.putField("pageKey", "page" + random.nextInt(5000));
+      Object[] skills = new Object[1 + random.nextInt(5)];
+      for (int j = 0; j < skills.length; j++) {
+        skills[j] = "skill" + random.nextInt(1000);
+      }
+      row.putField("skills", skills);
+      row.putField("impressions", (long) random.nextInt(100));
+      row.putField("cost", random.nextInt(10000) / 100.0);
+      row.putField("daysSinceEpoch", 17000L + random.nextInt(3));
+      _realtimeSegment.index(row);
+    }
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+
+  @TearDown(Level.Invocation)
+  public void cleanUp() {
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public void columnarConversion() throws Exception {
+    getConverter().build(SegmentVersion.v3);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public void recordReaderConversion() throws Exception {
+    getConverter().buildWithRecordReader(SegmentVersion.v3);
+  }
+
+  private RealtimeSegmentConverter getConverter() {
+    String outputPath = new File(TEMP_DIR, Integer.toString(_conversionId++)).getPath();
+    return new RealtimeSegmentConverter(_realtimeSegment, outputPath, _schema, TABLE_NAME, SEGMENT_NAME,
+        sortedColumn.isEmpty() ? null : sortedColumn, INVERTED_INDEX_COLUMNS);
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options opt = new OptionsBuilder().include(BenchmarkRealtimeSegmentConversion.class.getSimpleName())
+        .warmupIterations(2)
+        .measurementIterations(5)
+        .forks(1)
+        .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.perf;
+
+import com.linkedin.pinot.routing.ServerToSegmentSetMap;
+import com.linkedin.pinot.routing.builder.LargeClusterRoutingTableBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.InstanceConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Benchmark of the recomputation of the routing tables of a large table by {@link LargeClusterRoutingTableBuilder} on
+ * external view changes: generating them from scratch, or updating them when a server goes down and comes back up or
+ * when a segment is added and removed.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgs = {"-server", "-Xmx8G"})
+public class BenchmarkRoutingTableBuilder {
+  private static final String TABLE_NAME = "testTable_OFFLINE";
+  private static final int NUM_SEGMENTS = 500000;
+  private static final int NUM_SERVERS = 300;
+  private static final int NUM_REPLICAS = 6;
+
+  @Param({"generate", "serverDown", "newSegment"})
+  public String externalViewChange;
+
+  private LargeClusterRoutingTableBuilder _routingTableBuilder;
+  private List<InstanceConfig> _instanceConfigs;
+  private ExternalView _externalView;
+  private ExternalView _changedExternalView;
+  private boolean _changed = false;
+
+  @Setup
+  public void setUp() {
+    _routingTableBuilder = new LargeClusterRoutingTableBuilder();
+    _routingTableBuilder.init(new BaseConfiguration());
+
+    String[] servers = new String[NUM_SERVERS];
+    _instanceConfigs = new ArrayList<>(NUM_SERVERS);
+    for (int i = 0; i < NUM_SERVERS; i++) {
+      servers[i] = "Server_127.0.0.1_" + i;
+      InstanceConfig instanceConfig = new InstanceConfig(servers[i]);
+      instanceConfig.setInstanceEnabled(true);
+      _instanceConfigs.add(instanceConfig);
+    }
+
+    _externalView = new ExternalView(TABLE_NAME);
+    _changedExternalView = new ExternalView(TABLE_NAME);
+    String downServer = servers[0];
+    for (int i = 0; i < NUM_SEGMENTS; i++) {
+      String segmentName = TABLE_NAME + "_" + i;
+      for (int j = 0; j < NUM_REPLICAS; j++) {
+        String server = servers[(i + j * (NUM_SERVERS / NUM_REPLICAS + 1)) % NUM_SERVERS];
+        _externalView.setState(segmentName, server, "ONLINE");
+        if (externalViewChange.equals("serverDown") && server.equals(downServer)) {
+          _changedExternalView.setState(segmentName, server, "OFFLINE");
+        } else {
+          _changedExternalView.setState(segmentName, server, "ONLINE");
+        }
+      }
+    }
+    if (externalViewChange.equals("newSegment")) {
+      for (int j = 0; j < NUM_REPLICAS; j++) {
+        _changedExternalView.setState(TABLE_NAME + "_" + NUM_SEGMENTS, servers[j], "ONLINE");
+      }
+    }
+
+    _routingTableBuilder.computeRoutingTableFromExternalView(TABLE_NAME, _externalView, _instanceConfigs);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public List<ServerToSegmentSetMap> computeRoutingTables() {
+    if (externalViewChange.equals("generate")) {
+      _routingTableBuilder.removeTable(TABLE_NAME);
+    }
+
+    // Alternate between both external views, so that every call has a change to apply
+    _changed = !_changed;
+    ExternalView externalView = _changed ? _changedExternalView : _externalView;
+    return _routingTableBuilder.computeRoutingTableFromExternalView(TABLE_NAME, externalView, _instanceConfigs);
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options opt = new OptionsBuilder().include(BenchmarkRoutingTableBuilder.class.getSimpleName())
+        .warmupIterations(2)
+        .measurementIterations(5)
+        .build();
+
+    new Runner(opt).run();
+  }
+}
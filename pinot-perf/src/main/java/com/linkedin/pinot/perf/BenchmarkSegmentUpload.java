@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.perf;
+
+import com.linkedin.pinot.common.utils.TarGzCompressionUtils;
+import com.linkedin.pinot.controller.api.restlet.resources.SegmentTarReader;
+import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
+import com.linkedin.pinot.core.segment.store.SegmentDirectoryPaths;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Benchmark of the handling of concurrent segment uploads by the controller: saving the uploaded segment tar.gz and
+ * reading the segment metadata and size from it, either by untarring the whole segment as the controller used to, or
+ * by streaming it through {@link SegmentTarReader}.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkSegmentUpload {
+  private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "BenchmarkSegmentUpload");
+  private static final String SEGMENT_NAME = "testTable_0";
+  private static final int NUM_COLUMNS = 16;
+  private static final int COLUMN_SIZE = 4 * 1024 * 1024;
+
+  @Param({"untar", "streaming"})
+  public String uploadMode;
+
+  private byte[] _segmentTarBytes;
+  private final AtomicInteger _uploadId = new AtomicInteger();
+
+  @Setup
+  public void setUp() throws Exception {
+    FileUtils.deleteQuietly(TEMP_DIR);
+    File v3Dir = new File(new File(TEMP_DIR, SEGMENT_NAME), SegmentDirectoryPaths.V3_SUBDIRECTORY_NAME);
+    FileUtils.forceMkdir(v3Dir);
+    FileUtils.writeStringToFile(new File(v3Dir, V1Constants.MetadataKeys.METADATA_FILE_NAME),
+        "segment.name = " + SEGMENT_NAME + "\nsegment.table.name = testTable\n");
+    FileUtils.writeStringToFile(new File(v3Dir, V1Constants.SEGMENT_CREATION_META), "creation meta");
+
+    // Index files of low cardinality values, which compress about as well as real ones
+    Random random = new Random(0);
+    OutputStream outputStream = new FileOutputStream(new File(v3Dir, "columns.psf"));
+    try {
+      byte[] column = new byte[COLUMN_SIZE];
+      for (int i = 0; i < NUM_COLUMNS; i++) {
+        for (int j = 0; j < COLUMN_SIZE; j++) {
+          column[j] = (byte) random.nextInt(16);
+        }
+        outputStream.write(column);
+      }
+    } finally {
+      outputStream.close();
+    }
+    String tarFile = TarGzCompressionUtils.createTarGzOfDirectory(new File(TEMP_DIR, SEGMENT_NAME).getPath());
+    _segmentTarBytes = FileUtils.readFileToByteArray(new File(tarFile));
+  }
+
+  @TearDown
+  public void tearDown() {
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @Threads(4)
+  public long upload() throws Exception {
+    File uploadDir = new File(TEMP_DIR, "upload_" + _uploadId.getAndIncrement());
+    File tarFile = new File(uploadDir, SEGMENT_NAME + TarGzCompressionUtils.TAR_GZ_FILE_EXTENTION);
+    File untarredDir = new File(uploadDir, "untarred");
+    FileUtils.forceMkdir(untarredDir);
+    InputStream inputStream = new ByteArrayInputStream(_segmentTarBytes);
+    try {
+      if (uploadMode.equals("untar")) {
+        OutputStream outputStream = new FileOutputStream(tarFile);
+        try {
+          IOUtils.copy(inputStream, outputStream);
+        } finally {
+          outputStream.close();
+        }
+        TarGzCompressionUtils.unTar(tarFile, untarredDir);
+        return FileUtils.sizeOfDirectory(untarredDir);
+      } else {
+        return SegmentTarReader.readSegmentTar(inputStream, tarFile, untarredDir);
+      }
+    } finally {
+      FileUtils.deleteQuietly(uploadDir);
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options opt = new OptionsBuilder().include(BenchmarkSegmentUpload.class.getSimpleName())
+        .warmupIterations(2)
+        .measurementIterations(5)
+        .forks(1)
+        .build();
+
+    new Runner(opt).run();
+  }
+}
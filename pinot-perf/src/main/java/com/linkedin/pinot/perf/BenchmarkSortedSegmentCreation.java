@@ -0,0 +1,173 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.perf;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.MetricFieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.data.TimeFieldSpec;
+import com.linkedin.pinot.common.data.TimeGranularitySpec;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.common.BlockDocIdIterator;
+import com.linkedin.pinot.core.common.Constants;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.data.readers.TestRecordReader;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentVersion;
+import com.linkedin.pinot.core.plan.FilterPlanNode;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import com.linkedin.pinot.core.segment.index.loader.Loaders;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Benchmark of the sort on segment creation: creation time of an offline segment from unsorted input with and without
+ * sorting on a column (in memory and spilled to disk), and time of a filter on that column in the resulting segments.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkSortedSegmentCreation {
+  private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "BenchmarkSortedSegmentCreation");
+  private static final String TABLE_NAME = "testTable";
+  private static final int NUM_ROWS = 1000000;
+  private static final String QUERY = "SELECT COUNT(*) FROM testTable WHERE pageKey = 'page1234'";
+  private static final long SPILLING_SORT_BUFFER_SIZE = 8 * 1024 * 1024;
+
+  @Param({"unsorted", "sortedInMemory", "sortedWithSpill"})
+  public String sortMode;
+
+  private Schema _schema;
+  private List<GenericRow> _rows;
+  private int _creationId;
+  private IndexSegment _indexSegment;
+  private BrokerRequest _brokerRequest;
+
+  @Setup
+  public void setUp() throws Exception {
+    _schema = new Schema();
+    _schema.addField(new DimensionFieldSpec("pageKey", FieldSpec.DataType.STRING, true));
+    _schema.addField(new DimensionFieldSpec("memberId", FieldSpec.DataType.INT, true));
+    _schema.addField(new DimensionFieldSpec("country", FieldSpec.DataType.STRING, true));
+    _schema.addField(new DimensionFieldSpec("skills", FieldSpec.DataType.STRING, false));
+    _schema.addField(new MetricFieldSpec("impressions", FieldSpec.DataType.LONG));
+    _schema.addField(new MetricFieldSpec("cost", FieldSpec.DataType.DOUBLE));
+    _schema.addField(
+        new TimeFieldSpec(new TimeGranularitySpec(FieldSpec.DataType.LONG, TimeUnit.DAYS, "daysSinceEpoch")));
+
+    Random random = new Random(0);
+    _rows = new ArrayList<>(NUM_ROWS);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      GenericRow row = new GenericRow();
+      row.putField("pageKey", "page" + random.nextInt(5000));
+      row.putField("memberId", random.nextInt(NUM_ROWS / 10));
+      row.putField("country", "country" + random.nextInt(200));
+      Object[] skills = new Object[1 + random.nextInt(5)];
+      for (int j = 0; j < skills.length; j++) {
+        skills[j] = "skill" + random.nextInt(1000);
+      }
+      row.putField("skills", skills);
+      row.putField("impressions", (long) random.nextInt(100));
+      row.putField("cost", random.nextInt(10000) / 100.0);
+      row.putField("daysSinceEpoch", 17000L + random.nextInt(3));
+      _rows.add(row);
+    }
+    FileUtils.deleteQuietly(TEMP_DIR);
+
+    // Segment queried by the filter benchmark, without inverted index so that the unsorted column is scanned
+    _indexSegment = Loaders.IndexSegment.load(createSegment(), ReadMode.heap);
+    _brokerRequest = new Pql2Compiler().compileToBrokerRequest(QUERY);
+  }
+
+  @TearDown
+  public void tearDown() {
+    _indexSegment.destroy();
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public void segmentCreation() throws Exception {
+    FileUtils.deleteQuietly(createSegment().getParentFile());
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public int filter() {
+    Operator filterOperator = new FilterPlanNode(_indexSegment, _brokerRequest).run();
+    filterOperator.open();
+    BlockDocIdIterator iterator = filterOperator.nextBlock().getBlockDocIdSet().iterator();
+    int numMatchedDocs = 0;
+    while (iterator.next() != Constants.EOF) {
+      numMatchedDocs++;
+    }
+    filterOperator.close();
+    return numMatchedDocs;
+  }
+
+  private File createSegment() throws Exception {
+    SegmentGeneratorConfig config = new SegmentGeneratorConfig(_schema);
+    config.setOutDir(new File(TEMP_DIR, Integer.toString(_creationId++)).getPath());
+    config.setTableName(TABLE_NAME);
+    config.setTimeColumnName("daysSinceEpoch");
+    config.setSegmentTimeUnit(TimeUnit.DAYS);
+    config.setSegmentVersion(SegmentVersion.v3);
+    if (!sortMode.equals("unsorted")) {
+      config.setSortedColumns(Collections.singletonList("pageKey"));
+    }
+    if (sortMode.equals("sortedWithSpill")) {
+      config.setSortBufferSizeInBytes(SPILLING_SORT_BUFFER_SIZE);
+    }
+
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(config, new TestRecordReader(_rows, _schema));
+    driver.build();
+    return driver.getOutputDirectory();
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options opt = new OptionsBuilder().include(BenchmarkSortedSegmentCreation.class.getSimpleName())
+        .warmupIterations(2)
+        .measurementIterations(5)
+        .forks(1)
+        .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -41,6 +41,8 @@ public class ServerConf {
   private static final String PINOT_SERVER_TRANSFORM_FUNCTIONS = "pinot.server.transforms";
 
   private static final String PINOT_QUERY_SCHEDULER_PREFIX = "pinot.query.scheduler";
+  private static final String PINOT_SERVER_BITMAP_CACHE = "pinot.server.bitmap.cache";
+  private static final String PINOT_SERVER_QUERY_RESULT_CACHE = "pinot.server.query.result.cache";
 
   private Configuration _serverConf;
 
@@ -68,6 +70,14 @@ public class ServerConf {
     return _serverConf.subset(PINOT_SERVER_METRICS);
   }
 
+  public Configuration getBitmapCacheConfig() {
+    return _serverConf.subset(PINOT_SERVER_BITMAP_CACHE);
+  }
+
+  public Configuration getQueryResultCacheConfig() {
+    return _serverConf.subset(PINOT_SERVER_QUERY_RESULT_CACHE);
+  }
+
   public NettyServerConfig getNettyConfig() throws ConfigurationException {
     return new NettyServerConfig(_serverConf.subset(PINOT_SERVER_NETTY));
   }
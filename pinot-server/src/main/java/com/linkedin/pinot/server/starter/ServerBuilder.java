@@ -22,7 +22,9 @@ import com.linkedin.pinot.common.query.QueryExecutor;
 import com.linkedin.pinot.core.data.manager.offline.TableDataManagerProvider;
 import com.linkedin.pinot.core.operator.transform.TransformUtils;
 import com.linkedin.pinot.core.operator.transform.function.TransformFunctionFactory;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
 import com.linkedin.pinot.core.query.scheduler.QueryScheduler;
+import com.linkedin.pinot.core.segment.index.readers.InvertedIndexBitmapCache;
 import com.linkedin.pinot.server.conf.NettyServerConfig;
 import com.linkedin.pinot.server.conf.ServerConf;
 import com.linkedin.pinot.server.request.SimpleRequestHandlerFactory;
@@ -188,6 +190,8 @@ public class ServerBuilder {
     _serverMetrics.initializeGlobalMeters();
 
     TableDataManagerProvider.setServerMetrics(_serverMetrics);
+    InvertedIndexBitmapCache.init(_serverConf.getBitmapCacheConfig(), _serverMetrics);
+    SegmentResultCache.init(_serverConf.getQueryResultCacheConfig(), _serverMetrics);
   }
 
   public ServerMetrics getServerMetrics() {
@@ -53,6 +53,8 @@ public class HelixInstanceDataManagerConfig implements InstanceDataManagerConfig
 
   // Key of whether to enable default columns
   private static final String ENABLE_DEFAULT_COLUMNS = "enable.default.columns";
+  // Key of whether to load the column indexes of segments on first access
+  private static final String LAZY_COLUMN_LOADING = "lazy.column.loading";
 
   private final static String[] REQUIRED_KEYS = { INSTANCE_ID, INSTANCE_DATA_DIR, READ_MODE };
   private Configuration _instanceDataManagerConfiguration = null;
@@ -121,6 +123,11 @@ public class HelixInstanceDataManagerConfig implements InstanceDataManagerConfig
     return _instanceDataManagerConfiguration.getBoolean(ENABLE_DEFAULT_COLUMNS, false);
   }
 
+  @Override
+  public boolean isLazyColumnLoading() {
+    return _instanceDataManagerConfiguration.getBoolean(LAZY_COLUMN_LOADING, false);
+  }
+
   @Override
   public String toString() {
     String configString = "";
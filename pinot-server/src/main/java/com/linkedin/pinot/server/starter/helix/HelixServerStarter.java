@@ -15,6 +15,7 @@
  */
 package com.linkedin.pinot.server.starter.helix;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -48,6 +49,7 @@ import com.linkedin.pinot.common.utils.NetUtil;
 import com.linkedin.pinot.common.utils.ServiceStatus;
 import com.linkedin.pinot.common.utils.ZkUtils;
 import com.linkedin.pinot.core.indexsegment.columnar.ColumnarSegmentMetadataLoader;
+import com.linkedin.pinot.core.segment.memory.OffHeapMemoryManager;
 import com.linkedin.pinot.server.conf.ServerConf;
 import com.linkedin.pinot.server.realtime.ControllerLeaderLocator;
 import com.linkedin.pinot.server.starter.ServerInstance;
@@ -72,6 +74,9 @@ public class HelixServerStarter {
   private ServerConf _serverConf;
   private ServerInstance _serverInstance;
 
+  // Directory under the data directory of the files the consuming segment buffers are memory mapped from
+  private static final String REALTIME_OFFHEAP_MMAP_DIR_NAME = "realtimeOffHeapBuffers";
+
   private final String _helixClusterName;
   private final String _instanceId;
   private AdminApiApplication _adminApiApplication;
@@ -227,6 +232,7 @@ public class HelixServerStarter {
 
     _serverConf = getInstanceServerConfig(moreConfigurations);
     setupHelixSystemProperties(moreConfigurations);
+    initOffHeapMemoryManager(moreConfigurations);
 
     if (_serverInstance == null) {
       _serverInstance = new ServerInstance();
@@ -236,6 +242,18 @@ public class HelixServerStarter {
     }
   }
 
+  private void initOffHeapMemoryManager(Configuration conf) {
+    long budgetInBytes = conf.getLong(CommonConstants.Server.CONFIG_OF_REALTIME_OFFHEAP_MEMORY_BUDGET,
+        OffHeapMemoryManager.UNLIMITED_BUDGET);
+    File mmapDir = null;
+    if (conf.getBoolean(CommonConstants.Server.CONFIG_OF_REALTIME_OFFHEAP_MMAP, false)) {
+      String dataDir = conf.getString(CommonConstants.Server.CONFIG_OF_INSTANCE_DATA_DIR,
+          CommonConstants.Server.DEFAULT_INSTANCE_DATA_DIR);
+      mmapDir = new File(dataDir, REALTIME_OFFHEAP_MMAP_DIR_NAME);
+    }
+    OffHeapMemoryManager.init(budgetInBytes, mmapDir);
+  }
+
   private ServerConf getInstanceServerConfig(Configuration moreConfigurations) {
     return DefaultHelixStarterServerConfig.getDefaultHelixServerConfig(moreConfigurations);
   }
@@ -16,11 +16,14 @@
 package com.linkedin.pinot.tools;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import org.apache.helix.ZNRecord;
 import org.apache.helix.controller.strategy.AutoRebalanceStrategy;
 import org.apache.helix.model.ExternalView;
@@ -32,10 +35,13 @@ import com.google.common.collect.Lists;
 import com.linkedin.pinot.common.config.AbstractTableConfig;
 import com.linkedin.pinot.common.config.TableNameBuilder;
 import com.linkedin.pinot.common.metadata.ZKMetadataProvider;
+import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
+import com.linkedin.pinot.common.utils.CommonConstants;
 import com.linkedin.pinot.common.utils.CommonConstants.Helix.TableType;
 import com.linkedin.pinot.common.utils.EqualityUtils;
 import com.linkedin.pinot.common.utils.helix.HelixHelper;
 import com.linkedin.pinot.common.utils.retry.RetryPolicies;
+import com.linkedin.pinot.controller.helix.core.sharding.MinimalMovementRebalancePlanner;
 import javax.annotation.Nullable;
 
 
@@ -44,11 +50,24 @@ public class PinotSegmentRebalancer extends PinotZKChanger {
   static final String rebalanceTableCmd = "rebalanceTable";
   static final String rebalanceTenantCmd = "rebalanceTenant";
 
+  // Tolerated excess of data on the most loaded server when balancing segment sizes
+  private static final double SIZE_IMBALANCE_TOLERANCE = 0.05;
+
   private boolean dryRun = true;
+  private boolean balanceBySize = false;
 
   public PinotSegmentRebalancer(String zkAddress, String clusterName, boolean dryRun) {
+    this(zkAddress, clusterName, dryRun, false);
+  }
+
+  /**
+   * @param balanceBySize Whether to balance the size of the segments on the servers with as few segment moves as
+   *                      possible, instead of the number of segments
+   */
+  public PinotSegmentRebalancer(String zkAddress, String clusterName, boolean dryRun, boolean balanceBySize) {
     super(zkAddress, clusterName);
     this.dryRun = dryRun;
+    this.balanceBySize = balanceBySize;
   }
 
   /**
@@ -162,6 +181,10 @@ public class PinotSegmentRebalancer extends PinotZKChanger {
 
     TableNameBuilder builder = new TableNameBuilder(tableType);
     List<String> instancesInClusterWithTag = helixAdmin.getInstancesInClusterWithTag(clusterName, builder.forTable(tenantName));
+    if (balanceBySize) {
+      rebalanceTableBySize(tableName, currentIdealState, instancesInClusterWithTag, targetNumReplicas);
+      return;
+    }
     LOGGER.info("Current: Nodes:" + currentHosts);
     LOGGER.info("New Nodes:" + instancesInClusterWithTag);
     Map<String, Map<String, String>> currentMapping = currentIdealState.getRecord().getMapFields();
@@ -196,6 +219,78 @@ public class PinotSegmentRebalancer extends PinotZKChanger {
     }
   }
 
+  /**
+   * Rebalances a table balancing the size of the segments on the servers, weighted by their query load, with as few
+   * segment moves as possible.
+   * <p>Segment sizes come from the segment meta-data, segments pushed before their size was recorded count as the
+   * average segment size. The data of the other tables on the servers is not taken into account.
+   */
+  private void rebalanceTableBySize(String tableName, IdealState currentIdealState, List<String> instances,
+      int numReplicas) throws Exception {
+    Map<String, Set<String>> currentAssignment = new TreeMap<>();
+    for (String segment : currentIdealState.getPartitionSet()) {
+      currentAssignment.put(segment, currentIdealState.getInstanceSet(segment));
+    }
+    Map<String, Long> segmentSizes = new HashMap<>();
+    for (OfflineSegmentZKMetadata segmentZKMetadata : ZKMetadataProvider.getOfflineSegmentZKMetadataListForTable(
+        propertyStore, tableName)) {
+      if (segmentZKMetadata.getSizeInBytes() >= 0) {
+        segmentSizes.put(segmentZKMetadata.getSegmentName(), segmentZKMetadata.getSizeInBytes());
+      }
+    }
+    Map<String, Double> loadWeights = new HashMap<>();
+    for (String instance : instances) {
+      String loadWeight = helixAdmin.getInstanceConfig(clusterName, instance).getRecord()
+          .getSimpleField(CommonConstants.Helix.Instance.QUERY_LOAD_WEIGHT_KEY);
+      if (loadWeight != null) {
+        loadWeights.put(instance, Double.parseDouble(loadWeight));
+      }
+    }
+
+    MinimalMovementRebalancePlanner planner =
+        new MinimalMovementRebalancePlanner(SIZE_IMBALANCE_TOLERANCE, currentAssignment.size() * numReplicas);
+    MinimalMovementRebalancePlanner.RebalancePlan plan = planner.plan(currentAssignment, instances, numReplicas,
+        segmentSizes, Collections.<String, Long>emptyMap(), loadWeights);
+    LOGGER.info("Rebalance plan for table: {} with {} segments of known size out of {}: {}", tableName,
+        segmentSizes.size(), currentAssignment.size(), plan);
+
+    // Only the segments whose instances change are updated
+    final Map<String, Map<String, String>> newMapping = new TreeMap<>();
+    for (Map.Entry<String, Set<String>> entry : plan.getTargetAssignment().entrySet()) {
+      if (!entry.getValue().equals(currentAssignment.get(entry.getKey()))) {
+        Map<String, String> instanceStateMap = new TreeMap<>();
+        for (String instance : entry.getValue()) {
+          instanceStateMap.put(instance, "ONLINE");
+        }
+        newMapping.put(entry.getKey(), instanceStateMap);
+      }
+    }
+    LOGGER.info("Segment assignment changes:");
+    printSegmentAssignment(newMapping);
+    if (!dryRun) {
+      if (newMapping.isEmpty()) {
+        LOGGER.info("Skipping rebalancing for table:" + tableName + " since its already balanced");
+      } else {
+        HelixHelper.updateIdealState(helixManager, tableName,
+            new com.google.common.base.Function<IdealState, IdealState>() {
+              @Nullable
+              @Override
+              public IdealState apply(@Nullable IdealState idealState) {
+                for (Map.Entry<String, Map<String, String>> entry : newMapping.entrySet()) {
+                  // Skip the segments deleted in the meantime
+                  if (idealState.getPartitionSet().contains(entry.getKey())) {
+                    idealState.getRecord().setMapField(entry.getKey(), entry.getValue());
+                  }
+                }
+                return idealState;
+              }
+            }, RetryPolicies.exponentialBackoffRetryPolicy(5, 500L, 2.0f));
+        waitForStable(tableName);
+        LOGGER.info("Successfully rebalanced table:" + tableName);
+      }
+    }
+  }
+
   private static void usage() {
     System.out.println(
         "Usage: PinotRebalancer [" + rebalanceTableCmd + "|"  + rebalanceTenantCmd + "] <zkAddress> <clusterName> <tableName|tenantName>");
@@ -37,6 +37,10 @@ public class RebalanceTableCommand extends AbstractBaseAdminCommand implements C
   @Option(name = "-tenantName", required = false, metaVar = "<string>", usage = "Name of the tenant. Note All offline tables belonging this tenant will be rebalanced", forbids ={"-tableName"})
   private String _tenantName;
 
+  @Option(name = "-bySize", required = false, metaVar = "<boolean>",
+      usage = "Balance the size of the segments on the servers with minimal segment movement")
+  private boolean _bySize;
+
   @Option(name = "-exec", required = false, metaVar = "<boolean>", usage = "Execute command (Run the rebalancer)")
   private boolean _exec;
 
@@ -55,7 +59,7 @@ public class RebalanceTableCommand extends AbstractBaseAdminCommand implements C
   @Override
   public boolean execute() throws Exception {
     boolean _dryRun = !_exec;
-    PinotSegmentRebalancer rebalancer = new PinotSegmentRebalancer(_zkAddress, _clusterName, _dryRun);
+    PinotSegmentRebalancer rebalancer = new PinotSegmentRebalancer(_zkAddress, _clusterName, _dryRun, _bySize);
     if (_tenantName == null && _tableName == null) {
       System.err.println("One of tenantName or tableName must be specified");
       return false;
@@ -56,6 +56,12 @@ public class CfgBasedRouting implements RoutingTable {
     return routingTableEntry != null && !routingTableEntry.isEmpty();
   }
 
+  @Override
+  public long getRoutingTableVersion(String tableName) {
+    // Config based routing never changes
+    return routingTableExists(tableName) ? 0L : -1L;
+  }
+
   @Override
   public void start() {
     // Nothing to be done here
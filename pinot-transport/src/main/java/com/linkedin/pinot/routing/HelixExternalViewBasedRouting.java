@@ -31,6 +31,7 @@ import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.configuration.Configuration;
 import org.apache.helix.AccessOption;
 import org.apache.helix.HelixDataAccessor;
@@ -69,7 +70,7 @@ import com.linkedin.pinot.transport.common.SegmentIdSet;
 public class HelixExternalViewBasedRouting implements RoutingTable {
   private static final Logger LOGGER = LoggerFactory.getLogger(HelixExternalViewBasedRouting.class);
 
-  private final RoutingTableBuilder _largeClusterRoutingTableBuilder;
+  private final LargeClusterRoutingTableBuilder _largeClusterRoutingTableBuilder;
   private RoutingTableBuilder _smallClusterRoutingTableBuilder;
   private final RoutingTableBuilder _realtimeHLCRoutingTableBuilder;
   private final RoutingTableBuilder _realtimeLLCRoutingTableBuilder;
@@ -90,12 +91,16 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
       new ConcurrentHashMap<String, List<ServerToSegmentSetMap>>();
 
   private final Map<String, Integer> _lastKnownExternalViewVersionMap = new ConcurrentHashMap<>();
+  // Versions are drawn from a single generator so that a table that is dropped and re-added never reuses a version
+  private final Map<String, Long> _routingTableVersionMap = new ConcurrentHashMap<>();
+  private final AtomicLong _routingTableVersionGenerator = new AtomicLong(0L);
   private final Map<String, Map<String, InstanceConfig>> _lastKnownInstanceConfigsForTable = new ConcurrentHashMap<>();
   private final Map<String, InstanceConfig> _lastKnownInstanceConfigs = new ConcurrentHashMap<>();
   private final Map<String, Set<String>> _tablesForInstance = new ConcurrentHashMap<>();
 
   private final Random _random = new Random(System.currentTimeMillis());
   private final HelixExternalViewBasedTimeBoundaryService _timeBoundaryService;
+  private final PartitionAwareRoutingPruner _partitionAwareRoutingPruner;
   private final RoutingTableSelector _routingTableSelector;
   private final HelixManager _helixManager;
   private static final int INVALID_EXTERNAL_VIEW_VERSION = Integer.MIN_VALUE;
@@ -112,6 +117,7 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
   public HelixExternalViewBasedRouting(ZkHelixPropertyStore<ZNRecord> propertyStore,
       RoutingTableSelector routingTableSelector, HelixManager helixManager, Configuration configuration) {
     _timeBoundaryService = new HelixExternalViewBasedTimeBoundaryService(propertyStore);
+    _partitionAwareRoutingPruner = new PartitionAwareRoutingPruner(propertyStore);
     _largeClusterRoutingTableBuilder = new LargeClusterRoutingTableBuilder();
     _smallClusterRoutingTableBuilder = new BalancedRandomRoutingTableBuilder();
     _realtimeHLCRoutingTableBuilder = new KafkaHighLevelConsumerBasedRoutingTableBuilder();
@@ -179,7 +185,9 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
     if (serverToSegmentSetMaps == null || serverToSegmentSetMaps.isEmpty()) {
       return Collections.emptyMap();
     }
-    return serverToSegmentSetMaps.get(_random.nextInt(serverToSegmentSetMaps.size())).getRouting();
+    Map<ServerInstance, SegmentIdSet> routing =
+        serverToSegmentSetMaps.get(_random.nextInt(serverToSegmentSetMaps.size())).getRouting();
+    return _partitionAwareRoutingPruner.prune(tableName, routing, request.getBrokerRequest());
   }
 
   @Override
@@ -188,6 +196,15 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
         _llcBrokerRoutingTable.containsKey(tableName) && !_llcBrokerRoutingTable.get(tableName).isEmpty());
   }
 
+  @Override
+  public long getRoutingTableVersion(String tableName) {
+    Long version = _routingTableVersionMap.get(tableName);
+    if (version == null) {
+      return -1L;
+    }
+    return version;
+  }
+
   private List<ServerToSegmentSetMap> routeToLLC(String tableName) {
     if (_brokerMetrics != null) {
       _brokerMetrics.addMeteredTableValue(tableName, BrokerMeter.LLC_QUERY_COUNT, 1);
@@ -335,12 +352,22 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
         routingTableBuilder = _largeClusterRoutingTableBuilder;
       } else {
         routingTableBuilder = _smallClusterRoutingTableBuilder;
+        _largeClusterRoutingTableBuilder.removeTable(tableName);
       }
     }
 
     LOGGER.info("Trying to compute routing table for table {} using {}", tableName, routingTableBuilder);
     long startTimeMillis = System.currentTimeMillis();
 
+    // Update the partitions of the segments before the routing table, so that no new segment is routed to without
+    // its partitions being known
+    try {
+      _partitionAwareRoutingPruner.updatePartitions(tableName, externalView);
+    } catch (Exception e) {
+      LOGGER.error("Failed to update the segment partitions for table {}, not pruning its segments", tableName, e);
+      _partitionAwareRoutingPruner.removeTable(tableName);
+    }
+
     try {
       Map<String, InstanceConfig> relevantInstanceConfigs = new HashMap<>();
 
@@ -371,6 +398,8 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
         }
       }
 
+      _routingTableVersionMap.put(tableName, _routingTableVersionGenerator.incrementAndGet());
+
       // Save the instance configs used so that we can avoid unnecessary routing table updates later
       _lastKnownInstanceConfigsForTable.put(tableName, relevantInstanceConfigs);
       for (InstanceConfig instanceConfig : relevantInstanceConfigs.values()) {
@@ -403,6 +432,7 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
 
       // Mark the routing table as needing a rebuild
       _lastKnownExternalViewVersionMap.put(tableName, INVALID_EXTERNAL_VIEW_VERSION);
+      _routingTableVersionMap.remove(tableName);
     }
 
     try {
@@ -515,8 +545,11 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
     LOGGER.info("Trying to remove data table from broker for {}", tableName);
     _brokerRoutingTable.remove(tableName);
     _lastKnownExternalViewVersionMap.remove(tableName);
+    _routingTableVersionMap.remove(tableName);
     _lastKnownInstanceConfigsForTable.remove(tableName);
     _timeBoundaryService.remove(tableName);
+    _partitionAwareRoutingPruner.removeTable(tableName);
+    _largeClusterRoutingTableBuilder.removeTable(tableName);
 
     // Remove table from all instances
     synchronized (_tablesForInstance) {
@@ -0,0 +1,211 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.routing;
+
+import com.linkedin.pinot.common.config.AbstractTableConfig;
+import com.linkedin.pinot.common.config.SegmentPartitionConfig;
+import com.linkedin.pinot.common.config.TableNameBuilder;
+import com.linkedin.pinot.common.metadata.ZKMetadataProvider;
+import com.linkedin.pinot.common.metadata.segment.ColumnPartitionMetadata;
+import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
+import com.linkedin.pinot.common.metadata.segment.RealtimeSegmentZKMetadata;
+import com.linkedin.pinot.common.metadata.segment.SegmentPartitionMetadata;
+import com.linkedin.pinot.common.partition.PartitionFilter;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.utils.CommonConstants;
+import com.linkedin.pinot.transport.common.SegmentId;
+import com.linkedin.pinot.transport.common.SegmentIdSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import org.apache.helix.AccessOption;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.store.zk.ZkHelixPropertyStore;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Prunes from the routing of a query the segments of partitioned tables that cannot match its filter, so that the
+ * query is only sent to the servers hosting segments in the partitions it targets.
+ * <p>The partitions of the segments are the ones recorded in their ZK metadata when they were built, for the offline
+ * segments and the committed realtime segments. Consuming segments, and segments whose partitions are not known, are
+ * never pruned.
+ * <p>The partitions of the segments are refreshed whenever the routing table of a table is rebuilt. They are kept
+ * along with the version of the segment ZK metadata they were read from, so that only the segment ZK metadata of the
+ * segments added or updated since the previous refresh are read.
+ */
+public class PartitionAwareRoutingPruner {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PartitionAwareRoutingPruner.class);
+
+  private final ZkHelixPropertyStore<ZNRecord> _propertyStore;
+  // Partitions of the segments by segment name, for the partitioned tables only
+  private final Map<String, Map<String, SegmentPartitions>> _segmentPartitionsMap = new ConcurrentHashMap<>();
+
+  public PartitionAwareRoutingPruner(@Nullable ZkHelixPropertyStore<ZNRecord> propertyStore) {
+    _propertyStore = propertyStore;
+  }
+
+  /**
+   * Refreshes the partitions of the segments of the given table.
+   */
+  public void updatePartitions(String tableName, ExternalView externalView) {
+    if (_propertyStore == null) {
+      return;
+    }
+    CommonConstants.Helix.TableType tableType = TableNameBuilder.getTableTypeFromTableName(tableName);
+    AbstractTableConfig tableConfig;
+    if (tableType == CommonConstants.Helix.TableType.REALTIME) {
+      tableConfig = ZKMetadataProvider.getRealtimeTableConfig(_propertyStore, tableName);
+    } else {
+      tableConfig = ZKMetadataProvider.getOfflineTableConfig(_propertyStore, tableName);
+    }
+    SegmentPartitionConfig segmentPartitionConfig =
+        tableConfig == null ? null : tableConfig.getIndexingConfig().getSegmentPartitionConfig();
+    if (segmentPartitionConfig == null || segmentPartitionConfig.getColumnPartitionMap().isEmpty()) {
+      _segmentPartitionsMap.remove(tableName);
+      return;
+    }
+
+    // Only read the stats of the segment ZK metadata, to find the ones added or updated since the previous refresh
+    List<String> segmentNames = new ArrayList<>(externalView.getPartitionSet());
+    int numSegments = segmentNames.size();
+    List<String> segmentPaths = new ArrayList<>(numSegments);
+    for (String segmentName : segmentNames) {
+      segmentPaths.add(ZKMetadataProvider.constructPropertyStorePathForSegment(tableName, segmentName));
+    }
+    Stat[] stats = _propertyStore.getStats(segmentPaths, AccessOption.PERSISTENT);
+
+    Map<String, SegmentPartitions> previousSegmentPartitions = _segmentPartitionsMap.get(tableName);
+    if (previousSegmentPartitions == null) {
+      previousSegmentPartitions = Collections.emptyMap();
+    }
+    Map<String, SegmentPartitions> segmentPartitions = new HashMap<>();
+    List<String> segmentNamesToRead = new ArrayList<>();
+    List<String> segmentPathsToRead = new ArrayList<>();
+    for (int i = 0; i < numSegments; i++) {
+      Stat stat = stats[i];
+      if (stat == null) {
+        // No segment ZK metadata, the segment is not pruned
+        continue;
+      }
+      String segmentName = segmentNames.get(i);
+      SegmentPartitions previous = previousSegmentPartitions.get(segmentName);
+      if (previous != null && previous._zkVersion == stat.getVersion()) {
+        segmentPartitions.put(segmentName, previous);
+      } else {
+        segmentNamesToRead.add(segmentName);
+        segmentPathsToRead.add(segmentPaths.get(i));
+      }
+    }
+
+    int numSegmentsToRead = segmentPathsToRead.size();
+    if (numSegmentsToRead > 0) {
+      List<Stat> readStats = new ArrayList<>(numSegmentsToRead);
+      List<ZNRecord> znRecords = _propertyStore.get(segmentPathsToRead, readStats, AccessOption.PERSISTENT);
+      for (int i = 0; i < numSegmentsToRead; i++) {
+        ZNRecord znRecord = znRecords.get(i);
+        if (znRecord != null) {
+          segmentPartitions.put(segmentNamesToRead.get(i),
+              new SegmentPartitions(readStats.get(i).getVersion(), getColumnPartitionMap(tableType, znRecord)));
+        }
+      }
+    }
+    LOGGER.info("Updated the partitions of {} segments for table {}, read {} segment ZK metadata", numSegments,
+        tableName, numSegmentsToRead);
+    _segmentPartitionsMap.put(tableName, segmentPartitions);
+  }
+
+  @Nullable
+  private static Map<String, ColumnPartitionMetadata> getColumnPartitionMap(CommonConstants.Helix.TableType tableType,
+      ZNRecord znRecord) {
+    SegmentPartitionMetadata partitionMetadata;
+    if (tableType == CommonConstants.Helix.TableType.REALTIME) {
+      RealtimeSegmentZKMetadata segmentZKMetadata = new RealtimeSegmentZKMetadata(znRecord);
+      // The partitions of the consuming segments are only known once they are committed
+      if (segmentZKMetadata.getStatus() != CommonConstants.Segment.Realtime.Status.DONE) {
+        return null;
+      }
+      partitionMetadata = segmentZKMetadata.getPartitionMetadata();
+    } else {
+      partitionMetadata = new OfflineSegmentZKMetadata(znRecord).getPartitionMetadata();
+    }
+    return partitionMetadata == null ? null : partitionMetadata.getColumnPartitionMap();
+  }
+
+  public void removeTable(String tableName) {
+    _segmentPartitionsMap.remove(tableName);
+  }
+
+  /**
+   * Returns the given routing without the segments that cannot match the filter of the query, and without the servers
+   * left with no segment. The routing is returned as is when nothing can be pruned.
+   */
+  public Map<ServerInstance, SegmentIdSet> prune(String tableName, Map<ServerInstance, SegmentIdSet> routing,
+      @Nullable BrokerRequest brokerRequest) {
+    if (brokerRequest == null) {
+      return routing;
+    }
+    Map<String, SegmentPartitions> segmentPartitions = _segmentPartitionsMap.get(tableName);
+    if (segmentPartitions == null || segmentPartitions.isEmpty()) {
+      return routing;
+    }
+    PartitionFilter partitionFilter = PartitionFilter.forBrokerRequest(brokerRequest);
+    if (partitionFilter == null) {
+      return routing;
+    }
+
+    Map<ServerInstance, SegmentIdSet> prunedRouting = new HashMap<>();
+    boolean pruned = false;
+    for (Map.Entry<ServerInstance, SegmentIdSet> entry : routing.entrySet()) {
+      SegmentIdSet prunedSegmentIdSet = new SegmentIdSet();
+      for (SegmentId segmentId : entry.getValue().getSegments()) {
+        SegmentPartitions partitions = segmentPartitions.get(segmentId.getSegmentId());
+        if (partitions == null || partitions._columnPartitionMap == null || partitionFilter.canMatch(
+            partitions._columnPartitionMap)) {
+          prunedSegmentIdSet.addSegment(segmentId);
+        } else {
+          pruned = true;
+        }
+      }
+      if (!prunedSegmentIdSet.getSegments().isEmpty()) {
+        prunedRouting.put(entry.getKey(), prunedSegmentIdSet);
+      }
+    }
+    return pruned ? prunedRouting : routing;
+  }
+
+  /**
+   * The partitions of the partitioned columns of a segment, if known, along with the version of the segment ZK
+   * metadata they were read from.
+   */
+  private static class SegmentPartitions {
+    private final int _zkVersion;
+    private final Map<String, ColumnPartitionMetadata> _columnPartitionMap;
+
+    SegmentPartitions(int zkVersion, @Nullable Map<String, ColumnPartitionMetadata> columnPartitionMap) {
+      _zkVersion = zkVersion;
+      _columnPartitionMap = columnPartitionMap;
+    }
+  }
+}
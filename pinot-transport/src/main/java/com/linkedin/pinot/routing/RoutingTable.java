@@ -39,6 +39,16 @@ public interface RoutingTable {
    */
   boolean routingTableExists(String tableName);
 
+  /**
+   * Returns the version of the routing table for a given table. The version changes every time the routing table is
+   * rebuilt (e.g. segments get added, replaced or removed), so that anything derived from the data served for the
+   * table can be invalidated.
+   *
+   * @param tableName The table name for which to get the routing table version
+   * @return the routing table version, or -1 if there is no routing table for the table
+   */
+  long getRoutingTableVersion(String tableName);
+
   /**
    * Initialize and start the Routing table population
    */
@@ -15,7 +15,9 @@
  */
 package com.linkedin.pinot.routing;
 
+import com.linkedin.pinot.common.request.BrokerRequest;
 import java.util.List;
+import javax.annotation.Nullable;
 
 
 /**
@@ -29,6 +31,8 @@ public class RoutingTableLookupRequest {
 
   private final List<String> routingOptions;
 
+  private final BrokerRequest brokerRequest;
+
   public String getTableName() {
     return tableName;
   }
@@ -37,9 +41,23 @@ public class RoutingTableLookupRequest {
     return routingOptions;
   }
 
+  /**
+   * Returns the query to route, from which the segments that cannot match its filter can be pruned, or null if the
+   * routing does not depend on the query.
+   */
+  @Nullable
+  public BrokerRequest getBrokerRequest() {
+    return brokerRequest;
+  }
+
   public RoutingTableLookupRequest(String tableName, List<String> routingOptions) {
-    super();
+    this(tableName, routingOptions, null);
+  }
+
+  public RoutingTableLookupRequest(String tableName, List<String> routingOptions,
+      @Nullable BrokerRequest brokerRequest) {
     this.tableName = tableName;
     this.routingOptions = routingOptions;
+    this.brokerRequest = brokerRequest;
   }
 }
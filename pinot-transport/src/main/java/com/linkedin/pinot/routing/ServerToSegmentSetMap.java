@@ -23,6 +23,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import javax.annotation.Nullable;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -47,14 +48,37 @@ public class ServerToSegmentSetMap {
 
   private Map<String, Set<String>> _serverToSegmentSetMap;
   private Map<ServerInstance, SegmentIdSet> _routingTable;
+  private final Map<String, ServerInstance> _serverInstanceMap = new HashMap<>();
 
   public static final String NAME_PORT_DELIMITER = "_";
 
   public ServerToSegmentSetMap(Map<String, Set<String>> serverToSegmentSetMap) {
+    this(serverToSegmentSetMap, null);
+  }
+
+  /**
+   * Builds the routing of an updated routing table, reusing the segment id sets of the servers whose segment set is
+   * the very same set instance as in the previous routing table. Routing table builders that update their routing
+   * tables incrementally can thus copy only the segment sets of the servers that changed.
+   *
+   * @param serverToSegmentSetMap Map from server to the set of segments it serves
+   * @param previous Previous version of this routing table, or null to build the routing from scratch
+   */
+  public ServerToSegmentSetMap(Map<String, Set<String>> serverToSegmentSetMap,
+      @Nullable ServerToSegmentSetMap previous) {
     _serverToSegmentSetMap = serverToSegmentSetMap;
     _routingTable = new HashMap<ServerInstance, SegmentIdSet>();
     for (Entry<String, Set<String>> entry : _serverToSegmentSetMap.entrySet()) {
-      String namePortStr = entry.getKey().split(CommonConstants.Helix.PREFIX_OF_SERVER_INSTANCE)[1];
+      String server = entry.getKey();
+      Set<String> segmentSet = entry.getValue();
+      if (previous != null && previous._serverToSegmentSetMap.get(server) == segmentSet) {
+        ServerInstance serverInstance = previous._serverInstanceMap.get(server);
+        _serverInstanceMap.put(server, serverInstance);
+        _routingTable.put(serverInstance, previous._routingTable.get(serverInstance));
+        continue;
+      }
+
+      String namePortStr = server.split(CommonConstants.Helix.PREFIX_OF_SERVER_INSTANCE)[1];
       String hostName = namePortStr.split(NAME_PORT_DELIMITER)[0];
       int port;
       try {
@@ -65,9 +89,10 @@ public class ServerToSegmentSetMap {
 
       ServerInstance serverInstance = new ServerInstance(hostName, port);
       SegmentIdSet segmentIdSet = new SegmentIdSet();
-      for (String segmentId : entry.getValue()) {
+      for (String segmentId : segmentSet) {
         segmentIdSet.addSegment(new SegmentId(segmentId));
       }
+      _serverInstanceMap.put(server, serverInstance);
       _routingTable.put(serverInstance, segmentIdSet);
     }
   }
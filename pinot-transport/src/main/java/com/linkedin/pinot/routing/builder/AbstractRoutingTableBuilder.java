@@ -21,6 +21,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import javax.annotation.Nullable;
 import org.apache.helix.model.ExternalView;
 
 
@@ -95,4 +96,57 @@ public abstract class AbstractRoutingTableBuilder implements RoutingTableBuilder
 
     return replicas[i];
   }
+
+  /**
+   * Same as {@link #pickWeightedRandomReplica(Set, Map, Random)}, for builders that identify instances by int ids
+   * instead of instance names. Does not allocate anything.
+   *
+   * @param replicas The ids of the replicas from which to pick a replica
+   * @param isValidReplica Whether each instance id is a valid replica, or null if all replicas are valid
+   * @param instanceSegmentCounts The number of segments already assigned to each instance id for routing
+   * @param random The random number generator to use
+   * @return The id of the replica that was chosen, or -1 if there is no valid replica
+   */
+  protected int pickWeightedRandomReplica(int[] replicas, @Nullable boolean[] isValidReplica,
+      int[] instanceSegmentCounts, Random random) {
+    // Find maximum segment count assigned to a valid replica
+    int validReplicaCount = 0;
+    int lastValidReplica = -1;
+    int maxSegmentCount = 0;
+    for (int replica : replicas) {
+      if (isValidReplica == null || isValidReplica[replica]) {
+        validReplicaCount++;
+        lastValidReplica = replica;
+        maxSegmentCount = Math.max(maxSegmentCount, instanceSegmentCounts[replica]);
+      }
+    }
+
+    // No or only one valid replica?
+    if (validReplicaCount <= 1) {
+      return lastValidReplica;
+    }
+
+    // Compute total replica weight
+    int totalReplicaWeights = 0;
+    for (int replica : replicas) {
+      if (isValidReplica == null || isValidReplica[replica]) {
+        totalReplicaWeights += maxSegmentCount - instanceSegmentCounts[replica];
+      }
+    }
+
+    // If all replicas are equal, just pick a random replica, otherwise pick the proper replica given their weights
+    boolean pickUniformly = totalReplicaWeights == 0;
+    int randomValue = random.nextInt(pickUniformly ? validReplicaCount : totalReplicaWeights);
+    for (int replica : replicas) {
+      if (isValidReplica == null || isValidReplica[replica]) {
+        int replicaWeight = pickUniformly ? 1 : maxSegmentCount - instanceSegmentCounts[replica];
+        if (randomValue < replicaWeight) {
+          return replica;
+        }
+        randomValue -= replicaWeight;
+      }
+    }
+
+    return lastValidReplica;
+  }
 }
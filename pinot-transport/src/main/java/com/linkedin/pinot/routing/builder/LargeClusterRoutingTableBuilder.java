@@ -13,12 +13,13 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package com.linkedin.pinot.routing.builder;
 
+import com.google.common.collect.Sets;
 import com.linkedin.pinot.common.utils.CommonConstants;
 import com.linkedin.pinot.routing.ServerToSegmentSetMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -27,6 +28,7 @@ import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
@@ -51,8 +53,24 @@ public class LargeClusterRoutingTableBuilder extends AbstractRoutingTableBuilder
   /** Number of routing tables to generate during the optimization phase */
   private static final int ROUTING_TABLE_GENERATION_COUNT = 1000;
 
+  /**
+   * Maximum number of segments in all the routing tables of a table, which lowers the number of routing tables kept
+   * for tables with many segments so that their routing tables fit in memory
+   */
+  private static final int MAX_SEGMENT_COUNT_IN_ROUTING_TABLES = 5000000;
+
+  /**
+   * Maximum ratio of segments that changed since the routing tables were generated for them to be updated instead of
+   * generated again, as updates only move the segments that changed and thus do not rebalance the routing tables (e.g.
+   * when a server comes back up)
+   */
+  private static final float MAX_CHANGED_SEGMENT_RATIO_FOR_UPDATE = 0.1f;
+
   private final Random random;
 
+  /** State of the routing tables of each table, from which they are updated on external view changes */
+  private final Map<String, TableRoutingState> tableRoutingStates = new ConcurrentHashMap<>();
+
   public LargeClusterRoutingTableBuilder() {
     random = new Random();
   }
@@ -61,143 +79,221 @@ public class LargeClusterRoutingTableBuilder extends AbstractRoutingTableBuilder
     this.random = random;
   }
 
-  private class RoutingTableGenerator {
-    private Map<String, Set<String>> segmentToInstanceMap = new HashMap<>();
-    private Map<String, Set<String>> instanceToSegmentMap = new HashMap<>();
-    private Set<String> segmentsWithAtLeastOneOnlineReplica = new HashSet<>();
-    private Set<String> allValidInstancesSet;
-    private String[] instanceArray;
-    private Map<String, String[]> segmentToInstanceArrayMap;
-
-    private void init(ExternalView externalView, List<InstanceConfig> instanceConfigList) {
-      RoutingTableInstancePruner pruner = new RoutingTableInstancePruner(instanceConfigList);
-
-      // Compute the inverse of the external view
-      for (String segment : externalView.getPartitionSet()) {
-        Set<String> instancesForSegment = new HashSet<>();
-        segmentToInstanceMap.put(segment, instancesForSegment);
-
-        for (Map.Entry<String, String> instanceAndState : externalView.getStateMap(segment).entrySet()) {
-          String instance = instanceAndState.getKey();
-          String state = instanceAndState.getValue();
-
-          // Only consider partitions that are ONLINE
-          if (!CommonConstants.Helix.StateModel.SegmentOnlineOfflineStateModel.ONLINE.equals(state)) {
-            continue;
-          }
-
-          // Skip instances that are disabled
-          if (pruner.isInactive(instance)) {
-            continue;
-          }
-
-          // Add to the instance -> segments map
-          Set<String> segmentsForInstance = instanceToSegmentMap.get(instance);
+  /**
+   * Segments of a table, the replicas that can serve each of them and the routing tables built for them. Instances and
+   * segments are identified by int ids, so that routing tables can be generated and updated over primitive arrays.
+   */
+  private static class TableRoutingState {
+    // Instance ids are never reassigned, so that they stay valid across updates
+    private final Map<String, Integer> instanceIds = new HashMap<>();
+    private final List<String> instances = new ArrayList<>();
+
+    // Segment ids index the segments in the order of the last external view
+    private String[] segments = new String[0];
+    private Map<String, Integer> segmentIds = new HashMap<>();
+    // Sorted ids of the instances serving each segment that are ONLINE and neither disabled nor shutting down
+    private int[][] segmentReplicas = new int[0][];
+
+    // For each routing table: the instance id assigned to each segment id (-1 if none), the number of segments
+    // assigned to each instance id, and the routing table itself
+    private int[][] assignments;
+    private int[][] instanceSegmentCounts;
+    private List<Map<String, Set<String>>> serverToSegmentSetMaps;
+    private List<ServerToSegmentSetMap> routingTables;
+    private int changedSegmentCountSinceGeneration;
+
+    private int getInstanceId(String instance) {
+      Integer instanceId = instanceIds.get(instance);
+      if (instanceId == null) {
+        instanceId = instances.size();
+        instanceIds.put(instance, instanceId);
+        instances.add(instance);
+      }
+      return instanceId;
+    }
+  }
 
-          if (segmentsForInstance == null) {
-            segmentsForInstance = new HashSet<>();
-            instanceToSegmentMap.put(instance, segmentsForInstance);
-          }
+  /**
+   * Segments and replicas read from an external view, along with what changed since the previous external view.
+   */
+  private static class SegmentReplicas {
+    private final String[] segments;
+    private Map<String, Integer> segmentIds;
+    private final int[][] segmentReplicas;
+    // Ids of the segments that are new or whose replicas changed
+    private final int[] changedSegmentIds;
+    private int changedSegmentCount = 0;
+    // New id of each previous segment id, or -1 for segments that were removed
+    private final int[] previousToNewSegmentIds;
+    private int removedSegmentCount = 0;
+
+    private SegmentReplicas(int segmentCount, int previousSegmentCount) {
+      segments = new String[segmentCount];
+      segmentReplicas = new int[segmentCount][];
+      changedSegmentIds = new int[segmentCount];
+      previousToNewSegmentIds = new int[previousSegmentCount];
+      Arrays.fill(previousToNewSegmentIds, -1);
+    }
+  }
 
-          segmentsForInstance.add(segment);
+  private class RoutingTableGenerator {
+    private final int[][] segmentReplicas;
+    private final int[][] instanceToSegments;
+    private final int[] validInstances;
+    private final int[] segmentsWithAtLeastOneOnlineReplica;
+
+    // Buffers reused for every routing table generated
+    private final boolean[] instanceInRoutingTable;
+    private final boolean[] segmentHandledByServers;
+    private final int[] segmentReplicaCounts;
+    private final int[] replicaCountOffsets;
+    private final int[] segmentsInAscendingReplicaCount;
+
+    private RoutingTableGenerator(int[][] segmentReplicas, int instanceCount) {
+      this.segmentReplicas = segmentReplicas;
+      int segmentCount = segmentReplicas.length;
+
+      // Compute the inverse of the segment replicas
+      int[] instanceSegmentCounts = new int[instanceCount];
+      int segmentWithReplicaCount = 0;
+      int maxReplicaCount = 0;
+      for (int[] replicas : segmentReplicas) {
+        for (int replica : replicas) {
+          instanceSegmentCounts[replica]++;
+        }
+        if (replicas.length > 0) {
+          segmentWithReplicaCount++;
+        }
+        maxReplicaCount = Math.max(maxReplicaCount, replicas.length);
+      }
 
-          // Add to the segment -> instances map
-          instancesForSegment.add(instance);
+      int validInstanceCount = 0;
+      instanceToSegments = new int[instanceCount][];
+      for (int instance = 0; instance < instanceCount; instance++) {
+        instanceToSegments[instance] = new int[instanceSegmentCounts[instance]];
+        if (instanceSegmentCounts[instance] > 0) {
+          validInstanceCount++;
+        }
+      }
 
-          // Add to the valid segments map
-          segmentsWithAtLeastOneOnlineReplica.add(segment);
+      validInstances = new int[validInstanceCount];
+      for (int instance = 0, i = 0; instance < instanceCount; instance++) {
+        if (instanceSegmentCounts[instance] > 0) {
+          validInstances[i++] = instance;
         }
       }
 
-      allValidInstancesSet = instanceToSegmentMap.keySet();
-      instanceArray = allValidInstancesSet.toArray(new String[allValidInstancesSet.size()]);
+      segmentsWithAtLeastOneOnlineReplica = new int[segmentWithReplicaCount];
+      Arrays.fill(instanceSegmentCounts, 0);
+      for (int segment = 0, i = 0; segment < segmentCount; segment++) {
+        int[] replicas = segmentReplicas[segment];
+        for (int replica : replicas) {
+          instanceToSegments[replica][instanceSegmentCounts[replica]++] = segment;
+        }
+        if (replicas.length > 0) {
+          segmentsWithAtLeastOneOnlineReplica[i++] = segment;
+        }
+      }
 
-      segmentToInstanceArrayMap = new HashMap<>();
+      instanceInRoutingTable = new boolean[instanceCount];
+      segmentHandledByServers = new boolean[segmentCount];
+      segmentReplicaCounts = new int[segmentCount];
+      replicaCountOffsets = new int[maxReplicaCount + 2];
+      segmentsInAscendingReplicaCount = new int[segmentWithReplicaCount];
     }
 
-    private Map<String, Set<String>> generateRoutingTable() {
-      // List of segments that have no instance serving them
-      Set<String> segmentsNotHandledByServers = new HashSet<>(segmentsWithAtLeastOneOnlineReplica);
-
-      // List of servers in this routing table
-      Set<String> instancesInRoutingTable = new HashSet<>(TARGET_SERVER_COUNT_PER_QUERY);
+    /**
+     * Generates a routing table into the given arrays.
+     *
+     * @param random The random number generator to use
+     * @param assignment Array in which to store the instance id assigned to each segment id, or -1 if none
+     * @param instanceSegmentCounts Array in which to store the number of segments assigned to each instance id
+     * @return The variance of the number of segments assigned per server of the routing table
+     */
+    private float generateRoutingTable(Random random, int[] assignment, int[] instanceSegmentCounts) {
+      Arrays.fill(instanceInRoutingTable, false);
+      Arrays.fill(segmentHandledByServers, false);
+
+      // Number of segments that have no instance serving them
+      int segmentsNotHandledByServersCount = segmentsWithAtLeastOneOnlineReplica.length;
 
       // If there are not enough instances, add them all
-      if (instanceArray.length <= TARGET_SERVER_COUNT_PER_QUERY) {
-        instancesInRoutingTable.addAll(allValidInstancesSet);
-        segmentsNotHandledByServers.clear();
+      if (validInstances.length <= TARGET_SERVER_COUNT_PER_QUERY) {
+        for (int instance : validInstances) {
+          instanceInRoutingTable[instance] = true;
+        }
+        segmentsNotHandledByServersCount = 0;
       } else {
         // Otherwise add TARGET_SERVER_COUNT_PER_QUERY instances
-        while (instancesInRoutingTable.size() < TARGET_SERVER_COUNT_PER_QUERY) {
-          String randomInstance = instanceArray[random.nextInt(instanceArray.length)];
-          instancesInRoutingTable.add(randomInstance);
-          segmentsNotHandledByServers.removeAll(instanceToSegmentMap.get(randomInstance));
+        int instancesInRoutingTableCount = 0;
+        while (instancesInRoutingTableCount < TARGET_SERVER_COUNT_PER_QUERY) {
+          int randomInstance = validInstances[random.nextInt(validInstances.length)];
+          if (!instanceInRoutingTable[randomInstance]) {
+            instancesInRoutingTableCount++;
+            segmentsNotHandledByServersCount -= addInstanceToRoutingTable(randomInstance);
+          }
         }
       }
 
       // If there are segments that have no instance that can serve them, add a server to serve them
-      while (!segmentsNotHandledByServers.isEmpty()) {
-        // Get the instances in array format
-        String segmentNotHandledByServers = segmentsNotHandledByServers.iterator().next();
-
-        String[] instancesArrayForThisSegment = segmentToInstanceArrayMap.get(segmentNotHandledByServers);
-
-        if (instancesArrayForThisSegment == null) {
-          Set<String> instanceSet = segmentToInstanceMap.get(segmentNotHandledByServers);
-          instancesArrayForThisSegment = instanceSet.toArray(new String[instanceSet.size()]);
-          segmentToInstanceArrayMap.put(segmentNotHandledByServers, instancesArrayForThisSegment);
+      int i = 0;
+      while (segmentsNotHandledByServersCount > 0) {
+        int segmentNotHandledByServers = segmentsWithAtLeastOneOnlineReplica[i++];
+        if (segmentHandledByServers[segmentNotHandledByServers]) {
+          continue;
         }
 
         // Pick a random instance that can serve this segment
-        String instance = instancesArrayForThisSegment[random.nextInt(instancesArrayForThisSegment.length)];
-        instancesInRoutingTable.add(instance);
-        segmentsNotHandledByServers.removeAll(instanceToSegmentMap.get(instance));
+        int[] replicas = segmentReplicas[segmentNotHandledByServers];
+        segmentsNotHandledByServersCount -= addInstanceToRoutingTable(replicas[random.nextInt(replicas.length)]);
+      }
+
+      // Sort all the segments to be used during assignment in ascending order of replicas in this routing table
+      Arrays.fill(replicaCountOffsets, 0);
+      for (int segment : segmentsWithAtLeastOneOnlineReplica) {
+        int replicaCount = 0;
+        for (int replica : segmentReplicas[segment]) {
+          if (instanceInRoutingTable[replica]) {
+            replicaCount++;
+          }
+        }
+        segmentReplicaCounts[segment] = replicaCount;
+        replicaCountOffsets[replicaCount + 1]++;
+      }
+      for (int replicaCount = 1; replicaCount < replicaCountOffsets.length; replicaCount++) {
+        replicaCountOffsets[replicaCount] += replicaCountOffsets[replicaCount - 1];
+      }
+      for (int segment : segmentsWithAtLeastOneOnlineReplica) {
+        segmentsInAscendingReplicaCount[replicaCountOffsets[segmentReplicaCounts[segment]]++] = segment;
       }
 
-      // Sort all the segments to be used during assignment in ascending order of replicas
-      int segmentCount = Math.max(segmentsWithAtLeastOneOnlineReplica.size(), 1);
-      PriorityQueue<Pair<String, Set<String>>> segmentToReplicaSetQueue = new PriorityQueue<>(segmentCount,
-          new Comparator<Pair<String, Set<String>>>() {
-            @Override
-            public int compare(Pair<String, Set<String>> firstPair, Pair<String, Set<String>> secondPair) {
-              return Integer.compare(firstPair.getRight().size(), secondPair.getRight().size());
-            }
-          });
-
-      for (String segment : segmentsWithAtLeastOneOnlineReplica) {
-        // Instances for this segment is the intersection of all instances for this segment and the instances that we
-        // have in this routing table
-        Set<String> instancesForThisSegment = new HashSet<>(segmentToInstanceMap.get(segment));
-        instancesForThisSegment.retainAll(instancesInRoutingTable);
-
-        segmentToReplicaSetQueue.add(new ImmutablePair<>(segment, instancesForThisSegment));
+      // Create the routing table, picking a replica for each segment
+      Arrays.fill(assignment, -1);
+      Arrays.fill(instanceSegmentCounts, 0);
+      for (int segment : segmentsInAscendingReplicaCount) {
+        int instance =
+            pickWeightedRandomReplica(segmentReplicas[segment], instanceInRoutingTable, instanceSegmentCounts, random);
+        assignment[segment] = instance;
+        instanceSegmentCounts[instance]++;
       }
 
-      // Create the routing table from the segment -> instances priority queue
-      Map<String, Set<String>> instanceToSegmentSetMap = new HashMap<>();
-      int[] replicas = new int[10];
-      while(!segmentToReplicaSetQueue.isEmpty()) {
-        Pair<String, Set<String>> segmentAndReplicaSet = segmentToReplicaSetQueue.poll();
-        String segment = segmentAndReplicaSet.getKey();
-        Set<String> replicaSet = segmentAndReplicaSet.getValue();
-        replicas[replicaSet.size() - 1]++;
-
-        String instance = pickWeightedRandomReplica(replicaSet, instanceToSegmentSetMap, random);
-        if (instance != null) {
-          Set<String> segmentsAssignedToInstance = instanceToSegmentSetMap.get(instance);
-
-          if (segmentsAssignedToInstance == null) {
-            segmentsAssignedToInstance = new HashSet<>();
-            instanceToSegmentSetMap.put(instance, segmentsAssignedToInstance);
-          }
+      return computeVariance(instanceSegmentCounts);
+    }
 
-          segmentsAssignedToInstance.add(segment);
-        } else {
-          LOGGER.error("null replica while trying to find replicas for segment {}, this shouldn't happen", segment);
+    /**
+     * Adds an instance to the routing table, and returns the number of segments that it handles that were not handled
+     * by the instances already in the routing table.
+     */
+    private int addInstanceToRoutingTable(int instance) {
+      instanceInRoutingTable[instance] = true;
+      int newlyHandledSegmentCount = 0;
+      for (int segment : instanceToSegments[instance]) {
+        if (!segmentHandledByServers[segment]) {
+          segmentHandledByServers[segment] = true;
+          newlyHandledSegmentCount++;
         }
       }
-
-      return instanceToSegmentSetMap;
+      return newlyHandledSegmentCount;
     }
   }
 
@@ -256,66 +352,371 @@ public class LargeClusterRoutingTableBuilder extends AbstractRoutingTableBuilder
     // Given that we can generate routing tables at will, we then generate many routing tables and use them to optimize
     // according to two criteria: the variance in workload per server for any individual table as well as the variance
     // in workload per server across all the routing tables. To do so, we generate an initial set of routing tables
-    // according to a per-routing table metric and discard the worst routing tables.
+    // according to a per-routing table metric and discard the worst routing tables. Routing tables are generated over
+    // int ids of the segments and instances, and only the ones that are kept are turned into segment sets.
+    //
+    // Generating all the routing tables again on every external view change would take seconds for tables with
+    // hundreds of thousands of segments, so the routing tables are instead updated when few segments changed: only
+    // the segments that were added, removed or whose replicas changed are reassigned in each routing table, to one of
+    // their replicas that is preferably already in the routing table, and only the segment sets of the servers that
+    // gained or lost segments are copied.
+
+    TableRoutingState tableRoutingState = tableRoutingStates.get(tableName);
+    if (tableRoutingState == null) {
+      tableRoutingState = new TableRoutingState();
+      tableRoutingStates.put(tableName, tableRoutingState);
+    }
+
+    synchronized (tableRoutingState) {
+      try {
+        return computeRoutingTables(tableName, tableRoutingState, externalView, instanceConfigList);
+      } catch (RuntimeException e) {
+        // The state may have been partially updated, start over on the next external view change
+        tableRoutingStates.remove(tableName);
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Drops the state kept to update the routing tables of the given table.
+   *
+   * @param tableName The table name for which to drop the state
+   */
+  public void removeTable(String tableName) {
+    tableRoutingStates.remove(tableName);
+  }
+
+  private List<ServerToSegmentSetMap> computeRoutingTables(String tableName, TableRoutingState tableRoutingState,
+      ExternalView externalView, List<InstanceConfig> instanceConfigList) {
+    long startTimeMillis = System.currentTimeMillis();
+    SegmentReplicas segmentReplicas = readSegmentReplicas(tableRoutingState, externalView, instanceConfigList);
+    int segmentCount = segmentReplicas.segments.length;
+    int routingTableCount =
+        Math.max(Math.min(ROUTING_TABLE_COUNT, MAX_SEGMENT_COUNT_IN_ROUTING_TABLES / Math.max(segmentCount, 1)), 1);
+
+    int changedSegmentCountSinceGeneration = tableRoutingState.changedSegmentCountSinceGeneration
+        + segmentReplicas.changedSegmentCount + segmentReplicas.removedSegmentCount;
+    boolean canUpdate = tableRoutingState.routingTables != null
+        && tableRoutingState.routingTables.size() == routingTableCount
+        && changedSegmentCountSinceGeneration <= MAX_CHANGED_SEGMENT_RATIO_FOR_UPDATE * segmentCount;
+
+    if (canUpdate) {
+      tableRoutingState.changedSegmentCountSinceGeneration = changedSegmentCountSinceGeneration;
+      updateRoutingTables(tableRoutingState, segmentReplicas);
+      LOGGER.info("Updated {} routing tables for table {} with {} changed and {} removed segments in {} ms",
+          routingTableCount, tableName, segmentReplicas.changedSegmentCount, segmentReplicas.removedSegmentCount,
+          System.currentTimeMillis() - startTimeMillis);
+    } else {
+      tableRoutingState.segments = segmentReplicas.segments;
+      tableRoutingState.segmentIds = segmentReplicas.segmentIds;
+      tableRoutingState.segmentReplicas = segmentReplicas.segmentReplicas;
+      tableRoutingState.changedSegmentCountSinceGeneration = 0;
+      generateRoutingTables(tableRoutingState, routingTableCount);
+      LOGGER.info("Generated {} routing tables for table {} with {} segments in {} ms", routingTableCount, tableName,
+          segmentCount, System.currentTimeMillis() - startTimeMillis);
+    }
 
-    RoutingTableGenerator routingTableGenerator = new RoutingTableGenerator();
-    routingTableGenerator.init(externalView, instanceConfigList);
+    return new ArrayList<>(tableRoutingState.routingTables);
+  }
+
+  /**
+   * Reads the valid replicas of each segment from the external view, and compares them with the previous ones.
+   */
+  private SegmentReplicas readSegmentReplicas(TableRoutingState tableRoutingState, ExternalView externalView,
+      List<InstanceConfig> instanceConfigList) {
+    RoutingTableInstancePruner pruner = new RoutingTableInstancePruner(instanceConfigList);
+    Map<String, Map<String, String>> segmentToStateMap = externalView.getRecord().getMapFields();
+    SegmentReplicas segmentReplicas =
+        new SegmentReplicas(segmentToStateMap.size(), tableRoutingState.segments.length);
+
+    // Whether each instance id is active (1) or not (-1), only checked once per instance
+    byte[] instanceActiveStates = new byte[tableRoutingState.instances.size()];
+    int[] replicaBuffer = new int[16];
+    boolean sameSegmentIds = segmentToStateMap.size() == tableRoutingState.segments.length;
+    int segmentId = 0;
+    for (Map.Entry<String, Map<String, String>> segmentAndStateMap : segmentToStateMap.entrySet()) {
+      String segment = segmentAndStateMap.getKey();
+      int replicaCount = 0;
+      for (Map.Entry<String, String> instanceAndState : segmentAndStateMap.getValue().entrySet()) {
+        // Only consider partitions that are ONLINE
+        if (!CommonConstants.Helix.StateModel.SegmentOnlineOfflineStateModel.ONLINE.equals(
+            instanceAndState.getValue())) {
+          continue;
+        }
 
-    PriorityQueue<Pair<Map<String, Set<String>>, Float>> topRoutingTables = new PriorityQueue<>(ROUTING_TABLE_COUNT, new Comparator<Pair<Map<String, Set<String>>, Float>>() {
-      @Override
-      public int compare(Pair<Map<String, Set<String>>, Float> left, Pair<Map<String, Set<String>>, Float> right) {
-        // Float.compare sorts in ascending order and we want a max heap, so we need to return the negative of the comparison
-        return -Float.compare(left.getValue(), right.getValue());
+        // Skip instances that are disabled
+        String instance = instanceAndState.getKey();
+        int instanceId = tableRoutingState.getInstanceId(instance);
+        if (instanceId >= instanceActiveStates.length) {
+          instanceActiveStates = Arrays.copyOf(instanceActiveStates, tableRoutingState.instances.size());
+        }
+        if (instanceActiveStates[instanceId] == 0) {
+          instanceActiveStates[instanceId] = pruner.isInactive(instance) ? (byte) -1 : (byte) 1;
+        }
+        if (instanceActiveStates[instanceId] == -1) {
+          continue;
+        }
+
+        if (replicaCount == replicaBuffer.length) {
+          replicaBuffer = Arrays.copyOf(replicaBuffer, replicaCount * 2);
+        }
+        replicaBuffer[replicaCount++] = instanceId;
+      }
+      Arrays.sort(replicaBuffer, 0, replicaCount);
+
+      // Keep the previous replicas of the segment if they did not change
+      int[] replicas = null;
+      Integer previousSegmentId = tableRoutingState.segmentIds.get(segment);
+      if (previousSegmentId == null || previousSegmentId != segmentId) {
+        sameSegmentIds = false;
+      }
+      if (previousSegmentId != null) {
+        segmentReplicas.previousToNewSegmentIds[previousSegmentId] = segmentId;
+        int[] previousReplicas = tableRoutingState.segmentReplicas[previousSegmentId];
+        if (areSameReplicas(previousReplicas, replicaBuffer, replicaCount)) {
+          replicas = previousReplicas;
+        }
+      }
+      if (replicas == null) {
+        replicas = Arrays.copyOf(replicaBuffer, replicaCount);
+        segmentReplicas.changedSegmentIds[segmentReplicas.changedSegmentCount++] = segmentId;
+      }
+
+      segmentReplicas.segments[segmentId] = segment;
+      segmentReplicas.segmentReplicas[segmentId] = replicas;
+      segmentId++;
+    }
+
+    // Segment ids only need to be indexed again if segments were added, removed or reordered
+    if (sameSegmentIds) {
+      segmentReplicas.segmentIds = tableRoutingState.segmentIds;
+    } else {
+      segmentReplicas.segmentIds = new HashMap<>(Math.max(segmentId * 4 / 3 + 1, 16));
+      for (int i = 0; i < segmentId; i++) {
+        segmentReplicas.segmentIds.put(segmentReplicas.segments[i], i);
       }
-    });
+    }
 
-    for (int i = 0; i < ROUTING_TABLE_COUNT; i++) {
-      topRoutingTables.add(generateRoutingTableWithMetric(routingTableGenerator));
+    for (int newSegmentId : segmentReplicas.previousToNewSegmentIds) {
+      if (newSegmentId == -1) {
+        segmentReplicas.removedSegmentCount++;
+      }
     }
+    return segmentReplicas;
+  }
 
-    // Generate routing more tables and keep the ROUTING_TABLE_COUNT top ones
-    for(int i = 0; i < (ROUTING_TABLE_GENERATION_COUNT - ROUTING_TABLE_COUNT); ++i) {
-      Pair<Map<String, Set<String>>, Float> newRoutingTable = generateRoutingTableWithMetric(routingTableGenerator);
-      Pair<Map<String, Set<String>>, Float> worstRoutingTable = topRoutingTables.peek();
+  /**
+   * Generates the routing tables from scratch, keeping the ones with the lowest variance in workload per server.
+   */
+  private void generateRoutingTables(TableRoutingState tableRoutingState, int routingTableCount) {
+    int segmentCount = tableRoutingState.segments.length;
+    int instanceCount = tableRoutingState.instances.size();
+    RoutingTableGenerator routingTableGenerator =
+        new RoutingTableGenerator(tableRoutingState.segmentReplicas, instanceCount);
+
+    // Routing tables are only kept as the seed used to generate them, and generated again if they are among the best
+    PriorityQueue<Pair<Long, Float>> topRoutingTables = new PriorityQueue<>(routingTableCount,
+        new Comparator<Pair<Long, Float>>() {
+          @Override
+          public int compare(Pair<Long, Float> left, Pair<Long, Float> right) {
+            // Float.compare sorts in ascending order and we want a max heap, so we need to return the negative of the comparison
+            return -Float.compare(left.getValue(), right.getValue());
+          }
+        });
+
+    int[] assignment = new int[segmentCount];
+    int[] instanceSegmentCounts = new int[instanceCount];
+    for (int i = 0; i < routingTableCount; i++) {
+      long seed = random.nextLong();
+      float variance = routingTableGenerator.generateRoutingTable(new Random(seed), assignment, instanceSegmentCounts);
+      topRoutingTables.add(new ImmutablePair<>(seed, variance));
+    }
+
+    // Generate routing more tables and keep the routingTableCount top ones
+    int routingTableGenerationCount = routingTableCount * ROUTING_TABLE_GENERATION_COUNT / ROUTING_TABLE_COUNT;
+    for (int i = 0; i < (routingTableGenerationCount - routingTableCount); ++i) {
+      long seed = random.nextLong();
+      float variance = routingTableGenerator.generateRoutingTable(new Random(seed), assignment, instanceSegmentCounts);
 
       // If the new routing table is better than the worst one, keep it
-      if (newRoutingTable.getRight() < worstRoutingTable.getRight()) {
+      if (variance < topRoutingTables.peek().getRight()) {
         topRoutingTables.poll();
-        topRoutingTables.add(newRoutingTable);
+        topRoutingTables.add(new ImmutablePair<>(seed, variance));
       }
     }
 
-    // Return the best routing tables
-    List<ServerToSegmentSetMap> routingTables = new ArrayList<>(topRoutingTables.size());
-    while(!topRoutingTables.isEmpty()) {
-      Pair<Map<String, Set<String>>, Float> routingTableWithMetric = topRoutingTables.poll();
-      routingTables.add(new ServerToSegmentSetMap(routingTableWithMetric.getKey()));
+    // Generate the best routing tables again and keep them
+    tableRoutingState.assignments = new int[routingTableCount][];
+    tableRoutingState.instanceSegmentCounts = new int[routingTableCount][];
+    tableRoutingState.serverToSegmentSetMaps = new ArrayList<>(routingTableCount);
+    tableRoutingState.routingTables = new ArrayList<>(routingTableCount);
+    for (int i = 0; i < routingTableCount; i++) {
+      assignment = new int[segmentCount];
+      instanceSegmentCounts = new int[instanceCount];
+      routingTableGenerator.generateRoutingTable(new Random(topRoutingTables.poll().getKey()), assignment,
+          instanceSegmentCounts);
+
+      Map<String, Set<String>> serverToSegmentSetMap = new HashMap<>();
+      for (int segment = 0; segment < segmentCount; segment++) {
+        int instance = assignment[segment];
+        if (instance != -1) {
+          String server = tableRoutingState.instances.get(instance);
+          Set<String> segmentsForServer = serverToSegmentSetMap.get(server);
+          if (segmentsForServer == null) {
+            segmentsForServer = Sets.newHashSetWithExpectedSize(instanceSegmentCounts[instance]);
+            serverToSegmentSetMap.put(server, segmentsForServer);
+          }
+          segmentsForServer.add(tableRoutingState.segments[segment]);
+        }
+      }
+
+      tableRoutingState.assignments[i] = assignment;
+      tableRoutingState.instanceSegmentCounts[i] = instanceSegmentCounts;
+      tableRoutingState.serverToSegmentSetMaps.add(serverToSegmentSetMap);
+      tableRoutingState.routingTables.add(new ServerToSegmentSetMap(serverToSegmentSetMap));
     }
+  }
 
-    return routingTables;
+  /**
+   * Updates the routing tables by only reassigning the segments that changed, leaving the routing tables in which no
+   * segment needs to be reassigned as is.
+   */
+  private void updateRoutingTables(TableRoutingState tableRoutingState, SegmentReplicas segmentReplicas) {
+    String[] previousSegments = tableRoutingState.segments;
+    int segmentCount = segmentReplicas.segments.length;
+    int instanceCount = tableRoutingState.instances.size();
+    boolean[] instanceInRoutingTable = new boolean[instanceCount];
+
+    for (int i = 0; i < tableRoutingState.routingTables.size(); i++) {
+      int[] previousAssignment = tableRoutingState.assignments[i];
+      int[] instanceSegmentCounts = Arrays.copyOf(tableRoutingState.instanceSegmentCounts[i], instanceCount);
+      for (int instance = 0; instance < instanceCount; instance++) {
+        instanceInRoutingTable[instance] = instanceSegmentCounts[instance] > 0;
+      }
+
+      // Segment sets are copied before being modified, as the previous routing table may still be used for queries
+      Map<String, Set<String>> serverToSegmentSetMap =
+          new HashMap<>(tableRoutingState.serverToSegmentSetMaps.get(i));
+      Set<String> modifiedServers = new HashSet<>();
+
+      // Carry over the segments that are still there, and remove the other ones
+      int[] assignment = new int[segmentCount];
+      Arrays.fill(assignment, -1);
+      for (int previousSegment = 0; previousSegment < previousAssignment.length; previousSegment++) {
+        int instance = previousAssignment[previousSegment];
+        if (instance == -1) {
+          continue;
+        }
+        int segment = segmentReplicas.previousToNewSegmentIds[previousSegment];
+        if (segment != -1) {
+          assignment[segment] = instance;
+        } else {
+          String server = tableRoutingState.instances.get(instance);
+          String segmentName = previousSegments[previousSegment];
+          getSegmentSetToModify(serverToSegmentSetMap, modifiedServers, server).remove(segmentName);
+          instanceInRoutingTable[instance] = --instanceSegmentCounts[instance] > 0;
+        }
+      }
+
+      // Reassign the segments whose replica is no longer valid, preferably to a replica already in the routing table
+      for (int j = 0; j < segmentReplicas.changedSegmentCount; j++) {
+        int segment = segmentReplicas.changedSegmentIds[j];
+        String segmentName = segmentReplicas.segments[segment];
+        int[] replicas = segmentReplicas.segmentReplicas[segment];
+        int previousInstance = assignment[segment];
+        if (previousInstance != -1) {
+          if (Arrays.binarySearch(replicas, previousInstance) >= 0) {
+            continue;
+          }
+          String server = tableRoutingState.instances.get(previousInstance);
+          getSegmentSetToModify(serverToSegmentSetMap, modifiedServers, server).remove(segmentName);
+          instanceInRoutingTable[previousInstance] = --instanceSegmentCounts[previousInstance] > 0;
+          assignment[segment] = -1;
+        }
+        if (replicas.length == 0) {
+          continue;
+        }
+
+        int instance = pickWeightedRandomReplica(replicas, instanceInRoutingTable, instanceSegmentCounts, random);
+        if (instance == -1) {
+          instance = replicas[random.nextInt(replicas.length)];
+          instanceInRoutingTable[instance] = true;
+        }
+        String server = tableRoutingState.instances.get(instance);
+        getSegmentSetToModify(serverToSegmentSetMap, modifiedServers, server).add(segmentName);
+        instanceSegmentCounts[instance]++;
+        assignment[segment] = instance;
+      }
+
+      tableRoutingState.assignments[i] = assignment;
+      tableRoutingState.instanceSegmentCounts[i] = instanceSegmentCounts;
+      if (!modifiedServers.isEmpty()) {
+        for (String server : modifiedServers) {
+          if (serverToSegmentSetMap.get(server).isEmpty()) {
+            serverToSegmentSetMap.remove(server);
+          }
+        }
+        ServerToSegmentSetMap previousRoutingTable = tableRoutingState.routingTables.get(i);
+        tableRoutingState.serverToSegmentSetMaps.set(i, serverToSegmentSetMap);
+        tableRoutingState.routingTables.set(i, new ServerToSegmentSetMap(serverToSegmentSetMap, previousRoutingTable));
+      }
+    }
+
+    tableRoutingState.segments = segmentReplicas.segments;
+    tableRoutingState.segmentIds = segmentReplicas.segmentIds;
+    tableRoutingState.segmentReplicas = segmentReplicas.segmentReplicas;
   }
 
-  private Pair<Map<String, Set<String>>, Float> generateRoutingTableWithMetric(RoutingTableGenerator routingTableGenerator) {
-    Map<String, Set<String>> routingTable = routingTableGenerator.generateRoutingTable();
+  /**
+   * Returns the segment set of the given server, copying it first if it was not modified yet.
+   */
+  private static Set<String> getSegmentSetToModify(Map<String, Set<String>> serverToSegmentSetMap,
+      Set<String> modifiedServers, String server) {
+    Set<String> segmentSet = serverToSegmentSetMap.get(server);
+    if (modifiedServers.add(server)) {
+      segmentSet = segmentSet == null ? new HashSet<String>() : new HashSet<>(segmentSet);
+      serverToSegmentSetMap.put(server, segmentSet);
+    }
+    return segmentSet;
+  }
+
+  private static boolean areSameReplicas(int[] replicas, int[] replicaBuffer, int replicaCount) {
+    if (replicas.length != replicaCount) {
+      return false;
+    }
+    for (int i = 0; i < replicaCount; i++) {
+      if (replicas[i] != replicaBuffer[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Computes the variance of the number of segments allocated per server, over the servers that have segments.
+   */
+  private static float computeVariance(int[] instanceSegmentCounts) {
     int segmentCount = 0;
     int serverCount = 0;
 
     // Compute the number of segments and servers (for the average part of the variance)
-    for (Set<String> segmentsForServer : routingTable.values()) {
-      int segmentCountForServer = segmentsForServer.size();
-      segmentCount += segmentCountForServer;
-      serverCount++;
+    for (int segmentCountForServer : instanceSegmentCounts) {
+      if (segmentCountForServer > 0) {
+        segmentCount += segmentCountForServer;
+        serverCount++;
+      }
     }
 
-    // Compute the variance of the number of segments allocated per server
     float averageSegmentCount = ((float) segmentCount) / serverCount;
     float variance = 0.0f;
-    for (Set<String> segmentsForServer : routingTable.values()) {
-      int segmentCountForServer = segmentsForServer.size();
-      float difference = segmentCountForServer - averageSegmentCount;
-      variance += difference * difference;
+    for (int segmentCountForServer : instanceSegmentCounts) {
+      if (segmentCountForServer > 0) {
+        float difference = segmentCountForServer - averageSegmentCount;
+        variance += difference * difference;
+      }
     }
 
-    return new ImmutablePair<>(routingTable, variance);
+    return variance;
   }
 }
@@ -0,0 +1,297 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.routing;
+
+import com.linkedin.pinot.common.config.AbstractTableConfig;
+import com.linkedin.pinot.common.metadata.ZKMetadataProvider;
+import com.linkedin.pinot.common.metadata.segment.ColumnPartitionMetadata;
+import com.linkedin.pinot.common.metadata.segment.LLCRealtimeSegmentZKMetadata;
+import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
+import com.linkedin.pinot.common.metadata.segment.SegmentPartitionMetadata;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.utils.CommonConstants;
+import com.linkedin.pinot.common.utils.LLCSegmentName;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import com.linkedin.pinot.transport.common.SegmentId;
+import com.linkedin.pinot.transport.common.SegmentIdSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.manager.zk.ZkBaseDataAccessor;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.InstanceConfig;
+import org.apache.helix.store.zk.ZkHelixPropertyStore;
+import org.apache.zookeeper.data.Stat;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class PartitionAwareRoutingPrunerTest {
+  private static final Pql2Compiler COMPILER = new Pql2Compiler();
+  private static final int NUM_PARTITIONS = 4;
+  private static final String SERVER_0 = "Server_localhost_1000";
+  private static final String SERVER_1 = "Server_localhost_1001";
+
+  @Test
+  public void testOfflineTable() throws Exception {
+    String tableName = "myTable_OFFLINE";
+    FakePropertyStore propertyStore = new FakePropertyStore();
+    propertyStore.setContents(ZKMetadataProvider.constructPropertyStorePathForResourceConfig(tableName),
+        AbstractTableConfig.toZnRecord(AbstractTableConfig.init(getTableConfigJson("myTable", "OFFLINE"))));
+
+    // Segments of partitions 0 and 2 on server 0, of partitions 1 and 3 on server 1, and a segment without partition
+    // metadata on server 0
+    ExternalView externalView = new ExternalView(tableName);
+    for (int partition = 0; partition < NUM_PARTITIONS; partition++) {
+      String segmentName = "segment_" + partition;
+      OfflineSegmentZKMetadata segmentZKMetadata = new OfflineSegmentZKMetadata();
+      segmentZKMetadata.setSegmentName(segmentName);
+      segmentZKMetadata.setTableName("myTable");
+      segmentZKMetadata.setPartitionMetadata(new SegmentPartitionMetadata(Collections.singletonMap("memberId",
+          new ColumnPartitionMetadata("Modulo", NUM_PARTITIONS, Collections.singleton(partition)))));
+      propertyStore.setContents(ZKMetadataProvider.constructPropertyStorePathForSegment(tableName, segmentName),
+          segmentZKMetadata.toZNRecord());
+      externalView.setState(segmentName, partition % 2 == 0 ? SERVER_0 : SERVER_1, "ONLINE");
+    }
+    OfflineSegmentZKMetadata segmentZKMetadata = new OfflineSegmentZKMetadata();
+    segmentZKMetadata.setSegmentName("segment_unpartitioned");
+    segmentZKMetadata.setTableName("myTable");
+    propertyStore.setContents(
+        ZKMetadataProvider.constructPropertyStorePathForSegment(tableName, "segment_unpartitioned"),
+        segmentZKMetadata.toZNRecord());
+    externalView.setState("segment_unpartitioned", SERVER_0, "ONLINE");
+
+    HelixExternalViewBasedRouting routingTable =
+        new HelixExternalViewBasedRouting(propertyStore, new PercentageBasedRoutingTableSelector(), null,
+            new BaseConfiguration());
+    List<InstanceConfig> instanceConfigs = Arrays.asList(new InstanceConfig(SERVER_0), new InstanceConfig(SERVER_1));
+    routingTable.markDataResourceOnline(tableName, externalView, instanceConfigs);
+
+    Map<String, Set<String>> expectedRouting = new TreeMap<>();
+    expectedRouting.put(SERVER_0, new TreeSet<>(Arrays.asList("segment_0", "segment_2", "segment_unpartitioned")));
+    expectedRouting.put(SERVER_1, new TreeSet<>(Arrays.asList("segment_1", "segment_3")));
+    Assert.assertEquals(findServers(routingTable, tableName, null), expectedRouting);
+    Assert.assertEquals(findServers(routingTable, tableName, "SELECT COUNT(*) FROM myTable"), expectedRouting);
+    Assert.assertEquals(findServers(routingTable, tableName, "SELECT COUNT(*) FROM myTable WHERE country = 'us'"),
+        expectedRouting);
+
+    expectedRouting.clear();
+    expectedRouting.put(SERVER_0, new TreeSet<>(Collections.singletonList("segment_unpartitioned")));
+    expectedRouting.put(SERVER_1, new TreeSet<>(Collections.singletonList("segment_1")));
+    Assert.assertEquals(findServers(routingTable, tableName, "SELECT COUNT(*) FROM myTable WHERE memberId = 5"),
+        expectedRouting);
+
+    // Server 1 is not queried
+    expectedRouting.clear();
+    expectedRouting.put(SERVER_0, new TreeSet<>(Arrays.asList("segment_0", "segment_2", "segment_unpartitioned")));
+    Assert.assertEquals(findServers(routingTable, tableName,
+        "SELECT COUNT(*) FROM myTable WHERE memberId IN (2, 4) AND country = 'us'"), expectedRouting);
+
+    // Partitions are not pruned once the table is no longer partitioned
+    propertyStore.setContents(ZKMetadataProvider.constructPropertyStorePathForResourceConfig(tableName),
+        AbstractTableConfig.toZnRecord(AbstractTableConfig.init(getTableConfigJson("myTable", "OFFLINE")
+            .replace("\"segmentPartitionConfig\"", "\"unusedConfig\""))));
+    routingTable.markDataResourceOnline(tableName, externalView, instanceConfigs);
+    Assert.assertEquals(findServers(routingTable, tableName, "SELECT COUNT(*) FROM myTable WHERE memberId = 5").size(),
+        2);
+  }
+
+  @Test
+  public void testRealtimeTable() throws Exception {
+    String tableName = "myTable_REALTIME";
+    FakePropertyStore propertyStore = new FakePropertyStore();
+    propertyStore.setContents(ZKMetadataProvider.constructPropertyStorePathForResourceConfig(tableName),
+        AbstractTableConfig.toZnRecord(AbstractTableConfig.init(getTableConfigJson("myTable", "REALTIME"))));
+
+    // Per Kafka partition, a committed low-level consumer segment recording the partition of the rows it contains, and
+    // a consuming one. And a high-level consumer segment without ZK metadata.
+    ExternalView externalView = new ExternalView(tableName);
+    Map<ServerInstance, SegmentIdSet> routing = new HashMap<>();
+    for (int kafkaPartition = 0; kafkaPartition < NUM_PARTITIONS; kafkaPartition++) {
+      String server = kafkaPartition % 2 == 0 ? SERVER_0 : SERVER_1;
+      for (int sequenceNumber = 0; sequenceNumber < 2; sequenceNumber++) {
+        String segmentName = new LLCSegmentName("myTable", kafkaPartition, sequenceNumber, 1000L).getSegmentName();
+        setLLCSegmentZKMetadata(propertyStore, tableName, segmentName, sequenceNumber == 0, kafkaPartition);
+        externalView.setState(segmentName, server, sequenceNumber == 0 ? "ONLINE" : "CONSUMING");
+        addToRouting(routing, server, segmentName);
+      }
+    }
+    String hlcSegmentName = "myTable_REALTIME_1000_groupId0_0";
+    externalView.setState(hlcSegmentName, SERVER_0, "ONLINE");
+    addToRouting(routing, SERVER_0, hlcSegmentName);
+
+    PartitionAwareRoutingPruner pruner = new PartitionAwareRoutingPruner(propertyStore);
+    pruner.updatePartitions(tableName, externalView);
+    Assert.assertEquals(propertyStore._numReads, 2 * NUM_PARTITIONS);
+
+    // Only the committed segments of the other partitions are pruned
+    Map<String, Set<String>> expectedRouting = new TreeMap<>();
+    expectedRouting.put(SERVER_0, new TreeSet<>(Arrays.asList(hlcSegmentName,
+        new LLCSegmentName("myTable", 0, 1, 1000L).getSegmentName(),
+        new LLCSegmentName("myTable", 2, 1, 1000L).getSegmentName())));
+    expectedRouting.put(SERVER_1, new TreeSet<>(Arrays.asList(
+        new LLCSegmentName("myTable", 1, 1, 1000L).getSegmentName(),
+        new LLCSegmentName("myTable", 3, 0, 1000L).getSegmentName(),
+        new LLCSegmentName("myTable", 3, 1, 1000L).getSegmentName())));
+    Assert.assertEquals(toSegmentNames(pruner.prune(tableName, routing,
+        COMPILER.compileToBrokerRequest("SELECT COUNT(*) FROM myTable WHERE memberId = 7"))), expectedRouting);
+
+    // Once committed, the segment of partition 1 is pruned, and only its segment ZK metadata is read again
+    String committedSegmentName = new LLCSegmentName("myTable", 1, 1, 1000L).getSegmentName();
+    setLLCSegmentZKMetadata(propertyStore, tableName, committedSegmentName, true, 1);
+    externalView.setState(committedSegmentName, SERVER_1, "ONLINE");
+    pruner.updatePartitions(tableName, externalView);
+    Assert.assertEquals(propertyStore._numReads, 2 * NUM_PARTITIONS + 1);
+    expectedRouting.get(SERVER_1).remove(committedSegmentName);
+    Assert.assertEquals(toSegmentNames(pruner.prune(tableName, routing,
+        COMPILER.compileToBrokerRequest("SELECT COUNT(*) FROM myTable WHERE memberId = 7"))), expectedRouting);
+
+    // Nothing to prune
+    Assert.assertSame(pruner.prune(tableName, routing,
+        COMPILER.compileToBrokerRequest("SELECT COUNT(*) FROM myTable WHERE memberId > 7")), routing);
+
+    pruner.removeTable(tableName);
+    Assert.assertSame(pruner.prune(tableName, routing,
+        COMPILER.compileToBrokerRequest("SELECT COUNT(*) FROM myTable WHERE memberId = 7")), routing);
+  }
+
+  private static void setLLCSegmentZKMetadata(FakePropertyStore propertyStore, String tableName, String segmentName,
+      boolean committed, int partition) {
+    LLCRealtimeSegmentZKMetadata segmentZKMetadata = new LLCRealtimeSegmentZKMetadata();
+    segmentZKMetadata.setSegmentName(segmentName);
+    segmentZKMetadata.setTableName("myTable");
+    if (committed) {
+      segmentZKMetadata.setStatus(CommonConstants.Segment.Realtime.Status.DONE);
+      segmentZKMetadata.setPartitionMetadata(new SegmentPartitionMetadata(Collections.singletonMap("memberId",
+          new ColumnPartitionMetadata("Modulo", NUM_PARTITIONS, Collections.singleton(partition)))));
+    } else {
+      segmentZKMetadata.setStatus(CommonConstants.Segment.Realtime.Status.IN_PROGRESS);
+    }
+    propertyStore.setContents(ZKMetadataProvider.constructPropertyStorePathForSegment(tableName, segmentName),
+        segmentZKMetadata.toZNRecord());
+  }
+
+  private static Map<String, Set<String>> findServers(HelixExternalViewBasedRouting routingTable, String tableName,
+      String query) {
+    RoutingTableLookupRequest request = new RoutingTableLookupRequest(tableName, Collections.<String>emptyList(),
+        query == null ? null : COMPILER.compileToBrokerRequest(query));
+    return toSegmentNames(routingTable.findServers(request));
+  }
+
+  private static Map<String, Set<String>> toSegmentNames(Map<ServerInstance, SegmentIdSet> routing) {
+    Map<String, Set<String>> segmentNames = new TreeMap<>();
+    for (Map.Entry<ServerInstance, SegmentIdSet> entry : routing.entrySet()) {
+      // All the servers are on localhost
+      String server = "Server_localhost_" + entry.getKey().getPort();
+      segmentNames.put(server, new TreeSet<>(entry.getValue().getSegmentsNameList()));
+    }
+    return segmentNames;
+  }
+
+  private static void addToRouting(Map<ServerInstance, SegmentIdSet> routing, String server, String segmentName) {
+    ServerInstance serverInstance =
+        new ServerInstance("localhost", Integer.parseInt(server.substring(server.lastIndexOf('_') + 1)));
+    SegmentIdSet segmentIdSet = routing.get(serverInstance);
+    if (segmentIdSet == null) {
+      segmentIdSet = new SegmentIdSet();
+      routing.put(serverInstance, segmentIdSet);
+    }
+    segmentIdSet.addSegment(new SegmentId(segmentName));
+  }
+
+  private static String getTableConfigJson(String tableName, String tableType) {
+    return "{\"tableName\": \"" + tableName + "\", \"tableType\": \"" + tableType + "\", "
+        + "\"segmentsConfig\": {\"replication\": \"1\"}, \"tenants\": {}, \"metadata\": {}, "
+        + "\"tableIndexConfig\": {\"segmentPartitionConfig\": {\"columnPartitionMap\": "
+        + "{\"memberId\": {\"functionName\": \"Modulo\", \"numPartitions\": " + NUM_PARTITIONS + "}}}}}";
+  }
+
+  private static class FakePropertyStore extends ZkHelixPropertyStore<ZNRecord> {
+    private final Map<String, ZNRecord> _contents = new HashMap<>();
+    private final Map<String, Integer> _versions = new HashMap<>();
+    private int _numReads = 0;
+
+    public FakePropertyStore() {
+      super((ZkBaseDataAccessor<ZNRecord>) null, null, null);
+    }
+
+    @Override
+    public ZNRecord get(String path, Stat stat, int options) {
+      return _contents.get(path);
+    }
+
+    @Override
+    public List<ZNRecord> get(List<String> paths, List<Stat> stats, int options) {
+      List<ZNRecord> records = new ArrayList<>();
+      Stat[] pathStats = getStats(paths, options);
+      for (int i = 0; i < paths.size(); i++) {
+        records.add(_contents.get(paths.get(i)));
+        stats.add(pathStats[i]);
+      }
+      _numReads += paths.size();
+      return records;
+    }
+
+    @Override
+    public Stat[] getStats(List<String> paths, int options) {
+      Stat[] stats = new Stat[paths.size()];
+      for (int i = 0; i < stats.length; i++) {
+        Integer version = _versions.get(paths.get(i));
+        if (version != null) {
+          stats[i] = new Stat();
+          stats[i].setVersion(version);
+        }
+      }
+      return stats;
+    }
+
+    @Override
+    public boolean exists(String path, int options) {
+      return !getChildren(path, null, options).isEmpty();
+    }
+
+    @Override
+    public List<ZNRecord> getChildren(String parentPath, List<Stat> stats, int options) {
+      List<ZNRecord> children = new ArrayList<>();
+      for (Map.Entry<String, ZNRecord> entry : _contents.entrySet()) {
+        if (entry.getKey().startsWith(parentPath + "/")) {
+          children.add(entry.getValue());
+        }
+      }
+      return children;
+    }
+
+    public void setContents(String path, ZNRecord contents) {
+      _contents.put(path, contents);
+      Integer version = _versions.get(path);
+      _versions.put(path, version == null ? 0 : version + 1);
+    }
+
+    @Override
+    public void start() {
+      // Don't try to connect to zk
+    }
+  }
+}
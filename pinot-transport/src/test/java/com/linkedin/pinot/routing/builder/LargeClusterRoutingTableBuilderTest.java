@@ -29,6 +29,10 @@ import org.apache.helix.model.ExternalView;
 import org.apache.helix.model.InstanceConfig;
 import org.testng.annotations.Test;
 
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 
@@ -186,6 +190,96 @@ public class LargeClusterRoutingTableBuilderTest {
             + maxNumberOfSegmentsAssignedPerServer + " RANDOM_SEED = " + RANDOM_SEED);
   }
 
+  @Test
+  public void testRoutingTablesAreUpdatedOnExternalViewChange() {
+    final String tableName = "fakeTable_OFFLINE";
+    final int segmentCount = 1000;
+    final int replicationFactor = 6;
+    final int instanceCount = 100;
+
+    ExternalView externalView = createExternalView(tableName, segmentCount, replicationFactor, instanceCount);
+    List<InstanceConfig> instanceConfigs = createInstanceConfigs(instanceCount);
+    List<ServerToSegmentSetMap> routingTables =
+        _largeClusterRoutingTableBuilder.computeRoutingTableFromExternalView(tableName, externalView, instanceConfigs);
+
+    // Without any change, the routing tables stay the same
+    List<ServerToSegmentSetMap> unchangedRoutingTables =
+        _largeClusterRoutingTableBuilder.computeRoutingTableFromExternalView(tableName, externalView, instanceConfigs);
+    assertEquals(unchangedRoutingTables.size(), routingTables.size());
+    for (int i = 0; i < routingTables.size(); i++) {
+      assertSame(unchangedRoutingTables.get(i), routingTables.get(i));
+    }
+
+    // Take one instance offline, add a segment and remove another one
+    final String offlineInstanceName = buildInstanceName(0);
+    ExternalView changedExternalView = createExternalView(tableName, segmentCount, replicationFactor, instanceCount);
+    Set<String> changedSegments = new HashSet<>();
+    for (String segment : changedExternalView.getPartitionSet()) {
+      Map<String, String> stateMap = changedExternalView.getStateMap(segment);
+      if (stateMap.containsKey(offlineInstanceName)) {
+        stateMap.put(offlineInstanceName, "OFFLINE");
+        changedSegments.add(segment);
+      }
+    }
+    String newSegment = tableName + "_" + segmentCount;
+    for (int i = 0; i < replicationFactor; i++) {
+      changedExternalView.setState(newSegment, buildInstanceName(i + 1), "ONLINE");
+    }
+    String removedSegment = tableName + "_" + (segmentCount - 1);
+    changedExternalView.getRecord().getMapFields().remove(removedSegment);
+    changedSegments.add(newSegment);
+    changedSegments.add(removedSegment);
+
+    List<ServerToSegmentSetMap> changedRoutingTables = _largeClusterRoutingTableBuilder
+        .computeRoutingTableFromExternalView(tableName, changedExternalView, instanceConfigs);
+    assertEquals(changedRoutingTables.size(), routingTables.size());
+
+    for (int i = 0; i < routingTables.size(); i++) {
+      ServerToSegmentSetMap routingTable = routingTables.get(i);
+      ServerToSegmentSetMap changedRoutingTable = changedRoutingTables.get(i);
+      Map<String, String> segmentToServerMap = getSegmentToServerMap(routingTable);
+      Map<String, String> changedSegmentToServerMap = getSegmentToServerMap(changedRoutingTable);
+
+      // All the segments are routed to an online replica
+      assertEquals(changedSegmentToServerMap.keySet(), changedExternalView.getPartitionSet());
+      for (Map.Entry<String, String> entry : changedSegmentToServerMap.entrySet()) {
+        assertEquals(changedExternalView.getStateMap(entry.getKey()).get(entry.getValue()), "ONLINE");
+      }
+
+      // Only the changed segments are moved, and the segment sets of the servers without changes are reused
+      for (Map.Entry<String, String> entry : changedSegmentToServerMap.entrySet()) {
+        String segment = entry.getKey();
+        if (!changedSegments.contains(segment)) {
+          assertEquals(entry.getValue(), segmentToServerMap.get(segment), "RANDOM_SEED = " + RANDOM_SEED);
+        }
+      }
+      for (String server : changedRoutingTable.getServerSet()) {
+        if (changedRoutingTable.getSegmentSet(server).equals(routingTable.getSegmentSet(server))) {
+          assertSame(changedRoutingTable.getSegmentSet(server), routingTable.getSegmentSet(server));
+        }
+      }
+    }
+
+    // Removing the table starts over from scratch
+    _largeClusterRoutingTableBuilder.removeTable(tableName);
+    List<ServerToSegmentSetMap> regeneratedRoutingTables = _largeClusterRoutingTableBuilder
+        .computeRoutingTableFromExternalView(tableName, changedExternalView, instanceConfigs);
+    for (ServerToSegmentSetMap regeneratedRoutingTable : regeneratedRoutingTables) {
+      assertEquals(getSegmentToServerMap(regeneratedRoutingTable).keySet(), changedExternalView.getPartitionSet());
+      assertFalse(regeneratedRoutingTable.getServerSet().contains(offlineInstanceName));
+    }
+  }
+
+  private Map<String, String> getSegmentToServerMap(ServerToSegmentSetMap routingTable) {
+    Map<String, String> segmentToServerMap = new HashMap<>();
+    for (String server : routingTable.getServerSet()) {
+      for (String segment : routingTable.getSegmentSet(server)) {
+        assertNull(segmentToServerMap.put(segment, server), "Segment " + segment + " is routed to several servers");
+      }
+    }
+    return segmentToServerMap;
+  }
+
   private String buildInstanceName(int instanceId) {
     return "Server_127.0.0.1_" + instanceId;
   }